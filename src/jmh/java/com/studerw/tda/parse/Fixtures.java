@@ -0,0 +1,158 @@
+package com.studerw.tda.parse;
+
+import com.fasterxml.jackson.databind.JsonNode;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.fasterxml.jackson.databind.node.ArrayNode;
+import com.fasterxml.jackson.databind.node.ObjectNode;
+import java.io.IOException;
+import java.io.InputStream;
+import java.math.BigDecimal;
+import java.time.LocalDate;
+import java.util.Iterator;
+import java.util.Map.Entry;
+import org.apache.commons.io.IOUtils;
+
+/**
+ * JSON responses for the benchmarks: the recorded fixtures under
+ * <em>src/test/resources/com/studerw/tda/parse</em>, and synthetically scaled versions of them.
+ */
+public final class Fixtures {
+
+  private static final ObjectMapper MAPPER = new ObjectMapper();
+
+  private Fixtures() {
+  }
+
+  /**
+   * @param name file name of a fixture in the <em>com/studerw/tda/parse</em> test resources
+   * @return the raw bytes of the fixture
+   */
+  public static byte[] fixture(String name) {
+    try (InputStream in = Fixtures.class.getResourceAsStream(name)) {
+      if (in == null) {
+        throw new IllegalStateException("Missing test fixture: " + name);
+      }
+      return IOUtils.toByteArray(in);
+    } catch (IOException e) {
+      throw new RuntimeException(e);
+    }
+  }
+
+  /**
+   * @param name file name of a fixture holding a JSON array
+   * @return the first element of the array, e.g. a single order of an orders response
+   */
+  public static byte[] first(String name) {
+    try {
+      return MAPPER.writeValueAsBytes(MAPPER.readTree(fixture(name)).get(0));
+    } catch (IOException e) {
+      throw new RuntimeException(e);
+    }
+  }
+
+  /**
+   * @param name file name of a fixture, or an absolute resource path
+   * @param field a field of the root object
+   * @return the value of the field
+   */
+  public static byte[] field(String name, String field) {
+    try {
+      return MAPPER.writeValueAsBytes(MAPPER.readTree(fixture(name)).get(field));
+    } catch (IOException e) {
+      throw new RuntimeException(e);
+    }
+  }
+
+  /**
+   * @param candles number of candles
+   * @return price history response for one minute candles, generated from the recorded fixture
+   * by repeating its candles with increasing timestamps
+   */
+  public static byte[] priceHistory(int candles) {
+    try {
+      ObjectNode root = (ObjectNode) MAPPER.readTree(fixture("price-history-resp.json"));
+      ArrayNode recorded = (ArrayNode) root.get("candles");
+      ArrayNode scaled = MAPPER.createArrayNode();
+      long datetime = recorded.get(0).get("datetime").asLong();
+      for (int i = 0; i < candles; i++) {
+        ObjectNode candle = recorded.get(i % recorded.size()).deepCopy();
+        candle.put("datetime", datetime + i * 60_000L);
+        scaled.add(candle);
+      }
+      root.set("candles", scaled);
+      return MAPPER.writeValueAsBytes(root);
+    } catch (IOException e) {
+      throw new RuntimeException(e);
+    }
+  }
+
+  /**
+   * @param strikes number of strikes per expiration
+   * @param expirations number of expirations
+   * @return option chain response with both calls and puts, generated from the first option of
+   * the recorded fixture
+   */
+  public static byte[] optionChain(int strikes, int expirations) {
+    try {
+      ObjectNode root = (ObjectNode) MAPPER.readTree(fixture("optionChain-resp.json"));
+      ObjectNode call = firstOption(root, "callExpDateMap");
+      ObjectNode put = firstOption(root, "putExpDateMap");
+      root.set("callExpDateMap", expDateMap(call, strikes, expirations));
+      root.set("putExpDateMap", expDateMap(put, strikes, expirations));
+      root.put("numberOfContracts", strikes * expirations * 2);
+      return MAPPER.writeValueAsBytes(root);
+    } catch (IOException e) {
+      throw new RuntimeException(e);
+    }
+  }
+
+  private static ObjectNode firstOption(ObjectNode root, String map) {
+    JsonNode expiry = root.get(map).elements().next();
+    return (ObjectNode) expiry.elements().next().get(0);
+  }
+
+  private static ObjectNode expDateMap(ObjectNode template, int strikes, int expirations) {
+    ObjectNode expDateMap = MAPPER.createObjectNode();
+    long expiration = template.get("expirationDate").asLong();
+    for (int e = 0; e < expirations; e++) {
+      int days = 7 * (e + 1);
+      ObjectNode strikeMap = MAPPER.createObjectNode();
+      for (int s = 0; s < strikes; s++) {
+        //50.0, 50.5, 51.0, ...
+        BigDecimal strike = BigDecimal.valueOf(50).add(BigDecimal.valueOf(5L * s, 1));
+        ObjectNode option = template.deepCopy();
+        option.put("strikePrice", strike);
+        option.put("daysToExpiration", days);
+        option.put("expirationDate", expiration + days * 86_400_000L);
+        strikeMap.set(strike.toPlainString(), MAPPER.createArrayNode().add(option));
+      }
+      String date = LocalDate.of(2020, 1, 3).plusDays(days).toString();
+      expDateMap.set(date + ":" + days, strikeMap);
+    }
+    return expDateMap;
+  }
+
+  /**
+   * @param copies how many times to repeat each quote of the recorded fixture
+   * @return quotes response keyed by made up, unique symbols
+   */
+  public static byte[] quotes(int copies) {
+    try {
+      ObjectNode root = (ObjectNode) MAPPER.readTree(fixture("quotes-resp.json"));
+      ObjectNode scaled = MAPPER.createObjectNode();
+      for (int i = 0; i < copies; i++) {
+        Iterator<Entry<String, JsonNode>> it = root.fields();
+        while (it.hasNext()) {
+          Entry<String, JsonNode> entry = it.next();
+          String symbol = entry.getKey() + "_" + i;
+          ObjectNode quote = entry.getValue().deepCopy();
+          quote.put("symbol", symbol);
+          scaled.set(symbol, quote);
+        }
+      }
+      return MAPPER.writeValueAsBytes(scaled);
+    } catch (IOException e) {
+      throw new RuntimeException(e);
+    }
+  }
+}
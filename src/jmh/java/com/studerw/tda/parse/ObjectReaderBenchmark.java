@@ -0,0 +1,89 @@
+package com.studerw.tda.parse;
+
+import com.fasterxml.jackson.core.type.TypeReference;
+import com.fasterxml.jackson.databind.DeserializationFeature;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.studerw.tda.model.account.SecuritiesAccount;
+import com.studerw.tda.model.quote.Quote;
+import java.io.ByteArrayInputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.TimeUnit;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+/**
+ * Compares the prebuilt {@link DefaultMapper} readers used by {@link TdaJsonParser} against how
+ * accounts used to be parsed, with a brand new {@link ObjectMapper} per call, and how the other
+ * types used to be parsed, with {@link ObjectMapper#readValue(InputStream, TypeReference)} of a
+ * mapper configured like {@link DefaultMapper}.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.SECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+public class ObjectReaderBenchmark {
+
+  private final TdaJsonParser parser = new TdaJsonParser();
+  //configured like the mapper behind the readers, so only the way of reading differs
+  private final ObjectMapper sharedMapper = DefaultMapper.copyMapper();
+
+  private byte[] account;
+  private byte[] accounts;
+  private byte[] quotes;
+
+  @Setup
+  public void setup() {
+    account = Fixtures.fixture("account-resp.json");
+    accounts = Fixtures.fixture("accounts-resp.json");
+    quotes = Fixtures.fixture("quotes-resp.json");
+  }
+
+  @Benchmark
+  public SecuritiesAccount accountNewMapper() throws IOException {
+    final ObjectMapper objMapper = new ObjectMapper();
+    objMapper.enable(DeserializationFeature.UNWRAP_ROOT_VALUE);
+    return objMapper.readValue(new ByteArrayInputStream(account), SecuritiesAccount.class);
+  }
+
+  @Benchmark
+  public SecuritiesAccount accountReader() {
+    return parser.parseAccount(new ByteArrayInputStream(account));
+  }
+
+  @Benchmark
+  public List<Map<String, SecuritiesAccount>> accountsNewMapper() throws IOException {
+    ObjectMapper mapper = new ObjectMapper();
+    return mapper.readValue(new ByteArrayInputStream(accounts),
+        new TypeReference<List<Map<String, SecuritiesAccount>>>() {});
+  }
+
+  @Benchmark
+  public List<SecuritiesAccount> accountsReader() {
+    return parser.parseAccounts(new ByteArrayInputStream(accounts));
+  }
+
+  @Benchmark
+  public LinkedHashMap<String, Quote> quotesSharedMapper() throws IOException {
+    return sharedMapper.readValue(new ByteArrayInputStream(quotes),
+        new TypeReference<LinkedHashMap<String, Quote>>() {});
+  }
+
+  @Benchmark
+  public List<Quote> quotesReader() {
+    return parser.parseQuotes(new ByteArrayInputStream(quotes));
+  }
+}
@@ -0,0 +1,214 @@
+package com.studerw.tda.parse;
+
+import com.studerw.tda.model.account.Order;
+import com.studerw.tda.model.account.SecuritiesAccount;
+import com.studerw.tda.model.history.CandleSeries;
+import com.studerw.tda.model.history.PriceHistory;
+import com.studerw.tda.model.instrument.FullInstrument;
+import com.studerw.tda.model.instrument.Instrument;
+import com.studerw.tda.model.marketdata.Mover;
+import com.studerw.tda.model.option.IndexedOptionChain;
+import com.studerw.tda.model.option.OptionChain;
+import com.studerw.tda.model.quote.Quote;
+import com.studerw.tda.model.transaction.Transaction;
+import com.studerw.tda.model.user.Preferences;
+import com.studerw.tda.model.user.StreamerSubscriptionKeys;
+import com.studerw.tda.model.user.UserPrincipals;
+import java.io.ByteArrayInputStream;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+import org.openjdk.jmh.infra.Blackhole;
+
+/**
+ * <p>
+ * Throughput of every {@link TdaJsonParser} method used by the client, against the recorded
+ * fixtures and against synthetically scaled responses (10k candles, a chain of 500 strikes over
+ * 4 expirations, 1000 quotes).
+ * </p>
+ *
+ * <p>
+ * Run with <em>-prof gc</em> (the default <em>jmh.args</em> of the <em>benchmarks</em> profile)
+ * so that <em>gc.alloc.rate.norm</em>, the bytes allocated per parse, is reported next to the
+ * throughput.
+ * </p>
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.SECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+public class TdaJsonParserBenchmark {
+
+  private final TdaJsonParser parser = new TdaJsonParser();
+
+  private byte[] quotes;
+  private byte[] quotes1k;
+  private byte[] priceHistory;
+  private byte[] priceHistory10k;
+  private byte[] optionChain;
+  private byte[] optionChain500;
+  private byte[] orders;
+  private byte[] order;
+  private byte[] transactions;
+  private byte[] transaction;
+  private byte[] account;
+  private byte[] accounts;
+  private byte[] instruments;
+  private byte[] fullInstruments;
+  private byte[] cusip;
+  private byte[] movers;
+  private byte[] preferences;
+  private byte[] userPrincipals;
+  private byte[] subscriptionKeys;
+
+  @Setup
+  public void setup() {
+    quotes = Fixtures.fixture("quotes-resp.json");
+    //6 recorded quotes, so roughly 1000
+    quotes1k = Fixtures.quotes(167);
+    priceHistory = Fixtures.fixture("price-history-resp.json");
+    priceHistory10k = Fixtures.priceHistory(10_000);
+    optionChain = Fixtures.fixture("option-chain-resp.json");
+    optionChain500 = Fixtures.optionChain(500, 4);
+    orders = Fixtures.fixture("orders-resp3.json");
+    order = Fixtures.first("orders-resp3.json");
+    transactions = Fixtures.fixture("transactions-resp.json");
+    transaction = Fixtures.first("transactions-resp.json");
+    account = Fixtures.fixture("account-resp.json");
+    accounts = Fixtures.fixture("accounts-resp.json");
+    instruments = Fixtures.fixture("multi-instrument-resp.json");
+    fullInstruments = Fixtures.fixture("instrument-fundamental-resp.json");
+    cusip = Fixtures.fixture("cusip-resp.json");
+    movers = Fixtures.fixture("movers-resp.json");
+    preferences = Fixtures.fixture("preferences-resp.json");
+    userPrincipals = Fixtures.fixture("userPrincipals-resp.json");
+    subscriptionKeys = Fixtures.field("/com/studerw/tda/stream/userPrincipals-streamer-resp.json",
+        "streamerSubscriptionKeys");
+  }
+
+  @Benchmark
+  public List<Quote> parseQuotes() {
+    return parser.parseQuotes(new ByteArrayInputStream(quotes));
+  }
+
+  @Benchmark
+  public List<Quote> parseQuotes1k() {
+    return parser.parseQuotes(new ByteArrayInputStream(quotes1k));
+  }
+
+  @Benchmark
+  public int parseQuotesStreaming(Blackhole blackhole) {
+    return parser.parseQuotes(new ByteArrayInputStream(quotes), blackhole::consume);
+  }
+
+  @Benchmark
+  public int parseQuotes1kStreaming(Blackhole blackhole) {
+    return parser.parseQuotes(new ByteArrayInputStream(quotes1k), blackhole::consume);
+  }
+
+  @Benchmark
+  public PriceHistory parsePriceHistory() {
+    return parser.parsePriceHistory(new ByteArrayInputStream(priceHistory));
+  }
+
+  @Benchmark
+  public PriceHistory parsePriceHistory10k() {
+    return parser.parsePriceHistory(new ByteArrayInputStream(priceHistory10k));
+  }
+
+  @Benchmark
+  public CandleSeries parseCandleSeries10k() {
+    return parser.parseCandleSeries(new ByteArrayInputStream(priceHistory10k));
+  }
+
+  @Benchmark
+  public OptionChain parseOptionChain() {
+    return parser.parseOptionChain(new ByteArrayInputStream(optionChain));
+  }
+
+  @Benchmark
+  public OptionChain parseOptionChain500() {
+    return parser.parseOptionChain(new ByteArrayInputStream(optionChain500));
+  }
+
+  @Benchmark
+  public IndexedOptionChain parseIndexedOptionChain500() {
+    return parser.parseIndexedOptionChain(new ByteArrayInputStream(optionChain500));
+  }
+
+  @Benchmark
+  public Order parseOrder() {
+    return parser.parseOrder(new ByteArrayInputStream(order));
+  }
+
+  @Benchmark
+  public List<Order> parseOrders() {
+    return parser.parseOrders(new ByteArrayInputStream(orders));
+  }
+
+  @Benchmark
+  public List<Transaction> parseTransactions() {
+    return parser.parseTransactions(new ByteArrayInputStream(transactions));
+  }
+
+  @Benchmark
+  public Transaction parseTransaction() {
+    return parser.parseTransaction(new ByteArrayInputStream(transaction));
+  }
+
+  @Benchmark
+  public SecuritiesAccount parseAccount() {
+    return parser.parseAccount(new ByteArrayInputStream(account));
+  }
+
+  @Benchmark
+  public List<SecuritiesAccount> parseAccounts() {
+    return parser.parseAccounts(new ByteArrayInputStream(accounts));
+  }
+
+  @Benchmark
+  public List<Instrument> parseInstrumentMap() {
+    return parser.parseInstrumentMap(new ByteArrayInputStream(instruments));
+  }
+
+  @Benchmark
+  public List<FullInstrument> parseFullInstrumentMap() {
+    return parser.parseFullInstrumentMap(new ByteArrayInputStream(fullInstruments));
+  }
+
+  @Benchmark
+  public Instrument parseInstrumentArraySingle() {
+    return parser.parseInstrumentArraySingle(new ByteArrayInputStream(cusip));
+  }
+
+  @Benchmark
+  public List<Mover> parseMovers() {
+    return parser.parseMovers(new ByteArrayInputStream(movers));
+  }
+
+  @Benchmark
+  public Preferences parsePreferences() {
+    return parser.parsePreferences(new ByteArrayInputStream(preferences));
+  }
+
+  @Benchmark
+  public UserPrincipals parseUserPrincipals() {
+    return parser.parseUserPrincipals(new ByteArrayInputStream(userPrincipals));
+  }
+
+  @Benchmark
+  public StreamerSubscriptionKeys parseSubscriptionKeys() {
+    return parser.parseSubscriptionKeys(new ByteArrayInputStream(subscriptionKeys));
+  }
+}
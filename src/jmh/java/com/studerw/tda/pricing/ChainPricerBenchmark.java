@@ -0,0 +1,63 @@
+package com.studerw.tda.pricing;
+
+import com.studerw.tda.model.option.IndexedOptionChain;
+import com.studerw.tda.parse.Fixtures;
+import com.studerw.tda.parse.TdaJsonParser;
+import java.io.ByteArrayInputStream;
+import java.util.concurrent.TimeUnit;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+/**
+ * Time to solve implied volatilities and greeks of a chain of 500 strikes over 4 expirations, and
+ * to reprice it on a new underlying price, with both pricing models.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+public class ChainPricerBenchmark {
+
+  private ChainPricer blackScholes;
+  private ChainPricer bjerksundStensland;
+  private IndexedOptionChain chain;
+  private ChainGreeks greeks;
+
+  @Setup
+  public void setup() {
+    chain = new TdaJsonParser().parseIndexedOptionChain(
+        new ByteArrayInputStream(Fixtures.optionChain(500, 4)));
+    blackScholes = ChainPricer.Builder.chainPricer()
+        .withModel(PricingModel.BLACK_SCHOLES)
+        .build();
+    bjerksundStensland = ChainPricer.Builder.chainPricer()
+        .withModel(PricingModel.BJERKSUND_STENSLAND)
+        .build();
+    greeks = bjerksundStensland.price(chain);
+  }
+
+  @Benchmark
+  public ChainGreeks priceBlackScholes() {
+    return blackScholes.price(chain);
+  }
+
+  @Benchmark
+  public ChainGreeks priceBjerksundStensland() {
+    return bjerksundStensland.price(chain);
+  }
+
+  @Benchmark
+  public ChainGreeks repriceBjerksundStensland() {
+    return bjerksundStensland.reprice(greeks, chain.getUnderlyingPrice() * 1.001);
+  }
+}
@@ -0,0 +1,92 @@
+package com.studerw.tda.stream;
+
+import com.fasterxml.jackson.databind.JsonNode;
+import com.fasterxml.jackson.databind.ObjectReader;
+import com.studerw.tda.parse.DefaultMapper;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.util.Random;
+import java.util.concurrent.TimeUnit;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+/**
+ * Time to decode a QUOTE frame of 100 partial updates, as bytes and as the text OkHttp delivers,
+ * compared to reading it into a Jackson tree as {@link TdaStreamClient} does for its listeners.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+public class LevelOneDecoderBenchmark {
+
+  private static final ObjectReader READER = DefaultMapper.reader(JsonNode.class);
+
+  private final LevelOneDecoder decoder = new LevelOneDecoder();
+  private final double[] bids = new double[128];
+  private final LevelOneHandler handler = tick -> {
+    if (tick.has(1)) {
+      bids[tick.getSymbolId() & 127] = tick.getDouble(1);
+    }
+  };
+  private String text;
+  private byte[] bytes;
+
+  @Setup
+  public void setup() {
+    text = quotes(100);
+    bytes = text.getBytes(StandardCharsets.UTF_8);
+  }
+
+  @Benchmark
+  public int decodeBytes() {
+    return decoder.decode(bytes, 0, bytes.length, handler);
+  }
+
+  @Benchmark
+  public int decodeText() {
+    return decoder.decode(text, handler);
+  }
+
+  @Benchmark
+  public JsonNode jacksonTree() throws IOException {
+    return READER.readValue(bytes);
+  }
+
+  /**
+   * @return a QUOTE data frame like those sent during market hours, each update with a few of the
+   * bid, ask, last, sizes, volume and times
+   */
+  static String quotes(int symbols) {
+    Random random = new Random(42);
+    StringBuilder frame = new StringBuilder("{\"data\":[{\"service\":\"QUOTE\",")
+        .append("\"timestamp\":1592699716123,\"command\":\"SUBS\",\"content\":[");
+    for (int i = 0; i < symbols; i++) {
+      double bid = 10 + random.nextInt(50_000) / 100d;
+      frame.append(i == 0 ? "" : ",")
+          .append("{\"key\":\"SYM").append(i).append("\",\"delayed\":false")
+          .append(",\"1\":").append(bid)
+          .append(",\"2\":").append(bid + 0.01 * (1 + random.nextInt(5)))
+          .append(",\"4\":").append(1 + random.nextInt(20))
+          .append(",\"5\":").append(1 + random.nextInt(20));
+      if (random.nextBoolean()) {
+        frame.append(",\"3\":").append(bid + 0.01)
+            .append(",\"8\":").append(random.nextInt(50_000_000))
+            .append(",\"9\":").append(1 + random.nextInt(10))
+            .append(",\"51\":").append(1592699716000L + random.nextInt(1000));
+      }
+      frame.append(",\"50\":").append(1592699716000L + random.nextInt(1000)).append('}');
+    }
+    return frame.append("]}]}").toString();
+  }
+}
@@ -0,0 +1,115 @@
+package com.studerw.tda.stream;
+
+import com.studerw.tda.model.stream.Service;
+import java.math.BigDecimal;
+import java.util.Comparator;
+import java.util.Random;
+import java.util.TreeMap;
+import java.util.concurrent.TimeUnit;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+/**
+ * Time to apply one side of a book snapshot like NASDAQ_BOOK sends several times a second per
+ * symbol, where one or two levels near the inside change between snapshots, compared to
+ * rebuilding a {@code TreeMap<BigDecimal, Long>}. Also times single level updates and the top of
+ * book measures.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+public class OrderBookBenchmark {
+
+  private static final int SNAPSHOTS = 1024;
+
+  @Param({"10", "40"})
+  public int levels;
+
+  private final PriceLadder ladder = new PriceLadder(true);
+  private final OrderBooks books = OrderBooks.Builder.orderBooks().build();
+  private final TreeMap<BigDecimal, Long> treeMap = new TreeMap<>(Comparator.reverseOrder());
+  private final OrderBook book = new OrderBook();
+  private double[][] prices;
+  private long[][] sizes;
+  private int[][] counts;
+  private double[] updatePrices;
+  private long[] updateSizes;
+  private int next;
+
+  @Setup
+  public void setup() {
+    Random random = new Random(42);
+    prices = new double[SNAPSHOTS][levels];
+    sizes = new long[SNAPSHOTS][levels];
+    counts = new int[SNAPSHOTS][levels];
+    long[] current = new long[levels];
+    for (int l = 0; l < levels; l++) {
+      current[l] = 100 * (1 + random.nextInt(50));
+    }
+    for (int s = 0; s < SNAPSHOTS; s++) {
+      //the inside moves a tick now and then, and one or two sizes near it change
+      int shift = random.nextInt(10) == 0 ? 1 : 0;
+      for (int change = 0; change < 1 + random.nextInt(2); change++) {
+        current[Math.min(levels - 1, (int) Math.abs(random.nextGaussian() * 2))] =
+            100 * (1 + random.nextInt(50));
+      }
+      for (int l = 0; l < levels; l++) {
+        prices[s][l] = (19510 - l - shift) / 100d;
+        sizes[s][l] = current[l];
+        counts[s][l] = 1 + (int) (current[l] / 1000);
+      }
+    }
+    updatePrices = new double[SNAPSHOTS];
+    updateSizes = new long[SNAPSHOTS];
+    for (int u = 0; u < SNAPSHOTS; u++) {
+      updatePrices[u] = (19510 - (int) Math.abs(random.nextGaussian() * 3)) / 100d;
+      updateSizes[u] = random.nextInt(5) == 0 ? 0 : 100 * (1 + random.nextInt(50));
+    }
+    double[] asks = new double[levels];
+    for (int l = 0; l < levels; l++) {
+      asks[l] = (19512 + l) / 100d;
+    }
+    books.apply(Service.NASDAQ_BOOK, "MSFT", 0, true, prices[0], sizes[0], counts[0], levels);
+    books.apply(Service.NASDAQ_BOOK, "MSFT", 0, false, asks, sizes[1], counts[1], levels);
+  }
+
+  @Benchmark
+  public int replaceSnapshot() {
+    int s = next++ & (SNAPSHOTS - 1);
+    return ladder.replace(prices[s], sizes[s], counts[s], levels);
+  }
+
+  @Benchmark
+  public int treeMapSnapshot() {
+    int s = next++ & (SNAPSHOTS - 1);
+    treeMap.clear();
+    for (int l = 0; l < levels; l++) {
+      treeMap.put(BigDecimal.valueOf(prices[s][l]), sizes[s][l]);
+    }
+    return treeMap.size();
+  }
+
+  @Benchmark
+  public boolean setLevel() {
+    int u = next++ & (SNAPSHOTS - 1);
+    return ladder.set(updatePrices[u], updateSizes[u], 1);
+  }
+
+  @Benchmark
+  public double microprice() {
+    books.read(Service.NASDAQ_BOOK, "MSFT", book);
+    return book.getMicroprice() + book.getImbalance(5);
+  }
+}
@@ -0,0 +1,56 @@
+package com.studerw.tda.stream;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.concurrent.TimeUnit;
+import org.apache.commons.io.FileUtils;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+
+/**
+ * Time to append a QUOTE tick of a few fields to a {@link TickJournal}, which should allocate
+ * nothing but the occasional new segment.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+public class TickJournalBenchmark {
+
+  private final LevelOneTick tick = new LevelOneTick();
+  private Path dir;
+  private TickJournal journal;
+
+  @Setup
+  public void setup() throws IOException {
+    dir = Files.createTempDirectory("journal");
+    journal = TickJournal.Builder.tickJournal().withDirectory(dir).build();
+    new LevelOneDecoder().decode("{\"data\":[{\"service\":\"QUOTE\",\"timestamp\":1592699716123,"
+        + "\"content\":[{\"key\":\"MSFT\",\"1\":196.32,\"2\":196.35,\"4\":3,\"5\":12,"
+        + "\"8\":27412345,\"50\":1592699715999}]}]}", tick::merge);
+  }
+
+  @TearDown
+  public void tearDown() throws IOException {
+    journal.close();
+    FileUtils.deleteDirectory(dir.toFile());
+  }
+
+  @Benchmark
+  public long append() {
+    journal.onTick(tick);
+    return journal.getRecords();
+  }
+}
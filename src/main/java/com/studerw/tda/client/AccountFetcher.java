@@ -0,0 +1,20 @@
+package com.studerw.tda.client;
+
+import com.studerw.tda.model.account.SecuritiesAccount;
+
+/**
+ * The part of {@link TdaClient} needed by code which only fetches accounts, so it can be given a
+ * {@link TdaClient} or just a lambda.
+ */
+@FunctionalInterface
+public interface AccountFetcher {
+
+  /**
+   * @param accountId the account
+   * @param positions whether to include positions
+   * @param orders whether to include orders
+   * @return {@link SecuritiesAccount} with the passed id
+   * @see TdaClient#getAccount(String, boolean, boolean)
+   */
+  SecuritiesAccount getAccount(String accountId, boolean positions, boolean orders);
+}
@@ -0,0 +1,259 @@
+package com.studerw.tda.client;
+
+import com.studerw.tda.model.account.Order;
+import com.studerw.tda.model.account.OrderRequest;
+import com.studerw.tda.model.account.SecuritiesAccount;
+import com.studerw.tda.model.history.CandleSeries;
+import com.studerw.tda.model.history.PriceHistReq;
+import com.studerw.tda.model.history.PriceHistory;
+import com.studerw.tda.model.instrument.FullInstrument;
+import com.studerw.tda.model.instrument.Instrument;
+import com.studerw.tda.model.instrument.Query;
+import com.studerw.tda.model.marketdata.Mover;
+import com.studerw.tda.model.marketdata.MoversReq;
+import com.studerw.tda.model.option.IndexedOptionChain;
+import com.studerw.tda.model.option.OptionChain;
+import com.studerw.tda.model.option.OptionChainReq;
+import com.studerw.tda.model.quote.Quote;
+import com.studerw.tda.model.quote.QuoteBatch;
+import com.studerw.tda.model.transaction.Transaction;
+import com.studerw.tda.model.transaction.TransactionRequest;
+import com.studerw.tda.model.user.Preferences;
+import com.studerw.tda.model.user.UserPrincipals;
+import java.util.List;
+import java.util.concurrent.CompletableFuture;
+
+/**
+ * <p>
+ * Non blocking version of {@link TdaClient}. Every method mirrors its {@link TdaClient}
+ * counterpart, but returns immediately with a {@link CompletableFuture} instead of waiting on the
+ * HTTP call. No thread is held while a request waits for its rate limit token or is in flight,
+ * so a single client can have many hundreds of calls outstanding at once. Only a retry after a
+ * <em>429 Too Many Requests</em> waits for its token on an OkHttp dispatcher thread.
+ * Implementations should be thread safe.
+ * </p>
+ *
+ * <p>
+ * Methods never throw. Invalid arguments (blank symbols, requests that fail validation, etc...)
+ * complete the returned future exceptionally with an {@link IllegalArgumentException}, and any
+ * other failure, such as a non 200 response, an empty JSON body or an IO error, with a {@link
+ * RuntimeException}, just as the blocking client would have thrown it.
+ * </p>
+ *
+ * @see HttpAsyncTdaClient
+ * @see TdaClient
+ */
+public interface AsyncTdaClient {
+
+  /**
+   * @param symbol uppercase symbol
+   * @return future of the PriceHistory
+   * @see TdaClient#priceHistory(String)
+   */
+  CompletableFuture<PriceHistory> priceHistory(String symbol);
+
+  /**
+   * @param priceHistReq validated object of request parameters
+   * @return future of the PriceHistory
+   * @see TdaClient#priceHistory(PriceHistReq)
+   */
+  CompletableFuture<PriceHistory> priceHistory(PriceHistReq priceHistReq);
+
+  /**
+   * @param symbol uppercase symbol
+   * @return future of the CandleSeries
+   * @see TdaClient#priceHistorySeries(String)
+   */
+  CompletableFuture<CandleSeries> priceHistorySeries(String symbol);
+
+  /**
+   * @param priceHistReq validated object of request parameters
+   * @return future of the CandleSeries
+   * @see TdaClient#priceHistorySeries(PriceHistReq)
+   */
+  CompletableFuture<CandleSeries> priceHistorySeries(PriceHistReq priceHistReq);
+
+  /**
+   * @param symbols list of symbols
+   * @return future of the list of quotes
+   * @see TdaClient#fetchQuotes(List)
+   */
+  CompletableFuture<List<Quote>> fetchQuotes(List<String> symbols);
+
+  /**
+   * @param symbols list of symbols
+   * @return future of the quotes of all successful chunks plus any chunk failures
+   * @see TdaClient#fetchQuoteBatch(List)
+   */
+  CompletableFuture<QuoteBatch> fetchQuoteBatch(List<String> symbols);
+
+  /**
+   * @param symbol the symbol to fetch
+   * @return future of the quote
+   * @see TdaClient#fetchQuote(String)
+   */
+  CompletableFuture<Quote> fetchQuote(String symbol);
+
+  /**
+   * @param accountId the account
+   * @param positions whether to include positions
+   * @param orders whether to include orders
+   * @return future of the account
+   * @see TdaClient#getAccount(String, boolean, boolean)
+   */
+  CompletableFuture<SecuritiesAccount> getAccount(String accountId, boolean positions,
+      boolean orders);
+
+  /**
+   * @param positions whether to include positions
+   * @param orders whether to include orders
+   * @return future of all linked accounts
+   * @see TdaClient#getAccounts(boolean, boolean)
+   */
+  CompletableFuture<List<SecuritiesAccount>> getAccounts(boolean positions, boolean orders);
+
+  /**
+   * @param accountId the account under which the order is placed
+   * @param order the order to place
+   * @return future that completes once TDA has accepted the order
+   * @see TdaClient#placeOrder(String, Order)
+   */
+  CompletableFuture<Void> placeOrder(String accountId, Order order);
+
+  /**
+   * @param accountId the account
+   * @param orderRequest the filter params
+   * @return future of the orders
+   * @see TdaClient#fetchOrders(String, OrderRequest)
+   */
+  CompletableFuture<List<Order>> fetchOrders(String accountId, OrderRequest orderRequest);
+
+  /**
+   * @param orderRequest the filter params
+   * @return future of the orders for all accounts
+   * @see TdaClient#fetchOrders(OrderRequest)
+   */
+  CompletableFuture<List<Order>> fetchOrders(OrderRequest orderRequest);
+
+  /**
+   * @return future of all orders for all accounts
+   * @see TdaClient#fetchOrders()
+   */
+  CompletableFuture<List<Order>> fetchOrders();
+
+  /**
+   * @param accountId the account
+   * @param orderId the order id
+   * @return future of the order
+   * @see TdaClient#fetchOrder(String, Long)
+   */
+  CompletableFuture<Order> fetchOrder(String accountId, Long orderId);
+
+  /**
+   * @param accountId the account
+   * @param orderId the order id
+   * @return future that completes once the order has been cancelled
+   * @see TdaClient#cancelOrder(String, String)
+   */
+  CompletableFuture<Void> cancelOrder(String accountId, String orderId);
+
+  /**
+   * @param cusip the cusip id
+   * @return future of the instrument
+   * @see TdaClient#getInstrumentByCUSIP(String)
+   */
+  CompletableFuture<Instrument> getInstrumentByCUSIP(String cusip);
+
+  /**
+   * @param cusip the bond's cusip id
+   * @return future of the bond instrument
+   * @see TdaClient#getBond(String)
+   */
+  CompletableFuture<Instrument> getBond(String cusip);
+
+  /**
+   * @param query the search query
+   * @return future of the matching instruments
+   * @see TdaClient#queryInstruments(Query)
+   */
+  CompletableFuture<List<Instrument>> queryInstruments(Query query);
+
+  /**
+   * @param id the symbol or cusip
+   * @return future of the instrument with fundamental data
+   * @see TdaClient#getFundamentalData(String)
+   */
+  CompletableFuture<FullInstrument> getFundamentalData(String id);
+
+  /**
+   * @param moversReq the movers request
+   * @return future of the movers
+   * @see TdaClient#fetchMovers(MoversReq)
+   */
+  CompletableFuture<List<Mover>> fetchMovers(MoversReq moversReq);
+
+  /**
+   * @param symbol the underlying symbol
+   * @return future of the option chain
+   * @see TdaClient#getOptionChain(String)
+   */
+  CompletableFuture<OptionChain> getOptionChain(String symbol);
+
+  /**
+   * @param optionChainReq the request
+   * @return future of the option chain
+   * @see TdaClient#getOptionChain(OptionChainReq)
+   */
+  CompletableFuture<OptionChain> getOptionChain(OptionChainReq optionChainReq);
+
+  /**
+   * @param optionChainReq the request
+   * @return future of the indexed option chain
+   * @see TdaClient#getIndexedOptionChain(OptionChainReq)
+   */
+  CompletableFuture<IndexedOptionChain> getIndexedOptionChain(OptionChainReq optionChainReq);
+
+  /**
+   * @param accountId the account
+   * @return future of the transactions
+   * @see TdaClient#fetchTransactions(String)
+   */
+  CompletableFuture<List<Transaction>> fetchTransactions(String accountId);
+
+  /**
+   * @param accountId the account
+   * @param request the filter params
+   * @return future of the transactions
+   * @see TdaClient#fetchTransactions(String, TransactionRequest)
+   */
+  CompletableFuture<List<Transaction>> fetchTransactions(String accountId,
+      TransactionRequest request);
+
+  /**
+   * @param accountId the account
+   * @param transactionId the transaction id
+   * @return future of the transaction
+   * @see TdaClient#getTransaction(String, Long)
+   */
+  CompletableFuture<Transaction> getTransaction(String accountId, Long transactionId);
+
+  /**
+   * @param accountId the account
+   * @return future of the preferences
+   * @see TdaClient#getPreferences(String)
+   */
+  CompletableFuture<Preferences> getPreferences(String accountId);
+
+  /**
+   * @return future of the user principals
+   * @see TdaClient#getUserPrincipals()
+   */
+  CompletableFuture<UserPrincipals> getUserPrincipals();
+
+  /**
+   * @param fields optional fields to include
+   * @return future of the user principals
+   * @see TdaClient#getUserPrincipals(UserPrincipals.Field...)
+   */
+  CompletableFuture<UserPrincipals> getUserPrincipals(UserPrincipals.Field... fields);
+}
@@ -0,0 +1,474 @@
+package com.studerw.tda.client;
+
+import com.studerw.tda.http.cache.CacheEndpoint;
+import com.studerw.tda.model.account.Order;
+import com.studerw.tda.model.account.OrderRequest;
+import com.studerw.tda.model.account.SecuritiesAccount;
+import com.studerw.tda.model.history.CandleSeries;
+import com.studerw.tda.model.history.PriceHistReq;
+import com.studerw.tda.model.history.PriceHistory;
+import com.studerw.tda.model.instrument.FullInstrument;
+import com.studerw.tda.model.instrument.Instrument;
+import com.studerw.tda.model.instrument.Query;
+import com.studerw.tda.model.marketdata.Mover;
+import com.studerw.tda.model.marketdata.MoversReq;
+import com.studerw.tda.model.option.IndexedOptionChain;
+import com.studerw.tda.model.option.OptionChain;
+import com.studerw.tda.model.option.OptionChainReq;
+import com.studerw.tda.model.quote.Quote;
+import com.studerw.tda.model.quote.QuoteBatch;
+import com.studerw.tda.model.transaction.Transaction;
+import com.studerw.tda.model.transaction.TransactionRequest;
+import com.studerw.tda.model.user.Preferences;
+import com.studerw.tda.model.user.UserPrincipals;
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.Map;
+import java.util.Properties;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.Executor;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.function.Supplier;
+import okhttp3.Call;
+import okhttp3.Callback;
+import okhttp3.Dispatcher;
+import okhttp3.OkHttpClient;
+import okhttp3.Request;
+import okhttp3.Response;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+/**
+ * <p>
+ * HTTP implementation of {@link AsyncTdaClient}. Requests are built and validated exactly as in
+ * {@link HttpTdaClient} (and share its OAuth token, cookies and logging), but are handed to OkHttp
+ * with {@link Call#enqueue(Callback)} instead of being executed on the calling thread. Once a
+ * response arrives, its body is checked and parsed on the configured {@link Executor}, which is
+ * {@link ForkJoinPool#commonPool()} by default.
+ * </p>
+ *
+ * <p>
+ * Requests wait for their rate limit token in the {@link
+ * com.studerw.tda.http.RequestScheduler} before being enqueued, and calls beyond
+ * <em>tda.async.maxRequests</em> (or <em>tda.async.maxRequestsPerHost</em>) are queued by the
+ * OkHttp {@link Dispatcher}. Neither holds a thread, so thousands of requests can be outstanding
+ * at once, and a PRIORITY request never waits behind BULK requests in the dispatcher. Cancelling a returned future cancels the underlying HTTP call, except for
+ * the cached calls listed in {@link CacheEndpoint}, which may be shared with other callers.
+ * Invalid arguments never throw, they complete the returned future exceptionally.
+ * </p>
+ * <strong>This is a thread safe class.</strong>
+ */
+public class HttpAsyncTdaClient implements AsyncTdaClient {
+
+  private static final Logger LOGGER = LoggerFactory.getLogger(HttpAsyncTdaClient.class);
+
+  final HttpTdaClient client;
+  final OkHttpClient httpClient;
+  final Executor executor;
+
+  /**
+   * Using this constructor will assume there are properties found at {@code
+   * classpath:/tda-api.properties}. Responses are parsed on the common fork join pool.
+   *
+   * @see HttpTdaClient#HttpTdaClient()
+   */
+  public HttpAsyncTdaClient() {
+    this(null);
+  }
+
+  /**
+   * Responses are parsed on the common fork join pool.
+   *
+   * @param props required properties
+   * @see HttpTdaClient#HttpTdaClient(Properties)
+   */
+  public HttpAsyncTdaClient(Properties props) {
+    this(props, ForkJoinPool.commonPool());
+  }
+
+  /**
+   * @param props required properties
+   * @param executor executor that response bodies will be parsed on
+   * @see HttpTdaClient#HttpTdaClient(Properties)
+   */
+  public HttpAsyncTdaClient(Properties props, Executor executor) {
+    this(new HttpTdaClient(props), executor);
+  }
+
+  /**
+   * Wrap an existing blocking client so that both share the same OAuth token and connection pool.
+   *
+   * @param client the blocking client whose configuration will be used
+   * @param executor executor that response bodies will be parsed on
+   */
+  public HttpAsyncTdaClient(HttpTdaClient client, Executor executor) {
+    if (client == null || executor == null) {
+      throw new IllegalArgumentException("client and executor cannot be null");
+    }
+    LOGGER.info("Initiating HttpAsyncTdaClient...");
+    this.client = client;
+    this.executor = executor;
+
+    Dispatcher dispatcher = new Dispatcher();
+    dispatcher.setMaxRequests(
+        Integer.parseInt(client.tdaProps.getProperty("tda.async.maxRequests")));
+    dispatcher.setMaxRequestsPerHost(
+        Integer.parseInt(client.tdaProps.getProperty("tda.async.maxRequestsPerHost")));
+    this.httpClient = client.httpClient.newBuilder().dispatcher(dispatcher).build();
+  }
+
+  @Override
+  public CompletableFuture<PriceHistory> priceHistory(String symbol) {
+    return validated(() -> {
+      Request request = client.buildPriceHistoryRequest(symbol);
+      return enqueue(request, false,
+          response -> client.tdaJsonParser.parsePriceHistory(response.body().byteStream()));
+    });
+  }
+
+  @Override
+  public CompletableFuture<PriceHistory> priceHistory(PriceHistReq priceHistReq) {
+    return validated(() -> {
+      Request request = client.buildPriceHistoryRequest(priceHistReq);
+      return enqueue(request, false,
+          response -> client.tdaJsonParser.parsePriceHistory(response.body().byteStream()));
+    });
+  }
+
+  @Override
+  public CompletableFuture<CandleSeries> priceHistorySeries(String symbol) {
+    return validated(() -> {
+      Request request = client.buildPriceHistoryRequest(symbol);
+      return enqueue(request, false,
+          response -> client.tdaJsonParser.parseCandleSeries(response.body().byteStream()));
+    });
+  }
+
+  @Override
+  public CompletableFuture<CandleSeries> priceHistorySeries(PriceHistReq priceHistReq) {
+    return validated(() -> {
+      Request request = client.buildPriceHistoryRequest(priceHistReq);
+      return enqueue(request, false,
+          response -> client.tdaJsonParser.parseCandleSeries(response.body().byteStream()));
+    });
+  }
+
+  @Override
+  public CompletableFuture<List<Quote>> fetchQuotes(List<String> symbols) {
+    return validated(() -> {
+      List<List<String>> chunks = QuoteChunks.split(symbols, client.quoteChunkSize());
+      return client.responseCache.get(CacheEndpoint.QUOTES, String.join(",", symbols),
+          () -> fetchQuoteChunks(symbols, chunks)
+              .thenApply(batch -> Collections.unmodifiableList(
+                  QuoteChunks.quotesOrThrow(batch, chunks.size()))));
+    });
+  }
+
+  @Override
+  public CompletableFuture<QuoteBatch> fetchQuoteBatch(List<String> symbols) {
+    return validated(
+        () -> fetchQuoteChunks(symbols, QuoteChunks.split(symbols, client.quoteChunkSize())));
+  }
+
+  private CompletableFuture<QuoteBatch> fetchQuoteChunks(List<String> symbols,
+      List<List<String>> chunks) {
+    List<CompletableFuture<Map<String, Quote>>> results = new ArrayList<>(chunks.size());
+    for (List<String> chunk : chunks) {
+      Request request = client.buildQuotesRequest(chunk);
+      results.add(enqueue(request, false,
+          response -> client.tdaJsonParser.parseQuotesMap(response.body().byteStream())));
+    }
+    return CompletableFuture.allOf(results.toArray(new CompletableFuture<?>[0]))
+        .handle((v, e) -> QuoteChunks.merge(symbols, chunks, results));
+  }
+
+  @Override
+  public CompletableFuture<Quote> fetchQuote(String symbol) {
+    return fetchQuotes(Collections.singletonList(symbol)).thenApply(quotes -> quotes.get(0));
+  }
+
+  @Override
+  public CompletableFuture<SecuritiesAccount> getAccount(String accountId, boolean positions,
+      boolean orders) {
+    return validated(() -> {
+      Request request = client.buildAccountRequest(accountId, positions, orders);
+      return enqueue(request, false,
+          response -> client.tdaJsonParser.parseAccount(response.body().byteStream()));
+    });
+  }
+
+  @Override
+  public CompletableFuture<List<SecuritiesAccount>> getAccounts(boolean positions,
+      boolean orders) {
+    return validated(() -> {
+      Request request = client.buildAccountsRequest(positions, orders);
+      return enqueue(request, false,
+          response -> client.tdaJsonParser.parseAccounts(response.body().byteStream()));
+    });
+  }
+
+  @Override
+  public CompletableFuture<Void> placeOrder(String accountId, Order order) {
+    return validated(() -> {
+      Request request = client.buildPlaceOrderRequest(accountId, order);
+      return enqueue(request, false, response -> {
+        if (response.code() != 201) {
+          LOGGER.warn("Expected 201 response, but received " + response.code());
+        }
+        return null;
+      });
+    });
+  }
+
+  @Override
+  public CompletableFuture<List<Order>> fetchOrders(String accountId, OrderRequest orderRequest) {
+    return validated(() -> {
+      Request request = client.buildOrdersRequest(accountId, orderRequest);
+      return enqueue(request, false,
+          response -> client.tdaJsonParser.parseOrders(response.body().byteStream()));
+    });
+  }
+
+  @Override
+  public CompletableFuture<List<Order>> fetchOrders(OrderRequest orderRequest) {
+    return validated(() -> {
+      Request request = client.buildOrdersRequest(orderRequest);
+      return enqueue(request, false,
+          response -> client.tdaJsonParser.parseOrders(response.body().byteStream()));
+    });
+  }
+
+  @Override
+  public CompletableFuture<List<Order>> fetchOrders() {
+    return validated(() -> {
+      Request request = client.buildOrdersRequest();
+      return enqueue(request, false,
+          response -> client.tdaJsonParser.parseOrders(response.body().byteStream()));
+    });
+  }
+
+  @Override
+  public CompletableFuture<Order> fetchOrder(String accountId, Long orderId) {
+    return validated(() -> {
+      Request request = client.buildOrderRequest(accountId, orderId);
+      return enqueue(request, false,
+          response -> client.tdaJsonParser.parseOrder(response.body().byteStream()));
+    });
+  }
+
+  @Override
+  public CompletableFuture<Void> cancelOrder(String accountId, String orderId) {
+    return validated(() -> {
+      Request request = client.buildCancelOrderRequest(accountId, orderId);
+      return enqueue(request, false, response -> null);
+    });
+  }
+
+  @Override
+  public CompletableFuture<Instrument> getInstrumentByCUSIP(String cusip) {
+    return validated(() -> {
+      Request request = client.buildInstrumentByCusipRequest(cusip);
+      return client.responseCache.get(CacheEndpoint.INSTRUMENT, request.url().toString(),
+          () -> enqueue(request, false, response ->
+              client.tdaJsonParser.parseInstrumentArraySingle(response.body().byteStream())));
+    });
+  }
+
+  @Override
+  public CompletableFuture<Instrument> getBond(String cusip) {
+    return getInstrumentByCUSIP(cusip);
+  }
+
+  @Override
+  public CompletableFuture<List<Instrument>> queryInstruments(Query query) {
+    return validated(() -> {
+      Request request = client.buildQueryInstrumentsRequest(query);
+      return enqueue(request, false,
+          response -> client.tdaJsonParser.parseInstrumentMap(response.body().byteStream()));
+    });
+  }
+
+  @Override
+  public CompletableFuture<FullInstrument> getFundamentalData(String id) {
+    return validated(() -> {
+      Request request = client.buildFundamentalDataRequest(id);
+      return client.responseCache.get(CacheEndpoint.FUNDAMENTAL, request.url().toString(),
+          () -> enqueue(request, false, response -> HttpTdaClient.singleFullInstrument(
+              client.tdaJsonParser.parseFullInstrumentMap(response.body().byteStream()))));
+    });
+  }
+
+  @Override
+  public CompletableFuture<List<Mover>> fetchMovers(MoversReq moversReq) {
+    return validated(() -> {
+      Request request = client.buildMoversRequest(moversReq);
+      return client.responseCache.get(CacheEndpoint.MOVERS, request.url().toString(),
+          () -> enqueue(request, true,
+              response -> Collections.unmodifiableList(
+                  client.tdaJsonParser.parseMovers(response.body().byteStream()))));
+    });
+  }
+
+  @Override
+  public CompletableFuture<OptionChain> getOptionChain(String symbol) {
+    return validated(() -> {
+      Request request = client.buildOptionChainRequest(symbol);
+      return enqueue(request, false,
+          response -> client.tdaJsonParser.parseOptionChain(response.body().byteStream()));
+    });
+  }
+
+  @Override
+  public CompletableFuture<OptionChain> getOptionChain(OptionChainReq optionChainReq) {
+    return validated(() -> {
+      Request request = client.buildOptionChainRequest(optionChainReq);
+      return enqueue(request, false,
+          response -> client.tdaJsonParser.parseOptionChain(response.body().byteStream()));
+    });
+  }
+
+  @Override
+  public CompletableFuture<IndexedOptionChain> getIndexedOptionChain(
+      OptionChainReq optionChainReq) {
+    return validated(() -> {
+      Request request = client.buildOptionChainRequest(optionChainReq);
+      return enqueue(request, false,
+          response -> client.tdaJsonParser.parseIndexedOptionChain(response.body().byteStream()));
+    });
+  }
+
+  @Override
+  public CompletableFuture<List<Transaction>> fetchTransactions(String accountId) {
+    return fetchTransactions(accountId, null);
+  }
+
+  @Override
+  public CompletableFuture<List<Transaction>> fetchTransactions(String accountId,
+      TransactionRequest request) {
+    return validated(() -> {
+      Request httpReq = client.buildTransactionsRequest(accountId, request);
+      return enqueue(httpReq, true,
+          response -> client.tdaJsonParser.parseTransactions(response.body().byteStream()));
+    });
+  }
+
+  @Override
+  public CompletableFuture<Transaction> getTransaction(String accountId, Long transactionId) {
+    return validated(() -> {
+      Request request = client.buildTransactionRequest(accountId, transactionId);
+      return enqueue(request, false,
+          response -> client.tdaJsonParser.parseTransaction(response.body().byteStream()));
+    });
+  }
+
+  @Override
+  public CompletableFuture<Preferences> getPreferences(String accountId) {
+    return validated(() -> {
+      Request request = client.buildPreferencesRequest(accountId);
+      return client.responseCache.get(CacheEndpoint.PREFERENCES, request.url().toString(),
+          () -> enqueue(request, false,
+              response -> client.tdaJsonParser.parsePreferences(response.body().byteStream())));
+    });
+  }
+
+  @Override
+  public CompletableFuture<UserPrincipals> getUserPrincipals() {
+    return getUserPrincipals(new UserPrincipals.Field[0]);
+  }
+
+  @Override
+  public CompletableFuture<UserPrincipals> getUserPrincipals(UserPrincipals.Field... fields) {
+    return validated(() -> {
+      Request request = client.buildUserPrincipalsRequest(fields);
+      return client.responseCache.get(CacheEndpoint.USER_PRINCIPALS, request.url().toString(),
+          () -> enqueue(request, false,
+              response -> client.tdaJsonParser.parseUserPrincipals(response.body().byteStream())));
+    });
+  }
+
+  /**
+   * Run the call, returning a failed future instead of throwing if its arguments are invalid, so
+   * every error reaches the caller the same way.
+   *
+   * @param call builds and enqueues the request
+   * @param <T> the parsed type
+   * @return future of the call
+   */
+  private static <T> CompletableFuture<T> validated(Supplier<CompletableFuture<T>> call) {
+    try {
+      return call.get();
+    } catch (RuntimeException e) {
+      CompletableFuture<T> failed = new CompletableFuture<>();
+      failed.completeExceptionally(e);
+      return failed;
+    }
+  }
+
+  /**
+   * Enqueue the request once the rate limiter grants it a token and complete the returned future
+   * with the parsed response. The response is always closed once the handler returns.
+   *
+   * @param request the HTTP request
+   * @param emptyJsonOk whether an empty JSON object or array is a valid response
+   * @param handler parses the body of a successful response, run on {@link #executor}
+   * @param <T> the parsed type
+   * @return future of the parsed response
+   */
+  <T> CompletableFuture<T> enqueue(Request request, boolean emptyJsonOk,
+      ResponseHandler<T> handler) {
+    final Call call = this.httpClient.newCall(HttpTdaClient.acquired(request));
+    final CompletableFuture<Void> token = client.acquireAsync(request);
+    final CompletableFuture<T> future = new CompletableFuture<T>() {
+      @Override
+      public boolean cancel(boolean mayInterruptIfRunning) {
+        token.cancel(false);
+        call.cancel();
+        return super.cancel(mayInterruptIfRunning);
+      }
+    };
+
+    HttpTdaClient.enqueueWhenGranted(token, call, new Callback() {
+      @Override
+      public void onFailure(Call call, IOException e) {
+        future.completeExceptionally(new RuntimeException(e));
+      }
+
+      @Override
+      public void onResponse(Call call, Response response) {
+        try {
+          executor.execute(() -> handle(response, emptyJsonOk, handler, future));
+        } catch (RejectedExecutionException e) {
+          response.close();
+          future.completeExceptionally(e);
+        }
+      }
+    });
+    return future;
+  }
+
+  private static <T> void handle(Response response, boolean emptyJsonOk,
+      ResponseHandler<T> handler, CompletableFuture<T> future) {
+    try (Response r = response) {
+      HttpTdaClient.checkResponse(r, emptyJsonOk);
+      future.complete(handler.handle(r));
+    } catch (IOException e) {
+      future.completeExceptionally(new RuntimeException(e));
+    } catch (RuntimeException e) {
+      future.completeExceptionally(e);
+    }
+  }
+
+  /**
+   * Converts a successful HTTP response into the result of the future.
+   *
+   * @param <T> the parsed type
+   */
+  @FunctionalInterface
+  interface ResponseHandler<T> {
+
+    T handle(Response response) throws IOException;
+  }
+}
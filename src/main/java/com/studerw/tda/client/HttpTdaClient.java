@@ -1,12 +1,20 @@
 package com.studerw.tda.client;
 
 import com.studerw.tda.http.LoggingInterceptor;
+import com.studerw.tda.http.RateLimitInterceptor;
+import com.studerw.tda.http.RateLimitTag;
+import com.studerw.tda.http.RequestLane;
+import com.studerw.tda.http.RequestScheduler;
+import com.studerw.tda.http.cache.CacheEndpoint;
+import com.studerw.tda.http.cache.LruResponseCache;
+import com.studerw.tda.http.cache.ResponseCache;
 import com.studerw.tda.http.cookie.CookieJarImpl;
 import com.studerw.tda.http.cookie.store.MemoryCookieStore;
 import com.studerw.tda.model.account.Order;
 import com.studerw.tda.model.account.OrderRequest;
 import com.studerw.tda.model.account.OrderRequestValidator;
 import com.studerw.tda.model.account.SecuritiesAccount;
+import com.studerw.tda.model.history.CandleSeries;
 import com.studerw.tda.model.history.PriceHistReq;
 import com.studerw.tda.model.history.PriceHistReqValidator;
 import com.studerw.tda.model.history.PriceHistory;
@@ -15,8 +23,12 @@ import com.studerw.tda.model.instrument.Instrument;
 import com.studerw.tda.model.instrument.Query;
 import com.studerw.tda.model.marketdata.Mover;
 import com.studerw.tda.model.marketdata.MoversReq;
+import com.studerw.tda.model.option.IndexedOptionChain;
 import com.studerw.tda.model.option.OptionChain;
+import com.studerw.tda.model.option.OptionChainReq;
+import com.studerw.tda.model.option.OptionChainReqValidator;
 import com.studerw.tda.model.quote.Quote;
+import com.studerw.tda.model.quote.QuoteBatch;
 import com.studerw.tda.model.transaction.Transaction;
 import com.studerw.tda.model.transaction.TransactionRequest;
 import com.studerw.tda.model.transaction.TransactionRequestValidator;
@@ -31,7 +43,14 @@ import java.io.InputStream;
 import java.net.URL;
 import java.time.format.DateTimeFormatter;
 import java.util.*;
-
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.TimeUnit;
+import java.util.function.Consumer;
+import java.util.function.Supplier;
+
+import okhttp3.Call;
+import okhttp3.Callback;
 import okhttp3.Headers;
 import okhttp3.HttpUrl;
 import okhttp3.HttpUrl.Builder;
@@ -41,6 +60,7 @@ import okhttp3.Request;
 import okhttp3.RequestBody;
 import okhttp3.Response;
 import org.apache.commons.lang3.StringUtils;
+import org.apache.commons.lang3.math.NumberUtils;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 
@@ -60,6 +80,8 @@ public class HttpTdaClient implements TdaClient {
 
   final TdaJsonParser tdaJsonParser = new TdaJsonParser();
   final OkHttpClient httpClient;
+  final RequestScheduler requestScheduler;
+  final ResponseCache responseCache;
 
   Properties tdaProps;
   private HttpUrl httpUrl;
@@ -72,6 +94,15 @@ public class HttpTdaClient implements TdaClient {
    *   <li>tda.client_id (or sometimes referenced as <em>Consumer Key</em> and it should not have <em>@AMER.OAUTHAP</em> appended</li>
    *   <li>tda.url=<em>https://api.tdameritrade.com/v1</em></li>
    *   <li>tda.debug.bytes.length=<em>-1</em> (How many bytes of logging interceptor debug to print, -1 is unlimited)</li>
+   *   <li>tda.async.maxRequests=<em>64</em> (Max concurrent calls when used by {@link HttpAsyncTdaClient})</li>
+   *   <li>tda.async.maxRequestsPerHost=<em>16</em> (Max concurrent calls per host when used by {@link HttpAsyncTdaClient})</li>
+   *   <li>tda.token.eager=<em>true</em> (Request an OAuth token in the background as soon as the client is created)</li>
+   *   <li>tda.quotes.chunkSize=<em>100</em> (Max symbols per quote request, larger lists are split and fetched concurrently)</li>
+   *   <li>tda.ratelimit.perMinute=<em>120</em> (Sustained number of requests sent per minute)</li>
+   *   <li>tda.ratelimit.burst=<em>5</em> (Number of requests that may be sent back to back after being idle)</li>
+   *   <li>tda.ratelimit.maxRetries=<em>3</em> (How many times a request rejected with a 429 is queued again)</li>
+   *   <li>tda.cache.maxEntries=<em>1000</em> (Max responses kept by the response cache, 0 disables it)</li>
+   *   <li>tda.cache.ttl.*=<em>seconds</em> (How long responses of each {@link CacheEndpoint} are cached, e.g. <em>tda.cache.ttl.movers=10</em>)</li>
    * </ul>
    *
    * <p>There are no defaults for the <em>tda.token.refresh</em> and <em>tda.client_id</em> (your consumer key).
@@ -95,6 +126,15 @@ public class HttpTdaClient implements TdaClient {
    *   <li>tda.client_id</li>
    *   <li>tda.url=<em>https://api.tdameritrade.com/v1</em></li>
    *   <li>tda.debug.bytes.length=<em>-1</em> (How many bytes of logging interceptor debug to print, -1 is unlimited)</li>
+   *   <li>tda.async.maxRequests=<em>64</em> (Max concurrent calls when used by {@link HttpAsyncTdaClient})</li>
+   *   <li>tda.async.maxRequestsPerHost=<em>16</em> (Max concurrent calls per host when used by {@link HttpAsyncTdaClient})</li>
+   *   <li>tda.token.eager=<em>true</em> (Request an OAuth token in the background as soon as the client is created)</li>
+   *   <li>tda.quotes.chunkSize=<em>100</em> (Max symbols per quote request, larger lists are split and fetched concurrently)</li>
+   *   <li>tda.ratelimit.perMinute=<em>120</em> (Sustained number of requests sent per minute)</li>
+   *   <li>tda.ratelimit.burst=<em>5</em> (Number of requests that may be sent back to back after being idle)</li>
+   *   <li>tda.ratelimit.maxRetries=<em>3</em> (How many times a request rejected with a 429 is queued again)</li>
+   *   <li>tda.cache.maxEntries=<em>1000</em> (Max responses kept by the response cache, 0 disables it)</li>
+   *   <li>tda.cache.ttl.*=<em>seconds</em> (How long responses of each {@link CacheEndpoint} are cached, e.g. <em>tda.cache.ttl.movers=10</em>)</li>
    * </ul>
    *
    * <p>There are no defaults for <em>tda.token.refresh</em> and <em>tda.client_id</em> (<em>consumer key)</em>. If they
@@ -105,17 +145,54 @@ public class HttpTdaClient implements TdaClient {
    * @param props required properties
    */
   public HttpTdaClient(Properties props) {
+    this(props, null);
+  }
+
+  /**
+   * Use a custom response cache instead of the {@link LruResponseCache} configured by the
+   * <em>tda.cache.*</em> properties.
+   *
+   * @param props required properties
+   * @param responseCache cache of the calls listed in {@link CacheEndpoint}, or null for the
+   * default
+   * @see #HttpTdaClient(Properties)
+   */
+  public HttpTdaClient(Properties props, ResponseCache responseCache) {
     LOGGER.info("Initiating HttpTdaClient...");
 
     this.tdaProps = (props == null) ? initTdaProps() : props;
     validateProps(this.tdaProps);
+    this.responseCache =
+        (responseCache == null) ? initResponseCache(this.tdaProps) : responseCache;
+
+    this.requestScheduler = new RequestScheduler(
+        Integer.parseInt(tdaProps.getProperty("tda.ratelimit.perMinute")),
+        Integer.parseInt(tdaProps.getProperty("tda.ratelimit.burst")));
 
-    this.httpClient = new OkHttpClient.Builder().
+    //token requests bypass the interceptors, but share the connection pool
+    final OkHttpClient authClient = new OkHttpClient.Builder().
         cookieJar(new CookieJarImpl(new MemoryCookieStore())).
-        addInterceptor(new OauthInterceptor(this, tdaProps)).
+        build();
+
+    final OauthInterceptor oauthInterceptor = new OauthInterceptor(this, tdaProps, authClient);
+    this.httpClient = authClient.newBuilder().
+        addInterceptor(new RateLimitInterceptor(requestScheduler,
+            Integer.parseInt(tdaProps.getProperty("tda.ratelimit.maxRetries")))).
+        addInterceptor(oauthInterceptor).
         addInterceptor(new LoggingInterceptor("TDA_HTTP",
             Integer.parseInt(tdaProps.getProperty("tda.debug.bytes.length")))).
         build();
+    oauthInterceptor.start();
+  }
+
+  protected static ResponseCache initResponseCache(Properties tdaProps) {
+    LruResponseCache.Builder builder = LruResponseCache.Builder.lruResponseCache()
+        .withMaxEntries(Integer.parseInt(tdaProps.getProperty("tda.cache.maxEntries")));
+    for (CacheEndpoint endpoint : CacheEndpoint.values()) {
+      builder.withTtl(endpoint, Long.parseLong(tdaProps.getProperty(endpoint.getProperty())),
+          TimeUnit.SECONDS);
+    }
+    return builder.build();
   }
 
   protected static Properties initTdaProps() {
@@ -158,18 +235,105 @@ public class HttpTdaClient implements TdaClient {
     if (tdaProps.get("tda.debug.bytes.length") == null) {
       tdaProps.setProperty("tda.debug.bytes.length", "-1");
     }
+
+    if (tdaProps.get("tda.async.maxRequests") == null) {
+      tdaProps.setProperty("tda.async.maxRequests", "64");
+    }
+
+    if (tdaProps.get("tda.async.maxRequestsPerHost") == null) {
+      tdaProps.setProperty("tda.async.maxRequestsPerHost", "16");
+    }
+
+    if (tdaProps.get("tda.token.eager") == null) {
+      tdaProps.setProperty("tda.token.eager", "true");
+    }
+
+    if (tdaProps.get("tda.quotes.chunkSize") == null) {
+      tdaProps.setProperty("tda.quotes.chunkSize", "100");
+    }
+    if (NumberUtils.toInt(tdaProps.getProperty("tda.quotes.chunkSize")) < 1) {
+      throw new IllegalArgumentException("tda.quotes.chunkSize must be a positive number");
+    }
+
+    if (tdaProps.get("tda.ratelimit.perMinute") == null) {
+      tdaProps.setProperty("tda.ratelimit.perMinute", "120");
+    }
+
+    if (tdaProps.get("tda.ratelimit.burst") == null) {
+      tdaProps.setProperty("tda.ratelimit.burst", "5");
+    }
+
+    if (tdaProps.get("tda.ratelimit.maxRetries") == null) {
+      tdaProps.setProperty("tda.ratelimit.maxRetries", "3");
+    }
+
+    if (tdaProps.get("tda.cache.maxEntries") == null) {
+      tdaProps.setProperty("tda.cache.maxEntries", "1000");
+    }
+
+    for (CacheEndpoint endpoint : CacheEndpoint.values()) {
+      if (tdaProps.get(endpoint.getProperty()) == null) {
+        tdaProps.setProperty(endpoint.getProperty(),
+            String.valueOf(endpoint.getDefaultTtlSeconds()));
+      }
+    }
+  }
+
+  /**
+   * The scheduler shared by all requests of this client (including any {@link HttpAsyncTdaClient}
+   * wrapping it), which exposes queue depth and wait time per {@link RequestLane}.
+   *
+   * @return the request scheduler
+   */
+  public RequestScheduler getRequestScheduler() {
+    return requestScheduler;
+  }
+
+  /**
+   * The response cache shared by all requests of this client (including any {@link
+   * HttpAsyncTdaClient} wrapping it), which exposes hit and miss counters per {@link
+   * CacheEndpoint}.
+   *
+   * @return the response cache
+   */
+  public ResponseCache getResponseCache() {
+    return responseCache;
+  }
+
+  /**
+   * Answer from the response cache, or make the call on the calling thread. Concurrent identical
+   * requests wait for the call in flight.
+   */
+  private <T> T cached(CacheEndpoint endpoint, String key, Supplier<T> call) {
+    try {
+      return responseCache.get(endpoint, key,
+          () -> CompletableFuture.completedFuture(call.get())).join();
+    } catch (CompletionException e) {
+      Throwable cause = e.getCause();
+      if (cause instanceof RuntimeException) {
+        throw (RuntimeException) cause;
+      }
+      if (cause instanceof Error) {
+        throw (Error) cause;
+      }
+      throw new RuntimeException(cause);
+    }
   }
 
   @Override
   public PriceHistory priceHistory(String symbol) {
-    symbol = StringUtils.upperCase(symbol);
-    LOGGER.info("price history for symbol: {}", symbol);
-    if (StringUtils.isBlank(symbol)) {
-      throw new IllegalArgumentException("symbol cannot be empty");
+    Request request = buildPriceHistoryRequest(symbol);
+    try (Response response = this.httpClient.newCall(request).execute()) {
+      checkResponse(response, false);
+      return tdaJsonParser.parsePriceHistory(response.body().byteStream());
+    } catch (IOException e) {
+      throw new RuntimeException(e);
     }
+  }
 
-    HttpUrl url = baseUrl("marketdata", symbol, "pricehistory").build();
-    Request request = new Request.Builder().url(url).headers(defaultHeaders()).build();
+  @Override
+  public PriceHistory priceHistory(PriceHistReq priceHistReq) {
+    Request request = buildPriceHistoryRequest(priceHistReq);
     try (Response response = this.httpClient.newCall(request).execute()) {
       checkResponse(response, false);
       return tdaJsonParser.parsePriceHistory(response.body().byteStream());
@@ -179,7 +343,39 @@ public class HttpTdaClient implements TdaClient {
   }
 
   @Override
-  public PriceHistory priceHistory(PriceHistReq priceHistReq) {
+  public CandleSeries priceHistorySeries(String symbol) {
+    Request request = buildPriceHistoryRequest(symbol);
+    try (Response response = this.httpClient.newCall(request).execute()) {
+      checkResponse(response, false);
+      return tdaJsonParser.parseCandleSeries(response.body().byteStream());
+    } catch (IOException e) {
+      throw new RuntimeException(e);
+    }
+  }
+
+  @Override
+  public CandleSeries priceHistorySeries(PriceHistReq priceHistReq) {
+    Request request = buildPriceHistoryRequest(priceHistReq);
+    try (Response response = this.httpClient.newCall(request).execute()) {
+      checkResponse(response, false);
+      return tdaJsonParser.parseCandleSeries(response.body().byteStream());
+    } catch (IOException e) {
+      throw new RuntimeException(e);
+    }
+  }
+
+  Request buildPriceHistoryRequest(String symbol) {
+    symbol = StringUtils.upperCase(symbol);
+    LOGGER.info("price history for symbol: {}", symbol);
+    if (StringUtils.isBlank(symbol)) {
+      throw new IllegalArgumentException("symbol cannot be empty");
+    }
+
+    HttpUrl url = baseUrl("marketdata", symbol, "pricehistory").build();
+    return newRequestBuilder(RequestLane.BULK).url(url).headers(defaultHeaders()).build();
+  }
+
+  Request buildPriceHistoryRequest(PriceHistReq priceHistReq) {
     LOGGER.info("PriceHistory: {}", priceHistReq);
     List<String> violations = PriceHistReqValidator.validate(priceHistReq);
     if (violations.size() > 0) {
@@ -210,35 +406,147 @@ public class HttpTdaClient implements TdaClient {
           String.valueOf(priceHistReq.getExtendedHours()));
     }
 
-    Request request = new Request.Builder().url(urlBuilder.build()).
+    return newRequestBuilder(RequestLane.BULK).url(urlBuilder.build()).
         headers(defaultHeaders())
         .build();
+  }
+
+  @Override
+  public List<Quote> fetchQuotes(List<String> symbols) {
+    List<List<String>> chunks = QuoteChunks.split(symbols, quoteChunkSize());
+    return cached(CacheEndpoint.QUOTES, String.join(",", symbols),
+        () -> Collections.unmodifiableList(
+            QuoteChunks.quotesOrThrow(fetchQuoteChunks(symbols, chunks), chunks.size())));
+  }
+
+  @Override
+  public int fetchQuotes(List<String> symbols, Consumer<? super Quote> consumer) {
+    if (consumer == null) {
+      throw new IllegalArgumentException("consumer cannot be null");
+    }
+    int count = 0;
+    for (List<String> chunk : QuoteChunks.split(symbols, quoteChunkSize())) {
+      Request request = buildQuotesRequest(chunk);
+      try (Response response = this.httpClient.newCall(request).execute()) {
+        checkResponse(response, false);
+        count += tdaJsonParser.parseQuotes(response.body().byteStream(), consumer);
+      } catch (IOException e) {
+        throw new RuntimeException(e);
+      }
+    }
+    return count;
+  }
+
+  @Override
+  public QuoteBatch fetchQuoteBatch(List<String> symbols) {
+    return fetchQuoteChunks(symbols, QuoteChunks.split(symbols, quoteChunkSize()));
+  }
 
+  /**
+   * A single chunk is fetched on the calling thread. Otherwise all chunks are enqueued at once and
+   * the rate limiter decides how fast they actually go out.
+   */
+  private QuoteBatch fetchQuoteChunks(List<String> symbols, List<List<String>> chunks) {
+    List<CompletableFuture<Map<String, Quote>>> results = new ArrayList<>(chunks.size());
+    if (chunks.size() == 1) {
+      results.add(executeQuoteChunk(chunks.get(0)));
+    } else {
+      chunks.forEach(chunk -> results.add(enqueueQuoteChunk(chunk)));
+    }
+    return QuoteChunks.merge(symbols, chunks, results);
+  }
+
+  private CompletableFuture<Map<String, Quote>> executeQuoteChunk(List<String> chunk) {
+    CompletableFuture<Map<String, Quote>> future = new CompletableFuture<>();
+    Request request = buildQuotesRequest(chunk);
     try (Response response = this.httpClient.newCall(request).execute()) {
       checkResponse(response, false);
-      return tdaJsonParser.parsePriceHistory(response.body().byteStream());
+      future.complete(tdaJsonParser.parseQuotesMap(response.body().byteStream()));
     } catch (IOException e) {
-      throw new RuntimeException(e);
+      future.completeExceptionally(new RuntimeException(e));
+    } catch (RuntimeException e) {
+      future.completeExceptionally(e);
     }
+    return future;
   }
 
-  @Override
-  public List<Quote> fetchQuotes(List<String> symbols) {
+  private CompletableFuture<Map<String, Quote>> enqueueQuoteChunk(List<String> chunk) {
+    CompletableFuture<Map<String, Quote>> future = new CompletableFuture<>();
+    Request request = buildQuotesRequest(chunk);
+    Call call = this.httpClient.newCall(acquired(request));
+    enqueueWhenGranted(acquireAsync(request), call, new Callback() {
+      @Override
+      public void onFailure(Call call, IOException e) {
+        future.completeExceptionally(new RuntimeException(e));
+      }
+
+      @Override
+      public void onResponse(Call call, Response response) {
+        try (Response r = response) {
+          checkResponse(r, false);
+          future.complete(tdaJsonParser.parseQuotesMap(r.body().byteStream()));
+        } catch (RuntimeException e) {
+          future.completeExceptionally(e);
+        }
+      }
+    });
+    return future;
+  }
+
+  /**
+   * Wait for the rate limit token of the request without holding a thread. Calls are only enqueued
+   * once it is granted, see {@link #enqueueWhenGranted(CompletableFuture, Call, Callback)}: waiting
+   * for the token inside the {@link RateLimitInterceptor} would hold an OkHttp dispatcher thread,
+   * and a PRIORITY call would then sit in the dispatcher's queue behind the BULK calls holding
+   * them.
+   *
+   * @param request the request to wait for
+   * @return future completed when the token is granted, cancel it to give up the place in the lane
+   */
+  CompletableFuture<Void> acquireAsync(Request request) {
+    RateLimitTag tag = RateLimitTag.of(request);
+    return requestScheduler.acquireAsync(tag.getLane(), tag.getCaller());
+  }
+
+  /**
+   * @param token the wait for the token of the call's request
+   * @param call a call of a request tagged with {@link #acquired(Request)}
+   * @param callback receives the response, or the failure if the wait for the token is cancelled
+   */
+  static void enqueueWhenGranted(CompletableFuture<Void> token, Call call, Callback callback) {
+    token.whenComplete((v, e) -> {
+      if (e == null) {
+        call.enqueue(callback);
+      } else {
+        callback.onFailure(call, new IOException("Gave up waiting for a rate limit token", e));
+      }
+    });
+  }
+
+  /**
+   * @param request a request to be sent once its token is granted
+   * @return the same request, tagged so the {@link RateLimitInterceptor} does not wait for a token
+   * a second time
+   */
+  static Request acquired(Request request) {
+    return request.newBuilder()
+        .tag(RateLimitTag.class, RateLimitTag.of(request).acquired())
+        .build();
+  }
+
+  int quoteChunkSize() {
+    return Integer.parseInt(tdaProps.getProperty("tda.quotes.chunkSize"));
+  }
+
+  Request buildQuotesRequest(List<String> symbols) {
     LOGGER.info("Fetching quotes: {}", symbols);
     HttpUrl url = baseUrl("marketdata", "quotes")
         .addQueryParameter("symbol", String.join(",", symbols))
         .build();
 
-    Request request = new Request.Builder().url(url)
+    return newRequestBuilder(RequestLane.DEFAULT).url(url)
         .headers(defaultHeaders())
         .build();
-
-    try (Response response = this.httpClient.newCall(request).execute()) {
-      checkResponse(response, false);
-      return tdaJsonParser.parseQuotes(response.body().byteStream());
-    } catch (IOException e) {
-      throw new RuntimeException(e);
-    }
   }
 
   @Override
@@ -249,6 +557,16 @@ public class HttpTdaClient implements TdaClient {
 
   @Override
   public SecuritiesAccount getAccount(String accountId, boolean positions, boolean orders) {
+    Request request = buildAccountRequest(accountId, positions, orders);
+    try (Response response = this.httpClient.newCall(request).execute()) {
+      checkResponse(response, false);
+      return tdaJsonParser.parseAccount(response.body().byteStream());
+    } catch (IOException e) {
+      throw new RuntimeException(e);
+    }
+  }
+
+  Request buildAccountRequest(String accountId, boolean positions, boolean orders) {
     LOGGER.info("GetAccount[id={}], positions={}, orders={}", accountId, positions, orders);
     if (StringUtils.isBlank(accountId)) {
       throw new IllegalArgumentException("accountId cannot be blank.");
@@ -266,20 +584,24 @@ public class HttpTdaClient implements TdaClient {
       accountsBldr.addQueryParameter("fields", String.join(",", args));
     }
     final URL url = accountsBldr.build().url();
-    final Request request = new Request.Builder().url(url)
+    return newRequestBuilder(RequestLane.DEFAULT).url(url)
         .headers(defaultHeaders())
         .build();
+  }
 
+  @Override
+  public List<SecuritiesAccount> getAccounts(boolean positions, boolean orders) {
+    Request request = buildAccountsRequest(positions, orders);
     try (Response response = this.httpClient.newCall(request).execute()) {
       checkResponse(response, false);
-      return tdaJsonParser.parseAccount(response.body().byteStream());
+      return tdaJsonParser.parseAccounts(response.body().byteStream());
     } catch (IOException e) {
       throw new RuntimeException(e);
     }
+
   }
 
-  @Override
-  public List<SecuritiesAccount> getAccounts(boolean positions, boolean orders) {
+  Request buildAccountsRequest(boolean positions, boolean orders) {
     LOGGER.info("GetAccount positions={}, orders={}", positions, orders);
     List<String> args = new ArrayList<>();
     if (positions) {
@@ -294,21 +616,26 @@ public class HttpTdaClient implements TdaClient {
       accountsBldr.addQueryParameter("fields", String.join(",", args));
     }
     final URL url = accountsBldr.build().url();
-    final Request request = new Request.Builder().url(url)
+    return newRequestBuilder(RequestLane.DEFAULT).url(url)
         .headers(defaultHeaders())
         .build();
+  }
 
+  @Override
+  public void placeOrder(String accountId, Order order) {
+    Request request = buildPlaceOrderRequest(accountId, order);
     try (Response response = this.httpClient.newCall(request).execute()) {
       checkResponse(response, false);
-      return tdaJsonParser.parseAccounts(response.body().byteStream());
+      if (response.code() != 201) {
+        LOGGER.warn("Expected 201 response, but received " + response.code());
+      }
     } catch (IOException e) {
       throw new RuntimeException(e);
     }
 
   }
 
-  @Override
-  public void placeOrder(String accountId, Order order) {
+  Request buildPlaceOrderRequest(String accountId, Order order) {
     LOGGER.info("Placing Order for account[{}] -> {}", accountId, order);
     if (StringUtils.isBlank(accountId)) {
       throw new IllegalArgumentException("accountId cannot be blank.");
@@ -319,24 +646,24 @@ public class HttpTdaClient implements TdaClient {
 
     String json = DefaultMapper.toJson(order);
     RequestBody body = RequestBody.create(MediaType.parse("application/json"), json);
-    Request request = new Request.Builder().url(url).
+    return newRequestBuilder(RequestLane.PRIORITY).url(url).
         headers(defaultHeaders())
         .post(body)
         .build();
+  }
 
+  @Override
+  public List<Order> fetchOrders(String accountId, OrderRequest orderRequest) {
+    Request request = buildOrdersRequest(accountId, orderRequest);
     try (Response response = this.httpClient.newCall(request).execute()) {
       checkResponse(response, false);
-      if (response.code() != 201) {
-        LOGGER.warn("Expected 201 response, but received " + response.code());
-      }
+      return tdaJsonParser.parseOrders(response.body().byteStream());
     } catch (IOException e) {
       throw new RuntimeException(e);
     }
-
   }
 
-  @Override
-  public List<Order> fetchOrders(String accountId, OrderRequest orderRequest) {
+  Request buildOrdersRequest(String accountId, OrderRequest orderRequest) {
     LOGGER.info("FetchOrders for account[{}] with request: {}", accountId, orderRequest);
 
     if (StringUtils.isBlank(accountId)) {
@@ -364,10 +691,14 @@ public class HttpTdaClient implements TdaClient {
       urlBuilder.addQueryParameter("status", orderRequest.getStatus().name());
     }
 
-    Request request = new Request.Builder().url(urlBuilder.build())
+    return newRequestBuilder(RequestLane.DEFAULT).url(urlBuilder.build())
         .headers(defaultHeaders())
         .build();
+  }
 
+  @Override
+  public List<Order> fetchOrders(OrderRequest orderRequest) {
+    Request request = buildOrdersRequest(orderRequest);
     try (Response response = this.httpClient.newCall(request).execute()) {
       checkResponse(response, false);
       return tdaJsonParser.parseOrders(response.body().byteStream());
@@ -376,8 +707,7 @@ public class HttpTdaClient implements TdaClient {
     }
   }
 
-  @Override
-  public List<Order> fetchOrders(OrderRequest orderRequest) {
+  Request buildOrdersRequest(OrderRequest orderRequest) {
     LOGGER.info("FetchOrders all orders with request: {}", orderRequest);
 
     List<String> violations = OrderRequestValidator.validate(orderRequest);
@@ -401,10 +731,14 @@ public class HttpTdaClient implements TdaClient {
       urlBuilder.addQueryParameter("status", orderRequest.getStatus().name());
     }
 
-    Request request = new Request.Builder().url(urlBuilder.build())
+    return newRequestBuilder(RequestLane.DEFAULT).url(urlBuilder.build())
         .headers(defaultHeaders())
         .build();
+  }
 
+  @Override
+  public List<Order> fetchOrders() {
+    Request request = buildOrdersRequest();
     try (Response response = this.httpClient.newCall(request).execute()) {
       checkResponse(response, false);
       return tdaJsonParser.parseOrders(response.body().byteStream());
@@ -413,25 +747,28 @@ public class HttpTdaClient implements TdaClient {
     }
   }
 
-  @Override
-  public List<Order> fetchOrders() {
+  Request buildOrdersRequest() {
     LOGGER.info("FetchOrders all orders.");
 
     Builder urlBuilder = baseUrl("orders");
-    Request request = new Request.Builder().url(urlBuilder.build())
+    return newRequestBuilder(RequestLane.DEFAULT).url(urlBuilder.build())
         .headers(defaultHeaders())
         .build();
+  }
 
+  @Override
+  public Order fetchOrder(String accountId, Long orderId) {
+    Request request = buildOrderRequest(accountId, orderId);
     try (Response response = this.httpClient.newCall(request).execute()) {
       checkResponse(response, false);
-      return tdaJsonParser.parseOrders(response.body().byteStream());
+      return tdaJsonParser.parseOrder(response.body().byteStream());
     } catch (IOException e) {
       throw new RuntimeException(e);
     }
+
   }
 
-  @Override
-  public Order fetchOrder(String accountId, Long orderId) {
+  Request buildOrderRequest(String accountId, Long orderId) {
     LOGGER.info("Fetching for account[{}] order[{}]", accountId, orderId);
 
     if (StringUtils.isBlank(accountId)) {
@@ -443,20 +780,21 @@ public class HttpTdaClient implements TdaClient {
     }
 
     Builder urlBuilder = baseUrl("accounts", accountId, "orders", String.valueOf(orderId));
-    Request request = new Request.Builder().url(urlBuilder.build()).headers(defaultHeaders())
+    return newRequestBuilder(RequestLane.DEFAULT).url(urlBuilder.build()).headers(defaultHeaders())
         .build();
+  }
 
+  @Override
+  public void cancelOrder(String accountId, String orderId) {
+    Request request = buildCancelOrderRequest(accountId, orderId);
     try (Response response = this.httpClient.newCall(request).execute()) {
       checkResponse(response, false);
-      return tdaJsonParser.parseOrder(response.body().byteStream());
     } catch (IOException e) {
       throw new RuntimeException(e);
     }
-
   }
 
-  @Override
-  public void cancelOrder(String accountId, String orderId) {
+  Request buildCancelOrderRequest(String accountId, String orderId) {
     LOGGER.info("Cancelling order: {} for account[{}].", orderId, accountId);
     if (StringUtils.isBlank(accountId)) {
       throw new IllegalArgumentException("accountId cannot be blank.");
@@ -467,16 +805,10 @@ public class HttpTdaClient implements TdaClient {
 
     HttpUrl url = baseUrl("accounts", accountId, "orders", orderId).build();
 
-    Request request = new Request.Builder().url(url).
+    return newRequestBuilder(RequestLane.PRIORITY).url(url).
         headers(defaultHeaders())
         .delete()
         .build();
-
-    try (Response response = this.httpClient.newCall(request).execute()) {
-      checkResponse(response, false);
-    } catch (IOException e) {
-      throw new RuntimeException(e);
-    }
   }
 
 
@@ -487,6 +819,16 @@ public class HttpTdaClient implements TdaClient {
 
   @Override
   public List<Instrument> queryInstruments(Query query) {
+    Request request = buildQueryInstrumentsRequest(query);
+    try (Response response = this.httpClient.newCall(request).execute()) {
+      checkResponse(response, false);
+      return tdaJsonParser.parseInstrumentMap(response.body().byteStream());
+    } catch (IOException e) {
+      throw new RuntimeException(e);
+    }
+  }
+
+  Request buildQueryInstrumentsRequest(Query query) {
     LOGGER.info("Querying for Instruments with query: {}", query);
     if (query == null || StringUtils.isEmpty(query.getSearchStr())
         || query.getQueryType() == null) {
@@ -498,18 +840,33 @@ public class HttpTdaClient implements TdaClient {
         .addQueryParameter("projection", query.getQueryType().getQueryType())
         .build();
 
-    Request request = new Request.Builder().url(url).headers(defaultHeaders()).build();
-
-    try (Response response = this.httpClient.newCall(request).execute()) {
-      checkResponse(response, false);
-      return tdaJsonParser.parseInstrumentMap(response.body().byteStream());
-    } catch (IOException e) {
-      throw new RuntimeException(e);
-    }
+    return newRequestBuilder(RequestLane.BULK).url(url).headers(defaultHeaders()).build();
   }
 
   @Override
   public FullInstrument getFundamentalData(String id) {
+    Request request = buildFundamentalDataRequest(id);
+    return cached(CacheEndpoint.FUNDAMENTAL, request.url().toString(), () -> {
+      try (Response response = this.httpClient.newCall(request).execute()) {
+        checkResponse(response, false);
+        final List<FullInstrument> fullInstruments = tdaJsonParser
+            .parseFullInstrumentMap(response.body().byteStream());
+        return singleFullInstrument(fullInstruments);
+      } catch (IOException e) {
+        throw new RuntimeException(e);
+      }
+    });
+  }
+
+  static FullInstrument singleFullInstrument(List<FullInstrument> fullInstruments) {
+    if (fullInstruments.size() != 1) {
+      throw new RuntimeException(
+          "Expecting a single instrument but received: " + fullInstruments.size());
+    }
+    return fullInstruments.get(0);
+  }
+
+  Request buildFundamentalDataRequest(String id) {
     LOGGER.info("Fetching Fundamental Instrument data with id: {}", id);
     if (StringUtils.isBlank(id)) {
       throw new IllegalArgumentException("Id cannot be blank.");
@@ -519,24 +876,24 @@ public class HttpTdaClient implements TdaClient {
         .addQueryParameter("projection", "fundamental")
         .build();
 
-    Request request = new Request.Builder().url(url).headers(defaultHeaders()).build();
-
-    try (Response response = this.httpClient.newCall(request).execute()) {
-      checkResponse(response, false);
-      final List<FullInstrument> fullInstruments = tdaJsonParser
-          .parseFullInstrumentMap(response.body().byteStream());
-      if (fullInstruments.size() != 1) {
-        throw new RuntimeException(
-            "Expecting a single instrument but received: " + fullInstruments.size());
-      }
-      return fullInstruments.get(0);
-    } catch (IOException e) {
-      throw new RuntimeException(e);
-    }
+    return newRequestBuilder(RequestLane.BULK).url(url).headers(defaultHeaders()).build();
   }
 
   @Override
   public List<Mover> fetchMovers(MoversReq moversReq) {
+    Request request = buildMoversRequest(moversReq);
+    return cached(CacheEndpoint.MOVERS, request.url().toString(), () -> {
+      try (Response response = this.httpClient.newCall(request).execute()) {
+        checkResponse(response, true);
+        return Collections.unmodifiableList(
+            tdaJsonParser.parseMovers(response.body().byteStream()));
+      } catch (IOException e) {
+        throw new RuntimeException(e);
+      }
+    });
+  }
+
+  Request buildMoversRequest(MoversReq moversReq) {
     LOGGER.info("Fetching Movers with req: {}", moversReq);
     if (moversReq.getIndex() == null) {
       throw new IllegalArgumentException("The index cannot be empty.");
@@ -550,57 +907,113 @@ public class HttpTdaClient implements TdaClient {
       urlBuilder.addQueryParameter("direction", moversReq.getDirection().name());
     }
 
-    Request request = new Request.Builder().url(urlBuilder.build()).headers(defaultHeaders())
+    return newRequestBuilder(RequestLane.DEFAULT).url(urlBuilder.build()).headers(defaultHeaders())
         .build();
+  }
 
+  @Override
+  public OptionChain getOptionChain(String symbol) {
+    Request request = buildOptionChainRequest(symbol);
     try (Response response = this.httpClient.newCall(request).execute()) {
-      checkResponse(response, true);
-      return tdaJsonParser.parseMovers(response.body().byteStream());
+      checkResponse(response, false);
+      return tdaJsonParser.parseOptionChain(response.body().byteStream());
     } catch (IOException e) {
       throw new RuntimeException(e);
     }
+
   }
 
   @Override
-  public OptionChain getOptionChain(String symbol) {
-    LOGGER.info("get option chain for symbol: {}", symbol);
+  public OptionChain getOptionChain(OptionChainReq optionChainReq) {
+    Request request = buildOptionChainRequest(optionChainReq);
+    try (Response response = this.httpClient.newCall(request).execute()) {
+      checkResponse(response, false);
+      return tdaJsonParser.parseOptionChain(response.body().byteStream());
+    } catch (IOException e) {
+      throw new RuntimeException(e);
+    }
+  }
+
+  @Override
+  public IndexedOptionChain getIndexedOptionChain(OptionChainReq optionChainReq) {
+    Request request = buildOptionChainRequest(optionChainReq);
+    try (Response response = this.httpClient.newCall(request).execute()) {
+      checkResponse(response, false);
+      return tdaJsonParser.parseIndexedOptionChain(response.body().byteStream());
+    } catch (IOException e) {
+      throw new RuntimeException(e);
+    }
+  }
 
+  Request buildOptionChainRequest(String symbol) {
     if (StringUtils.isBlank(symbol)) {
       throw new IllegalArgumentException("Symbol cannot be blank.");
     }
+    return buildOptionChainRequest(
+        OptionChainReq.Builder.optionChainReq().withSymbol(symbol).build());
+  }
+
+  Request buildOptionChainRequest(OptionChainReq optionChainReq) {
+    LOGGER.info("OptionChain: {}", optionChainReq);
+    List<String> violations = OptionChainReqValidator.validate(optionChainReq);
+    if (violations.size() > 0) {
+      throw new IllegalArgumentException(violations.toString());
+    }
 
     Builder urlBuilder = baseUrl("marketdata", "chains")
-        .addQueryParameter("symbol", symbol.toUpperCase());
-
-//    if (orderRequest.getMaxResults() != null) {
-//      urlBuilder.addQueryParameter("maxResults", String.valueOf(orderRequest.getMaxResults()));
-//    }
-//    if (orderRequest.getToEnteredTime() != null) {
-//      urlBuilder
-//          .addQueryParameter("toEnteredTime", Utils.toTdaISO8601(orderRequest.getToEnteredTime()));
-//    }
-//    if (orderRequest.getFromEnteredTime() != null) {
-//      urlBuilder.addQueryParameter("fromEnteredTime",
-//          Utils.toTdaISO8601(orderRequest.getFromEnteredTime()));
-//    }
-//    if (orderRequest.getStatus() != null) {
-//      urlBuilder.addQueryParameter("status", orderRequest.getStatus().name());
-//    }
-
-    Request request = new Request.Builder().url(urlBuilder.build()).headers(defaultHeaders())
+        .addQueryParameter("symbol", optionChainReq.getSymbol().toUpperCase());
+    if (optionChainReq.getContractType() != null) {
+      urlBuilder.addQueryParameter("contractType", optionChainReq.getContractType().name());
+    }
+    if (optionChainReq.getStrikeCount() != null) {
+      urlBuilder.addQueryParameter("strikeCount", String.valueOf(optionChainReq.getStrikeCount()));
+    }
+    if (optionChainReq.getIncludeQuotes() != null) {
+      urlBuilder.addQueryParameter("includeQuotes",
+          String.valueOf(optionChainReq.getIncludeQuotes()).toUpperCase());
+    }
+    if (optionChainReq.getStrategy() != null) {
+      urlBuilder.addQueryParameter("strategy", optionChainReq.getStrategy().name());
+    }
+    if (optionChainReq.getInterval() != null) {
+      urlBuilder.addQueryParameter("interval", optionChainReq.getInterval().toPlainString());
+    }
+    if (optionChainReq.getStrike() != null) {
+      urlBuilder.addQueryParameter("strike", optionChainReq.getStrike().toPlainString());
+    }
+    if (optionChainReq.getRange() != null) {
+      urlBuilder.addQueryParameter("range", optionChainReq.getRange().name());
+    }
+    if (optionChainReq.getFromDate() != null) {
+      urlBuilder.addQueryParameter("fromDate", Utils.toTdaYMD(optionChainReq.getFromDate()));
+    }
+    if (optionChainReq.getToDate() != null) {
+      urlBuilder.addQueryParameter("toDate", Utils.toTdaYMD(optionChainReq.getToDate()));
+    }
+    if (optionChainReq.getExpMonth() != null) {
+      urlBuilder.addQueryParameter("expMonth", optionChainReq.getExpMonth().name());
+    }
+    if (optionChainReq.getOptionType() != null) {
+      urlBuilder.addQueryParameter("optionType", optionChainReq.getOptionType().name());
+    }
+
+    return newRequestBuilder(RequestLane.DEFAULT).url(urlBuilder.build()).headers(defaultHeaders())
         .build();
+  }
 
-    try (Response response = this.httpClient.newCall(request).execute()) {
-      checkResponse(response, false);
-      return tdaJsonParser.parseOptionChain(response.body().byteStream());
+  @Override
+  public List<Transaction> fetchTransactions(String accountId, TransactionRequest request) {
+    Request httpReq = buildTransactionsRequest(accountId, request);
+    try (Response response = this.httpClient.newCall(httpReq).execute()) {
+      checkResponse(response, true);
+      return tdaJsonParser.parseTransactions(response.body().byteStream());
     } catch (IOException e) {
       throw new RuntimeException(e);
     }
 
   }
 
-  @Override
-  public List<Transaction> fetchTransactions(String accountId, TransactionRequest request) {
+  Request buildTransactionsRequest(String accountId, TransactionRequest request) {
     LOGGER.info("FetchTransactions for account[{}]", accountId);
 
     if (StringUtils.isBlank(accountId)) {
@@ -631,21 +1044,23 @@ public class HttpTdaClient implements TdaClient {
       urlBuilder.addQueryParameter("type", request.getType().name());
     }
 
-    Request httpReq = new Request.Builder()
+    return newRequestBuilder(RequestLane.DEFAULT)
         .url(urlBuilder.build()).headers(defaultHeaders())
         .build();
+  }
 
-    try (Response response = this.httpClient.newCall(httpReq).execute()) {
-      checkResponse(response, true);
-      return tdaJsonParser.parseTransactions(response.body().byteStream());
+  @Override
+  public Transaction getTransaction(String accountId, Long transactionId) {
+    Request request = buildTransactionRequest(accountId, transactionId);
+    try (Response response = this.httpClient.newCall(request).execute()) {
+      checkResponse(response, false);
+      return tdaJsonParser.parseTransaction(response.body().byteStream());
     } catch (IOException e) {
       throw new RuntimeException(e);
     }
-
   }
 
-  @Override
-  public Transaction getTransaction(String accountId, Long transactionId) {
+  Request buildTransactionRequest(String accountId, Long transactionId) {
     LOGGER.info("getTransaction by id: {} for account[{}]", transactionId, accountId);
 
     if (StringUtils.isBlank(accountId)) {
@@ -661,19 +1076,24 @@ public class HttpTdaClient implements TdaClient {
         "transactions",
         String.valueOf(transactionId));
 
-    Request request = new Request.Builder().url(urlBuilder.build()).headers(defaultHeaders())
+    return newRequestBuilder(RequestLane.DEFAULT).url(urlBuilder.build()).headers(defaultHeaders())
         .build();
-
-    try (Response response = this.httpClient.newCall(request).execute()) {
-      checkResponse(response, false);
-      return tdaJsonParser.parseTransaction(response.body().byteStream());
-    } catch (IOException e) {
-      throw new RuntimeException(e);
-    }
   }
 
   @Override
   public Preferences getPreferences(String accountId) {
+    Request request = buildPreferencesRequest(accountId);
+    return cached(CacheEndpoint.PREFERENCES, request.url().toString(), () -> {
+      try (Response response = this.httpClient.newCall(request).execute()) {
+        checkResponse(response, false);
+        return tdaJsonParser.parsePreferences(response.body().byteStream());
+      } catch (IOException e) {
+        throw new RuntimeException(e);
+      }
+    });
+  }
+
+  Request buildPreferencesRequest(String accountId) {
     LOGGER.info("getPreferences for account[{}]", accountId);
 
     if (StringUtils.isBlank(accountId)) {
@@ -682,36 +1102,46 @@ public class HttpTdaClient implements TdaClient {
 
     Builder urlBuilder = baseUrl("accounts", accountId, "preferences");
 
-    Request request = new Request.Builder()
+    return newRequestBuilder(RequestLane.DEFAULT)
         .url(urlBuilder.build())
         .headers(defaultHeaders())
         .build();
-
-    try (Response response = this.httpClient.newCall(request).execute()) {
-      checkResponse(response, false);
-      return tdaJsonParser.parsePreferences(response.body().byteStream());
-    } catch (IOException e) {
-      throw new RuntimeException(e);
-    }
   }
 
   @Override
   public UserPrincipals getUserPrincipals() {
-    LOGGER.info("getUserPrincipals");
+    return getUserPrincipals(new UserPrincipals.Field[0]);
+  }
+
+  @Override
+  public UserPrincipals getUserPrincipals(UserPrincipals.Field... fields) {
+    Request request = buildUserPrincipalsRequest(fields);
+    return cached(CacheEndpoint.USER_PRINCIPALS, request.url().toString(), () -> {
+      try (Response response = this.httpClient.newCall(request).execute()) {
+        checkResponse(response, false);
+        return tdaJsonParser.parseUserPrincipals(response.body().byteStream());
+      } catch (IOException e) {
+        throw new RuntimeException(e);
+      }
+    });
+  }
+
+  Request buildUserPrincipalsRequest(UserPrincipals.Field... fields) {
+    LOGGER.info("getUserPrincipals: {}", Arrays.toString(fields));
 
     Builder urlBuilder = baseUrl("userprincipals");
+    if (fields != null && fields.length > 0) {
+      StringJoiner joiner = new StringJoiner(",");
+      for (UserPrincipals.Field field : fields) {
+        joiner.add(field.getField());
+      }
+      urlBuilder.addQueryParameter("fields", joiner.toString());
+    }
 
-    Request request = new Request.Builder()
+    return newRequestBuilder(RequestLane.DEFAULT)
         .url(urlBuilder.build())
         .headers(defaultHeaders())
         .build();
-
-    try (Response response = this.httpClient.newCall(request).execute()) {
-      checkResponse(response, false);
-      return tdaJsonParser.parseUserPrincipals(response.body().byteStream());
-    } catch (IOException e) {
-      throw new RuntimeException(e);
-    }
   }
 
   protected StreamerSubscriptionKeys getSubscriptionKeys(List<String> accountsIds) {
@@ -723,7 +1153,7 @@ public class HttpTdaClient implements TdaClient {
     Builder urlBuilder = baseUrl("userprincipals", "streamersubscriptionkeys")
         .addQueryParameter("accountIds", String.join(",", accountsIds));
 
-    Request request = new Request.Builder()
+    Request request = newRequestBuilder(RequestLane.DEFAULT)
         .url(urlBuilder.build())
         .headers(defaultHeaders())
         .build();
@@ -743,6 +1173,18 @@ public class HttpTdaClient implements TdaClient {
 
   @Override
   public Instrument getInstrumentByCUSIP(String id) {
+    Request request = buildInstrumentByCusipRequest(id);
+    return cached(CacheEndpoint.INSTRUMENT, request.url().toString(), () -> {
+      try (Response response = this.httpClient.newCall(request).execute()) {
+        checkResponse(response, false);
+        return tdaJsonParser.parseInstrumentArraySingle(response.body().byteStream());
+      } catch (IOException e) {
+        throw new RuntimeException(e);
+      }
+    });
+  }
+
+  Request buildInstrumentByCusipRequest(String id) {
     LOGGER.info("Fetching Instrument with id: {}", id);
     if (StringUtils.isBlank(id)) {
       throw new IllegalArgumentException("Id cannot be blank.");
@@ -751,24 +1193,18 @@ public class HttpTdaClient implements TdaClient {
         .addQueryParameter("fundamental", "true")
         .build();
 
-    Request request = new Request.Builder().url(url).
+    return newRequestBuilder(RequestLane.BULK).url(url).
 
         headers(defaultHeaders())
         .build();
-
-    try (Response response = this.httpClient.newCall(request).execute()) {
-      checkResponse(response, false);
-      return tdaJsonParser.parseInstrumentArraySingle(response.body().byteStream());
-    } catch (IOException e) {
-      throw new RuntimeException(e);
-    }
   }
 
   /**
    * @param response the tda response
    * @param emptyJsonOk is an empty JSON object or array actually OK (e.g. fetchMovers)?
+   * @throws TdaHttpException if the response is not successful
    */
-  private void checkResponse(Response response, boolean emptyJsonOk) {
+  static void checkResponse(Response response, boolean emptyJsonOk) {
     if (!response.isSuccessful()) {
       String errorMsg = response.message();
       if (StringUtils.isBlank(errorMsg)) {
@@ -782,7 +1218,7 @@ public class HttpTdaClient implements TdaClient {
       String msg = String
           .format("Non 200 response:  [%d - %s] - %s", response.code(), errorMsg,
               response.request().url());
-      throw new RuntimeException(msg);
+      throw new TdaHttpException(response.code(), msg);
     }
     if (!emptyJsonOk) {
       try {
@@ -799,6 +1235,14 @@ public class HttpTdaClient implements TdaClient {
     }
   }
 
+  /**
+   * @param lane the rate limiting lane the request will be queued in
+   * @return a request builder tagged for the {@link RateLimitInterceptor}
+   */
+  private Request.Builder newRequestBuilder(RequestLane lane) {
+    return new Request.Builder().tag(RateLimitTag.class, RateLimitTag.of(lane));
+  }
+
   private Headers defaultHeaders() {
     Map<String, String> defaultHeaders = new HashMap<>();
     defaultHeaders.put("Accept", "application/json");
@@ -5,9 +5,16 @@ import com.studerw.tda.parse.DefaultMapper;
 import java.io.IOException;
 import java.io.InputStream;
 import java.util.Properties;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
 import okhttp3.FormBody;
 import okhttp3.HttpUrl;
 import okhttp3.Interceptor;
+import okhttp3.OkHttpClient;
 import okhttp3.Request;
 import okhttp3.RequestBody;
 import okhttp3.Response;
@@ -16,8 +23,17 @@ import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 
 /**
- * Any response of <em>401 Unauthorized</em> needs to take the refresh token and generate a new auth
- * token.
+ * <p>
+ * Adds the OAuth access token to every request. A token is obtained with the refresh token before
+ * the first request is sent (or eagerly when the client is created, see <em>tda.token.eager</em>),
+ * and is renewed in the background shortly before it expires, as long as the client is in use.
+ * </p>
+ *
+ * <p>
+ * Any response of <em>401 Unauthorized</em> still triggers a new token and a single retry. No
+ * matter how many threads need a new token at once, only one token request is made and every
+ * thread waits on its result.
+ * </p>
  */
 class OauthInterceptor implements Interceptor {
 
@@ -25,27 +41,59 @@ class OauthInterceptor implements Interceptor {
   public static final String GRANT_TYPE_AUTH = "authorization_code";
   public static final String GRANT_TYPE_REFRESH = "refresh_token";
   private static final Logger LOGGER = LoggerFactory.getLogger(OauthInterceptor.class);
+
+  /**
+   * Tokens are treated as expired this long before TDA would actually reject them.
+   */
+  static final long EXPIRY_SKEW_SECS = 30;
+  /**
+   * Tokens are renewed in the background this long before they expire.
+   */
+  static final long RENEW_BEFORE_SECS = 120;
+
   final protected HttpTdaClient client;
   final protected Properties properties;
+  private final OkHttpClient authClient;
 
-  //This gets updated using the refresh code - the first call will always fail, forcing a
-  //new access_token to be set.
-  private String accessToken = "UNSET";
+  private final Object lock = new Object();
+  //guarded by lock
+  private CompletableFuture<Token> inFlight;
+  //guarded by lock, the eager request or the renewal of the current token
+  private Future<?> renewal;
+  private volatile Token token;
+  //set by every request, cleared by every background renewal so idle clients stop renewing
+  private volatile boolean used;
 
-  public OauthInterceptor(HttpTdaClient client, Properties properties) {
+  /**
+   * @param client the client using this interceptor
+   * @param properties the TDA props including the refresh token and client id
+   * @param authClient plain http client, without this interceptor, used to request tokens
+   */
+  public OauthInterceptor(HttpTdaClient client, Properties properties, OkHttpClient authClient) {
     this.client = client;
     this.properties = properties;
+    this.authClient = authClient;
+  }
+
+  /**
+   * Request a token in the background unless <em>tda.token.eager</em> is false. Called once the
+   * client using this interceptor has been fully created.
+   */
+  void start() {
+    if (Boolean.parseBoolean(properties.getProperty("tda.token.eager", "true"))) {
+      LOGGER.debug("Eagerly requesting an auth token");
+      replaceRenewal(Renewer.SCHEDULER.submit(this::renewQuietly));
+    }
   }
 
   @Override
   public Response intercept(Chain chain) throws IOException {
-
-    Request authorizedRequest = chain.request().newBuilder()
-        .addHeader("Authorization", "Bearer " + this.accessToken)
-        .build();
+    this.used = true;
+    final Token current = currentToken();
+    Request authorizedRequest = authorize(chain.request(), current);
     Response origResponse = chain.proceed(authorizedRequest);
 
-    //no token needed, just return original response
+    //no new token needed, just return original response
     if (origResponse.code() != UNAUTHORIZED) {
       LOGGER.trace("no auth token needed: {}", authorizedRequest.url());
       return origResponse;
@@ -54,18 +102,13 @@ class OauthInterceptor implements Interceptor {
     // we do need a new auth token.
     String bodyStr = origResponse.peekBody(500).string();
     LOGGER.debug("TDA Not Logged In: {}", bodyStr);
+    origResponse.close();
 
-    boolean isAuthenticated = setAuthToken(chain);
-    if (!isAuthenticated) {
-      throw new IllegalStateException("Failed to get auth token using current refresh token");
-    }
-
-    authorizedRequest = authorizedRequest.newBuilder().removeHeader("Authorization")
-        .addHeader("Authorization", "Bearer " + this.accessToken)
-        .build();
-    final Response retryResponse = chain.proceed(authorizedRequest);
+    final Token fresh = refresh(current);
+    final Response retryResponse = chain.proceed(authorize(chain.request(), fresh));
     //even though we got a new auth token, it still doesn't work.
     if (retryResponse.code() == UNAUTHORIZED) {
+      retryResponse.close();
       throw new IllegalStateException(
           "New auth token is still not working. This is strange is you're seeing this...");
     }
@@ -73,12 +116,130 @@ class OauthInterceptor implements Interceptor {
     return retryResponse;
   }
 
+  private static Request authorize(Request request, Token token) {
+    return request.newBuilder()
+        .header("Authorization", "Bearer " + token.accessToken)
+        .build();
+  }
+
   /**
-   * @param chain use the chain to forward the new OAuth Refresh request to avoid recursing this
-   * interceptor
-   * @return true if a new auth token was successfully set, false if not.
+   * @return the current token, or a new one if there is none yet or it has expired
    */
-  private boolean setAuthToken(Chain chain) {
+  Token currentToken() {
+    Token current = this.token;
+    if (current != null && !current.isExpired(System.nanoTime())) {
+      return current;
+    }
+    return refresh(current);
+  }
+
+  /**
+   * Replace the given stale token. If another thread already replaced it, or is in the middle of
+   * doing so, its token is used instead of requesting another one.
+   *
+   * @param stale the token which is no longer valid, or null if there is none
+   * @return a new token
+   */
+  Token refresh(Token stale) {
+    final CompletableFuture<Token> future;
+    boolean owner = false;
+    synchronized (lock) {
+      Token current = this.token;
+      if (current != null && current != stale && !current.isExpired(System.nanoTime())) {
+        return current;
+      }
+      if (inFlight == null) {
+        inFlight = new CompletableFuture<>();
+        owner = true;
+      }
+      future = inFlight;
+    }
+
+    if (owner) {
+      try {
+        Token newToken = requestToken();
+        this.token = newToken;
+        scheduleRenewal(newToken);
+        future.complete(newToken);
+      } catch (RuntimeException e) {
+        future.completeExceptionally(e);
+      } finally {
+        synchronized (lock) {
+          inFlight = null;
+        }
+      }
+    }
+
+    try {
+      return future.join();
+    } catch (CompletionException e) {
+      if (e.getCause() instanceof RuntimeException) {
+        throw (RuntimeException) e.getCause();
+      }
+      throw e;
+    }
+  }
+
+  private void scheduleRenewal(Token newToken) {
+    if (newToken.expiresInSecs <= 0) {
+      return;
+    }
+    long delay = Math.max(newToken.expiresInSecs - RENEW_BEFORE_SECS, newToken.expiresInSecs / 2);
+    LOGGER.debug("Scheduling auth token renewal in {} seconds", delay);
+    replaceRenewal(Renewer.SCHEDULER.schedule(() -> {
+      if (this.token != newToken) {
+        return;
+      }
+      if (!this.used) {
+        LOGGER.debug("Client has been idle, not renewing auth token");
+        return;
+      }
+      this.used = false;
+      LOGGER.debug("Renewing auth token before it expires");
+      try {
+        refresh(newToken);
+      } catch (RuntimeException e) {
+        LOGGER.warn("Failed to renew auth token, will retry on the next request", e);
+      }
+    }, delay, TimeUnit.SECONDS));
+  }
+
+  /**
+   * Cancel the pending renewal, which the new one supersedes.
+   */
+  private void replaceRenewal(Future<?> next) {
+    final Future<?> superseded;
+    synchronized (lock) {
+      superseded = this.renewal;
+      this.renewal = next;
+    }
+    if (superseded != null && superseded != next) {
+      superseded.cancel(false);
+    }
+  }
+
+  /**
+   * @return the eager request or the renewal of the current token, null if none
+   */
+  Future<?> getRenewal() {
+    synchronized (lock) {
+      return renewal;
+    }
+  }
+
+  private void renewQuietly() {
+    try {
+      currentToken();
+    } catch (RuntimeException e) {
+      LOGGER.warn("Failed to obtain an auth token at startup: {}", e.getMessage());
+    }
+  }
+
+  /**
+   * @return a new token obtained with the refresh token
+   * @throws IllegalStateException if TDA does not hand out a new token
+   */
+  private Token requestToken() {
     RequestBody formBody = new FormBody.Builder()
         .add(AuthToken.GRANT_TYPE_PARAM, AuthToken.GRANT_TYPE_REFRESH)
         .add(AuthToken.REFRESH_TOKEN_PARAM, this.properties.getProperty("tda.token.refresh"))
@@ -100,13 +261,14 @@ class OauthInterceptor implements Interceptor {
         .post(formBody)
         .build();
 
-    try (Response authResponse = chain.proceed(authRequest)) {
+    final long requested = System.nanoTime();
+    try (Response authResponse = this.authClient.newCall(authRequest).execute()) {
       //if the auth failed again, we can't get a new auth token so we're screwed.
       if (!authResponse.isSuccessful()) {
         LOGGER.error("Failed to get auth token using refresh token: {} {}",
             authResponse.code(),
             authResponse.body());
-        return false;
+        throw new IllegalStateException("Failed to get auth token using current refresh token");
       }
       InputStream in = authResponse.body().byteStream();
       AuthToken authToken = DefaultMapper.fromJson(in, AuthToken.class);
@@ -114,12 +276,53 @@ class OauthInterceptor implements Interceptor {
       String _accessToken = authToken.getAccessToken();
       if (StringUtils.isBlank(_accessToken)) {
         LOGGER.warn("Got successful OAuth response, but access token is missing");
-        return false;
+        throw new IllegalStateException("Failed to get auth token using current refresh token");
       }
-      this.accessToken = _accessToken;
-      return true;
+      long expiresIn = authToken.getExpiresIn() == null ? 0 : authToken.getExpiresIn();
+      return new Token(_accessToken, expiresIn, requested);
     } catch (IOException e) {
       throw new RuntimeException(e);
     }
   }
+
+  /**
+   * Immutable access token and when it expires.
+   */
+  static final class Token {
+
+    final String accessToken;
+    final long expiresInSecs;
+    // measured from when the token was requested, not received, to err on the safe side
+    private final long expiresAtNanos;
+
+    Token(String accessToken, long expiresInSecs, long requestedNanos) {
+      this.accessToken = accessToken;
+      this.expiresInSecs = expiresInSecs;
+      this.expiresAtNanos =
+          requestedNanos + TimeUnit.SECONDS.toNanos(expiresInSecs - EXPIRY_SKEW_SECS);
+    }
+
+    /**
+     * @param nowNanos current {@link System#nanoTime()}
+     * @return true if the token should no longer be used. Tokens without a known lifetime are
+     * used until TDA rejects them.
+     */
+    boolean isExpired(long nowNanos) {
+      return expiresInSecs > 0 && nowNanos - expiresAtNanos >= 0;
+    }
+  }
+
+  /**
+   * One daemon thread, shared by all clients, which requests tokens eagerly and renews them before
+   * they expire.
+   */
+  private static final class Renewer {
+
+    static final ScheduledExecutorService SCHEDULER = Executors
+        .newSingleThreadScheduledExecutor(r -> {
+          Thread t = new Thread(r, "tda-oauth-renewer");
+          t.setDaemon(true);
+          return t;
+        });
+  }
 }
@@ -0,0 +1,19 @@
+package com.studerw.tda.client;
+
+import com.studerw.tda.model.history.CandleSeries;
+import com.studerw.tda.model.history.PriceHistReq;
+
+/**
+ * The part of {@link TdaClient} needed by code which only fetches price history, so it can be
+ * given a {@link TdaClient} or just a lambda.
+ */
+@FunctionalInterface
+public interface PriceHistoryFetcher {
+
+  /**
+   * @param priceHistReq validated object of request parameters
+   * @return CandleSeries based on the frequency and period / date length
+   * @see TdaClient#priceHistorySeries(PriceHistReq)
+   */
+  CandleSeries priceHistorySeries(PriceHistReq priceHistReq);
+}
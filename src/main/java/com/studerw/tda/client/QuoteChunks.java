@@ -0,0 +1,106 @@
+package com.studerw.tda.client;
+
+import com.studerw.tda.model.quote.Quote;
+import com.studerw.tda.model.quote.QuoteBatch;
+import com.studerw.tda.model.quote.QuoteBatch.ChunkFailure;
+import com.studerw.tda.parse.Utils;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import org.apache.commons.lang3.StringUtils;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+/**
+ * Splits large quote requests into chunks which are small enough for TDA's URL length limits, and
+ * merges the per chunk responses back together in the original symbol order.
+ */
+final class QuoteChunks {
+
+  private static final Logger LOGGER = LoggerFactory.getLogger(QuoteChunks.class);
+
+  private QuoteChunks() {
+  }
+
+  /**
+   * @param symbols symbols to request. Duplicates are only requested once.
+   * @param chunkSize max number of symbols per chunk, at least 1
+   * @return the chunks, each holding at most {@code chunkSize} symbols
+   */
+  static List<List<String>> split(List<String> symbols, int chunkSize) {
+    if (Utils.isNullOrEmpty(symbols)) {
+      throw new IllegalArgumentException("symbols cannot be empty");
+    }
+    if (chunkSize < 1) {
+      throw new IllegalArgumentException("chunkSize must be positive, was " + chunkSize);
+    }
+    List<String> unique = new ArrayList<>(new LinkedHashSet<>(symbols));
+    List<List<String>> chunks = new ArrayList<>();
+    for (int i = 0; i < unique.size(); i += chunkSize) {
+      chunks.add(unique.subList(i, Math.min(i + chunkSize, unique.size())));
+    }
+    return chunks;
+  }
+
+  /**
+   * @param symbols the symbols as originally requested
+   * @param chunks the chunks as returned by {@link #split(List, int)}
+   * @param results completed futures of each chunk, in the same order as {@code chunks}
+   * @return all quotes in the order of {@code symbols}, plus a failure for each failed chunk
+   */
+  static QuoteBatch merge(List<String> symbols, List<List<String>> chunks,
+      List<CompletableFuture<Map<String, Quote>>> results) {
+    List<ChunkFailure> failures = new ArrayList<>();
+    Map<String, Quote> bySymbol = new HashMap<>(symbols.size() * 2);
+    for (int i = 0; i < chunks.size(); i++) {
+      try {
+        bySymbol.putAll(results.get(i).join());
+      } catch (CompletionException e) {
+        failures.add(new ChunkFailure(chunks.get(i), unwrap(e)));
+      }
+    }
+
+    List<Quote> quotes = new ArrayList<>(symbols.size());
+    LinkedHashSet<String> seen = new LinkedHashSet<>();
+    for (String symbol : symbols) {
+      if (!seen.add(symbol)) {
+        continue;
+      }
+      Quote quote = bySymbol.containsKey(symbol) ? bySymbol.get(symbol)
+          : bySymbol.get(StringUtils.upperCase(symbol));
+      if (quote != null) {
+        quotes.add(quote);
+      }
+    }
+    return new QuoteBatch(quotes, failures);
+  }
+
+  /**
+   * Used when the caller wants the plain list of quotes, which must not silently miss symbols: if
+   * any chunk failed, the first failure is thrown as is.
+   *
+   * @param batch the merged batch
+   * @param chunkCount number of chunks that were requested
+   * @return the quotes of the batch
+   */
+  static List<Quote> quotesOrThrow(QuoteBatch batch, int chunkCount) {
+    if (!batch.isComplete()) {
+      LOGGER.warn("Failed to fetch {} of {} quote chunks, missing symbols: {}",
+          batch.getFailures().size(), chunkCount, batch.getFailedSymbols());
+      throw batch.getFailures().get(0).getCause();
+    }
+    return batch.getQuotes();
+  }
+
+  private static RuntimeException unwrap(CompletionException e) {
+    Throwable cause = e.getCause();
+    if (cause instanceof RuntimeException) {
+      return (RuntimeException) cause;
+    }
+    return new RuntimeException(cause);
+  }
+}
@@ -0,0 +1,21 @@
+package com.studerw.tda.client;
+
+import com.studerw.tda.model.quote.Quote;
+import java.util.List;
+import java.util.function.Consumer;
+
+/**
+ * The part of {@link TdaClient} needed by code which only fetches quotes, so it can be given a
+ * {@link TdaClient} or just a lambda.
+ */
+@FunctionalInterface
+public interface QuoteFetcher {
+
+  /**
+   * @param symbols list of valid symbols
+   * @param consumer receives each quote, on the calling thread
+   * @return the number of quotes passed to the consumer
+   * @see TdaClient#fetchQuotes(List, Consumer)
+   */
+  int fetchQuotes(List<String> symbols, Consumer<? super Quote> consumer);
+}
@@ -3,6 +3,7 @@ package com.studerw.tda.client;
 import com.studerw.tda.model.account.Order;
 import com.studerw.tda.model.account.OrderRequest;
 import com.studerw.tda.model.account.SecuritiesAccount;
+import com.studerw.tda.model.history.CandleSeries;
 import com.studerw.tda.model.history.PriceHistReq;
 import com.studerw.tda.model.history.PriceHistory;
 import com.studerw.tda.model.instrument.FullInstrument;
@@ -10,20 +11,24 @@ import com.studerw.tda.model.instrument.Instrument;
 import com.studerw.tda.model.instrument.Query;
 import com.studerw.tda.model.marketdata.Mover;
 import com.studerw.tda.model.marketdata.MoversReq;
+import com.studerw.tda.model.option.IndexedOptionChain;
 import com.studerw.tda.model.option.OptionChain;
+import com.studerw.tda.model.option.OptionChainReq;
 import com.studerw.tda.model.quote.Quote;
+import com.studerw.tda.model.quote.QuoteBatch;
 import com.studerw.tda.model.transaction.Transaction;
 import com.studerw.tda.model.transaction.TransactionRequest;
 import com.studerw.tda.model.user.Preferences;
 import com.studerw.tda.model.user.UserPrincipals;
 import java.util.List;
+import java.util.function.Consumer;
 
 /**
  * Main interface of the TDA Client. Implementations should be thread safe.
  *
  * @see HttpTdaClient
  */
-public interface TdaClient {
+public interface TdaClient extends PriceHistoryFetcher, QuoteFetcher, AccountFetcher {
 
   /**
    * <p>
@@ -62,6 +67,24 @@ public interface TdaClient {
    */
   PriceHistory priceHistory(PriceHistReq priceHistReq);
 
+  /**
+   * Same as {@link #priceHistory(String)}, but the candles are returned as a primitive, columnar
+   * {@link CandleSeries}, which needs a fraction of the memory for long histories.
+   *
+   * @param symbol uppercase symbol
+   * @return CandleSeries using all other TDA default request parameters
+   */
+  CandleSeries priceHistorySeries(String symbol);
+
+  /**
+   * Same as {@link #priceHistory(PriceHistReq)}, but the candles are returned as a primitive,
+   * columnar {@link CandleSeries}, which needs a fraction of the memory for long histories.
+   *
+   * @param priceHistReq validated object of request parameters
+   * @return CandleSeries based on the frequency and period / date length
+   */
+  CandleSeries priceHistorySeries(PriceHistReq priceHistReq);
+
   /**
    * <p>
    * Fetch detailed quote information for one or more symbols. Currently the API allows symbol types
@@ -84,7 +107,8 @@ public interface TdaClient {
    *  EquityQuote equityQuote = (EquityQuote)quote;
    * </pre>
    *
-   * @param symbols list of valid symbols. Max of 300 based on TDA docs. Index symbols need to be
+   * @param symbols list of valid symbols. Lists larger than <em>tda.quotes.chunkSize</em> are split
+   * into several concurrent requests. Index symbols need to be
    * prefixed with a <em>$</em>, e.g. <em>$INX</em> or <em>$SPX.X</em>. Options are in a format like
    * the following:
    * <em>MSFT_061518P60</em> for a put, or <em>MSFT_061518C60</em> for a call. This is the
@@ -95,6 +119,44 @@ public interface TdaClient {
    */
   List<Quote> fetchQuotes(List<String> symbols);
 
+  /**
+   * <p>
+   * Same as {@link #fetchQuotes(List)}, but each quote is passed to {@code consumer} as soon as it
+   * has been read from the response, without collecting the quotes into a list first. Useful for
+   * large watch lists where memory use and the time to the first quote matter.
+   * </p>
+   *
+   * <p>
+   * Chunks of <em>tda.quotes.chunkSize</em> symbols are requested one after the other on the
+   * calling thread, and quotes are handed out in the order TDA returns them, which is not
+   * necessarily the order of {@code symbols}. The first failing chunk stops the call with a
+   * {@link RuntimeException}; quotes of earlier chunks will already have been consumed.
+   * </p>
+   *
+   * @param symbols list of valid symbols, see {@link #fetchQuotes(List)}
+   * @param consumer receives each quote, on the calling thread
+   * @return the number of quotes passed to the consumer
+   */
+  int fetchQuotes(List<String> symbols, Consumer<? super Quote> consumer);
+
+  /**
+   * <p>
+   * Same as {@link #fetchQuotes(List)}, but any number of symbols can be passed. The list is split
+   * into chunks of <em>tda.quotes.chunkSize</em> symbols which are requested concurrently, and the
+   * results are merged back together in the order of {@code symbols}. Chunks that fail are reported
+   * in {@link QuoteBatch#getFailures()} instead of failing the whole call.
+   * </p>
+   *
+   * <p>
+   * {@link #fetchQuotes(List)} does the same splitting, but throws the first failure if any chunk
+   * failed.
+   * </p>
+   *
+   * @param symbols list of valid symbols, see {@link #fetchQuotes(List)}
+   * @return the quotes of all successful chunks plus any chunk failures
+   */
+  QuoteBatch fetchQuoteBatch(List<String> symbols);
+
   /**
    * <p>
    * Fetch Detailed quote information for one or more symbols. Currently the API allows symbol types
@@ -313,6 +375,25 @@ public interface TdaClient {
    */
   OptionChain getOptionChain(String symbol);
 
+  /**
+   * Fetch an option chain filtered on the server, e.g. by strike count, range, contract type or
+   * expiration dates. For heavily traded underlyings the full chain is several megabytes, so
+   * narrowing the request saves both bandwidth and parse time.
+   *
+   * @param optionChainReq the symbol must be set, any other null field uses the TDA default.
+   * @return the option chain matching the request
+   */
+  OptionChain getOptionChain(OptionChainReq optionChainReq);
+
+  /**
+   * Same as {@link #getOptionChain(OptionChainReq)}, but the chain is parsed directly into sorted,
+   * primitive arrays, for fast strike and expiration lookups and a fraction of the memory.
+   *
+   * @param optionChainReq the symbol must be set, any other null field uses the TDA default.
+   * @return the option chain matching the request
+   */
+  IndexedOptionChain getIndexedOptionChain(OptionChainReq optionChainReq);
+
 
   /**
    *
@@ -350,4 +431,14 @@ public interface TdaClient {
    * @return user principals
    */
   UserPrincipals getUserPrincipals();
+
+  /**
+   * Fetch the user principals including optional fields, e.g. the {@link
+   * com.studerw.tda.model.user.StreamerInfo} and {@link
+   * com.studerw.tda.model.user.StreamerSubscriptionKeys} needed by the streaming client.
+   *
+   * @param fields optional fields to include
+   * @return user principals
+   */
+  UserPrincipals getUserPrincipals(UserPrincipals.Field... fields);
 }
@@ -0,0 +1,38 @@
+package com.studerw.tda.client;
+
+import com.studerw.tda.http.RateLimitInterceptor;
+
+/**
+ * Thrown by {@link TdaClient} when TDA answers a request with a non 2xx status. The message is
+ * the same as before this class existed, the status code is kept so callers can tell errors worth
+ * retrying (429 and 5xx) from those that never will succeed.
+ */
+public class TdaHttpException extends RuntimeException {
+
+  private static final long serialVersionUID = 1L;
+
+  private final int code;
+
+  /**
+   * @param code HTTP status code of the response
+   * @param message description of the failure
+   */
+  public TdaHttpException(int code, String message) {
+    super(message);
+    this.code = code;
+  }
+
+  /**
+   * @return HTTP status code of the response
+   */
+  public int getCode() {
+    return code;
+  }
+
+  /**
+   * @return whether the same request may succeed later, i.e. the status is 429 or 5xx
+   */
+  public boolean isTransient() {
+    return code == RateLimitInterceptor.TOO_MANY_REQUESTS || code >= 500;
+  }
+}
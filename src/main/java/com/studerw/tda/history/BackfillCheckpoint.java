@@ -0,0 +1,94 @@
+package com.studerw.tda.history;
+
+import java.io.BufferedReader;
+import java.io.Closeable;
+import java.io.IOException;
+import java.io.Writer;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.Map;
+import java.util.OptionalLong;
+import java.util.concurrent.ConcurrentHashMap;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+/**
+ * Progress of a {@link HistoryBackfiller} job: for each symbol, the end of the last window that
+ * was fetched and handed to the sink. Progress is appended to a text file of
+ * <em>SYMBOL&lt;tab&gt;endMillis</em> lines, the last line of a symbol wins, so a killed job
+ * loses at most the window that was in flight.
+ */
+class BackfillCheckpoint implements Closeable {
+
+  private static final Logger LOGGER = LoggerFactory.getLogger(BackfillCheckpoint.class);
+
+  private final Map<String, Long> done = new ConcurrentHashMap<>();
+  private final Writer writer;
+
+  /**
+   * @param file the checkpoint file, created if it does not exist
+   */
+  BackfillCheckpoint(Path file) {
+    try {
+      if (Files.exists(file)) {
+        load(file);
+      } else if (file.getParent() != null) {
+        Files.createDirectories(file.getParent());
+      }
+      this.writer = Files.newBufferedWriter(file, StandardCharsets.UTF_8,
+          StandardOpenOption.CREATE, StandardOpenOption.APPEND);
+    } catch (IOException e) {
+      throw new RuntimeException(e);
+    }
+  }
+
+  private void load(Path file) throws IOException {
+    try (BufferedReader reader = Files.newBufferedReader(file, StandardCharsets.UTF_8)) {
+      String line;
+      while ((line = reader.readLine()) != null) {
+        String[] parts = line.split("\t");
+        try {
+          done.put(parts[0], Long.parseLong(parts[1]));
+        } catch (ArrayIndexOutOfBoundsException | NumberFormatException e) {
+          //most likely the last line, cut short when the job was killed
+          LOGGER.warn("Ignoring invalid checkpoint line: {}", line);
+        }
+      }
+    }
+    LOGGER.info("Loaded checkpoint of {} symbols from {}", done.size(), file);
+  }
+
+  /**
+   * @param symbol the symbol
+   * @return end of the last completed window of the symbol, or empty if there is none
+   */
+  OptionalLong completedUntil(String symbol) {
+    Long end = done.get(symbol);
+    return end == null ? OptionalLong.empty() : OptionalLong.of(end);
+  }
+
+  /**
+   * @param symbol the symbol
+   * @param endMillis end of the window that has been completed
+   */
+  synchronized void complete(String symbol, long endMillis) {
+    done.put(symbol, endMillis);
+    try {
+      writer.write(symbol + "\t" + endMillis + "\n");
+      writer.flush();
+    } catch (IOException e) {
+      throw new RuntimeException(e);
+    }
+  }
+
+  @Override
+  public synchronized void close() {
+    try {
+      writer.close();
+    } catch (IOException e) {
+      LOGGER.warn("Failed to close checkpoint", e);
+    }
+  }
+}
@@ -0,0 +1,245 @@
+package com.studerw.tda.history;
+
+import com.studerw.tda.model.history.CandleSeries;
+import com.studerw.tda.model.history.FrequencyType;
+import com.studerw.tda.model.history.PriceHistory;
+import java.time.Instant;
+import java.time.LocalDate;
+import java.time.LocalTime;
+import java.util.Collection;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+import java.util.stream.Collectors;
+
+/**
+ * <p>
+ * Aggregates fine grained candles, typically the 1 minute candles of a single {@link
+ * com.studerw.tda.client.TdaClient#priceHistorySeries(com.studerw.tda.model.history.PriceHistReq)}
+ * call, into any coarser frequency, so 5 minute, hourly, daily and weekly bars of a symbol need
+ * only one request.
+ * </p>
+ *
+ * <p>
+ * Bars are aligned to the {@link TradingSession}:
+ * </p>
+ * <ul>
+ *   <li>minute bars are counted from the regular open, so 60 minute bars run 9:30 - 10:30 and so
+ *   on. No bar spans the regular open or close: the last regular bar is cut short at the close,
+ *   and after hours bars are counted from the close.</li>
+ *   <li>daily, weekly and monthly bars start at midnight of the session day, the
+ *   {@link TradingSession#FIRST_DAY_OF_WEEK} of the week and the first of the month, in the
+ *   session's time zone.</li>
+ * </ul>
+ *
+ * <p>
+ * With <em>extendedHours</em> off, candles outside the regular session are skipped, which gives
+ * the same bars as requesting the coarser frequency with <em>needExtendedHoursData=false</em>. With
+ * it on, candles of the extended session are included as well, and anything outside of it is
+ * skipped. Daily or longer candles, which TDA dates at midnight before the extended open, are
+ * taken as a whole session and always included in daily, weekly and monthly bars, so weekly bars
+ * can be built from daily candles as well.
+ * </p>
+ *
+ * <p>
+ * A resampler works in a single pass: feed it candles in ascending order through {@link
+ * #candle(long, double, double, double, double, long)} and every bar is passed on as soon as a
+ * candle of the next bar arrives. Call {@link #flush()} at the end to emit the last bar, which may
+ * still be incomplete. Instances keep state and are not thread safe, but any number of them can run
+ * in parallel, see {@link #resample(Collection, FrequencyType, int, boolean, TradingSession)}.
+ * </p>
+ */
+public class CandleResampler implements CandleVisitor {
+
+  private static final long MINUTE = TimeUnit.MINUTES.toMillis(1);
+
+  private final FrequencyType frequencyType;
+  private final long barMillis;
+  private final boolean extendedHours;
+  private final TradingSession session;
+  private final CandleVisitor out;
+
+  //session boundaries of the day of the last candle, only recomputed when the day changes
+  private long dayStart = Long.MAX_VALUE;
+  private long nextDayStart = Long.MIN_VALUE;
+  private long regularOpen;
+  private long regularClose;
+  private long extendedOpen;
+  private long extendedClose;
+  private long periodStart;
+
+  //the bar being built
+  private boolean hasBar;
+  private long barStart;
+  private double open;
+  private double high;
+  private double low;
+  private double close;
+  private long volume;
+
+  /**
+   * @param frequencyType frequency type of the bars to build
+   * @param frequency number of frequencyType units per bar. Any positive number for minutes, 1
+   * otherwise.
+   * @param extendedHours whether to include the extended session
+   * @param session trading hours used to align the bars
+   * @param out receives each completed bar
+   */
+  public CandleResampler(FrequencyType frequencyType, int frequency, boolean extendedHours,
+      TradingSession session, CandleVisitor out) {
+    if (frequencyType == null || session == null || out == null) {
+      throw new IllegalArgumentException("frequencyType, session and out cannot be null");
+    }
+    if (frequency < 1 || (frequencyType != FrequencyType.minute && frequency != 1)) {
+      throw new IllegalArgumentException(String.format(
+          "FrequencyType %s cannot use frequency %d", frequencyType, frequency));
+    }
+    this.frequencyType = frequencyType;
+    this.barMillis = frequency * MINUTE;
+    this.extendedHours = extendedHours;
+    this.session = session;
+    this.out = out;
+  }
+
+  /**
+   * @param minutes candles to aggregate, finer than the target frequency
+   * @param frequencyType frequency type of the bars to build
+   * @param frequency number of frequencyType units per bar
+   * @param extendedHours whether to include the extended session
+   * @param session trading hours used to align the bars
+   * @return the bars, including a possibly incomplete last bar
+   */
+  public static CandleSeries resample(CandleSeries minutes, FrequencyType frequencyType,
+      int frequency, boolean extendedHours, TradingSession session) {
+    CandleSeries.Builder builder = new CandleSeries.Builder(
+        estimate(minutes.size(), frequencyType, frequency))
+        .withSymbol(minutes.getSymbol());
+    CandleResampler resampler = new CandleResampler(frequencyType, frequency, extendedHours,
+        session, builder::add);
+    for (int i = 0; i < minutes.size(); i++) {
+      resampler.candle(minutes.getDatetime(i), minutes.getOpen(i), minutes.getHigh(i),
+          minutes.getLow(i), minutes.getClose(i), minutes.getVolume(i));
+    }
+    resampler.flush();
+    return builder.build();
+  }
+
+  /**
+   * @param priceHistory candles to aggregate, finer than the target frequency
+   * @param frequencyType frequency type of the bars to build
+   * @param frequency number of frequencyType units per bar
+   * @param extendedHours whether to include the extended session
+   * @param session trading hours used to align the bars
+   * @return the bars, including a possibly incomplete last bar
+   */
+  public static CandleSeries resample(PriceHistory priceHistory, FrequencyType frequencyType,
+      int frequency, boolean extendedHours, TradingSession session) {
+    return resample(CandleSeries.of(priceHistory), frequencyType, frequency, extendedHours,
+        session);
+  }
+
+  /**
+   * Resample the series of many symbols in parallel on the common fork join pool.
+   *
+   * @param series candles of each symbol
+   * @param frequencyType frequency type of the bars to build
+   * @param frequency number of frequencyType units per bar
+   * @param extendedHours whether to include the extended session
+   * @param session trading hours used to align the bars
+   * @return the bars of each symbol, in the same order as {@code series}
+   */
+  public static List<CandleSeries> resample(Collection<CandleSeries> series,
+      FrequencyType frequencyType, int frequency, boolean extendedHours, TradingSession session) {
+    return series.parallelStream()
+        .map(s -> resample(s, frequencyType, frequency, extendedHours, session))
+        .collect(Collectors.toList());
+  }
+
+  @Override
+  public void candle(long datetime, double open, double high, double low, double close,
+      long volume) {
+    if (datetime < dayStart || datetime >= nextDayStart) {
+      startDay(datetime);
+    }
+    long sessionStart = extendedHours ? extendedOpen : regularOpen;
+    long sessionEnd = extendedHours ? extendedClose : regularClose;
+    boolean wholeDay = frequencyType != FrequencyType.minute && datetime < extendedOpen;
+    if (!wholeDay && (datetime < sessionStart || datetime >= sessionEnd)) {
+      return;
+    }
+
+    long start = barStart(datetime);
+    if (hasBar && start != barStart) {
+      flush();
+    }
+    if (!hasBar) {
+      this.hasBar = true;
+      this.barStart = start;
+      this.open = open;
+      this.high = high;
+      this.low = low;
+      this.close = close;
+      this.volume = volume;
+      return;
+    }
+    if (Double.isNaN(this.open)) {
+      this.open = open;
+    }
+    this.high = max(this.high, high);
+    this.low = min(this.low, low);
+    if (!Double.isNaN(close)) {
+      this.close = close;
+    }
+    this.volume += volume;
+  }
+
+  /**
+   * Emit the bar being built, if any.
+   */
+  public void flush() {
+    if (hasBar) {
+      hasBar = false;
+      out.candle(barStart, open, high, low, close, volume);
+    }
+  }
+
+  private long barStart(long datetime) {
+    switch (frequencyType) {
+      case minute:
+        long anchor = datetime < regularClose ? regularOpen : regularClose;
+        return anchor + Math.floorDiv(datetime - anchor, barMillis) * barMillis;
+      default:
+        return periodStart;
+    }
+  }
+
+  private void startDay(long datetime) {
+    LocalDate day = Instant.ofEpochMilli(datetime).atZone(session.getZone()).toLocalDate();
+    this.dayStart = millis(day);
+    this.nextDayStart = millis(day.plusDays(1));
+    this.regularOpen = millis(day, session.getRegularOpen());
+    this.regularClose = millis(day, session.getRegularClose());
+    this.extendedOpen = millis(day, session.getExtendedOpen());
+    this.extendedClose = millis(day, session.getExtendedClose());
+    this.periodStart = millis(TradingSession.periodStart(frequencyType, day));
+  }
+
+  private long millis(LocalDate day) {
+    return day.atStartOfDay(session.getZone()).toInstant().toEpochMilli();
+  }
+
+  private long millis(LocalDate day, LocalTime time) {
+    return day.atTime(time).atZone(session.getZone()).toInstant().toEpochMilli();
+  }
+
+  private static double max(double a, double b) {
+    return Double.isNaN(a) ? b : Double.isNaN(b) ? a : Math.max(a, b);
+  }
+
+  private static double min(double a, double b) {
+    return Double.isNaN(a) ? b : Double.isNaN(b) ? a : Math.min(a, b);
+  }
+
+  private static int estimate(int candles, FrequencyType frequencyType, int frequency) {
+    return frequencyType == FrequencyType.minute ? candles / frequency + 1 : 16;
+  }
+}
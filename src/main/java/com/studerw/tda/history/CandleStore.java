@@ -0,0 +1,481 @@
+package com.studerw.tda.history;
+
+import com.studerw.tda.model.history.CandleSeries;
+import com.studerw.tda.model.history.FrequencyType;
+import java.io.Closeable;
+import java.io.IOException;
+import java.io.UnsupportedEncodingException;
+import java.net.URLEncoder;
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.channels.FileChannel.MapMode;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.Objects;
+import java.util.OptionalLong;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import org.apache.commons.lang3.StringUtils;
+import org.apache.commons.lang3.builder.ToStringBuilder;
+import org.apache.commons.lang3.builder.ToStringStyle;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+/**
+ * <p>
+ * Local, append only store of candles, with one file per symbol, frequency and session (e.g. MSFT
+ * at 5 minutes including extended hours) under a base directory. Files are read through memory
+ * mapping, so scanning a range of years of candles touches no heap beyond the pages the OS keeps
+ * cached, and a store that is already synced needs no network at all. Use {@link CandleSync} to keep it up to date from TDA.
+ * </p>
+ *
+ * <p>
+ * Each file is a small header followed by blocks of {@value #DEFAULT_BLOCK_CAPACITY} candles.
+ * Within a block the values are stored by column: all datetimes, then all opens, highs, lows,
+ * closes and volumes. New candles are appended to the last block, and the candle count in the
+ * header is only updated once they have been written to disk, so a crash in the middle of an
+ * append never leaves partial candles behind. A file is mapped as a whole, so an append which would
+ * grow it past 2GB is rejected.
+ * </p>
+ *
+ * <p>
+ * Candles are kept in ascending order of their datetime; appending a candle at or before the last
+ * stored one is silently skipped, which makes overlapping downloads harmless. This class is thread
+ * safe, but a file must only be written by one store at a time.
+ * </p>
+ */
+public class CandleStore implements Closeable {
+
+  private static final Logger LOGGER = LoggerFactory.getLogger(CandleStore.class);
+
+  static final int DEFAULT_BLOCK_CAPACITY = 4096;
+  private static final int MAGIC = 0x54444143;
+  private static final int VERSION = 1;
+  private static final int HEADER_SIZE = 64;
+  private static final int COLUMNS = 6;
+  private static final int DATETIME = 0;
+  private static final int OPEN = 1;
+  private static final int HIGH = 2;
+  private static final int LOW = 3;
+  private static final int CLOSE = 4;
+  private static final int VOLUME = 5;
+
+  private final Path directory;
+  private final int blockCapacity;
+  private final ConcurrentMap<Key, SeriesFile> files = new ConcurrentHashMap<>();
+  private volatile boolean closed;
+
+  /**
+   * @param directory base directory of the store, created if it does not exist
+   */
+  public CandleStore(Path directory) {
+    this(directory, DEFAULT_BLOCK_CAPACITY);
+  }
+
+  CandleStore(Path directory, int blockCapacity) {
+    if (directory == null) {
+      throw new IllegalArgumentException("directory cannot be null");
+    }
+    if (blockCapacity < 1) {
+      throw new IllegalArgumentException("blockCapacity must be positive");
+    }
+    this.directory = directory;
+    this.blockCapacity = blockCapacity;
+    try {
+      Files.createDirectories(directory);
+    } catch (IOException e) {
+      throw new RuntimeException(e);
+    }
+  }
+
+  /**
+   * @param symbol the symbol
+   * @param frequencyType the frequency type of the candles
+   * @param frequency the number of frequencyType units per candle
+   * @param extendedHours whether the candles include pre and after market trading
+   * @return number of stored candles
+   */
+  public long size(String symbol, FrequencyType frequencyType, int frequency,
+      boolean extendedHours) {
+    return file(symbol, frequencyType, frequency, extendedHours).count;
+  }
+
+  /**
+   * @param symbol the symbol
+   * @param frequencyType the frequency type of the candles
+   * @param frequency the number of frequencyType units per candle
+   * @param extendedHours whether the candles include pre and after market trading
+   * @return datetime of the last stored candle in millis since the epoch, or empty if there is none
+   */
+  public OptionalLong lastDatetime(String symbol, FrequencyType frequencyType, int frequency,
+      boolean extendedHours) {
+    return file(symbol, frequencyType, frequency, extendedHours).lastDatetime();
+  }
+
+  /**
+   * Append the candles of the series which are after the last stored candle.
+   *
+   * @param frequencyType the frequency type of the candles
+   * @param frequency the number of frequencyType units per candle
+   * @param extendedHours whether the candles include pre and after market trading
+   * @param series candles to append, keyed by {@link CandleSeries#getSymbol()}
+   * @return number of candles actually appended
+   */
+  public int append(FrequencyType frequencyType, int frequency, boolean extendedHours,
+      CandleSeries series) {
+    if (series == null || StringUtils.isBlank(series.getSymbol())) {
+      throw new IllegalArgumentException("series and its symbol cannot be blank");
+    }
+    return file(series.getSymbol(), frequencyType, frequency, extendedHours).append(series);
+  }
+
+  /**
+   * @param symbol the symbol
+   * @param frequencyType the frequency type of the candles
+   * @param frequency the number of frequencyType units per candle
+   * @param extendedHours whether the candles include pre and after market trading
+   * @return all stored candles
+   */
+  public CandleSeries read(String symbol, FrequencyType frequencyType, int frequency,
+      boolean extendedHours) {
+    return read(symbol, frequencyType, frequency, extendedHours, Long.MIN_VALUE, Long.MAX_VALUE);
+  }
+
+  /**
+   * @param symbol the symbol
+   * @param frequencyType the frequency type of the candles
+   * @param frequency the number of frequencyType units per candle
+   * @param extendedHours whether the candles include pre and after market trading
+   * @param fromMillis start datetime in millis since the epoch, inclusive
+   * @param toMillis end datetime in millis since the epoch, exclusive
+   * @return the stored candles within the range, copied into a new series
+   */
+  public CandleSeries read(String symbol, FrequencyType frequencyType, int frequency,
+      boolean extendedHours, long fromMillis, long toMillis) {
+    CandleSeries.Builder builder = new CandleSeries.Builder(0).withSymbol(symbol.toUpperCase());
+    scan(symbol, frequencyType, frequency, extendedHours, fromMillis, toMillis, builder::add);
+    return builder.build();
+  }
+
+  /**
+   * Visit the stored candles within the range, in order, straight from the mapped file.
+   *
+   * @param symbol the symbol
+   * @param frequencyType the frequency type of the candles
+   * @param frequency the number of frequencyType units per candle
+   * @param extendedHours whether the candles include pre and after market trading
+   * @param fromMillis start datetime in millis since the epoch, inclusive
+   * @param toMillis end datetime in millis since the epoch, exclusive
+   * @param visitor receives each candle
+   * @return number of candles visited
+   */
+  public int scan(String symbol, FrequencyType frequencyType, int frequency,
+      boolean extendedHours, long fromMillis, long toMillis, CandleVisitor visitor) {
+    if (fromMillis > toMillis) {
+      throw new IllegalArgumentException("fromMillis cannot be after toMillis");
+    }
+    return file(symbol, frequencyType, frequency, extendedHours)
+        .scan(fromMillis, toMillis, visitor);
+  }
+
+  @Override
+  public void close() {
+    closed = true;
+    for (SeriesFile file : files.values()) {
+      file.close();
+    }
+    files.clear();
+  }
+
+  private SeriesFile file(String symbol, FrequencyType frequencyType, int frequency,
+      boolean extendedHours) {
+    if (StringUtils.isBlank(symbol)) {
+      throw new IllegalArgumentException("symbol cannot be blank");
+    }
+    if (frequencyType == null || frequency < 1) {
+      throw new IllegalArgumentException("frequencyType must be set and frequency positive");
+    }
+    if (closed) {
+      throw new IllegalStateException("CandleStore has been closed");
+    }
+    Key key = new Key(symbol.toUpperCase(), frequencyType, frequency, extendedHours);
+    return files.computeIfAbsent(key, k -> new SeriesFile(k, path(k)));
+  }
+
+  Path path(Key key) {
+    try {
+      return directory.resolve(URLEncoder.encode(key.symbol, "UTF-8"))
+          .resolve(key.frequencyType.name() + "-" + key.frequency
+              + (key.extendedHours ? "-extended" : "") + ".candles");
+    } catch (UnsupportedEncodingException e) {
+      throw new IllegalStateException(e);
+    }
+  }
+
+  static final class Key {
+
+    final String symbol;
+    final FrequencyType frequencyType;
+    final int frequency;
+    final boolean extendedHours;
+
+    Key(String symbol, FrequencyType frequencyType, int frequency, boolean extendedHours) {
+      this.symbol = symbol;
+      this.frequencyType = frequencyType;
+      this.frequency = frequency;
+      this.extendedHours = extendedHours;
+    }
+
+    @Override
+    public boolean equals(Object o) {
+      if (this == o) {
+        return true;
+      }
+      if (!(o instanceof Key)) {
+        return false;
+      }
+      Key key = (Key) o;
+      return frequency == key.frequency && extendedHours == key.extendedHours
+          && symbol.equals(key.symbol) && frequencyType == key.frequencyType;
+    }
+
+    @Override
+    public int hashCode() {
+      return Objects.hash(symbol, frequencyType, frequency, extendedHours);
+    }
+
+    @Override
+    public String toString() {
+      return new ToStringBuilder(this, ToStringStyle.SHORT_PREFIX_STYLE)
+          .append("symbol", symbol)
+          .append("frequencyType", frequencyType)
+          .append("frequency", frequency)
+          .append("extendedHours", extendedHours)
+          .toString();
+    }
+  }
+
+  /**
+   * One open file. Appends and remapping are guarded by the instance lock; the mapping itself is
+   * read without locking.
+   */
+  private final class SeriesFile {
+
+    private final Key key;
+    private final FileChannel channel;
+    private final int capacity;
+    private volatile long count;
+    private volatile Mapping mapping;
+
+    SeriesFile(Key key, Path path) {
+      this.key = key;
+      try {
+        Files.createDirectories(path.getParent());
+        this.channel = FileChannel.open(path, StandardOpenOption.CREATE,
+            StandardOpenOption.READ, StandardOpenOption.WRITE);
+        if (channel.size() == 0) {
+          this.capacity = blockCapacity;
+          writeHeader();
+        } else {
+          ByteBuffer header = ByteBuffer.allocate(HEADER_SIZE).order(ByteOrder.LITTLE_ENDIAN);
+          channel.read(header, 0);
+          header.flip();
+          if (header.getInt() != MAGIC || header.getInt() != VERSION) {
+            throw new IllegalStateException("Not a candle file: " + path);
+          }
+          this.capacity = header.getInt();
+          this.count = header.getLong();
+        }
+        LOGGER.debug("Opened {} with {} candles", path, count);
+      } catch (IOException e) {
+        throw new RuntimeException(e);
+      }
+    }
+
+    OptionalLong lastDatetime() {
+      long n = count;
+      if (n == 0) {
+        return OptionalLong.empty();
+      }
+      return OptionalLong.of(mapping(n).getLong(offset(DATETIME, n - 1)));
+    }
+
+    synchronized int append(CandleSeries series) {
+      OptionalLong last = lastDatetime();
+      int from = last.isPresent() ? series.indexOf(last.getAsLong() + 1) : 0;
+      int appended = series.size() - from;
+      if (appended == 0) {
+        return 0;
+      }
+      long end = position(VOLUME, count + appended - 1) + 8;
+      if (end > Integer.MAX_VALUE) {
+        throw new IllegalStateException("Cannot grow the candle file of " + key + " past 2GB");
+      }
+      try {
+        long n = count;
+        int i = from;
+        while (i < series.size()) {
+          //a run of candles that fits into the current block
+          int run = (int) Math.min(series.size() - i, capacity - n % capacity);
+          ByteBuffer buffer = ByteBuffer.allocate(run * 8).order(ByteOrder.LITTLE_ENDIAN);
+          for (int column = 0; column < COLUMNS; column++) {
+            buffer.clear();
+            for (int j = i; j < i + run; j++) {
+              putValue(buffer, column, series, j);
+            }
+            buffer.flip();
+            long position = position(column, n);
+            while (buffer.hasRemaining()) {
+              position += channel.write(buffer, position);
+            }
+          }
+          i += run;
+          n += run;
+        }
+        channel.force(false);
+        this.count = n;
+        writeHeader();
+        LOGGER.debug("Appended {} candles to {}, {} in total", appended, key, n);
+        return appended;
+      } catch (IOException e) {
+        throw new RuntimeException(e);
+      }
+    }
+
+    int scan(long fromMillis, long toMillis, CandleVisitor visitor) {
+      final long n = count;
+      if (n == 0) {
+        return 0;
+      }
+      ByteBuffer buffer = mapping(n);
+      long from = indexOf(buffer, n, fromMillis);
+      long to = indexOf(buffer, n, toMillis);
+      for (long i = from; i < to; i++) {
+        visitor.candle(buffer.getLong(offset(DATETIME, i)),
+            buffer.getDouble(offset(OPEN, i)),
+            buffer.getDouble(offset(HIGH, i)),
+            buffer.getDouble(offset(LOW, i)),
+            buffer.getDouble(offset(CLOSE, i)),
+            buffer.getLong(offset(VOLUME, i)));
+      }
+      return (int) (to - from);
+    }
+
+    /**
+     * @return index of the first candle at or after the datetime
+     */
+    private long indexOf(ByteBuffer buffer, long n, long millis) {
+      long low = 0;
+      long high = n;
+      while (low < high) {
+        long mid = (low + high) >>> 1;
+        if (buffer.getLong(offset(DATETIME, mid)) < millis) {
+          low = mid + 1;
+        } else {
+          high = mid;
+        }
+      }
+      return low;
+    }
+
+    /**
+     * @param n number of candles the mapping must cover
+     */
+    private ByteBuffer mapping(long n) {
+      Mapping current = this.mapping;
+      if (current == null || current.count < n) {
+        synchronized (this) {
+          current = this.mapping;
+          if (current == null || current.count < n) {
+            current = map(count);
+            this.mapping = current;
+          }
+        }
+      }
+      //duplicate so concurrent readers never share a position
+      return current.buffer.duplicate().order(ByteOrder.LITTLE_ENDIAN);
+    }
+
+    private Mapping map(long n) {
+      try {
+        long size = channel.size();
+        if (size > Integer.MAX_VALUE) {
+          throw new IllegalStateException("Candle file larger than 2GB: " + key);
+        }
+        MappedByteBuffer buffer = channel.map(MapMode.READ_ONLY, 0, size);
+        buffer.order(ByteOrder.LITTLE_ENDIAN);
+        return new Mapping(buffer, n);
+      } catch (IOException e) {
+        throw new RuntimeException(e);
+      }
+    }
+
+    /**
+     * @return position of a value in the file
+     */
+    private long position(int column, long i) {
+      long block = i / capacity;
+      long blockStart = HEADER_SIZE + block * capacity * COLUMNS * 8L;
+      return blockStart + ((long) column * capacity + i % capacity) * 8L;
+    }
+
+    /**
+     * @return position of a stored value in the mapping, which appends keep within 2GB
+     */
+    private int offset(int column, long i) {
+      return Math.toIntExact(position(column, i));
+    }
+
+    private void writeHeader() throws IOException {
+      ByteBuffer header = ByteBuffer.allocate(HEADER_SIZE).order(ByteOrder.LITTLE_ENDIAN);
+      header.putInt(MAGIC).putInt(VERSION).putInt(capacity).putLong(count);
+      header.position(0).limit(HEADER_SIZE);
+      channel.write(header, 0);
+      channel.force(false);
+    }
+
+    void close() {
+      try {
+        channel.close();
+      } catch (IOException e) {
+        LOGGER.warn("Failed to close candle file of {}", key, e);
+      }
+    }
+  }
+
+  private static void putValue(ByteBuffer buffer, int column, CandleSeries series, int i) {
+    switch (column) {
+      case DATETIME:
+        buffer.putLong(series.getDatetime(i));
+        break;
+      case OPEN:
+        buffer.putDouble(series.getOpen(i));
+        break;
+      case HIGH:
+        buffer.putDouble(series.getHigh(i));
+        break;
+      case LOW:
+        buffer.putDouble(series.getLow(i));
+        break;
+      case CLOSE:
+        buffer.putDouble(series.getClose(i));
+        break;
+      default:
+        buffer.putLong(series.getVolume(i));
+    }
+  }
+
+  private static final class Mapping {
+
+    final MappedByteBuffer buffer;
+    final long count;
+
+    Mapping(MappedByteBuffer buffer, long count) {
+      this.buffer = buffer;
+      this.count = count;
+    }
+  }
+}
@@ -0,0 +1,160 @@
+package com.studerw.tda.history;
+
+import com.studerw.tda.client.PriceHistoryFetcher;
+import com.studerw.tda.model.history.CandleSeries;
+import com.studerw.tda.model.history.FrequencyType;
+import com.studerw.tda.model.history.PeriodType;
+import com.studerw.tda.model.history.PriceHistReq;
+import com.studerw.tda.model.history.PriceHistReqValidator;
+import java.time.Instant;
+import java.time.LocalDate;
+import java.time.ZoneId;
+import java.util.List;
+import java.util.OptionalLong;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+/**
+ * <p>
+ * Brings a {@link CandleStore} up to date from TDA. Only the candles after the last stored one are
+ * requested, so once a symbol has been synced, every later sync is a small request for the latest
+ * candles instead of downloading the whole history again.
+ * </p>
+ *
+ * <p>
+ * The candle still forming is never requested, as the store would keep it as is once a later
+ * candle follows. Regular and extended hours candles are stored apart.
+ * </p>
+ *
+ * <pre>
+ *   CandleStore store = new CandleStore(Paths.get("/data/candles"));
+ *   CandleSync sync = new CandleSync(tdaClient, store);
+ *   sync.sync("MSFT", FrequencyType.minute, 5, false, startOfYear);
+ *   CandleSeries msft = store.read("MSFT", FrequencyType.minute, 5, false);
+ * </pre>
+ */
+public class CandleSync {
+
+  private static final Logger LOGGER = LoggerFactory.getLogger(CandleSync.class);
+
+  private final PriceHistoryFetcher client;
+  private final CandleStore store;
+
+  /**
+   * @param client client used to fetch the price history
+   * @param store the store to keep up to date
+   */
+  public CandleSync(PriceHistoryFetcher client, CandleStore store) {
+    if (client == null || store == null) {
+      throw new IllegalArgumentException("client and store cannot be null");
+    }
+    this.client = client;
+    this.store = store;
+  }
+
+  /**
+   * Fetch and store all candles after the last stored one, up to the last closed candle.
+   *
+   * @param symbol the symbol
+   * @param frequencyType the frequency type of the candles
+   * @param frequency the number of frequencyType units per candle, see {@link FrequencyType}
+   * @param extendedHours whether to include pre and after market trading
+   * @param startMillis where to start in millis since the epoch if nothing has been stored yet
+   * @return number of new candles stored
+   * @throws IllegalArgumentException if the frequency is not valid for TDA
+   */
+  public int sync(String symbol, FrequencyType frequencyType, int frequency,
+      boolean extendedHours, long startMillis) {
+    return sync(symbol, frequencyType, frequency, extendedHours, startMillis, Long.MAX_VALUE);
+  }
+
+  /**
+   * Fetch and store all candles after the last stored one, up to the end date or the last closed
+   * candle, whichever is earlier.
+   *
+   * @param symbol the symbol
+   * @param frequencyType the frequency type of the candles
+   * @param frequency the number of frequencyType units per candle, see {@link FrequencyType}
+   * @param extendedHours whether to include pre and after market trading
+   * @param startMillis where to start in millis since the epoch if nothing has been stored yet
+   * @param endMillis end date in millis since the epoch, inclusive
+   * @return number of new candles stored
+   * @throws IllegalArgumentException if the frequency is not valid for TDA
+   */
+  public int sync(String symbol, FrequencyType frequencyType, int frequency,
+      boolean extendedHours, long startMillis, long endMillis) {
+    long end = Math.min(endMillis,
+        closedBefore(frequencyType, frequency, System.currentTimeMillis()));
+    PriceHistReq request = request(store, symbol, frequencyType, frequency, extendedHours,
+        startMillis, end);
+    if (request == null) {
+      LOGGER.debug("{} {} {} is already up to date", symbol, frequency, frequencyType);
+      return 0;
+    }
+    CandleSeries series = client.priceHistorySeries(request);
+    int appended = store.append(frequencyType, frequency, extendedHours, series);
+    LOGGER.info("Synced {} new candles of {} every {} {}", appended, series.getSymbol(), frequency,
+        frequencyType);
+    return appended;
+  }
+
+  /**
+   * @return the request for everything after the last stored candle, or null if the store is
+   * already past the end date
+   */
+  static PriceHistReq request(CandleStore store, String symbol, FrequencyType frequencyType,
+      int frequency, boolean extendedHours, long startMillis, long endMillis) {
+    OptionalLong last = store.lastDatetime(symbol, frequencyType, frequency, extendedHours);
+    long start = last.isPresent() ? last.getAsLong() + 1 : startMillis;
+    if (start > endMillis) {
+      return null;
+    }
+
+    return dateRangeRequest(symbol, frequencyType, frequency, start, endMillis, extendedHours);
+  }
+
+  /**
+   * Minute candles start on multiples of their length since the epoch, longer ones at midnight New
+   * York time on the day, week or month start given by {@link TradingSession#periodStart}, as
+   * resampled candles do. Candles dated at midnight Central time, as TDA does, start after that
+   * and are excluded as well.
+   *
+   * @param nowMillis current time in millis since the epoch
+   * @return the last millisecond before the candle forming at {@code nowMillis}
+   */
+  static long closedBefore(FrequencyType frequencyType, int frequency, long nowMillis) {
+    if (frequencyType == FrequencyType.minute) {
+      long length = frequency * 60_000L;
+      return Math.floorDiv(nowMillis, length) * length - 1;
+    }
+    ZoneId zone = TradingSession.US_EQUITY.getZone();
+    LocalDate day = Instant.ofEpochMilli(nowMillis).atZone(zone).toLocalDate();
+    return TradingSession.periodStart(frequencyType, day).atStartOfDay(zone).toInstant()
+        .toEpochMilli() - 1;
+  }
+
+  /**
+   * @return a validated request for the candles between the two dates
+   * @throws IllegalArgumentException if the frequency is not valid for TDA
+   */
+  static PriceHistReq dateRangeRequest(String symbol, FrequencyType frequencyType, int frequency,
+      long startMillis, long endMillis, boolean extendedHours) {
+    //with both dates set no period may be given, and the period type must allow the frequency
+    PeriodType periodType = frequencyType == FrequencyType.minute ? PeriodType.day
+        : PeriodType.year;
+    PriceHistReq request = PriceHistReq.Builder.priceHistReq()
+        .withSymbol(symbol.toUpperCase())
+        .withPeriodType(periodType)
+        .withFrequencyType(frequencyType)
+        .withFrequency(frequency)
+        .withStartDate(startMillis)
+        .withEndDate(endMillis)
+        .withExtendedHours(extendedHours)
+        .build();
+    List<String> violations = PriceHistReqValidator.validate(request);
+    if (!violations.isEmpty()) {
+      throw new IllegalArgumentException(violations.toString());
+    }
+    return request;
+  }
+}
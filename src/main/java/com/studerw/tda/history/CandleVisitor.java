@@ -0,0 +1,22 @@
+package com.studerw.tda.history;
+
+/**
+ * Receives candles one at a time as primitives, without boxing or creating an object per candle.
+ *
+ * @see CandleStore#scan(String, com.studerw.tda.model.history.FrequencyType, int, boolean, long,
+ * long, CandleVisitor)
+ * @see CandleResampler
+ */
+@FunctionalInterface
+public interface CandleVisitor {
+
+  /**
+   * @param datetime datetime of the candle in millis since the epoch
+   * @param open open price
+   * @param high high price
+   * @param low low price
+   * @param close close price
+   * @param volume volume
+   */
+  void candle(long datetime, double open, double high, double low, double close, long volume);
+}
@@ -0,0 +1,415 @@
+package com.studerw.tda.history;
+
+import com.studerw.tda.client.PriceHistoryFetcher;
+import com.studerw.tda.client.TdaHttpException;
+import com.studerw.tda.model.history.CandleSeries;
+import com.studerw.tda.model.history.FrequencyType;
+import com.studerw.tda.model.history.PriceHistReq;
+import java.io.IOException;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.LinkedHashMap;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.OptionalLong;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+import org.apache.commons.lang3.builder.ToStringBuilder;
+import org.apache.commons.lang3.builder.ToStringStyle;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+/**
+ * <p>
+ * Downloads the price history of many symbols over a long date range. Each symbol's range is split
+ * into windows TDA will serve in one call (10 days of minute candles, 20 years of daily, weekly or
+ * monthly candles, by default), and symbols are fetched concurrently by a pool of worker threads.
+ * The client's {@link com.studerw.tda.http.RequestScheduler} keeps the requests within the rate
+ * budget; all of them go through the <em>BULK</em> lane, so orders and quotes placed by the same
+ * client are never stuck behind a backfill.
+ * </p>
+ *
+ * <p>
+ * The windows of one symbol are fetched in order, and each is handed to the {@link Sink} as soon
+ * as it arrives, so nothing is held in memory beyond the window in flight and a sink such as a
+ * {@link CandleStore} always sees ascending candles. Calls failing with an I/O error or a 429 or
+ * 5xx response are retried with exponential backoff; a symbol that still fails, or fails with any
+ * other error, is reported in the {@link Result} and the job carries on with the others.
+ * </p>
+ *
+ * <p>
+ * Progress is written to a checkpoint file after every window. Running the same job again with
+ * the same checkpoint file skips whatever was already completed, so a killed job simply resumes.
+ * Use a new checkpoint file for a different date range or frequency.
+ * </p>
+ *
+ * <pre>
+ *   CandleStore store = new CandleStore(Paths.get("/data/candles"));
+ *   HistoryBackfiller backfiller = HistoryBackfiller.Builder.historyBackfiller(tdaClient)
+ *       .withFrequency(FrequencyType.minute, 1)
+ *       .withCheckpoint(Paths.get("/data/backfill-minute.checkpoint"))
+ *       .build();
+ *   Result result = backfiller.run(symbols, start, end,
+ *       (symbol, candles) -&gt; store.append(FrequencyType.minute, 1, true, candles));
+ * </pre>
+ */
+public class HistoryBackfiller {
+
+  private static final Logger LOGGER = LoggerFactory.getLogger(HistoryBackfiller.class);
+
+  private final PriceHistoryFetcher client;
+  private final FrequencyType frequencyType;
+  private final int frequency;
+  private final boolean extendedHours;
+  private final long windowMillis;
+  private final int threads;
+  private final int maxRetries;
+  private final long initialBackoffMillis;
+  private final Path checkpointFile;
+
+  private HistoryBackfiller(Builder builder) {
+    this.client = builder.client;
+    this.frequencyType = builder.frequencyType;
+    this.frequency = builder.frequency;
+    this.extendedHours = builder.extendedHours;
+    this.windowMillis = builder.windowMillis != null ? builder.windowMillis
+        : defaultWindowMillis(builder.frequencyType);
+    this.threads = builder.threads;
+    this.maxRetries = builder.maxRetries;
+    this.initialBackoffMillis = builder.initialBackoffMillis;
+    this.checkpointFile = builder.checkpointFile;
+  }
+
+  /**
+   * Backfill every symbol, blocking until all of them are done or have failed.
+   *
+   * @param symbols symbols to backfill, case insensitive duplicates are ignored
+   * @param startMillis start of the range in millis since the epoch, inclusive
+   * @param endMillis end of the range in millis since the epoch, inclusive
+   * @param sink receives the candles of each window, from the worker threads
+   * @return summary of the job
+   * @throws InterruptedException if interrupted while waiting; running windows are cancelled
+   */
+  public Result run(List<String> symbols, long startMillis, long endMillis, Sink sink)
+      throws InterruptedException {
+    if (symbols == null || symbols.isEmpty() || sink == null) {
+      throw new IllegalArgumentException("symbols cannot be empty and sink cannot be null");
+    }
+    if (startMillis > endMillis) {
+      throw new IllegalArgumentException("startMillis cannot be after endMillis");
+    }
+    //fail fast on a frequency TDA would reject for every window
+    CandleSync.dateRangeRequest(symbols.get(0), frequencyType, frequency, startMillis, endMillis,
+        extendedHours);
+
+    final long started = System.nanoTime();
+    final AtomicLong candles = new AtomicLong();
+    final AtomicInteger windows = new AtomicInteger();
+    final Map<String, Future<?>> futures = new LinkedHashMap<>();
+    final ExecutorService executor = Executors.newFixedThreadPool(threads, r -> {
+      Thread t = new Thread(r, "tda-backfill");
+      t.setDaemon(true);
+      return t;
+    });
+
+    try (BackfillCheckpoint checkpoint = checkpointFile == null ? null
+        : new BackfillCheckpoint(checkpointFile)) {
+      LinkedHashSet<String> unique = new LinkedHashSet<>();
+      symbols.forEach(symbol -> unique.add(symbol.toUpperCase()));
+      for (String symbol : unique) {
+        futures.put(symbol, executor.submit(() -> {
+          backfill(symbol, startMillis, endMillis, sink, checkpoint, candles, windows);
+          return null;
+        }));
+      }
+      executor.shutdown();
+
+      List<String> completed = new ArrayList<>();
+      Map<String, RuntimeException> failed = new LinkedHashMap<>();
+      for (Map.Entry<String, Future<?>> entry : futures.entrySet()) {
+        try {
+          entry.getValue().get();
+          completed.add(entry.getKey());
+        } catch (ExecutionException e) {
+          Throwable cause = e.getCause();
+          LOGGER.warn("Failed to backfill {}: {}", entry.getKey(), cause.getMessage());
+          failed.put(entry.getKey(), cause instanceof RuntimeException ? (RuntimeException) cause
+              : new RuntimeException(cause));
+        }
+      }
+      Result result = new Result(completed, failed, windows.get(), candles.get(),
+          TimeUnit.NANOSECONDS.toMillis(System.nanoTime() - started));
+      LOGGER.info("Backfill finished: {}", result);
+      return result;
+    } finally {
+      executor.shutdownNow();
+    }
+  }
+
+  private void backfill(String symbol, long startMillis, long endMillis, Sink sink,
+      BackfillCheckpoint checkpoint, AtomicLong candles, AtomicInteger windows)
+      throws InterruptedException {
+    long from = startMillis;
+    if (checkpoint != null) {
+      OptionalLong until = checkpoint.completedUntil(symbol);
+      if (until.isPresent()) {
+        from = Math.max(from, until.getAsLong() + 1);
+      }
+    }
+    if (from > endMillis) {
+      LOGGER.debug("{} already backfilled", symbol);
+      return;
+    }
+
+    for (long[] window : windows(from, endMillis, windowMillis)) {
+      if (Thread.currentThread().isInterrupted()) {
+        throw new InterruptedException();
+      }
+      PriceHistReq request = CandleSync.dateRangeRequest(symbol, frequencyType, frequency,
+          window[0], window[1], extendedHours);
+      CandleSeries series = fetch(request);
+      if (!series.isEmpty()) {
+        sink.accept(symbol, series);
+        candles.addAndGet(series.size());
+      }
+      windows.incrementAndGet();
+      if (checkpoint != null) {
+        checkpoint.complete(symbol, window[1]);
+      }
+    }
+  }
+
+  private CandleSeries fetch(PriceHistReq request) throws InterruptedException {
+    long backoff = initialBackoffMillis;
+    for (int attempt = 0; ; attempt++) {
+      try {
+        return client.priceHistorySeries(request);
+      } catch (RuntimeException e) {
+        if (attempt >= maxRetries || !isTransient(e)) {
+          throw e;
+        }
+        LOGGER.debug("Retrying {} from {} to {} in {} ms: {}", request.getSymbol(),
+            request.getStartDate(), request.getEndDate(), backoff, e.getMessage());
+        Thread.sleep(backoff);
+        backoff *= 2;
+      }
+    }
+  }
+
+  /**
+   * @return whether the call may succeed if repeated: an I/O error, or a 429 or 5xx response
+   */
+  static boolean isTransient(RuntimeException e) {
+    if (e instanceof TdaHttpException) {
+      return ((TdaHttpException) e).isTransient();
+    }
+    for (Throwable cause = e.getCause(); cause != null; cause = cause.getCause()) {
+      if (cause instanceof IOException) {
+        return true;
+      }
+    }
+    return false;
+  }
+
+  /**
+   * @return consecutive [start, end] windows, both inclusive, covering the range
+   */
+  static List<long[]> windows(long startMillis, long endMillis, long windowMillis) {
+    List<long[]> windows = new ArrayList<>();
+    for (long start = startMillis; start <= endMillis; start += windowMillis) {
+      windows.add(new long[]{start, Math.min(endMillis, start + windowMillis - 1)});
+      if (start > Long.MAX_VALUE - windowMillis) {
+        break;
+      }
+    }
+    return windows;
+  }
+
+  private static long defaultWindowMillis(FrequencyType frequencyType) {
+    //the longest periods TDA allows for the frequency, see PriceHistReqValidator
+    return frequencyType == FrequencyType.minute ? TimeUnit.DAYS.toMillis(10)
+        : TimeUnit.DAYS.toMillis(365L * 20);
+  }
+
+  /**
+   * Receives the candles of each completed window. Called concurrently for different symbols,
+   * but the windows of one symbol arrive one after the other, in order.
+   */
+  @FunctionalInterface
+  public interface Sink {
+
+    /**
+     * @param symbol uppercase symbol
+     * @param candles the candles of one window, never empty
+     */
+    void accept(String symbol, CandleSeries candles);
+  }
+
+  /**
+   * Summary of a backfill job.
+   */
+  public static final class Result {
+
+    private final List<String> completed;
+    private final Map<String, RuntimeException> failed;
+    private final int windows;
+    private final long candles;
+    private final long elapsedMillis;
+
+    Result(List<String> completed, Map<String, RuntimeException> failed, int windows,
+        long candles, long elapsedMillis) {
+      this.completed = Collections.unmodifiableList(completed);
+      this.failed = Collections.unmodifiableMap(failed);
+      this.windows = windows;
+      this.candles = candles;
+      this.elapsedMillis = elapsedMillis;
+    }
+
+    /**
+     * @return symbols which are fully backfilled, including those done by an earlier run
+     */
+    public List<String> getCompleted() {
+      return completed;
+    }
+
+    /**
+     * @return symbols which failed after all retries, with the last error of each
+     */
+    public Map<String, RuntimeException> getFailed() {
+      return failed;
+    }
+
+    /**
+     * @return number of windows fetched by this run
+     */
+    public int getWindows() {
+      return windows;
+    }
+
+    /**
+     * @return number of candles passed to the sink by this run
+     */
+    public long getCandles() {
+      return candles;
+    }
+
+    public long getElapsedMillis() {
+      return elapsedMillis;
+    }
+
+    public boolean isComplete() {
+      return failed.isEmpty();
+    }
+
+    @Override
+    public String toString() {
+      return new ToStringBuilder(this, ToStringStyle.SHORT_PREFIX_STYLE)
+          .append("completed", completed.size())
+          .append("failed", failed.keySet())
+          .append("windows", windows)
+          .append("candles", candles)
+          .append("elapsedMillis", elapsedMillis)
+          .toString();
+    }
+  }
+
+  public static final class Builder {
+
+    private final PriceHistoryFetcher client;
+    private FrequencyType frequencyType = FrequencyType.minute;
+    private int frequency = 1;
+    private boolean extendedHours = true;
+    private Long windowMillis;
+    private int threads = 8;
+    private int maxRetries = 5;
+    private long initialBackoffMillis = 1000;
+    private Path checkpointFile;
+
+    private Builder(PriceHistoryFetcher client) {
+      this.client = client;
+    }
+
+    /**
+     * @param client client used to fetch the price history
+     * @return builder with 1 minute candles, 8 threads and 5 retries starting at a 1 second backoff
+     */
+    public static Builder historyBackfiller(PriceHistoryFetcher client) {
+      return new Builder(client);
+    }
+
+    public Builder withFrequency(FrequencyType frequencyType, int frequency) {
+      this.frequencyType = frequencyType;
+      this.frequency = frequency;
+      return this;
+    }
+
+    public Builder withExtendedHours(boolean extendedHours) {
+      this.extendedHours = extendedHours;
+      return this;
+    }
+
+    /**
+     * @param window length of the range fetched by a single call
+     * @param unit unit of the window
+     * @return this builder
+     */
+    public Builder withWindow(long window, TimeUnit unit) {
+      this.windowMillis = unit.toMillis(window);
+      return this;
+    }
+
+    /**
+     * @param threads number of symbols fetched concurrently
+     * @return this builder
+     */
+    public Builder withThreads(int threads) {
+      this.threads = threads;
+      return this;
+    }
+
+    /**
+     * @param maxRetries retries of a window failing with a transient error before its symbol is
+     * given up
+     * @param initialBackoff wait before the first retry, doubled for every further retry
+     * @param unit unit of the backoff
+     * @return this builder
+     */
+    public Builder withRetries(int maxRetries, long initialBackoff, TimeUnit unit) {
+      this.maxRetries = maxRetries;
+      this.initialBackoffMillis = unit.toMillis(initialBackoff);
+      return this;
+    }
+
+    /**
+     * @param checkpointFile file to record progress in, or null to not keep track of progress
+     * @return this builder
+     */
+    public Builder withCheckpoint(Path checkpointFile) {
+      this.checkpointFile = checkpointFile;
+      return this;
+    }
+
+    /**
+     * @return the backfiller
+     * @throws IllegalArgumentException if any setting is invalid
+     */
+    public HistoryBackfiller build() {
+      if (client == null || frequencyType == null) {
+        throw new IllegalArgumentException("client and frequencyType cannot be null");
+      }
+      if (threads < 1 || maxRetries < 0 || initialBackoffMillis < 0
+          || (windowMillis != null && windowMillis < 1)) {
+        throw new IllegalArgumentException(
+            "threads and window must be positive, retries and backoff cannot be negative");
+      }
+      return new HistoryBackfiller(this);
+    }
+  }
+}
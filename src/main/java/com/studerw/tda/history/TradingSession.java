@@ -0,0 +1,109 @@
+package com.studerw.tda.history;
+
+import com.studerw.tda.model.history.FrequencyType;
+import java.time.DayOfWeek;
+import java.time.LocalDate;
+import java.time.LocalTime;
+import java.time.ZoneId;
+import java.time.temporal.TemporalAdjusters;
+import org.apache.commons.lang3.builder.ToStringBuilder;
+import org.apache.commons.lang3.builder.ToStringStyle;
+
+/**
+ * Daily trading hours of an exchange, used to align resampled candles. Both the regular and the
+ * extended session must lie within a single calendar day of the exchange's time zone.
+ */
+public final class TradingSession {
+
+  /**
+   * US equities and options: regular session 9:30 to 16:00, extended hours 4:00 to 20:00, New York
+   * time.
+   */
+  public static final TradingSession US_EQUITY = new TradingSession(
+      ZoneId.of("America/New_York"), LocalTime.of(9, 30), LocalTime.of(16, 0),
+      LocalTime.of(4, 0), LocalTime.of(20, 0));
+
+  /**
+   * Weekly candles start on this day, whether resampled or stored from TDA.
+   */
+  public static final DayOfWeek FIRST_DAY_OF_WEEK = DayOfWeek.MONDAY;
+
+  private final ZoneId zone;
+  private final LocalTime regularOpen;
+  private final LocalTime regularClose;
+  private final LocalTime extendedOpen;
+  private final LocalTime extendedClose;
+
+  /**
+   * @param zone time zone of the exchange
+   * @param regularOpen start of the regular session
+   * @param regularClose end of the regular session, exclusive
+   * @param extendedOpen start of pre market trading
+   * @param extendedClose end of after hours trading, exclusive
+   */
+  public TradingSession(ZoneId zone, LocalTime regularOpen, LocalTime regularClose,
+      LocalTime extendedOpen, LocalTime extendedClose) {
+    if (zone == null || regularOpen == null || regularClose == null || extendedOpen == null
+        || extendedClose == null) {
+      throw new IllegalArgumentException("zone and session times cannot be null");
+    }
+    if (extendedOpen.isAfter(regularOpen) || !regularOpen.isBefore(regularClose)
+        || regularClose.isAfter(extendedClose)) {
+      throw new IllegalArgumentException(
+          "Sessions must satisfy extendedOpen <= regularOpen < regularClose <= extendedClose");
+    }
+    this.zone = zone;
+    this.regularOpen = regularOpen;
+    this.regularClose = regularClose;
+    this.extendedOpen = extendedOpen;
+    this.extendedClose = extendedClose;
+  }
+
+  public ZoneId getZone() {
+    return zone;
+  }
+
+  public LocalTime getRegularOpen() {
+    return regularOpen;
+  }
+
+  public LocalTime getRegularClose() {
+    return regularClose;
+  }
+
+  public LocalTime getExtendedOpen() {
+    return extendedOpen;
+  }
+
+  public LocalTime getExtendedClose() {
+    return extendedClose;
+  }
+
+  /**
+   * @param frequencyType the frequency type of the candle
+   * @param day a day within the candle
+   * @return the day a daily, weekly or monthly candle holding the day starts on, the day itself
+   * for minute candles
+   */
+  public static LocalDate periodStart(FrequencyType frequencyType, LocalDate day) {
+    switch (frequencyType) {
+      case weekly:
+        return day.with(TemporalAdjusters.previousOrSame(FIRST_DAY_OF_WEEK));
+      case monthly:
+        return day.withDayOfMonth(1);
+      default:
+        return day;
+    }
+  }
+
+  @Override
+  public String toString() {
+    return new ToStringBuilder(this, ToStringStyle.SHORT_PREFIX_STYLE)
+        .append("zone", zone)
+        .append("regularOpen", regularOpen)
+        .append("regularClose", regularClose)
+        .append("extendedOpen", extendedOpen)
+        .append("extendedClose", extendedClose)
+        .toString();
+  }
+}
@@ -0,0 +1,77 @@
+package com.studerw.tda.http;
+
+import java.io.IOException;
+import java.io.InterruptedIOException;
+import java.util.concurrent.TimeUnit;
+import okhttp3.Interceptor;
+import okhttp3.Request;
+import okhttp3.Response;
+import org.apache.commons.lang3.math.NumberUtils;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+/**
+ * <p>
+ * Holds every request until the {@link RequestScheduler} grants it a token. The lane and caller
+ * are read from the request's {@link RateLimitTag}; untagged requests use {@link
+ * RequestLane#DEFAULT} and the current thread name. Requests whose tag is {@link
+ * RateLimitTag#isAcquired()} already hold a token and go straight through.
+ * </p>
+ *
+ * <p>
+ * If TDA still answers with <em>429 Too Many Requests</em>, the bucket is drained (honoring any
+ * <em>Retry-After</em> header) and the request is queued again, up to <em>maxRetries</em> times.
+ * After that the 429 response is returned to the caller as is.
+ * </p>
+ */
+public class RateLimitInterceptor implements Interceptor {
+
+  public static final int TOO_MANY_REQUESTS = 429;
+  private static final Logger LOGGER = LoggerFactory.getLogger(RateLimitInterceptor.class);
+  private static final long DEFAULT_RETRY_AFTER_SECS = 1;
+
+  private final RequestScheduler scheduler;
+  private final int maxRetries;
+
+  public RateLimitInterceptor(RequestScheduler scheduler, int maxRetries) {
+    this.scheduler = scheduler;
+    this.maxRetries = maxRetries;
+  }
+
+  @Override
+  public Response intercept(Chain chain) throws IOException {
+    final Request request = chain.request();
+    final RateLimitTag tag = RateLimitTag.of(request);
+
+    int attempt = 0;
+    while (true) {
+      //a retry always waits for a new token
+      if (attempt > 0 || !tag.isAcquired()) {
+        acquire(tag);
+      }
+      Response response = chain.proceed(request);
+      if (response.code() != TOO_MANY_REQUESTS || attempt++ >= maxRetries) {
+        return response;
+      }
+      long retryAfter = NumberUtils
+          .toLong(response.header("Retry-After"), DEFAULT_RETRY_AFTER_SECS);
+      LOGGER.warn("Rate limited by TDA on {}, retry {} of {} in {}s", request.url(), attempt,
+          maxRetries, retryAfter);
+      response.close();
+      scheduler.drain(retryAfter, TimeUnit.SECONDS);
+    }
+  }
+
+  private void acquire(RateLimitTag tag) throws InterruptedIOException {
+    try {
+      scheduler.acquire(tag.getLane(), tag.getCaller());
+    } catch (InterruptedException e) {
+      Thread.currentThread().interrupt();
+      throw new InterruptedIOException("Interrupted while waiting for a rate limit token");
+    }
+  }
+
+  public RequestScheduler getScheduler() {
+    return scheduler;
+  }
+}
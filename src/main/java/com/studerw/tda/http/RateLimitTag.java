@@ -0,0 +1,79 @@
+package com.studerw.tda.http;
+
+import okhttp3.Request;
+import org.apache.commons.lang3.builder.ToStringBuilder;
+import org.apache.commons.lang3.builder.ToStringStyle;
+
+/**
+ * Request tag read by the {@link RateLimitInterceptor} which determines the {@link RequestLane}
+ * and the caller a request is queued under. The caller defaults to the name of the thread that
+ * built the request, so that asynchronous calls are still attributed to whoever issued them rather
+ * than to the OkHttp dispatcher thread executing them. A tag marked {@link #isAcquired()} has
+ * already been granted its token with {@link RequestScheduler#acquireAsync(RequestLane, String)}
+ * before the call was enqueued, so the interceptor lets it through without waiting again.
+ */
+public final class RateLimitTag {
+
+  private final RequestLane lane;
+  private final String caller;
+  private final boolean acquired;
+
+  public RateLimitTag(RequestLane lane, String caller) {
+    this(lane, caller, false);
+  }
+
+  private RateLimitTag(RequestLane lane, String caller, boolean acquired) {
+    if (lane == null || caller == null) {
+      throw new IllegalArgumentException("lane and caller cannot be null");
+    }
+    this.lane = lane;
+    this.caller = caller;
+    this.acquired = acquired;
+  }
+
+  /**
+   * @param lane the lane to schedule the request in
+   * @return a tag whose caller is the current thread
+   */
+  public static RateLimitTag of(RequestLane lane) {
+    return new RateLimitTag(lane, Thread.currentThread().getName());
+  }
+
+  /**
+   * @param request the request to read the tag of
+   * @return the tag of the request, or a {@link RequestLane#DEFAULT} tag of the current thread if
+   * it has none
+   */
+  public static RateLimitTag of(Request request) {
+    RateLimitTag tag = request.tag(RateLimitTag.class);
+    return tag == null ? of(RequestLane.DEFAULT) : tag;
+  }
+
+  /**
+   * @return the same lane and caller, marked as already granted a token
+   */
+  public RateLimitTag acquired() {
+    return new RateLimitTag(lane, caller, true);
+  }
+
+  public RequestLane getLane() {
+    return lane;
+  }
+
+  public String getCaller() {
+    return caller;
+  }
+
+  public boolean isAcquired() {
+    return acquired;
+  }
+
+  @Override
+  public String toString() {
+    return new ToStringBuilder(this, ToStringStyle.SHORT_PREFIX_STYLE)
+        .append("lane", lane)
+        .append("caller", caller)
+        .append("acquired", acquired)
+        .toString();
+  }
+}
@@ -0,0 +1,20 @@
+package com.studerw.tda.http;
+
+/**
+ * Scheduling lanes used by the {@link RequestScheduler}. When tokens are scarce, waiting requests
+ * in a lane are always granted before those in any lane declared after it.
+ */
+public enum RequestLane {
+  /**
+   * Latency sensitive calls such as placing and cancelling orders.
+   */
+  PRIORITY,
+  /**
+   * Everything that is not explicitly marked otherwise.
+   */
+  DEFAULT,
+  /**
+   * Large, latency tolerant jobs such as price history and instrument backfills.
+   */
+  BULK
+}
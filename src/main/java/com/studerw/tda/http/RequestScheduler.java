@@ -0,0 +1,398 @@
+package com.studerw.tda.http;
+
+import java.util.ArrayDeque;
+import java.util.EnumMap;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.locks.Condition;
+import java.util.concurrent.locks.ReentrantLock;
+import org.apache.commons.lang3.builder.ToStringBuilder;
+import org.apache.commons.lang3.builder.ToStringStyle;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+/**
+ * <p>
+ * Token bucket which keeps the request rate at or below the TDA quota (about 120 requests per
+ * minute). Tokens are refilled continuously at <em>permitsPerMinute / 60</em> per second, up to
+ * <em>burst</em> tokens.
+ * </p>
+ *
+ * <p>
+ * When no token is available, callers wait in one of the {@link RequestLane} lanes. Lanes are
+ * served in strict priority order, and within a lane each distinct caller is served round robin,
+ * so one thread submitting hundreds of backfill requests cannot starve another thread issuing a
+ * handful.
+ * </p>
+ *
+ * <p>
+ * Requests can either block in {@link #acquire(RequestLane, String)} or wait without holding a
+ * thread with {@link #acquireAsync(RequestLane, String)}. Both kinds of waiters share the same
+ * lanes.
+ * </p>
+ * <strong>This is a thread safe class.</strong>
+ */
+public class RequestScheduler {
+
+  private static final Logger LOGGER = LoggerFactory.getLogger(RequestScheduler.class);
+
+  private final ReentrantLock lock = new ReentrantLock(true);
+  private final Condition changed = lock.newCondition();
+  private final double nanosPerToken;
+  private final double burst;
+  private final Map<RequestLane, Lane> lanes = new EnumMap<>(RequestLane.class);
+  //granted asynchronous waiters, completed once the lock is released
+  private final ArrayDeque<CompletableFuture<Void>> grantedFutures = new ArrayDeque<>();
+
+  private double tokens;
+  private long lastRefill;
+  //whether a wake up is pending to serve waiters that do not poll the bucket themselves
+  private boolean wakeUpScheduled;
+
+  /**
+   * @param permitsPerMinute sustained number of requests allowed per minute
+   * @param burst maximum number of requests that may be sent back to back after an idle period
+   */
+  public RequestScheduler(int permitsPerMinute, int burst) {
+    if (permitsPerMinute < 1 || burst < 1) {
+      throw new IllegalArgumentException("permitsPerMinute and burst must both be positive");
+    }
+    this.nanosPerToken = TimeUnit.MINUTES.toNanos(1) / (double) permitsPerMinute;
+    this.burst = burst;
+    this.tokens = burst;
+    this.lastRefill = System.nanoTime();
+    for (RequestLane lane : RequestLane.values()) {
+      lanes.put(lane, new Lane());
+    }
+  }
+
+  /**
+   * Block until the request is allowed to go out.
+   *
+   * @param lane the lane to wait in
+   * @param caller the caller to queue under for round robin fairness within the lane
+   * @throws InterruptedException if interrupted while waiting, in which case no token is used
+   */
+  public void acquire(RequestLane lane, String caller) throws InterruptedException {
+    final Waiter waiter = new Waiter(System.nanoTime());
+    lock.lockInterruptibly();
+    try {
+      lanes.get(lane).add(caller, waiter);
+      dispatch();
+      while (!waiter.granted) {
+        try {
+          long waitNanos = nanosUntilNextToken();
+          changed.awaitNanos(Math.max(waitNanos, TimeUnit.MILLISECONDS.toNanos(1)));
+        } catch (InterruptedException e) {
+          if (!waiter.granted) {
+            lanes.get(lane).remove(caller, waiter);
+            throw e;
+          }
+          Thread.currentThread().interrupt();
+        }
+        dispatch();
+      }
+    } finally {
+      lock.unlock();
+      completeGranted();
+    }
+  }
+
+  /**
+   * Wait for a token without holding a thread. The returned future completes once the request is
+   * allowed to go out; cancelling it gives up the place in the lane without using a token.
+   *
+   * @param lane the lane to wait in
+   * @param caller the caller to queue under for round robin fairness within the lane
+   * @return future completed when the token is granted
+   */
+  public CompletableFuture<Void> acquireAsync(RequestLane lane, String caller) {
+    final Waiter waiter = new Waiter(System.nanoTime(), new CompletableFuture<>());
+    lock.lock();
+    try {
+      lanes.get(lane).add(caller, waiter);
+      dispatch();
+    } finally {
+      lock.unlock();
+      completeGranted();
+    }
+    return waiter.future;
+  }
+
+  /**
+   * Empty the bucket and stop granting tokens for at least the given time. Called after the server
+   * responds with a <em>429 Too Many Requests</em> since our view of the quota is clearly off.
+   *
+   * @param pause how long to wait before the next token is available
+   * @param unit unit of pause
+   */
+  public void drain(long pause, TimeUnit unit) {
+    lock.lock();
+    try {
+      refill();
+      // a negative balance delays the next token past the pause
+      this.tokens = Math.min(0d, this.tokens) - (unit.toNanos(pause) / nanosPerToken);
+      LOGGER.debug("Drained request tokens, balance now {}", this.tokens);
+      changed.signalAll();
+    } finally {
+      lock.unlock();
+    }
+  }
+
+  /**
+   * @param lane the lane to report on
+   * @return point in time metrics of the lane
+   */
+  public LaneMetrics getMetrics(RequestLane lane) {
+    lock.lock();
+    try {
+      Lane l = lanes.get(lane);
+      return new LaneMetrics(lane, l.depth, l.granted, l.totalWaitNanos, l.maxWaitNanos);
+    } finally {
+      lock.unlock();
+    }
+  }
+
+  /**
+   * @return metrics of every lane
+   */
+  public Map<RequestLane, LaneMetrics> getMetrics() {
+    Map<RequestLane, LaneMetrics> metrics = new EnumMap<>(RequestLane.class);
+    for (RequestLane lane : RequestLane.values()) {
+      metrics.put(lane, getMetrics(lane));
+    }
+    return metrics;
+  }
+
+  private void refill() {
+    long now = System.nanoTime();
+    tokens = Math.min(burst, tokens + (now - lastRefill) / nanosPerToken);
+    lastRefill = now;
+  }
+
+  private long nanosUntilNextToken() {
+    return (long) Math.ceil((1d - tokens) * nanosPerToken);
+  }
+
+  /**
+   * Hand out available tokens to waiters in priority order. Must hold the lock.
+   */
+  private void dispatch() {
+    refill();
+    boolean any = false;
+    boolean waiting = false;
+    while (true) {
+      Lane from = null;
+      for (Lane lane : lanes.values()) {
+        if (lane.depth > 0) {
+          from = lane;
+          break;
+        }
+      }
+      if (from == null) {
+        break;
+      }
+      if (tokens < 1d) {
+        waiting = true;
+        break;
+      }
+      Waiter next = from.poll();
+      if (next.future != null && next.future.isDone()) {
+        //cancelled while waiting
+        continue;
+      }
+      tokens -= 1d;
+      next.granted = true;
+      from.recordGrant(System.nanoTime() - next.enqueued);
+      if (next.future != null) {
+        grantedFutures.add(next.future);
+      }
+      any = true;
+    }
+    if (any) {
+      changed.signalAll();
+    }
+    if (waiting && !wakeUpScheduled) {
+      wakeUpScheduled = true;
+      WakeUp.SCHEDULER.schedule(this::wakeUp, Math.max(nanosUntilNextToken(),
+          TimeUnit.MILLISECONDS.toNanos(1)), TimeUnit.NANOSECONDS);
+    }
+  }
+
+  private void wakeUp() {
+    lock.lock();
+    try {
+      wakeUpScheduled = false;
+      dispatch();
+    } finally {
+      lock.unlock();
+      completeGranted();
+    }
+  }
+
+  /**
+   * Complete the futures granted by {@link #dispatch()}, outside of the lock so that whatever
+   * depends on them does not run while holding it.
+   */
+  private void completeGranted() {
+    while (true) {
+      final CompletableFuture<Void> next;
+      lock.lock();
+      try {
+        next = grantedFutures.poll();
+      } finally {
+        lock.unlock();
+      }
+      if (next == null) {
+        return;
+      }
+      next.complete(null);
+    }
+  }
+
+  private static final class Waiter {
+
+    final long enqueued;
+    //null for a thread blocked in acquire
+    final CompletableFuture<Void> future;
+    boolean granted;
+
+    Waiter(long enqueued) {
+      this(enqueued, null);
+    }
+
+    Waiter(long enqueued, CompletableFuture<Void> future) {
+      this.enqueued = enqueued;
+      this.future = future;
+    }
+  }
+
+  private static final class WakeUp {
+
+    static final ScheduledExecutorService SCHEDULER = Executors
+        .newSingleThreadScheduledExecutor(r -> {
+          Thread t = new Thread(r, "tda-request-scheduler");
+          t.setDaemon(true);
+          return t;
+        });
+  }
+
+  /**
+   * Per caller FIFO queues, visited round robin. Only ever accessed under the lock.
+   */
+  private static final class Lane {
+
+    final LinkedHashMap<String, ArrayDeque<Waiter>> callers = new LinkedHashMap<>();
+    int depth;
+    long granted;
+    long totalWaitNanos;
+    long maxWaitNanos;
+
+    void add(String caller, Waiter waiter) {
+      callers.computeIfAbsent(caller, k -> new ArrayDeque<>()).add(waiter);
+      depth++;
+    }
+
+    void remove(String caller, Waiter waiter) {
+      ArrayDeque<Waiter> queue = callers.get(caller);
+      if (queue != null && queue.remove(waiter)) {
+        depth--;
+        if (queue.isEmpty()) {
+          callers.remove(caller);
+        }
+      }
+    }
+
+    Waiter poll() {
+      Iterator<Map.Entry<String, ArrayDeque<Waiter>>> it = callers.entrySet().iterator();
+      if (!it.hasNext()) {
+        return null;
+      }
+      Map.Entry<String, ArrayDeque<Waiter>> head = it.next();
+      Waiter waiter = head.getValue().poll();
+      it.remove();
+      // move the caller to the back of the line if it still has requests waiting
+      if (!head.getValue().isEmpty()) {
+        callers.put(head.getKey(), head.getValue());
+      }
+      depth--;
+      return waiter;
+    }
+
+    void recordGrant(long waitNanos) {
+      granted++;
+      totalWaitNanos += waitNanos;
+      maxWaitNanos = Math.max(maxWaitNanos, waitNanos);
+    }
+  }
+
+  /**
+   * Immutable snapshot of the activity of a single {@link RequestLane}.
+   */
+  public static final class LaneMetrics {
+
+    private final RequestLane lane;
+    private final int queueDepth;
+    private final long granted;
+    private final long totalWaitNanos;
+    private final long maxWaitNanos;
+
+    LaneMetrics(RequestLane lane, int queueDepth, long granted, long totalWaitNanos,
+        long maxWaitNanos) {
+      this.lane = lane;
+      this.queueDepth = queueDepth;
+      this.granted = granted;
+      this.totalWaitNanos = totalWaitNanos;
+      this.maxWaitNanos = maxWaitNanos;
+    }
+
+    public RequestLane getLane() {
+      return lane;
+    }
+
+    /**
+     * @return number of requests currently waiting for a token
+     */
+    public int getQueueDepth() {
+      return queueDepth;
+    }
+
+    /**
+     * @return total number of requests that have been let through
+     */
+    public long getGranted() {
+      return granted;
+    }
+
+    public long getTotalWaitNanos() {
+      return totalWaitNanos;
+    }
+
+    public long getMaxWaitNanos() {
+      return maxWaitNanos;
+    }
+
+    /**
+     * @return the average time a request spent waiting for a token, in milliseconds
+     */
+    public double getAverageWaitMillis() {
+      return granted == 0 ? 0d : totalWaitNanos / (double) granted / 1_000_000d;
+    }
+
+    @Override
+    public String toString() {
+      return new ToStringBuilder(this, ToStringStyle.MULTI_LINE_STYLE)
+          .append("lane", lane)
+          .append("queueDepth", queueDepth)
+          .append("granted", granted)
+          .append("averageWaitMillis", getAverageWaitMillis())
+          .append("maxWaitNanos", maxWaitNanos)
+          .toString();
+    }
+  }
+}
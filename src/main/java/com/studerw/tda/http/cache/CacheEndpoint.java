@@ -0,0 +1,59 @@
+package com.studerw.tda.http.cache;
+
+import java.util.concurrent.TimeUnit;
+
+/**
+ * The client calls whose responses can be cached by a {@link ResponseCache}, each with its own
+ * time to live. The default time to live of an endpoint can be overridden with the property
+ * <em>tda.cache.ttl.{property}</em> in seconds, where 0 disables caching of that endpoint.
+ * Callers of a cached endpoint share its value: lists are returned unmodifiable, and the models
+ * must be treated as read only.
+ */
+public enum CacheEndpoint {
+
+  /**
+   * {@code getInstrumentByCUSIP} and {@code getBond}, 4 hours
+   */
+  INSTRUMENT("instrument", TimeUnit.HOURS.toSeconds(4)),
+  /**
+   * {@code getFundamentalData}, 1 hour
+   */
+  FUNDAMENTAL("fundamental", TimeUnit.HOURS.toSeconds(1)),
+  /**
+   * {@code getUserPrincipals}, 1 minute
+   */
+  USER_PRINCIPALS("userPrincipals", TimeUnit.MINUTES.toSeconds(1)),
+  /**
+   * {@code getPreferences}, 5 minutes
+   */
+  PREFERENCES("preferences", TimeUnit.MINUTES.toSeconds(5)),
+  /**
+   * {@code fetchMovers}, 10 seconds
+   */
+  MOVERS("movers", 10),
+  /**
+   * {@code fetchQuotes} and {@code fetchQuote}, not cached by default. Set
+   * <em>tda.cache.ttl.quotes</em> to the number of seconds a quote may be stale.
+   */
+  QUOTES("quotes", 0);
+
+  private final String property;
+  private final long defaultTtlSeconds;
+
+  CacheEndpoint(String property, long defaultTtlSeconds) {
+    this.property = property;
+    this.defaultTtlSeconds = defaultTtlSeconds;
+  }
+
+  /**
+   * @return the property holding the time to live of this endpoint, e.g.
+   * <em>tda.cache.ttl.movers</em>
+   */
+  public String getProperty() {
+    return "tda.cache.ttl." + property;
+  }
+
+  public long getDefaultTtlSeconds() {
+    return defaultTtlSeconds;
+  }
+}
@@ -0,0 +1,77 @@
+package com.studerw.tda.http.cache;
+
+import org.apache.commons.lang3.builder.ToStringBuilder;
+import org.apache.commons.lang3.builder.ToStringStyle;
+
+/**
+ * Immutable snapshot of the activity of a {@link ResponseCache} for a single {@link
+ * CacheEndpoint}.
+ */
+public final class CacheStats {
+
+  private final CacheEndpoint endpoint;
+  private final long hits;
+  private final long misses;
+  private final long coalesced;
+  private final long evictions;
+
+  public CacheStats(CacheEndpoint endpoint, long hits, long misses, long coalesced,
+      long evictions) {
+    this.endpoint = endpoint;
+    this.hits = hits;
+    this.misses = misses;
+    this.coalesced = coalesced;
+    this.evictions = evictions;
+  }
+
+  public CacheEndpoint getEndpoint() {
+    return endpoint;
+  }
+
+  /**
+   * @return number of requests answered with a fresh cached value
+   */
+  public long getHits() {
+    return hits;
+  }
+
+  /**
+   * @return number of requests that made a call
+   */
+  public long getMisses() {
+    return misses;
+  }
+
+  /**
+   * @return number of requests that waited for an identical call already in flight
+   */
+  public long getCoalesced() {
+    return coalesced;
+  }
+
+  /**
+   * @return number of values removed to stay within the maximum size
+   */
+  public long getEvictions() {
+    return evictions;
+  }
+
+  /**
+   * @return share of requests that did not make a call, between 0 and 1
+   */
+  public double getHitRate() {
+    long requests = hits + misses + coalesced;
+    return requests == 0 ? 0d : (hits + coalesced) / (double) requests;
+  }
+
+  @Override
+  public String toString() {
+    return new ToStringBuilder(this, ToStringStyle.SHORT_PREFIX_STYLE)
+        .append("endpoint", endpoint)
+        .append("hits", hits)
+        .append("misses", misses)
+        .append("coalesced", coalesced)
+        .append("evictions", evictions)
+        .toString();
+  }
+}
@@ -0,0 +1,315 @@
+package com.studerw.tda.http.cache;
+
+import java.util.EnumMap;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.Objects;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.locks.ReentrantLock;
+import java.util.function.Function;
+import java.util.function.LongSupplier;
+import java.util.function.Supplier;
+import org.apache.commons.lang3.builder.ToStringBuilder;
+import org.apache.commons.lang3.builder.ToStringStyle;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+/**
+ * <p>
+ * Bounded {@link ResponseCache} which evicts the least recently used value once it holds
+ * <em>maxEntries</em> values, and treats a value as missing once it is older than the time to live
+ * of its {@link CacheEndpoint}. An endpoint with a time to live of 0 is not cached at all.
+ * </p>
+ *
+ * <p>
+ * A call in flight is kept in the cache too, so concurrent identical requests wait for the same
+ * call instead of making their own. The time to live starts once the call completes, and a failed
+ * call is removed right away so that the next request tries again.
+ * </p>
+ * <strong>This is a thread safe class.</strong>
+ */
+public class LruResponseCache implements ResponseCache {
+
+  private static final Logger LOGGER = LoggerFactory.getLogger(LruResponseCache.class);
+
+  private final ReentrantLock lock = new ReentrantLock();
+  private final int maxEntries;
+  private final Map<CacheEndpoint, Long> ttlNanos;
+  private final Map<CacheEndpoint, Counters> counters = new EnumMap<>(CacheEndpoint.class);
+  private final LongSupplier clock;
+  private final LinkedHashMap<Key, CacheEntry> entries;
+
+  private LruResponseCache(Builder builder) {
+    this.maxEntries = builder.maxEntries;
+    this.ttlNanos = new EnumMap<>(builder.ttlNanos);
+    this.clock = builder.clock;
+    for (CacheEndpoint endpoint : CacheEndpoint.values()) {
+      counters.put(endpoint, new Counters());
+    }
+    //access order, so iteration starts at the least recently used value
+    this.entries = new LinkedHashMap<Key, CacheEntry>(16, 0.75f, true) {
+      @Override
+      protected boolean removeEldestEntry(Map.Entry<Key, CacheEntry> eldest) {
+        if (size() > maxEntries) {
+          counters.get(eldest.getKey().endpoint).evictions++;
+          return true;
+        }
+        return false;
+      }
+    };
+  }
+
+  @Override
+  @SuppressWarnings("unchecked")
+  public <T> CompletableFuture<T> get(CacheEndpoint endpoint, String key,
+      Supplier<CompletableFuture<T>> loader) {
+    long ttl = getTtlNanos(endpoint);
+    if (ttl <= 0 || maxEntries == 0) {
+      return call(loader);
+    }
+
+    final Key k = new Key(endpoint, key);
+    final CacheEntry entry;
+    boolean load = false;
+    lock.lock();
+    try {
+      CacheEntry cached = entries.get(k);
+      if (cached != null && cached.isExpired(clock.getAsLong(), ttl)) {
+        entries.remove(k);
+        cached = null;
+      }
+      Counters c = counters.get(endpoint);
+      if (cached == null) {
+        entry = new CacheEntry();
+        entries.put(k, entry);
+        c.misses++;
+        load = true;
+      } else {
+        entry = cached;
+        if (entry.future.isDone()) {
+          c.hits++;
+        } else {
+          c.coalesced++;
+        }
+      }
+    } finally {
+      lock.unlock();
+    }
+
+    if (load) {
+      LOGGER.debug("Cache miss for {} {}", endpoint, key);
+      call(loader).whenComplete((value, e) -> {
+        if (e == null) {
+          entry.loaded = clock.getAsLong();
+          entry.future.complete(value);
+        } else {
+          remove(k, entry);
+          entry.future.completeExceptionally(e);
+        }
+      });
+    }
+    //a dependent future, so that one caller cancelling does not affect the others
+    return ((CompletableFuture<T>) entry.future).thenApply(Function.identity());
+  }
+
+  private static <T> CompletableFuture<T> call(Supplier<CompletableFuture<T>> loader) {
+    try {
+      return loader.get();
+    } catch (RuntimeException e) {
+      CompletableFuture<T> failed = new CompletableFuture<>();
+      failed.completeExceptionally(e);
+      return failed;
+    }
+  }
+
+  private void remove(Key key, CacheEntry entry) {
+    lock.lock();
+    try {
+      entries.remove(key, entry);
+    } finally {
+      lock.unlock();
+    }
+  }
+
+  @Override
+  public void invalidate(CacheEndpoint endpoint) {
+    lock.lock();
+    try {
+      Iterator<Key> keys = entries.keySet().iterator();
+      while (keys.hasNext()) {
+        if (keys.next().endpoint == endpoint) {
+          keys.remove();
+        }
+      }
+    } finally {
+      lock.unlock();
+    }
+  }
+
+  @Override
+  public void invalidateAll() {
+    lock.lock();
+    try {
+      entries.clear();
+    } finally {
+      lock.unlock();
+    }
+  }
+
+  @Override
+  public CacheStats getStats(CacheEndpoint endpoint) {
+    lock.lock();
+    try {
+      Counters c = counters.get(endpoint);
+      return new CacheStats(endpoint, c.hits, c.misses, c.coalesced, c.evictions);
+    } finally {
+      lock.unlock();
+    }
+  }
+
+  /**
+   * @return number of values and calls in flight currently held
+   */
+  public int size() {
+    lock.lock();
+    try {
+      return entries.size();
+    } finally {
+      lock.unlock();
+    }
+  }
+
+  public int getMaxEntries() {
+    return maxEntries;
+  }
+
+  /**
+   * @param endpoint the endpoint
+   * @return time to live of the endpoint's values in nanoseconds, 0 if it is not cached
+   */
+  public long getTtlNanos(CacheEndpoint endpoint) {
+    return ttlNanos.getOrDefault(endpoint, 0L);
+  }
+
+  @Override
+  public String toString() {
+    return new ToStringBuilder(this, ToStringStyle.SHORT_PREFIX_STYLE)
+        .append("maxEntries", maxEntries)
+        .append("size", size())
+        .toString();
+  }
+
+  private static final class Key {
+
+    private final CacheEndpoint endpoint;
+    private final String key;
+
+    private Key(CacheEndpoint endpoint, String key) {
+      this.endpoint = endpoint;
+      this.key = key;
+    }
+
+    @Override
+    public boolean equals(Object o) {
+      if (this == o) {
+        return true;
+      }
+      if (!(o instanceof Key)) {
+        return false;
+      }
+      Key other = (Key) o;
+      return endpoint == other.endpoint && Objects.equals(key, other.key);
+    }
+
+    @Override
+    public int hashCode() {
+      return 31 * endpoint.hashCode() + Objects.hashCode(key);
+    }
+  }
+
+  private static final class CacheEntry {
+
+    private final CompletableFuture<Object> future = new CompletableFuture<>();
+    //written before the future completes
+    private volatile long loaded;
+
+    private boolean isExpired(long now, long ttl) {
+      return future.isDone() && now - loaded >= ttl;
+    }
+  }
+
+  /**
+   * Guarded by the lock.
+   */
+  private static final class Counters {
+
+    private long hits;
+    private long misses;
+    private long coalesced;
+    private long evictions;
+  }
+
+  public static final class Builder {
+
+    private int maxEntries = 1000;
+    private final Map<CacheEndpoint, Long> ttlNanos = new EnumMap<>(CacheEndpoint.class);
+    private LongSupplier clock = System::nanoTime;
+
+    private Builder() {
+      for (CacheEndpoint endpoint : CacheEndpoint.values()) {
+        ttlNanos.put(endpoint, TimeUnit.SECONDS.toNanos(endpoint.getDefaultTtlSeconds()));
+      }
+    }
+
+    /**
+     * @return a builder with a maximum of 1000 entries and the default time to live of every
+     * endpoint
+     */
+    public static Builder lruResponseCache() {
+      return new Builder();
+    }
+
+    /**
+     * @param maxEntries maximum number of values held across all endpoints, 0 disables caching
+     */
+    public Builder withMaxEntries(int maxEntries) {
+      this.maxEntries = maxEntries;
+      return this;
+    }
+
+    /**
+     * @param endpoint the endpoint
+     * @param ttl how long a value of the endpoint is used, 0 disables caching of the endpoint
+     * @param unit unit of ttl
+     */
+    public Builder withTtl(CacheEndpoint endpoint, long ttl, TimeUnit unit) {
+      if (endpoint == null || unit == null) {
+        throw new IllegalArgumentException("endpoint and unit cannot be null");
+      }
+      this.ttlNanos.put(endpoint, unit.toNanos(ttl));
+      return this;
+    }
+
+    /**
+     * For tests, the source of {@link System#nanoTime()} like timestamps.
+     */
+    Builder withClock(LongSupplier clock) {
+      this.clock = clock;
+      return this;
+    }
+
+    public LruResponseCache build() {
+      if (maxEntries < 0) {
+        throw new IllegalArgumentException("maxEntries cannot be negative");
+      }
+      for (Map.Entry<CacheEndpoint, Long> ttl : ttlNanos.entrySet()) {
+        if (ttl.getValue() < 0) {
+          throw new IllegalArgumentException("Negative ttl for " + ttl.getKey());
+        }
+      }
+      return new LruResponseCache(this);
+    }
+  }
+}
@@ -0,0 +1,50 @@
+package com.studerw.tda.http.cache;
+
+import java.util.concurrent.CompletableFuture;
+import java.util.function.Supplier;
+
+/**
+ * <p>
+ * Cache of parsed responses used by {@link com.studerw.tda.client.HttpTdaClient} and {@link
+ * com.studerw.tda.client.HttpAsyncTdaClient} for the calls listed in {@link CacheEndpoint}. Values
+ * are shared between callers, so they must not be modified.
+ * </p>
+ *
+ * <p>
+ * Implementations must be thread safe and should coalesce concurrent identical requests, so that
+ * only one call is made while it is in flight. {@link LruResponseCache} is the default.
+ * </p>
+ */
+public interface ResponseCache {
+
+  /**
+   * Return the cached value of the key, or load it. A failed load is not cached.
+   *
+   * @param endpoint the endpoint the key belongs to
+   * @param key identifies the request within the endpoint, e.g. its URL
+   * @param loader makes the call, only invoked if there is neither a fresh value nor a call in
+   * flight
+   * @param <T> type of the parsed response
+   * @return a future of the value. Cancelling it does not cancel a call shared with other callers.
+   */
+  <T> CompletableFuture<T> get(CacheEndpoint endpoint, String key,
+      Supplier<CompletableFuture<T>> loader);
+
+  /**
+   * Remove every cached value of an endpoint.
+   *
+   * @param endpoint the endpoint to clear
+   */
+  void invalidate(CacheEndpoint endpoint);
+
+  /**
+   * Remove every cached value.
+   */
+  void invalidateAll();
+
+  /**
+   * @param endpoint the endpoint to report on
+   * @return point in time hit and miss counters of the endpoint
+   */
+  CacheStats getStats(CacheEndpoint endpoint);
+}
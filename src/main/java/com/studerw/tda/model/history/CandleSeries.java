@@ -0,0 +1,334 @@
+package com.studerw.tda.model.history;
+
+import com.studerw.tda.parse.Utils;
+import java.io.Serializable;
+import java.math.BigDecimal;
+import java.util.Arrays;
+import java.util.stream.DoubleStream;
+import java.util.stream.LongStream;
+import org.apache.commons.lang3.builder.ToStringBuilder;
+import org.apache.commons.lang3.builder.ToStringStyle;
+
+/**
+ * <p>
+ * Columnar, primitive alternative to {@link PriceHistory}. The candles are held in parallel arrays
+ * of <em>long</em> timestamps, <em>double</em> OHLC prices and <em>long</em> volumes instead of a
+ * list of {@link Candle} objects, so a series of a million candles is six arrays rather than
+ * millions of objects.
+ * </p>
+ *
+ * <p>
+ * Series are immutable. {@link #slice(int, int)} and {@link #between(long, long)} return views
+ * sharing the same arrays, so they are cheap no matter how many candles they cover. Candles are
+ * always in ascending order of their datetime, which is what allows slicing by time with a binary
+ * search.
+ * </p>
+ *
+ * <p>
+ * A price that is missing or <em>NaN</em> in the TDA response is {@link Double#NaN}, and a missing
+ * volume is 0.
+ * </p>
+ *
+ * @see com.studerw.tda.parse.TdaJsonParser#parseCandleSeries(java.io.InputStream)
+ */
+public final class CandleSeries implements Serializable {
+
+  private final static long serialVersionUID = 3471650286541087425L;
+
+  private final String symbol;
+  private final long[] datetimes;
+  private final double[] opens;
+  private final double[] highs;
+  private final double[] lows;
+  private final double[] closes;
+  private final long[] volumes;
+  private final int offset;
+  private final int size;
+
+  private CandleSeries(String symbol, long[] datetimes, double[] opens, double[] highs,
+      double[] lows, double[] closes, long[] volumes, int offset, int size) {
+    this.symbol = symbol;
+    this.datetimes = datetimes;
+    this.opens = opens;
+    this.highs = highs;
+    this.lows = lows;
+    this.closes = closes;
+    this.volumes = volumes;
+    this.offset = offset;
+    this.size = size;
+  }
+
+  /**
+   * @param priceHistory price history to convert. Prices are converted to doubles, missing values
+   * to NaN or a volume of 0.
+   * @return series of the same candles
+   * @throws IllegalArgumentException if the candles are not in ascending order or lack a datetime
+   */
+  public static CandleSeries of(PriceHistory priceHistory) {
+    Builder builder = new Builder(priceHistory.getCandles().size())
+        .withSymbol(priceHistory.getSymbol());
+    for (Candle candle : priceHistory.getCandles()) {
+      if (candle.getDatetime() == null) {
+        throw new IllegalArgumentException("Candle without a datetime");
+      }
+      builder.add(candle.getDatetime(), toDouble(candle.getOpen()), toDouble(candle.getHigh()),
+          toDouble(candle.getLow()), toDouble(candle.getClose()),
+          candle.getVolume() == null ? 0 : candle.getVolume());
+    }
+    return builder.build();
+  }
+
+  private static double toDouble(BigDecimal value) {
+    return value == null ? Double.NaN : value.doubleValue();
+  }
+
+  public String getSymbol() {
+    return symbol;
+  }
+
+  /**
+   * @return number of candles in this series
+   */
+  public int size() {
+    return size;
+  }
+
+  public boolean isEmpty() {
+    return size == 0;
+  }
+
+  /**
+   * @param i index of the candle, from 0 to {@link #size()} - 1
+   * @return datetime of the candle in millis since the epoch
+   */
+  public long getDatetime(int i) {
+    return datetimes[index(i)];
+  }
+
+  public double getOpen(int i) {
+    return opens[index(i)];
+  }
+
+  public double getHigh(int i) {
+    return highs[index(i)];
+  }
+
+  public double getLow(int i) {
+    return lows[index(i)];
+  }
+
+  public double getClose(int i) {
+    return closes[index(i)];
+  }
+
+  public long getVolume(int i) {
+    return volumes[index(i)];
+  }
+
+  /**
+   * @return datetime of the first candle in millis since the epoch
+   * @throws IllegalStateException if the series is empty
+   */
+  public long getStart() {
+    checkNotEmpty();
+    return datetimes[offset];
+  }
+
+  /**
+   * @return datetime of the last candle in millis since the epoch
+   * @throws IllegalStateException if the series is empty
+   */
+  public long getEnd() {
+    checkNotEmpty();
+    return datetimes[offset + size - 1];
+  }
+
+  public LongStream datetimes() {
+    return Arrays.stream(datetimes, offset, offset + size);
+  }
+
+  public DoubleStream opens() {
+    return Arrays.stream(opens, offset, offset + size);
+  }
+
+  public DoubleStream highs() {
+    return Arrays.stream(highs, offset, offset + size);
+  }
+
+  public DoubleStream lows() {
+    return Arrays.stream(lows, offset, offset + size);
+  }
+
+  public DoubleStream closes() {
+    return Arrays.stream(closes, offset, offset + size);
+  }
+
+  public LongStream volumes() {
+    return Arrays.stream(volumes, offset, offset + size);
+  }
+
+  /**
+   * @param from index of the first candle, inclusive
+   * @param to index of the last candle, exclusive
+   * @return view of the candles between the two indexes, sharing the arrays of this series
+   */
+  public CandleSeries slice(int from, int to) {
+    if (from < 0 || to > size || from > to) {
+      throw new IndexOutOfBoundsException(
+          String.format("slice [%d, %d) out of bounds for size %d", from, to, size));
+    }
+    if (from == 0 && to == size) {
+      return this;
+    }
+    return new CandleSeries(symbol, datetimes, opens, highs, lows, closes, volumes,
+        offset + from, to - from);
+  }
+
+  /**
+   * @param fromMillis start datetime in millis since the epoch, inclusive
+   * @param toMillis end datetime in millis since the epoch, exclusive
+   * @return view of the candles whose datetime is within the range, sharing the arrays of this
+   * series. Empty if no candles are within the range.
+   */
+  public CandleSeries between(long fromMillis, long toMillis) {
+    if (fromMillis > toMillis) {
+      throw new IllegalArgumentException("fromMillis cannot be after toMillis");
+    }
+    return slice(indexOf(fromMillis), indexOf(toMillis));
+  }
+
+  /**
+   * @param millis datetime in millis since the epoch
+   * @return index of the first candle at or after the datetime, or {@link #size()} if there is
+   * none
+   */
+  public int indexOf(long millis) {
+    int low = offset;
+    int high = offset + size;
+    while (low < high) {
+      int mid = (low + high) >>> 1;
+      if (datetimes[mid] < millis) {
+        low = mid + 1;
+      } else {
+        high = mid;
+      }
+    }
+    return low - offset;
+  }
+
+  private int index(int i) {
+    if (i < 0 || i >= size) {
+      throw new IndexOutOfBoundsException("Index: " + i + ", Size: " + size);
+    }
+    return offset + i;
+  }
+
+  private void checkNotEmpty() {
+    if (size == 0) {
+      throw new IllegalStateException("Candle series is empty");
+    }
+  }
+
+  @Override
+  public String toString() {
+    return new ToStringBuilder(this, ToStringStyle.MULTI_LINE_STYLE)
+        .append("symbol", symbol)
+        .append("size", size)
+        .append("start", size == 0 ? null : Utils.epochToStr(getStart()))
+        .append("end", size == 0 ? null : Utils.epochToStr(getEnd()))
+        .toString();
+  }
+
+  /**
+   * Appends candles to growable arrays. Candles must be added in ascending order of their
+   * datetime.
+   */
+  public static final class Builder {
+
+    private String symbol;
+    private long[] datetimes;
+    private double[] opens;
+    private double[] highs;
+    private double[] lows;
+    private double[] closes;
+    private long[] volumes;
+    private int size;
+
+    public Builder() {
+      this(64);
+    }
+
+    /**
+     * @param capacity initial number of candles, the arrays grow as needed
+     */
+    public Builder(int capacity) {
+      if (capacity < 0) {
+        throw new IllegalArgumentException("capacity cannot be negative");
+      }
+      this.datetimes = new long[capacity];
+      this.opens = new double[capacity];
+      this.highs = new double[capacity];
+      this.lows = new double[capacity];
+      this.closes = new double[capacity];
+      this.volumes = new long[capacity];
+    }
+
+    public Builder withSymbol(String symbol) {
+      this.symbol = symbol;
+      return this;
+    }
+
+    /**
+     * @throws IllegalArgumentException if the datetime is before the previous candle's
+     */
+    public Builder add(long datetime, double open, double high, double low, double close,
+        long volume) {
+      if (size > 0 && datetime < datetimes[size - 1]) {
+        throw new IllegalArgumentException(String.format(
+            "Candles must be in ascending order, %d is before %d", datetime, datetimes[size - 1]));
+      }
+      if (size == datetimes.length) {
+        grow();
+      }
+      datetimes[size] = datetime;
+      opens[size] = open;
+      highs[size] = high;
+      lows[size] = low;
+      closes[size] = close;
+      volumes[size] = volume;
+      size++;
+      return this;
+    }
+
+    public int size() {
+      return size;
+    }
+
+    private void grow() {
+      int capacity = Math.max(16, datetimes.length + (datetimes.length >> 1));
+      datetimes = Arrays.copyOf(datetimes, capacity);
+      opens = Arrays.copyOf(opens, capacity);
+      highs = Arrays.copyOf(highs, capacity);
+      lows = Arrays.copyOf(lows, capacity);
+      closes = Arrays.copyOf(closes, capacity);
+      volumes = Arrays.copyOf(volumes, capacity);
+    }
+
+    /**
+     * The arrays are trimmed to size. Adding more candles afterwards does not affect the series.
+     *
+     * @return the series
+     */
+    public CandleSeries build() {
+      if (size != datetimes.length) {
+        datetimes = Arrays.copyOf(datetimes, size);
+        opens = Arrays.copyOf(opens, size);
+        highs = Arrays.copyOf(highs, size);
+        lows = Arrays.copyOf(lows, size);
+        closes = Arrays.copyOf(closes, size);
+        volumes = Arrays.copyOf(volumes, size);
+      }
+      return new CandleSeries(symbol, datetimes, opens, highs, lows, closes, volumes, 0, size);
+    }
+  }
+}
@@ -0,0 +1,634 @@
+package com.studerw.tda.model.option;
+
+import com.studerw.tda.model.option.Option.PutCall;
+import java.io.Serializable;
+import java.math.BigDecimal;
+import java.time.LocalDate;
+import java.time.format.DateTimeParseException;
+import java.util.Arrays;
+import java.util.List;
+import java.util.Map;
+import java.util.Map.Entry;
+import java.util.TreeMap;
+import org.apache.commons.lang3.builder.ToStringBuilder;
+import org.apache.commons.lang3.builder.ToStringStyle;
+
+/**
+ * <p>
+ * Read only, primitive view of an {@link OptionChain} for fast lookups. Expirations are sorted by
+ * date and the strikes of every expiration are sorted ascending, so finding an expiration, the
+ * nearest strike or the at-the-money strike is a binary search instead of a scan over the string
+ * keys of {@link OptionChain#getCallExpDateMap()}. Quotes and greeks are held in one
+ * <em>double</em> array per {@link Column} instead of ~40 boxed fields per {@link Option}.
+ * </p>
+ *
+ * <p>
+ * Lookups use three kinds of <em>int</em> indexes:
+ * </p>
+ * <ul>
+ *   <li>an <em>expiration</em>, from 0 to {@link #expirations()} - 1, in ascending order of
+ *   date.</li>
+ *   <li>a <em>strike</em> within an expiration, from 0 to {@link #strikes(int)} - 1, in ascending
+ *   order of price. Every strike that has a call or a put is listed.</li>
+ *   <li>a <em>contract</em>, returned by {@link #contract(int, int, PutCall)}, which is the index
+ *   passed to the column getters. A strike may only have a call or only a put, see {@link
+ *   #hasContract(int)}; the values of a missing contract are NaN.</li>
+ * </ul>
+ *
+ * <p>
+ * Iterating over an expiration with plain loops over these indexes, or with {@link
+ * #forEachStrike(int, StrikeVisitor)}, does not allocate. A value that is missing or
+ * <em>NaN</em> in the TDA response is {@link Double#NaN}, whichever way the chain was built. If
+ * a strike has more than one contract of the same type (e.g. a non standard contract after a
+ * split), only the first is kept.
+ * </p>
+ *
+ * <pre class="code">
+ *     IndexedOptionChain chain = IndexedOptionChain.of(tdaClient.getOptionChain("MSFT"));
+ *     int expiration = chain.nearestExpiration(30);
+ *     int strike = chain.strikeForDelta(expiration, PutCall.PUT, -0.25);
+ *     int put = chain.contract(expiration, strike, PutCall.PUT);
+ *     System.out.println(chain.getOptionSymbol(put) + " " + chain.getMid(put));
+ * </pre>
+ *
+ * @see com.studerw.tda.parse.TdaJsonParser#parseIndexedOptionChain(java.io.InputStream)
+ */
+public final class IndexedOptionChain implements Serializable {
+
+  private final static long serialVersionUID = -4781204583622911375L;
+
+  /**
+   * The per contract values kept by the chain.
+   */
+  public enum Column {
+    BID,
+    ASK,
+    LAST,
+    MARK,
+    VOLATILITY,
+    DELTA,
+    GAMMA,
+    THETA,
+    VEGA,
+    RHO,
+    OPEN_INTEREST,
+    TOTAL_VOLUME
+  }
+
+  /**
+   * Receives the strikes of an expiration, see {@link #forEachStrike(int, StrikeVisitor)}.
+   */
+  @FunctionalInterface
+  public interface StrikeVisitor {
+
+    /**
+     * @param strike the strike price
+     * @param call contract index of the call
+     * @param put contract index of the put
+     */
+    void strike(double strike, int call, int put);
+  }
+
+  private static final int COLUMNS = Column.values().length;
+
+  private final String symbol;
+  private final double underlyingPrice;
+  private final double interestRate;
+  private final long[] expirationDays;
+  private final int[] daysToExpiration;
+  //strikes of expiration e are strikes[strikeOffsets[e]] until strikes[strikeOffsets[e + 1]]
+  private final int[] strikeOffsets;
+  private final double[] strikes;
+  //contract of the strike at index s is 2 * s for the call, 2 * s + 1 for the put
+  private final String[] optionSymbols;
+  private final double[][] values;
+
+  private IndexedOptionChain(String symbol, double underlyingPrice, double interestRate,
+      long[] expirationDays, int[] daysToExpiration, int[] strikeOffsets, double[] strikes,
+      String[] optionSymbols, double[][] values) {
+    this.symbol = symbol;
+    this.underlyingPrice = underlyingPrice;
+    this.interestRate = interestRate;
+    this.expirationDays = expirationDays;
+    this.daysToExpiration = daysToExpiration;
+    this.strikeOffsets = strikeOffsets;
+    this.strikes = strikes;
+    this.optionSymbols = optionSymbols;
+    this.values = values;
+  }
+
+  /**
+   * Values TDA sent as <em>NaN</em>, which the {@link Option} reads as 0, are NaN here (see
+   * {@link Option#isNaN(String)}), just as with {@link
+   * com.studerw.tda.parse.TdaJsonParser#parseIndexedOptionChain(java.io.InputStream)}.
+   *
+   * @param optionChain chain to index
+   * @return indexed view of the same contracts
+   * @throws IllegalArgumentException if an expiration key is not of the form
+   * <em>yyyy-MM-dd:days</em>
+   */
+  public static IndexedOptionChain of(OptionChain optionChain) {
+    Builder builder = new Builder()
+        .withSymbol(optionChain.getSymbol())
+        .withUnderlyingPrice(toDouble(optionChain.getUnderlyingPrice()))
+        .withInterestRate(toDouble(optionChain.getInterestRate()));
+    double[] row = new double[COLUMNS];
+    add(builder, PutCall.CALL, optionChain.getCallExpDateMap(), row);
+    add(builder, PutCall.PUT, optionChain.getPutExpDateMap(), row);
+    return builder.build();
+  }
+
+  private static void add(Builder builder, PutCall putCall,
+      Map<String, Map<BigDecimal, List<Option>>> expDateMap, double[] row) {
+    if (expDateMap == null) {
+      return;
+    }
+    for (Entry<String, Map<BigDecimal, List<Option>>> expiration : expDateMap.entrySet()) {
+      for (Entry<BigDecimal, List<Option>> strike : expiration.getValue().entrySet()) {
+        for (Option option : strike.getValue()) {
+          row[Column.BID.ordinal()] = toDouble(option, "bidPrice", option.getBidPrice());
+          row[Column.ASK.ordinal()] = toDouble(option, "askPrice", option.getAskPrice());
+          row[Column.LAST.ordinal()] = toDouble(option, "lastPrice", option.getLastPrice());
+          row[Column.MARK.ordinal()] = toDouble(option, "markPrice", option.getMarkPrice());
+          row[Column.VOLATILITY.ordinal()] = toDouble(option, "volatility",
+              option.getVolatility());
+          row[Column.DELTA.ordinal()] = toDouble(option, "delta", option.getDelta());
+          row[Column.GAMMA.ordinal()] = toDouble(option, "gamma", option.getGamma());
+          row[Column.THETA.ordinal()] = toDouble(option, "theta", option.getTheta());
+          row[Column.VEGA.ordinal()] = toDouble(option, "vega", option.getVega());
+          row[Column.RHO.ordinal()] = toDouble(option, "rho", option.getRho());
+          row[Column.OPEN_INTEREST.ordinal()] = toDouble(option, "openInterest",
+              option.getOpenInterest());
+          row[Column.TOTAL_VOLUME.ordinal()] = option.getTotalVolume() == null ? Double.NaN
+              : option.getTotalVolume();
+          builder.add(putCall, expiration.getKey(), strike.getKey().doubleValue(),
+              option.getSymbol(), row);
+        }
+      }
+    }
+  }
+
+  private static double toDouble(BigDecimal value) {
+    return value == null ? Double.NaN : value.doubleValue();
+  }
+
+  private static double toDouble(Option option, String property, BigDecimal value) {
+    return option.isNaN(property) ? Double.NaN : toDouble(value);
+  }
+
+  /**
+   * @return symbol of the underlying
+   */
+  public String getSymbol() {
+    return symbol;
+  }
+
+  public double getUnderlyingPrice() {
+    return underlyingPrice;
+  }
+
+  public double getInterestRate() {
+    return interestRate;
+  }
+
+  /**
+   * @return number of expirations
+   */
+  public int expirations() {
+    return expirationDays.length;
+  }
+
+  /**
+   * @param expiration expiration index
+   * @return date of the expiration
+   */
+  public LocalDate getExpiration(int expiration) {
+    return LocalDate.ofEpochDay(expirationDays[expiration]);
+  }
+
+  /**
+   * @param expiration expiration index
+   * @return days to expiration as of the time of the request
+   */
+  public int getDaysToExpiration(int expiration) {
+    return daysToExpiration[expiration];
+  }
+
+  /**
+   * @param date date of the expiration
+   * @return index of the expiration, or -1 if there is none on that date
+   */
+  public int expirationIndex(LocalDate date) {
+    int index = Arrays.binarySearch(expirationDays, date.toEpochDay());
+    return index < 0 ? -1 : index;
+  }
+
+  /**
+   * @param days target number of days to expiration
+   * @return index of the expiration closest to the target, the earlier one on a tie, or -1 if the
+   * chain is empty
+   */
+  public int nearestExpiration(int days) {
+    int index = Arrays.binarySearch(daysToExpiration, days);
+    if (index >= 0) {
+      return index;
+    }
+    int above = -index - 1;
+    if (above == daysToExpiration.length) {
+      return above - 1;
+    }
+    if (above == 0) {
+      return 0;
+    }
+    return days - daysToExpiration[above - 1] <= daysToExpiration[above] - days ? above - 1 : above;
+  }
+
+  /**
+   * @param expiration expiration index
+   * @return number of strikes of the expiration
+   */
+  public int strikes(int expiration) {
+    return strikeOffsets[expiration + 1] - strikeOffsets[expiration];
+  }
+
+  /**
+   * @param expiration expiration index
+   * @param strike strike index within the expiration
+   * @return strike price
+   */
+  public double getStrike(int expiration, int strike) {
+    return strikes[slot(expiration, strike)];
+  }
+
+  /**
+   * @param expiration expiration index
+   * @param price a price
+   * @return index of the strike closest to the price, the lower one on a tie, or -1 if the
+   * expiration has no strikes
+   */
+  public int nearestStrike(int expiration, double price) {
+    int from = strikeOffsets[expiration];
+    int to = strikeOffsets[expiration + 1];
+    int index = Arrays.binarySearch(strikes, from, to, price);
+    if (index >= 0) {
+      return index - from;
+    }
+    int slot = nearest(-index - 1, from, to, strikes, 1, 0, price);
+    return slot < 0 ? -1 : slot - from;
+  }
+
+  /**
+   * @param expiration expiration index
+   * @return index of the strike closest to the underlying price, or -1 if the expiration has no
+   * strikes
+   */
+  public int atTheMoney(int expiration) {
+    return nearestStrike(expiration, underlyingPrice);
+  }
+
+  /**
+   * Find the strike with the delta closest to a target, e.g. the 25 delta put. Deltas of both calls
+   * and puts fall as the strike rises, which allows a binary search. If any delta visited is NaN
+   * the expiration is scanned instead.
+   *
+   * @param expiration expiration index
+   * @param putCall calls or puts
+   * @param delta target delta, positive for calls and negative for puts
+   * @return index of the strike closest to the target, or -1 if no contract has a delta
+   */
+  public int strikeForDelta(int expiration, PutCall putCall, double delta) {
+    int from = strikeOffsets[expiration];
+    int to = strikeOffsets[expiration + 1];
+    int side = side(putCall);
+    double[] deltas = values[Column.DELTA.ordinal()];
+    //first slot with a delta at or below the target
+    int low = from;
+    int high = to;
+    while (low < high) {
+      int mid = (low + high) >>> 1;
+      double value = deltas[2 * mid + side];
+      if (Double.isNaN(value)) {
+        return scanForDelta(from, to, side, delta);
+      }
+      if (value > delta) {
+        low = mid + 1;
+      } else {
+        high = mid;
+      }
+    }
+    int slot = nearest(low, from, to, deltas, 2, side, delta);
+    return slot < 0 ? -1 : slot - from;
+  }
+
+  private int scanForDelta(int from, int to, int side, double delta) {
+    double[] deltas = values[Column.DELTA.ordinal()];
+    int best = -1;
+    double bestDistance = Double.POSITIVE_INFINITY;
+    for (int slot = from; slot < to; slot++) {
+      double distance = Math.abs(deltas[2 * slot + side] - delta);
+      if (distance < bestDistance) {
+        best = slot;
+        bestDistance = distance;
+      }
+    }
+    return best < 0 ? -1 : best - from;
+  }
+
+  /**
+   * @param expiration expiration index
+   * @param strike strike index within the expiration
+   * @param putCall calls or puts
+   * @return contract index, used with the column getters
+   */
+  public int contract(int expiration, int strike, PutCall putCall) {
+    return 2 * slot(expiration, strike) + side(putCall);
+  }
+
+  /**
+   * Visit every strike of an expiration in ascending order.
+   *
+   * @param expiration expiration index
+   * @param visitor receives each strike with the contract indexes of its call and put
+   */
+  public void forEachStrike(int expiration, StrikeVisitor visitor) {
+    for (int slot = strikeOffsets[expiration]; slot < strikeOffsets[expiration + 1]; slot++) {
+      visitor.strike(strikes[slot], 2 * slot, 2 * slot + 1);
+    }
+  }
+
+  /**
+   * @return number of contract indexes, a call and a put for every strike of every expiration
+   */
+  public int contracts() {
+    return optionSymbols.length;
+  }
+
+  /**
+   * @param contract contract index
+   * @return false if the strike does not have a contract of this type
+   */
+  public boolean hasContract(int contract) {
+    return optionSymbols[contract] != null;
+  }
+
+  /**
+   * @param contract contract index
+   * @return TDA symbol of the contract, e.g. <em>MSFT_090420C140</em>, or null if there is none
+   */
+  public String getOptionSymbol(int contract) {
+    return optionSymbols[contract];
+  }
+
+  public PutCall getPutCall(int contract) {
+    return (contract & 1) == 0 ? PutCall.CALL : PutCall.PUT;
+  }
+
+  /**
+   * @param contract contract index
+   * @return strike price of the contract
+   */
+  public double strikeOf(int contract) {
+    return strikes[contract >> 1];
+  }
+
+  /**
+   * @param column the value to get
+   * @param contract contract index
+   * @return the value, NaN if missing
+   */
+  public double get(Column column, int contract) {
+    return values[column.ordinal()][contract];
+  }
+
+  public double getBid(int contract) {
+    return values[Column.BID.ordinal()][contract];
+  }
+
+  public double getAsk(int contract) {
+    return values[Column.ASK.ordinal()][contract];
+  }
+
+  /**
+   * @param contract contract index
+   * @return the midpoint of bid and ask
+   */
+  public double getMid(int contract) {
+    return (getBid(contract) + getAsk(contract)) / 2;
+  }
+
+  public double getLast(int contract) {
+    return values[Column.LAST.ordinal()][contract];
+  }
+
+  public double getMark(int contract) {
+    return values[Column.MARK.ordinal()][contract];
+  }
+
+  public double getVolatility(int contract) {
+    return values[Column.VOLATILITY.ordinal()][contract];
+  }
+
+  public double getDelta(int contract) {
+    return values[Column.DELTA.ordinal()][contract];
+  }
+
+  public double getGamma(int contract) {
+    return values[Column.GAMMA.ordinal()][contract];
+  }
+
+  public double getTheta(int contract) {
+    return values[Column.THETA.ordinal()][contract];
+  }
+
+  public double getVega(int contract) {
+    return values[Column.VEGA.ordinal()][contract];
+  }
+
+  public double getRho(int contract) {
+    return values[Column.RHO.ordinal()][contract];
+  }
+
+  public double getOpenInterest(int contract) {
+    return values[Column.OPEN_INTEREST.ordinal()][contract];
+  }
+
+  public double getTotalVolume(int contract) {
+    return values[Column.TOTAL_VOLUME.ordinal()][contract];
+  }
+
+  private int slot(int expiration, int strike) {
+    int slot = strikeOffsets[expiration] + strike;
+    if (strike < 0 || slot >= strikeOffsets[expiration + 1]) {
+      throw new IndexOutOfBoundsException(String.format(
+          "Strike %d of expiration %d with %d strikes", strike, expiration, strikes(expiration)));
+    }
+    return slot;
+  }
+
+  private static int side(PutCall putCall) {
+    return putCall == PutCall.PUT ? 1 : 0;
+  }
+
+  /**
+   * @return whichever of {@code index - 1} and {@code index} within [from, to) has the value
+   * {@code array[stride * i + offset]} closest to the target, or -1 if neither has a value
+   */
+  private static int nearest(int index, int from, int to, double[] array, int stride, int offset,
+      double target) {
+    int below = index - 1;
+    int above = index;
+    double belowDistance = below >= from ? Math.abs(array[stride * below + offset] - target)
+        : Double.NaN;
+    double aboveDistance = above < to ? Math.abs(array[stride * above + offset] - target)
+        : Double.NaN;
+    if (Double.isNaN(aboveDistance)) {
+      return Double.isNaN(belowDistance) ? -1 : below;
+    }
+    if (Double.isNaN(belowDistance)) {
+      return above;
+    }
+    return belowDistance <= aboveDistance ? below : above;
+  }
+
+  @Override
+  public String toString() {
+    return new ToStringBuilder(this, ToStringStyle.SHORT_PREFIX_STYLE)
+        .append("symbol", symbol)
+        .append("underlyingPrice", underlyingPrice)
+        .append("interestRate", interestRate)
+        .append("expirations", expirations())
+        .append("strikes", strikes.length)
+        .toString();
+  }
+
+  /**
+   * Collects contracts in any order and sorts them by expiration and strike when built.
+   */
+  public static final class Builder {
+
+    private final Map<Long, Expiration> expirations = new TreeMap<>();
+    private String symbol;
+    private double underlyingPrice = Double.NaN;
+    private double interestRate = Double.NaN;
+    //expiration keys repeat for every strike, so the last one is cached
+    private String lastKey;
+    private Expiration lastExpiration;
+
+    public Builder withSymbol(String symbol) {
+      this.symbol = symbol;
+      return this;
+    }
+
+    public Builder withUnderlyingPrice(double underlyingPrice) {
+      this.underlyingPrice = underlyingPrice;
+      return this;
+    }
+
+    public Builder withInterestRate(double interestRate) {
+      this.interestRate = interestRate;
+      return this;
+    }
+
+    /**
+     * @param putCall calls or puts
+     * @param expirationKey key of the TDA expiration maps, e.g. <em>2021-01-15:7</em> for the
+     * expiration on January 15th, seven days from now
+     * @param strike strike price
+     * @param optionSymbol TDA symbol of the contract
+     * @param row the values of the contract, indexed by {@link Column#ordinal()}. The array is
+     * copied, so it can be reused for the next contract.
+     * @throws IllegalArgumentException if the expiration key is invalid
+     */
+    public Builder add(PutCall putCall, String expirationKey, double strike, String optionSymbol,
+        double[] row) {
+      if (row.length != COLUMNS) {
+        throw new IllegalArgumentException(String.format(
+            "Expecting %d values per contract, not %d", COLUMNS, row.length));
+      }
+      Expiration expiration = expiration(expirationKey);
+      Strike entry = expiration.strikes.computeIfAbsent(strike, s -> new Strike());
+      int side = side(putCall);
+      if (entry.symbols[side] == null) {
+        entry.symbols[side] = optionSymbol == null ? "" : optionSymbol;
+        entry.rows[side] = row.clone();
+      }
+      return this;
+    }
+
+    private Expiration expiration(String key) {
+      if (key.equals(lastKey)) {
+        return lastExpiration;
+      }
+      int colon = key.indexOf(':');
+      try {
+        LocalDate date = LocalDate.parse(colon < 0 ? key : key.substring(0, colon));
+        int days = colon < 0 ? 0 : Integer.parseInt(key.substring(colon + 1));
+        Expiration expiration = expirations
+            .computeIfAbsent(date.toEpochDay(), d -> new Expiration(days));
+        this.lastKey = key;
+        this.lastExpiration = expiration;
+        return expiration;
+      } catch (DateTimeParseException | NumberFormatException e) {
+        throw new IllegalArgumentException("Invalid expiration: " + key, e);
+      }
+    }
+
+    public IndexedOptionChain build() {
+      int strikeCount = 0;
+      for (Expiration expiration : expirations.values()) {
+        strikeCount += expiration.strikes.size();
+      }
+      long[] expirationDays = new long[expirations.size()];
+      int[] daysToExpiration = new int[expirations.size()];
+      int[] strikeOffsets = new int[expirations.size() + 1];
+      double[] strikes = new double[strikeCount];
+      String[] optionSymbols = new String[2 * strikeCount];
+      double[][] values = new double[COLUMNS][2 * strikeCount];
+      for (double[] column : values) {
+        Arrays.fill(column, Double.NaN);
+      }
+
+      int e = 0;
+      int slot = 0;
+      for (Entry<Long, Expiration> expiration : expirations.entrySet()) {
+        expirationDays[e] = expiration.getKey();
+        daysToExpiration[e] = expiration.getValue().days;
+        strikeOffsets[e] = slot;
+        for (Entry<Double, Strike> strike : expiration.getValue().strikes.entrySet()) {
+          strikes[slot] = strike.getKey();
+          for (int side = 0; side < 2; side++) {
+            double[] row = strike.getValue().rows[side];
+            if (row == null) {
+              continue;
+            }
+            optionSymbols[2 * slot + side] = strike.getValue().symbols[side];
+            for (int c = 0; c < COLUMNS; c++) {
+              values[c][2 * slot + side] = row[c];
+            }
+          }
+          slot++;
+        }
+        e++;
+      }
+      strikeOffsets[e] = slot;
+      return new IndexedOptionChain(symbol, underlyingPrice, interestRate, expirationDays,
+          daysToExpiration, strikeOffsets, strikes, optionSymbols, values);
+    }
+
+    private static final class Expiration {
+
+      private final int days;
+      private final Map<Double, Strike> strikes = new TreeMap<>();
+
+      private Expiration(int days) {
+        this.days = days;
+      }
+    }
+
+    private static final class Strike {
+
+      private final String[] symbols = new String[2];
+      private final double[][] rows = new double[2][];
+    }
+  }
+}
@@ -6,20 +6,24 @@ import com.fasterxml.jackson.annotation.JsonIgnore;
 import com.fasterxml.jackson.annotation.JsonInclude;
 import com.fasterxml.jackson.annotation.JsonProperty;
 import com.studerw.tda.model.account.OptionDeliverable;
+import com.studerw.tda.parse.NanProperties;
 import java.io.Serializable;
 import java.math.BigDecimal;
 import java.util.ArrayList;
 import java.util.HashMap;
+import java.util.HashSet;
 import java.util.List;
 import java.util.Map;
+import java.util.Set;
 import org.apache.commons.lang3.builder.ToStringBuilder;
 import org.apache.commons.lang3.builder.ToStringStyle;
 
 /**
- * Option
+ * Option. A value TDA sent as <em>NaN</em>, typically a greek, reads as 0, see {@link
+ * #isNaN(String)}.
  */
 @JsonInclude(JsonInclude.Include.NON_NULL)
-public class Option implements Serializable {
+public class Option implements Serializable, NanProperties {
 
   private final static long serialVersionUID = -6922953717171708238L;
 
@@ -165,6 +169,10 @@ public class Option implements Serializable {
   @JsonAnySetter
   private Map<String, Object> otherFields = new HashMap<>();
 
+  //properties TDA sent as NaN, null if there are none
+  @JsonIgnore
+  private Set<String> nanProperties;
+
   public PutCall getPutCall() {
     return putCall;
   }
@@ -346,6 +354,23 @@ public class Option implements Serializable {
     return otherFields;
   }
 
+  @Override
+  public void markNaN(String property) {
+    if (nanProperties == null) {
+      nanProperties = new HashSet<>(4);
+    }
+    nanProperties.add(property);
+  }
+
+  /**
+   * @param property the {@code @JsonProperty} name, e.g. <em>theta</em> or <em>bidPrice</em>
+   * @return true if TDA sent <em>NaN</em> for the property, in which case its getter returns 0
+   */
+  @Override
+  public boolean isNaN(String property) {
+    return nanProperties != null && nanProperties.contains(property);
+  }
+
   @Override
   public String toString() {
     return new ToStringBuilder(this, ToStringStyle.MULTI_LINE_STYLE)
@@ -394,6 +419,7 @@ public class Option implements Serializable {
         .append("markChange", markChange)
         .append("markPercentChange", markPercentChange)
         .append("otherFields", otherFields)
+        .append("nanProperties", nanProperties)
         .toString();
   }
 
@@ -0,0 +1,317 @@
+package com.studerw.tda.model.option;
+
+import com.studerw.tda.model.option.OptionChain.Strategy;
+import java.math.BigDecimal;
+import java.time.LocalDate;
+import javax.validation.constraints.NotBlank;
+import org.apache.commons.lang3.builder.ToStringBuilder;
+import org.apache.commons.lang3.builder.ToStringStyle;
+
+/**
+ * <p>
+ * Encapsulates the parameters for a {@link com.studerw.tda.client.TdaClient#getOptionChain(OptionChainReq)}
+ * call. Every field except the symbol is optional, and a null field is not sent, so TDA's default
+ * is used. The filters are applied on the server, so a narrow request for a large chain such as SPX
+ * is much smaller to download and parse than the full chain. Use the {@link Builder} to create an
+ * instance.
+ * </p>
+ *
+ * <pre class="code">
+ *     //Calls of the 10 strikes closest to the money of MSFT expiring in the next 30 days
+ *     OptionChainReq request = OptionChainReq.Builder.optionChainReq()
+ *       .withSymbol("MSFT")
+ *       .withContractType(ContractType.CALL)
+ *       .withStrikeCount(10)
+ *       .withFromDate(LocalDate.now())
+ *       .withToDate(LocalDate.now().plusDays(30))
+ *       .build();
+ * </pre>
+ */
+public class OptionChainReq {
+
+  @NotBlank(message = "The symbol must be set")
+  private String symbol;
+  private ContractType contractType;
+  private Integer strikeCount;
+  private Boolean includeQuotes;
+  private Strategy strategy;
+  private BigDecimal interval;
+  private BigDecimal strike;
+  private Range range;
+  private LocalDate fromDate;
+  private LocalDate toDate;
+  private ExpMonth expMonth;
+  private OptionType optionType;
+
+  private OptionChainReq() {
+  }
+
+  /**
+   * @return symbol of the underlying, e.g. <em>MSFT</em> or <em>$SPX.X</em>
+   */
+  public String getSymbol() {
+    return symbol;
+  }
+
+  /**
+   * @return type of contracts to return. TDA's default is {@link ContractType#ALL}.
+   */
+  public ContractType getContractType() {
+    return contractType;
+  }
+
+  /**
+   * @return the number of strikes to return above and below the at-the-money price
+   */
+  public Integer getStrikeCount() {
+    return strikeCount;
+  }
+
+  /**
+   * @return include quotes for options in the option chain. TDA's default is FALSE.
+   */
+  public Boolean getIncludeQuotes() {
+    return includeQuotes;
+  }
+
+  /**
+   * @return the strategy chain to return. TDA's default is {@link Strategy#SINGLE}.
+   */
+  public Strategy getStrategy() {
+    return strategy;
+  }
+
+  /**
+   * @return strike interval for spread strategy chains, e.g. {@link Strategy#VERTICAL}
+   */
+  public BigDecimal getInterval() {
+    return interval;
+  }
+
+  /**
+   * @return only return options with this strike price
+   */
+  public BigDecimal getStrike() {
+    return strike;
+  }
+
+  /**
+   * @return only return options in this range relative to the underlying price. TDA's default is
+   * {@link Range#ALL}.
+   */
+  public Range getRange() {
+    return range;
+  }
+
+  /**
+   * @return only return expirations on or after this date
+   */
+  public LocalDate getFromDate() {
+    return fromDate;
+  }
+
+  /**
+   * @return only return expirations on or before this date
+   */
+  public LocalDate getToDate() {
+    return toDate;
+  }
+
+  /**
+   * @return only return expirations in this month. TDA's default is {@link ExpMonth#ALL}.
+   */
+  public ExpMonth getExpMonth() {
+    return expMonth;
+  }
+
+  /**
+   * @return type of contracts to return, standard or not. TDA's default is {@link
+   * OptionType#ALL}.
+   */
+  public OptionType getOptionType() {
+    return optionType;
+  }
+
+  @Override
+  public String toString() {
+    return new ToStringBuilder(this, ToStringStyle.MULTI_LINE_STYLE)
+        .append("symbol", symbol)
+        .append("contractType", contractType)
+        .append("strikeCount", strikeCount)
+        .append("includeQuotes", includeQuotes)
+        .append("strategy", strategy)
+        .append("interval", interval)
+        .append("strike", strike)
+        .append("range", range)
+        .append("fromDate", fromDate)
+        .append("toDate", toDate)
+        .append("expMonth", expMonth)
+        .append("optionType", optionType)
+        .toString();
+  }
+
+  public enum ContractType {
+    CALL,
+    PUT,
+    ALL
+  }
+
+  /**
+   * Range of strikes relative to the price of the underlying.
+   */
+  public enum Range {
+    /**
+     * In-the-money
+     */
+    ITM,
+    /**
+     * Near-the-money
+     */
+    NTM,
+    /**
+     * Out-of-the-money
+     */
+    OTM,
+    /**
+     * Strikes Above Market
+     */
+    SAK,
+    /**
+     * Strikes Below Market
+     */
+    SBK,
+    /**
+     * Strikes Near Market
+     */
+    SNK,
+    ALL
+  }
+
+  public enum ExpMonth {
+    JAN,
+    FEB,
+    MAR,
+    APR,
+    MAY,
+    JUN,
+    JUL,
+    AUG,
+    SEP,
+    OCT,
+    NOV,
+    DEC,
+    ALL
+  }
+
+  public enum OptionType {
+    /**
+     * Standard contracts
+     */
+    S,
+    /**
+     * Non-standard contracts
+     */
+    NS,
+    ALL
+  }
+
+  public static final class Builder {
+
+    private String symbol;
+    private ContractType contractType;
+    private Integer strikeCount;
+    private Boolean includeQuotes;
+    private Strategy strategy;
+    private BigDecimal interval;
+    private BigDecimal strike;
+    private Range range;
+    private LocalDate fromDate;
+    private LocalDate toDate;
+    private ExpMonth expMonth;
+    private OptionType optionType;
+
+    private Builder() {
+    }
+
+    public static Builder optionChainReq() {
+      return new Builder();
+    }
+
+    public Builder withSymbol(String symbol) {
+      this.symbol = symbol;
+      return this;
+    }
+
+    public Builder withContractType(ContractType contractType) {
+      this.contractType = contractType;
+      return this;
+    }
+
+    public Builder withStrikeCount(Integer strikeCount) {
+      this.strikeCount = strikeCount;
+      return this;
+    }
+
+    public Builder withIncludeQuotes(Boolean includeQuotes) {
+      this.includeQuotes = includeQuotes;
+      return this;
+    }
+
+    public Builder withStrategy(Strategy strategy) {
+      this.strategy = strategy;
+      return this;
+    }
+
+    public Builder withInterval(BigDecimal interval) {
+      this.interval = interval;
+      return this;
+    }
+
+    public Builder withStrike(BigDecimal strike) {
+      this.strike = strike;
+      return this;
+    }
+
+    public Builder withRange(Range range) {
+      this.range = range;
+      return this;
+    }
+
+    public Builder withFromDate(LocalDate fromDate) {
+      this.fromDate = fromDate;
+      return this;
+    }
+
+    public Builder withToDate(LocalDate toDate) {
+      this.toDate = toDate;
+      return this;
+    }
+
+    public Builder withExpMonth(ExpMonth expMonth) {
+      this.expMonth = expMonth;
+      return this;
+    }
+
+    public Builder withOptionType(OptionType optionType) {
+      this.optionType = optionType;
+      return this;
+    }
+
+    public OptionChainReq build() {
+      OptionChainReq optionChainReq = new OptionChainReq();
+      optionChainReq.symbol = this.symbol;
+      optionChainReq.contractType = this.contractType;
+      optionChainReq.strikeCount = this.strikeCount;
+      optionChainReq.includeQuotes = this.includeQuotes;
+      optionChainReq.strategy = this.strategy;
+      optionChainReq.interval = this.interval;
+      optionChainReq.strike = this.strike;
+      optionChainReq.range = this.range;
+      optionChainReq.fromDate = this.fromDate;
+      optionChainReq.toDate = this.toDate;
+      optionChainReq.expMonth = this.expMonth;
+      optionChainReq.optionType = this.optionType;
+      return optionChainReq;
+    }
+  }
+}
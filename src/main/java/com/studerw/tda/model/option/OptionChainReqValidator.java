@@ -0,0 +1,126 @@
+package com.studerw.tda.model.option;
+
+import static java.util.stream.Collectors.toList;
+
+import com.studerw.tda.model.option.OptionChain.Strategy;
+import java.math.BigDecimal;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+import java.util.Set;
+import javax.validation.ConstraintViolation;
+import javax.validation.Validation;
+import javax.validation.Validator;
+import javax.validation.ValidatorFactory;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+public class OptionChainReqValidator {
+
+  private static final Logger LOGGER = LoggerFactory.getLogger(OptionChainReqValidator.class);
+  private static final ValidatorFactory factory = Validation.buildDefaultValidatorFactory();
+  private static final Validator validator = factory.getValidator();
+
+  /**
+   * @param optionChainReq the request to validate
+   * @return a list of error messages or empty list if there are none.
+   */
+  public static List<String> validate(OptionChainReq optionChainReq) {
+
+    List<String> violations = new ArrayList<>(useJavaValidator(optionChainReq));
+    if (violations.size() > 0) {
+      return violations;
+    }
+
+    violations.addAll(checkNumbers(optionChainReq));
+    if (violations.size() > 0) {
+      return violations;
+    }
+
+    violations.addAll(checkInterval(optionChainReq));
+    if (violations.size() > 0) {
+      return violations;
+    }
+
+    violations.addAll(checkDates(optionChainReq));
+    if (violations.size() > 0) {
+      return violations;
+    }
+
+    return Collections.emptyList();
+  }
+
+  /**
+   * @param optionChainReq the request to validate
+   * @return list of strings of errors messages or empty list if none
+   */
+  private static List<String> useJavaValidator(OptionChainReq optionChainReq) {
+    Set<ConstraintViolation<OptionChainReq>> violations = validator.validate(optionChainReq);
+    return violations.stream().map(ConstraintViolation::getMessage).collect(toList());
+  }
+
+  /**
+   * Check that strikeCount, strike and interval are positive.
+   *
+   * @param optionChainReq the request to validate
+   * @return list of string error messages or empty list if none
+   */
+  private static List<String> checkNumbers(OptionChainReq optionChainReq) {
+    List<String> violations = new ArrayList<>();
+    if (optionChainReq.getStrikeCount() != null && optionChainReq.getStrikeCount() < 1) {
+      String msg = String.format("StrikeCount must be positive: %d",
+          optionChainReq.getStrikeCount());
+      LOGGER.warn(msg);
+      violations.add(msg);
+    }
+    if (optionChainReq.getStrike() != null
+        && optionChainReq.getStrike().compareTo(BigDecimal.ZERO) <= 0) {
+      String msg = String.format("Strike must be positive: %s", optionChainReq.getStrike());
+      LOGGER.warn(msg);
+      violations.add(msg);
+    }
+    if (optionChainReq.getInterval() != null
+        && optionChainReq.getInterval().compareTo(BigDecimal.ZERO) <= 0) {
+      String msg = String.format("Interval must be positive: %s", optionChainReq.getInterval());
+      LOGGER.warn(msg);
+      violations.add(msg);
+    }
+    return violations;
+  }
+
+  /**
+   * The strike interval only applies to spread strategies, TDA ignores it otherwise.
+   *
+   * @param optionChainReq the request to validate
+   * @return list of string error messages or empty list if none
+   */
+  private static List<String> checkInterval(OptionChainReq optionChainReq) {
+    Strategy strategy = optionChainReq.getStrategy();
+    if (optionChainReq.getInterval() == null) {
+      return Collections.emptyList();
+    }
+    List<Strategy> invalids = Arrays.asList(Strategy.SINGLE, Strategy.ANALYTICAL);
+    if (strategy == null || invalids.contains(strategy)) {
+      String msg = String.format(
+          "Interval can only be used with a spread strategy, not with Strategy: %s", strategy);
+      LOGGER.warn(msg);
+      return Collections.singletonList(msg);
+    }
+    return Collections.emptyList();
+  }
+
+  /**
+   * @param optionChainReq the request to validate
+   * @return list of string error messages or empty list if none
+   */
+  private static List<String> checkDates(OptionChainReq optionChainReq) {
+    if (optionChainReq.getFromDate() != null && optionChainReq.getToDate() != null
+        && optionChainReq.getToDate().isBefore(optionChainReq.getFromDate())) {
+      String msg = "ToDate cannot be before fromDate";
+      LOGGER.warn(msg);
+      return Collections.singletonList(msg);
+    }
+    return Collections.emptyList();
+  }
+}
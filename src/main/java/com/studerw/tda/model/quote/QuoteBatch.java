@@ -0,0 +1,101 @@
+package com.studerw.tda.model.quote;
+
+import java.io.Serializable;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import org.apache.commons.lang3.builder.ToStringBuilder;
+import org.apache.commons.lang3.builder.ToStringStyle;
+
+/**
+ * Result of fetching quotes for a large list of symbols, which is split into several smaller
+ * requests (chunks). The quotes of all successful chunks are kept in the order the symbols were
+ * requested in, while every chunk that failed is reported as a {@link ChunkFailure} rather than
+ * failing the whole batch.
+ */
+public class QuoteBatch implements Serializable {
+
+  private static final long serialVersionUID = 1L;
+
+  private final List<Quote> quotes;
+  private final List<ChunkFailure> failures;
+
+  public QuoteBatch(List<Quote> quotes, List<ChunkFailure> failures) {
+    this.quotes = Collections.unmodifiableList(quotes);
+    this.failures = Collections.unmodifiableList(failures);
+  }
+
+  /**
+   * @return quotes of the successful chunks, in the same order as the requested symbols. Symbols
+   * unknown to TDA are simply missing, just as with a single request.
+   */
+  public List<Quote> getQuotes() {
+    return quotes;
+  }
+
+  /**
+   * @return the chunks that could not be fetched
+   */
+  public List<ChunkFailure> getFailures() {
+    return failures;
+  }
+
+  /**
+   * @return all symbols that belonged to a failed chunk
+   */
+  public List<String> getFailedSymbols() {
+    List<String> symbols = new ArrayList<>();
+    failures.forEach(f -> symbols.addAll(f.getSymbols()));
+    return symbols;
+  }
+
+  /**
+   * @return true if every chunk was fetched successfully
+   */
+  public boolean isComplete() {
+    return failures.isEmpty();
+  }
+
+  @Override
+  public String toString() {
+    return new ToStringBuilder(this, ToStringStyle.MULTI_LINE_STYLE)
+        .append("quotes", quotes.size())
+        .append("failures", failures)
+        .toString();
+  }
+
+  /**
+   * A single chunk of symbols whose request failed.
+   */
+  public static class ChunkFailure implements Serializable {
+
+    private static final long serialVersionUID = 1L;
+
+    private final List<String> symbols;
+    private final RuntimeException cause;
+
+    public ChunkFailure(List<String> symbols, RuntimeException cause) {
+      this.symbols = Collections.unmodifiableList(symbols);
+      this.cause = cause;
+    }
+
+    public List<String> getSymbols() {
+      return symbols;
+    }
+
+    /**
+     * @return the exception that would have been thrown had the chunk been fetched on its own
+     */
+    public RuntimeException getCause() {
+      return cause;
+    }
+
+    @Override
+    public String toString() {
+      return new ToStringBuilder(this, ToStringStyle.SHORT_PREFIX_STYLE)
+          .append("symbols", symbols)
+          .append("cause", cause.getMessage())
+          .toString();
+    }
+  }
+}
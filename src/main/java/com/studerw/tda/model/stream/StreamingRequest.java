@@ -1,11 +1,93 @@
 package com.studerw.tda.model.stream;
 
-import java.util.concurrent.atomic.AtomicInteger;
+import com.fasterxml.jackson.annotation.JsonInclude;
+import com.fasterxml.jackson.annotation.JsonProperty;
+import java.io.Serializable;
+import java.util.Collections;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import org.apache.commons.lang3.builder.ToStringBuilder;
+import org.apache.commons.lang3.builder.ToStringStyle;
 
-public class StreamingRequest {
+/**
+ * A single request sent to the TDA streamer, wrapped in a <em>requests</em> array on the wire,
+ * e.g. a {@link Command#SUBS} of {@link Service#QUOTE} with the <em>keys</em> and <em>fields</em>
+ * parameters.
+ *
+ * @see <a href="https://developer.tdameritrade.com/content/streaming-data#_Toc504640567">Request
+ * Parameters</a>
+ */
+@JsonInclude(JsonInclude.Include.NON_NULL)
+public class StreamingRequest implements Serializable {
 
-  private static AtomicInteger requestId = new AtomicInteger(1);
-  private Service service;
-  private Integer requestid;
+  private final static long serialVersionUID = 2960155238236178052L;
 
+  @JsonProperty("service")
+  private final Service service;
+  @JsonProperty("requestid")
+  private final String requestid;
+  @JsonProperty("command")
+  private final Command command;
+  @JsonProperty("account")
+  private final String account;
+  @JsonProperty("source")
+  private final String source;
+  @JsonProperty("parameters")
+  private final Map<String, String> parameters;
+
+  /**
+   * @param service the service
+   * @param requestid id echoed back in the response to this request
+   * @param command the command
+   * @param account the account id used to log in
+   * @param source the app id of the streamer info
+   * @param parameters command parameters, e.g. <em>keys</em> and <em>fields</em>
+   */
+  public StreamingRequest(Service service, String requestid, Command command, String account,
+      String source, Map<String, String> parameters) {
+    this.service = service;
+    this.requestid = requestid;
+    this.command = command;
+    this.account = account;
+    this.source = source;
+    this.parameters = parameters == null ? Collections.emptyMap()
+        : Collections.unmodifiableMap(new LinkedHashMap<>(parameters));
+  }
+
+  public Service getService() {
+    return service;
+  }
+
+  public String getRequestid() {
+    return requestid;
+  }
+
+  public Command getCommand() {
+    return command;
+  }
+
+  public String getAccount() {
+    return account;
+  }
+
+  public String getSource() {
+    return source;
+  }
+
+  public Map<String, String> getParameters() {
+    return parameters;
+  }
+
+  @Override
+  public String toString() {
+    return new ToStringBuilder(this, ToStringStyle.MULTI_LINE_STYLE)
+        .append("service", service)
+        .append("requestid", requestid)
+        .append("command", command)
+        .append("account", account)
+        .append("source", source)
+        //the login parameters hold the streamer token
+        .append("parameters", command == Command.LOGIN ? "********" : parameters)
+        .toString();
+  }
 }
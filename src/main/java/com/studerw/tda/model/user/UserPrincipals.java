@@ -159,4 +159,24 @@ public class UserPrincipals implements Serializable {
     NON_PROFESSIONAL,
     UNKNOWN_STATUS
   }
+
+  /**
+   * Optional parts of the user principals, only returned by TDA when requested.
+   */
+  public enum Field {
+    STREAMER_SUBSCRIPTION_KEYS("streamerSubscriptionKeys"),
+    STREAMER_CONNECTION_INFO("streamerConnectionInfo"),
+    PREFERENCES("preferences"),
+    SURROGATE_IDS("surrogateIds");
+
+    private final String field;
+
+    Field(String field) {
+      this.field = field;
+    }
+
+    public String getField() {
+      return field;
+    }
+  }
 }
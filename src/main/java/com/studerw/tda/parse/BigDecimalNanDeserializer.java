@@ -1,8 +1,10 @@
 package com.studerw.tda.parse;
 
 import com.fasterxml.jackson.core.JsonParser;
+import com.fasterxml.jackson.databind.BeanProperty;
 import com.fasterxml.jackson.databind.DeserializationContext;
 import com.fasterxml.jackson.databind.JsonDeserializer;
+import com.fasterxml.jackson.databind.deser.ContextualDeserializer;
 import java.io.IOException;
 import java.math.BigDecimal;
 import org.slf4j.Logger;
@@ -10,21 +12,43 @@ import org.slf4j.LoggerFactory;
 
 /**
  * TDA seems to return invalid JSON sometimes with an OptionChain.theta. When it gets very close to
- * 0, the JSON returns '{theta: "NAN"}'.
+ * 0, the JSON returns '{theta: "NAN"}'. The value is read as 0, and if the model being read
+ * implements {@link NanProperties}, the property is marked as <em>NaN</em> there.
  */
-public class BigDecimalNanDeserializer extends JsonDeserializer<BigDecimal> {
+public class BigDecimalNanDeserializer extends JsonDeserializer<BigDecimal> implements
+    ContextualDeserializer {
 
   private static final Logger LOGGER = LoggerFactory.getLogger(BigDecimalNanDeserializer.class);
 //  private final NumberDeserializers.BigDecimalDeserializer delegate = NumberDeserializers.BigDecimalDeserializer.instance;
 
+  //logical name of the property being read, null outside of a bean property
+  private final String property;
+
+  public BigDecimalNanDeserializer() {
+    this(null);
+  }
+
+  private BigDecimalNanDeserializer(String property) {
+    this.property = property;
+  }
+
+  @Override
+  public JsonDeserializer<?> createContextual(DeserializationContext ctxt, BeanProperty property) {
+    return property == null ? this : new BigDecimalNanDeserializer(property.getName());
+  }
+
   @Override
   public BigDecimal deserialize(JsonParser jp, DeserializationContext ctxt)
       throws IOException {
     final String valueAsString = jp.getValueAsString();
     if ("NAN".equalsIgnoreCase(valueAsString)) {
       LOGGER.warn("{} using invalid NAN instead of a valid double", jp.getCurrentName());
+      Object bean = jp.getCurrentValue();
+      if (property != null && bean instanceof NanProperties) {
+        ((NanProperties) bean).markNaN(property);
+      }
       return new BigDecimal(0);
     }
     return new BigDecimal(valueAsString);
   }
-}
\ No newline at end of file
+}
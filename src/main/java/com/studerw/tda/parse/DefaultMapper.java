@@ -3,19 +3,34 @@ package com.studerw.tda.parse;
 import com.fasterxml.jackson.core.JsonProcessingException;
 import com.fasterxml.jackson.core.Version;
 import com.fasterxml.jackson.core.type.TypeReference;
+import com.fasterxml.jackson.databind.DeserializationFeature;
+import com.fasterxml.jackson.databind.JavaType;
 import com.fasterxml.jackson.databind.ObjectMapper;
+import com.fasterxml.jackson.databind.ObjectReader;
 import com.fasterxml.jackson.databind.module.SimpleModule;
 import java.io.BufferedInputStream;
 import java.io.IOException;
 import java.io.InputStream;
 import java.math.BigDecimal;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
 
 /**
  * Convert between Java pojos and JSON. This class is thread safe.
+ *
+ * <p>
+ * All deserialization goes through {@link ObjectReader}s built once per target type (and root
+ * unwrapping mode) from a single shared {@link ObjectMapper}, so Jackson's deserializer caches are
+ * built once and reused by every call. Readers are immutable and can be shared by any number of
+ * threads.
+ * </p>
  */
 public class DefaultMapper {
 
   private final static ObjectMapper defaultMapper;
+  private final static ConcurrentMap<JavaType, ObjectReader> readers = new ConcurrentHashMap<>();
+  private final static ConcurrentMap<JavaType, ObjectReader> unwrappingReaders =
+      new ConcurrentHashMap<>();
 
   static {
     defaultMapper = new ObjectMapper();
@@ -28,6 +43,48 @@ public class DefaultMapper {
 //    defaultMapper.enable(SerializationFeature.WRAP_ROOT_VALUE);
   }
 
+  /**
+   * @param type the class to deserialize
+   * @return shared reader for the type
+   */
+  public static ObjectReader reader(Class<?> type) {
+    return reader(defaultMapper.constructType(type), false);
+  }
+
+  /**
+   * @param typeReference the generic type to deserialize, e.g. {@code List<Order>}
+   * @return shared reader for the type
+   */
+  public static ObjectReader reader(TypeReference<?> typeReference) {
+    return reader(defaultMapper.getTypeFactory().constructType(typeReference), false);
+  }
+
+  /**
+   * Reader for JSON wrapped in a single root property named by the type's {@link
+   * com.fasterxml.jackson.annotation.JsonRootName}, e.g. <em>{ "securitiesAccount": {...} }</em>.
+   *
+   * @param type the class to deserialize
+   * @return shared reader for the type with {@link DeserializationFeature#UNWRAP_ROOT_VALUE}
+   */
+  public static ObjectReader unwrappingReader(Class<?> type) {
+    return reader(defaultMapper.constructType(type), true);
+  }
+
+  private static ObjectReader reader(JavaType javaType, boolean unwrapRoot) {
+    if (unwrapRoot) {
+      return unwrappingReaders.computeIfAbsent(javaType,
+          t -> defaultMapper.readerFor(t).with(DeserializationFeature.UNWRAP_ROOT_VALUE));
+    }
+    return readers.computeIfAbsent(javaType, defaultMapper::readerFor);
+  }
+
+  /**
+   * @return a copy of the shared mapper, with the same modules and settings, which can be
+   * configured further without affecting the shared one
+   */
+  static ObjectMapper copyMapper() {
+    return defaultMapper.copy();
+  }
 
   /**
    * Convert object to JSON string. Use {@link Utils#prettyFormat(String)} to pretty format the
@@ -54,7 +111,7 @@ public class DefaultMapper {
    */
   public static <T> T fromJson(String json, Class<T> clazz) {
     try {
-      return defaultMapper.readValue(json, clazz);
+      return reader(clazz).readValue(json);
     } catch (IOException e) {
       throw new RuntimeException(e);
     }
@@ -70,7 +127,7 @@ public class DefaultMapper {
    */
   public static <T> T fromJson(InputStream in, Class<T> clazz) {
     try (BufferedInputStream ignored = new BufferedInputStream(in)) {
-      return defaultMapper.readValue(in, clazz);
+      return reader(clazz).readValue(in);
     } catch (IOException e) {
       throw new RuntimeException(e);
     }
@@ -86,7 +143,7 @@ public class DefaultMapper {
    */
   public static <T> T fromJson(InputStream in, TypeReference<T> typeReference) {
     try (BufferedInputStream ignored = new BufferedInputStream(in)) {
-      return defaultMapper.readValue(in, typeReference);
+      return reader(typeReference).readValue(in);
     } catch (IOException e) {
       throw new RuntimeException(e);
     }
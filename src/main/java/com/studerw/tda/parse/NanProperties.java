@@ -0,0 +1,21 @@
+package com.studerw.tda.parse;
+
+/**
+ * Implemented by models which keep track of the properties TDA sent as <em>NaN</em>. {@link
+ * BigDecimalNanDeserializer} still reads such a value as 0, so the getter returns 0, and calls
+ * {@link #markNaN(String)} with the logical property name (the {@code @JsonProperty} name, never
+ * one of its aliases).
+ */
+public interface NanProperties {
+
+  /**
+   * @param property logical name of the property TDA sent as <em>NaN</em>
+   */
+  void markNaN(String property);
+
+  /**
+   * @param property logical name of the property, e.g. <em>theta</em>
+   * @return true if TDA sent <em>NaN</em> for the property, which then reads as 0
+   */
+  boolean isNaN(String property);
+}
@@ -0,0 +1,182 @@
+package com.studerw.tda.parse;
+
+import com.fasterxml.jackson.annotation.JacksonInject;
+import com.fasterxml.jackson.annotation.JsonSubTypes;
+import com.fasterxml.jackson.annotation.JsonTypeInfo;
+import com.fasterxml.jackson.annotation.JsonTypeInfo.Id;
+import com.fasterxml.jackson.core.JsonParser;
+import com.fasterxml.jackson.core.JsonToken;
+import com.fasterxml.jackson.databind.InjectableValues;
+import com.fasterxml.jackson.databind.JsonNode;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.fasterxml.jackson.databind.ObjectReader;
+import com.studerw.tda.model.AssetType;
+import com.studerw.tda.model.quote.Quote;
+import java.io.BufferedInputStream;
+import java.io.Closeable;
+import java.io.IOException;
+import java.io.InputStream;
+import java.util.Collections;
+import java.util.EnumMap;
+import java.util.Iterator;
+import java.util.Map;
+import java.util.NoSuchElementException;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+/**
+ * <p>
+ * Reads a quotes response token by token and hands out each quote as soon as it has been parsed,
+ * instead of first collecting all of them into a map. Only one quote is held in memory at a time.
+ * </p>
+ *
+ * <p>
+ * TDA sends <em>assetType</em> as the first property of every quote. It is read straight from the
+ * token stream and the rest of the object is bound to the matching {@link Quote} subclass, without
+ * Jackson's polymorphic handling which would otherwise buffer tokens to find the type id. A quote
+ * whose first property is not <em>assetType</em> is still parsed correctly, just by first reading
+ * that single quote into a tree.
+ * </p>
+ *
+ * <p>
+ * Instances are not thread safe. The input stream is closed when the last quote has been read, or
+ * by {@link #close()}.
+ * </p>
+ *
+ * <pre>
+ *   try (QuoteStreamParser quotes = new QuoteStreamParser(in)) {
+ *     while (quotes.hasNext()) {
+ *       Quote quote = quotes.next();
+ *       ...
+ *     }
+ *   }
+ * </pre>
+ *
+ * @see TdaJsonParser#parseQuotes(InputStream, java.util.function.Consumer)
+ */
+public class QuoteStreamParser implements Iterator<Quote>, Closeable {
+
+  private static final Logger LOGGER = LoggerFactory.getLogger(QuoteStreamParser.class);
+  private static final String ASSET_TYPE = "assetType";
+
+  //used for any quote whose type id is not the first property
+  private static final ObjectReader TYPED_READER = DefaultMapper.reader(Quote.class);
+  private static final Map<AssetType, ObjectReader> UNTYPED_READERS = untypedReaders();
+
+  private final JsonParser parser;
+  private Quote next;
+  private boolean done;
+
+  /**
+   * @param in inputstream of JSON from the TDA quotes call
+   * @throws RuntimeException if the stream cannot be read or is not a JSON object
+   */
+  public QuoteStreamParser(InputStream in) {
+    try {
+      this.parser = TYPED_READER.getFactory().createParser(new BufferedInputStream(in));
+      if (parser.nextToken() != JsonToken.START_OBJECT) {
+        throw new IllegalStateException(
+            "Expecting a JSON object of quotes, got: " + parser.getCurrentToken());
+      }
+    } catch (IOException e) {
+      throw new RuntimeException(e);
+    }
+  }
+
+  @Override
+  public boolean hasNext() {
+    if (next == null && !done) {
+      next = readNext();
+    }
+    return next != null;
+  }
+
+  @Override
+  public Quote next() {
+    if (!hasNext()) {
+      throw new NoSuchElementException();
+    }
+    Quote quote = next;
+    next = null;
+    return quote;
+  }
+
+  @Override
+  public void close() {
+    done = true;
+    try {
+      parser.close();
+    } catch (IOException e) {
+      LOGGER.warn("Failed to close quotes stream", e);
+    }
+  }
+
+  private Quote readNext() {
+    try {
+      //parser sits on the end of the previous quote, or the start of the response
+      if (parser.nextToken() != JsonToken.FIELD_NAME) {
+        close();
+        return null;
+      }
+      final String symbol = parser.getCurrentName();
+      if (parser.nextToken() != JsonToken.START_OBJECT) {
+        throw new IllegalStateException("Expecting a quote object for symbol " + symbol);
+      }
+
+      if (parser.nextToken() == JsonToken.FIELD_NAME
+          && ASSET_TYPE.equals(parser.getCurrentName())) {
+        parser.nextToken();
+        ObjectReader reader = UNTYPED_READERS.get(assetType(parser.getText()));
+        if (reader != null) {
+          //bind the remaining properties, starting at the one after assetType
+          parser.nextToken();
+          return reader.readValue(parser);
+        }
+        throw new IllegalStateException("Unsupported quote assetType: " + parser.getText());
+      }
+
+      LOGGER.debug("assetType is not the first property of {}, reading quote as a tree", symbol);
+      JsonNode quote = TYPED_READER.readTree(parser);
+      return TYPED_READER.readValue(quote);
+    } catch (IOException e) {
+      close();
+      throw new RuntimeException(e);
+    } catch (RuntimeException e) {
+      close();
+      throw e;
+    }
+  }
+
+  private static AssetType assetType(String name) {
+    try {
+      return AssetType.valueOf(name);
+    } catch (IllegalArgumentException e) {
+      return AssetType.UNKNOWN;
+    }
+  }
+
+  /**
+   * @return a reader per subtype registered on {@link Quote}, which binds the subtype as a plain
+   * bean and injects the asset type instead of reading it from the JSON.
+   */
+  private static Map<AssetType, ObjectReader> untypedReaders() {
+    ObjectMapper mapper = DefaultMapper.copyMapper().addMixIn(Quote.class, UntypedQuote.class);
+    Map<AssetType, ObjectReader> readers = new EnumMap<>(AssetType.class);
+    for (JsonSubTypes.Type type : Quote.class.getAnnotation(JsonSubTypes.class).value()) {
+      AssetType assetType = AssetType.valueOf(type.name());
+      readers.put(assetType, mapper.readerFor(type.value())
+          .with(new InjectableValues.Std().addValue(ASSET_TYPE, assetType)));
+    }
+    return Collections.unmodifiableMap(readers);
+  }
+
+  /**
+   * Turns off the polymorphic type handling of {@link Quote} and its subclasses.
+   */
+  @JsonTypeInfo(use = Id.NONE)
+  private abstract static class UntypedQuote {
+
+    @JacksonInject(ASSET_TYPE)
+    private AssetType assetType;
+  }
+}
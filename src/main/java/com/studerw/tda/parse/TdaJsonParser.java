@@ -1,14 +1,19 @@
 package com.studerw.tda.parse;
 
+import com.fasterxml.jackson.core.JsonParser;
+import com.fasterxml.jackson.core.JsonToken;
 import com.fasterxml.jackson.core.type.TypeReference;
-import com.fasterxml.jackson.databind.DeserializationFeature;
-import com.fasterxml.jackson.databind.ObjectMapper;
+import com.fasterxml.jackson.databind.ObjectReader;
 import com.studerw.tda.model.account.Order;
 import com.studerw.tda.model.account.SecuritiesAccount;
+import com.studerw.tda.model.history.CandleSeries;
 import com.studerw.tda.model.history.PriceHistory;
 import com.studerw.tda.model.instrument.FullInstrument;
 import com.studerw.tda.model.instrument.Instrument;
 import com.studerw.tda.model.marketdata.Mover;
+import com.studerw.tda.model.option.IndexedOptionChain;
+import com.studerw.tda.model.option.IndexedOptionChain.Column;
+import com.studerw.tda.model.option.Option.PutCall;
 import com.studerw.tda.model.option.OptionChain;
 import com.studerw.tda.model.quote.Quote;
 import com.studerw.tda.model.transaction.Transaction;
@@ -19,9 +24,11 @@ import java.io.BufferedInputStream;
 import java.io.IOException;
 import java.io.InputStream;
 import java.util.ArrayList;
+import java.util.Arrays;
 import java.util.LinkedHashMap;
 import java.util.List;
 import java.util.Map;
+import java.util.function.Consumer;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 
@@ -29,19 +36,77 @@ public class TdaJsonParser {
 
   private static final Logger LOGGER = LoggerFactory.getLogger(TdaJsonParser.class);
 
+  //prebuilt, thread safe readers. See DefaultMapper
+  private static final ObjectReader QUOTES_READER = DefaultMapper
+      .reader(new TypeReference<LinkedHashMap<String, Quote>>() {});
+  private static final ObjectReader PRICE_HISTORY_READER = DefaultMapper
+      .reader(PriceHistory.class);
+  private static final ObjectReader ACCOUNT_READER = DefaultMapper
+      .unwrappingReader(SecuritiesAccount.class);
+  private static final ObjectReader ACCOUNTS_READER = DefaultMapper
+      .reader(new TypeReference<List<Map<String, SecuritiesAccount>>>() {});
+  private static final ObjectReader ORDER_READER = DefaultMapper.reader(Order.class);
+  private static final ObjectReader ORDERS_READER = DefaultMapper
+      .reader(new TypeReference<List<Order>>() {});
+  private static final ObjectReader INSTRUMENT_LIST_READER = DefaultMapper
+      .reader(new TypeReference<List<Instrument>>() {});
+  private static final ObjectReader INSTRUMENT_MAP_READER = DefaultMapper
+      .reader(new TypeReference<Map<String, Instrument>>() {});
+  private static final ObjectReader FULL_INSTRUMENT_MAP_READER = DefaultMapper
+      .reader(new TypeReference<Map<String, FullInstrument>>() {});
+  private static final ObjectReader MOVERS_READER = DefaultMapper
+      .reader(new TypeReference<List<Mover>>() {});
+  private static final ObjectReader OPTION_CHAIN_READER = DefaultMapper
+      .reader(OptionChain.class);
+  private static final ObjectReader TRANSACTIONS_READER = DefaultMapper
+      .reader(new TypeReference<List<Transaction>>() {});
+  private static final ObjectReader TRANSACTION_READER = DefaultMapper.reader(Transaction.class);
+  private static final ObjectReader PREFERENCES_READER = DefaultMapper.reader(Preferences.class);
+  private static final ObjectReader USER_PRINCIPALS_READER = DefaultMapper
+      .reader(UserPrincipals.class);
+  private static final ObjectReader SUBSCRIPTION_KEYS_READER = DefaultMapper
+      .reader(StreamerSubscriptionKeys.class);
+
   /**
    * @param in inputstream of JSON from rest call to TDA. The stream will be closed upon return.
    * @return list of objects that extend Quote.
    */
   public List<Quote> parseQuotes(InputStream in) {
+    return new ArrayList<>(parseQuotesMap(in).values());
+  }
+
+  /**
+   * Streaming version of {@link #parseQuotes(InputStream)}: each quote is passed to the consumer
+   * as soon as it has been parsed, and no map or list of all quotes is built.
+   *
+   * @param in inputstream of JSON from rest call to TDA. The stream will be closed upon return.
+   * @param consumer receives each quote, in the order of the response
+   * @return the number of quotes passed to the consumer
+   * @see QuoteStreamParser
+   */
+  public int parseQuotes(InputStream in, Consumer<? super Quote> consumer) {
+    LOGGER.trace("streaming quotes...");
+    int count = 0;
+    try (QuoteStreamParser quotes = new QuoteStreamParser(in)) {
+      while (quotes.hasNext()) {
+        consumer.accept(quotes.next());
+        count++;
+      }
+    }
+    LOGGER.debug("streamed {} quotes", count);
+    return count;
+  }
+
+  /**
+   * @param in inputstream of JSON from rest call to TDA. The stream will be closed upon return.
+   * @return map of objects that extend Quote keyed by symbol, in the order returned by TDA.
+   */
+  public LinkedHashMap<String, Quote> parseQuotesMap(InputStream in) {
     LOGGER.trace("parsing quotes...");
     try (BufferedInputStream bIn = new BufferedInputStream(in)) {
-      LinkedHashMap<String, Quote> quotesMap = DefaultMapper.fromJson(bIn, new TypeReference<LinkedHashMap<String, Quote>>() {});
+      LinkedHashMap<String, Quote> quotesMap = QUOTES_READER.readValue(bIn);
       LOGGER.debug("returned a map of size: {}", quotesMap.size());
-
-      List<Quote> quotes = new ArrayList<>();
-      quotesMap.forEach((k, v) -> quotes.add(v));
-      return quotes;
+      return quotesMap;
     } catch (IOException e) {
       e.printStackTrace();
       throw new RuntimeException(e);
@@ -55,7 +120,7 @@ public class TdaJsonParser {
   public PriceHistory parsePriceHistory(InputStream in) {
     LOGGER.trace("parsing quotes...");
     try (BufferedInputStream bIn = new BufferedInputStream(in)) {
-      final PriceHistory priceHistory = DefaultMapper.fromJson(bIn, PriceHistory.class);
+      final PriceHistory priceHistory = PRICE_HISTORY_READER.readValue(bIn);
       LOGGER.debug("returned a price history for {} of size: {}", priceHistory.getSymbol(),
           priceHistory.getCandles().size());
       return priceHistory;
@@ -65,6 +130,84 @@ public class TdaJsonParser {
     }
   }
 
+  /**
+   * Parse a price history response straight from the token stream into a {@link CandleSeries},
+   * without creating a {@link com.studerw.tda.model.history.Candle} per candle.
+   *
+   * @param in {@link InputStream} of JSON from TDA; the stream will be closed upon return.
+   * @return CandleSeries
+   */
+  public CandleSeries parseCandleSeries(InputStream in) {
+    LOGGER.trace("parsing candle series...");
+    try (BufferedInputStream bIn = new BufferedInputStream(in);
+        JsonParser parser = PRICE_HISTORY_READER.getFactory().createParser(bIn)) {
+      if (parser.nextToken() != JsonToken.START_OBJECT) {
+        throw new IllegalStateException("Expecting a JSON object of price history");
+      }
+      CandleSeries.Builder builder = new CandleSeries.Builder();
+      while (parser.nextToken() == JsonToken.FIELD_NAME) {
+        String field = parser.getCurrentName();
+        JsonToken token = parser.nextToken();
+        if ("candles".equals(field) && token == JsonToken.START_ARRAY) {
+          while (parser.nextToken() == JsonToken.START_OBJECT) {
+            parseCandle(parser, builder);
+          }
+        } else if ("symbol".equals(field)) {
+          builder.withSymbol(parser.getValueAsString());
+        } else {
+          parser.skipChildren();
+        }
+      }
+      CandleSeries series = builder.build();
+      LOGGER.debug("returned a candle series for {} of size: {}", series.getSymbol(),
+          series.size());
+      return series;
+    } catch (IOException e) {
+      e.printStackTrace();
+      throw new RuntimeException(e);
+    }
+  }
+
+  private static void parseCandle(JsonParser parser, CandleSeries.Builder builder)
+      throws IOException {
+    long datetime = Long.MIN_VALUE;
+    double open = Double.NaN;
+    double high = Double.NaN;
+    double low = Double.NaN;
+    double close = Double.NaN;
+    long volume = 0;
+    while (parser.nextToken() == JsonToken.FIELD_NAME) {
+      String field = parser.getCurrentName();
+      parser.nextToken();
+      switch (field) {
+        case "datetime":
+          datetime = parser.getValueAsLong(Long.MIN_VALUE);
+          break;
+        case "open":
+          open = parser.getValueAsDouble(Double.NaN);
+          break;
+        case "high":
+          high = parser.getValueAsDouble(Double.NaN);
+          break;
+        case "low":
+          low = parser.getValueAsDouble(Double.NaN);
+          break;
+        case "close":
+          close = parser.getValueAsDouble(Double.NaN);
+          break;
+        case "volume":
+          volume = parser.getValueAsLong(0);
+          break;
+        default:
+          parser.skipChildren();
+      }
+    }
+    if (datetime == Long.MIN_VALUE) {
+      throw new IllegalStateException("Candle without a datetime");
+    }
+    builder.add(datetime, open, high, low, close, volume);
+  }
+
   /**
    * @param in {@link InputStream} of JSON from TDA; the stream will be closed upon return.
    * @return SecuritiesAccount
@@ -72,11 +215,8 @@ public class TdaJsonParser {
   public SecuritiesAccount parseAccount(InputStream in) {
     LOGGER.trace("parsing securitiesAccount...");
     try (BufferedInputStream bIn = new BufferedInputStream(in)) {
-      //Cannot use defaultMapper because account is wrapped in '{ securitiesAccount: {...} }'
-      final ObjectMapper objMapper = new ObjectMapper();
-      objMapper.enable(DeserializationFeature.UNWRAP_ROOT_VALUE);
-
-      final SecuritiesAccount securitiesAccount = objMapper.readValue(bIn, SecuritiesAccount.class);
+      //account is wrapped in '{ securitiesAccount: {...} }'
+      final SecuritiesAccount securitiesAccount = ACCOUNT_READER.readValue(bIn);
       LOGGER.debug("returned a securitiesAccount of type: {}",
           securitiesAccount.getClass().getName());
       return securitiesAccount;
@@ -93,12 +233,8 @@ public class TdaJsonParser {
   public List<SecuritiesAccount> parseAccounts(InputStream in) {
     LOGGER.trace("parsing securitiesAccounts...");
     try (BufferedInputStream bIn = new BufferedInputStream(in)) {
-
-      TypeReference<List<Map<String, SecuritiesAccount>>> typeReference = new TypeReference<List<Map<String, SecuritiesAccount>>>() {
-      };
-      ObjectMapper mapper = new ObjectMapper();
       List<SecuritiesAccount> accounts = new ArrayList<>();
-      List<Map<String, SecuritiesAccount>> maps = mapper.readValue(bIn, typeReference);
+      List<Map<String, SecuritiesAccount>> maps = ACCOUNTS_READER.readValue(bIn);
       for (Map<String, SecuritiesAccount> map : maps) {
         if (map.size() != 1 && map.containsKey("securitiesAccount")) {
           throw new IllegalStateException("Expecting of json list of securitiesAccount");
@@ -118,7 +254,7 @@ public class TdaJsonParser {
   public Order parseOrder(InputStream in) {
     LOGGER.trace("parsing order...");
     try (BufferedInputStream bIn = new BufferedInputStream(in)) {
-      final Order order = DefaultMapper.fromJson(bIn, Order.class);
+      final Order order = ORDER_READER.readValue(bIn);
       LOGGER.debug("Returned order of id: {}", order.getOrderId());
       return order;
     } catch (IOException e) {
@@ -130,8 +266,7 @@ public class TdaJsonParser {
   public List<Order> parseOrders(InputStream in) {
     LOGGER.trace("parsing orders...");
     try (BufferedInputStream bIn = new BufferedInputStream(in)) {
-      TypeReference<List<Order>> typeReference = new TypeReference<List<Order>>() {};
-      final List<Order> orders= DefaultMapper.fromJson(bIn, typeReference);
+      final List<Order> orders = ORDERS_READER.readValue(bIn);
       LOGGER.debug("Returned list of orders of size: {}", orders.size());
       return orders;
     } catch (IOException e) {
@@ -148,8 +283,7 @@ public class TdaJsonParser {
   public Instrument parseInstrumentArraySingle(InputStream in) {
     LOGGER.trace("parsing instrument array...");
     try (BufferedInputStream bIn = new BufferedInputStream(in)) {
-      TypeReference<List<Instrument>> typeReference = new TypeReference<List<Instrument>>() {};
-      List<Instrument> instruments = DefaultMapper.fromJson(bIn, typeReference);
+      List<Instrument> instruments = INSTRUMENT_LIST_READER.readValue(bIn);
       if (instruments.size() != 1) {
         throw new RuntimeException("Excepting a json array of Instruments from TDA");
       }
@@ -170,8 +304,7 @@ public class TdaJsonParser {
   public List<Instrument> parseInstrumentMap(InputStream in) {
     LOGGER.trace("parsing instrument map...");
     try (BufferedInputStream bIn = new BufferedInputStream(in)) {
-      TypeReference<Map<String, Instrument>> typeReference = new TypeReference<Map<String, Instrument>>() {};
-      Map<String, Instrument> instruments = DefaultMapper.fromJson(bIn, typeReference);
+      Map<String, Instrument> instruments = INSTRUMENT_MAP_READER.readValue(bIn);
       LOGGER.debug("Returned instruments map of size: {}", instruments.size());
       return new ArrayList(instruments.values());
     } catch (IOException e) {
@@ -188,8 +321,7 @@ public class TdaJsonParser {
   public List<FullInstrument> parseFullInstrumentMap(InputStream in) {
     LOGGER.trace("parsing full instrument map...");
     try (BufferedInputStream bIn = new BufferedInputStream(in)) {
-      TypeReference<Map<String, FullInstrument>> typeReference = new TypeReference<Map<String, FullInstrument>>() {};
-      Map<String, FullInstrument> instruments = DefaultMapper.fromJson(bIn, typeReference);
+      Map<String, FullInstrument> instruments = FULL_INSTRUMENT_MAP_READER.readValue(bIn);
       LOGGER.debug("Returned full instruments map of size: {}", instruments.size());
       return new ArrayList(instruments.values());
     } catch (IOException e) {
@@ -201,8 +333,7 @@ public class TdaJsonParser {
   public List<Mover> parseMovers(InputStream in) {
     LOGGER.trace("parsing movers...");
     try (BufferedInputStream bIn = new BufferedInputStream(in)) {
-      TypeReference<List<Mover>> typeReference = new TypeReference<List<Mover>>() {};
-      final List<Mover> movers = DefaultMapper.fromJson(bIn, typeReference);
+      final List<Mover> movers = MOVERS_READER.readValue(bIn);
       LOGGER.debug("Returned list of movers of size: {}", movers.size());
       return movers;
     } catch (IOException e) {
@@ -214,8 +345,7 @@ public class TdaJsonParser {
   public OptionChain parseOptionChain(InputStream in) {
     LOGGER.trace("parsing option chain...");
     try (BufferedInputStream bIn = new BufferedInputStream(in)) {
-      TypeReference<OptionChain> typeReference = new TypeReference<OptionChain>() {};
-      final OptionChain optionChain = DefaultMapper.fromJson(bIn, typeReference);
+      final OptionChain optionChain = OPTION_CHAIN_READER.readValue(bIn);
       LOGGER.debug("Returned optionChain: {}", optionChain);
       return optionChain;
     } catch (IOException e) {
@@ -224,11 +354,136 @@ public class TdaJsonParser {
     }
   }
 
+  /**
+   * Parse an option chain directly into an {@link IndexedOptionChain}, without creating an {@link
+   * com.studerw.tda.model.option.Option} per contract. A <em>NaN</em> greek is {@link
+   * Double#NaN}, the same as with {@link
+   * IndexedOptionChain#of(com.studerw.tda.model.option.OptionChain)}.
+   *
+   * @param in {@link InputStream} of JSON from TDA; the stream will be closed upon return.
+   * @return indexed option chain
+   */
+  public IndexedOptionChain parseIndexedOptionChain(InputStream in) {
+    LOGGER.trace("parsing indexed option chain...");
+    try (BufferedInputStream bIn = new BufferedInputStream(in);
+        JsonParser parser = OPTION_CHAIN_READER.getFactory().createParser(bIn)) {
+      if (parser.nextToken() != JsonToken.START_OBJECT) {
+        throw new IllegalStateException("Expecting a JSON object of an option chain");
+      }
+      IndexedOptionChain.Builder builder = new IndexedOptionChain.Builder();
+      double[] row = new double[Column.values().length];
+      while (parser.nextToken() == JsonToken.FIELD_NAME) {
+        String field = parser.getCurrentName();
+        JsonToken token = parser.nextToken();
+        if ("callExpDateMap".equals(field) && token == JsonToken.START_OBJECT) {
+          parseExpDateMap(parser, PutCall.CALL, builder, row);
+        } else if ("putExpDateMap".equals(field) && token == JsonToken.START_OBJECT) {
+          parseExpDateMap(parser, PutCall.PUT, builder, row);
+        } else if ("symbol".equals(field)) {
+          builder.withSymbol(parser.getValueAsString());
+        } else if ("underlyingPrice".equals(field)) {
+          builder.withUnderlyingPrice(parser.getValueAsDouble(Double.NaN));
+        } else if ("interestRate".equals(field)) {
+          builder.withInterestRate(parser.getValueAsDouble(Double.NaN));
+        } else {
+          parser.skipChildren();
+        }
+      }
+      IndexedOptionChain optionChain = builder.build();
+      LOGGER.debug("Returned indexed optionChain: {}", optionChain);
+      return optionChain;
+    } catch (IOException e) {
+      e.printStackTrace();
+      throw new RuntimeException(e);
+    }
+  }
+
+  /**
+   * The maps are keyed by expiration, then by strike, with an array of contracts per strike.
+   */
+  private static void parseExpDateMap(JsonParser parser, PutCall putCall,
+      IndexedOptionChain.Builder builder, double[] row) throws IOException {
+    while (parser.nextToken() == JsonToken.FIELD_NAME) {
+      String expiration = parser.getCurrentName();
+      if (parser.nextToken() != JsonToken.START_OBJECT) {
+        parser.skipChildren();
+        continue;
+      }
+      while (parser.nextToken() == JsonToken.FIELD_NAME) {
+        double strike = Double.parseDouble(parser.getCurrentName());
+        if (parser.nextToken() != JsonToken.START_ARRAY) {
+          parser.skipChildren();
+          continue;
+        }
+        while (parser.nextToken() == JsonToken.START_OBJECT) {
+          String symbol = parseChainOption(parser, row);
+          builder.add(putCall, expiration, strike, symbol, row);
+        }
+      }
+    }
+  }
+
+  private static String parseChainOption(JsonParser parser, double[] row) throws IOException {
+    Arrays.fill(row, Double.NaN);
+    String symbol = null;
+    while (parser.nextToken() == JsonToken.FIELD_NAME) {
+      String field = parser.getCurrentName();
+      parser.nextToken();
+      switch (field) {
+        case "symbol":
+          symbol = parser.getValueAsString();
+          break;
+        case "bid":
+        case "bidPrice":
+          row[Column.BID.ordinal()] = parser.getValueAsDouble(Double.NaN);
+          break;
+        case "ask":
+        case "askPrice":
+          row[Column.ASK.ordinal()] = parser.getValueAsDouble(Double.NaN);
+          break;
+        case "last":
+        case "lastPrice":
+          row[Column.LAST.ordinal()] = parser.getValueAsDouble(Double.NaN);
+          break;
+        case "mark":
+        case "markPrice":
+          row[Column.MARK.ordinal()] = parser.getValueAsDouble(Double.NaN);
+          break;
+        case "volatility":
+          row[Column.VOLATILITY.ordinal()] = parser.getValueAsDouble(Double.NaN);
+          break;
+        case "delta":
+          row[Column.DELTA.ordinal()] = parser.getValueAsDouble(Double.NaN);
+          break;
+        case "gamma":
+          row[Column.GAMMA.ordinal()] = parser.getValueAsDouble(Double.NaN);
+          break;
+        case "theta":
+          row[Column.THETA.ordinal()] = parser.getValueAsDouble(Double.NaN);
+          break;
+        case "vega":
+          row[Column.VEGA.ordinal()] = parser.getValueAsDouble(Double.NaN);
+          break;
+        case "rho":
+          row[Column.RHO.ordinal()] = parser.getValueAsDouble(Double.NaN);
+          break;
+        case "openInterest":
+          row[Column.OPEN_INTEREST.ordinal()] = parser.getValueAsDouble(Double.NaN);
+          break;
+        case "totalVolume":
+          row[Column.TOTAL_VOLUME.ordinal()] = parser.getValueAsDouble(Double.NaN);
+          break;
+        default:
+          parser.skipChildren();
+      }
+    }
+    return symbol;
+  }
+
   public List<Transaction> parseTransactions(InputStream in) {
     LOGGER.trace("parsing transactions...");
     try (BufferedInputStream bIn = new BufferedInputStream(in)) {
-      TypeReference<List<Transaction>> typeReference = new TypeReference<List<Transaction>>() {};
-      final List<Transaction> transactions = DefaultMapper.fromJson(bIn, typeReference);
+      final List<Transaction> transactions = TRANSACTIONS_READER.readValue(bIn);
       LOGGER.debug("Returned transactions: {}", transactions);
       return transactions;
     } catch (IOException e) {
@@ -240,8 +495,7 @@ public class TdaJsonParser {
   public Transaction parseTransaction(InputStream in) {
     LOGGER.trace("parsing transaction...");
     try (BufferedInputStream bIn = new BufferedInputStream(in)) {
-      TypeReference<Transaction> typeReference = new TypeReference<Transaction>() {};
-      final Transaction transaction = DefaultMapper.fromJson(bIn, typeReference);
+      final Transaction transaction = TRANSACTION_READER.readValue(bIn);
       LOGGER.debug("Returned transaction: {}", transaction);
       return transaction;
     } catch (IOException e) {
@@ -253,8 +507,7 @@ public class TdaJsonParser {
   public Preferences parsePreferences(InputStream in) {
     LOGGER.trace("parsing preferences...");
     try (BufferedInputStream bIn = new BufferedInputStream(in)) {
-      TypeReference<Preferences> typeReference = new TypeReference<Preferences>() {};
-      final Preferences preferences = DefaultMapper.fromJson(bIn, typeReference);
+      final Preferences preferences = PREFERENCES_READER.readValue(bIn);
       LOGGER.debug("Returned preferences: {}", preferences);
       return preferences;
     } catch (IOException e) {
@@ -266,8 +519,7 @@ public class TdaJsonParser {
   public UserPrincipals parseUserPrincipals(InputStream in) {
     LOGGER.trace("parsing userPrincipals...");
     try (BufferedInputStream bIn = new BufferedInputStream(in)) {
-      TypeReference<UserPrincipals> typeReference = new TypeReference<UserPrincipals>() {};
-      final UserPrincipals userPrincipals = DefaultMapper.fromJson(bIn, typeReference);
+      final UserPrincipals userPrincipals = USER_PRINCIPALS_READER.readValue(bIn);
       LOGGER.debug("Returned userPrincipals: {}", userPrincipals);
       return userPrincipals;
     } catch (IOException e) {
@@ -279,9 +531,8 @@ public class TdaJsonParser {
   public StreamerSubscriptionKeys parseSubscriptionKeys(InputStream in) {
     LOGGER.trace("parsing subscription keys...");
     try (BufferedInputStream bIn = new BufferedInputStream(in)) {
-      TypeReference<StreamerSubscriptionKeys> typeReference = new TypeReference<StreamerSubscriptionKeys>() {};
-      final StreamerSubscriptionKeys streamerSubscriptionKeys = DefaultMapper
-          .fromJson(bIn, typeReference);
+      final StreamerSubscriptionKeys streamerSubscriptionKeys = SUBSCRIPTION_KEYS_READER
+          .readValue(bIn);
       LOGGER.debug("Returned subscription keys: {}", streamerSubscriptionKeys);
       return streamerSubscriptionKeys;
     } catch (IOException e) {
@@ -0,0 +1,103 @@
+package com.studerw.tda.pricing;
+
+/**
+ * Bjerksund and Stensland's 2002 closed form approximation of American options, in the cost of
+ * carry form used by Haug's <em>The Complete Guide to Option Pricing Formulas</em>.
+ */
+final class BjerksundStensland {
+
+  //t1 of the two step exercise boundary, (sqrt(5) - 1) / 2 of the time to expiration
+  private static final double SPLIT = 0.5 * (Math.sqrt(5) - 1);
+
+  private BjerksundStensland() {
+  }
+
+  /**
+   * @param put true for a put, false for a call
+   * @param s price of the underlying
+   * @param k strike
+   * @param t years to expiration
+   * @param r risk free rate
+   * @param b cost of carry, the rate minus the dividend yield
+   * @param v volatility
+   * @return value of the American option, never below the European value or, at volatilities
+   * too low for the approximation, the intrinsic value
+   */
+  static double price(boolean put, double s, double k, double t, double r, double b, double v) {
+    //the put is a call with the underlying and strike swapped, and rate and carry transformed
+    double american = put ? call(k, s, t, r - b, -b, v) : call(s, k, t, r, b, v);
+    double european = BlackScholes.price(put, s, k, t, r, b, v);
+    if (Double.isNaN(american)) {
+      return Math.max(european, Math.max(put ? k - s : s - k, 0));
+    }
+    return Math.max(american, european);
+  }
+
+  private static double call(double s, double k, double t, double r, double b, double v) {
+    if (b >= r) {
+      //never optimal to exercise early
+      return BlackScholes.price(false, s, k, t, r, b, v);
+    }
+    double v2 = v * v;
+    double beta = (0.5 - b / v2) + Math.sqrt(Math.pow(b / v2 - 0.5, 2) + 2 * r / v2);
+    double bInfinity = beta / (beta - 1) * k;
+    double b0 = Math.max(k, r / (r - b) * k);
+    double t1 = SPLIT * t;
+    double ht1 = -(b * t1 + 2 * v * Math.sqrt(t1)) * k * k / ((bInfinity - b0) * b0);
+    double ht2 = -(b * t + 2 * v * Math.sqrt(t)) * k * k / ((bInfinity - b0) * b0);
+    double i1 = b0 + (bInfinity - b0) * (1 - Math.exp(ht1));
+    double i2 = b0 + (bInfinity - b0) * (1 - Math.exp(ht2));
+    if (s >= i2) {
+      return s - k;
+    }
+    double alpha1 = (i1 - k) * Math.pow(i1, -beta);
+    double alpha2 = (i2 - k) * Math.pow(i2, -beta);
+    return alpha2 * Math.pow(s, beta)
+        - alpha2 * phi(s, t1, beta, i2, i2, r, b, v)
+        + phi(s, t1, 1, i2, i2, r, b, v)
+        - phi(s, t1, 1, i1, i2, r, b, v)
+        - k * phi(s, t1, 0, i2, i2, r, b, v)
+        + k * phi(s, t1, 0, i1, i2, r, b, v)
+        + alpha1 * phi(s, t1, beta, i1, i2, r, b, v)
+        - alpha1 * psi(s, t, beta, i1, i2, i1, t1, r, b, v)
+        + psi(s, t, 1, i1, i2, i1, t1, r, b, v)
+        - psi(s, t, 1, k, i2, i1, t1, r, b, v)
+        - k * psi(s, t, 0, i1, i2, i1, t1, r, b, v)
+        + k * psi(s, t, 0, k, i2, i1, t1, r, b, v);
+  }
+
+  private static double phi(double s, double t, double gamma, double h, double i, double r,
+      double b, double v) {
+    double v2 = v * v;
+    double vt = v * Math.sqrt(t);
+    double lambda = (-r + gamma * b + 0.5 * gamma * (gamma - 1) * v2) * t;
+    double d = -(Math.log(s / h) + (b + (gamma - 0.5) * v2) * t) / vt;
+    double kappa = 2 * b / v2 + 2 * gamma - 1;
+    return Math.exp(lambda) * Math.pow(s, gamma)
+        * (Normal.cdf(d) - Math.pow(i / s, kappa) * Normal.cdf(d - 2 * Math.log(i / s) / vt));
+  }
+
+  private static double psi(double s, double t2, double gamma, double h, double i2, double i1,
+      double t1, double r, double b, double v) {
+    double v2 = v * v;
+    double drift = b + (gamma - 0.5) * v2;
+    double vt1 = v * Math.sqrt(t1);
+    double vt2 = v * Math.sqrt(t2);
+    double e1 = (Math.log(s / i1) + drift * t1) / vt1;
+    double e2 = (Math.log(i2 * i2 / (s * i1)) + drift * t1) / vt1;
+    double e3 = (Math.log(s / i1) - drift * t1) / vt1;
+    double e4 = (Math.log(i2 * i2 / (s * i1)) - drift * t1) / vt1;
+    double f1 = (Math.log(s / h) + drift * t2) / vt2;
+    double f2 = (Math.log(i2 * i2 / (s * h)) + drift * t2) / vt2;
+    double f3 = (Math.log(i1 * i1 / (s * h)) + drift * t2) / vt2;
+    double f4 = (Math.log(s * i1 * i1 / (h * i2 * i2)) + drift * t2) / vt2;
+    double rho = Math.sqrt(t1 / t2);
+    double lambda = -r + gamma * b + 0.5 * gamma * (gamma - 1) * v2;
+    double kappa = 2 * b / v2 + (2 * gamma - 1);
+    return Math.exp(lambda * t2) * Math.pow(s, gamma)
+        * (Normal.cdf(-e1, -f1, rho)
+        - Math.pow(i2 / s, kappa) * Normal.cdf(-e2, -f2, rho)
+        - Math.pow(i1 / s, kappa) * Normal.cdf(-e3, -f3, -rho)
+        + Math.pow(i1 / i2, kappa) * Normal.cdf(-e4, -f4, -rho));
+  }
+}
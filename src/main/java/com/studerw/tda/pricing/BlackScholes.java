@@ -0,0 +1,67 @@
+package com.studerw.tda.pricing;
+
+/**
+ * Generalized Black-Scholes-Merton model of European options, with a cost of carry <em>b</em>
+ * instead of a dividend yield (b = r - q).
+ */
+final class BlackScholes {
+
+  private BlackScholes() {
+  }
+
+  /**
+   * @param put true for a put, false for a call
+   * @param s price of the underlying
+   * @param k strike
+   * @param t years to expiration
+   * @param r risk free rate
+   * @param b cost of carry, the rate minus the dividend yield
+   * @param v volatility
+   * @return value of the European option
+   */
+  static double price(boolean put, double s, double k, double t, double r, double b, double v) {
+    double vt = v * Math.sqrt(t);
+    double d1 = (Math.log(s / k) + (b + v * v / 2) * t) / vt;
+    double d2 = d1 - vt;
+    double carry = Math.exp((b - r) * t);
+    double discount = Math.exp(-r * t);
+    if (put) {
+      return k * discount * Normal.cdf(-d2) - s * carry * Normal.cdf(-d1);
+    }
+    return s * carry * Normal.cdf(d1) - k * discount * Normal.cdf(d2);
+  }
+
+  /**
+   * Analytic value and greeks, in the units of {@link PricingModel#greeks}.
+   */
+  static void greeks(boolean put, double s, double k, double t, double r, double b, double v,
+      double[] out) {
+    double sqrtT = Math.sqrt(t);
+    double vt = v * sqrtT;
+    double d1 = (Math.log(s / k) + (b + v * v / 2) * t) / vt;
+    double d2 = d1 - vt;
+    double carry = Math.exp((b - r) * t);
+    double discount = Math.exp(-r * t);
+    double density = Normal.pdf(d1);
+    double decay = -s * carry * density * v / (2 * sqrtT);
+    if (put) {
+      double nd1 = Normal.cdf(-d1);
+      double nd2 = Normal.cdf(-d2);
+      out[PricingModel.VALUE] = k * discount * nd2 - s * carry * nd1;
+      out[PricingModel.DELTA] = -carry * nd1;
+      out[PricingModel.THETA] = (decay + (b - r) * s * carry * nd1 + r * k * discount * nd2)
+          / 365;
+      out[PricingModel.RHO] = -k * t * discount * nd2 / 100;
+    } else {
+      double nd1 = Normal.cdf(d1);
+      double nd2 = Normal.cdf(d2);
+      out[PricingModel.VALUE] = s * carry * nd1 - k * discount * nd2;
+      out[PricingModel.DELTA] = carry * nd1;
+      out[PricingModel.THETA] = (decay - (b - r) * s * carry * nd1 - r * k * discount * nd2)
+          / 365;
+      out[PricingModel.RHO] = k * t * discount * nd2 / 100;
+    }
+    out[PricingModel.GAMMA] = carry * density / (s * vt);
+    out[PricingModel.VEGA] = s * carry * density * sqrtT / 100;
+  }
+}
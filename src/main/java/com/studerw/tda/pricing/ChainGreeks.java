@@ -0,0 +1,128 @@
+package com.studerw.tda.pricing;
+
+import com.studerw.tda.model.option.IndexedOptionChain;
+import org.apache.commons.lang3.builder.ToStringBuilder;
+import org.apache.commons.lang3.builder.ToStringStyle;
+
+/**
+ * <p>
+ * Locally computed implied volatility, value and greeks of every contract of an {@link
+ * IndexedOptionChain}, created by a {@link ChainPricer}. The getters take the contract indexes of
+ * the chain, see {@link IndexedOptionChain#contract(int, int,
+ * com.studerw.tda.model.option.Option.PutCall)}.
+ * </p>
+ *
+ * <p>
+ * Units match TDA's: volatility in percent, theta per day, vega and rho per point. A contract
+ * that could not be priced, e.g. a missing contract or one without a volatility, has NaN values.
+ * </p>
+ */
+public final class ChainGreeks {
+
+  private final IndexedOptionChain chain;
+  private final double underlyingPrice;
+  private final double[] volatility;
+  private final double[] value;
+  private final double[] delta;
+  private final double[] gamma;
+  private final double[] theta;
+  private final double[] vega;
+  private final double[] rho;
+
+  ChainGreeks(IndexedOptionChain chain, double underlyingPrice, double[] volatility) {
+    int contracts = chain.contracts();
+    this.chain = chain;
+    this.underlyingPrice = underlyingPrice;
+    this.volatility = volatility;
+    this.value = new double[contracts];
+    this.delta = new double[contracts];
+    this.gamma = new double[contracts];
+    this.theta = new double[contracts];
+    this.vega = new double[contracts];
+    this.rho = new double[contracts];
+  }
+
+  /**
+   * Store the output of {@link PricingModel#greeks}.
+   */
+  void set(int contract, double[] greeks) {
+    value[contract] = greeks[PricingModel.VALUE];
+    delta[contract] = greeks[PricingModel.DELTA];
+    gamma[contract] = greeks[PricingModel.GAMMA];
+    theta[contract] = greeks[PricingModel.THETA];
+    vega[contract] = greeks[PricingModel.VEGA];
+    rho[contract] = greeks[PricingModel.RHO];
+  }
+
+  void clear(int contract) {
+    value[contract] = Double.NaN;
+    delta[contract] = Double.NaN;
+    gamma[contract] = Double.NaN;
+    theta[contract] = Double.NaN;
+    vega[contract] = Double.NaN;
+    rho[contract] = Double.NaN;
+  }
+
+  /**
+   * The volatilities are shared by a chain and its repricings, they are never modified.
+   */
+  double[] volatilities() {
+    return volatility;
+  }
+
+  public IndexedOptionChain getChain() {
+    return chain;
+  }
+
+  /**
+   * @return price of the underlying the greeks were computed at
+   */
+  public double getUnderlyingPrice() {
+    return underlyingPrice;
+  }
+
+  /**
+   * @param contract contract index
+   * @return volatility in percent used to price the contract
+   */
+  public double getVolatility(int contract) {
+    return volatility[contract];
+  }
+
+  /**
+   * @param contract contract index
+   * @return theoretical value of the contract
+   */
+  public double getValue(int contract) {
+    return value[contract];
+  }
+
+  public double getDelta(int contract) {
+    return delta[contract];
+  }
+
+  public double getGamma(int contract) {
+    return gamma[contract];
+  }
+
+  public double getTheta(int contract) {
+    return theta[contract];
+  }
+
+  public double getVega(int contract) {
+    return vega[contract];
+  }
+
+  public double getRho(int contract) {
+    return rho[contract];
+  }
+
+  @Override
+  public String toString() {
+    return new ToStringBuilder(this, ToStringStyle.SHORT_PREFIX_STYLE)
+        .append("symbol", chain.getSymbol())
+        .append("underlyingPrice", underlyingPrice)
+        .append("contracts", volatility.length)
+        .toString();
+  }
+}
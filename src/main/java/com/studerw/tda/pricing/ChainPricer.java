@@ -0,0 +1,256 @@
+package com.studerw.tda.pricing;
+
+import com.studerw.tda.model.option.IndexedOptionChain;
+import com.studerw.tda.model.option.Option.PutCall;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.RecursiveAction;
+import org.apache.commons.lang3.builder.ToStringBuilder;
+import org.apache.commons.lang3.builder.ToStringStyle;
+
+/**
+ * <p>
+ * Computes implied volatility and greeks of a whole {@link IndexedOptionChain} locally, so they
+ * can be kept current with the underlying without fetching the chain again, and without TDA's
+ * <em>NaN</em> greeks.
+ * </p>
+ *
+ * <ul>
+ *   <li>{@link #price(IndexedOptionChain)} solves the implied volatility of each contract from the
+ *   mid of its bid and ask (or its mark), at the chain's underlying price and interest rate. If
+ *   a contract has no usable quote, TDA's volatility of the contract is used instead, and a deep in
+ *   the money contract quoted below its value at the lowest volatility is priced at that
+ *   volatility.</li>
+ *   <li>{@link #reprice(ChainGreeks, double)} keeps those volatilities and only recomputes values
+ *   and greeks at a new underlying price, e.g. on every tick of the underlying.</li>
+ * </ul>
+ *
+ * <p>
+ * Time to expiration is the chain's days to expiration over 365, where 0 days (expiring today) is
+ * priced as half a day. Expirations are priced in parallel on a {@link ForkJoinPool}, each one a
+ * loop over the primitive columns of its contracts. Instances are immutable and thread safe.
+ * </p>
+ *
+ * <pre class="code">
+ *     ChainPricer pricer = ChainPricer.Builder.chainPricer()
+ *       .withModel(PricingModel.BJERKSUND_STENSLAND)
+ *       .build();
+ *     ChainGreeks greeks = pricer.price(chain);
+ *     //later, on a new quote of the underlying
+ *     greeks = pricer.reprice(greeks, lastPrice);
+ * </pre>
+ */
+public class ChainPricer {
+
+  private static final double MIN_DAYS = 0.5;
+
+  private final PricingModel model;
+  private final double dividendYield;
+  private final ForkJoinPool pool;
+
+  private ChainPricer(Builder builder) {
+    this.model = builder.model;
+    this.dividendYield = builder.dividendYield;
+    this.pool = builder.pool;
+  }
+
+  public PricingModel getModel() {
+    return model;
+  }
+
+  public double getDividendYield() {
+    return dividendYield;
+  }
+
+  /**
+   * Solve implied volatilities and compute greeks at the chain's underlying price.
+   *
+   * @param chain the option chain
+   * @return volatility, value and greeks of every contract
+   * @throws IllegalArgumentException if the chain has no valid underlying price
+   */
+  public ChainGreeks price(IndexedOptionChain chain) {
+    double underlyingPrice = checkPrice(chain.getUnderlyingPrice());
+    double[] volatility = new double[chain.contracts()];
+    ChainGreeks greeks = new ChainGreeks(chain, underlyingPrice, volatility);
+    pool.invoke(new ExpirationTask(greeks, true, 0, chain.expirations()));
+    return greeks;
+  }
+
+  /**
+   * Recompute values and greeks at a new underlying price with the previously solved
+   * volatilities.
+   *
+   * @param greeks result of {@link #price(IndexedOptionChain)} or a previous repricing
+   * @param underlyingPrice the new price of the underlying
+   * @return volatility, value and greeks of every contract
+   * @throws IllegalArgumentException if the underlying price is not positive
+   */
+  public ChainGreeks reprice(ChainGreeks greeks, double underlyingPrice) {
+    IndexedOptionChain chain = greeks.getChain();
+    ChainGreeks repriced = new ChainGreeks(chain, checkPrice(underlyingPrice),
+        greeks.volatilities());
+    pool.invoke(new ExpirationTask(repriced, false, 0, chain.expirations()));
+    return repriced;
+  }
+
+  private static double checkPrice(double underlyingPrice) {
+    if (!(underlyingPrice > 0) || Double.isInfinite(underlyingPrice)) {
+      throw new IllegalArgumentException("Invalid underlying price: " + underlyingPrice);
+    }
+    return underlyingPrice;
+  }
+
+  /**
+   * Prices a range of expirations, splitting it until a task has a single expiration.
+   */
+  private class ExpirationTask extends RecursiveAction {
+
+    private static final long serialVersionUID = 1L;
+
+    private final ChainGreeks greeks;
+    private final boolean solve;
+    private final int from;
+    private final int to;
+
+    private ExpirationTask(ChainGreeks greeks, boolean solve, int from, int to) {
+      this.greeks = greeks;
+      this.solve = solve;
+      this.from = from;
+      this.to = to;
+    }
+
+    @Override
+    protected void compute() {
+      if (to - from > 1) {
+        int middle = (from + to) >>> 1;
+        invokeAll(new ExpirationTask(greeks, solve, from, middle),
+            new ExpirationTask(greeks, solve, middle, to));
+      } else if (to > from) {
+        priceExpiration(greeks, solve, from);
+      }
+    }
+  }
+
+  private void priceExpiration(ChainGreeks greeks, boolean solve, int expiration) {
+    IndexedOptionChain chain = greeks.getChain();
+    int strikes = chain.strikes(expiration);
+    if (strikes == 0) {
+      return;
+    }
+    double s = greeks.getUnderlyingPrice();
+    double t = Math.max(chain.getDaysToExpiration(expiration), MIN_DAYS) / 365;
+    double r = Double.isNaN(chain.getInterestRate()) ? 0 : chain.getInterestRate() / 100;
+    double q = dividendYield;
+    double[] volatility = greeks.volatilities();
+    double[] out = new double[PricingModel.GREEKS];
+    int first = chain.contract(expiration, 0, PutCall.CALL);
+    int end = first + 2 * strikes;
+    for (int c = first; c < end; c++) {
+      if (!chain.hasContract(c)) {
+        if (solve) {
+          //the volatilities are shared by every repricing, which only reads them
+          volatility[c] = Double.NaN;
+        }
+        greeks.clear(c);
+        continue;
+      }
+      boolean put = chain.getPutCall(c) == PutCall.PUT;
+      double k = chain.strikeOf(c);
+      if (solve) {
+        volatility[c] = volatility(chain, c, put, s, k, t, r, q);
+      }
+      if (volatility[c] > 0) {
+        model.greeks(put, s, k, t, r, q, volatility[c] / 100, out);
+        greeks.set(c, out);
+      } else {
+        greeks.clear(c);
+      }
+    }
+  }
+
+  /**
+   * @return implied volatility in percent, TDA's volatility if there is none, or the minimum if
+   * the contract is quoted without any time value
+   */
+  private double volatility(IndexedOptionChain chain, int c, boolean put, double s, double k,
+      double t, double r, double q) {
+    double mid = mid(chain, c);
+    double v = ImpliedVolatility.solve(model, put, mid, s, k, t, r, q);
+    if (!Double.isNaN(v)) {
+      return v * 100;
+    }
+    if (chain.getVolatility(c) > 0) {
+      return chain.getVolatility(c);
+    }
+    if (mid > 0 && mid <= model.price(put, s, k, t, r, q, ImpliedVolatility.MIN)) {
+      return ImpliedVolatility.MIN * 100;
+    }
+    return Double.NaN;
+  }
+
+  private static double mid(IndexedOptionChain chain, int contract) {
+    double bid = chain.getBid(contract);
+    double ask = chain.getAsk(contract);
+    if (bid > 0 && ask >= bid) {
+      return (bid + ask) / 2;
+    }
+    return chain.getMark(contract) > 0 ? chain.getMark(contract) : Double.NaN;
+  }
+
+  @Override
+  public String toString() {
+    return new ToStringBuilder(this, ToStringStyle.SHORT_PREFIX_STYLE)
+        .append("model", model)
+        .append("dividendYield", dividendYield)
+        .append("parallelism", pool.getParallelism())
+        .toString();
+  }
+
+  public static final class Builder {
+
+    private PricingModel model = PricingModel.BJERKSUND_STENSLAND;
+    private double dividendYield;
+    private ForkJoinPool pool = ForkJoinPool.commonPool();
+
+    private Builder() {
+    }
+
+    public static Builder chainPricer() {
+      return new Builder();
+    }
+
+    /**
+     * @param model pricing model, {@link PricingModel#BJERKSUND_STENSLAND} by default
+     */
+    public Builder withModel(PricingModel model) {
+      this.model = model;
+      return this;
+    }
+
+    /**
+     * @param dividendYield continuous dividend yield of the underlying as a decimal, 0 by default
+     */
+    public Builder withDividendYield(double dividendYield) {
+      this.dividendYield = dividendYield;
+      return this;
+    }
+
+    /**
+     * @param pool pool to price expirations on, {@link ForkJoinPool#commonPool()} by default
+     */
+    public Builder withPool(ForkJoinPool pool) {
+      this.pool = pool;
+      return this;
+    }
+
+    public ChainPricer build() {
+      if (model == null || pool == null) {
+        throw new IllegalArgumentException("model and pool cannot be null");
+      }
+      if (Double.isNaN(dividendYield)) {
+        throw new IllegalArgumentException("dividendYield cannot be NaN");
+      }
+      return new ChainPricer(this);
+    }
+  }
+}
@@ -0,0 +1,112 @@
+package com.studerw.tda.pricing;
+
+/**
+ * Solves for the volatility at which a {@link PricingModel} gives a target option price, using
+ * Brent's root finding method.
+ */
+public final class ImpliedVolatility {
+
+  /**
+   * Lowest volatility searched
+   */
+  public static final double MIN = 1e-4;
+  /**
+   * Highest volatility searched, 500%
+   */
+  public static final double MAX = 5.0;
+
+  private static final double TOLERANCE = 1e-8;
+  private static final int MAX_ITERATIONS = 100;
+
+  private ImpliedVolatility() {
+  }
+
+  /**
+   * @param model the pricing model
+   * @param put true for a put, false for a call
+   * @param price option price to match, typically the mid of bid and ask
+   * @param s price of the underlying
+   * @param k strike
+   * @param t years to expiration, must be positive
+   * @param r risk free rate
+   * @param q continuous dividend yield
+   * @return the implied volatility as a decimal, or NaN if the price is not between the model
+   * prices at {@link #MIN} and {@link #MAX} volatility, e.g. a price below intrinsic value
+   */
+  public static double solve(PricingModel model, boolean put, double price, double s, double k,
+      double t, double r, double q) {
+    if (!(price > 0) || !(t > 0)) {
+      return Double.NaN;
+    }
+    double a = MIN;
+    double b = MAX;
+    double fa = model.price(put, s, k, t, r, q, a) - price;
+    double fb = model.price(put, s, k, t, r, q, b) - price;
+    if (Double.isNaN(fa) || Double.isNaN(fb) || fa * fb > 0) {
+      return Double.NaN;
+    }
+    if (fa == 0) {
+      return a;
+    }
+    double c = a;
+    double fc = fa;
+    double d = b - a;
+    double e = d;
+    for (int i = 0; i < MAX_ITERATIONS; i++) {
+      if (fb * fc > 0) {
+        c = a;
+        fc = fa;
+        d = b - a;
+        e = d;
+      }
+      if (Math.abs(fc) < Math.abs(fb)) {
+        a = b;
+        b = c;
+        c = a;
+        fa = fb;
+        fb = fc;
+        fc = fa;
+      }
+      double tolerance = 2 * Math.ulp(b) + TOLERANCE / 2;
+      double middle = (c - b) / 2;
+      if (Math.abs(middle) <= tolerance || fb == 0) {
+        return b;
+      }
+      if (Math.abs(e) >= tolerance && Math.abs(fa) > Math.abs(fb)) {
+        //secant or inverse quadratic interpolation
+        double p;
+        double q2;
+        double s2 = fb / fa;
+        if (a == c) {
+          p = 2 * middle * s2;
+          q2 = 1 - s2;
+        } else {
+          double q1 = fa / fc;
+          double r1 = fb / fc;
+          p = s2 * (2 * middle * q1 * (q1 - r1) - (b - a) * (r1 - 1));
+          q2 = (q1 - 1) * (r1 - 1) * (s2 - 1);
+        }
+        if (p > 0) {
+          q2 = -q2;
+        } else {
+          p = -p;
+        }
+        if (2 * p < Math.min(3 * middle * q2 - Math.abs(tolerance * q2), Math.abs(e * q2))) {
+          e = d;
+          d = p / q2;
+        } else {
+          d = middle;
+          e = d;
+        }
+      } else {
+        d = middle;
+        e = d;
+      }
+      a = b;
+      fa = fb;
+      b += Math.abs(d) > tolerance ? d : Math.copySign(tolerance, middle);
+      fb = model.price(put, s, k, t, r, q, b) - price;
+    }
+    return b;
+  }
+}
@@ -0,0 +1,139 @@
+package com.studerw.tda.pricing;
+
+/**
+ * Standard normal distribution functions used by the pricing models.
+ */
+final class Normal {
+
+  private static final double SQRT_2PI = Math.sqrt(2 * Math.PI);
+
+  //Gauss-Legendre weights and abscissas of Genz's bivariate algorithm, 6, 12 and 20 points
+  private static final double[][] W = {
+      {0.1713244923791705, 0.3607615730481384, 0.4679139345726904},
+      {0.04717533638651177, 0.1069393259953183, 0.1600783285433464, 0.2031674267230659,
+          0.2334925365383547, 0.2491470458134029},
+      {0.01761400713915212, 0.04060142980038694, 0.06267204833410906, 0.08327674157670475,
+          0.1019301198172404, 0.1181945319615184, 0.1316886384491766, 0.1420961093183821,
+          0.1491729864726037, 0.1527533871307259}};
+  private static final double[][] X = {
+      {-0.9324695142031522, -0.6612093864662647, -0.2386191860831970},
+      {-0.9815606342467191, -0.9041172563704750, -0.7699026741943050, -0.5873179542866171,
+          -0.3678314989981802, -0.1252334085114692},
+      {-0.9931285991850949, -0.9639719272779138, -0.9122344282513259, -0.8391169718222188,
+          -0.7463319064601508, -0.6360536807265150, -0.5108670019508271, -0.3737060887154196,
+          -0.2277858511416451, -0.07652652113349733}};
+
+  private Normal() {
+  }
+
+  /**
+   * @return the standard normal density at x
+   */
+  static double pdf(double x) {
+    return Math.exp(-0.5 * x * x) / SQRT_2PI;
+  }
+
+  /**
+   * Hart's double precision approximation of the cumulative normal distribution.
+   *
+   * @return probability that a standard normal variable is below x
+   */
+  static double cdf(double x) {
+    double abs = Math.abs(x);
+    double c;
+    if (abs > 37) {
+      c = 0;
+    } else {
+      double e = Math.exp(-abs * abs / 2);
+      if (abs < 7.07106781186547) {
+        double b = 3.52624965998911E-02 * abs + 0.700383064443688;
+        b = b * abs + 6.37396220353165;
+        b = b * abs + 33.912866078383;
+        b = b * abs + 112.079291497871;
+        b = b * abs + 221.213596169931;
+        b = b * abs + 220.206867912376;
+        c = e * b;
+        b = 8.83883476483184E-02 * abs + 1.75566716318264;
+        b = b * abs + 16.064177579207;
+        b = b * abs + 86.7807322029461;
+        b = b * abs + 296.564248779674;
+        b = b * abs + 637.333633378831;
+        b = b * abs + 793.826512519948;
+        b = b * abs + 440.413735824752;
+        c = c / b;
+      } else {
+        double b = abs + 0.65;
+        b = abs + 4 / b;
+        b = abs + 3 / b;
+        b = abs + 2 / b;
+        b = abs + 1 / b;
+        c = e / b / 2.506628274631;
+      }
+    }
+    return x > 0 ? 1 - c : c;
+  }
+
+  /**
+   * Genz's algorithm for the cumulative bivariate normal distribution, accurate to about 15
+   * decimals.
+   *
+   * @return probability that standard normal variables with correlation rho are below a and b
+   */
+  static double cdf(double a, double b, double rho) {
+    //Genz computes the upper tail, P(X > h, Y > k)
+    double h = -a;
+    double k = -b;
+    double hk = h * k;
+    int n = Math.abs(rho) < 0.3 ? 0 : Math.abs(rho) < 0.75 ? 1 : 2;
+    double[] w = W[n];
+    double[] x = X[n];
+    double bvn = 0;
+    if (Math.abs(rho) < 0.925) {
+      double hs = (h * h + k * k) / 2;
+      double asr = Math.asin(rho);
+      for (int i = 0; i < w.length; i++) {
+        double sn = Math.sin(asr * (x[i] + 1) / 2);
+        bvn += w[i] * Math.exp((sn * hk - hs) / (1 - sn * sn));
+        sn = Math.sin(asr * (-x[i] + 1) / 2);
+        bvn += w[i] * Math.exp((sn * hk - hs) / (1 - sn * sn));
+      }
+      return bvn * asr / (4 * Math.PI) + cdf(-h) * cdf(-k);
+    }
+    if (rho < 0) {
+      k = -k;
+      hk = -hk;
+    }
+    if (Math.abs(rho) < 1) {
+      double as = (1 - rho) * (1 + rho);
+      double sqrtAs = Math.sqrt(as);
+      double bs = (h - k) * (h - k);
+      double c = (4 - hk) / 8;
+      double d = (12 - hk) / 16;
+      bvn = sqrtAs * Math.exp(-(bs / as + hk) / 2)
+          * (1 - c * (bs - as) * (1 - d * bs / 5) / 3 + c * d * as * as / 5);
+      if (hk > -160) {
+        double sqrtBs = Math.sqrt(bs);
+        bvn -= Math.exp(-hk / 2) * SQRT_2PI * cdf(-sqrtBs / sqrtAs) * sqrtBs
+            * (1 - c * bs * (1 - d * bs / 5) / 3);
+      }
+      double half = sqrtAs / 2;
+      for (int i = 0; i < w.length; i++) {
+        for (int sign = -1; sign <= 1; sign += 2) {
+          double xs = Math.pow(half * (sign * x[i] + 1), 2);
+          double rs = Math.sqrt(1 - xs);
+          bvn += half * w[i] * (Math.exp(-bs / (2 * xs) - hk / (1 + rs)) / rs
+              - Math.exp(-(bs / xs + hk) / 2) * (1 + c * xs * (1 + d * xs)));
+        }
+      }
+      bvn = -bvn / (2 * Math.PI);
+    }
+    if (rho > 0) {
+      return bvn + cdf(-Math.max(h, k));
+    }
+    bvn = -bvn;
+    if (k > h) {
+      bvn += h < 0 ? cdf(k) - cdf(h) : cdf(-h) - cdf(-k);
+    }
+    return bvn;
+  }
+}
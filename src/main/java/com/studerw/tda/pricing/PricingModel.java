@@ -0,0 +1,105 @@
+package com.studerw.tda.pricing;
+
+/**
+ * <p>
+ * Option pricing models. All of them take the same inputs: the price of the underlying, the
+ * strike, the years to expiration, and the risk free rate, dividend yield and volatility as
+ * decimals (e.g. 0.25 for 25%).
+ * </p>
+ *
+ * <p>
+ * Greeks are in the units TDA uses in {@link com.studerw.tda.model.option.Option}: theta per
+ * calendar day, vega per point of volatility and rho per point of interest rate.
+ * </p>
+ */
+public enum PricingModel {
+
+  /**
+   * Black-Scholes-Merton, for European options such as SPX and other index options. Greeks are
+   * analytic.
+   */
+  BLACK_SCHOLES {
+    @Override
+    public double price(boolean put, double s, double k, double t, double r, double q, double v) {
+      return BlackScholes.price(put, s, k, t, r, r - q, v);
+    }
+
+    @Override
+    public void greeks(boolean put, double s, double k, double t, double r, double q, double v,
+        double[] out) {
+      BlackScholes.greeks(put, s, k, t, r, r - q, v, out);
+    }
+  },
+
+  /**
+   * Bjerksund-Stensland (2002) approximation, for American options such as equity and ETF
+   * options. Greeks are finite differences.
+   */
+  BJERKSUND_STENSLAND {
+    @Override
+    public double price(boolean put, double s, double k, double t, double r, double q, double v) {
+      return BjerksundStensland.price(put, s, k, t, r, r - q, v);
+    }
+  };
+
+  /**
+   * Index of the option value in the array filled by {@link #greeks}
+   */
+  public static final int VALUE = 0;
+  public static final int DELTA = 1;
+  public static final int GAMMA = 2;
+  public static final int THETA = 3;
+  public static final int VEGA = 4;
+  public static final int RHO = 5;
+  /**
+   * Length of the array filled by {@link #greeks}
+   */
+  public static final int GREEKS = 6;
+
+  private static final double DAY = 1.0 / 365;
+
+  /**
+   * @param put true for a put, false for a call
+   * @param s price of the underlying
+   * @param k strike
+   * @param t years to expiration, must be positive
+   * @param r risk free rate
+   * @param q continuous dividend yield
+   * @param v volatility, must be positive
+   * @return value of the option
+   */
+  public abstract double price(boolean put, double s, double k, double t, double r, double q,
+      double v);
+
+  /**
+   * Compute the value and greeks of an option. The defaults are central differences of {@link
+   * #price}.
+   *
+   * @param put true for a put, false for a call
+   * @param s price of the underlying
+   * @param k strike
+   * @param t years to expiration, must be positive
+   * @param r risk free rate
+   * @param q continuous dividend yield
+   * @param v volatility, must be positive
+   * @param out receives the value and greeks at the indexes {@link #VALUE}, {@link #DELTA}, etc.
+   */
+  public void greeks(boolean put, double s, double k, double t, double r, double q, double v,
+      double[] out) {
+    double value = price(put, s, k, t, r, q, v);
+    double ds = s * 1e-3;
+    double up = price(put, s + ds, k, t, r, q, v);
+    double down = price(put, s - ds, k, t, r, q, v);
+    out[VALUE] = value;
+    out[DELTA] = (up - down) / (2 * ds);
+    out[GAMMA] = (up - 2 * value + down) / (ds * ds);
+    out[THETA] = t > DAY ? price(put, s, k, t - DAY, r, q, v) - value
+        : Math.max(put ? k - s : s - k, 0) - value;
+    double dv = Math.min(0.01, v / 2);
+    out[VEGA] = (price(put, s, k, t, r, q, v + dv) - price(put, s, k, t, r, q, v - dv))
+        / (2 * dv) / 100;
+    double dr = 1e-4;
+    out[RHO] = (price(put, s, k, t, r + dr, q, v) - price(put, s, k, t, r - dr, q, v))
+        / (2 * dr) / 100;
+  }
+}
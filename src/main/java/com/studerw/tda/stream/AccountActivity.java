@@ -0,0 +1,390 @@
+package com.studerw.tda.stream;
+
+import com.studerw.tda.model.stream.Service;
+import java.io.StringReader;
+import java.math.BigDecimal;
+import java.time.ZonedDateTime;
+import java.time.format.DateTimeParseException;
+import java.util.ArrayDeque;
+import java.util.Deque;
+import javax.xml.stream.XMLInputFactory;
+import javax.xml.stream.XMLStreamConstants;
+import javax.xml.stream.XMLStreamException;
+import javax.xml.stream.XMLStreamReader;
+import org.apache.commons.lang3.StringUtils;
+import org.apache.commons.lang3.builder.ToStringBuilder;
+import org.apache.commons.lang3.builder.ToStringStyle;
+
+/**
+ * <p>
+ * One message of {@link Service#ACCT_ACTIVITY}: field <em>1</em> is the account, field <em>2</em>
+ * the message type, e.g. <em>OrderEntryRequest</em>, <em>OrderFill</em> or <em>UROUT</em>, and
+ * field <em>3</em> an XML document describing the order and, for fills, the execution. Only the
+ * elements needed to track orders and positions are kept; missing ones are null.
+ * </p>
+ *
+ * @see <a href="https://developer.tdameritrade.com/content/streaming-data">Streaming Data</a>
+ */
+public final class AccountActivity {
+
+  private static final XMLInputFactory XML_INPUT_FACTORY = XMLInputFactory.newInstance();
+
+  static {
+    //the messages come from the streamer, but there is no reason to resolve anything
+    XML_INPUT_FACTORY.setProperty(XMLInputFactory.SUPPORT_DTD, false);
+    XML_INPUT_FACTORY.setProperty(XMLInputFactory.IS_SUPPORTING_EXTERNAL_ENTITIES, false);
+    XML_INPUT_FACTORY.setProperty(XMLInputFactory.IS_COALESCING, true);
+  }
+
+  private final String accountId;
+  private final String messageType;
+  private ZonedDateTime timestamp;
+  private long orderId;
+  private long originalOrderId;
+  private String symbol;
+  private String securityType;
+  private String orderType;
+  private String duration;
+  private String instruction;
+  private String openClose;
+  private BigDecimal quantity;
+  private BigDecimal limitPrice;
+  private BigDecimal stopPrice;
+  private String executionType;
+  private String executionId;
+  private BigDecimal executionQuantity;
+  private BigDecimal executionPrice;
+  private BigDecimal leavesQuantity;
+  private BigDecimal cancelledQuantity;
+  private String rejectReason;
+
+  private AccountActivity(String accountId, String messageType) {
+    this.accountId = accountId;
+    this.messageType = messageType;
+  }
+
+  /**
+   * @param content content of {@link Service#ACCT_ACTIVITY}
+   * @return the parsed message
+   * @throws IllegalArgumentException if the XML cannot be parsed
+   */
+  static AccountActivity of(StreamContent content) {
+    return parse(content.getString(1), content.getString(2), content.getString(3));
+  }
+
+  /**
+   * Parse the XML of a message with StAX, without building a document.
+   *
+   * @param accountId the account, field <em>1</em>
+   * @param messageType the message type, field <em>2</em>
+   * @param xml the message data, field <em>3</em>, which is empty for e.g. <em>SUBSCRIBED</em>
+   * @return the parsed message
+   * @throws IllegalArgumentException if the XML cannot be parsed
+   */
+  static AccountActivity parse(String accountId, String messageType, String xml) {
+    AccountActivity activity = new AccountActivity(accountId, messageType);
+    if (StringUtils.isBlank(xml)) {
+      return activity;
+    }
+    Deque<String> path = new ArrayDeque<>();
+    StringBuilder text = new StringBuilder();
+    XMLStreamReader reader = null;
+    try {
+      reader = XML_INPUT_FACTORY.createXMLStreamReader(new StringReader(xml));
+      while (reader.hasNext()) {
+        switch (reader.next()) {
+          case XMLStreamConstants.START_ELEMENT:
+            path.push(reader.getLocalName());
+            text.setLength(0);
+            break;
+          case XMLStreamConstants.CHARACTERS:
+          case XMLStreamConstants.CDATA:
+            text.append(reader.getText());
+            break;
+          case XMLStreamConstants.END_ELEMENT:
+            String name = path.pop();
+            activity.element(path.size(), path.peek(), name, text.toString().trim());
+            text.setLength(0);
+            break;
+          default:
+            break;
+        }
+      }
+    } catch (XMLStreamException e) {
+      throw new IllegalArgumentException("Could not parse " + messageType + " of account "
+          + accountId, e);
+    } finally {
+      if (reader != null) {
+        try {
+          reader.close();
+        } catch (XMLStreamException e) {
+          //nothing to release for a string
+        }
+      }
+    }
+    return activity;
+  }
+
+  /**
+   * @param depth number of ancestors, 0 for the root element
+   * @param parent local name of the parent, null for the root element
+   * @param name local name of the element
+   * @param text trimmed text of the element
+   */
+  private void element(int depth, String parent, String name, String text) {
+    if (text.isEmpty()) {
+      return;
+    }
+    if (depth == 1) {
+      switch (name) {
+        case "ActivityTimestamp":
+          timestamp = toDateTime(text);
+          break;
+        case "OriginalOrderId":
+          originalOrderId = toLong(text);
+          break;
+        case "CancelledQuantity":
+          cancelledQuantity = toDecimal(text);
+          break;
+        default:
+          break;
+      }
+    } else if ("Order".equals(parent)) {
+      switch (name) {
+        case "OrderKey":
+          orderId = toLong(text);
+          break;
+        case "OrderType":
+          orderType = text;
+          break;
+        case "OrderDuration":
+          duration = text;
+          break;
+        case "OrderInstructions":
+          instruction = text;
+          break;
+        case "OpenClose":
+          openClose = text;
+          break;
+        case "OriginalQuantity":
+          quantity = toDecimal(text);
+          break;
+        default:
+          break;
+      }
+    } else if ("Security".equals(parent)) {
+      if ("Symbol".equals(name)) {
+        symbol = text;
+      } else if ("SecurityType".equals(name)) {
+        securityType = text;
+      }
+    } else if ("OrderPricing".equals(parent)) {
+      if ("Limit".equals(name)) {
+        limitPrice = toDecimal(text);
+      } else if ("Stop".equals(name)) {
+        stopPrice = toDecimal(text);
+      }
+    } else if ("ExecutionInformation".equals(parent)) {
+      switch (name) {
+        case "Type":
+          executionType = text;
+          break;
+        case "ID":
+          executionId = text;
+          break;
+        case "Quantity":
+          executionQuantity = toDecimal(text);
+          break;
+        case "ExecutionPrice":
+          executionPrice = toDecimal(text);
+          break;
+        case "LeavesQuantity":
+          leavesQuantity = toDecimal(text);
+          break;
+        default:
+          break;
+      }
+    }
+    if ("RejectReason".equals(name)) {
+      rejectReason = text;
+    }
+  }
+
+  private static long toLong(String text) {
+    try {
+      return Long.parseLong(text);
+    } catch (NumberFormatException e) {
+      return 0;
+    }
+  }
+
+  private static BigDecimal toDecimal(String text) {
+    try {
+      return new BigDecimal(text);
+    } catch (NumberFormatException e) {
+      return null;
+    }
+  }
+
+  private static ZonedDateTime toDateTime(String text) {
+    try {
+      return ZonedDateTime.parse(text);
+    } catch (DateTimeParseException e) {
+      return null;
+    }
+  }
+
+  public String getAccountId() {
+    return accountId;
+  }
+
+  /**
+   * @return type of the message, e.g. <em>OrderFill</em>
+   */
+  public String getMessageType() {
+    return messageType;
+  }
+
+  public ZonedDateTime getTimestamp() {
+    return timestamp;
+  }
+
+  /**
+   * @return id of the order, 0 if the message has none
+   */
+  public long getOrderId() {
+    return orderId;
+  }
+
+  /**
+   * @return id of the order being replaced by a <em>OrderCancelReplaceRequest</em>, else 0
+   */
+  public long getOriginalOrderId() {
+    return originalOrderId;
+  }
+
+  public String getSymbol() {
+    return symbol;
+  }
+
+  /**
+   * @return e.g. <em>Common Stock</em> or <em>Call Option</em>
+   */
+  public String getSecurityType() {
+    return securityType;
+  }
+
+  /**
+   * @return e.g. <em>Limit</em> or <em>Market</em>
+   */
+  public String getOrderType() {
+    return orderType;
+  }
+
+  public String getDuration() {
+    return duration;
+  }
+
+  /**
+   * @return e.g. <em>Buy</em>, <em>Sell</em> or <em>Sell Short</em>
+   */
+  public String getInstruction() {
+    return instruction;
+  }
+
+  /**
+   * @return <em>Open</em> or <em>Close</em> for orders of options, else null
+   */
+  public String getOpenClose() {
+    return openClose;
+  }
+
+  /**
+   * @return quantity of the order
+   */
+  public BigDecimal getQuantity() {
+    return quantity;
+  }
+
+  public BigDecimal getLimitPrice() {
+    return limitPrice;
+  }
+
+  public BigDecimal getStopPrice() {
+    return stopPrice;
+  }
+
+  /**
+   * @return <em>Bought</em> or <em>Sold</em> for a fill
+   */
+  public String getExecutionType() {
+    return executionType;
+  }
+
+  public String getExecutionId() {
+    return executionId;
+  }
+
+  /**
+   * @return quantity of this fill alone
+   */
+  public BigDecimal getExecutionQuantity() {
+    return executionQuantity;
+  }
+
+  public BigDecimal getExecutionPrice() {
+    return executionPrice;
+  }
+
+  /**
+   * @return quantity of the order left to fill after this fill
+   */
+  public BigDecimal getLeavesQuantity() {
+    return leavesQuantity;
+  }
+
+  public BigDecimal getCancelledQuantity() {
+    return cancelledQuantity;
+  }
+
+  /**
+   * @return reason given for a rejection, if any
+   */
+  public String getRejectReason() {
+    return rejectReason;
+  }
+
+  /**
+   * @return whether this message is a fill, partial or not
+   */
+  public boolean isFill() {
+    return executionQuantity != null && executionQuantity.signum() > 0;
+  }
+
+  @Override
+  public String toString() {
+    return new ToStringBuilder(this, ToStringStyle.SHORT_PREFIX_STYLE)
+        .append("accountId", accountId)
+        .append("messageType", messageType)
+        .append("timestamp", timestamp)
+        .append("orderId", orderId)
+        .append("originalOrderId", originalOrderId)
+        .append("symbol", symbol)
+        .append("securityType", securityType)
+        .append("orderType", orderType)
+        .append("duration", duration)
+        .append("instruction", instruction)
+        .append("openClose", openClose)
+        .append("quantity", quantity)
+        .append("limitPrice", limitPrice)
+        .append("stopPrice", stopPrice)
+        .append("executionType", executionType)
+        .append("executionId", executionId)
+        .append("executionQuantity", executionQuantity)
+        .append("executionPrice", executionPrice)
+        .append("leavesQuantity", leavesQuantity)
+        .append("cancelledQuantity", cancelledQuantity)
+        .append("rejectReason", rejectReason)
+        .toString();
+  }
+}
@@ -0,0 +1,19 @@
+package com.studerw.tda.stream;
+
+import com.studerw.tda.model.account.Order;
+
+/**
+ * Receives the messages of {@link com.studerw.tda.model.stream.Service#ACCT_ACTIVITY} once an
+ * {@link AccountBook} has applied them. Called on the socket reader thread, so implementations
+ * should return quickly and must not block.
+ */
+@FunctionalInterface
+public interface AccountActivityListener {
+
+  /**
+   * @param activity the parsed message
+   * @param order the order after the message, null if the message has none. It must not be
+   * modified.
+   */
+  void onActivity(AccountActivity activity, Order order);
+}
@@ -0,0 +1,677 @@
+package com.studerw.tda.stream;
+
+import com.studerw.tda.client.AccountFetcher;
+import com.studerw.tda.client.TdaClient;
+import com.studerw.tda.model.account.Duration;
+import com.studerw.tda.model.account.EquityInstrument;
+import com.studerw.tda.model.account.Instrument;
+import com.studerw.tda.model.account.Instrument.AssetType;
+import com.studerw.tda.model.account.OptionInstrument;
+import com.studerw.tda.model.account.Order;
+import com.studerw.tda.model.account.OrderLegCollection;
+import com.studerw.tda.model.account.OrderLegCollection.Instruction;
+import com.studerw.tda.model.account.OrderLegCollection.OrderLegType;
+import com.studerw.tda.model.account.OrderStrategy;
+import com.studerw.tda.model.account.OrderType;
+import com.studerw.tda.model.account.Position;
+import com.studerw.tda.model.account.SecuritiesAccount;
+import com.studerw.tda.model.account.Status;
+import com.studerw.tda.model.stream.Service;
+import com.studerw.tda.parse.Utils;
+import java.io.Closeable;
+import java.math.BigDecimal;
+import java.time.ZonedDateTime;
+import java.time.format.DateTimeParseException;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.Executors;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+import org.apache.commons.lang3.SerializationUtils;
+import org.apache.commons.lang3.StringUtils;
+import org.apache.commons.lang3.builder.ToStringBuilder;
+import org.apache.commons.lang3.builder.ToStringStyle;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+/**
+ * <p>
+ * The orders and positions of accounts, kept current by the messages of {@link
+ * Service#ACCT_ACTIVITY} instead of polling {@link TdaClient#getAccounts(boolean, boolean)}:
+ * </p>
+ *
+ * <pre class="code">
+ *     AccountBook book = AccountBook.Builder.accountBook()
+ *         .withTdaClient(tdaClient)
+ *         .withAccountIds("123456789")
+ *         .build();
+ *     stream.addListener(Service.ACCT_ACTIVITY, book);
+ *     stream.subscribeAccountActivity().join();
+ *     book.start();
+ *     ...
+ *     AccountPosition msft = book.getPosition("123456789", "MSFT");
+ * </pre>
+ *
+ * <p>
+ * Each message is parsed with StAX (see {@link AccountActivity}) and applied at once: an entry
+ * request adds an order, routes, cancels, rejections and fills change its status and quantities,
+ * and fills change the position of the order's symbol. Since a message can be lost, e.g. while
+ * the stream reconnects, the book reconciles each account with a single {@link
+ * TdaClient#getAccount(String, boolean, boolean)} every interval, after a gap in the stream and
+ * after messages it cannot apply, such as a broken trade. A reconcile fetched while activity
+ * arrived is ambiguous and retried, and any position that differed from the fetched account is
+ * logged as a drift.
+ * </p>
+ * <strong>This is a thread safe class.</strong> Orders and positions are never modified once
+ * published, so readers get a consistent value without locking; returned orders must not be
+ * modified.
+ */
+public final class AccountBook implements StreamListener, StreamGapListener, Closeable {
+
+  private static final Logger LOGGER = LoggerFactory.getLogger(AccountBook.class);
+  private static final int RECONCILE_ATTEMPTS = 3;
+
+  private final AccountFetcher tdaClient;
+  private final long reconcileIntervalMillis;
+  private final AccountActivityListener listener;
+  private final ConcurrentMap<String, Account> accounts = new ConcurrentHashMap<>();
+  private final ScheduledExecutorService reconciler;
+  private final AtomicLong reconciles = new AtomicLong();
+  private final AtomicLong drifts = new AtomicLong();
+
+  private AccountBook(Builder builder) {
+    this.tdaClient = builder.tdaClient;
+    this.reconcileIntervalMillis = builder.reconcileIntervalMillis;
+    this.listener = builder.listener;
+    for (String accountId : builder.accountIds) {
+      account(accountId);
+    }
+    this.reconciler = Executors.newSingleThreadScheduledExecutor(runnable -> {
+      Thread thread = new Thread(runnable, "tda-account-reconcile");
+      thread.setDaemon(true);
+      return thread;
+    });
+  }
+
+  /**
+   * Reconcile every account, blocking until done, then again every interval.
+   *
+   * @throws RuntimeException if an account cannot be fetched
+   */
+  public void start() {
+    for (String accountId : accounts.keySet()) {
+      reconcile(accountId);
+    }
+    reconciler.scheduleWithFixedDelay(this::reconcileAll, reconcileIntervalMillis,
+        reconcileIntervalMillis, TimeUnit.MILLISECONDS);
+  }
+
+  /**
+   * Apply a message of {@link Service#ACCT_ACTIVITY}.
+   *
+   * @param content content of {@link Service#ACCT_ACTIVITY}
+   */
+  @Override
+  public void onContent(StreamContent content) {
+    if (content.getService() != Service.ACCT_ACTIVITY) {
+      LOGGER.debug("Ignoring content which is not account activity: {}", content);
+      return;
+    }
+    String accountId = content.getString(1);
+    String messageType = content.getString(2);
+    if (StringUtils.isBlank(accountId) || "SUBSCRIBED".equals(messageType)) {
+      LOGGER.debug("Account activity subscribed: {}", content);
+      return;
+    }
+    if ("ERROR".equals(messageType)) {
+      LOGGER.warn("Account activity error: {}", content.getString(3));
+      return;
+    }
+    AccountActivity activity;
+    try {
+      activity = AccountActivity.of(content);
+    } catch (IllegalArgumentException e) {
+      LOGGER.warn("Could not parse account activity {}, reconciling", content, e);
+      reconcileSoon(accountId);
+      return;
+    }
+    apply(activity);
+  }
+
+  /**
+   * Apply a parsed message to its account and tell the listener.
+   *
+   * @param activity the message
+   * @return the order after the message, null if the message has none
+   */
+  Order apply(AccountActivity activity) {
+    Account account = account(activity.getAccountId());
+    Order order;
+    synchronized (account) {
+      account.version++;
+      order = applyOrder(account, activity);
+    }
+    LOGGER.debug("Applied {}", activity);
+    if (listener != null) {
+      try {
+        listener.onActivity(activity, order);
+      } catch (RuntimeException e) {
+        LOGGER.warn("Account activity listener failed on {}", activity, e);
+      }
+    }
+    return order;
+  }
+
+  private Order applyOrder(Account account, AccountActivity activity) {
+    String messageType = activity.getMessageType();
+    if ("BrokenTrade".equals(messageType) || "ManualExecution".equals(messageType)) {
+      //changes fills already applied, so take them from the account
+      reconcileSoon(account.accountId);
+    }
+    long orderId = activity.getOrderId();
+    if (orderId == 0) {
+      return null;
+    }
+    Order current = account.orders.get(orderId);
+    Order order = current != null ? SerializationUtils.clone(current) : newOrder(activity);
+    switch (StringUtils.defaultString(messageType)) {
+      case "OrderEntryRequest":
+        break;
+      case "OrderRoute":
+      case "OrderActivation":
+        order.setStatus(Status.WORKING);
+        break;
+      case "OrderPartialFill":
+      case "OrderFill":
+        if (activity.isFill()) {
+          fill(account, order, activity);
+        }
+        break;
+      case "OrderCancelRequest":
+        order.setStatus(Status.PENDING_CANCEL);
+        break;
+      case "OrderCancelReplaceRequest":
+        replacing(account, activity.getOriginalOrderId());
+        break;
+      case "TooLateToCancel":
+        if (order.getStatus() == Status.PENDING_CANCEL
+            || order.getStatus() == Status.PENDING_REPLACE) {
+          order.setStatus(Status.WORKING);
+        }
+        break;
+      case "UROUT":
+        order.setStatus(order.getStatus() == Status.PENDING_REPLACE ? Status.REPLACED
+            : Status.CANCELED);
+        order.setRemainingQuantity(BigDecimal.ZERO);
+        order.setCloseTime(activity.getTimestamp());
+        break;
+      case "OrderRejection":
+        order.setStatus(Status.REJECTED);
+        order.setStatusDescription(activity.getRejectReason());
+        order.setCloseTime(activity.getTimestamp());
+        break;
+      default:
+        LOGGER.debug("Not changing order {} on {}", orderId, messageType);
+        break;
+    }
+    account.orders.put(orderId, order);
+    return order;
+  }
+
+  private void replacing(Account account, long originalOrderId) {
+    Order original = account.orders.get(originalOrderId);
+    if (original != null) {
+      original = SerializationUtils.clone(original);
+      original.setStatus(Status.PENDING_REPLACE);
+      account.orders.put(originalOrderId, original);
+    }
+  }
+
+  private void fill(Account account, Order order, AccountActivity activity) {
+    BigDecimal quantity = activity.getExecutionQuantity();
+    BigDecimal filled = order.getFilledQuantity() == null ? quantity
+        : order.getFilledQuantity().add(quantity);
+    BigDecimal remaining = activity.getLeavesQuantity();
+    if (remaining == null && order.getQuantity() != null) {
+      remaining = order.getQuantity().subtract(filled).max(BigDecimal.ZERO);
+    }
+    order.setFilledQuantity(filled);
+    order.setRemainingQuantity(remaining);
+    if (remaining != null && remaining.signum() == 0) {
+      order.setStatus(Status.FILLED);
+      order.setCloseTime(activity.getTimestamp());
+    } else {
+      order.setStatus(Status.WORKING);
+    }
+
+    OrderLegCollection leg = order.getOrderLegCollection() == null
+        || order.getOrderLegCollection().isEmpty() ? null : order.getOrderLegCollection().get(0);
+    String symbol = activity.getSymbol() != null ? activity.getSymbol()
+        : leg != null && leg.getInstrument() != null ? leg.getInstrument().getSymbol() : null;
+    Instruction instruction = instruction(activity);
+    if (instruction == null && leg != null) {
+      instruction = leg.getInstruction();
+    }
+    if (symbol == null || instruction == null) {
+      LOGGER.warn("Cannot tell the position filled by {}, reconciling", activity);
+      reconcileSoon(account.accountId);
+      return;
+    }
+    AccountPosition position = account.positions.get(symbol);
+    if (position == null) {
+      position = new AccountPosition(symbol, assetType(activity), null, null, null);
+    }
+    position = position.fill(instruction, quantity, activity.getExecutionPrice());
+    if (position.isFlat()) {
+      account.positions.remove(symbol);
+    } else {
+      account.positions.put(symbol, position);
+    }
+  }
+
+  /**
+   * @return the instruction of the order, e.g. {@link Instruction#BUY_TO_CLOSE} for a <em>Buy</em>
+   * which is an option <em>Close</em>, or the side of the execution if the order has none
+   */
+  private static Instruction instruction(AccountActivity activity) {
+    String side = activity.getInstruction();
+    if (side == null && "Bought".equalsIgnoreCase(activity.getExecutionType())) {
+      side = "Buy";
+    } else if (side == null && "Sold".equalsIgnoreCase(activity.getExecutionType())) {
+      side = "Sell";
+    }
+    if (activity.getOpenClose() != null
+        && ("Buy".equalsIgnoreCase(side) || "Sell".equalsIgnoreCase(side))) {
+      Instruction instruction = toEnum(Instruction.class, side + " To " + activity.getOpenClose());
+      if (instruction != null) {
+        return instruction;
+      }
+    }
+    return toEnum(Instruction.class, side);
+  }
+
+  private static AssetType assetType(AccountActivity activity) {
+    return StringUtils.containsIgnoreCase(activity.getSecurityType(), "Option")
+        ? AssetType.OPTION : AssetType.EQUITY;
+  }
+
+  private static Order newOrder(AccountActivity activity) {
+    Order order = new Order();
+    order.setOrderId(activity.getOrderId());
+    order.setAccountId(toLong(activity.getAccountId()));
+    order.setStatus(Status.ACCEPTED);
+    order.setOrderType(toEnum(OrderType.class, activity.getOrderType()));
+    order.setDuration(toEnum(Duration.class, activity.getDuration()));
+    order.setQuantity(activity.getQuantity());
+    order.setFilledQuantity(BigDecimal.ZERO);
+    order.setRemainingQuantity(activity.getQuantity());
+    order.setPrice(activity.getLimitPrice());
+    order.setStopPrice(activity.getStopPrice());
+    order.setEnteredTime(activity.getTimestamp());
+    if (activity.getSymbol() != null) {
+      AssetType assetType = assetType(activity);
+      Instrument instrument = assetType == AssetType.OPTION ? new OptionInstrument()
+          : new EquityInstrument();
+      instrument.setSymbol(activity.getSymbol());
+      OrderLegCollection leg = new OrderLegCollection();
+      leg.setOrderLegType(assetType == AssetType.OPTION ? OrderLegType.OPTION
+          : OrderLegType.EQUITY);
+      leg.setInstruction(instruction(activity));
+      leg.setQuantity(activity.getQuantity());
+      leg.setInstrument(instrument);
+      order.getOrderLegCollection().add(leg);
+    }
+    return order;
+  }
+
+  /**
+   * @return the constant whose name matches the text ignoring case, spaces and underscores, e.g.
+   * <em>Sell Short</em> for {@link Instruction#SELL_SHORT}, or null
+   */
+  private static <E extends Enum<E>> E toEnum(Class<E> type, String text) {
+    if (text == null) {
+      return null;
+    }
+    String name = text.replaceAll("[^A-Za-z]", "");
+    for (E constant : type.getEnumConstants()) {
+      if (constant.name().replace("_", "").equalsIgnoreCase(name)) {
+        return constant;
+      }
+    }
+    return null;
+  }
+
+  private static Long toLong(String text) {
+    try {
+      return Long.valueOf(text);
+    } catch (NumberFormatException e) {
+      return null;
+    }
+  }
+
+  /**
+   * Reconcile the accounts after a gap in {@link Service#ACCT_ACTIVITY}.
+   *
+   * @param gap the service, keys and time span that missed data
+   */
+  @Override
+  public void onGap(StreamGap gap) {
+    if (gap.getService() == Service.ACCT_ACTIVITY) {
+      for (String accountId : accounts.keySet()) {
+        reconcileSoon(accountId);
+      }
+    }
+  }
+
+  private void reconcileSoon(String accountId) {
+    try {
+      reconciler.execute(() -> reconcileQuietly(accountId));
+    } catch (RejectedExecutionException e) {
+      LOGGER.debug("Not reconciling account {} of a closed book", accountId);
+    }
+  }
+
+  private void reconcileAll() {
+    for (String accountId : accounts.keySet()) {
+      reconcileQuietly(accountId);
+    }
+  }
+
+  private void reconcileQuietly(String accountId) {
+    try {
+      reconcile(accountId);
+    } catch (RuntimeException e) {
+      LOGGER.warn("Could not reconcile account {}", accountId, e);
+    }
+  }
+
+  /**
+   * Replace the orders and positions of an account with those fetched by a single {@link
+   * TdaClient#getAccount(String, boolean, boolean)}, retrying if activity arrives meanwhile.
+   *
+   * @param accountId the account
+   * @return whether the account was reconciled, false if activity kept arriving
+   * @throws RuntimeException if the account cannot be fetched
+   */
+  public boolean reconcile(String accountId) {
+    Account account = account(accountId);
+    for (int attempt = 1; attempt <= RECONCILE_ATTEMPTS; attempt++) {
+      long version;
+      synchronized (account) {
+        version = account.version;
+      }
+      SecuritiesAccount fetched = tdaClient.getAccount(account.accountId, true, true);
+      synchronized (account) {
+        //otherwise the fetched account may or may not include the new activity
+        if (account.version == version) {
+          install(account, fetched);
+          reconciles.incrementAndGet();
+          return true;
+        }
+      }
+      LOGGER.debug("Account {} changed while reconciling, attempt {}", accountId, attempt);
+    }
+    LOGGER.info("Account {} kept changing, reconciling it later", accountId);
+    return false;
+  }
+
+  private void install(Account account, SecuritiesAccount fetched) {
+    ConcurrentMap<String, AccountPosition> positions = new ConcurrentHashMap<>();
+    if (fetched.getPositions() != null) {
+      for (Position fetchedPosition : fetched.getPositions()) {
+        AccountPosition position = AccountPosition.of(fetchedPosition);
+        if (position != null) {
+          positions.merge(position.getSymbol(), position, (a, b) -> new AccountPosition(
+              a.getSymbol(), a.getAssetType(), a.getLongQuantity().add(b.getLongQuantity()),
+              a.getShortQuantity().add(b.getShortQuantity()), a.getAveragePrice()));
+        }
+      }
+    }
+    if (account.reconciled) {
+      Set<String> symbols = new HashSet<>(positions.keySet());
+      symbols.addAll(account.positions.keySet());
+      for (String symbol : symbols) {
+        AccountPosition streamed = account.positions.get(symbol);
+        AccountPosition actual = positions.get(symbol);
+        boolean same = streamed == null ? actual == null || actual.isFlat()
+            : streamed.sameQuantities(actual);
+        if (!same) {
+          drifts.incrementAndGet();
+          LOGGER.warn("Position of {} in account {} drifted from {} to {}", symbol,
+              account.accountId, streamed, actual);
+        }
+      }
+    }
+    ConcurrentMap<Long, Order> orders = new ConcurrentHashMap<>();
+    if (fetched.getOrderStrategies() != null) {
+      for (OrderStrategy strategy : fetched.getOrderStrategies()) {
+        addOrders(orders, strategy);
+      }
+    }
+    account.positions = positions;
+    account.orders = orders;
+    account.reconciled = true;
+    LOGGER.debug("Reconciled account {} with {} positions and {} orders", account.accountId,
+        positions.size(), orders.size());
+  }
+
+  private static void addOrders(Map<Long, Order> orders, OrderStrategy strategy) {
+    if (strategy.getOrderId() != null) {
+      orders.put(strategy.getOrderId(), toOrder(strategy));
+    }
+    if (strategy.getChildOrderStrategies() != null) {
+      for (OrderStrategy child : strategy.getChildOrderStrategies()) {
+        addOrders(orders, child);
+      }
+    }
+  }
+
+  private static Order toOrder(OrderStrategy strategy) {
+    Order order = new Order();
+    order.setSession(strategy.getSession());
+    order.setDuration(strategy.getDuration());
+    order.setOrderType(strategy.getOrderType());
+    order.setComplexOrderStrategyType(strategy.getComplexOrderStrategyType());
+    order.setQuantity(strategy.getQuantity());
+    order.setFilledQuantity(strategy.getFilledQuantity());
+    order.setRemainingQuantity(strategy.getRemainingQuantity());
+    order.setStopPrice(strategy.getStopPrice());
+    order.setPrice(strategy.getPrice());
+    order.setOrderLegCollection(strategy.getOrderLegCollection());
+    order.setOrderStrategyType(strategy.getOrderStrategyType());
+    order.setOrderId(strategy.getOrderId());
+    order.setCancelable(strategy.getCancelable());
+    order.setEditable(strategy.getEditable());
+    order.setStatus(strategy.getStatus());
+    order.setEnteredTime(toDateTime(strategy.getEnteredTime()));
+    order.setCloseTime(toDateTime(strategy.getCloseTime()));
+    order.setTag(strategy.getTag());
+    order.setAccountId(strategy.getAccountId());
+    order.setOrderActivityCollection(strategy.getOrderActivityCollection());
+    order.setStatusDescription(strategy.getStatusDescription());
+    return order;
+  }
+
+  private static ZonedDateTime toDateTime(String text) {
+    try {
+      return text == null ? null : Utils.fromTdaISO8601(text);
+    } catch (DateTimeParseException e) {
+      return null;
+    }
+  }
+
+  /**
+   * @param orderId the order
+   * @return the order of any account, null if unknown. It must not be modified.
+   */
+  public Order getOrder(long orderId) {
+    for (Account account : accounts.values()) {
+      Order order = account.orders.get(orderId);
+      if (order != null) {
+        return order;
+      }
+    }
+    return null;
+  }
+
+  /**
+   * @param accountId the account
+   * @return the orders of the account, which must not be modified
+   */
+  public List<Order> getOrders(String accountId) {
+    Account account = accountId == null ? null : accounts.get(accountId.trim());
+    return account == null ? Collections.emptyList()
+        : Collections.unmodifiableList(new ArrayList<>(account.orders.values()));
+  }
+
+  /**
+   * @param accountId the account
+   * @param symbol the symbol
+   * @return the position, null if none is held
+   */
+  public AccountPosition getPosition(String accountId, String symbol) {
+    Account account = accountId == null ? null : accounts.get(accountId.trim());
+    return account == null || symbol == null ? null : account.positions.get(symbol);
+  }
+
+  /**
+   * @param accountId the account
+   * @return the positions held by the account
+   */
+  public List<AccountPosition> getPositions(String accountId) {
+    Account account = accountId == null ? null : accounts.get(accountId.trim());
+    return account == null ? Collections.emptyList()
+        : Collections.unmodifiableList(new ArrayList<>(account.positions.values()));
+  }
+
+  /**
+   * @return the accounts of the book
+   */
+  public Set<String> getAccountIds() {
+    return Collections.unmodifiableSet(accounts.keySet());
+  }
+
+  /**
+   * @return number of reconciles done
+   */
+  public long getReconciles() {
+    return reconciles.get();
+  }
+
+  /**
+   * @return number of positions a reconcile found different from the streamed ones
+   */
+  public long getDrifts() {
+    return drifts.get();
+  }
+
+  private Account account(String accountId) {
+    if (StringUtils.isBlank(accountId)) {
+      throw new IllegalArgumentException("accountId cannot be blank");
+    }
+    String key = accountId.trim();
+    Account account = accounts.get(key);
+    return account != null ? account : accounts.computeIfAbsent(key, Account::new);
+  }
+
+  /**
+   * Stop reconciling.
+   */
+  @Override
+  public void close() {
+    reconciler.shutdownNow();
+  }
+
+  @Override
+  public String toString() {
+    return new ToStringBuilder(this, ToStringStyle.SHORT_PREFIX_STYLE)
+        .append("accounts", accounts.keySet())
+        .append("reconcileIntervalMillis", reconcileIntervalMillis)
+        .append("reconciles", reconciles)
+        .append("drifts", drifts)
+        .toString();
+  }
+
+  private static final class Account {
+
+    private final String accountId;
+    //replaced whole by a reconcile, so readers never see a half installed account
+    private volatile ConcurrentMap<Long, Order> orders = new ConcurrentHashMap<>();
+    private volatile ConcurrentMap<String, AccountPosition> positions =
+        new ConcurrentHashMap<>();
+    //guarded by this
+    private long version;
+    private boolean reconciled;
+
+    private Account(String accountId) {
+      this.accountId = accountId;
+    }
+  }
+
+  public static final class Builder {
+
+    private AccountFetcher tdaClient;
+    private final List<String> accountIds = new ArrayList<>();
+    private long reconcileIntervalMillis = TimeUnit.MINUTES.toMillis(1);
+    private AccountActivityListener listener;
+
+    private Builder() {
+    }
+
+    public static Builder accountBook() {
+      return new Builder();
+    }
+
+    /**
+     * @param tdaClient fetches the accounts to reconcile with, usually the {@link TdaClient}
+     */
+    public Builder withTdaClient(AccountFetcher tdaClient) {
+      this.tdaClient = tdaClient;
+      return this;
+    }
+
+    /**
+     * @param accountIds accounts to reconcile. Accounts only seen in the stream are added as
+     * their activity arrives.
+     */
+    public Builder withAccountIds(String... accountIds) {
+      Collections.addAll(this.accountIds, accountIds);
+      return this;
+    }
+
+    /**
+     * @param interval time between reconciles, one minute by default
+     * @param unit unit of the interval
+     */
+    public Builder withReconcileInterval(long interval, TimeUnit unit) {
+      this.reconcileIntervalMillis = unit.toMillis(interval);
+      return this;
+    }
+
+    /**
+     * @param listener told of every message once applied
+     */
+    public Builder withListener(AccountActivityListener listener) {
+      this.listener = listener;
+      return this;
+    }
+
+    public AccountBook build() {
+      if (tdaClient == null) {
+        throw new IllegalArgumentException("A TdaClient is required to reconcile the accounts");
+      }
+      if (reconcileIntervalMillis <= 0) {
+        throw new IllegalArgumentException("reconcile interval must be positive");
+      }
+      return new AccountBook(this);
+    }
+  }
+}
@@ -0,0 +1,160 @@
+package com.studerw.tda.stream;
+
+import com.studerw.tda.model.account.Instrument.AssetType;
+import com.studerw.tda.model.account.OrderLegCollection.Instruction;
+import com.studerw.tda.model.account.Position;
+import java.math.BigDecimal;
+import java.math.MathContext;
+import java.util.Objects;
+import org.apache.commons.lang3.builder.ToStringBuilder;
+import org.apache.commons.lang3.builder.ToStringStyle;
+
+/**
+ * The quantity held of one symbol of an account, as kept current by an {@link AccountBook}: the
+ * {@link Position} of the last reconcile with every fill since applied. Fills change the average
+ * price of the side they open, while closing fills leave it as is, as TDA does.
+ * <strong>This is an immutable, thread safe class.</strong>
+ */
+public final class AccountPosition {
+
+  private final String symbol;
+  private final AssetType assetType;
+  private final BigDecimal longQuantity;
+  private final BigDecimal shortQuantity;
+  private final BigDecimal averagePrice;
+
+  AccountPosition(String symbol, AssetType assetType, BigDecimal longQuantity,
+      BigDecimal shortQuantity, BigDecimal averagePrice) {
+    this.symbol = symbol;
+    this.assetType = assetType;
+    this.longQuantity = longQuantity != null ? longQuantity : BigDecimal.ZERO;
+    this.shortQuantity = shortQuantity != null ? shortQuantity : BigDecimal.ZERO;
+    this.averagePrice = averagePrice != null ? averagePrice : BigDecimal.ZERO;
+  }
+
+  /**
+   * @return the position, null if it has no instrument
+   */
+  static AccountPosition of(Position position) {
+    if (position.getInstrument() == null || position.getInstrument().getSymbol() == null) {
+      return null;
+    }
+    return new AccountPosition(position.getInstrument().getSymbol(),
+        position.getInstrument().getAssetType(), position.getLongQuantity(),
+        position.getShortQuantity(), position.getAveragePrice());
+  }
+
+  /**
+   * @param instruction instruction of the order filled
+   * @param quantity quantity of the fill
+   * @param price price of the fill
+   * @return the position after the fill
+   */
+  AccountPosition fill(Instruction instruction, BigDecimal quantity, BigDecimal price) {
+    switch (instruction) {
+      case BUY:
+      case BUY_TO_OPEN:
+        return new AccountPosition(symbol, assetType, longQuantity.add(quantity), shortQuantity,
+            average(longQuantity, quantity, price));
+      case SELL:
+      case SELL_TO_CLOSE:
+        return new AccountPosition(symbol, assetType, longQuantity.subtract(quantity),
+            shortQuantity, averagePrice);
+      case SELL_SHORT:
+      case SELL_TO_OPEN:
+        return new AccountPosition(symbol, assetType, longQuantity, shortQuantity.add(quantity),
+            average(shortQuantity, quantity, price));
+      case BUY_TO_COVER:
+      case BUY_TO_CLOSE:
+        return new AccountPosition(symbol, assetType, longQuantity,
+            shortQuantity.subtract(quantity), averagePrice);
+      default:
+        return this;
+    }
+  }
+
+  private BigDecimal average(BigDecimal held, BigDecimal quantity, BigDecimal price) {
+    if (price == null) {
+      return averagePrice;
+    }
+    BigDecimal total = held.add(quantity);
+    if (held.signum() <= 0 || total.signum() <= 0) {
+      return price;
+    }
+    return averagePrice.multiply(held).add(price.multiply(quantity))
+        .divide(total, MathContext.DECIMAL64);
+  }
+
+  public String getSymbol() {
+    return symbol;
+  }
+
+  public AssetType getAssetType() {
+    return assetType;
+  }
+
+  public BigDecimal getLongQuantity() {
+    return longQuantity;
+  }
+
+  public BigDecimal getShortQuantity() {
+    return shortQuantity;
+  }
+
+  /**
+   * @return long quantity less the short quantity
+   */
+  public BigDecimal getQuantity() {
+    return longQuantity.subtract(shortQuantity);
+  }
+
+  public BigDecimal getAveragePrice() {
+    return averagePrice;
+  }
+
+  /**
+   * @return whether nothing is held
+   */
+  public boolean isFlat() {
+    return longQuantity.signum() == 0 && shortQuantity.signum() == 0;
+  }
+
+  /**
+   * @param other another position
+   * @return whether both hold the same quantities, whatever the scale
+   */
+  boolean sameQuantities(AccountPosition other) {
+    return other != null && longQuantity.compareTo(other.longQuantity) == 0
+        && shortQuantity.compareTo(other.shortQuantity) == 0;
+  }
+
+  @Override
+  public boolean equals(Object o) {
+    if (this == o) {
+      return true;
+    }
+    if (o == null || getClass() != o.getClass()) {
+      return false;
+    }
+    AccountPosition that = (AccountPosition) o;
+    return Objects.equals(symbol, that.symbol) && assetType == that.assetType
+        && longQuantity.equals(that.longQuantity) && shortQuantity.equals(that.shortQuantity)
+        && averagePrice.equals(that.averagePrice);
+  }
+
+  @Override
+  public int hashCode() {
+    return Objects.hash(symbol, assetType, longQuantity, shortQuantity, averagePrice);
+  }
+
+  @Override
+  public String toString() {
+    return new ToStringBuilder(this, ToStringStyle.SHORT_PREFIX_STYLE)
+        .append("symbol", symbol)
+        .append("assetType", assetType)
+        .append("longQuantity", longQuantity)
+        .append("shortQuantity", shortQuantity)
+        .append("averagePrice", averagePrice)
+        .toString();
+  }
+}
@@ -0,0 +1,17 @@
+package com.studerw.tda.stream;
+
+/**
+ * Receives the bars of a {@link BarService} as they complete or change. Called while the series
+ * is being updated, on the socket reader thread or the thread backfilling a gap, so
+ * implementations should return quickly and must not block.
+ */
+@FunctionalInterface
+public interface BarListener {
+
+  /**
+   * @param bars series of the symbol, which must not be kept since it keeps changing
+   * @param bar index of the bar in the series
+   * @param complete whether the bar is complete, false if it is still forming
+   */
+  void onBar(BarSeries bars, int bar, boolean complete);
+}
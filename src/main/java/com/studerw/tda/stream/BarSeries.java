@@ -0,0 +1,275 @@
+package com.studerw.tda.stream;
+
+import com.studerw.tda.model.history.CandleSeries;
+import org.apache.commons.lang3.builder.ToStringBuilder;
+import org.apache.commons.lang3.builder.ToStringStyle;
+
+/**
+ * <p>
+ * The latest bars of one symbol, at most {@link #getCapacity()} of them, held in primitive ring
+ * buffers: adding a bar to a full series drops the oldest one instead of allocating. Bars are
+ * indexed from 0, the oldest held, to {@link #size()} - 1, the latest, and are always in
+ * ascending order of their datetime.
+ * </p>
+ *
+ * <p>
+ * A bar is {@link #isComplete(int) complete} once its interval has passed. The latest bar is
+ * usually still forming, and changes with every update until then.
+ * </p>
+ * <strong>This is not a thread safe class.</strong> The series of a {@link BarService} are
+ * updated on the socket thread. Other threads read a copy made with {@link
+ * BarService#read(String, BarSeries)}.
+ */
+public final class BarSeries {
+
+  private final int capacity;
+  private final long[] datetimes;
+  private final double[] opens;
+  private final double[] highs;
+  private final double[] lows;
+  private final double[] closes;
+  private final long[] volumes;
+  private String symbol;
+  //ring position of bar 0
+  private int start;
+  private int size;
+  private long completeThrough = Long.MIN_VALUE;
+
+  /**
+   * @param capacity most bars held
+   */
+  public BarSeries(int capacity) {
+    if (capacity < 1) {
+      throw new IllegalArgumentException("capacity must be positive");
+    }
+    this.capacity = capacity;
+    this.datetimes = new long[capacity];
+    this.opens = new double[capacity];
+    this.highs = new double[capacity];
+    this.lows = new double[capacity];
+    this.closes = new double[capacity];
+    this.volumes = new long[capacity];
+  }
+
+  void setSymbol(String symbol) {
+    this.symbol = symbol;
+  }
+
+  /**
+   * Add a bar in datetime order, replacing a bar of the same datetime.
+   *
+   * @return index of the bar, -1 if it is older than every bar of a full series
+   */
+  int put(long datetime, double open, double high, double low, double close, long volume) {
+    if (size == 0 || datetime > datetimes[ring(size - 1)]) {
+      if (size == capacity) {
+        start = ring(1);
+        size--;
+      }
+      set(size++, datetime, open, high, low, close, volume);
+      return size - 1;
+    }
+    int i = indexOf(datetime);
+    if (datetimes[ring(i)] == datetime) {
+      set(i, datetime, open, high, low, close, volume);
+      return i;
+    }
+    if (size == capacity) {
+      if (i == 0) {
+        return -1;
+      }
+      start = ring(1);
+      size--;
+      i--;
+    }
+    //a bar missing from the middle, e.g. backfilled after a gap
+    for (int j = size; j > i; j--) {
+      int to = ring(j);
+      int from = ring(j - 1);
+      datetimes[to] = datetimes[from];
+      opens[to] = opens[from];
+      highs[to] = highs[from];
+      lows[to] = lows[from];
+      closes[to] = closes[from];
+      volumes[to] = volumes[from];
+    }
+    size++;
+    set(i, datetime, open, high, low, close, volume);
+    return i;
+  }
+
+  private void set(int i, long datetime, double open, double high, double low, double close,
+      long volume) {
+    int r = ring(i);
+    datetimes[r] = datetime;
+    opens[r] = open;
+    highs[r] = high;
+    lows[r] = low;
+    closes[r] = close;
+    volumes[r] = volume;
+  }
+
+  /**
+   * @param datetime bars at or before it are complete
+   */
+  void setCompleteThrough(long datetime) {
+    this.completeThrough = datetime;
+  }
+
+  /**
+   * @return datetime of the latest complete bar, or earlier, {@link Long#MIN_VALUE} if none
+   */
+  public long getCompleteThrough() {
+    return completeThrough;
+  }
+
+  private int ring(int i) {
+    int r = start + i;
+    return r < capacity ? r : r - capacity;
+  }
+
+  private int index(int i) {
+    if (i < 0 || i >= size) {
+      throw new IndexOutOfBoundsException("Index: " + i + ", Size: " + size);
+    }
+    return ring(i);
+  }
+
+  public String getSymbol() {
+    return symbol;
+  }
+
+  /**
+   * @return number of bars held
+   */
+  public int size() {
+    return size;
+  }
+
+  public boolean isEmpty() {
+    return size == 0;
+  }
+
+  /**
+   * @return most bars held, the lookback
+   */
+  public int getCapacity() {
+    return capacity;
+  }
+
+  /**
+   * @return start of the bar in millis since the epoch
+   */
+  public long getDatetime(int i) {
+    return datetimes[index(i)];
+  }
+
+  public double getOpen(int i) {
+    return opens[index(i)];
+  }
+
+  public double getHigh(int i) {
+    return highs[index(i)];
+  }
+
+  public double getLow(int i) {
+    return lows[index(i)];
+  }
+
+  public double getClose(int i) {
+    return closes[index(i)];
+  }
+
+  public long getVolume(int i) {
+    return volumes[index(i)];
+  }
+
+  /**
+   * @param i index of a bar
+   * @return whether the bar's interval has passed
+   */
+  public boolean isComplete(int i) {
+    return datetimes[index(i)] <= completeThrough;
+  }
+
+  /**
+   * @param millis datetime in millis since the epoch
+   * @return index of the first bar at or after the datetime, or {@link #size()} if there is none
+   */
+  public int indexOf(long millis) {
+    int low = 0;
+    int high = size;
+    while (low < high) {
+      int mid = (low + high) >>> 1;
+      if (datetimes[ring(mid)] < millis) {
+        low = mid + 1;
+      } else {
+        high = mid;
+      }
+    }
+    return low;
+  }
+
+  /**
+   * Copy every bar into another series, which must have at least this capacity.
+   *
+   * @param to overwritten with this series
+   */
+  public void copyTo(BarSeries to) {
+    int n = size;
+    if (to.capacity < n) {
+      throw new IllegalArgumentException("Cannot copy " + n + " bars into a capacity of "
+          + to.capacity);
+    }
+    for (int i = 0; i < n; i++) {
+      int r = ring(i);
+      to.datetimes[i] = datetimes[r];
+      to.opens[i] = opens[r];
+      to.highs[i] = highs[r];
+      to.lows[i] = lows[r];
+      to.closes[i] = closes[r];
+      to.volumes[i] = volumes[r];
+    }
+    to.start = 0;
+    to.size = n;
+    to.symbol = symbol;
+    to.completeThrough = completeThrough;
+  }
+
+  /**
+   * @param completeOnly whether to leave out the bar still forming
+   * @return the bars as a new candle series
+   */
+  public CandleSeries toCandleSeries(boolean completeOnly) {
+    CandleSeries.Builder builder = new CandleSeries.Builder(size).withSymbol(symbol);
+    for (int i = 0; i < size; i++) {
+      int r = ring(i);
+      if (completeOnly && datetimes[r] > completeThrough) {
+        break;
+      }
+      builder.add(datetimes[r], opens[r], highs[r], lows[r], closes[r], volumes[r]);
+    }
+    return builder.build();
+  }
+
+  /**
+   * Remove every bar.
+   */
+  public void clear() {
+    start = 0;
+    size = 0;
+    completeThrough = Long.MIN_VALUE;
+  }
+
+  @Override
+  public String toString() {
+    return new ToStringBuilder(this, ToStringStyle.SHORT_PREFIX_STYLE)
+        .append("symbol", symbol)
+        .append("size", size)
+        .append("capacity", capacity)
+        .append("start", size == 0 ? null : getDatetime(0))
+        .append("end", size == 0 ? null : getDatetime(size - 1))
+        .append("completeThrough", completeThrough)
+        .toString();
+  }
+}
@@ -0,0 +1,467 @@
+package com.studerw.tda.stream;
+
+import com.studerw.tda.client.PriceHistoryFetcher;
+import com.studerw.tda.client.TdaClient;
+import com.studerw.tda.model.history.CandleSeries;
+import com.studerw.tda.model.history.FrequencyType;
+import com.studerw.tda.model.history.PriceHistReq;
+import com.studerw.tda.model.stream.Service;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.List;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.Executor;
+import java.util.concurrent.Executors;
+import java.util.concurrent.locks.StampedLock;
+import java.util.function.LongSupplier;
+import org.apache.commons.lang3.StringUtils;
+import org.apache.commons.lang3.builder.ToStringBuilder;
+import org.apache.commons.lang3.builder.ToStringStyle;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+/**
+ * <p>
+ * Minute bars of every symbol of {@link Service#CHART_EQUITY}, seeded with today's bars from
+ * {@link TdaClient#priceHistorySeries(PriceHistReq)} and kept up to date with the streamed bars,
+ * so a strategy starting in the middle of a session has its lookback at once:
+ * </p>
+ *
+ * <pre class="code">
+ *     BarService bars = BarService.Builder.barService()
+ *         .withTdaClient(tdaClient)
+ *         .withListener((series, bar, complete) -&gt; strategy.onBar(series, bar, complete))
+ *         .build();
+ *     stream.addListener(Service.CHART_EQUITY, bars);
+ *     stream.subscribe(Service.CHART_EQUITY, symbols).join();
+ *     bars.seed(symbols);
+ * </pre>
+ *
+ * <p>
+ * Subscribe before seeding: bars streamed while the history is fetched are held back and spliced
+ * in after it, a streamed bar replacing the fetched bar of the same minute, so the series has
+ * neither duplicates nor gaps. Each series is a {@link BarSeries} ring buffer holding the
+ * configured lookback of bars. The listener is told of every bar as it completes, and of every
+ * change of the bar still forming. As a {@link StreamGapListener} of the {@link TdaStreamClient},
+ * the service also refetches the bars missed while the stream was reconnecting.
+ * </p>
+ * <strong>This is a thread safe class</strong>, provided that only one thread passes it content,
+ * e.g. the socket reader. Other threads read copies.
+ */
+public final class BarService implements StreamListener, StreamGapListener {
+
+  private static final Logger LOGGER = LoggerFactory.getLogger(BarService.class);
+  static final long BAR_MILLIS = 60_000;
+  private static final int SPINS = 100;
+
+  private final PriceHistoryFetcher tdaClient;
+  private final int lookback;
+  private final boolean extendedHours;
+  private final BarListener listener;
+  private final Executor backfillExecutor;
+  private final LongSupplier clock;
+  private final ConcurrentMap<String, Entry> entries = new ConcurrentHashMap<>();
+
+  private BarService(Builder builder) {
+    this.tdaClient = builder.tdaClient;
+    this.lookback = builder.lookback;
+    this.extendedHours = builder.extendedHours;
+    this.listener = builder.listener;
+    this.backfillExecutor = builder.backfillExecutor != null ? builder.backfillExecutor
+        : Executors.newSingleThreadExecutor(runnable -> {
+          Thread thread = new Thread(runnable, "tda-bar-backfill");
+          thread.setDaemon(true);
+          return thread;
+        });
+    this.clock = builder.clock;
+  }
+
+  /**
+   * Fetch the bars of the lookback of each symbol, blocking until done.
+   *
+   * @param symbols the symbols
+   * @throws IllegalStateException if the service has no TdaClient
+   */
+  public void seed(Collection<String> symbols) {
+    for (String symbol : symbols) {
+      seed(symbol);
+    }
+  }
+
+  /**
+   * Fetch the bars of the lookback of a symbol, replacing any it has, then splice in the bars
+   * streamed meanwhile.
+   *
+   * @param symbol the symbol
+   * @return number of bars fetched
+   * @throws IllegalStateException if the service has no TdaClient
+   */
+  public int seed(String symbol) {
+    Entry entry = entry(symbol);
+    long now = clock.getAsLong();
+    long stamp = entry.lock.writeLock();
+    entry.seeding++;
+    entry.lock.unlockWrite(stamp);
+
+    CandleSeries history = null;
+    try {
+      history = fetch(entry.series.getSymbol(), now - lookback * BAR_MILLIS, now);
+      LOGGER.debug("Seeding {} with {} bars", entry.series.getSymbol(), history.size());
+      return history.size();
+    } finally {
+      stamp = entry.lock.writeLock();
+      try {
+        BarSeries series = entry.series;
+        if (history != null) {
+          series.clear();
+          for (int i = 0; i < history.size(); i++) {
+            series.put(history.getDatetime(i), history.getOpen(i), history.getHigh(i),
+                history.getLow(i), history.getClose(i), history.getVolume(i));
+          }
+          series.setCompleteThrough(now - BAR_MILLIS);
+        }
+        if (--entry.seeding == 0) {
+          for (Bar bar : entry.pending) {
+            apply(entry, bar.datetime, bar.open, bar.high, bar.low, bar.close, bar.volume,
+                bar.time);
+          }
+          entry.pending.clear();
+        }
+      } finally {
+        entry.lock.unlockWrite(stamp);
+      }
+    }
+  }
+
+  /**
+   * Fetch the complete bars of a symbol between two times and add those missing from its series,
+   * e.g. after the stream dropped.
+   *
+   * @param symbol the symbol
+   * @param fromMillis start of the bars in millis since the epoch
+   * @param toMillis end of the bars in millis since the epoch
+   * @return number of bars added or replaced
+   * @throws IllegalStateException if the service has no TdaClient
+   */
+  public int backfill(String symbol, long fromMillis, long toMillis) {
+    Entry entry = entry(symbol);
+    long now = clock.getAsLong();
+    CandleSeries history = fetch(entry.series.getSymbol(), fromMillis, toMillis);
+    int added = 0;
+    long stamp = entry.lock.writeLock();
+    try {
+      if (entry.seeding > 0) {
+        //the seed covers it
+        return 0;
+      }
+      BarSeries series = entry.series;
+      for (int i = 0; i < history.size(); i++) {
+        //a bar still forming is left to the stream
+        if (history.getDatetime(i) + BAR_MILLIS <= now) {
+          int bar = series.put(history.getDatetime(i), history.getOpen(i), history.getHigh(i),
+              history.getLow(i), history.getClose(i), history.getVolume(i));
+          if (bar >= 0) {
+            added++;
+            notify(series, bar, series.isComplete(bar));
+          }
+        }
+      }
+    } finally {
+      entry.lock.unlockWrite(stamp);
+    }
+    LOGGER.debug("Backfilled {} bars of {}", added, entry.series.getSymbol());
+    return added;
+  }
+
+  private CandleSeries fetch(String symbol, long fromMillis, long toMillis) {
+    if (tdaClient == null) {
+      throw new IllegalStateException("A TdaClient is required to fetch the price history");
+    }
+    PriceHistReq request = PriceHistReq.Builder.priceHistReq()
+        .withSymbol(symbol)
+        .withFrequencyType(FrequencyType.minute)
+        .withFrequency(1)
+        .withStartDate(fromMillis)
+        .withEndDate(toMillis)
+        .withExtendedHours(extendedHours)
+        .build();
+    return tdaClient.priceHistorySeries(request);
+  }
+
+  /**
+   * Add or update a streamed bar, fields <em>1</em> to <em>5</em> its open, high, low, close and
+   * volume and field <em>7</em> its datetime.
+   *
+   * @param content content of {@link Service#CHART_EQUITY}
+   */
+  @Override
+  public void onContent(StreamContent content) {
+    String symbol = content.getKey();
+    long datetime = content.getLong(7, -1);
+    if (content.getService() != Service.CHART_EQUITY || symbol == null || datetime < 0) {
+      LOGGER.debug("Ignoring content which is not a bar: {}", content);
+      return;
+    }
+    double open = content.getDouble(1, Double.NaN);
+    double high = content.getDouble(2, Double.NaN);
+    double low = content.getDouble(3, Double.NaN);
+    double close = content.getDouble(4, Double.NaN);
+    long volume = (long) content.getDouble(5, 0);
+    long time = content.getTimestamp() > 0 ? content.getTimestamp() : clock.getAsLong();
+    Entry entry = entry(symbol);
+    long stamp = entry.lock.writeLock();
+    try {
+      if (entry.seeding > 0) {
+        entry.pending.add(new Bar(datetime, open, high, low, close, volume, time));
+      } else {
+        apply(entry, datetime, open, high, low, close, volume, time);
+      }
+    } finally {
+      entry.lock.unlockWrite(stamp);
+    }
+  }
+
+  /**
+   * Put a streamed bar into the series and tell the listener which bars completed or changed.
+   *
+   * @param time time the bar was sent, bars a minute older are complete
+   */
+  private void apply(Entry entry, long datetime, double open, double high, double low,
+      double close, long volume, long time) {
+    BarSeries series = entry.series;
+    long before = series.getCompleteThrough();
+    int bar = series.put(datetime, open, high, low, close, volume);
+    if (bar < 0) {
+      return;
+    }
+    long through = Math.max(before, time - BAR_MILLIS);
+    series.setCompleteThrough(through);
+    if (listener == null) {
+      return;
+    }
+    int from = before == Long.MIN_VALUE ? 0 : series.indexOf(before + 1);
+    int to = series.indexOf(through + 1);
+    for (int i = from; i < to; i++) {
+      notify(series, i, true);
+    }
+    if (bar < from || bar >= to) {
+      notify(series, bar, series.isComplete(bar));
+    }
+  }
+
+  private void notify(BarSeries series, int bar, boolean complete) {
+    if (listener != null) {
+      try {
+        listener.onBar(series, bar, complete);
+      } catch (RuntimeException e) {
+        LOGGER.warn("Bar listener failed on {}", series.getSymbol(), e);
+      }
+    }
+  }
+
+  /**
+   * Refetch the bars of {@link Service#CHART_EQUITY} the stream missed.
+   *
+   * @param gap the service, keys and time span that missed data
+   */
+  @Override
+  public void onGap(StreamGap gap) {
+    if (gap.getService() != Service.CHART_EQUITY) {
+      return;
+    }
+    long from = gap.getFrom() > 0 ? gap.getFrom() - BAR_MILLIS
+        : gap.getTo() - lookback * BAR_MILLIS;
+    for (String symbol : gap.getKeys()) {
+      backfillExecutor.execute(() -> {
+        try {
+          backfill(symbol, from, gap.getTo());
+        } catch (RuntimeException e) {
+          LOGGER.warn("Could not backfill the bars of {}", symbol, e);
+        }
+      });
+    }
+  }
+
+  /**
+   * Copy the bars of a symbol, consistent as of one update.
+   *
+   * @param symbol the symbol
+   * @param to overwritten with the bars, must have at least the lookback as capacity
+   * @return whether the symbol has bars
+   * @throws IllegalArgumentException if the capacity of the series is less than the lookback
+   */
+  public boolean read(String symbol, BarSeries to) {
+    if (to.getCapacity() < lookback) {
+      throw new IllegalArgumentException("Cannot read a lookback of " + lookback
+          + " bars into a capacity of " + to.getCapacity());
+    }
+    Entry entry = symbol == null ? null : entries.get(symbol.trim().toUpperCase());
+    if (entry == null) {
+      to.clear();
+      return false;
+    }
+    for (int attempt = 1; ; attempt++) {
+      long stamp = entry.lock.tryOptimisticRead();
+      if (stamp != 0) {
+        try {
+          entry.series.copyTo(to);
+        } catch (IndexOutOfBoundsException e) {
+          //torn by a concurrent update, which the validation below reveals
+          stamp = 0;
+        }
+        if (stamp != 0 && entry.lock.validate(stamp)) {
+          return !to.isEmpty();
+        }
+      }
+      if (attempt % SPINS == 0) {
+        Thread.yield();
+      }
+    }
+  }
+
+  /**
+   * @return a new series able to hold the lookback, to {@link #read} into
+   */
+  public BarSeries newSeries() {
+    return new BarSeries(lookback);
+  }
+
+  /**
+   * @return the symbols with a series
+   */
+  public Set<String> getSymbols() {
+    return Collections.unmodifiableSet(entries.keySet());
+  }
+
+  public int getLookback() {
+    return lookback;
+  }
+
+  private Entry entry(String symbol) {
+    if (StringUtils.isBlank(symbol)) {
+      throw new IllegalArgumentException("symbol cannot be blank");
+    }
+    String key = symbol.trim().toUpperCase();
+    Entry entry = entries.get(key);
+    return entry != null ? entry : entries.computeIfAbsent(key, k -> new Entry(k, lookback));
+  }
+
+  @Override
+  public String toString() {
+    return new ToStringBuilder(this, ToStringStyle.SHORT_PREFIX_STYLE)
+        .append("symbols", entries.size())
+        .append("lookback", lookback)
+        .append("extendedHours", extendedHours)
+        .toString();
+  }
+
+  private static final class Entry {
+
+    private final StampedLock lock = new StampedLock();
+    private final BarSeries series;
+    //bars streamed while seeding, applied after the seed
+    private final List<Bar> pending = new ArrayList<>();
+    private int seeding;
+
+    private Entry(String symbol, int lookback) {
+      this.series = new BarSeries(lookback);
+      this.series.setSymbol(symbol);
+    }
+  }
+
+  private static final class Bar {
+
+    private final long datetime;
+    private final double open;
+    private final double high;
+    private final double low;
+    private final double close;
+    private final long volume;
+    private final long time;
+
+    private Bar(long datetime, double open, double high, double low, double close, long volume,
+        long time) {
+      this.datetime = datetime;
+      this.open = open;
+      this.high = high;
+      this.low = low;
+      this.close = close;
+      this.volume = volume;
+      this.time = time;
+    }
+  }
+
+  public static final class Builder {
+
+    private PriceHistoryFetcher tdaClient;
+    private int lookback = 960;
+    private boolean extendedHours = true;
+    private BarListener listener;
+    private Executor backfillExecutor;
+    private LongSupplier clock = System::currentTimeMillis;
+
+    private Builder() {
+    }
+
+    public static Builder barService() {
+      return new Builder();
+    }
+
+    /**
+     * @param tdaClient fetches the price history to seed and backfill with, usually the {@link
+     * TdaClient}
+     */
+    public Builder withTdaClient(PriceHistoryFetcher tdaClient) {
+      this.tdaClient = tdaClient;
+      return this;
+    }
+
+    /**
+     * @param lookback most bars held per symbol, 960 by default, the minutes of a day including
+     * the extended hours
+     */
+    public Builder withLookback(int lookback) {
+      this.lookback = lookback;
+      return this;
+    }
+
+    /**
+     * @param extendedHours whether to fetch the bars of the extended hours, true by default
+     */
+    public Builder withExtendedHours(boolean extendedHours) {
+      this.extendedHours = extendedHours;
+      return this;
+    }
+
+    /**
+     * @param listener told of every bar as it completes or changes
+     */
+    public Builder withListener(BarListener listener) {
+      this.listener = listener;
+      return this;
+    }
+
+    /**
+     * @param backfillExecutor runs the backfills after a gap, a single daemon thread by default
+     */
+    public Builder withBackfillExecutor(Executor backfillExecutor) {
+      this.backfillExecutor = backfillExecutor;
+      return this;
+    }
+
+    Builder withClock(LongSupplier clock) {
+      this.clock = clock;
+      return this;
+    }
+
+    public BarService build() {
+      if (lookback < 1) {
+        throw new IllegalArgumentException("lookback must be positive");
+      }
+      return new BarService(this);
+    }
+  }
+}
@@ -0,0 +1,137 @@
+package com.studerw.tda.stream;
+
+import java.io.Closeable;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.AtomicLongArray;
+import org.apache.commons.lang3.builder.ToStringBuilder;
+import org.apache.commons.lang3.builder.ToStringStyle;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+/**
+ * <p>
+ * Subscriber of {@link ConflatedTicks} which receives the latest state of the symbols updated
+ * since its last poll, each symbol once. Created with {@link ConflatedTicks#subscriber()}.
+ * </p>
+ *
+ * <p>
+ * Dirty symbols are kept as a bit per symbol, so a subscriber which never polls costs no more
+ * than one which polls constantly.
+ * </p>
+ * <strong>This is not a thread safe class.</strong> Poll from one thread at a time, the counts
+ * can be read from any thread.
+ */
+public final class ConflatedSubscriber implements Closeable {
+
+  private static final Logger LOGGER = LoggerFactory.getLogger(ConflatedSubscriber.class);
+
+  private final ConflatedTicks ticks;
+  private final LevelOneTick tick = new LevelOneTick();
+  //bit n set when symbol n was updated since the last poll
+  private volatile AtomicLongArray dirty;
+  private final AtomicLong delivered = new AtomicLong();
+
+  ConflatedSubscriber(ConflatedTicks ticks, int symbols) {
+    this.ticks = ticks;
+    this.dirty = new AtomicLongArray(words(symbols));
+  }
+
+  /**
+   * Pass the latest state of every symbol updated since the last poll to a handler.
+   *
+   * @param handler called once per dirty symbol, with a tick reused for the next symbol
+   * @return number of symbols passed to the handler
+   */
+  public int poll(LevelOneHandler handler) {
+    AtomicLongArray d = dirty;
+    int count = 0;
+    for (int w = 0; w < d.length(); w++) {
+      if (d.get(w) == 0) {
+        continue;
+      }
+      long word = d.getAndSet(w, 0);
+      while (word != 0) {
+        int id = (w << 6) + Long.numberOfTrailingZeros(word);
+        word &= word - 1;
+        if (ticks.read(id, tick)) {
+          count++;
+          try {
+            handler.onTick(tick);
+          } catch (RuntimeException e) {
+            LOGGER.warn("Handler failed on {}", tick, e);
+          }
+        }
+      }
+    }
+    delivered.lazySet(delivered.get() + count);
+    return count;
+  }
+
+  /**
+   * @return number of symbols updated since the last poll
+   */
+  public int getDirty() {
+    AtomicLongArray d = dirty;
+    int count = 0;
+    for (int w = 0; w < d.length(); w++) {
+      count += Long.bitCount(d.get(w));
+    }
+    return count;
+  }
+
+  /**
+   * @return number of symbol states passed to handlers
+   */
+  public long getDelivered() {
+    return delivered.get();
+  }
+
+  /**
+   * Stop marking symbols dirty for this subscriber.
+   */
+  @Override
+  public void close() {
+    ticks.remove(this);
+  }
+
+  /**
+   * Mark a symbol dirty, called by the publisher only.
+   */
+  void markDirty(int id) {
+    AtomicLongArray d = dirty;
+    int w = id >>> 6;
+    long bit = 1L << id;
+    long word;
+    do {
+      word = d.get(w);
+      if ((word & bit) != 0) {
+        return;
+      }
+    } while (!d.compareAndSet(w, word, word | bit));
+  }
+
+  /**
+   * Grow to hold more symbols, called by the publisher only. A symbol polled while copying may be
+   * delivered twice, never missed.
+   */
+  void resize(int symbols) {
+    AtomicLongArray old = dirty;
+    AtomicLongArray d = new AtomicLongArray(words(symbols));
+    for (int w = 0; w < old.length(); w++) {
+      d.set(w, old.get(w));
+    }
+    dirty = d;
+  }
+
+  private static int words(int symbols) {
+    return (symbols + 63) >>> 6;
+  }
+
+  @Override
+  public String toString() {
+    return new ToStringBuilder(this, ToStringStyle.SHORT_PREFIX_STYLE)
+        .append("dirty", getDirty())
+        .append("delivered", getDelivered())
+        .toString();
+  }
+}
@@ -0,0 +1,210 @@
+package com.studerw.tda.stream;
+
+import java.util.Arrays;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.locks.StampedLock;
+import org.apache.commons.lang3.builder.ToStringBuilder;
+import org.apache.commons.lang3.builder.ToStringStyle;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+/**
+ * <p>
+ * Latest level one state of every symbol, for consumers which only need the current quote and not
+ * every delta, e.g. a UI or a risk calculation. Every update is merged into the slot of its symbol
+ * and the symbol is marked dirty for each {@link ConflatedSubscriber}, which receives only the
+ * symbols updated since its last poll, once each, however many updates there were:
+ * </p>
+ *
+ * <pre class="code">
+ *     ConflatedTicks latest = new ConflatedTicks();
+ *     ConflatedSubscriber ui = latest.subscriber();
+ *     TdaStreamClient stream = TdaStreamClient.Builder.tdaStreamClient()
+ *         .withTdaClient(tdaClient)
+ *         .withLevelOneHandler(latest)
+ *         .build();
+ *     ...
+ *     //e.g. on every repaint
+ *     ui.poll(tick -&gt; table.update(tick.getSymbol(), tick.getDouble(1), tick.getDouble(2)));
+ * </pre>
+ *
+ * <p>
+ * Memory is bounded by the number of symbols: one slot per symbol plus one bit per symbol and
+ * subscriber. The thread publishing updates never waits for readers; readers copy a slot
+ * optimistically and retry if it was updated meanwhile. A symbol is expected to belong to one
+ * service, a tick of another service replaces its state.
+ * </p>
+ * <strong>This is a thread safe class</strong>, provided that only one thread publishes.
+ */
+public final class ConflatedTicks implements LevelOneHandler {
+
+  private static final Logger LOGGER = LoggerFactory.getLogger(ConflatedTicks.class);
+  private static final int SPINS = 100;
+
+  private volatile Slot[] slots;
+  private volatile ConflatedSubscriber[] subscribers = new ConflatedSubscriber[0];
+  private final AtomicLong updates = new AtomicLong();
+
+  public ConflatedTicks() {
+    this(1024);
+  }
+
+  /**
+   * @param expectedSymbols number of symbols held before the slots have to grow
+   */
+  public ConflatedTicks(int expectedSymbols) {
+    if (expectedSymbols < 1) {
+      throw new IllegalArgumentException("expectedSymbols must be positive");
+    }
+    this.slots = grow(new Slot[0], expectedSymbols);
+  }
+
+  /**
+   * Merge an update into the state of its symbol and mark the symbol dirty for every subscriber.
+   * Must only be called from a single thread, e.g. the socket reader.
+   *
+   * @param tick update of a symbol interned in a {@link SymbolTable}
+   */
+  @Override
+  public void onTick(LevelOneTick tick) {
+    int id = tick.getSymbolId();
+    if (id < 0) {
+      LOGGER.debug("Ignoring tick without a symbol id: {}", tick);
+      return;
+    }
+    Slot[] s = slots;
+    if (id >= s.length) {
+      s = resize(id + 1);
+    }
+    Slot slot = s[id];
+    //uncontended, readers never take the lock
+    long stamp = slot.lock.writeLock();
+    try {
+      if (slot.tick.getService() != null && slot.tick.getService() != tick.getService()) {
+        slot.tick.clear();
+      }
+      slot.tick.merge(tick);
+    } finally {
+      slot.lock.unlockWrite(stamp);
+    }
+    updates.lazySet(updates.get() + 1);
+    for (ConflatedSubscriber subscriber : subscribers) {
+      subscriber.markDirty(id);
+    }
+  }
+
+  /**
+   * A new subscriber, to which every symbol updated from now on is dirty.
+   *
+   * @return the subscriber, to be polled from a single thread at a time
+   */
+  public synchronized ConflatedSubscriber subscriber() {
+    ConflatedSubscriber subscriber = new ConflatedSubscriber(this, slots.length);
+    ConflatedSubscriber[] s = Arrays.copyOf(subscribers, subscribers.length + 1);
+    s[s.length - 1] = subscriber;
+    subscribers = s;
+    return subscriber;
+  }
+
+  /**
+   * Copy the latest state of a symbol.
+   *
+   * @param symbolId id of the symbol in the {@link SymbolTable}
+   * @param to cleared and then filled with the state
+   * @return whether the symbol has had any update
+   */
+  public boolean read(int symbolId, LevelOneTick to) {
+    Slot[] s = slots;
+    if (symbolId < 0 || symbolId >= s.length) {
+      to.clear();
+      return false;
+    }
+    Slot slot = s[symbolId];
+    for (int attempt = 1; ; attempt++) {
+      long stamp = slot.lock.tryOptimisticRead();
+      if (stamp != 0) {
+        try {
+          to.clear();
+          to.merge(slot.tick);
+        } catch (RuntimeException e) {
+          //torn by a concurrent update, which the validation below reveals
+          stamp = 0;
+        }
+        if (stamp != 0 && slot.lock.validate(stamp)) {
+          return to.getService() != null;
+        }
+      }
+      if (attempt % SPINS == 0) {
+        Thread.yield();
+      }
+    }
+  }
+
+  /**
+   * @return number of updates merged
+   */
+  public long getUpdates() {
+    return updates.get();
+  }
+
+  /**
+   * @return number of symbols which can be held before the slots grow
+   */
+  public int getCapacity() {
+    return slots.length;
+  }
+
+  public int getSubscribers() {
+    return subscribers.length;
+  }
+
+  synchronized void remove(ConflatedSubscriber subscriber) {
+    ConflatedSubscriber[] s = subscribers;
+    for (int i = 0; i < s.length; i++) {
+      if (s[i] == subscriber) {
+        ConflatedSubscriber[] removed = new ConflatedSubscriber[s.length - 1];
+        System.arraycopy(s, 0, removed, 0, i);
+        System.arraycopy(s, i + 1, removed, i, s.length - i - 1);
+        subscribers = removed;
+        return;
+      }
+    }
+  }
+
+  private synchronized Slot[] resize(int size) {
+    Slot[] s = grow(slots, Math.max(size, slots.length * 2));
+    for (ConflatedSubscriber subscriber : subscribers) {
+      subscriber.resize(s.length);
+    }
+    //published after the subscribers can mark the new symbols
+    slots = s;
+    return s;
+  }
+
+  private static Slot[] grow(Slot[] old, int size) {
+    Slot[] s = Arrays.copyOf(old, size);
+    for (int i = old.length; i < size; i++) {
+      s[i] = new Slot();
+    }
+    return s;
+  }
+
+  @Override
+  public String toString() {
+    return new ToStringBuilder(this, ToStringStyle.SHORT_PREFIX_STYLE)
+        .append("capacity", getCapacity())
+        .append("updates", getUpdates())
+        .append("subscribers", getSubscribers())
+        .toString();
+  }
+
+  /**
+   * Latest state of one symbol. The lock is only written by the publisher and read
+   * optimistically, making it a sequence lock.
+   */
+  private static final class Slot {
+
+    private final StampedLock lock = new StampedLock();
+    private final LevelOneTick tick = new LevelOneTick();
+  }
+}
@@ -0,0 +1,713 @@
+package com.studerw.tda.stream;
+
+import com.studerw.tda.model.stream.Service;
+import com.studerw.tda.stream.StreamFields.Kind;
+import java.nio.ByteBuffer;
+import java.nio.charset.StandardCharsets;
+import org.apache.commons.lang3.builder.ToStringBuilder;
+import org.apache.commons.lang3.builder.ToStringStyle;
+
+/**
+ * <p>
+ * Decodes the <em>data</em> of the level one services ({@link Service#QUOTE}, {@link
+ * Service#OPTION}, {@link Service#LEVELONE_FUTURES}, {@link Service#LEVELONE_FUTURES_OPTIONS} and
+ * {@link Service#LEVELONE_FOREX}) straight from the bytes of a streamer frame into a reused {@link
+ * LevelOneTick}, without building a JSON tree, boxing values or creating strings.
+ * </p>
+ *
+ * <p>
+ * Numeric field keys are parsed as integers and looked up in the per service {@link Kind} tables
+ * of {@link StreamFields}, so each value goes straight into its primitive slot. Symbols are
+ * interned in a {@link SymbolTable}, and only a symbol's first update creates its string. Once the
+ * buffers have grown to the largest frame, decoding allocates nothing, except for numbers with more
+ * than 18 significant digits or exponents beyond 10^22, which fall back to {@link
+ * Double#parseDouble}.
+ * </p>
+ *
+ * <p>
+ * Everything else in a frame, such as responses, heartbeats and the data of other services, is
+ * skipped, and {@link #isFullyDecoded()} tells whether there was any.
+ * </p>
+ * <strong>This is not a thread safe class.</strong> Use one decoder per socket reader thread.
+ */
+public final class LevelOneDecoder {
+
+  private static final Service[] SERVICES = {Service.QUOTE, Service.OPTION,
+      Service.LEVELONE_FUTURES, Service.LEVELONE_FUTURES_OPTIONS, Service.LEVELONE_FOREX};
+  private static final byte[][] SERVICE_NAMES = new byte[SERVICES.length][];
+  private static final byte[][] SERVICE_KINDS = new byte[SERVICES.length][];
+
+  private static final byte[] DATA = ascii("data");
+  private static final byte[] SERVICE = ascii("service");
+  private static final byte[] TIMESTAMP = ascii("timestamp");
+  private static final byte[] CONTENT = ascii("content");
+  private static final byte[] KEY = ascii("key");
+  private static final byte[] DELAYED = ascii("delayed");
+
+  private static final byte DOUBLE = (byte) Kind.DOUBLE.ordinal();
+  private static final byte LONG = (byte) Kind.LONG.ordinal();
+  private static final byte CHAR = (byte) Kind.CHAR.ordinal();
+  private static final byte BOOLEAN = (byte) Kind.BOOLEAN.ordinal();
+  private static final byte TEXT = (byte) Kind.TEXT.ordinal();
+
+  //powers of ten exactly representable as doubles
+  private static final double[] POW10 = new double[23];
+  private static final long MAX_EXACT = 1L << 53;
+
+  static {
+    for (int i = 0; i < SERVICES.length; i++) {
+      SERVICE_NAMES[i] = ascii(SERVICES[i].name());
+      SERVICE_KINDS[i] = StreamFields.kinds(SERVICES[i]);
+    }
+    double pow = 1;
+    for (int i = 0; i < POW10.length; i++) {
+      POW10[i] = pow;
+      pow *= 10;
+    }
+  }
+
+  private final SymbolTable symbols;
+  private final LevelOneTick tick = new LevelOneTick();
+
+  private byte[] buf;
+  private int pos;
+  private int end;
+  //frames given as chars or as direct buffers are copied here
+  private byte[] frame = new byte[8192];
+  //the last string read, unescaped
+  private byte[] string = new byte[64];
+  private int stringLength;
+  //whether the last number read was an integer of at most 18 digits, and its value
+  private boolean integral;
+  private long integralValue;
+  private boolean fullyDecoded;
+
+  public LevelOneDecoder() {
+    this(new SymbolTable());
+  }
+
+  /**
+   * @param symbols table assigning the symbol ids of the ticks, e.g. shared with the consumers
+   */
+  public LevelOneDecoder(SymbolTable symbols) {
+    if (symbols == null) {
+      throw new IllegalArgumentException("symbols cannot be null");
+    }
+    this.symbols = symbols;
+  }
+
+  /**
+   * @param service a service
+   * @return whether the service is decoded
+   */
+  public static boolean isLevelOne(Service service) {
+    return StreamFields.kinds(service) != null;
+  }
+
+  /**
+   * @param bytes UTF-8 bytes of a frame
+   * @param offset start of the frame
+   * @param length length of the frame
+   * @param handler receives every level one update in the frame
+   * @return number of updates passed to the handler
+   * @throws IllegalArgumentException if the frame is not valid JSON
+   */
+  public int decode(byte[] bytes, int offset, int length, LevelOneHandler handler) {
+    if (offset < 0 || length < 0 || offset + length > bytes.length) {
+      throw new IllegalArgumentException("offset and length outside of the bytes");
+    }
+    this.buf = bytes;
+    this.pos = offset;
+    this.end = offset + length;
+    try {
+      return decodeFrame(handler);
+    } finally {
+      this.buf = null;
+    }
+  }
+
+  /**
+   * @param frame UTF-8 bytes of a frame, from its position to its limit. The position is not
+   * changed.
+   * @param handler receives every level one update in the frame
+   * @return number of updates passed to the handler
+   * @throws IllegalArgumentException if the frame is not valid JSON
+   */
+  public int decode(ByteBuffer frame, LevelOneHandler handler) {
+    int length = frame.remaining();
+    if (frame.hasArray()) {
+      return decode(frame.array(), frame.arrayOffset() + frame.position(), length, handler);
+    }
+    ensureFrame(length);
+    for (int i = 0; i < length; i++) {
+      this.frame[i] = frame.get(frame.position() + i);
+    }
+    return decode(this.frame, 0, length, handler);
+  }
+
+  /**
+   * Decode a frame received as text, as OkHttp delivers the streamer's text frames. The text is
+   * encoded into a reused buffer first.
+   *
+   * @param frame text of a frame
+   * @param handler receives every level one update in the frame
+   * @return number of updates passed to the handler
+   * @throws IllegalArgumentException if the frame is not valid JSON
+   */
+  public int decode(CharSequence frame, LevelOneHandler handler) {
+    int length = frame.length();
+    ensureFrame(length);
+    int n = 0;
+    for (int i = 0; i < length; i++) {
+      char c = frame.charAt(i);
+      if (c < 0x80) {
+        this.frame[n++] = (byte) c;
+        continue;
+      }
+      ensureFrame(n + 4 + length - i);
+      if (c < 0x800) {
+        this.frame[n++] = (byte) (0xc0 | (c >> 6));
+        this.frame[n++] = (byte) (0x80 | (c & 0x3f));
+      } else if (Character.isHighSurrogate(c) && i + 1 < length
+          && Character.isLowSurrogate(frame.charAt(i + 1))) {
+        int codePoint = Character.toCodePoint(c, frame.charAt(++i));
+        this.frame[n++] = (byte) (0xf0 | (codePoint >> 18));
+        this.frame[n++] = (byte) (0x80 | ((codePoint >> 12) & 0x3f));
+        this.frame[n++] = (byte) (0x80 | ((codePoint >> 6) & 0x3f));
+        this.frame[n++] = (byte) (0x80 | (codePoint & 0x3f));
+      } else {
+        n = putUtf8(this.frame, n, c);
+      }
+    }
+    return decode(this.frame, 0, n, handler);
+  }
+
+  /**
+   * @return whether the last frame held nothing but level one data, i.e. whether it can be
+   * ignored by other consumers of the frame
+   */
+  public boolean isFullyDecoded() {
+    return fullyDecoded;
+  }
+
+  public SymbolTable getSymbols() {
+    return symbols;
+  }
+
+  private int decodeFrame(LevelOneHandler handler) {
+    fullyDecoded = true;
+    int count = 0;
+    if (beginObject()) {
+      do {
+        readKey();
+        if (matches(DATA)) {
+          count += decodeData(handler);
+        } else {
+          fullyDecoded = false;
+          skipValue();
+        }
+      } while (nextMember());
+    }
+    skipWhitespace();
+    if (pos != end) {
+      throw malformed("trailing characters");
+    }
+    return count;
+  }
+
+  private int decodeData(LevelOneHandler handler) {
+    int count = 0;
+    if (beginArray()) {
+      do {
+        count += decodeDataItem(handler);
+      } while (nextElement());
+    }
+    return count;
+  }
+
+  private int decodeDataItem(LevelOneHandler handler) {
+    int service = -1;
+    boolean serviceRead = false;
+    boolean timestampRead = false;
+    long timestamp = 0;
+    int deferred = -1;
+    int count = 0;
+    if (beginObject()) {
+      do {
+        readKey();
+        if (matches(SERVICE)) {
+          readString();
+          service = serviceIndex();
+          serviceRead = true;
+        } else if (matches(TIMESTAMP)) {
+          timestamp = readLong();
+          timestampRead = true;
+        } else if (matches(CONTENT) && serviceRead && timestampRead) {
+          count += service < 0 ? skipValue() : decodeContent(service, timestamp, handler);
+        } else if (matches(CONTENT)) {
+          //decoded once the service and timestamp are known
+          deferred = pos;
+          skipValue();
+        } else {
+          skipValue();
+        }
+      } while (nextMember());
+    }
+    if (deferred >= 0 && service >= 0) {
+      int resume = pos;
+      pos = deferred;
+      count += decodeContent(service, timestamp, handler);
+      pos = resume;
+    }
+    if (service < 0) {
+      fullyDecoded = false;
+    }
+    return count;
+  }
+
+  private int decodeContent(int service, long timestamp, LevelOneHandler handler) {
+    byte[] kinds = SERVICE_KINDS[service];
+    int count = 0;
+    if (beginArray()) {
+      do {
+        tick.reset(SERVICES[service], kinds, timestamp);
+        if (beginObject()) {
+          do {
+            readKey();
+            int field = fieldId();
+            if (field >= 0 && field < kinds.length) {
+              decodeField(field, kinds[field]);
+            } else if (field < 0 && matches(KEY) && peek() == '"') {
+              readString();
+              int id = symbols.intern(string, 0, stringLength);
+              tick.setSymbol(symbols.symbol(id), id);
+            } else if (field < 0 && matches(DELAYED) && isBoolean()) {
+              tick.setDelayed(readBoolean());
+            } else {
+              skipValue();
+            }
+          } while (nextMember());
+        }
+        handler.onTick(tick);
+        count++;
+      } while (nextElement());
+    }
+    return count;
+  }
+
+  private void decodeField(int field, byte kind) {
+    byte c = peek();
+    if (kind == DOUBLE && isNumber(c)) {
+      tick.setDouble(field, readNumber());
+    } else if (kind == LONG && isNumber(c)) {
+      double value = readNumber();
+      tick.setLong(field, integral ? integralValue : (long) value);
+    } else if (kind == TEXT && c == '"') {
+      readString();
+      tick.setText(field, string, 0, stringLength);
+    } else if (kind == CHAR && c == '"') {
+      readString();
+      if (stringLength > 0) {
+        tick.setLong(field, firstChar());
+      }
+    } else if (kind == BOOLEAN && isBoolean()) {
+      tick.setLong(field, readBoolean() ? 1 : 0);
+    } else {
+      //null, or not the expected kind
+      skipValue();
+    }
+  }
+
+  private int serviceIndex() {
+    for (int i = 0; i < SERVICE_NAMES.length; i++) {
+      if (matches(SERVICE_NAMES[i])) {
+        return i;
+      }
+    }
+    return -1;
+  }
+
+  /**
+   * @return the last string read as a field id, -1 if it is not one
+   */
+  private int fieldId() {
+    if (stringLength == 0 || stringLength > 2) {
+      return -1;
+    }
+    int id = 0;
+    for (int i = 0; i < stringLength; i++) {
+      int digit = string[i] - '0';
+      if (digit < 0 || digit > 9) {
+        return -1;
+      }
+      id = id * 10 + digit;
+    }
+    return id;
+  }
+
+  private boolean matches(byte[] name) {
+    if (stringLength != name.length) {
+      return false;
+    }
+    for (int i = 0; i < stringLength; i++) {
+      if (string[i] != name[i]) {
+        return false;
+      }
+    }
+    return true;
+  }
+
+  private char firstChar() {
+    int b = string[0] & 0xff;
+    if (b < 0x80 || stringLength < 2) {
+      return (char) b;
+    }
+    if (b < 0xe0 || stringLength < 3) {
+      return (char) (((b & 0x1f) << 6) | (string[1] & 0x3f));
+    }
+    return (char) (((b & 0x0f) << 12) | ((string[1] & 0x3f) << 6) | (string[2] & 0x3f));
+  }
+
+  private boolean beginObject() {
+    skipWhitespace();
+    expect('{');
+    skipWhitespace();
+    if (peek() == '}') {
+      pos++;
+      return false;
+    }
+    return true;
+  }
+
+  private boolean beginArray() {
+    skipWhitespace();
+    expect('[');
+    skipWhitespace();
+    if (peek() == ']') {
+      pos++;
+      return false;
+    }
+    return true;
+  }
+
+  private boolean nextMember() {
+    skipWhitespace();
+    byte c = next();
+    if (c == ',') {
+      return true;
+    }
+    if (c != '}') {
+      throw malformed("expected , or }");
+    }
+    return false;
+  }
+
+  private boolean nextElement() {
+    skipWhitespace();
+    byte c = next();
+    if (c == ',') {
+      return true;
+    }
+    if (c != ']') {
+      throw malformed("expected , or ]");
+    }
+    return false;
+  }
+
+  private void readKey() {
+    skipWhitespace();
+    readString();
+    skipWhitespace();
+    expect(':');
+    skipWhitespace();
+  }
+
+  private void readString() {
+    expect('"');
+    int n = 0;
+    while (true) {
+      byte b = next();
+      if (b == '"') {
+        break;
+      }
+      if (n + 3 > string.length) {
+        byte[] grown = new byte[string.length * 2];
+        System.arraycopy(string, 0, grown, 0, n);
+        string = grown;
+      }
+      if (b != '\\') {
+        string[n++] = b;
+        continue;
+      }
+      b = next();
+      switch (b) {
+        case '"':
+        case '\\':
+        case '/':
+          string[n++] = b;
+          break;
+        case 'b':
+          string[n++] = '\b';
+          break;
+        case 'f':
+          string[n++] = '\f';
+          break;
+        case 'n':
+          string[n++] = '\n';
+          break;
+        case 'r':
+          string[n++] = '\r';
+          break;
+        case 't':
+          string[n++] = '\t';
+          break;
+        case 'u':
+          n = putUtf8(string, n, (char) (hex() << 12 | hex() << 8 | hex() << 4 | hex()));
+          break;
+        default:
+          throw malformed("invalid escape");
+      }
+    }
+    stringLength = n;
+  }
+
+  private int hex() {
+    int c = next();
+    if (c >= '0' && c <= '9') {
+      return c - '0';
+    }
+    c |= 0x20;
+    if (c >= 'a' && c <= 'f') {
+      return c - 'a' + 10;
+    }
+    throw malformed("invalid unicode escape");
+  }
+
+  private static int putUtf8(byte[] to, int n, char c) {
+    if (c < 0x80) {
+      to[n++] = (byte) c;
+    } else if (c < 0x800) {
+      to[n++] = (byte) (0xc0 | (c >> 6));
+      to[n++] = (byte) (0x80 | (c & 0x3f));
+    } else {
+      to[n++] = (byte) (0xe0 | (c >> 12));
+      to[n++] = (byte) (0x80 | ((c >> 6) & 0x3f));
+      to[n++] = (byte) (0x80 | (c & 0x3f));
+    }
+    return n;
+  }
+
+  private long readLong() {
+    if (peek() == '"') {
+      readString();
+      long value = 0;
+      for (int i = 0; i < stringLength; i++) {
+        int digit = string[i] - '0';
+        if (digit < 0 || digit > 9) {
+          throw malformed("expected a number");
+        }
+        value = value * 10 + digit;
+      }
+      return value;
+    }
+    double value = readNumber();
+    return integral ? integralValue : (long) value;
+  }
+
+  /**
+   * Parse a number, exactly when it has at most 18 significant digits and a power of ten within
+   * 10^22 (Clinger's fast path), with {@link Double#parseDouble} otherwise.
+   */
+  private double readNumber() {
+    int start = pos;
+    boolean negative = peek() == '-';
+    if (negative) {
+      pos++;
+    }
+    long mantissa = 0;
+    int digits = 0;
+    int scale = 0;
+    boolean exact = true;
+    boolean fraction = false;
+    int digitsStart = pos;
+    int digit;
+    while (pos < end && (digit = buf[pos] - '0') >= 0 && digit <= 9) {
+      if (digits < 18) {
+        mantissa = mantissa * 10 + digit;
+        digits += mantissa == 0 ? 0 : 1;
+      } else {
+        scale++;
+        exact = false;
+      }
+      pos++;
+    }
+    if (pos == digitsStart) {
+      throw malformed("expected a number");
+    }
+    if (pos < end && buf[pos] == '.') {
+      fraction = true;
+      pos++;
+      while (pos < end && (digit = buf[pos] - '0') >= 0 && digit <= 9) {
+        if (digits < 18) {
+          mantissa = mantissa * 10 + digit;
+          digits += mantissa == 0 ? 0 : 1;
+          scale--;
+        } else {
+          exact = false;
+        }
+        pos++;
+      }
+    }
+    if (pos < end && (buf[pos] | 0x20) == 'e') {
+      fraction = true;
+      pos++;
+      boolean negativeExponent = false;
+      if (pos < end && (buf[pos] == '-' || buf[pos] == '+')) {
+        negativeExponent = buf[pos++] == '-';
+      }
+      int exponent = 0;
+      while (pos < end && (digit = buf[pos] - '0') >= 0 && digit <= 9) {
+        exponent = Math.min(exponent * 10 + digit, 100_000);
+        pos++;
+      }
+      scale += negativeExponent ? -exponent : exponent;
+    }
+    integral = exact && !fraction;
+    integralValue = negative ? -mantissa : mantissa;
+    if (exact && mantissa < MAX_EXACT && scale >= -22 && scale <= 22) {
+      double value = scale >= 0 ? mantissa * POW10[scale] : mantissa / POW10[-scale];
+      return negative ? -value : value;
+    }
+    if (mantissa == 0) {
+      return negative ? -0d : 0d;
+    }
+    return Double.parseDouble(new String(buf, start, pos - start, StandardCharsets.US_ASCII));
+  }
+
+  private boolean isBoolean() {
+    byte c = peek();
+    return c == 't' || c == 'f';
+  }
+
+  private boolean readBoolean() {
+    if (literal("true")) {
+      return true;
+    }
+    if (literal("false")) {
+      return false;
+    }
+    throw malformed("expected true or false");
+  }
+
+  private boolean literal(String literal) {
+    if (end - pos < literal.length()) {
+      return false;
+    }
+    for (int i = 0; i < literal.length(); i++) {
+      if (buf[pos + i] != literal.charAt(i)) {
+        return false;
+      }
+    }
+    pos += literal.length();
+    return true;
+  }
+
+  private static boolean isNumber(byte c) {
+    return c == '-' || (c >= '0' && c <= '9');
+  }
+
+  /**
+   * @return 0, so that skipping content counts no updates
+   */
+  private int skipValue() {
+    skipWhitespace();
+    byte c = peek();
+    if (c == '"') {
+      skipString();
+    } else if (c == '{' || c == '[') {
+      int depth = 0;
+      do {
+        c = peek();
+        if (c == '"') {
+          skipString();
+          continue;
+        }
+        if (c == '{' || c == '[') {
+          depth++;
+        } else if (c == '}' || c == ']') {
+          depth--;
+        }
+        pos++;
+      } while (depth > 0);
+    } else {
+      while (pos < end && c != ',' && c != '}' && c != ']' && !isWhitespace(c)) {
+        c = ++pos < end ? buf[pos] : 0;
+      }
+    }
+    return 0;
+  }
+
+  private void skipString() {
+    expect('"');
+    byte b;
+    while ((b = next()) != '"') {
+      if (b == '\\') {
+        next();
+      }
+    }
+  }
+
+  private void skipWhitespace() {
+    while (pos < end && isWhitespace(buf[pos])) {
+      pos++;
+    }
+  }
+
+  private static boolean isWhitespace(byte c) {
+    return c == ' ' || c == '\n' || c == '\r' || c == '\t';
+  }
+
+  private void expect(char c) {
+    if (next() != c) {
+      pos--;
+      throw malformed("expected " + c);
+    }
+  }
+
+  private byte peek() {
+    if (pos >= end) {
+      throw malformed("unexpected end");
+    }
+    return buf[pos];
+  }
+
+  private byte next() {
+    if (pos >= end) {
+      throw malformed("unexpected end");
+    }
+    return buf[pos++];
+  }
+
+  private IllegalArgumentException malformed(String reason) {
+    return new IllegalArgumentException("Malformed streamer frame at " + pos + ": " + reason);
+  }
+
+  private void ensureFrame(int length) {
+    if (frame.length < length) {
+      byte[] grown = new byte[Math.max(length, frame.length * 2)];
+      System.arraycopy(frame, 0, grown, 0, frame.length);
+      frame = grown;
+    }
+  }
+
+  private static byte[] ascii(String s) {
+    return s.getBytes(StandardCharsets.US_ASCII);
+  }
+
+  @Override
+  public String toString() {
+    return new ToStringBuilder(this, ToStringStyle.SHORT_PREFIX_STYLE)
+        .append("symbols", symbols)
+        .toString();
+  }
+}
@@ -0,0 +1,15 @@
+package com.studerw.tda.stream;
+
+/**
+ * Receives the level one updates decoded by a {@link LevelOneDecoder}. Called on the decoding
+ * thread, so implementations should return quickly and must not block.
+ */
+@FunctionalInterface
+public interface LevelOneHandler {
+
+  /**
+   * @param tick the update of one symbol. The same instance is reused for the next update, so it
+   * must not be kept.
+   */
+  void onTick(LevelOneTick tick);
+}
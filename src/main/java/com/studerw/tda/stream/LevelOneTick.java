@@ -0,0 +1,295 @@
+package com.studerw.tda.stream;
+
+import com.studerw.tda.model.stream.Service;
+import com.studerw.tda.stream.StreamFields.Kind;
+import java.nio.charset.StandardCharsets;
+import org.apache.commons.lang3.builder.ToStringBuilder;
+import org.apache.commons.lang3.builder.ToStringStyle;
+
+/**
+ * <p>
+ * Mutable, reusable level one update of one symbol of {@link Service#QUOTE}, {@link
+ * Service#OPTION}, {@link Service#LEVELONE_FUTURES}, {@link Service#LEVELONE_FUTURES_OPTIONS} or
+ * {@link Service#LEVELONE_FOREX}. Fields are addressed by their numeric ids, e.g. 1 is the bid of a
+ * quote, and held in primitive slots according to their {@link Kind}.
+ * </p>
+ *
+ * <p>
+ * TDA only sends the fields which changed, so {@link #has(int)} tells which fields the update
+ * holds. A tick can also hold the latest state of a symbol by {@link #merge(LevelOneTick) merging}
+ * every update into it.
+ * </p>
+ * <strong>This is not a thread safe class.</strong> The {@link LevelOneDecoder} passes the same
+ * instance to every call of its handler, which must copy what it keeps.
+ */
+public final class LevelOneTick {
+
+  /**
+   * Highest number of fields of a level one service, so a set of fields fits in a long.
+   */
+  public static final int MAX_FIELDS = 64;
+
+  private static final byte TEXT = (byte) Kind.TEXT.ordinal();
+  private static final byte DOUBLE = (byte) Kind.DOUBLE.ordinal();
+
+  private final double[] doubles = new double[MAX_FIELDS];
+  private final long[] longs = new long[MAX_FIELDS];
+  private final byte[][] texts = new byte[MAX_FIELDS][];
+  private final int[] textLengths = new int[MAX_FIELDS];
+
+  private Service service;
+  private byte[] kinds;
+  private long timestamp;
+  private String symbol;
+  private int symbolId = -1;
+  private boolean delayed;
+  private long fields;
+
+  /**
+   * Clear every field and start an update of a service.
+   */
+  void reset(Service service, byte[] kinds, long timestamp) {
+    this.service = service;
+    this.kinds = kinds;
+    this.timestamp = timestamp;
+    this.symbol = null;
+    this.symbolId = -1;
+    this.delayed = false;
+    this.fields = 0;
+  }
+
+  void setSymbol(String symbol, int symbolId) {
+    this.symbol = symbol;
+    this.symbolId = symbolId;
+  }
+
+  void setDelayed(boolean delayed) {
+    this.delayed = delayed;
+  }
+
+  void setDouble(int field, double value) {
+    doubles[field] = value;
+    fields |= 1L << field;
+  }
+
+  void setLong(int field, long value) {
+    longs[field] = value;
+    fields |= 1L << field;
+  }
+
+  void setText(int field, byte[] bytes, int offset, int length) {
+    byte[] text = texts[field];
+    if (text == null || text.length < length) {
+      text = new byte[Math.max(length, 16)];
+      texts[field] = text;
+    }
+    System.arraycopy(bytes, offset, text, 0, length);
+    textLengths[field] = length;
+    fields |= 1L << field;
+  }
+
+  /**
+   * Copy the service, symbol, timestamp and every field present in an update into this tick,
+   * keeping the fields the update does not have.
+   *
+   * @param update update of the same symbol
+   * @throws IllegalArgumentException if the update is of another service
+   */
+  public void merge(LevelOneTick update) {
+    if (service != null && service != update.service) {
+      throw new IllegalArgumentException("Cannot merge " + update.service + " into " + service);
+    }
+    this.service = update.service;
+    this.kinds = update.kinds;
+    this.timestamp = update.timestamp;
+    this.symbol = update.symbol;
+    this.symbolId = update.symbolId;
+    this.delayed = update.delayed;
+    long remaining = update.fields;
+    while (remaining != 0) {
+      int field = Long.numberOfTrailingZeros(remaining);
+      remaining &= remaining - 1;
+      byte kind = kinds[field];
+      if (kind == TEXT) {
+        setText(field, update.texts[field], 0, update.textLengths[field]);
+      } else if (kind == DOUBLE) {
+        setDouble(field, update.doubles[field]);
+      } else {
+        setLong(field, update.longs[field]);
+      }
+    }
+  }
+
+  /**
+   * Clear every field, e.g. before reusing a merged tick for another symbol.
+   */
+  public void clear() {
+    reset(null, null, 0);
+  }
+
+  public Service getService() {
+    return service;
+  }
+
+  /**
+   * @return time the streamer sent the update in milliseconds since the epoch
+   */
+  public long getTimestamp() {
+    return timestamp;
+  }
+
+  /**
+   * @return the symbol, the same instance for every update of the symbol
+   */
+  public String getSymbol() {
+    return symbol;
+  }
+
+  /**
+   * @return id of the symbol in the decoder's {@link SymbolTable}
+   */
+  public int getSymbolId() {
+    return symbolId;
+  }
+
+  public boolean isDelayed() {
+    return delayed;
+  }
+
+  /**
+   * @return bit set of the fields present, bit n for field n
+   */
+  public long getFields() {
+    return fields;
+  }
+
+  /**
+   * @param field the numeric field id
+   * @return whether the update holds the field
+   */
+  public boolean has(int field) {
+    return field >= 0 && field < MAX_FIELDS && (fields & (1L << field)) != 0;
+  }
+
+  /**
+   * @param field id of a numeric field
+   * @return value of the field, NaN if absent or not numeric
+   */
+  public double getDouble(int field) {
+    if (!has(field)) {
+      return Double.NaN;
+    }
+    byte kind = kinds[field];
+    if (kind == DOUBLE) {
+      return doubles[field];
+    }
+    return kind == TEXT ? Double.NaN : longs[field];
+  }
+
+  /**
+   * @param field id of a size, volume, day, time or other integral field
+   * @param defaultValue returned if absent or not numeric
+   * @return value of the field, truncated if it is a double
+   */
+  public long getLong(int field, long defaultValue) {
+    if (!has(field)) {
+      return defaultValue;
+    }
+    byte kind = kinds[field];
+    if (kind == DOUBLE) {
+      return (long) doubles[field];
+    }
+    return kind == TEXT ? defaultValue : longs[field];
+  }
+
+  /**
+   * @param field id of a {@link Kind#CHAR} field, e.g. an exchange id
+   * @return the character, 0 if absent
+   */
+  public char getChar(int field) {
+    return has(field) && kinds[field] == Kind.CHAR.ordinal() ? (char) longs[field] : 0;
+  }
+
+  /**
+   * @param field id of a {@link Kind#BOOLEAN} field
+   * @return value of the field, false if absent
+   */
+  public boolean getBoolean(int field) {
+    return has(field) && kinds[field] == Kind.BOOLEAN.ordinal() && longs[field] != 0;
+  }
+
+  /**
+   * Append the text of a field without creating a string.
+   *
+   * @param field id of a {@link Kind#TEXT} field, e.g. the description
+   * @param to appended to
+   * @return whether the field is present
+   */
+  public boolean appendText(int field, StringBuilder to) {
+    if (!has(field) || kinds[field] != TEXT) {
+      return false;
+    }
+    byte[] text = texts[field];
+    int length = textLengths[field];
+    boolean ascii = true;
+    for (int i = 0; i < length && ascii; i++) {
+      ascii = text[i] >= 0;
+    }
+    if (!ascii) {
+      to.append(new String(text, 0, length, StandardCharsets.UTF_8));
+      return true;
+    }
+    for (int i = 0; i < length; i++) {
+      to.append((char) text[i]);
+    }
+    return true;
+  }
+
+  /**
+   * @return the bytes of a present {@link Kind#TEXT} field, valid up to {@link #textLength(int)}
+   */
+  byte[] textBytes(int field) {
+    return texts[field];
+  }
+
+  int textLength(int field) {
+    return textLengths[field];
+  }
+
+  /**
+   * @param field id of a {@link Kind#TEXT} field
+   * @return a new string of the text, null if absent
+   */
+  public String getText(int field) {
+    if (!has(field) || kinds[field] != TEXT) {
+      return null;
+    }
+    return new String(texts[field], 0, textLengths[field], StandardCharsets.UTF_8);
+  }
+
+  @Override
+  public String toString() {
+    ToStringBuilder builder = new ToStringBuilder(this, ToStringStyle.SHORT_PREFIX_STYLE)
+        .append("service", service)
+        .append("symbol", symbol)
+        .append("timestamp", timestamp);
+    long remaining = fields;
+    while (remaining != 0) {
+      int field = Long.numberOfTrailingZeros(remaining);
+      remaining &= remaining - 1;
+      byte kind = kinds[field];
+      if (kind == TEXT) {
+        builder.append(Integer.toString(field), getText(field));
+      } else if (kind == DOUBLE) {
+        builder.append(Integer.toString(field), doubles[field]);
+      } else if (kind == Kind.CHAR.ordinal()) {
+        builder.append(Integer.toString(field), getChar(field));
+      } else if (kind == Kind.BOOLEAN.ordinal()) {
+        builder.append(Integer.toString(field), getBoolean(field));
+      } else {
+        builder.append(Integer.toString(field), longs[field]);
+      }
+    }
+    return builder.toString();
+  }
+}
@@ -0,0 +1,163 @@
+package com.studerw.tda.stream;
+
+import com.studerw.tda.model.stream.Service;
+import org.apache.commons.lang3.builder.ToStringBuilder;
+import org.apache.commons.lang3.builder.ToStringStyle;
+
+/**
+ * <p>
+ * Depth of book of one symbol: a bid and an ask {@link PriceLadder}, plus the measures of the top
+ * of the book a strategy usually wants, such as the {@link #getMicroprice() microprice} and the
+ * {@link #getImbalance(int) imbalance}.
+ * </p>
+ *
+ * <p>
+ * The books of {@link OrderBooks} are updated on the socket thread. Other threads read a copy
+ * made with {@link OrderBooks#read(Service, String, OrderBook)}.
+ * </p>
+ * <strong>This is not a thread safe class.</strong>
+ */
+public final class OrderBook {
+
+  private final PriceLadder bids;
+  private final PriceLadder asks;
+  private Service service;
+  private String symbol;
+  private long time;
+  private long updates;
+
+  public OrderBook() {
+    this(16);
+  }
+
+  /**
+   * @param capacity number of levels of each side held before the ladders have to grow
+   */
+  public OrderBook(int capacity) {
+    this.bids = new PriceLadder(true, capacity);
+    this.asks = new PriceLadder(false, capacity);
+  }
+
+  void update(Service service, String symbol, long time) {
+    this.service = service;
+    this.symbol = symbol;
+    this.time = time;
+    this.updates++;
+  }
+
+  public PriceLadder getBids() {
+    return bids;
+  }
+
+  public PriceLadder getAsks() {
+    return asks;
+  }
+
+  /**
+   * @param bid whether the bid side is wanted
+   * @return the bid or ask side
+   */
+  public PriceLadder getSide(boolean bid) {
+    return bid ? bids : asks;
+  }
+
+  public Service getService() {
+    return service;
+  }
+
+  public String getSymbol() {
+    return symbol;
+  }
+
+  /**
+   * @return time of the last update in milliseconds since the epoch
+   */
+  public long getTime() {
+    return time;
+  }
+
+  /**
+   * @return number of updates applied
+   */
+  public long getUpdates() {
+    return updates;
+  }
+
+  /**
+   * @return midpoint of the best bid and ask, NaN if either side is empty
+   */
+  public double getMid() {
+    return (bids.getBest() + asks.getBest()) / 2;
+  }
+
+  /**
+   * @return best ask minus best bid, NaN if either side is empty
+   */
+  public double getSpread() {
+    return asks.getBest() - bids.getBest();
+  }
+
+  /**
+   * The mid weighted by the size on the other side of the book, which leans towards the side more
+   * likely to trade next: (bid * askSize + ask * bidSize) / (bidSize + askSize) of the best levels.
+   *
+   * @return the microprice, NaN if either side is empty
+   */
+  public double getMicroprice() {
+    if (bids.getLevels() == 0 || asks.getLevels() == 0) {
+      return Double.NaN;
+    }
+    double bidSize = bids.getSize(0);
+    double askSize = asks.getSize(0);
+    if (bidSize + askSize == 0) {
+      return getMid();
+    }
+    return (bids.getPrice(0) * askSize + asks.getPrice(0) * bidSize) / (bidSize + askSize);
+  }
+
+  /**
+   * Imbalance of the size of the best levels, (bidSize - askSize) / (bidSize + askSize), from -1
+   * when there are only asks to 1 when there are only bids.
+   *
+   * @param depth number of levels of each side from the best
+   * @return the imbalance, NaN if both sides are empty
+   */
+  public double getImbalance(int depth) {
+    double bidSize = bids.getDepthSize(depth);
+    double askSize = asks.getDepthSize(depth);
+    return bidSize + askSize == 0 ? Double.NaN : (bidSize - askSize) / (bidSize + askSize);
+  }
+
+  /**
+   * Copy the whole book into another.
+   *
+   * @param to overwritten with this book
+   */
+  public void copyTo(OrderBook to) {
+    bids.copyTo(to.bids);
+    asks.copyTo(to.asks);
+    to.service = service;
+    to.symbol = symbol;
+    to.time = time;
+    to.updates = updates;
+  }
+
+  /**
+   * Remove every level.
+   */
+  public void clear() {
+    bids.clear();
+    asks.clear();
+  }
+
+  @Override
+  public String toString() {
+    return new ToStringBuilder(this, ToStringStyle.SHORT_PREFIX_STYLE)
+        .append("service", service)
+        .append("symbol", symbol)
+        .append("time", time)
+        .append("bids", bids)
+        .append("asks", asks)
+        .toString();
+  }
+}
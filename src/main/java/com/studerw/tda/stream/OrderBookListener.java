@@ -0,0 +1,15 @@
+package com.studerw.tda.stream;
+
+/**
+ * Notified by {@link OrderBooks} after a book changed. Called on the thread updating the books,
+ * usually the socket reader, so implementations should return quickly and must not block.
+ */
+@FunctionalInterface
+public interface OrderBookListener {
+
+  /**
+   * @param book the book, only valid during the call
+   * @param changed number of price levels rewritten or removed, 0 if the update changed nothing
+   */
+  void onBook(OrderBook book, int changed);
+}
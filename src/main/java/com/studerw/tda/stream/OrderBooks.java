@@ -0,0 +1,329 @@
+package com.studerw.tda.stream;
+
+import com.fasterxml.jackson.databind.JsonNode;
+import com.studerw.tda.model.stream.Service;
+import java.util.Arrays;
+import java.util.EnumSet;
+import java.util.Set;
+import java.util.concurrent.atomic.AtomicReferenceArray;
+import java.util.concurrent.locks.StampedLock;
+import org.apache.commons.lang3.builder.ToStringBuilder;
+import org.apache.commons.lang3.builder.ToStringStyle;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+/**
+ * <p>
+ * Maintains an {@link OrderBook} per symbol of the book services, {@link Service#LISTED_BOOK},
+ * {@link Service#NASDAQ_BOOK}, {@link Service#OPTIONS_BOOK}, {@link Service#FUTURES_BOOK},
+ * {@link Service#FOREX_BOOK} and {@link Service#FUTURES_OPTIONS_BOOK}. Register it as the
+ * listener of the services subscribed to:
+ * </p>
+ *
+ * <pre class="code">
+ *     OrderBooks books = OrderBooks.Builder.orderBooks()
+ *         .withListener((book, changed) -&gt; strategy.onBook(book))
+ *         .build();
+ *     stream.addListener(Service.NASDAQ_BOOK, books);
+ *     stream.subscribe(Service.NASDAQ_BOOK, Arrays.asList("MSFT", "AAPL")).join();
+ *     ...
+ *     OrderBook msft = new OrderBook();
+ *     books.read(Service.NASDAQ_BOOK, "MSFT", msft);
+ * </pre>
+ *
+ * <p>
+ * TDA sends each side of a book as a snapshot of its price levels, field <em>2</em> the bids and
+ * field <em>3</em> the asks, each level an object of its price (<em>0</em>), total size
+ * (<em>1</em>) and number of market makers (<em>2</em>). A snapshot only rewrites the levels that
+ * changed. Single levels can also be set with {@link #update}.
+ * </p>
+ * <strong>This is a thread safe class</strong>, provided that only one thread updates the books,
+ * e.g. the socket reader. Other threads read copies.
+ */
+public final class OrderBooks implements StreamListener {
+
+  private static final Logger LOGGER = LoggerFactory.getLogger(OrderBooks.class);
+  private static final Set<Service> BOOKS = EnumSet.of(Service.LISTED_BOOK, Service.NASDAQ_BOOK,
+      Service.OPTIONS_BOOK, Service.FUTURES_BOOK, Service.FOREX_BOOK,
+      Service.FUTURES_OPTIONS_BOOK);
+  private static final int SPINS = 100;
+
+  private final SymbolTable symbols;
+  private final OrderBookListener listener;
+  private final int capacity;
+  //books by service ordinal and symbol id
+  private final AtomicReferenceArray<Entry[]> books =
+      new AtomicReferenceArray<>(Service.values().length);
+
+  //a side of the content being applied, only used by the updating thread
+  private double[] prices = new double[64];
+  private long[] sizes = new long[64];
+  private int[] counts = new int[64];
+
+  private OrderBooks(Builder builder) {
+    this.symbols = builder.symbols == null ? new SymbolTable() : builder.symbols;
+    this.listener = builder.listener;
+    this.capacity = builder.capacity;
+    for (Service service : BOOKS) {
+      books.set(service.ordinal(), new Entry[0]);
+    }
+  }
+
+  /**
+   * @param service a service
+   * @return whether the service streams order books
+   */
+  public static boolean isBook(Service service) {
+    return BOOKS.contains(service);
+  }
+
+  /**
+   * Apply the bid and ask snapshots of a book message.
+   *
+   * @param content content of a book service
+   */
+  @Override
+  public void onContent(StreamContent content) {
+    Service service = content.getService();
+    String symbol = content.getKey();
+    if (!isBook(service) || symbol == null) {
+      LOGGER.debug("Ignoring content which is not a book: {}", content);
+      return;
+    }
+    Entry entry = entry(service, symbols.intern(symbol));
+    int changed = 0;
+    long stamp = entry.lock.writeLock();
+    try {
+      OrderBook book = entry.book;
+      changed += apply(book.getBids(), content.getNode(2));
+      changed += apply(book.getAsks(), content.getNode(3));
+      book.update(service, symbol, content.getLong(1, content.getTimestamp()));
+    } finally {
+      entry.lock.unlockWrite(stamp);
+    }
+    notify(entry.book, changed);
+  }
+
+  private int apply(PriceLadder ladder, JsonNode levels) {
+    if (levels == null || !levels.isArray()) {
+      return 0;
+    }
+    int count = levels.size();
+    if (count > prices.length) {
+      prices = Arrays.copyOf(prices, count * 2);
+      sizes = Arrays.copyOf(sizes, count * 2);
+      counts = Arrays.copyOf(counts, count * 2);
+    }
+    int kept = 0;
+    for (int i = 0; i < count; i++) {
+      JsonNode level = levels.get(i);
+      double price = level.path("0").asDouble(Double.NaN);
+      //a level without a price can't be placed in the ladder
+      if (!Double.isFinite(price)) {
+        LOGGER.warn("Ignoring a book level without a finite price: {}", level);
+        continue;
+      }
+      prices[kept] = price;
+      sizes[kept] = level.path("1").asLong();
+      counts[kept] = level.path("2").asInt();
+      kept++;
+    }
+    try {
+      return ladder.replace(prices, sizes, counts, kept);
+    } catch (IllegalArgumentException e) {
+      LOGGER.warn("Ignoring a book side which is not sorted: {}", levels);
+      return 0;
+    }
+  }
+
+  /**
+   * Replace one side of a book, e.g. when replaying recorded books.
+   *
+   * @param service a book service
+   * @param symbol the symbol
+   * @param time time of the snapshot in milliseconds since the epoch
+   * @param bid whether the snapshot is of the bids
+   * @param prices price of each level, best first
+   * @param sizes total size of each level
+   * @param counts number of orders or market makers of each level
+   * @param count number of levels
+   * @return number of levels rewritten or removed
+   * @throws IllegalArgumentException if the service is not a book or a price is not finite or the
+   * prices are not sorted
+   */
+  public int apply(Service service, String symbol, long time, boolean bid, double[] prices,
+      long[] sizes, int[] counts, int count) {
+    Entry entry = entry(checkBook(service), symbols.intern(symbol));
+    final int changed;
+    long stamp = entry.lock.writeLock();
+    try {
+      changed = entry.book.getSide(bid).replace(prices, sizes, counts, count);
+      entry.book.update(service, symbol, time);
+    } finally {
+      entry.lock.unlockWrite(stamp);
+    }
+    notify(entry.book, changed);
+    return changed;
+  }
+
+  /**
+   * Set, add or remove one price level of a book.
+   *
+   * @param service a book service
+   * @param symbol the symbol
+   * @param time time of the update in milliseconds since the epoch
+   * @param bid whether the level is a bid
+   * @param price price of the level
+   * @param size total size of the level, 0 to remove it
+   * @param count number of orders or market makers of the level
+   * @return whether the book changed
+   * @throws IllegalArgumentException if the service is not a book or the price is not finite
+   */
+  public boolean update(Service service, String symbol, long time, boolean bid, double price,
+      long size, int count) {
+    Entry entry = entry(checkBook(service), symbols.intern(symbol));
+    final boolean changed;
+    long stamp = entry.lock.writeLock();
+    try {
+      changed = entry.book.getSide(bid).set(price, size, count);
+      entry.book.update(service, symbol, time);
+    } finally {
+      entry.lock.unlockWrite(stamp);
+    }
+    if (changed) {
+      notify(entry.book, 1);
+    }
+    return changed;
+  }
+
+  /**
+   * Copy the current book of a symbol, consistent as of one update.
+   *
+   * @param service a book service
+   * @param symbol the symbol
+   * @param to overwritten with the book
+   * @return whether the symbol has a book
+   */
+  public boolean read(Service service, String symbol, OrderBook to) {
+    Entry[] e = isBook(service) ? books.get(service.ordinal()) : null;
+    int id = symbols.id(symbol);
+    if (e == null || id < 0 || id >= e.length || e[id] == null) {
+      to.clear();
+      return false;
+    }
+    Entry entry = e[id];
+    for (int attempt = 1; ; attempt++) {
+      long stamp = entry.lock.tryOptimisticRead();
+      if (stamp != 0) {
+        try {
+          entry.book.copyTo(to);
+        } catch (RuntimeException ex) {
+          //torn by a concurrent update, which the validation below reveals
+          stamp = 0;
+        }
+        if (stamp != 0 && entry.lock.validate(stamp)) {
+          return to.getService() != null;
+        }
+      }
+      if (attempt % SPINS == 0) {
+        Thread.yield();
+      }
+    }
+  }
+
+  public SymbolTable getSymbolTable() {
+    return symbols;
+  }
+
+  private void notify(OrderBook book, int changed) {
+    if (listener != null) {
+      try {
+        listener.onBook(book, changed);
+      } catch (RuntimeException e) {
+        LOGGER.warn("Book listener failed on {}", book.getSymbol(), e);
+      }
+    }
+  }
+
+  private static Service checkBook(Service service) {
+    if (!isBook(service)) {
+      throw new IllegalArgumentException(service + " is not a book service");
+    }
+    return service;
+  }
+
+  private Entry entry(Service service, int id) {
+    Entry[] e = books.get(service.ordinal());
+    Entry entry = id < e.length ? e[id] : null;
+    if (entry == null) {
+      e = id < e.length ? e : Arrays.copyOf(e, Math.max(id + 1, e.length * 2));
+      entry = new Entry(capacity);
+      e[id] = entry;
+      //a volatile write, so readers see the new entry
+      books.set(service.ordinal(), e);
+    }
+    return entry;
+  }
+
+  @Override
+  public String toString() {
+    return new ToStringBuilder(this, ToStringStyle.SHORT_PREFIX_STYLE)
+        .append("symbols", symbols.size())
+        .toString();
+  }
+
+  private static final class Entry {
+
+    private final StampedLock lock = new StampedLock();
+    private final OrderBook book;
+
+    private Entry(int capacity) {
+      this.book = new OrderBook(capacity);
+    }
+  }
+
+  public static final class Builder {
+
+    private SymbolTable symbols;
+    private OrderBookListener listener;
+    private int capacity = 16;
+
+    private Builder() {
+    }
+
+    public static Builder orderBooks() {
+      return new Builder();
+    }
+
+    /**
+     * @param symbols table to intern the symbols with, a new one by default
+     */
+    public Builder withSymbolTable(SymbolTable symbols) {
+      this.symbols = symbols;
+      return this;
+    }
+
+    /**
+     * @param listener called on the updating thread after every change of a book
+     */
+    public Builder withListener(OrderBookListener listener) {
+      this.listener = listener;
+      return this;
+    }
+
+    /**
+     * @param capacity levels of each side held before a book has to grow, 16 by default
+     */
+    public Builder withCapacity(int capacity) {
+      this.capacity = capacity;
+      return this;
+    }
+
+    public OrderBooks build() {
+      if (capacity < 1) {
+        throw new IllegalArgumentException("capacity must be positive");
+      }
+      return new OrderBooks(this);
+    }
+  }
+}
@@ -0,0 +1,347 @@
+package com.studerw.tda.stream;
+
+import java.util.Arrays;
+import org.apache.commons.lang3.builder.ToStringBuilder;
+import org.apache.commons.lang3.builder.ToStringStyle;
+
+/**
+ * <p>
+ * One side of an {@link OrderBook}: price levels sorted in primitive arrays, each with its total
+ * size and number of orders (or market makers). Levels are addressed from the best one, level 0
+ * being the highest bid or the lowest ask.
+ * </p>
+ *
+ * <p>
+ * The levels are stored worst first, so the best level is the last element. Most changes happen at
+ * the inside of the book, where inserting or removing a level only shifts the few levels better
+ * than it, and replacing the whole side with a snapshot only rewrites the levels which changed.
+ * </p>
+ * <strong>This is not a thread safe class.</strong>
+ */
+public final class PriceLadder {
+
+  private final boolean bid;
+  //price of each level as a key which grows towards the best level: the price of a bid, the
+  //negated price of an ask
+  private double[] keys;
+  private long[] sizes;
+  private int[] orders;
+  private int levels;
+
+  /**
+   * @param bid whether this is the bid side, where higher prices are better
+   */
+  public PriceLadder(boolean bid) {
+    this(bid, 16);
+  }
+
+  /**
+   * @param bid whether this is the bid side, where higher prices are better
+   * @param capacity number of levels held before the arrays have to grow
+   */
+  public PriceLadder(boolean bid, int capacity) {
+    if (capacity < 1) {
+      throw new IllegalArgumentException("capacity must be positive");
+    }
+    this.bid = bid;
+    this.keys = new double[capacity];
+    this.sizes = new long[capacity];
+    this.orders = new int[capacity];
+  }
+
+  /**
+   * Set, add or remove the level at a price.
+   *
+   * @param price price of the level
+   * @param size total size of the level, 0 to remove it
+   * @param count number of orders or market makers at the level
+   * @return whether the ladder changed
+   * @throws IllegalArgumentException if the price is not finite
+   */
+  public boolean set(double price, long size, int count) {
+    if (!Double.isFinite(price)) {
+      throw new IllegalArgumentException("Price is not finite: " + price);
+    }
+    double key = key(price);
+    int i = search(key);
+    if (i >= 0) {
+      if (size <= 0) {
+        System.arraycopy(keys, i + 1, keys, i, levels - i - 1);
+        System.arraycopy(sizes, i + 1, sizes, i, levels - i - 1);
+        System.arraycopy(orders, i + 1, orders, i, levels - i - 1);
+        levels--;
+        return true;
+      }
+      if (sizes[i] == size && orders[i] == count) {
+        return false;
+      }
+      sizes[i] = size;
+      orders[i] = count;
+      return true;
+    }
+    if (size <= 0) {
+      return false;
+    }
+    i = -i - 1;
+    ensureCapacity(levels + 1);
+    System.arraycopy(keys, i, keys, i + 1, levels - i);
+    System.arraycopy(sizes, i, sizes, i + 1, levels - i);
+    System.arraycopy(orders, i, orders, i + 1, levels - i);
+    keys[i] = key;
+    sizes[i] = size;
+    orders[i] = count;
+    levels++;
+    return true;
+  }
+
+  /**
+   * Replace every level with a snapshot of the side, keeping the levels which did not change. The
+   * prices must be sorted best first, as TDA sends them.
+   *
+   * @param prices price of each level, best first
+   * @param sizes total size of each level
+   * @param counts number of orders or market makers of each level
+   * @param count number of levels in the arrays
+   * @return number of levels rewritten or removed, 0 if the snapshot equals the ladder
+   * @throws IllegalArgumentException if a price is not finite or the prices are not sorted best
+   * first
+   */
+  public int replace(double[] prices, long[] sizes, int[] counts, int count) {
+    for (int i = 0; i < count; i++) {
+      if (!Double.isFinite(prices[i])) {
+        throw new IllegalArgumentException("Price is not finite: " + prices[i]);
+      }
+      if (i > 0 && key(prices[i]) >= key(prices[i - 1])) {
+        throw new IllegalArgumentException("Prices are not sorted best first: " + prices[i]);
+      }
+    }
+    //skip the levels at the worst end which the snapshot keeps as they are
+    int changed = 0;
+    int from = 0;
+    int to = count - 1;
+    while (from < levels && to >= 0 && keys[from] == key(prices[to])
+        && this.sizes[from] == sizes[to] && orders[from] == counts[to]) {
+      from++;
+      to--;
+    }
+    //then the best end
+    int end = levels - 1;
+    int start = 0;
+    while (end >= from && start <= to && keys[end] == key(prices[start])
+        && this.sizes[end] == sizes[start] && orders[end] == counts[start]) {
+      end--;
+      start++;
+    }
+    int remaining = to - start + 1;
+    int old = end - from + 1;
+    int newLevels = from + remaining + (levels - 1 - end);
+    ensureCapacity(newLevels);
+    //move the unchanged best levels into place, then write the changed ones
+    int best = levels - 1 - end;
+    if (best > 0 && old != remaining) {
+      System.arraycopy(keys, end + 1, keys, from + remaining, best);
+      System.arraycopy(this.sizes, end + 1, this.sizes, from + remaining, best);
+      System.arraycopy(orders, end + 1, orders, from + remaining, best);
+    }
+    for (int i = to; i >= start; i--) {
+      int level = from + (to - i);
+      double key = key(prices[i]);
+      if (level > end || keys[level] != key || this.sizes[level] != sizes[i]
+          || orders[level] != counts[i]) {
+        changed++;
+      }
+      keys[level] = key;
+      this.sizes[level] = sizes[i];
+      orders[level] = counts[i];
+    }
+    changed += Math.max(0, old - remaining);
+    levels = newLevels;
+    return changed;
+  }
+
+  /**
+   * Remove every level.
+   */
+  public void clear() {
+    levels = 0;
+  }
+
+  public boolean isBid() {
+    return bid;
+  }
+
+  /**
+   * @return number of price levels
+   */
+  public int getLevels() {
+    return levels;
+  }
+
+  /**
+   * @return best price, NaN if the side is empty
+   */
+  public double getBest() {
+    return levels == 0 ? Double.NaN : getPrice(0);
+  }
+
+  /**
+   * @param level level from the best, 0 being the best
+   * @return price of the level
+   * @throws IndexOutOfBoundsException if there is no such level
+   */
+  public double getPrice(int level) {
+    return price(keys[index(level)]);
+  }
+
+  /**
+   * @param level level from the best, 0 being the best
+   * @return total size of the level
+   * @throws IndexOutOfBoundsException if there is no such level
+   */
+  public long getSize(int level) {
+    return sizes[index(level)];
+  }
+
+  /**
+   * @param level level from the best, 0 being the best
+   * @return number of orders or market makers of the level
+   * @throws IndexOutOfBoundsException if there is no such level
+   */
+  public int getOrders(int level) {
+    return orders[index(level)];
+  }
+
+  /**
+   * @param price a price
+   * @return level of the price from the best, -1 if there is no level at the price
+   */
+  public int level(double price) {
+    int i = search(key(price));
+    return i < 0 ? -1 : levels - 1 - i;
+  }
+
+  /**
+   * @param price a price
+   * @return size of the level at the price, 0 if none
+   */
+  public long getSizeAt(double price) {
+    int i = search(key(price));
+    return i < 0 ? 0 : sizes[i];
+  }
+
+  /**
+   * Size available at a price or better, i.e. what an order at that price could fill against the
+   * other side.
+   *
+   * @param price a price
+   * @return total size of the levels at the price or better
+   */
+  public long getCumulativeSize(double price) {
+    int i = search(key(price));
+    int worst = i >= 0 ? i : -i - 1;
+    long total = 0;
+    for (int j = levels - 1; j >= worst; j--) {
+      total += sizes[j];
+    }
+    return total;
+  }
+
+  /**
+   * @param depth number of levels from the best
+   * @return total size of the best <em>depth</em> levels
+   */
+  public long getDepthSize(int depth) {
+    long total = 0;
+    for (int j = levels - 1; j >= Math.max(0, levels - depth); j--) {
+      total += sizes[j];
+    }
+    return total;
+  }
+
+  /**
+   * Copy the best levels, best first.
+   *
+   * @param n most levels copied
+   * @param prices receives the prices
+   * @param sizes receives the sizes
+   * @return number of levels copied
+   */
+  public int top(int n, double[] prices, long[] sizes) {
+    int count = Math.min(Math.min(n, levels), Math.min(prices.length, sizes.length));
+    for (int level = 0; level < count; level++) {
+      int i = levels - 1 - level;
+      prices[level] = price(keys[i]);
+      sizes[level] = this.sizes[i];
+    }
+    return count;
+  }
+
+  /**
+   * Copy every level into another ladder of the same side.
+   *
+   * @param to cleared and then filled with the levels
+   */
+  public void copyTo(PriceLadder to) {
+    if (to.bid != bid) {
+      throw new IllegalArgumentException("Cannot copy the " + side() + " side into the other");
+    }
+    int n = levels;
+    to.ensureCapacity(n);
+    System.arraycopy(keys, 0, to.keys, 0, n);
+    System.arraycopy(sizes, 0, to.sizes, 0, n);
+    System.arraycopy(orders, 0, to.orders, 0, n);
+    to.levels = n;
+  }
+
+  private double key(double price) {
+    return bid ? price : -price;
+  }
+
+  private double price(double key) {
+    return bid ? key : -key;
+  }
+
+  private int index(int level) {
+    if (level < 0 || level >= levels) {
+      throw new IndexOutOfBoundsException("No level " + level + " of " + levels);
+    }
+    return levels - 1 - level;
+  }
+
+  /**
+   * @return index of the key, or -(insertion point) - 1 like {@link Arrays#binarySearch}
+   */
+  private int search(double key) {
+    //the best levels are checked first, most updates are there
+    if (levels > 0 && keys[levels - 1] == key) {
+      return levels - 1;
+    }
+    return Arrays.binarySearch(keys, 0, levels, key);
+  }
+
+  private void ensureCapacity(int capacity) {
+    if (capacity > keys.length) {
+      int length = Math.max(capacity, keys.length * 2);
+      keys = Arrays.copyOf(keys, length);
+      sizes = Arrays.copyOf(sizes, length);
+      orders = Arrays.copyOf(orders, length);
+    }
+  }
+
+  private String side() {
+    return bid ? "bid" : "ask";
+  }
+
+  @Override
+  public String toString() {
+    StringBuilder ladder = new StringBuilder("[");
+    for (int level = 0; level < levels; level++) {
+      ladder.append(level == 0 ? "" : ", ").append(getSize(level)).append('@')
+          .append(getPrice(level));
+    }
+    return new ToStringBuilder(this, ToStringStyle.SHORT_PREFIX_STYLE)
+        .append("side", side())
+        .append("levels", ladder.append(']'))
+        .toString();
+  }
+}
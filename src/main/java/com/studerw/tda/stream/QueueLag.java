@@ -0,0 +1,70 @@
+package com.studerw.tda.stream;
+
+import com.studerw.tda.model.stream.Service;
+import java.util.concurrent.TimeUnit;
+import org.apache.commons.lang3.builder.ToStringBuilder;
+import org.apache.commons.lang3.builder.ToStringStyle;
+
+/**
+ * Snapshot of how long the ticks of one {@link Service} waited in a {@link TickRing} before a
+ * {@link TickSubscriber} received them, from publishing to the start of the handler call.
+ */
+public final class QueueLag {
+
+  private final Service service;
+  private final long delivered;
+  private final long totalNanos;
+  private final long maxNanos;
+  private final long lastNanos;
+
+  QueueLag(Service service, long delivered, long totalNanos, long maxNanos, long lastNanos) {
+    this.service = service;
+    this.delivered = delivered;
+    this.totalNanos = totalNanos;
+    this.maxNanos = maxNanos;
+    this.lastNanos = lastNanos;
+  }
+
+  public Service getService() {
+    return service;
+  }
+
+  /**
+   * @return number of ticks of the service received, conflated ticks counting once
+   */
+  public long getDelivered() {
+    return delivered;
+  }
+
+  /**
+   * @return mean time in the ring in nanoseconds, 0 if none were delivered
+   */
+  public long getMeanNanos() {
+    return delivered == 0 ? 0 : totalNanos / delivered;
+  }
+
+  /**
+   * @return longest time in the ring in nanoseconds
+   */
+  public long getMaxNanos() {
+    return maxNanos;
+  }
+
+  /**
+   * @return time in the ring of the last tick received in nanoseconds
+   */
+  public long getLastNanos() {
+    return lastNanos;
+  }
+
+  @Override
+  public String toString() {
+    return new ToStringBuilder(this, ToStringStyle.SHORT_PREFIX_STYLE)
+        .append("service", service)
+        .append("delivered", delivered)
+        .append("meanMicros", TimeUnit.NANOSECONDS.toMicros(getMeanNanos()))
+        .append("maxMicros", TimeUnit.NANOSECONDS.toMicros(maxNanos))
+        .append("lastMicros", TimeUnit.NANOSECONDS.toMicros(lastNanos))
+        .toString();
+  }
+}
@@ -0,0 +1,507 @@
+package com.studerw.tda.stream;
+
+import com.studerw.tda.client.QuoteFetcher;
+import com.studerw.tda.client.TdaClient;
+import com.studerw.tda.model.quote.EquityQuote;
+import com.studerw.tda.model.quote.EtfQuote;
+import com.studerw.tda.model.quote.ForexQuote;
+import com.studerw.tda.model.quote.FutureOptionQuote;
+import com.studerw.tda.model.quote.FutureQuote;
+import com.studerw.tda.model.quote.IndexQuote;
+import com.studerw.tda.model.quote.MutualFundQuote;
+import com.studerw.tda.model.quote.OptionQuote;
+import com.studerw.tda.model.quote.Quote;
+import com.studerw.tda.model.stream.Service;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.List;
+import java.util.concurrent.locks.StampedLock;
+import org.apache.commons.lang3.builder.ToStringBuilder;
+import org.apache.commons.lang3.builder.ToStringStyle;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+/**
+ * <p>
+ * Current level one quote of every symbol, kept up to date by the stream so reading a price is an
+ * array lookup instead of a {@link TdaClient#fetchQuotes(List)} call. Each symbol has a row of
+ * primitive {@link Field}s indexed by its id in the {@link SymbolTable}, which must be the one
+ * the stream client decodes with. Symbols the stream has not sent yet are seeded with {@link
+ * TdaClient#fetchQuotes(List, java.util.function.Consumer)}:
+ * </p>
+ *
+ * <pre class="code">
+ *     SymbolTable symbols = new SymbolTable();
+ *     QuoteBook book = QuoteBook.Builder.quoteBook()
+ *         .withSymbolTable(symbols)
+ *         .withTdaClient(tdaClient)
+ *         .build();
+ *     TdaStreamClient stream = TdaStreamClient.Builder.tdaStreamClient()
+ *         .withTdaClient(tdaClient)
+ *         .withSymbolTable(symbols)
+ *         .withLevelOneHandler(book)
+ *         .build();
+ *     book.seed(watchList);
+ *     ...
+ *     double mid = (book.get("MSFT", Field.BID) + book.get("MSFT", Field.ASK)) / 2;
+ * </pre>
+ *
+ * <p>
+ * Updates lock the row of their symbol only against each other, i.e. the stream and seeding.
+ * Readers never lock: they read a row optimistically and retry if it was updated meanwhile, so
+ * they always see the fields of one update together and never hold up the stream. Fields the
+ * stream has sent are not overwritten by seeding.
+ * </p>
+ * <strong>This is a thread safe class.</strong>
+ */
+public final class QuoteBook implements LevelOneHandler {
+
+  private static final Logger LOGGER = LoggerFactory.getLogger(QuoteBook.class);
+  private static final Field[] FIELDS = Field.values();
+  private static final int SPINS = 100;
+  //field of the book of each streaming field id, by service ordinal, -1 if not in the book
+  private static final byte[][] STREAM_FIELDS = new byte[Service.values().length][];
+
+  /**
+   * Fields of a quote. Prices are in the currency of the symbol, sizes and volumes in shares or
+   * contracts, and times in milliseconds since the epoch. Every field is held as a double, which
+   * is exact for integers up to 2<sup>53</sup>.
+   */
+  public enum Field {
+    BID,
+    ASK,
+    LAST,
+    BID_SIZE,
+    ASK_SIZE,
+    LAST_SIZE,
+    VOLUME,
+    OPEN,
+    HIGH,
+    LOW,
+    CLOSE,
+    NET_CHANGE,
+    MARK,
+    QUOTE_TIME,
+    TRADE_TIME
+  }
+
+  static {
+    streamFields(Service.QUOTE, 1, 2, 3, 4, 5, 9, 8, 28, 12, 13, 15, 29, 49, 50, 51);
+    //option quote and trade times are seconds of the day, so only the update time is kept
+    streamFields(Service.OPTION, 2, 3, 4, 20, 21, 22, 8, 19, 5, 6, 7, 23, 41, -1, -1);
+    streamFields(Service.LEVELONE_FUTURES, 1, 2, 3, 4, 5, 9, 8, 18, 12, 13, 14, 19, 24, 10, 11);
+    streamFields(Service.LEVELONE_FUTURES_OPTIONS, 1, 2, 3, 4, 5, 9, 8, 18, 12, 13, 14, 19, 24,
+        10, 11);
+    streamFields(Service.LEVELONE_FOREX, 1, 2, 3, 4, 5, 7, 6, 15, 10, 11, 12, 16, 29, 8, 9);
+  }
+
+  private final SymbolTable symbols;
+  private final QuoteFetcher tdaClient;
+  private volatile Row[] rows;
+
+  private QuoteBook(Builder builder) {
+    this.symbols = builder.symbols == null ? new SymbolTable() : builder.symbols;
+    this.tdaClient = builder.tdaClient;
+    this.rows = new Row[0];
+    resize(Math.max(builder.expectedSymbols, symbols.size()));
+  }
+
+  /**
+   * Apply a streamed update to the row of its symbol. Allocates nothing once the row exists.
+   *
+   * @param tick update of a level one service, decoded with this book's symbol table
+   */
+  @Override
+  public void onTick(LevelOneTick tick) {
+    Service service = tick.getService();
+    byte[] map = service == null ? null : STREAM_FIELDS[service.ordinal()];
+    int id = tick.getSymbolId();
+    if (map == null || id < 0) {
+      return;
+    }
+    Row row = row(id);
+    long stamp = row.lock.writeLock();
+    try {
+      long remaining = tick.getFields();
+      while (remaining != 0) {
+        int field = Long.numberOfTrailingZeros(remaining);
+        remaining &= remaining - 1;
+        int to = field < map.length ? map[field] : -1;
+        if (to >= 0) {
+          row.values[to] = tick.getDouble(field);
+          row.streamed |= 1 << to;
+        }
+      }
+      row.updated = Math.max(row.updated, tick.getTimestamp());
+    } finally {
+      row.lock.unlockWrite(stamp);
+    }
+  }
+
+  /**
+   * Fetch quotes of the symbols which have no quote yet, in chunks on the calling thread.
+   *
+   * @param symbols the symbols
+   * @return number of symbols seeded
+   * @throws IllegalStateException if the book has no {@link TdaClient}
+   * @throws RuntimeException if fetching the quotes fails, see {@link TdaClient#fetchQuotes(List,
+   * java.util.function.Consumer)}
+   */
+  public int seed(Collection<String> symbols) {
+    if (tdaClient == null) {
+      throw new IllegalStateException("Cannot seed quotes without a TdaClient");
+    }
+    List<String> missing = new ArrayList<>();
+    for (String symbol : symbols) {
+      int id = this.symbols.id(symbol);
+      if (id < 0 || getUpdated(id) < 0) {
+        missing.add(symbol);
+      }
+    }
+    if (missing.isEmpty()) {
+      return 0;
+    }
+    LOGGER.debug("Seeding {} of {} symbols", missing.size(), symbols.size());
+    int[] seeded = {0};
+    tdaClient.fetchQuotes(missing, quote -> {
+      if (apply(quote)) {
+        seeded[0]++;
+      }
+    });
+    return seeded[0];
+  }
+
+  /**
+   * Set the fields of a symbol from a quote fetched over REST, except those the stream has sent.
+   *
+   * @param quote a quote, e.g. of {@link TdaClient#fetchQuotes(List)}
+   * @return whether the quote's type is supported
+   */
+  public boolean apply(Quote quote) {
+    double[] values = values(quote);
+    if (values == null) {
+      LOGGER.debug("Cannot apply a quote of type {}", quote.getAssetType());
+      return false;
+    }
+    Row row = row(symbols.intern(quote.getSymbol()));
+    long stamp = row.lock.writeLock();
+    try {
+      for (int i = 0; i < values.length; i++) {
+        if ((row.streamed & (1 << i)) == 0 && !Double.isNaN(values[i])) {
+          row.values[i] = values[i];
+          row.seeded |= 1 << i;
+        }
+      }
+      //a quote without any time still counts as updated, if only at the epoch
+      double time = Math.max(nan(values[Field.QUOTE_TIME.ordinal()], 0),
+          nan(values[Field.TRADE_TIME.ordinal()], 0));
+      row.updated = Math.max(row.updated, (long) time);
+    } finally {
+      row.lock.unlockWrite(stamp);
+    }
+    return true;
+  }
+
+  /**
+   * @param symbol the symbol
+   * @param field the field
+   * @return the field's value, NaN if the symbol has no quote or the field was never set
+   */
+  public double get(String symbol, Field field) {
+    return get(symbols.id(symbol), field);
+  }
+
+  /**
+   * @param symbolId id of the symbol in the book's {@link SymbolTable}
+   * @param field the field
+   * @return the field's value, NaN if the symbol has no quote or the field was never set
+   */
+  public double get(int symbolId, Field field) {
+    Row row = rowOrNull(symbolId);
+    if (row == null) {
+      return Double.NaN;
+    }
+    int i = field.ordinal();
+    for (int attempt = 1; ; attempt++) {
+      long stamp = row.lock.tryOptimisticRead();
+      double value = ((row.streamed | row.seeded) & (1 << i)) == 0 ? Double.NaN : row.values[i];
+      if (stamp != 0 && row.lock.validate(stamp)) {
+        return value;
+      }
+      spin(attempt);
+    }
+  }
+
+  /**
+   * Copy every field of a symbol, consistent with each other.
+   *
+   * @param symbolId id of the symbol in the book's {@link SymbolTable}
+   * @param to receives the value of each field at its {@link Field#ordinal()}, NaN if never set
+   * @return time of the last update in milliseconds since the epoch, -1 if the symbol has no quote
+   */
+  public long read(int symbolId, double[] to) {
+    if (to.length < FIELDS.length) {
+      throw new IllegalArgumentException("to must hold " + FIELDS.length + " fields");
+    }
+    Row row = rowOrNull(symbolId);
+    if (row == null) {
+      Arrays.fill(to, 0, FIELDS.length, Double.NaN);
+      return -1;
+    }
+    for (int attempt = 1; ; attempt++) {
+      long stamp = row.lock.tryOptimisticRead();
+      int present = row.streamed | row.seeded;
+      for (int i = 0; i < FIELDS.length; i++) {
+        to[i] = (present & (1 << i)) == 0 ? Double.NaN : row.values[i];
+      }
+      long updated = row.updated;
+      if (stamp != 0 && row.lock.validate(stamp)) {
+        return updated;
+      }
+      spin(attempt);
+    }
+  }
+
+  /**
+   * Same as {@link #read(int, double[])}, fetching the quote first if the symbol has none yet.
+   *
+   * @param symbol the symbol
+   * @param to receives the value of each field at its {@link Field#ordinal()}
+   * @return time of the last update, -1 if the symbol has no quote even after fetching it
+   */
+  public long read(String symbol, double[] to) {
+    int id = symbols.id(symbol);
+    long updated = read(id, to);
+    if (updated < 0 && tdaClient != null) {
+      seed(Collections.singletonList(symbol));
+      updated = read(symbols.id(symbol), to);
+    }
+    return updated;
+  }
+
+  /**
+   * @param symbolId id of the symbol in the book's {@link SymbolTable}
+   * @return time of the last update in milliseconds since the epoch, -1 if the symbol has no quote
+   */
+  public long getUpdated(int symbolId) {
+    Row row = rowOrNull(symbolId);
+    if (row == null) {
+      return -1;
+    }
+    for (int attempt = 1; ; attempt++) {
+      long stamp = row.lock.tryOptimisticRead();
+      long updated = row.updated;
+      if (stamp != 0 && row.lock.validate(stamp)) {
+        return updated;
+      }
+      spin(attempt);
+    }
+  }
+
+  /**
+   * @param symbol the symbol
+   * @return id of the symbol, -1 if the book has never seen it
+   */
+  public int id(String symbol) {
+    return symbols.id(symbol);
+  }
+
+  public SymbolTable getSymbolTable() {
+    return symbols;
+  }
+
+  private Row row(int id) {
+    Row[] r = rows;
+    return id < r.length ? r[id] : resize(id + 1)[id];
+  }
+
+  private Row rowOrNull(int id) {
+    Row[] r = rows;
+    return id < 0 || id >= r.length ? null : r[id];
+  }
+
+  private synchronized Row[] resize(int size) {
+    Row[] old = rows;
+    if (size <= old.length) {
+      return old;
+    }
+    Row[] r = Arrays.copyOf(old, Math.max(size, old.length * 2));
+    for (int i = old.length; i < r.length; i++) {
+      r[i] = new Row();
+    }
+    rows = r;
+    return r;
+  }
+
+  private static void spin(int attempt) {
+    if (attempt % SPINS == 0) {
+      Thread.yield();
+    }
+  }
+
+  private static double nan(double value, double defaultValue) {
+    return Double.isNaN(value) ? defaultValue : value;
+  }
+
+  private static void streamFields(Service service, int... fields) {
+    byte[] map = new byte[StreamFields.count(service)];
+    Arrays.fill(map, (byte) -1);
+    for (int i = 0; i < fields.length; i++) {
+      if (fields[i] >= 0) {
+        map[fields[i]] = (byte) i;
+      }
+    }
+    STREAM_FIELDS[service.ordinal()] = map;
+  }
+
+  /**
+   * @return the fields of a quote by {@link Field#ordinal()}, NaN where the quote has none, or
+   * null if the type of quote is not supported
+   */
+  static double[] values(Quote quote) {
+    double[] v = new double[FIELDS.length];
+    Arrays.fill(v, Double.NaN);
+    if (quote instanceof EquityQuote) {
+      EquityQuote q = (EquityQuote) quote;
+      set(v, q.getBidPrice(), q.getAskPrice(), q.getLastPrice(), q.getBidSize(), q.getAskSize(),
+          q.getLastSize(), q.getTotalVolume(), q.getOpenPrice(), q.getHighPrice(),
+          q.getLowPrice(), q.getClosePrice(), q.getNetChange(), q.getMark(),
+          q.getQuoteTimeInLong(), q.getTradeTimeInLong());
+    } else if (quote instanceof EtfQuote) {
+      EtfQuote q = (EtfQuote) quote;
+      set(v, q.getBidPrice(), q.getAskPrice(), q.getLastPrice(), q.getBidSize(), q.getAskSize(),
+          q.getLastSize(), q.getTotalVolume(), q.getOpenPrice(), q.getHighPrice(),
+          q.getLowPrice(), q.getClosePrice(), q.getNetChange(), q.getMark(),
+          q.getQuoteTimeInLong(), q.getTradeTimeInLong());
+    } else if (quote instanceof OptionQuote) {
+      OptionQuote q = (OptionQuote) quote;
+      set(v, q.getBidPrice(), q.getAskPrice(), q.getLastPrice(), q.getBidSize(), q.getAskSize(),
+          q.getLastSize(), q.getTotalVolume(), q.getOpenPrice(), q.getHighPrice(),
+          q.getLowPrice(), q.getClosePrice(), q.getNetChange(), q.getMark(),
+          q.getQuoteTimeInLong(), q.getTradeTimeInLong());
+    } else if (quote instanceof IndexQuote) {
+      IndexQuote q = (IndexQuote) quote;
+      set(v, null, null, q.getLastPrice(), null, null, null, q.getTotalVolume(),
+          q.getOpenPrice(), q.getHighPrice(), q.getLowPrice(), q.getClosePrice(),
+          q.getNetChange(), null, null, q.getTradeTimeInLong());
+    } else if (quote instanceof MutualFundQuote) {
+      MutualFundQuote q = (MutualFundQuote) quote;
+      set(v, null, null, null, null, null, null, q.getTotalVolume(), null, null, null,
+          q.getClosePrice(), q.getNetChange(), null, null, q.getTradeTimeInLong());
+    } else if (quote instanceof ForexQuote) {
+      ForexQuote q = (ForexQuote) quote;
+      set(v, q.getBidPriceInDouble(), q.getAskPriceInDouble(), q.getLastPriceInDouble(),
+          other(q, "bidSizeInLong"), other(q, "askSizeInLong"), other(q, "lastSizeInLong"),
+          other(q, "totalVolume"), q.getOpenPriceInDouble(), q.getHighPriceInDouble(),
+          q.getLowPriceInDouble(), q.getClosePriceInDouble(), q.getChangeInDouble(),
+          q.getMark(), other(q, "quoteTimeInLong"), other(q, "tradeTimeInLong"));
+    } else if (quote instanceof FutureQuote) {
+      FutureQuote q = (FutureQuote) quote;
+      set(v, q.getBidPriceInDouble(), q.getAskPriceInDouble(), q.getLastPriceInDouble(),
+          other(q, "bidSizeInLong"), other(q, "askSizeInLong"), other(q, "lastSizeInLong"),
+          other(q, "totalVolume"), q.getOpenPriceInDouble(), q.getHighPriceInDouble(),
+          q.getLowPriceInDouble(), q.getClosePriceInDouble(), q.getChangeInDouble(),
+          q.getMark(), other(q, "quoteTimeInLong"), other(q, "tradeTimeInLong"));
+    } else if (quote instanceof FutureOptionQuote) {
+      FutureOptionQuote q = (FutureOptionQuote) quote;
+      set(v, q.getBidPriceInDouble(), q.getAskPriceInDouble(), q.getLastPriceInDouble(),
+          other(q, "bidSizeInLong"), other(q, "askSizeInLong"), other(q, "lastSizeInLong"),
+          other(q, "totalVolume"), q.getOpenPriceInDouble(), q.getHighPriceInDouble(),
+          q.getLowPriceInDouble(), q.getClosePriceInDouble(), q.getNetChangeInDouble(),
+          q.getMark(), other(q, "quoteTimeInLong"), other(q, "tradeTimeInLong"));
+    } else {
+      return null;
+    }
+    return v;
+  }
+
+  /**
+   * @return a number TDA sent which the quote's class has no property for, e.g. the sizes and times
+   * of forex and futures quotes, null if absent
+   */
+  private static Number other(Quote quote, String name) {
+    Object value = quote.getOtherFields().get(name);
+    return value instanceof Number ? (Number) value : null;
+  }
+
+  /**
+   * Set the values in the order of {@link Field}, skipping nulls.
+   */
+  private static void set(double[] to, Number... values) {
+    for (int i = 0; i < values.length; i++) {
+      Number value = values[i];
+      if (value != null) {
+        to[i] = value.doubleValue();
+      }
+    }
+  }
+
+  @Override
+  public String toString() {
+    return new ToStringBuilder(this, ToStringStyle.SHORT_PREFIX_STYLE)
+        .append("symbols", symbols.size())
+        .append("seeding", tdaClient != null)
+        .toString();
+  }
+
+  /**
+   * Fields of one symbol. Only written under the write lock, read optimistically.
+   */
+  private static final class Row {
+
+    private final StampedLock lock = new StampedLock();
+    private final double[] values = new double[FIELDS.length];
+    //bit n set if field n was streamed or seeded
+    private int streamed;
+    private int seeded;
+    private long updated = -1;
+  }
+
+  public static final class Builder {
+
+    private SymbolTable symbols;
+    private QuoteFetcher tdaClient;
+    private int expectedSymbols = 1024;
+
+    private Builder() {
+    }
+
+    public static Builder quoteBook() {
+      return new Builder();
+    }
+
+    /**
+     * @param symbols table the stream client decodes with, a new one by default
+     */
+    public Builder withSymbolTable(SymbolTable symbols) {
+      this.symbols = symbols;
+      return this;
+    }
+
+    /**
+     * @param tdaClient client to seed symbols the stream has not sent yet, usually the {@link
+     * TdaClient}, none by default
+     */
+    public Builder withTdaClient(QuoteFetcher tdaClient) {
+      this.tdaClient = tdaClient;
+      return this;
+    }
+
+    /**
+     * @param expectedSymbols number of symbols held before the book has to grow, 1024 by default
+     */
+    public Builder withExpectedSymbols(int expectedSymbols) {
+      this.expectedSymbols = expectedSymbols;
+      return this;
+    }
+
+    public QuoteBook build() {
+      if (expectedSymbols < 1) {
+        throw new IllegalArgumentException("expectedSymbols must be positive");
+      }
+      return new QuoteBook(this);
+    }
+  }
+}
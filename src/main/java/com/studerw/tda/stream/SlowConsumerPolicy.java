@@ -0,0 +1,23 @@
+package com.studerw.tda.stream;
+
+/**
+ * What a {@link TickSubscriber} does when it falls behind the {@link TickRing}. The producer never
+ * waits for subscribers, so a subscriber lapped by the producer always loses the overwritten ticks;
+ * the policy decides how it catches up before that happens and what it receives after.
+ */
+public enum SlowConsumerPolicy {
+
+  /**
+   * Receive every tick still in the ring, in order. Ticks overwritten before they were read are
+   * skipped and counted as dropped.
+   */
+  DROP,
+
+  /**
+   * Once the backlog exceeds the conflation threshold, merge the backlog by symbol and receive one
+   * tick per symbol holding every field that changed, instead of every update. Catches up with a
+   * busy market without losing the latest value of any field still in the ring. Consumers which
+   * only ever want the latest state should use {@link ConflatedTicks} instead.
+   */
+  CONFLATE
+}
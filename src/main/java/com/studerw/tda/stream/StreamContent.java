@@ -0,0 +1,114 @@
+package com.studerw.tda.stream;
+
+import com.fasterxml.jackson.databind.JsonNode;
+import com.studerw.tda.model.stream.Service;
+import org.apache.commons.lang3.builder.ToStringBuilder;
+import org.apache.commons.lang3.builder.ToStringStyle;
+
+/**
+ * <p>
+ * One item of the <em>content</em> array of a streamed data message, i.e. the fields of a single
+ * key (symbol, option or account) that changed. TDA names most fields by number, e.g. field
+ * <em>1</em> of a {@link Service#QUOTE} is the bid price, and only sends the fields that changed
+ * since the last message, so every getter takes a default for a missing field.
+ * </p>
+ *
+ * @see <a href="https://developer.tdameritrade.com/content/streaming-data">Streaming Data</a>
+ */
+public final class StreamContent {
+
+  private final Service service;
+  private final long timestamp;
+  private final JsonNode node;
+
+  StreamContent(Service service, long timestamp, JsonNode node) {
+    this.service = service;
+    this.timestamp = timestamp;
+    this.node = node;
+  }
+
+  public Service getService() {
+    return service;
+  }
+
+  /**
+   * @return server timestamp of the message in milliseconds since the epoch
+   */
+  public long getTimestamp() {
+    return timestamp;
+  }
+
+  /**
+   * @return the symbol, option or account the fields belong to
+   */
+  public String getKey() {
+    return node.path("key").asText(null);
+  }
+
+  /**
+   * @return sequence number of the message, or -1 if the service has none
+   */
+  public long getSequence() {
+    return node.path("seq").asLong(-1);
+  }
+
+  public boolean has(int field) {
+    return node.has(Integer.toString(field));
+  }
+
+  public String getString(int field) {
+    return getString(Integer.toString(field));
+  }
+
+  /**
+   * @param name name of a field that is not numbered, e.g. <em>assetMainType</em>
+   * @return text of the field, or null if missing
+   */
+  public String getString(String name) {
+    JsonNode value = node.get(name);
+    return value == null || value.isNull() ? null : value.asText();
+  }
+
+  public double getDouble(int field, double defaultValue) {
+    JsonNode value = node.get(Integer.toString(field));
+    return value == null || !value.isNumber() ? defaultValue : value.doubleValue();
+  }
+
+  public long getLong(int field, long defaultValue) {
+    JsonNode value = node.get(Integer.toString(field));
+    return value == null || !value.isNumber() ? defaultValue : value.longValue();
+  }
+
+  public int getInt(int field, int defaultValue) {
+    JsonNode value = node.get(Integer.toString(field));
+    return value == null || !value.isNumber() ? defaultValue : value.intValue();
+  }
+
+  public boolean getBoolean(int field, boolean defaultValue) {
+    JsonNode value = node.get(Integer.toString(field));
+    return value == null || !value.isBoolean() ? defaultValue : value.booleanValue();
+  }
+
+  /**
+   * @return the field as JSON, e.g. the price levels of a book, or null if missing
+   */
+  public JsonNode getNode(int field) {
+    return node.get(Integer.toString(field));
+  }
+
+  /**
+   * @return the whole content item as received
+   */
+  public JsonNode getNode() {
+    return node;
+  }
+
+  @Override
+  public String toString() {
+    return new ToStringBuilder(this, ToStringStyle.SHORT_PREFIX_STYLE)
+        .append("service", service)
+        .append("timestamp", timestamp)
+        .append("content", node)
+        .toString();
+  }
+}
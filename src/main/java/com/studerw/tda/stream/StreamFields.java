@@ -0,0 +1,154 @@
+package com.studerw.tda.stream;
+
+import com.studerw.tda.model.stream.Service;
+import java.util.EnumMap;
+import java.util.Map;
+import java.util.StringJoiner;
+
+/**
+ * Number of fields of each streaming {@link Service}, used to subscribe to all of them when no
+ * fields are given, and the {@link Kind} of each field of the level one services.
+ *
+ * @see <a href="https://developer.tdameritrade.com/content/streaming-data">Streaming Data</a>
+ */
+public final class StreamFields {
+
+  /**
+   * How the value of a field is sent and stored. Sizes, volumes, days and millisecond times are
+   * {@link #LONG}, exchange ids and tick directions are single {@link #CHAR}s.
+   */
+  public enum Kind {
+    DOUBLE,
+    LONG,
+    CHAR,
+    BOOLEAN,
+    TEXT
+  }
+
+  private static final Map<Service, Integer> COUNTS = new EnumMap<>(Service.class);
+  private static final Map<Service, byte[]> KINDS = new EnumMap<>(Service.class);
+  private static final Kind[] KIND_VALUES = Kind.values();
+
+  static {
+    COUNTS.put(Service.ACCT_ACTIVITY, 4);
+    COUNTS.put(Service.CHART_EQUITY, 9);
+    COUNTS.put(Service.CHART_FUTURES, 7);
+    COUNTS.put(Service.QUOTE, 53);
+    COUNTS.put(Service.OPTION, 42);
+    COUNTS.put(Service.LEVELONE_FUTURES, 36);
+    COUNTS.put(Service.LEVELONE_FOREX, 30);
+    COUNTS.put(Service.LEVELONE_FUTURES_OPTIONS, 36);
+    COUNTS.put(Service.LISTED_BOOK, 4);
+    COUNTS.put(Service.NASDAQ_BOOK, 4);
+    COUNTS.put(Service.OPTIONS_BOOK, 4);
+    COUNTS.put(Service.FUTURES_BOOK, 4);
+    COUNTS.put(Service.FOREX_BOOK, 4);
+    COUNTS.put(Service.FUTURES_OPTIONS_BOOK, 4);
+    COUNTS.put(Service.NEWS_HEADLINE, 11);
+    COUNTS.put(Service.TIMESALE_EQUITY, 5);
+    COUNTS.put(Service.TIMESALE_FUTURES, 5);
+    COUNTS.put(Service.TIMESALE_FOREX, 5);
+    COUNTS.put(Service.TIMESALE_OPTIONS, 5);
+    COUNTS.put(Service.ACTIVES_NASDAQ, 2);
+    COUNTS.put(Service.ACTIVES_NYSE, 2);
+    COUNTS.put(Service.ACTIVES_OTCBB, 2);
+    COUNTS.put(Service.ACTIVES_OPTIONS, 2);
+
+    KINDS.put(Service.QUOTE, kinds(Service.QUOTE,
+        new int[]{0, 25, 39, 40, 48},
+        new int[]{6, 7, 14, 16, 26},
+        new int[]{17, 18, 41, 42},
+        new int[]{4, 5, 8, 9, 10, 11, 21, 22, 23, 27, 35, 36, 44, 45, 46, 50, 51, 52}));
+    KINDS.put(Service.OPTION, kinds(Service.OPTION,
+        new int[]{0, 1, 26, 28, 37},
+        new int[]{25, 40},
+        new int[]{},
+        new int[]{8, 9, 11, 12, 14, 15, 16, 18, 20, 21, 22, 27, 30, 31}));
+    KINDS.put(Service.LEVELONE_FUTURES, kinds(Service.LEVELONE_FUTURES,
+        new int[]{0, 16, 21, 22, 27, 28, 29, 34},
+        new int[]{6, 7, 15, 17},
+        new int[]{30, 32},
+        new int[]{4, 5, 8, 9, 10, 11, 23, 35}));
+    KINDS.put(Service.LEVELONE_FUTURES_OPTIONS, KINDS.get(Service.LEVELONE_FUTURES).clone());
+    KINDS.put(Service.LEVELONE_FOREX, kinds(Service.LEVELONE_FOREX,
+        new int[]{0, 14, 18, 20, 23, 24, 26},
+        new int[]{13},
+        new int[]{25},
+        new int[]{4, 5, 6, 7, 8, 9, 19}));
+  }
+
+  private StreamFields() {
+  }
+
+  /**
+   * @param service the service
+   * @return number of fields of the service, 1 (just the key) if unknown
+   */
+  public static int count(Service service) {
+    return COUNTS.getOrDefault(service, 1);
+  }
+
+  /**
+   * @param service the service
+   * @return every field of the service, i.e. 0 to {@link #count(Service)} - 1
+   */
+  public static int[] all(Service service) {
+    int[] fields = new int[count(service)];
+    for (int i = 0; i < fields.length; i++) {
+      fields[i] = i;
+    }
+    return fields;
+  }
+
+  /**
+   * @param service the service
+   * @param field the numeric field id
+   * @return kind of the field, or null if the service is not a level one service or the field is
+   * unknown
+   */
+  public static Kind kind(Service service, int field) {
+    byte[] kinds = KINDS.get(service);
+    if (kinds == null || field < 0 || field >= kinds.length) {
+      return null;
+    }
+    return KIND_VALUES[kinds[field]];
+  }
+
+  /**
+   * @return ordinals of the {@link Kind} of every field of a level one service indexed by field id,
+   * or null for other services. Not a copy, must not be modified.
+   */
+  static byte[] kinds(Service service) {
+    return KINDS.get(service);
+  }
+
+  private static byte[] kinds(Service service, int[] text, int[] chars, int[] booleans,
+      int[] longs) {
+    //every other field is a double
+    byte[] kinds = new byte[count(service)];
+    for (int field : text) {
+      kinds[field] = (byte) Kind.TEXT.ordinal();
+    }
+    for (int field : chars) {
+      kinds[field] = (byte) Kind.CHAR.ordinal();
+    }
+    for (int field : booleans) {
+      kinds[field] = (byte) Kind.BOOLEAN.ordinal();
+    }
+    for (int field : longs) {
+      kinds[field] = (byte) Kind.LONG.ordinal();
+    }
+    return kinds;
+  }
+
+  /**
+   * @return the fields as the comma separated <em>fields</em> parameter of a subscription
+   */
+  static String join(int[] fields) {
+    StringJoiner joiner = new StringJoiner(",");
+    for (int field : fields) {
+      joiner.add(Integer.toString(field));
+    }
+    return joiner.toString();
+  }
+}
@@ -0,0 +1,100 @@
+package com.studerw.tda.stream;
+
+import com.studerw.tda.model.stream.Service;
+import java.util.Collections;
+import java.util.List;
+import org.apache.commons.lang3.builder.ToStringBuilder;
+import org.apache.commons.lang3.builder.ToStringStyle;
+
+/**
+ * <p>
+ * Data of a service which the {@link TdaStreamClient} did not receive, either because the socket
+ * dropped and the subscription was replayed after reconnecting, or because the sequence numbers of
+ * a key skipped.
+ * </p>
+ *
+ * <p>
+ * The stream never resends what was missed. Fetch it instead, e.g. the current quotes of the keys
+ * with {@link com.studerw.tda.client.TdaClient#fetchQuotes(List)}, or the bars between {@link
+ * #getFrom()} and {@link #getTo()} with {@link
+ * com.studerw.tda.client.TdaClient#priceHistory(com.studerw.tda.model.history.PriceHistReq)}.
+ * </p>
+ */
+public final class StreamGap {
+
+  private final Service service;
+  private final List<String> keys;
+  private final long from;
+  private final long to;
+  private final long lastSequence;
+  private final long sequence;
+
+  StreamGap(Service service, List<String> keys, long from, long to, long lastSequence,
+      long sequence) {
+    this.service = service;
+    this.keys = Collections.unmodifiableList(keys);
+    this.from = from;
+    this.to = to;
+    this.lastSequence = lastSequence;
+    this.sequence = sequence;
+  }
+
+  public Service getService() {
+    return service;
+  }
+
+  /**
+   * @return keys which missed data, every key of the subscription after a reconnect
+   */
+  public List<String> getKeys() {
+    return keys;
+  }
+
+  /**
+   * @return time of the last data received before the gap in milliseconds since the epoch, 0 if
+   * none was received
+   */
+  public long getFrom() {
+    return from;
+  }
+
+  /**
+   * @return time the data resumed in milliseconds since the epoch
+   */
+  public long getTo() {
+    return to;
+  }
+
+  /**
+   * @return sequence number received before the gap, -1 after a reconnect
+   */
+  public long getLastSequence() {
+    return lastSequence;
+  }
+
+  /**
+   * @return sequence number received after the gap, -1 after a reconnect
+   */
+  public long getSequence() {
+    return sequence;
+  }
+
+  /**
+   * @return whether the gap is due to a dropped connection rather than skipped sequence numbers
+   */
+  public boolean isReconnect() {
+    return sequence < 0;
+  }
+
+  @Override
+  public String toString() {
+    return new ToStringBuilder(this, ToStringStyle.SHORT_PREFIX_STYLE)
+        .append("service", service)
+        .append("keys", keys)
+        .append("from", from)
+        .append("to", to)
+        .append("lastSequence", lastSequence)
+        .append("sequence", sequence)
+        .toString();
+  }
+}
@@ -0,0 +1,15 @@
+package com.studerw.tda.stream;
+
+/**
+ * Told of data the {@link TdaStreamClient} missed, so it can be backfilled. Called on the thread
+ * that replayed the subscriptions after a reconnect, or on the socket reader thread for skipped
+ * sequence numbers, so implementations should hand the backfill to another thread.
+ */
+@FunctionalInterface
+public interface StreamGapListener {
+
+  /**
+   * @param gap the service, keys and time span that missed data
+   */
+  void onGap(StreamGap gap);
+}
@@ -0,0 +1,15 @@
+package com.studerw.tda.stream;
+
+/**
+ * Receives the data of a {@link com.studerw.tda.model.stream.Service} registered with {@link
+ * TdaStreamClient#addListener}. Called on the socket reader thread, so implementations should
+ * return quickly and must not block.
+ */
+@FunctionalInterface
+public interface StreamListener {
+
+  /**
+   * @param content a single item of a data message, e.g. the changed fields of one symbol
+   */
+  void onContent(StreamContent content);
+}
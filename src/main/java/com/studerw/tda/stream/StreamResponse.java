@@ -0,0 +1,69 @@
+package com.studerw.tda.stream;
+
+import com.studerw.tda.model.stream.Command;
+import com.studerw.tda.model.stream.Service;
+import org.apache.commons.lang3.builder.ToStringBuilder;
+import org.apache.commons.lang3.builder.ToStringStyle;
+
+/**
+ * The streamer's response to a single request, e.g. a {@link Command#LOGIN} or {@link
+ * Command#SUBS}. A code of 0 means success.
+ */
+public final class StreamResponse {
+
+  private final Service service;
+  private final Command command;
+  private final String requestId;
+  private final long timestamp;
+  private final int code;
+  private final String msg;
+
+  StreamResponse(Service service, Command command, String requestId, long timestamp, int code,
+      String msg) {
+    this.service = service;
+    this.command = command;
+    this.requestId = requestId;
+    this.timestamp = timestamp;
+    this.code = code;
+    this.msg = msg;
+  }
+
+  public Service getService() {
+    return service;
+  }
+
+  public Command getCommand() {
+    return command;
+  }
+
+  public String getRequestId() {
+    return requestId;
+  }
+
+  public long getTimestamp() {
+    return timestamp;
+  }
+
+  public int getCode() {
+    return code;
+  }
+
+  public String getMsg() {
+    return msg;
+  }
+
+  public boolean isSuccess() {
+    return code == 0;
+  }
+
+  @Override
+  public String toString() {
+    return new ToStringBuilder(this, ToStringStyle.SHORT_PREFIX_STYLE)
+        .append("service", service)
+        .append("command", command)
+        .append("requestId", requestId)
+        .append("code", code)
+        .append("msg", msg)
+        .toString();
+  }
+}
@@ -0,0 +1,236 @@
+package com.studerw.tda.stream;
+
+import java.nio.charset.StandardCharsets;
+import java.util.Arrays;
+import java.util.concurrent.atomic.AtomicIntegerArray;
+import org.apache.commons.lang3.builder.ToStringBuilder;
+import org.apache.commons.lang3.builder.ToStringStyle;
+
+/**
+ * <p>
+ * Assigns every symbol a small, dense id (0, 1, 2, ...) which never changes, so per symbol state
+ * can be kept in arrays indexed by id instead of maps keyed by string. Symbols can be looked up
+ * straight from the bytes of a frame, and only a symbol seen for the first time allocates its
+ * {@link String}.
+ * </p>
+ *
+ * <p>
+ * Lookups are lock free. Adding a new symbol takes a lock.
+ * </p>
+ * <strong>This is a thread safe class.</strong>
+ */
+public final class SymbolTable {
+
+  private volatile Table table;
+  private volatile int size;
+
+  public SymbolTable() {
+    this(1024);
+  }
+
+  /**
+   * @param expectedSymbols number of symbols held before the table has to grow
+   */
+  public SymbolTable(int expectedSymbols) {
+    if (expectedSymbols < 1) {
+      throw new IllegalArgumentException("expectedSymbols must be positive");
+    }
+    this.table = new Table(Integer.highestOneBit(Math.max(expectedSymbols, 8) * 2 - 1) * 2);
+  }
+
+  /**
+   * @param bytes the ASCII or UTF-8 bytes of the symbol
+   * @param offset start of the symbol
+   * @param length length of the symbol
+   * @return id of the symbol, added if it is new
+   */
+  public int intern(byte[] bytes, int offset, int length) {
+    int hash = hash(bytes, offset, length);
+    int id = find(table, hash, bytes, offset, length);
+    return id >= 0 ? id : add(hash, Arrays.copyOfRange(bytes, offset, offset + length));
+  }
+
+  /**
+   * @param symbol the symbol
+   * @return id of the symbol, added if it is new
+   */
+  public int intern(String symbol) {
+    byte[] bytes = symbol.getBytes(StandardCharsets.UTF_8);
+    int hash = hash(bytes, 0, bytes.length);
+    int id = find(table, hash, bytes, 0, bytes.length);
+    return id >= 0 ? id : add(hash, bytes);
+  }
+
+  /**
+   * @param symbol the symbol
+   * @return id of the symbol, -1 if it was never added. Does not allocate for ASCII symbols.
+   */
+  public int id(String symbol) {
+    if (!ascii(symbol)) {
+      byte[] bytes = symbol.getBytes(StandardCharsets.UTF_8);
+      return find(table, hash(bytes, 0, bytes.length), bytes, 0, bytes.length);
+    }
+    //the chars of an ASCII symbol are its bytes, so it can be looked up without encoding it
+    Table t = table;
+    int hash = hash(symbol);
+    for (int i = hash & t.mask; ; i = (i + 1) & t.mask) {
+      int slot = t.slots.get(i);
+      if (slot == 0) {
+        return -1;
+      }
+      int id = slot - 1;
+      if (t.hashes[id] == hash && equals(t.bytes[id], symbol)) {
+        return id;
+      }
+    }
+  }
+
+  /**
+   * @param id id of a symbol
+   * @return the symbol
+   * @throws IndexOutOfBoundsException if no symbol has the id
+   */
+  public String symbol(int id) {
+    if (id < 0 || id >= size) {
+      throw new IndexOutOfBoundsException("No symbol with id " + id);
+    }
+    return table.names[id];
+  }
+
+  /**
+   * @return number of symbols, all ids are lower than this
+   */
+  public int size() {
+    return size;
+  }
+
+  private static int find(Table t, int hash, byte[] bytes, int offset, int length) {
+    for (int i = hash & t.mask; ; i = (i + 1) & t.mask) {
+      int slot = t.slots.get(i);
+      if (slot == 0) {
+        return -1;
+      }
+      int id = slot - 1;
+      if (t.hashes[id] == hash && equals(t.bytes[id], bytes, offset, length)) {
+        return id;
+      }
+    }
+  }
+
+  private synchronized int add(int hash, byte[] bytes) {
+    Table t = table;
+    int id = find(t, hash, bytes, 0, bytes.length);
+    if (id >= 0) {
+      return id;
+    }
+    id = size;
+    if ((id + 1) * 2 > t.slots.length()) {
+      t = grow(t, id);
+    }
+    t.names[id] = new String(bytes, StandardCharsets.UTF_8);
+    t.bytes[id] = bytes;
+    t.hashes[id] = hash;
+    //the volatile writes publish the name, bytes and hash written above, the size first so
+    //symbol(id) accepts every id a lookup can return
+    size = id + 1;
+    put(t, hash, id);
+    return id;
+  }
+
+  private Table grow(Table old, int count) {
+    Table t = new Table(old.slots.length() * 2);
+    System.arraycopy(old.names, 0, t.names, 0, count);
+    System.arraycopy(old.bytes, 0, t.bytes, 0, count);
+    System.arraycopy(old.hashes, 0, t.hashes, 0, count);
+    for (int id = 0; id < count; id++) {
+      put(t, t.hashes[id], id);
+    }
+    table = t;
+    return t;
+  }
+
+  private static void put(Table t, int hash, int id) {
+    int i = hash & t.mask;
+    while (t.slots.get(i) != 0) {
+      i = (i + 1) & t.mask;
+    }
+    t.slots.set(i, id + 1);
+  }
+
+  private static int hash(byte[] bytes, int offset, int length) {
+    int h = 0;
+    for (int i = offset; i < offset + length; i++) {
+      h = 31 * h + bytes[i];
+    }
+    return h ^ (h >>> 16);
+  }
+
+  private static boolean ascii(String symbol) {
+    for (int i = 0; i < symbol.length(); i++) {
+      if (symbol.charAt(i) >= 0x80) {
+        return false;
+      }
+    }
+    return true;
+  }
+
+  private static int hash(String symbol) {
+    int h = 0;
+    for (int i = 0; i < symbol.length(); i++) {
+      h = 31 * h + symbol.charAt(i);
+    }
+    return h ^ (h >>> 16);
+  }
+
+  private static boolean equals(byte[] symbol, String chars) {
+    if (symbol.length != chars.length()) {
+      return false;
+    }
+    for (int i = 0; i < symbol.length; i++) {
+      if (symbol[i] != chars.charAt(i)) {
+        return false;
+      }
+    }
+    return true;
+  }
+
+  private static boolean equals(byte[] symbol, byte[] bytes, int offset, int length) {
+    if (symbol.length != length) {
+      return false;
+    }
+    for (int i = 0; i < length; i++) {
+      if (symbol[i] != bytes[offset + i]) {
+        return false;
+      }
+    }
+    return true;
+  }
+
+  @Override
+  public String toString() {
+    return new ToStringBuilder(this, ToStringStyle.SHORT_PREFIX_STYLE)
+        .append("size", size)
+        .toString();
+  }
+
+  /**
+   * Open addressing table of ids plus the symbols by id. At most half full, so probes stay short.
+   */
+  private static final class Table {
+
+    private final int mask;
+    //id + 1 of the symbol in each slot, 0 if empty
+    private final AtomicIntegerArray slots;
+    private final String[] names;
+    private final byte[][] bytes;
+    private final int[] hashes;
+
+    private Table(int capacity) {
+      this.mask = capacity - 1;
+      this.slots = new AtomicIntegerArray(capacity);
+      this.names = new String[capacity / 2];
+      this.bytes = new byte[capacity / 2][];
+      this.hashes = new int[capacity / 2];
+    }
+  }
+}
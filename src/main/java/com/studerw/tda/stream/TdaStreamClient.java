@@ -0,0 +1,1102 @@
+package com.studerw.tda.stream;
+
+import com.fasterxml.jackson.databind.JsonNode;
+import com.fasterxml.jackson.databind.ObjectReader;
+import com.studerw.tda.client.HttpTdaClient;
+import com.studerw.tda.client.TdaClient;
+import com.studerw.tda.http.cache.CacheEndpoint;
+import com.studerw.tda.model.stream.Command;
+import com.studerw.tda.model.stream.Service;
+import com.studerw.tda.model.stream.StreamingRequest;
+import com.studerw.tda.model.user.Account;
+import com.studerw.tda.model.user.Key;
+import com.studerw.tda.model.user.StreamerInfo;
+import com.studerw.tda.model.user.StreamerSubscriptionKeys;
+import com.studerw.tda.model.user.UserPrincipals;
+import com.studerw.tda.parse.DefaultMapper;
+import java.io.Closeable;
+import java.io.IOException;
+import java.io.UnsupportedEncodingException;
+import java.net.URLEncoder;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.EnumMap;
+import java.util.LinkedHashMap;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.StringJoiner;
+import java.util.TreeSet;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.TimeoutException;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.function.Supplier;
+import okhttp3.OkHttpClient;
+import okhttp3.Request;
+import okhttp3.Response;
+import okhttp3.WebSocket;
+import okhttp3.WebSocketListener;
+import org.apache.commons.lang3.StringUtils;
+import org.apache.commons.lang3.builder.ToStringBuilder;
+import org.apache.commons.lang3.builder.ToStringStyle;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+/**
+ * <p>
+ * WebSocket client of the TDA streamer. It logs in with the {@link StreamerInfo} of the user
+ * principals, subscribes to services such as {@link Service#QUOTE}, {@link Service#OPTION},
+ * {@link Service#CHART_EQUITY}, the <em>TIMESALE_*</em> services and {@link
+ * Service#ACCT_ACTIVITY}, and hands every received content item to the {@link StreamListener}s of
+ * its service.
+ * </p>
+ *
+ * <pre class="code">
+ *     TdaStreamClient stream = TdaStreamClient.Builder.tdaStreamClient()
+ *       .withTdaClient(tdaClient)
+ *       .build();
+ *     stream.addListener(Service.QUOTE, content -&gt;
+ *         System.out.println(content.getKey() + " bid: " + content.getDouble(1, Double.NaN)));
+ *     stream.connect();
+ *     stream.subscribe(Service.QUOTE, Arrays.asList("MSFT", "AAPL"), 0, 1, 2, 3);
+ * </pre>
+ *
+ * <p>
+ * Listeners are called on the socket reader thread. Requests can be sent from any thread.
+ * </p>
+ *
+ * <p>
+ * With a {@link LevelOneHandler}, the data of the level one services is decoded by a {@link
+ * LevelOneDecoder} instead, without allocating, and passed to the handler rather than to the
+ * listeners. Frames holding nothing else are never parsed into a JSON tree.
+ * </p>
+ *
+ * <p>
+ * The client remembers every subscription. Built {@link Builder#withReconnect with reconnect}, it
+ * reconnects after the socket drops, waiting a jittered backoff between attempts, logs in again
+ * with freshly fetched user principals and replays the subscriptions in batches. A {@link
+ * StreamGapListener} is then told what each service missed, as it is of skipped sequence numbers,
+ * so the data can be backfilled.
+ * </p>
+ *
+ * <p>
+ * The default {@link OkHttpClient} pings the streamer to detect a dead connection. Built {@link
+ * Builder#withIdleTimeout with an idle timeout}, the client also drops a socket which has received
+ * nothing, not even a heartbeat, for that long.
+ * </p>
+ * <strong>This is a thread safe class.</strong>
+ *
+ * @see <a href="https://developer.tdameritrade.com/content/streaming-data">Streaming Data</a>
+ */
+public class TdaStreamClient implements Closeable {
+
+  private static final Logger LOGGER = LoggerFactory.getLogger(TdaStreamClient.class);
+  private static final ObjectReader READER = DefaultMapper.reader(JsonNode.class);
+  private static final int NORMAL_CLOSURE = 1000;
+
+  public enum State {
+    DISCONNECTED,
+    CONNECTING,
+    CONNECTED,
+    /**
+     * The socket dropped and the client is waiting to reconnect.
+     */
+    RECONNECTING,
+    CLOSED
+  }
+
+  private final Supplier<UserPrincipals> userPrincipalsSupplier;
+  private final WebSocket.Factory webSocketFactory;
+  private final String socketUrl;
+  private final String accountId;
+  private final long timeoutMillis;
+  private final AtomicInteger requestIds = new AtomicInteger();
+  private final Map<String, CompletableFuture<StreamResponse>> pending = new ConcurrentHashMap<>();
+  private final Map<Service, List<StreamListener>> listeners = new EnumMap<>(Service.class);
+  private final LevelOneDecoder levelOneDecoder;
+  private final LevelOneHandler levelOneHandler;
+  private final StreamGapListener gapListener;
+  private final long reconnectDelayMillis;
+  private final long maxReconnectDelayMillis;
+  private final int replayBatchSize;
+  private final long idleTimeoutMillis;
+  private final ScheduledExecutorService scheduler;
+  //subscriptions to replay after reconnecting, guarded by itself
+  private final Map<Service, Subscription> subscriptions = new EnumMap<>(Service.class);
+  //last sequence number and time of each key of the services which number their content
+  private final Map<Service, Map<String, long[]>> sequences = new EnumMap<>(Service.class);
+  private final AtomicInteger reconnectAttempts = new AtomicInteger();
+  private final AtomicLong reconnects = new AtomicLong();
+
+  private volatile State state = State.DISCONNECTED;
+  private volatile WebSocket webSocket;
+  private volatile UserPrincipals userPrincipals;
+  private volatile Account account;
+  private volatile long lastHeartbeat;
+  private volatile long lastMessage;
+  private volatile boolean accountActivity;
+
+  private TdaStreamClient(Builder builder) {
+    this.userPrincipalsSupplier = builder.userPrincipalsSupplier;
+    this.webSocketFactory = builder.webSocketFactory;
+    this.socketUrl = builder.socketUrl;
+    this.accountId = builder.accountId;
+    this.timeoutMillis = builder.timeoutMillis;
+    this.levelOneDecoder = builder.levelOneHandler == null ? null
+        : new LevelOneDecoder(builder.symbols == null ? new SymbolTable() : builder.symbols);
+    this.levelOneHandler = levelOneHandler(builder.levelOneHandler);
+    this.gapListener = builder.gapListener;
+    this.reconnectDelayMillis = builder.reconnectDelayMillis;
+    this.maxReconnectDelayMillis = builder.maxReconnectDelayMillis;
+    this.replayBatchSize = builder.replayBatchSize;
+    this.idleTimeoutMillis = builder.idleTimeoutMillis;
+    this.scheduler = reconnectDelayMillis <= 0 && idleTimeoutMillis <= 0 ? null
+        : Executors.newSingleThreadScheduledExecutor(runnable -> {
+          Thread thread = new Thread(runnable, "tda-stream-scheduler");
+          thread.setDaemon(true);
+          return thread;
+        });
+    if (idleTimeoutMillis > 0) {
+      long period = Math.max(1, idleTimeoutMillis / 4);
+      scheduler.scheduleWithFixedDelay(this::checkIdle, period, period, TimeUnit.MILLISECONDS);
+    }
+    for (Service service : Service.values()) {
+      listeners.put(service, new CopyOnWriteArrayList<>());
+      sequences.put(service, new ConcurrentHashMap<>());
+    }
+  }
+
+  /**
+   * Fetch the user principals, open the socket and log in. Blocks until the streamer accepts or
+   * rejects the login. Subscriptions made before the client was disconnected are replayed.
+   *
+   * @throws IllegalStateException if already connected or closed, or if the user principals have
+   * no streamer info
+   * @throws RuntimeException if the login is rejected or times out
+   */
+  public void connect() {
+    synchronized (this) {
+      if (state != State.DISCONNECTED) {
+        throw new IllegalStateException("Cannot connect a client that is " + state);
+      }
+      state = State.CONNECTING;
+    }
+    final List<StreamGap> gaps;
+    try {
+      gaps = open();
+    } catch (RuntimeException e) {
+      disconnect();
+      throw e;
+    }
+    gaps.forEach(this::notifyGap);
+  }
+
+  /**
+   * Log in with freshly fetched user principals and replay the subscriptions.
+   *
+   * @return what the replayed subscriptions missed while disconnected
+   */
+  private List<StreamGap> open() {
+    long from = lastMessage;
+    UserPrincipals principals = userPrincipalsSupplier.get();
+    if (principals == null || principals.getStreamerInfo() == null) {
+      throw new IllegalStateException("The user principals have no streamer info, fetch them "
+          + "with UserPrincipals.Field.STREAMER_CONNECTION_INFO");
+    }
+    this.userPrincipals = principals;
+    this.account = loginAccount(principals, accountId);
+
+    String url = StringUtils.isBlank(socketUrl)
+        ? "wss://" + principals.getStreamerInfo().getStreamerSocketUrl() + "/ws" : socketUrl;
+    LOGGER.info("Connecting to streamer at {}", url);
+    Request request = new Request.Builder().url(url).build();
+    this.webSocket = webSocketFactory.newWebSocket(request, new SocketListener());
+
+    StreamResponse response = await(send(loginRequest(principals, account, nextRequestId())));
+    if (!response.isSuccess()) {
+      throw new RuntimeException(String.format("Streamer login failed: [%d - %s]",
+          response.getCode(), response.getMsg()));
+    }
+    LOGGER.info("Logged in to streamer: {}", response.getMsg());
+    List<Service> replayed = replay(principals);
+    synchronized (this) {
+      if (state != State.CONNECTING) {
+        //the socket dropped or the client was closed while logging in
+        throw new IllegalStateException("Connection lost while logging in, the client is "
+            + state);
+      }
+      state = State.CONNECTED;
+    }
+    long to = System.currentTimeMillis();
+    List<StreamGap> gaps = new ArrayList<>(replayed.size());
+    for (Service service : replayed) {
+      gaps.add(new StreamGap(service, getSubscription(service), from, to, -1, -1));
+    }
+    return gaps;
+  }
+
+  /**
+   * Send the remembered subscriptions again, the keys of each service split into a SUBS and as
+   * many ADDs as needed to keep each request within the batch size.
+   *
+   * @return the services replayed
+   */
+  private List<Service> replay(UserPrincipals principals) {
+    Map<Service, Subscription> replaying = new EnumMap<>(Service.class);
+    synchronized (subscriptions) {
+      for (Map.Entry<Service, Subscription> entry : subscriptions.entrySet()) {
+        replaying.put(entry.getKey(), entry.getValue().copy());
+      }
+    }
+    for (Map<String, long[]> serviceSequences : sequences.values()) {
+      //the numbering may restart with the new session
+      serviceSequences.clear();
+    }
+    if (replaying.isEmpty()) {
+      return Collections.emptyList();
+    }
+    if (accountActivity && replaying.containsKey(Service.ACCT_ACTIVITY)) {
+      try {
+        replaying.get(Service.ACCT_ACTIVITY).keys = Collections.singleton(
+            accountActivityKeys(principals));
+      } catch (IllegalStateException e) {
+        LOGGER.warn("Replaying the previous account activity keys: {}", e.getMessage());
+      }
+    }
+    List<CompletableFuture<StreamResponse>> responses = new ArrayList<>();
+    for (Map.Entry<Service, Subscription> entry : replaying.entrySet()) {
+      List<String> keys = new ArrayList<>(entry.getValue().keys);
+      for (int start = 0; start < keys.size(); start += replayBatchSize) {
+        List<String> batch = keys.subList(start, Math.min(keys.size(), start + replayBatchSize));
+        responses.add(send(subscriptionRequest(entry.getKey(),
+            start == 0 ? Command.SUBS : Command.ADD, batch, entry.getValue().fields)));
+      }
+    }
+    for (CompletableFuture<StreamResponse> future : responses) {
+      StreamResponse response = await(future);
+      if (!response.isSuccess()) {
+        LOGGER.warn("Streamer rejected a replayed subscription: {}", response);
+      }
+    }
+    LOGGER.info("Replayed the subscriptions of {} in {} requests", replaying.keySet(),
+        responses.size());
+    return new ArrayList<>(replaying.keySet());
+  }
+
+  private void reconnect() {
+    synchronized (this) {
+      if (state != State.RECONNECTING) {
+        return;
+      }
+      state = State.CONNECTING;
+    }
+    final List<StreamGap> gaps;
+    try {
+      gaps = open();
+      reconnectAttempts.set(0);
+      reconnects.incrementAndGet();
+    } catch (RuntimeException e) {
+      LOGGER.warn("Could not reconnect to streamer: {}", e.getMessage());
+      WebSocket ws = this.webSocket;
+      scheduleReconnect();
+      if (ws != null) {
+        ws.cancel();
+      }
+      return;
+    }
+    gaps.forEach(this::notifyGap);
+  }
+
+  private synchronized void scheduleReconnect() {
+    if (state == State.CLOSED) {
+      return;
+    }
+    state = State.RECONNECTING;
+    long delay = backoff(reconnectAttempts.getAndIncrement());
+    LOGGER.info("Reconnecting to streamer in {}ms", delay);
+    scheduler.schedule(this::reconnect, delay, TimeUnit.MILLISECONDS);
+  }
+
+  /**
+   * Doubles from the initial delay up to the max, half of it random so that clients dropped at
+   * the same time do not reconnect at the same time.
+   *
+   * @param attempt number of failed attempts since the last connection
+   * @return milliseconds to wait before the next attempt
+   */
+  long backoff(int attempt) {
+    long delay = Math.min(maxReconnectDelayMillis, reconnectDelayMillis << Math.min(attempt, 20));
+    return delay / 2 + ThreadLocalRandom.current().nextLong(delay - delay / 2 + 1);
+  }
+
+  /**
+   * Drop the socket when nothing was received within the idle timeout, as if it had failed.
+   */
+  private void checkIdle() {
+    WebSocket ws;
+    long idle;
+    synchronized (this) {
+      idle = System.currentTimeMillis() - lastMessage;
+      if (state != State.CONNECTED || idle < idleTimeoutMillis) {
+        return;
+      }
+      ws = this.webSocket;
+      //ignore the events of the dropped socket
+      this.webSocket = null;
+    }
+    LOGGER.warn("Nothing received from streamer in {}ms, dropping the socket", idle);
+    disconnected(new IllegalStateException("Socket idle for " + idle + "ms"));
+    if (ws != null) {
+      ws.cancel();
+    }
+  }
+
+  private void disconnected(Throwable cause) {
+    boolean reconnect;
+    synchronized (this) {
+      reconnect = reconnectDelayMillis > 0 && state == State.CONNECTED;
+      if (state != State.CLOSED && state != State.RECONNECTING) {
+        state = State.DISCONNECTED;
+      }
+    }
+    failPending(cause);
+    if (reconnect) {
+      scheduleReconnect();
+    }
+  }
+
+  private synchronized void disconnect() {
+    if (state != State.CLOSED) {
+      state = State.DISCONNECTED;
+    }
+    WebSocket ws = this.webSocket;
+    if (ws != null) {
+      ws.cancel();
+    }
+  }
+
+  /**
+   * Log out and close the socket. The client cannot be connected again.
+   */
+  @Override
+  public void close() {
+    WebSocket ws;
+    synchronized (this) {
+      if (state == State.CLOSED) {
+        return;
+      }
+      boolean loggedIn = state == State.CONNECTED;
+      state = State.CLOSED;
+      ws = this.webSocket;
+      if (ws != null && loggedIn) {
+        ws.send(toJson(request(Service.ADMIN, Command.LOGOUT, Collections.emptyMap())));
+      }
+    }
+    if (ws != null) {
+      ws.close(NORMAL_CLOSURE, "Logout");
+    }
+    if (scheduler != null) {
+      scheduler.shutdownNow();
+    }
+    failPending(new IllegalStateException("Stream client closed"));
+    LOGGER.info("Closed stream client");
+  }
+
+  /**
+   * Subscribe to keys of a service, replacing any previous subscription of the service.
+   *
+   * @param service the service
+   * @param keys symbols, option symbols or other keys of the service
+   * @param fields fields to receive, or none for all of them
+   * @return future of the streamer's response
+   * @throws IllegalStateException if not connected
+   */
+  public CompletableFuture<StreamResponse> subscribe(Service service, Collection<String> keys,
+      int... fields) {
+    return send(subscription(service, Command.SUBS, keys, fields));
+  }
+
+  /**
+   * Add keys to the existing subscription of a service.
+   *
+   * @param service the service
+   * @param keys keys to add
+   * @param fields fields to receive, or none for all of them
+   * @return future of the streamer's response
+   * @throws IllegalStateException if not connected
+   */
+  public CompletableFuture<StreamResponse> add(Service service, Collection<String> keys,
+      int... fields) {
+    return send(subscription(service, Command.ADD, keys, fields));
+  }
+
+  /**
+   * @param service the service
+   * @param keys keys to stop receiving
+   * @return future of the streamer's response
+   * @throws IllegalStateException if not connected
+   */
+  public CompletableFuture<StreamResponse> unsubscribe(Service service, Collection<String> keys) {
+    Map<String, String> parameters = new LinkedHashMap<>();
+    parameters.put("keys", joinKeys(keys));
+    checkConnected(service, Command.UNSUBS);
+    StreamingRequest request = request(service, Command.UNSUBS, parameters);
+    synchronized (subscriptions) {
+      Subscription subscription = subscriptions.get(service);
+      if (subscription != null) {
+        subscription.keys.removeAll(normalize(keys));
+        if (subscription.keys.isEmpty()) {
+          subscriptions.remove(service);
+        }
+      }
+    }
+    return send(request);
+  }
+
+  /**
+   * Subscribe to order and fill messages of the accounts, using the keys of the user principals'
+   * {@link StreamerSubscriptionKeys}.
+   *
+   * @return future of the streamer's response
+   * @throws IllegalStateException if not connected, or if the user principals have no subscription
+   * keys
+   */
+  public CompletableFuture<StreamResponse> subscribeAccountActivity() {
+    String keys = accountActivityKeys(userPrincipals);
+    CompletableFuture<StreamResponse> response =
+        subscribe(Service.ACCT_ACTIVITY, Collections.singletonList(keys));
+    //replayed with the keys of the user principals fetched on reconnecting
+    accountActivity = true;
+    return response;
+  }
+
+  private static String accountActivityKeys(UserPrincipals principals) {
+    StreamerSubscriptionKeys subscriptionKeys = principals == null ? null
+        : principals.getStreamerSubscriptionKeys();
+    if (subscriptionKeys == null || subscriptionKeys.getKeys().isEmpty()) {
+      throw new IllegalStateException("The user principals have no subscription keys, fetch them "
+          + "with UserPrincipals.Field.STREAMER_SUBSCRIPTION_KEYS");
+    }
+    StringJoiner keys = new StringJoiner(",");
+    for (Key key : subscriptionKeys.getKeys()) {
+      keys.add(key.getKey());
+    }
+    return keys.toString();
+  }
+
+  /**
+   * @param service the service to receive content of
+   * @param listener called for every content item of the service
+   */
+  public void addListener(Service service, StreamListener listener) {
+    if (service == null || listener == null) {
+      throw new IllegalArgumentException("service and listener cannot be null");
+    }
+    listeners.get(service).add(listener);
+  }
+
+  public void removeListener(Service service, StreamListener listener) {
+    listeners.get(service).remove(listener);
+  }
+
+  public State getState() {
+    return state;
+  }
+
+  /**
+   * @return time of the last heartbeat sent by the streamer in milliseconds since the epoch, 0 if
+   * none yet
+   */
+  public long getLastHeartbeat() {
+    return lastHeartbeat;
+  }
+
+  /**
+   * @return the user principals used for the current connection, null if never connected
+   */
+  public UserPrincipals getUserPrincipals() {
+    return userPrincipals;
+  }
+
+  /**
+   * @param service a service
+   * @return keys of the service which are replayed after reconnecting, empty if none
+   */
+  public List<String> getSubscription(Service service) {
+    synchronized (subscriptions) {
+      Subscription subscription = subscriptions.get(service);
+      return subscription == null ? Collections.emptyList()
+          : new ArrayList<>(subscription.keys);
+    }
+  }
+
+  /**
+   * @return number of times the client reconnected after the socket dropped
+   */
+  public long getReconnects() {
+    return reconnects.get();
+  }
+
+  private StreamingRequest subscription(Service service, Command command,
+      Collection<String> keys, int[] fields) {
+    if (service == null) {
+      throw new IllegalArgumentException("service cannot be null");
+    }
+    checkConnected(service, command);
+    int[] requested = fields == null || fields.length == 0 ? StreamFields.all(service) : fields;
+    StreamingRequest request = subscriptionRequest(service, command, keys, requested);
+    synchronized (subscriptions) {
+      Subscription subscription = subscriptions.get(service);
+      if (command == Command.SUBS || subscription == null) {
+        subscription = new Subscription();
+        subscriptions.put(service, subscription);
+        if (service == Service.ACCT_ACTIVITY) {
+          accountActivity = false;
+        }
+      }
+      subscription.keys.addAll(normalize(keys));
+      subscription.fields = union(subscription.fields, requested);
+    }
+    return request;
+  }
+
+  private StreamingRequest subscriptionRequest(Service service, Command command,
+      Collection<String> keys, int[] fields) {
+    Map<String, String> parameters = new LinkedHashMap<>();
+    parameters.put("keys", joinKeys(keys));
+    parameters.put("fields", StreamFields.join(fields));
+    return request(service, command, parameters);
+  }
+
+  private static String joinKeys(Collection<String> keys) {
+    return String.join(",", normalize(keys));
+  }
+
+  private static List<String> normalize(Collection<String> keys) {
+    if (keys == null || keys.isEmpty()) {
+      throw new IllegalArgumentException("keys cannot be empty");
+    }
+    List<String> normalized = new ArrayList<>(keys.size());
+    for (String key : keys) {
+      if (StringUtils.isBlank(key)) {
+        throw new IllegalArgumentException("keys cannot be blank");
+      }
+      normalized.add(key.trim().toUpperCase());
+    }
+    return normalized;
+  }
+
+  private static int[] union(int[] fields, int[] more) {
+    Set<Integer> union = new TreeSet<>();
+    for (int field : fields) {
+      union.add(field);
+    }
+    for (int field : more) {
+      union.add(field);
+    }
+    return union.stream().mapToInt(Integer::intValue).toArray();
+  }
+
+  private void checkConnected(Service service, Command command) {
+    if (state != State.CONNECTED) {
+      throw new IllegalStateException("Cannot send " + command + " of " + service
+          + ", the client is " + state);
+    }
+  }
+
+  private StreamingRequest request(Service service, Command command,
+      Map<String, String> parameters) {
+    return new StreamingRequest(service, nextRequestId(), command, account.getAccountId(),
+        userPrincipals.getStreamerInfo().getAppId(), parameters);
+  }
+
+  private String nextRequestId() {
+    return Integer.toString(requestIds.getAndIncrement());
+  }
+
+  private CompletableFuture<StreamResponse> send(StreamingRequest request) {
+    CompletableFuture<StreamResponse> future = new CompletableFuture<>();
+    pending.put(request.getRequestid(), future);
+    LOGGER.debug("Sending {} {} [{}]", request.getService(), request.getCommand(),
+        request.getRequestid());
+    WebSocket ws = this.webSocket;
+    if (ws == null || !ws.send(toJson(request))) {
+      pending.remove(request.getRequestid());
+      future.completeExceptionally(
+          new IllegalStateException("Could not send " + request.getCommand() + ", socket closed"));
+    }
+    return future;
+  }
+
+  private static String toJson(StreamingRequest request) {
+    return DefaultMapper.toJson(
+        Collections.singletonMap("requests", Collections.singletonList(request)));
+  }
+
+  private StreamResponse await(CompletableFuture<StreamResponse> future) {
+    try {
+      return future.get(timeoutMillis, TimeUnit.MILLISECONDS);
+    } catch (InterruptedException e) {
+      Thread.currentThread().interrupt();
+      throw new RuntimeException(e);
+    } catch (ExecutionException e) {
+      if (e.getCause() instanceof RuntimeException) {
+        throw (RuntimeException) e.getCause();
+      }
+      throw new RuntimeException(e.getCause());
+    } catch (TimeoutException e) {
+      throw new RuntimeException("No response from streamer within " + timeoutMillis + "ms");
+    }
+  }
+
+  private void failPending(Throwable cause) {
+    for (String requestId : pending.keySet()) {
+      CompletableFuture<StreamResponse> future = pending.remove(requestId);
+      if (future != null) {
+        future.completeExceptionally(cause);
+      }
+    }
+  }
+
+  static Account loginAccount(UserPrincipals principals, String accountId) {
+    String id = StringUtils.isBlank(accountId) ? principals.getPrimaryAccountId() : accountId;
+    for (Account candidate : principals.getAccounts()) {
+      if (candidate.getAccountId() != null && candidate.getAccountId().equals(id)) {
+        return candidate;
+      }
+    }
+    if (StringUtils.isBlank(accountId) && !principals.getAccounts().isEmpty()) {
+      return principals.getAccounts().get(0);
+    }
+    throw new IllegalStateException("No account " + id + " in the user principals");
+  }
+
+  static StreamingRequest loginRequest(UserPrincipals principals, Account account,
+      String requestId) {
+    StreamerInfo info = principals.getStreamerInfo();
+    Map<String, String> credential = new LinkedHashMap<>();
+    credential.put("userid", account.getAccountId());
+    credential.put("token", info.getToken());
+    credential.put("company", account.getCompany());
+    credential.put("segment", account.getSegment());
+    credential.put("cddomain", account.getAccountCdDomainId());
+    credential.put("usergroup", info.getUserGroup());
+    credential.put("accesslevel", info.getAccessLevel());
+    credential.put("authorized", "Y");
+    credential.put("timestamp", info.getTokenTimestamp() == null ? ""
+        : Long.toString(info.getTokenTimestamp().getTime()));
+    credential.put("appid", info.getAppId());
+    credential.put("acl", info.getAcl());
+
+    Map<String, String> parameters = new LinkedHashMap<>();
+    parameters.put("credential", queryString(credential));
+    parameters.put("token", info.getToken());
+    parameters.put("version", "1.0");
+    parameters.put("qoslevel", "0");
+    return new StreamingRequest(Service.ADMIN, requestId, Command.LOGIN, account.getAccountId(),
+        info.getAppId(), parameters);
+  }
+
+  private static String queryString(Map<String, String> values) {
+    StringJoiner joiner = new StringJoiner("&");
+    try {
+      for (Map.Entry<String, String> entry : values.entrySet()) {
+        String value = entry.getValue() == null ? "" : entry.getValue();
+        joiner.add(entry.getKey() + "=" + URLEncoder.encode(value, "UTF-8"));
+      }
+    } catch (UnsupportedEncodingException e) {
+      throw new RuntimeException(e);
+    }
+    return joiner.toString();
+  }
+
+  private static LevelOneHandler levelOneHandler(LevelOneHandler handler) {
+    if (handler == null) {
+      return null;
+    }
+    return tick -> {
+      try {
+        handler.onTick(tick);
+      } catch (RuntimeException e) {
+        LOGGER.warn("Level one handler failed on {}", tick, e);
+      }
+    };
+  }
+
+  /**
+   * Handle a text frame, which holds any of <em>response</em>, <em>notify</em>, <em>data</em> and
+   * <em>snapshot</em> arrays.
+   */
+  void onMessage(String text) {
+    if (levelOneDecoder != null) {
+      try {
+        levelOneDecoder.decode(text, levelOneHandler);
+        if (levelOneDecoder.isFullyDecoded()) {
+          return;
+        }
+      } catch (IllegalArgumentException e) {
+        LOGGER.warn("Could not decode level one data: {}", e.getMessage());
+      }
+    }
+    final JsonNode root;
+    try {
+      root = READER.readValue(text);
+    } catch (IOException e) {
+      LOGGER.warn("Ignoring unparseable streamer message: {}", text, e);
+      return;
+    }
+    for (JsonNode response : root.path("response")) {
+      onResponse(response);
+    }
+    for (JsonNode notify : root.path("notify")) {
+      if (notify.has("heartbeat")) {
+        lastHeartbeat = notify.path("heartbeat").asLong();
+      } else {
+        LOGGER.info("Streamer notification: {}", notify);
+      }
+    }
+    for (JsonNode data : root.path("data")) {
+      onData(data);
+    }
+    for (JsonNode snapshot : root.path("snapshot")) {
+      onData(snapshot);
+    }
+  }
+
+  private void onResponse(JsonNode node) {
+    String requestId = node.path("requestid").asText();
+    JsonNode content = node.path("content");
+    StreamResponse response = new StreamResponse(service(node), command(node), requestId,
+        node.path("timestamp").asLong(), content.path("code").asInt(-1),
+        content.path("msg").asText(null));
+    LOGGER.debug("Streamer response: {}", response);
+    CompletableFuture<StreamResponse> future = pending.remove(requestId);
+    if (future != null) {
+      future.complete(response);
+    }
+  }
+
+  private void onData(JsonNode node) {
+    Service service = service(node);
+    if (service == null) {
+      LOGGER.debug("Ignoring data of unknown service: {}", node.path("service"));
+      return;
+    }
+    if (levelOneDecoder != null && LevelOneDecoder.isLevelOne(service)) {
+      //already passed to the level one handler
+      return;
+    }
+    List<StreamListener> serviceListeners = listeners.get(service);
+    if (serviceListeners.isEmpty() && gapListener == null) {
+      return;
+    }
+    long timestamp = node.path("timestamp").asLong();
+    for (JsonNode item : node.path("content")) {
+      StreamContent content = new StreamContent(service, timestamp, item);
+      if (gapListener != null) {
+        checkSequence(content);
+      }
+      for (StreamListener listener : serviceListeners) {
+        try {
+          listener.onContent(content);
+        } catch (RuntimeException e) {
+          LOGGER.warn("Listener of {} failed on {}", service, content, e);
+        }
+      }
+    }
+  }
+
+  /**
+   * Tell the gap listener when the sequence number of a key skips.
+   */
+  private void checkSequence(StreamContent content) {
+    long sequence = content.getSequence();
+    String key = content.getKey();
+    if (sequence < 0 || key == null) {
+      return;
+    }
+    Map<String, long[]> serviceSequences = sequences.get(content.getService());
+    long[] last = serviceSequences.get(key);
+    if (last == null) {
+      serviceSequences.put(key, new long[]{sequence, content.getTimestamp()});
+      return;
+    }
+    if (sequence > last[0] + 1) {
+      notifyGap(new StreamGap(content.getService(), Collections.singletonList(key), last[1],
+          content.getTimestamp(), last[0], sequence));
+    }
+    last[0] = Math.max(last[0], sequence);
+    last[1] = content.getTimestamp();
+  }
+
+  private void notifyGap(StreamGap gap) {
+    LOGGER.info("Stream gap: {}", gap);
+    if (gapListener != null) {
+      try {
+        gapListener.onGap(gap);
+      } catch (RuntimeException e) {
+        LOGGER.warn("Gap listener failed on {}", gap, e);
+      }
+    }
+  }
+
+  private static Service service(JsonNode node) {
+    try {
+      return Service.valueOf(node.path("service").asText());
+    } catch (IllegalArgumentException e) {
+      return null;
+    }
+  }
+
+  private static Command command(JsonNode node) {
+    try {
+      return Command.valueOf(node.path("command").asText());
+    } catch (IllegalArgumentException e) {
+      return null;
+    }
+  }
+
+  @Override
+  public String toString() {
+    return new ToStringBuilder(this, ToStringStyle.SHORT_PREFIX_STYLE)
+        .append("state", state)
+        .append("lastHeartbeat", lastHeartbeat)
+        .append("pending", pending.size())
+        .append("reconnects", reconnects.get())
+        .toString();
+  }
+
+  private static final class Subscription {
+
+    private Set<String> keys = new LinkedHashSet<>();
+    private int[] fields = new int[0];
+
+    private Subscription copy() {
+      Subscription copy = new Subscription();
+      copy.keys.addAll(keys);
+      copy.fields = fields;
+      return copy;
+    }
+  }
+
+  /**
+   * Ignores the events of sockets replaced by a newer connection.
+   */
+  private class SocketListener extends WebSocketListener {
+
+    @Override
+    public void onMessage(WebSocket ws, String text) {
+      if (ws == webSocket) {
+        lastMessage = System.currentTimeMillis();
+        TdaStreamClient.this.onMessage(text);
+      }
+    }
+
+    @Override
+    public void onClosing(WebSocket ws, int code, String reason) {
+      LOGGER.info("Streamer closing socket: [{} - {}]", code, reason);
+      ws.close(NORMAL_CLOSURE, null);
+    }
+
+    @Override
+    public void onClosed(WebSocket ws, int code, String reason) {
+      if (ws == webSocket) {
+        disconnected(new IllegalStateException("Socket closed: " + code + " " + reason));
+      }
+    }
+
+    @Override
+    public void onFailure(WebSocket ws, Throwable t, Response response) {
+      if (ws == webSocket) {
+        LOGGER.warn("Streamer socket failed", t);
+        disconnected(t);
+      }
+    }
+  }
+
+  public static final class Builder {
+
+    private Supplier<UserPrincipals> userPrincipalsSupplier;
+    private WebSocket.Factory webSocketFactory;
+    private String socketUrl;
+    private String accountId;
+    private long timeoutMillis = TimeUnit.SECONDS.toMillis(30);
+    private LevelOneHandler levelOneHandler;
+    private SymbolTable symbols;
+    private StreamGapListener gapListener;
+    private long reconnectDelayMillis;
+    private long maxReconnectDelayMillis;
+    private int replayBatchSize = 200;
+    private long idleTimeoutMillis;
+
+    private Builder() {
+    }
+
+    public static Builder tdaStreamClient() {
+      return new Builder();
+    }
+
+    /**
+     * Fetch the user principals with their streamer info and subscription keys from the client on
+     * every {@link TdaStreamClient#connect()} and reconnect. The cached user principals of an
+     * {@link HttpTdaClient} are invalidated first, so every login has a fresh token.
+     *
+     * @param tdaClient the REST client
+     */
+    public Builder withTdaClient(TdaClient tdaClient) {
+      if (tdaClient == null) {
+        throw new IllegalArgumentException("tdaClient cannot be null");
+      }
+      this.userPrincipalsSupplier = () -> {
+        if (tdaClient instanceof HttpTdaClient) {
+          ((HttpTdaClient) tdaClient).getResponseCache()
+              .invalidate(CacheEndpoint.USER_PRINCIPALS);
+        }
+        return tdaClient.getUserPrincipals(UserPrincipals.Field.STREAMER_SUBSCRIPTION_KEYS,
+            UserPrincipals.Field.STREAMER_CONNECTION_INFO);
+      };
+      return this;
+    }
+
+    /**
+     * @param userPrincipalsSupplier supplies user principals with streamer info on every {@link
+     * TdaStreamClient#connect()}
+     */
+    public Builder withUserPrincipals(Supplier<UserPrincipals> userPrincipalsSupplier) {
+      this.userPrincipalsSupplier = userPrincipalsSupplier;
+      return this;
+    }
+
+    /**
+     * @param webSocketFactory opens the socket, by default a new {@link OkHttpClient} pinging
+     * every 30 seconds
+     */
+    public Builder withWebSocketFactory(WebSocket.Factory webSocketFactory) {
+      this.webSocketFactory = webSocketFactory;
+      return this;
+    }
+
+    /**
+     * @param socketUrl URL to connect to instead of the streamer socket URL of the user
+     * principals, e.g. a local stand-in server
+     */
+    public Builder withSocketUrl(String socketUrl) {
+      this.socketUrl = socketUrl;
+      return this;
+    }
+
+    /**
+     * @param accountId account to log in with, the primary account by default
+     */
+    public Builder withAccountId(String accountId) {
+      this.accountId = accountId;
+      return this;
+    }
+
+    /**
+     * @param timeout how long to wait for the login response, 30 seconds by default
+     * @param unit unit of timeout
+     */
+    public Builder withTimeout(long timeout, TimeUnit unit) {
+      this.timeoutMillis = unit.toMillis(timeout);
+      return this;
+    }
+
+    /**
+     * @param levelOneHandler receives the data of the level one services instead of the
+     * listeners, decoded without allocating
+     */
+    public Builder withLevelOneHandler(LevelOneHandler levelOneHandler) {
+      this.levelOneHandler = levelOneHandler;
+      return this;
+    }
+
+    /**
+     * @param symbols table assigning the symbol ids of the level one ticks, a new one by default
+     */
+    public Builder withSymbolTable(SymbolTable symbols) {
+      this.symbols = symbols;
+      return this;
+    }
+
+    /**
+     * Reconnect when the socket drops after logging in, instead of staying disconnected. The wait
+     * before each attempt doubles from the initial delay up to the max, half of it random.
+     *
+     * @param initialDelay wait before the first attempt
+     * @param maxDelay longest wait between attempts
+     * @param unit unit of both delays
+     */
+    public Builder withReconnect(long initialDelay, long maxDelay, TimeUnit unit) {
+      this.reconnectDelayMillis = unit.toMillis(initialDelay);
+      this.maxReconnectDelayMillis = unit.toMillis(maxDelay);
+      return this;
+    }
+
+    /**
+     * @param replayBatchSize most keys of a service sent in one request when replaying the
+     * subscriptions, 200 by default
+     */
+    public Builder withReplayBatchSize(int replayBatchSize) {
+      this.replayBatchSize = replayBatchSize;
+      return this;
+    }
+
+    /**
+     * Drop the socket when the streamer sends nothing, not even a heartbeat, for the timeout, and
+     * reconnect if built {@link #withReconnect with reconnect}. The streamer sends a heartbeat
+     * about every 10 seconds, so the timeout should be well above that. Off by default.
+     *
+     * @param idleTimeout longest time without a message
+     * @param unit unit of idleTimeout
+     */
+    public Builder withIdleTimeout(long idleTimeout, TimeUnit unit) {
+      this.idleTimeoutMillis = unit.toMillis(idleTimeout);
+      return this;
+    }
+
+    /**
+     * @param gapListener told of the data missed while reconnecting, and of skipped sequence
+     * numbers
+     */
+    public Builder withGapListener(StreamGapListener gapListener) {
+      this.gapListener = gapListener;
+      return this;
+    }
+
+    public TdaStreamClient build() {
+      if (userPrincipalsSupplier == null) {
+        throw new IllegalArgumentException("Either a TdaClient or user principals are required");
+      }
+      if (timeoutMillis <= 0) {
+        throw new IllegalArgumentException("timeout must be positive");
+      }
+      if (reconnectDelayMillis < 0 || maxReconnectDelayMillis < reconnectDelayMillis) {
+        throw new IllegalArgumentException(
+            "the reconnect delays cannot be negative, and the max cannot be below the initial");
+      }
+      if (replayBatchSize < 1) {
+        throw new IllegalArgumentException("replayBatchSize must be positive");
+      }
+      if (idleTimeoutMillis < 0) {
+        throw new IllegalArgumentException("idleTimeout cannot be negative");
+      }
+      if (webSocketFactory == null) {
+        webSocketFactory = new OkHttpClient.Builder()
+            .pingInterval(30, TimeUnit.SECONDS)
+            .build();
+      }
+      return new TdaStreamClient(this);
+    }
+  }
+}
@@ -0,0 +1,453 @@
+package com.studerw.tda.stream;
+
+import com.fasterxml.jackson.databind.JsonNode;
+import com.studerw.tda.model.stream.Service;
+import com.studerw.tda.stream.StreamFields.Kind;
+import java.io.Closeable;
+import java.io.IOException;
+import java.nio.ByteOrder;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.channels.FileChannel.MapMode;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.Arrays;
+import java.util.List;
+import java.util.regex.Matcher;
+import java.util.regex.Pattern;
+import java.util.stream.Collectors;
+import java.util.stream.Stream;
+import org.apache.commons.lang3.builder.ToStringBuilder;
+import org.apache.commons.lang3.builder.ToStringStyle;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+/**
+ * <p>
+ * Append only journal of the streamed data, recorded for research and to replay incidents with a
+ * {@link TickJournalReplay}. Add it as the {@link LevelOneHandler} of the stream, or call it from
+ * one, to record level one ticks such as {@link Service#QUOTE}, and as the {@link StreamListener}
+ * of other services such as {@link Service#TIMESALE_EQUITY} and {@link Service#CHART_EQUITY}:
+ * </p>
+ *
+ * <pre class="code">
+ *     TickJournal journal = TickJournal.Builder.tickJournal()
+ *         .withDirectory(Paths.get("journal"))
+ *         .build();
+ *     TdaStreamClient stream = TdaStreamClient.Builder.tdaStreamClient()
+ *         .withTdaClient(tdaClient)
+ *         .withLevelOneHandler(journal)
+ *         .build();
+ *     stream.addListener(Service.TIMESALE_EQUITY, journal);
+ *     stream.addListener(Service.CHART_EQUITY, journal);
+ * </pre>
+ *
+ * <p>
+ * Each update is a compact binary record of its service, symbol id, the {@link System#nanoTime()}
+ * it was received at, the streamer's timestamp, its sequence number and the fields it holds, each
+ * as its id, {@link Kind} and value. Records are appended to memory mapped segment files of a
+ * fixed size, <em>ticks-000001.journal</em> and so on, starting a new segment when the current
+ * one is full. A segment starts with its wall clock time, so receive times of segments recorded
+ * by different processes line up, and defines each symbol before its first record, so it can be
+ * replayed on its own. Appending an update allocates nothing, except when a segment rolls or a
+ * symbol is seen for the first time.
+ * </p>
+ *
+ * <p>
+ * Text values are cut to {@value #MAX_TEXT} bytes of UTF-8, without splitting a character. Nested
+ * values such as the price levels of the book services are not recorded.
+ * </p>
+ * <strong>This is not a thread safe class.</strong> Append from one thread, e.g. the socket
+ * reader.
+ */
+public final class TickJournal implements LevelOneHandler, StreamListener, Closeable {
+
+  private static final Logger LOGGER = LoggerFactory.getLogger(TickJournal.class);
+
+  static final int MAGIC = 0x54444A4C;
+  static final int VERSION = 1;
+  //magic, version, wall clock millis and nanoTime at the start of the segment
+  static final int HEADER_SIZE = 32;
+  //length, type, service, flags, field count, symbol id, received, timestamp and sequence
+  static final int TICK_HEADER = 36;
+  //length, type, padding and symbol id, followed by the length and bytes of the symbol
+  static final int SYMBOL_HEADER = 12;
+  static final byte SYMBOL = 1;
+  static final byte TICK = 2;
+  static final byte DELAYED = 1;
+  static final int END = -1;
+  static final int MAX_TEXT = 256;
+  static final int DEFAULT_SEGMENT_SIZE = 64 << 20;
+  static final int MIN_SEGMENT_SIZE = 64 << 10;
+  //largest tick plus the definition of its symbol and the end marker
+  private static final int MAX_APPEND = TICK_HEADER + LevelOneTick.MAX_FIELDS * (4 + MAX_TEXT)
+      + SYMBOL_HEADER + 2 + MAX_TEXT + 4;
+  private static final Pattern SEGMENT = Pattern.compile("ticks-(\\d{6})\\.journal");
+  private static final String[] FIELD_NAMES = new String[LevelOneTick.MAX_FIELDS];
+  private static final byte DOUBLE = (byte) Kind.DOUBLE.ordinal();
+  private static final byte LONG = (byte) Kind.LONG.ordinal();
+  private static final byte BOOLEAN = (byte) Kind.BOOLEAN.ordinal();
+  private static final byte TEXT = (byte) Kind.TEXT.ordinal();
+
+  static {
+    for (int field = 0; field < FIELD_NAMES.length; field++) {
+      FIELD_NAMES[field] = Integer.toString(field);
+    }
+  }
+
+  private final Path directory;
+  private final int segmentSize;
+  private final SymbolTable symbols;
+  private FileChannel channel;
+  private MappedByteBuffer buffer;
+  private int segment;
+  private int position;
+  //bit set of the symbol ids defined in the current segment
+  private long[] defined = new long[16];
+  private long records;
+  private boolean closed;
+
+  private TickJournal(Builder builder) {
+    this.directory = builder.directory;
+    this.segmentSize = builder.segmentSize;
+    this.symbols = builder.symbols == null ? new SymbolTable() : builder.symbols;
+    try {
+      Files.createDirectories(directory);
+    } catch (IOException e) {
+      throw new RuntimeException(e);
+    }
+    List<Path> existing = segments(directory);
+    this.segment = existing.isEmpty() ? 0 : index(existing.get(existing.size() - 1));
+    roll();
+  }
+
+  /**
+   * @param directory a journal directory
+   * @return the segment files of the directory in the order they were written
+   */
+  static List<Path> segments(Path directory) {
+    try (Stream<Path> files = Files.list(directory)) {
+      return files.filter(path -> SEGMENT.matcher(path.getFileName().toString()).matches())
+          .sorted()
+          .collect(Collectors.toList());
+    } catch (IOException e) {
+      throw new RuntimeException(e);
+    }
+  }
+
+  private static int index(Path segment) {
+    Matcher matcher = SEGMENT.matcher(segment.getFileName().toString());
+    return matcher.matches() ? Integer.parseInt(matcher.group(1)) : 0;
+  }
+
+  /**
+   * Record a level one tick.
+   *
+   * @param tick the tick
+   */
+  @Override
+  public void onTick(LevelOneTick tick) {
+    long received = System.nanoTime();
+    byte[] kinds = StreamFields.kinds(tick.getService());
+    if (kinds == null || tick.getSymbol() == null) {
+      return;
+    }
+    int id = start(tick.getSymbol());
+    if (id < 0) {
+      return;
+    }
+    int p = position + TICK_HEADER;
+    int count = 0;
+    long remaining = tick.getFields();
+    while (remaining != 0) {
+      int field = Long.numberOfTrailingZeros(remaining);
+      remaining &= remaining - 1;
+      byte kind = kinds[field];
+      buffer.put(p, (byte) field);
+      buffer.put(p + 1, kind);
+      if (kind == TEXT) {
+        p = putText(p + 2, tick.textBytes(field), tick.textLength(field));
+      } else if (kind == DOUBLE) {
+        buffer.putDouble(p + 2, tick.getDouble(field));
+        p += 10;
+      } else {
+        buffer.putLong(p + 2, tick.getLong(field, 0));
+        p += 10;
+      }
+      count++;
+    }
+    commit(p, tick.getService(), tick.isDelayed(), count, id, received, tick.getTimestamp(), -1);
+  }
+
+  /**
+   * Record a content item of a service with flat fields, e.g. {@link Service#TIMESALE_EQUITY} or
+   * {@link Service#CHART_EQUITY}.
+   *
+   * @param content the content
+   */
+  @Override
+  public void onContent(StreamContent content) {
+    long received = System.nanoTime();
+    String key = content.getKey();
+    if (key == null) {
+      return;
+    }
+    int id = start(key);
+    if (id < 0) {
+      return;
+    }
+    Service service = content.getService();
+    JsonNode node = content.getNode();
+    int fields = Math.min(StreamFields.count(service), LevelOneTick.MAX_FIELDS);
+    int p = position + TICK_HEADER;
+    int count = 0;
+    for (int field = 0; field < fields; field++) {
+      JsonNode value = node.get(FIELD_NAMES[field]);
+      if (value == null) {
+        continue;
+      }
+      buffer.put(p, (byte) field);
+      if (value.isIntegralNumber()) {
+        buffer.put(p + 1, LONG);
+        buffer.putLong(p + 2, value.longValue());
+        p += 10;
+      } else if (value.isNumber()) {
+        buffer.put(p + 1, DOUBLE);
+        buffer.putDouble(p + 2, value.doubleValue());
+        p += 10;
+      } else if (value.isBoolean()) {
+        buffer.put(p + 1, BOOLEAN);
+        buffer.putLong(p + 2, value.booleanValue() ? 1 : 0);
+        p += 10;
+      } else if (value.isTextual()) {
+        buffer.put(p + 1, TEXT);
+        p = putText(p + 2, value.textValue());
+      } else {
+        continue;
+      }
+      count++;
+    }
+    commit(p, service, node.path("delayed").asBoolean(false), count, id, received,
+        content.getTimestamp(), content.getSequence());
+  }
+
+  /**
+   * Make room for a record and define its symbol in the current segment.
+   *
+   * @return id of the symbol, -1 if it is too long to record
+   */
+  private int start(String symbol) {
+    if (closed) {
+      throw new IllegalStateException("The journal is closed");
+    }
+    int id = symbols.id(symbol);
+    if (id < 0) {
+      id = symbols.intern(symbol);
+    }
+    if (position + MAX_APPEND > segmentSize) {
+      roll();
+    }
+    if (id >= defined.length * 64) {
+      defined = Arrays.copyOf(defined, Math.max(defined.length * 2, id / 64 + 1));
+    }
+    if ((defined[id >>> 6] & (1L << id)) == 0) {
+      byte[] bytes = symbol.getBytes(StandardCharsets.UTF_8);
+      if (bytes.length > MAX_TEXT) {
+        LOGGER.warn("Not recording {}, the symbol is longer than {} bytes", symbol, MAX_TEXT);
+        return -1;
+      }
+      buffer.put(position + 4, SYMBOL);
+      buffer.putInt(position + 8, id);
+      buffer.putShort(position + SYMBOL_HEADER, (short) bytes.length);
+      for (int i = 0; i < bytes.length; i++) {
+        buffer.put(position + SYMBOL_HEADER + 2 + i, bytes[i]);
+      }
+      int length = SYMBOL_HEADER + 2 + bytes.length;
+      buffer.putInt(position, length);
+      position += length;
+      defined[id >>> 6] |= 1L << id;
+    }
+    return id;
+  }
+
+  /**
+   * Write the header of the record started at the current position, its length last.
+   */
+  private void commit(int end, Service service, boolean delayed, int count, int id,
+      long received, long timestamp, long sequence) {
+    buffer.put(position + 4, TICK);
+    buffer.put(position + 5, (byte) service.ordinal());
+    buffer.put(position + 6, delayed ? DELAYED : 0);
+    buffer.put(position + 7, (byte) count);
+    buffer.putInt(position + 8, id);
+    buffer.putLong(position + 12, received);
+    buffer.putLong(position + 20, timestamp);
+    buffer.putLong(position + 28, sequence);
+    buffer.putInt(position, end - position);
+    position = end;
+    records++;
+  }
+
+  private int putText(int p, byte[] bytes, int length) {
+    int n = Math.min(length, MAX_TEXT);
+    //back off to the start of a character, continuation bytes being 10xxxxxx
+    if (n < length) {
+      while (n > 0 && (bytes[n] & 0xC0) == 0x80) {
+        n--;
+      }
+    }
+    buffer.putShort(p, (short) n);
+    for (int i = 0; i < n; i++) {
+      buffer.put(p + 2 + i, bytes[i]);
+    }
+    return p + 2 + n;
+  }
+
+  private int putText(int p, String text) {
+    int n = Math.min(text.length(), MAX_TEXT);
+    for (int i = 0; i < n; i++) {
+      if (text.charAt(i) >= 0x80) {
+        byte[] bytes = text.getBytes(StandardCharsets.UTF_8);
+        return putText(p, bytes, bytes.length);
+      }
+    }
+    //the chars of ASCII text are its bytes
+    buffer.putShort(p, (short) n);
+    for (int i = 0; i < n; i++) {
+      buffer.put(p + 2 + i, (byte) text.charAt(i));
+    }
+    return p + 2 + n;
+  }
+
+  private void roll() {
+    closeSegment();
+    segment++;
+    Path path = directory.resolve(String.format("ticks-%06d.journal", segment));
+    try {
+      channel = FileChannel.open(path, StandardOpenOption.CREATE_NEW, StandardOpenOption.READ,
+          StandardOpenOption.WRITE);
+      buffer = channel.map(MapMode.READ_WRITE, 0, segmentSize);
+    } catch (IOException e) {
+      throw new RuntimeException(e);
+    }
+    buffer.order(ByteOrder.LITTLE_ENDIAN);
+    buffer.putInt(0, MAGIC);
+    buffer.putInt(4, VERSION);
+    buffer.putLong(8, System.currentTimeMillis());
+    buffer.putLong(16, System.nanoTime());
+    position = HEADER_SIZE;
+    Arrays.fill(defined, 0);
+    LOGGER.info("Started journal segment {}", path);
+  }
+
+  private void closeSegment() {
+    if (buffer == null) {
+      return;
+    }
+    buffer.putInt(position, END);
+    buffer.force();
+    try {
+      channel.close();
+    } catch (IOException e) {
+      LOGGER.warn("Failed to close journal segment {}", segment, e);
+    }
+    buffer = null;
+  }
+
+  /**
+   * Write the appended records to disk. The OS writes them eventually without this, even if the
+   * process dies.
+   */
+  public void flush() {
+    if (buffer != null) {
+      buffer.force();
+    }
+  }
+
+  /**
+   * @return number of updates recorded
+   */
+  public long getRecords() {
+    return records;
+  }
+
+  /**
+   * @return number of the segment being written
+   */
+  public int getSegment() {
+    return segment;
+  }
+
+  public Path getDirectory() {
+    return directory;
+  }
+
+  @Override
+  public void close() {
+    if (!closed) {
+      closed = true;
+      closeSegment();
+    }
+  }
+
+  @Override
+  public String toString() {
+    return new ToStringBuilder(this, ToStringStyle.SHORT_PREFIX_STYLE)
+        .append("directory", directory)
+        .append("segment", segment)
+        .append("position", position)
+        .append("records", records)
+        .toString();
+  }
+
+  public static final class Builder {
+
+    private Path directory;
+    private int segmentSize = DEFAULT_SEGMENT_SIZE;
+    private SymbolTable symbols;
+
+    private Builder() {
+    }
+
+    public static Builder tickJournal() {
+      return new Builder();
+    }
+
+    /**
+     * @param directory directory of the segment files, created if it does not exist. A journal
+     * continues after the segments already in it.
+     */
+    public Builder withDirectory(Path directory) {
+      this.directory = directory;
+      return this;
+    }
+
+    /**
+     * @param segmentSize bytes of each segment file, 64MB by default
+     */
+    public Builder withSegmentSize(int segmentSize) {
+      this.segmentSize = segmentSize;
+      return this;
+    }
+
+    /**
+     * @param symbols table assigning the recorded symbol ids, a new one by default
+     */
+    public Builder withSymbolTable(SymbolTable symbols) {
+      this.symbols = symbols;
+      return this;
+    }
+
+    public TickJournal build() {
+      if (directory == null) {
+        throw new IllegalArgumentException("directory cannot be null");
+      }
+      if (segmentSize < MIN_SEGMENT_SIZE) {
+        throw new IllegalArgumentException("segmentSize must be at least " + MIN_SEGMENT_SIZE);
+      }
+      return new TickJournal(this);
+    }
+  }
+}
@@ -0,0 +1,363 @@
+package com.studerw.tda.stream;
+
+import com.fasterxml.jackson.databind.node.JsonNodeFactory;
+import com.fasterxml.jackson.databind.node.ObjectNode;
+import com.studerw.tda.model.stream.Service;
+import com.studerw.tda.stream.StreamFields.Kind;
+import java.io.IOException;
+import java.nio.ByteOrder;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.channels.FileChannel.MapMode;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.EnumMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.locks.LockSupport;
+import org.apache.commons.lang3.builder.ToStringBuilder;
+import org.apache.commons.lang3.builder.ToStringStyle;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+/**
+ * <p>
+ * Replays the updates recorded by a {@link TickJournal} to the same {@link LevelOneHandler} and
+ * {@link StreamListener}s a live {@link TdaStreamClient} feeds, so a strategy can be backtested
+ * against real data:
+ * </p>
+ *
+ * <pre class="code">
+ *     TickJournalReplay replay = TickJournalReplay.Builder.tickJournalReplay()
+ *         .withDirectory(Paths.get("journal"))
+ *         .withSpeed(10)
+ *         .withLevelOneHandler(quoteBook)
+ *         .withListener(Service.TIMESALE_EQUITY, strategy)
+ *         .build();
+ *     replay.replay();
+ * </pre>
+ *
+ * <p>
+ * Updates are replayed in the order they were recorded, spaced by the time between their receipt
+ * at the original speed, divided by a scaled speed, or as fast as the handlers take them at max
+ * speed. Level one ticks go to the handler when there is one, as they do when streamed. Updates of
+ * the other services, or of level one services without a handler, go to the listeners of their
+ * service as {@link StreamContent}.
+ * </p>
+ * <strong>This is not a thread safe class.</strong> It replays on the thread calling {@link
+ * #replay()}, which can be stopped from another thread.
+ */
+public final class TickJournalReplay {
+
+  private static final Logger LOGGER = LoggerFactory.getLogger(TickJournalReplay.class);
+  private static final Service[] SERVICES = Service.values();
+  private static final byte DOUBLE = (byte) Kind.DOUBLE.ordinal();
+  private static final byte CHAR = (byte) Kind.CHAR.ordinal();
+  private static final byte BOOLEAN = (byte) Kind.BOOLEAN.ordinal();
+  private static final byte TEXT = (byte) Kind.TEXT.ordinal();
+
+  private final Path directory;
+  private final double speed;
+  private final LevelOneHandler levelOneHandler;
+  private final Map<Service, List<StreamListener>> listeners;
+  private final SymbolTable symbols;
+  private final LevelOneTick tick = new LevelOneTick();
+  private final byte[] text = new byte[TickJournal.MAX_TEXT];
+  private int textLength;
+  //symbol ids of the table by the ids recorded in the current segment
+  private int[] ids = new int[64];
+  private long first;
+  private long started;
+  private volatile boolean stopped;
+
+  private TickJournalReplay(Builder builder) {
+    this.directory = builder.directory;
+    this.speed = builder.speed;
+    this.levelOneHandler = builder.levelOneHandler;
+    this.listeners = builder.listeners;
+    this.symbols = builder.symbols == null ? new SymbolTable() : builder.symbols;
+  }
+
+  /**
+   * Replay every segment of the journal, blocking until done or {@link #stop() stopped}.
+   *
+   * @return number of updates replayed
+   * @throws IllegalStateException if a file of the journal is not a segment
+   */
+  public long replay() {
+    stopped = false;
+    first = Long.MIN_VALUE;
+    long replayed = 0;
+    for (Path segment : TickJournal.segments(directory)) {
+      if (stopped) {
+        break;
+      }
+      replayed += replay(segment);
+    }
+    LOGGER.info("Replayed {} updates of {}", replayed, directory);
+    return replayed;
+  }
+
+  /**
+   * Stop replaying after the current update.
+   */
+  public void stop() {
+    stopped = true;
+  }
+
+  public SymbolTable getSymbolTable() {
+    return symbols;
+  }
+
+  private long replay(Path segment) {
+    try (FileChannel channel = FileChannel.open(segment, StandardOpenOption.READ)) {
+      MappedByteBuffer buffer = channel.map(MapMode.READ_ONLY, 0, channel.size());
+      buffer.order(ByteOrder.LITTLE_ENDIAN);
+      if (buffer.limit() < TickJournal.HEADER_SIZE || buffer.getInt(0) != TickJournal.MAGIC
+          || buffer.getInt(4) != TickJournal.VERSION) {
+        throw new IllegalStateException("Not a tick journal segment: " + segment);
+      }
+      //receive times as nanoseconds since the epoch
+      long epoch = buffer.getLong(8) * 1_000_000 - buffer.getLong(16);
+      Arrays.fill(ids, -1);
+      long replayed = 0;
+      int p = TickJournal.HEADER_SIZE;
+      while (!stopped && p + 4 <= buffer.limit()) {
+        int length = buffer.getInt(p);
+        if (length <= 0) {
+          break;
+        }
+        byte type = buffer.get(p + 4);
+        if (type == TickJournal.SYMBOL) {
+          define(buffer, p);
+        } else if (type == TickJournal.TICK) {
+          pace(epoch + buffer.getLong(p + 12));
+          dispatch(buffer, p);
+          replayed++;
+        }
+        p += length;
+      }
+      LOGGER.debug("Replayed {} updates of {}", replayed, segment);
+      return replayed;
+    } catch (IOException e) {
+      throw new RuntimeException(e);
+    }
+  }
+
+  private void define(MappedByteBuffer buffer, int p) {
+    int recorded = buffer.getInt(p + 8);
+    int length = buffer.getShort(p + TickJournal.SYMBOL_HEADER);
+    for (int i = 0; i < length; i++) {
+      text[i] = buffer.get(p + TickJournal.SYMBOL_HEADER + 2 + i);
+    }
+    if (recorded >= ids.length) {
+      int old = ids.length;
+      ids = Arrays.copyOf(ids, Math.max(old * 2, recorded + 1));
+      Arrays.fill(ids, old, ids.length, -1);
+    }
+    ids[recorded] = symbols.intern(text, 0, length);
+  }
+
+  /**
+   * Wait until the update is due at the replay speed.
+   *
+   * @param received time the update was received in nanoseconds since the epoch
+   */
+  private void pace(long received) {
+    if (speed == Double.POSITIVE_INFINITY) {
+      return;
+    }
+    if (first == Long.MIN_VALUE) {
+      first = received;
+      started = System.nanoTime();
+      return;
+    }
+    long due = started + (long) ((received - first) / speed);
+    long wait;
+    while (!stopped && (wait = due - System.nanoTime()) > 0) {
+      LockSupport.parkNanos(wait);
+      if (Thread.interrupted()) {
+        Thread.currentThread().interrupt();
+        stopped = true;
+      }
+    }
+  }
+
+  private void dispatch(MappedByteBuffer buffer, int p) {
+    Service service = SERVICES[buffer.get(p + 5)];
+    boolean delayed = buffer.get(p + 6) == TickJournal.DELAYED;
+    int count = buffer.get(p + 7) & 0xff;
+    int id = ids[buffer.getInt(p + 8)];
+    long timestamp = buffer.getLong(p + 20);
+    long sequence = buffer.getLong(p + 28);
+    String symbol = symbols.symbol(id);
+    int q = p + TickJournal.TICK_HEADER;
+    if (levelOneHandler != null && LevelOneDecoder.isLevelOne(service)) {
+      tick.reset(service, StreamFields.kinds(service), timestamp);
+      tick.setSymbol(symbol, id);
+      tick.setDelayed(delayed);
+      for (int i = 0; i < count; i++) {
+        int field = buffer.get(q);
+        byte kind = buffer.get(q + 1);
+        if (kind == TEXT) {
+          q = readText(buffer, q + 2);
+          tick.setText(field, text, 0, textLength);
+        } else if (kind == DOUBLE) {
+          tick.setDouble(field, buffer.getDouble(q + 2));
+          q += 10;
+        } else {
+          tick.setLong(field, buffer.getLong(q + 2));
+          q += 10;
+        }
+      }
+      try {
+        levelOneHandler.onTick(tick);
+      } catch (RuntimeException e) {
+        LOGGER.warn("Level one handler failed on {}", tick, e);
+      }
+      return;
+    }
+    List<StreamListener> serviceListeners = listeners.get(service);
+    if (serviceListeners == null || serviceListeners.isEmpty()) {
+      return;
+    }
+    ObjectNode node = JsonNodeFactory.instance.objectNode();
+    node.put("key", symbol);
+    if (delayed) {
+      node.put("delayed", true);
+    }
+    if (sequence >= 0) {
+      node.put("seq", sequence);
+    }
+    for (int i = 0; i < count; i++) {
+      String field = Integer.toString(buffer.get(q));
+      byte kind = buffer.get(q + 1);
+      if (kind == TEXT) {
+        q = readText(buffer, q + 2);
+        node.put(field, new String(text, 0, textLength, StandardCharsets.UTF_8));
+        continue;
+      }
+      if (kind == DOUBLE) {
+        node.put(field, buffer.getDouble(q + 2));
+      } else if (kind == CHAR) {
+        node.put(field, String.valueOf((char) buffer.getLong(q + 2)));
+      } else if (kind == BOOLEAN) {
+        node.put(field, buffer.getLong(q + 2) != 0);
+      } else {
+        node.put(field, buffer.getLong(q + 2));
+      }
+      q += 10;
+    }
+    StreamContent content = new StreamContent(service, timestamp, node);
+    for (StreamListener listener : serviceListeners) {
+      try {
+        listener.onContent(content);
+      } catch (RuntimeException e) {
+        LOGGER.warn("Listener of {} failed on {}", service, content, e);
+      }
+    }
+  }
+
+  /**
+   * Read a text value into {@link #text}.
+   *
+   * @return position after the value
+   */
+  private int readText(MappedByteBuffer buffer, int p) {
+    textLength = buffer.getShort(p);
+    for (int i = 0; i < textLength; i++) {
+      text[i] = buffer.get(p + 2 + i);
+    }
+    return p + 2 + textLength;
+  }
+
+  @Override
+  public String toString() {
+    return new ToStringBuilder(this, ToStringStyle.SHORT_PREFIX_STYLE)
+        .append("directory", directory)
+        .append("speed", speed)
+        .toString();
+  }
+
+  public static final class Builder {
+
+    private Path directory;
+    private double speed = 1;
+    private LevelOneHandler levelOneHandler;
+    private final Map<Service, List<StreamListener>> listeners = new EnumMap<>(Service.class);
+    private SymbolTable symbols;
+
+    private Builder() {
+    }
+
+    public static Builder tickJournalReplay() {
+      return new Builder();
+    }
+
+    /**
+     * @param directory directory of the journal's segment files
+     */
+    public Builder withDirectory(Path directory) {
+      this.directory = directory;
+      return this;
+    }
+
+    /**
+     * @param speed how many times faster than recorded to replay, 1 (the original speed) by
+     * default
+     */
+    public Builder withSpeed(double speed) {
+      this.speed = speed;
+      return this;
+    }
+
+    /**
+     * Replay as fast as the handler and listeners take the updates.
+     */
+    public Builder withMaxSpeed() {
+      this.speed = Double.POSITIVE_INFINITY;
+      return this;
+    }
+
+    /**
+     * @param levelOneHandler receives the level one ticks instead of the listeners
+     */
+    public Builder withLevelOneHandler(LevelOneHandler levelOneHandler) {
+      this.levelOneHandler = levelOneHandler;
+      return this;
+    }
+
+    /**
+     * @param service the service to receive content of
+     * @param listener called for every update of the service
+     */
+    public Builder withListener(Service service, StreamListener listener) {
+      if (service == null || listener == null) {
+        throw new IllegalArgumentException("service and listener cannot be null");
+      }
+      listeners.computeIfAbsent(service, s -> new ArrayList<>()).add(listener);
+      return this;
+    }
+
+    /**
+     * @param symbols table assigning the symbol ids of the replayed ticks, a new one by default
+     */
+    public Builder withSymbolTable(SymbolTable symbols) {
+      this.symbols = symbols;
+      return this;
+    }
+
+    public TickJournalReplay build() {
+      if (directory == null) {
+        throw new IllegalArgumentException("directory cannot be null");
+      }
+      if (!(speed > 0)) {
+        throw new IllegalArgumentException("speed must be positive");
+      }
+      return new TickJournalReplay(this);
+    }
+  }
+}
@@ -0,0 +1,199 @@
+package com.studerw.tda.stream;
+
+import com.studerw.tda.model.stream.Service;
+import java.io.Closeable;
+import java.util.List;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.AtomicLongArray;
+import org.apache.commons.lang3.builder.ToStringBuilder;
+import org.apache.commons.lang3.builder.ToStringStyle;
+
+/**
+ * <p>
+ * Single producer, multi consumer ring buffer of level one ticks between the socket reader thread
+ * and {@link TickSubscriber}s running on their own threads, so slow handlers cannot stall the
+ * socket. The ring is a {@link LevelOneHandler}, so it can be passed straight to {@link
+ * TdaStreamClient.Builder#withLevelOneHandler(LevelOneHandler)}:
+ * </p>
+ *
+ * <pre class="code">
+ *     TickRing ring = TickRing.Builder.tickRing().withCapacity(8192).build();
+ *     ring.subscriber(tick -&gt; strategy.onQuote(tick))
+ *         .withPolicy(SlowConsumerPolicy.CONFLATE)
+ *         .withWaitStrategy(WaitStrategy.YIELD)
+ *         .build()
+ *         .start();
+ *     TdaStreamClient stream = TdaStreamClient.Builder.tdaStreamClient()
+ *         .withTdaClient(tdaClient)
+ *         .withLevelOneHandler(ring)
+ *         .build();
+ * </pre>
+ *
+ * <p>
+ * Every slot holds a preallocated tick which publishing copies into, so neither side allocates.
+ * Each subscriber has its own sequence. The producer never waits for them: it announces the
+ * sequence it is about to write, and a subscriber copies a batch of ticks and then checks that
+ * announcement to find out whether any of them were overwritten while it read them. Overwritten
+ * ticks are counted as dropped, see {@link SlowConsumerPolicy}.
+ * </p>
+ * <strong>This is a thread safe class</strong>, provided that only one thread publishes.
+ */
+public final class TickRing implements LevelOneHandler, Closeable {
+
+  private static final int SERVICES = Service.values().length;
+
+  private final int capacity;
+  private final int mask;
+  private final LevelOneTick[] entries;
+  private final long[] publishedNanos;
+  //highest sequence the producer may be writing, announced before its slot is overwritten
+  private final AtomicLong claim = new AtomicLong(-1);
+  //highest sequence completely written
+  private final AtomicLong cursor = new AtomicLong(-1);
+  private final AtomicLongArray published = new AtomicLongArray(SERVICES);
+  private final List<TickSubscriber> subscribers = new CopyOnWriteArrayList<>();
+  //only read and written by the producer
+  private long next;
+
+  private TickRing(Builder builder) {
+    this.capacity = builder.capacity;
+    this.mask = capacity - 1;
+    this.entries = new LevelOneTick[capacity];
+    this.publishedNanos = new long[capacity];
+    for (int i = 0; i < capacity; i++) {
+      entries[i] = new LevelOneTick();
+    }
+  }
+
+  /**
+   * Publish a copy of a tick. Must only be called from a single thread, e.g. the socket reader.
+   *
+   * @param tick the tick, which can be reused once this returns
+   */
+  public void publish(LevelOneTick tick) {
+    long sequence = next++;
+    //an atomic read and write, so the slot is not overwritten before the claim is visible
+    claim.getAndSet(sequence);
+    int index = (int) sequence & mask;
+    LevelOneTick entry = entries[index];
+    entry.clear();
+    entry.merge(tick);
+    publishedNanos[index] = System.nanoTime();
+    if (tick.getService() != null) {
+      int service = tick.getService().ordinal();
+      published.lazySet(service, published.get(service) + 1);
+    }
+    cursor.lazySet(sequence);
+  }
+
+  @Override
+  public void onTick(LevelOneTick tick) {
+    publish(tick);
+  }
+
+  /**
+   * Start building a subscriber which receives every tick published after it is built.
+   *
+   * @param handler called with every tick on the subscriber's thread
+   * @return builder of the subscriber
+   */
+  public TickSubscriber.Builder subscriber(LevelOneHandler handler) {
+    return new TickSubscriber.Builder(this, handler);
+  }
+
+  /**
+   * Stop every subscriber.
+   */
+  @Override
+  public void close() {
+    for (TickSubscriber subscriber : subscribers) {
+      subscriber.close();
+    }
+  }
+
+  public int getCapacity() {
+    return capacity;
+  }
+
+  /**
+   * @return sequence of the last tick published, -1 if none
+   */
+  public long getCursor() {
+    return cursor.get();
+  }
+
+  /**
+   * @param service a service
+   * @return number of ticks of the service published
+   */
+  public long getPublished(Service service) {
+    return published.get(service.ordinal());
+  }
+
+  public List<TickSubscriber> getSubscribers() {
+    return subscribers;
+  }
+
+  void add(TickSubscriber subscriber) {
+    subscribers.add(subscriber);
+  }
+
+  void remove(TickSubscriber subscriber) {
+    subscribers.remove(subscriber);
+  }
+
+  long claim() {
+    return claim.get();
+  }
+
+  /**
+   * Copy a tick out of the ring. May read a tick being overwritten, which the caller detects with
+   * {@link #claim()} afterwards.
+   */
+  void copy(long sequence, LevelOneTick to) {
+    to.clear();
+    to.merge(entries[(int) sequence & mask]);
+  }
+
+  long publishedNanos(long sequence) {
+    return publishedNanos[(int) sequence & mask];
+  }
+
+  @Override
+  public String toString() {
+    return new ToStringBuilder(this, ToStringStyle.SHORT_PREFIX_STYLE)
+        .append("capacity", capacity)
+        .append("cursor", getCursor())
+        .append("subscribers", subscribers.size())
+        .toString();
+  }
+
+  public static final class Builder {
+
+    private int capacity = 4096;
+
+    private Builder() {
+    }
+
+    public static Builder tickRing() {
+      return new Builder();
+    }
+
+    /**
+     * @param capacity number of ticks held, a power of two. Each one takes about 1.5KB. 4096 by
+     * default.
+     */
+    public Builder withCapacity(int capacity) {
+      this.capacity = capacity;
+      return this;
+    }
+
+    public TickRing build() {
+      if (capacity < 2 || Integer.bitCount(capacity) != 1) {
+        throw new IllegalArgumentException("capacity must be a power of two of at least 2");
+      }
+      return new TickRing(this);
+    }
+  }
+}
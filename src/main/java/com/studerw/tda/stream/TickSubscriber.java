@@ -0,0 +1,420 @@
+package com.studerw.tda.stream;
+
+import com.studerw.tda.model.stream.Service;
+import java.io.Closeable;
+import java.util.Arrays;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.AtomicLongArray;
+import java.util.concurrent.locks.LockSupport;
+import java.util.function.IntConsumer;
+import org.apache.commons.lang3.builder.ToStringBuilder;
+import org.apache.commons.lang3.builder.ToStringStyle;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+/**
+ * <p>
+ * Consumer of a {@link TickRing} with its own sequence. It copies up to <em>maxBatch</em> ticks out
+ * of the ring at a time and then passes them to its handler, so the handler never sees a tick
+ * being overwritten. Either {@link #start()} it on its own thread, which polls with its {@link
+ * WaitStrategy}, or call {@link #poll()} from a thread of your own.
+ * </p>
+ *
+ * <p>
+ * The backlog, dropped and conflated ticks, and the {@link QueueLag} of every {@link Service} can
+ * be read from any thread.
+ * </p>
+ */
+public final class TickSubscriber implements Runnable, Closeable {
+
+  private static final Logger LOGGER = LoggerFactory.getLogger(TickSubscriber.class);
+  private static final int SERVICES = Service.values().length;
+  private static final AtomicInteger IDS = new AtomicInteger();
+
+  private final TickRing ring;
+  private final String name;
+  private final LevelOneHandler handler;
+  private final IntConsumer batchEnd;
+  private final SlowConsumerPolicy policy;
+  private final WaitStrategy waitStrategy;
+  private final int maxBatch;
+  private final long conflateThreshold;
+
+  //last sequence read
+  private final AtomicLong sequence;
+  private final LevelOneTick[] batch;
+  private final long[] batchNanos;
+  private int batchStart;
+
+  //latest merged state and oldest publish time of each symbol while conflating
+  private LevelOneTick[] conflating = new LevelOneTick[0];
+  private long[] conflatingNanos = new long[0];
+  private int[] dirty = new int[64];
+  private int dirtyCount;
+
+  private final AtomicLong dropped = new AtomicLong();
+  private final AtomicLong conflated = new AtomicLong();
+  private final AtomicLongArray delivered = new AtomicLongArray(SERVICES);
+  private final AtomicLongArray lagTotal = new AtomicLongArray(SERVICES);
+  private final AtomicLongArray lagMax = new AtomicLongArray(SERVICES);
+  private final AtomicLongArray lagLast = new AtomicLongArray(SERVICES);
+
+  private volatile boolean running;
+  private volatile Thread thread;
+
+  private TickSubscriber(Builder builder) {
+    this.ring = builder.ring;
+    this.name = builder.name;
+    this.handler = builder.handler;
+    this.batchEnd = builder.batchEnd;
+    this.policy = builder.policy;
+    this.waitStrategy = builder.waitStrategy;
+    this.maxBatch = builder.maxBatch;
+    this.conflateThreshold = builder.conflateThreshold;
+    this.batch = new LevelOneTick[maxBatch];
+    this.batchNanos = new long[maxBatch];
+    for (int i = 0; i < maxBatch; i++) {
+      batch[i] = new LevelOneTick();
+    }
+    this.sequence = new AtomicLong(ring.getCursor());
+  }
+
+  /**
+   * Receive the ticks published since the last poll, at most <em>maxBatch</em> of them, or the
+   * whole backlog merged by symbol if conflating.
+   *
+   * @return number of ticks passed to the handler
+   */
+  public int poll() {
+    long next = sequence.get() + 1;
+    long available = ring.getCursor();
+    if (available < next) {
+      return 0;
+    }
+    if (policy == SlowConsumerPolicy.CONFLATE && available - next + 1 > conflateThreshold) {
+      return conflate(next, available);
+    }
+    int count = copyBatch(next, available);
+    for (int i = batchStart; i < count; i++) {
+      deliver(batch[i], batchNanos[i]);
+    }
+    return endBatch(count - batchStart);
+  }
+
+  /**
+   * Copy the ticks from next up to available, at most maxBatch of them, into the batch. The ticks
+   * before {@link #batchStart} were overwritten while being copied and must be ignored.
+   *
+   * @return number of ticks copied
+   */
+  private int copyBatch(long next, long available) {
+    long first = Math.max(next, available - ring.getCapacity() + 1);
+    long last = Math.min(available, first + maxBatch - 1);
+    int count = (int) (last - first + 1);
+    int failed = -1;
+    for (int i = 0; i < count; i++) {
+      try {
+        ring.copy(first + i, batch[i]);
+        batchNanos[i] = ring.publishedNanos(first + i);
+      } catch (RuntimeException e) {
+        //a tick torn by the producer, which the claim below reveals
+        failed = Math.max(failed, i);
+        batch[i].clear();
+      }
+    }
+    //a volatile write, so the copies above are done before the claim is read
+    sequence.set(last);
+    long oldestIntact = ring.claim() - ring.getCapacity() + 1;
+    batchStart = (int) Math.max(0, Math.min(count, oldestIntact - first));
+    if (failed >= batchStart) {
+      throw new IllegalStateException("Could not copy tick " + (first + failed) + " of the ring");
+    }
+    long lost = first - next + batchStart;
+    if (lost > 0) {
+      dropped.addAndGet(lost);
+      LOGGER.debug("Subscriber {} lapped by the producer, dropped {} ticks", name, lost);
+    }
+    return count;
+  }
+
+  private int conflate(long next, long available) {
+    int merged = 0;
+    while (next <= available) {
+      int count = copyBatch(next, available);
+      for (int i = batchStart; i < count; i++) {
+        LevelOneTick tick = batch[i];
+        int id = tick.getSymbolId();
+        if (id < 0) {
+          deliver(tick, batchNanos[i]);
+          continue;
+        }
+        LevelOneTick state = conflationSlot(id);
+        if (state.getService() == null) {
+          dirty = dirtyCount < dirty.length ? dirty : Arrays.copyOf(dirty, dirty.length * 2);
+          dirty[dirtyCount++] = id;
+          conflatingNanos[id] = batchNanos[i];
+        } else if (state.getService() != tick.getService()) {
+          //the same symbol in two services is delivered separately
+          deliver(state, conflatingNanos[id]);
+          state.clear();
+          conflatingNanos[id] = batchNanos[i];
+          merged--;
+        }
+        state.merge(tick);
+        merged++;
+      }
+      next = sequence.get() + 1;
+    }
+    for (int i = 0; i < dirtyCount; i++) {
+      LevelOneTick state = conflating[dirty[i]];
+      deliver(state, conflatingNanos[dirty[i]]);
+      state.clear();
+    }
+    int deliveredCount = dirtyCount;
+    conflated.addAndGet(merged - deliveredCount);
+    dirtyCount = 0;
+    return endBatch(deliveredCount);
+  }
+
+  private LevelOneTick conflationSlot(int id) {
+    if (id >= conflating.length) {
+      int length = Math.max(id + 1, conflating.length * 2);
+      LevelOneTick[] grown = Arrays.copyOf(conflating, length);
+      for (int i = conflating.length; i < length; i++) {
+        grown[i] = new LevelOneTick();
+      }
+      conflating = grown;
+      conflatingNanos = Arrays.copyOf(conflatingNanos, length);
+    }
+    return conflating[id];
+  }
+
+  private void deliver(LevelOneTick tick, long publishedNanos) {
+    Service service = tick.getService();
+    if (service != null) {
+      int s = service.ordinal();
+      long lag = System.nanoTime() - publishedNanos;
+      delivered.lazySet(s, delivered.get(s) + 1);
+      lagTotal.lazySet(s, lagTotal.get(s) + lag);
+      lagLast.lazySet(s, lag);
+      if (lag > lagMax.get(s)) {
+        lagMax.lazySet(s, lag);
+      }
+    }
+    try {
+      handler.onTick(tick);
+    } catch (RuntimeException e) {
+      LOGGER.warn("Handler of subscriber {} failed on {}", name, tick, e);
+    }
+  }
+
+  private int endBatch(int count) {
+    if (batchEnd != null && count > 0) {
+      try {
+        batchEnd.accept(count);
+      } catch (RuntimeException e) {
+        LOGGER.warn("Batch end of subscriber {} failed", name, e);
+      }
+    }
+    return count;
+  }
+
+  /**
+   * Poll until closed, waiting with the wait strategy whenever there is nothing to receive.
+   */
+  @Override
+  public void run() {
+    running = true;
+    int idle = 0;
+    while (running) {
+      if (poll() > 0) {
+        idle = 0;
+      } else {
+        waitStrategy.idle(++idle);
+      }
+    }
+  }
+
+  /**
+   * Run {@link #run()} on a new daemon thread named after the subscriber.
+   *
+   * @throws IllegalStateException if already started
+   */
+  public synchronized void start() {
+    if (thread != null) {
+      throw new IllegalStateException("Subscriber " + name + " already started");
+    }
+    running = true;
+    Thread t = new Thread(this, "tda-ticks-" + name);
+    t.setDaemon(true);
+    thread = t;
+    t.start();
+  }
+
+  /**
+   * Stop polling and leave the ring.
+   */
+  @Override
+  public void close() {
+    running = false;
+    Thread t = thread;
+    if (t != null) {
+      LockSupport.unpark(t);
+    }
+    ring.remove(this);
+  }
+
+  public String getName() {
+    return name;
+  }
+
+  public SlowConsumerPolicy getPolicy() {
+    return policy;
+  }
+
+  /**
+   * @return sequence of the last tick read
+   */
+  public long getSequence() {
+    return sequence.get();
+  }
+
+  /**
+   * @return number of ticks published but not yet read
+   */
+  public long getBacklog() {
+    return Math.max(0, ring.getCursor() - sequence.get());
+  }
+
+  /**
+   * @return number of ticks overwritten before they were read
+   */
+  public long getDropped() {
+    return dropped.get();
+  }
+
+  /**
+   * @return number of ticks merged into another tick of the same symbol instead of delivered
+   */
+  public long getConflated() {
+    return conflated.get();
+  }
+
+  /**
+   * @param service a service
+   * @return time the ticks of the service waited in the ring
+   */
+  public QueueLag getLag(Service service) {
+    int s = service.ordinal();
+    return new QueueLag(service, delivered.get(s), lagTotal.get(s), lagMax.get(s),
+        lagLast.get(s));
+  }
+
+  @Override
+  public String toString() {
+    return new ToStringBuilder(this, ToStringStyle.SHORT_PREFIX_STYLE)
+        .append("name", name)
+        .append("policy", policy)
+        .append("sequence", getSequence())
+        .append("backlog", getBacklog())
+        .append("dropped", getDropped())
+        .append("conflated", getConflated())
+        .toString();
+  }
+
+  /**
+   * Created with {@link TickRing#subscriber(LevelOneHandler)}.
+   */
+  public static final class Builder {
+
+    private final TickRing ring;
+    private final LevelOneHandler handler;
+    private String name;
+    private IntConsumer batchEnd;
+    private SlowConsumerPolicy policy = SlowConsumerPolicy.DROP;
+    private WaitStrategy waitStrategy = WaitStrategy.PARK;
+    private int maxBatch = -1;
+    private long conflateThreshold = -1;
+
+    Builder(TickRing ring, LevelOneHandler handler) {
+      this.ring = ring;
+      this.handler = handler;
+    }
+
+    /**
+     * @param name name of the subscriber and its thread
+     */
+    public Builder withName(String name) {
+      this.name = name;
+      return this;
+    }
+
+    /**
+     * @param policy what to do when falling behind, {@link SlowConsumerPolicy#DROP} by default
+     */
+    public Builder withPolicy(SlowConsumerPolicy policy) {
+      this.policy = policy;
+      return this;
+    }
+
+    /**
+     * @param waitStrategy how to wait for ticks, {@link WaitStrategy#PARK} by default
+     */
+    public Builder withWaitStrategy(WaitStrategy waitStrategy) {
+      this.waitStrategy = waitStrategy;
+      return this;
+    }
+
+    /**
+     * @param maxBatch most ticks copied out of the ring at a time, 256 or the ring's
+     * capacity if smaller by default
+     */
+    public Builder withMaxBatch(int maxBatch) {
+      this.maxBatch = maxBatch;
+      return this;
+    }
+
+    /**
+     * @param conflateThreshold backlog beyond which a {@link SlowConsumerPolicy#CONFLATE}
+     * subscriber conflates, half the ring's capacity by default
+     */
+    public Builder withConflateThreshold(long conflateThreshold) {
+      this.conflateThreshold = conflateThreshold;
+      return this;
+    }
+
+    /**
+     * @param batchEnd called with the number of ticks after every batch passed to the handler,
+     * e.g. to flush what the handler buffered
+     */
+    public Builder withBatchEnd(IntConsumer batchEnd) {
+      this.batchEnd = batchEnd;
+      return this;
+    }
+
+    /**
+     * @return a subscriber which receives every tick published from now on
+     */
+    public TickSubscriber build() {
+      if (handler == null || policy == null || waitStrategy == null) {
+        throw new IllegalArgumentException("handler, policy and waitStrategy cannot be null");
+      }
+      if (maxBatch == -1) {
+        maxBatch = Math.min(256, ring.getCapacity());
+      }
+      if (maxBatch < 1 || maxBatch > ring.getCapacity()) {
+        throw new IllegalArgumentException("maxBatch must be between 1 and the ring's capacity");
+      }
+      if (conflateThreshold < 0) {
+        conflateThreshold = ring.getCapacity() / 2;
+      }
+      if (name == null) {
+        name = "subscriber-" + IDS.incrementAndGet();
+      }
+      TickSubscriber subscriber = new TickSubscriber(this);
+      ring.add(subscriber);
+      return subscriber;
+    }
+  }
+}
@@ -0,0 +1,61 @@
+package com.studerw.tda.stream;
+
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.locks.LockSupport;
+
+/**
+ * How a {@link TickSubscriber} waits for the next tick once it has caught up with the {@link
+ * TickRing}. The lower the latency, the more CPU an idle subscriber burns.
+ */
+public enum WaitStrategy {
+
+  /**
+   * Poll in a tight loop. Lowest latency, but keeps a core busy, so only use it with a core to
+   * spare for each subscriber.
+   */
+  BUSY_SPIN {
+    @Override
+    void idle(int attempts) {
+      //poll again right away
+    }
+  },
+
+  /**
+   * Spin briefly, then yield the core to other threads between polls.
+   */
+  YIELD {
+    @Override
+    void idle(int attempts) {
+      if (attempts > SPINS) {
+        Thread.yield();
+      }
+    }
+  },
+
+  /**
+   * Spin and yield briefly, then sleep between polls. Uses next to no CPU when the market is
+   * quiet, at the cost of up to {@link #PARK_MICROS} microseconds of latency on the first tick.
+   */
+  PARK {
+    @Override
+    void idle(int attempts) {
+      if (attempts > 2 * SPINS) {
+        LockSupport.parkNanos(TimeUnit.MICROSECONDS.toNanos(PARK_MICROS));
+      } else if (attempts > SPINS) {
+        Thread.yield();
+      }
+    }
+  };
+
+  /**
+   * Longest sleep of {@link #PARK} between polls
+   */
+  public static final long PARK_MICROS = 50;
+
+  private static final int SPINS = 100;
+
+  /**
+   * @param attempts number of polls in a row which found nothing, starting at 1
+   */
+  abstract void idle(int attempts);
+}
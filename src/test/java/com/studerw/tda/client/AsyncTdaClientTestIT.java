@@ -0,0 +1,64 @@
+package com.studerw.tda.client;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+import com.studerw.tda.model.history.PriceHistory;
+import com.studerw.tda.model.quote.Quote;
+import com.studerw.tda.model.user.UserPrincipals;
+import java.util.Arrays;
+import java.util.List;
+import java.util.concurrent.CompletableFuture;
+import java.util.stream.Collectors;
+import org.junit.BeforeClass;
+import org.junit.Test;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+public class AsyncTdaClientTestIT extends BaseTestIT {
+
+  private static final Logger LOGGER = LoggerFactory.getLogger(AsyncTdaClientTestIT.class);
+  private static AsyncTdaClient asyncTdaClient;
+
+  @BeforeClass
+  public static void beforeAsync() {
+    asyncTdaClient = new HttpAsyncTdaClient(httpTdaClient, Runnable::run);
+  }
+
+  @Test
+  public void testFetchQuoteFanOut() {
+    List<String> symbols = Arrays.asList("MSFT", "AAPL", "SPY", "VTSAX", "IBM", "QQQ");
+    List<CompletableFuture<Quote>> futures = symbols.stream()
+        .map(asyncTdaClient::fetchQuote)
+        .collect(Collectors.toList());
+
+    List<Quote> quotes = futures.stream().map(CompletableFuture::join)
+        .collect(Collectors.toList());
+    assertThat(quotes).size().isEqualTo(symbols.size());
+    for (int i = 0; i < symbols.size(); i++) {
+      assertThat(quotes.get(i).getSymbol()).isEqualTo(symbols.get(i));
+    }
+  }
+
+  @Test
+  public void testPriceHistoryAndPrincipals() {
+    CompletableFuture<PriceHistory> history = asyncTdaClient.priceHistory("VTI");
+    CompletableFuture<UserPrincipals> principals = asyncTdaClient.getUserPrincipals();
+    CompletableFuture.allOf(history, principals).join();
+
+    assertThat(history.join().getCandles()).isNotEmpty();
+    assertThat(principals.join().getUserId()).isNotBlank();
+    LOGGER.debug("{}", principals.join().getUserId());
+  }
+
+  @Test
+  public void testBadSymbol() {
+    CompletableFuture<?> future = asyncTdaClient.priceHistory("");
+    assertThat(future.handle((v, e) -> e).join()).isInstanceOf(IllegalArgumentException.class);
+  }
+
+  @Test
+  public void testBadCusip() {
+    CompletableFuture<?> future = asyncTdaClient.getInstrumentByCUSIP("0000000");
+    assertThat(future.handle((v, e) -> e).join()).isNotNull();
+  }
+}
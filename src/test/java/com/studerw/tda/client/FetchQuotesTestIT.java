@@ -10,9 +10,12 @@ import com.studerw.tda.model.quote.IndexQuote;
 import com.studerw.tda.model.quote.MutualFundQuote;
 import com.studerw.tda.model.quote.OptionQuote;
 import com.studerw.tda.model.quote.Quote;
+import com.studerw.tda.model.quote.QuoteBatch;
 import java.math.BigDecimal;
+import java.util.ArrayList;
 import java.util.Arrays;
 import java.util.List;
+import java.util.Properties;
 import org.junit.Ignore;
 import org.junit.Test;
 import org.slf4j.Logger;
@@ -133,10 +136,9 @@ public class FetchQuotesTestIT extends BaseTestIT {
   //logger  name="TDA_HTTP" level="debug"
   //logger name="com.studerw.tda.client.OauthInterceptor" level="debug"
   //
-  //You will see that the call to get the first quote has a header: Authorization: Bearer UNSET
-  //That triggers a 401 resposne from the server which the OAuthInterceptor detects and then makes a call for new auth token.
-  //On all subsequent calls, you see that the Bearer header is now using the new auth token, and thus the
-  //interceptor is never forced to create a new refresh token.
+  //You will see that a single auth token is requested when the client is created (or at the latest before
+  //the first quote is fetched), and that every call, including the first, uses it in the Bearer header.
+  //The interceptor is never forced to create a new auth token.
   @Test
   public void testOAuthCreatedOnlyOnce(){
     List<String> symbols = Arrays
@@ -149,4 +151,37 @@ public class FetchQuotesTestIT extends BaseTestIT {
       LOGGER.debug("{} - {}", quote.getSymbol(), quote.getDescription());
     }
   }
-}
\ No newline at end of file
+
+  @Test
+  public void testChunkedQuotes() {
+    Properties chunkProps = new Properties();
+    chunkProps.putAll(props);
+    chunkProps.setProperty("tda.quotes.chunkSize", "3");
+    HttpTdaClient chunkClient = new HttpTdaClient(chunkProps);
+
+    List<String> symbols = Arrays
+        .asList("AAPL", "MSFT", "AMZN", "FB", "GOOGL", "GOOG", "BRK.B", "JNJ", "V", "PG");
+    final QuoteBatch batch = chunkClient.fetchQuoteBatch(symbols);
+    assertThat(batch.isComplete()).isTrue();
+    assertThat(batch.getQuotes()).size().isEqualTo(symbols.size());
+    for (int i = 0; i < symbols.size(); i++) {
+      assertThat(batch.getQuotes().get(i).getSymbol()).isEqualTo(symbols.get(i));
+    }
+  }
+
+  @Test
+  public void testStreamingQuotes() {
+    Properties chunkProps = new Properties();
+    chunkProps.putAll(props);
+    chunkProps.setProperty("tda.quotes.chunkSize", "3");
+    HttpTdaClient chunkClient = new HttpTdaClient(chunkProps);
+
+    List<String> symbols = Arrays.asList("AAPL", "MSFT", "AMZN", "FB", "SPY", "$SPX.X", "VTSAX");
+    List<Quote> quotes = new ArrayList<>();
+    int count = chunkClient.fetchQuotes(symbols, quotes::add);
+    assertThat(count).isEqualTo(symbols.size());
+    assertThat(quotes).size().isEqualTo(symbols.size());
+    quotes.forEach(quote -> assertThat(symbols).contains(quote.getSymbol()));
+    assertThat(quotes.stream().filter(q -> q instanceof EtfQuote).count()).isEqualTo(1L);
+  }
+}
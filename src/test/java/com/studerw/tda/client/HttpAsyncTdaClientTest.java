@@ -0,0 +1,68 @@
+package com.studerw.tda.client;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.Properties;
+import java.util.concurrent.CompletableFuture;
+import org.junit.Before;
+import org.junit.Test;
+
+public class HttpAsyncTdaClientTest {
+
+  private HttpAsyncTdaClient client;
+
+  @Before
+  public void setUp() {
+    Properties props = new Properties();
+    props.setProperty("tda.token.refresh", "abc");
+    props.setProperty("tda.client_id", "abc");
+    props.setProperty("tda.token.eager", "false");
+    client = new HttpAsyncTdaClient(props, Runnable::run);
+  }
+
+  @Test
+  public void testInvalidArgumentsFailTheFuture() {
+    assertFailed(client.priceHistory(""));
+    assertFailed(client.priceHistorySeries((String) null));
+    assertFailed(client.fetchQuotes(Collections.emptyList()));
+    assertFailed(client.fetchQuoteBatch(null));
+    assertFailed(client.getAccount("", true, true));
+    assertFailed(client.getInstrumentByCUSIP(null));
+    assertFailed(client.getFundamentalData(""));
+  }
+
+  @Test
+  public void testPriorityNotQueuedBehindBulk() {
+    Properties props = new Properties();
+    props.setProperty("tda.token.refresh", "abc");
+    props.setProperty("tda.client_id", "abc");
+    props.setProperty("tda.token.eager", "false");
+    //nothing listens there, so every call fails fast once it is sent
+    props.setProperty("tda.url", "http://127.0.0.1:1/v1");
+    props.setProperty("tda.ratelimit.perMinute", "600");
+    props.setProperty("tda.ratelimit.burst", "1");
+    props.setProperty("tda.async.maxRequestsPerHost", "2");
+    HttpAsyncTdaClient limited = new HttpAsyncTdaClient(props, Runnable::run);
+
+    List<String> order = Collections.synchronizedList(new ArrayList<>());
+    List<CompletableFuture<?>> futures = new ArrayList<>();
+    for (int i = 0; i < 8; i++) {
+      String name = "bulk" + i;
+      futures.add(limited.priceHistory("MSFT").handle((v, e) -> order.add(name)));
+    }
+    futures.add(limited.cancelOrder("123", "456").handle((v, e) -> order.add("priority")));
+    CompletableFuture.allOf(futures.toArray(new CompletableFuture<?>[0])).join();
+
+    //only the first bulk call got a token before the priority call was made
+    assertThat(order.indexOf("priority")).isLessThanOrEqualTo(1);
+    assertThat(order).hasSize(9);
+  }
+
+  private static void assertFailed(CompletableFuture<?> future) {
+    assertThat(future.isCompletedExceptionally()).isTrue();
+    assertThat(future.handle((v, e) -> e).join()).isInstanceOf(IllegalArgumentException.class);
+  }
+}
@@ -3,7 +3,17 @@ package com.studerw.tda.client;
 import static org.assertj.core.api.Assertions.assertThat;
 import static org.assertj.core.api.Fail.fail;
 
+import com.studerw.tda.http.cache.CacheEndpoint;
+import com.studerw.tda.http.cache.LruResponseCache;
+import com.studerw.tda.http.cache.ResponseCache;
+import com.studerw.tda.model.option.OptionChainReq;
+import com.studerw.tda.model.option.OptionChainReq.ContractType;
+import com.studerw.tda.model.option.OptionChainReq.Range;
+import com.studerw.tda.model.user.UserPrincipals;
+import java.time.LocalDate;
 import java.util.Properties;
+import java.util.concurrent.TimeUnit;
+import okhttp3.HttpUrl;
 import org.junit.Test;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
@@ -36,11 +46,94 @@ public class HttpTdaClientTest {
     Properties props = new Properties();
     props.setProperty("tda.token.refresh", "abd");
     props.setProperty("tda.client_id", "abd");
+    props.setProperty("tda.token.eager", "false");
     LOGGER.debug("Set valid props, others using defaults");
     HttpTdaClient client = new HttpTdaClient(props);
     assertThat(client.tdaProps.getProperty("tda.token.refresh")).isEqualTo("abd");
     assertThat(client.tdaProps.getProperty("tda.client_id")).isEqualTo("abd");
     assertThat(client.tdaProps.getProperty("tda.url")).isEqualTo(HttpTdaClient.DEFAULT_PATH);
     assertThat(client.tdaProps.getProperty("tda.debug.bytes.length")).isEqualTo("-1");
+    assertThat(client.tdaProps.getProperty("tda.async.maxRequests")).isEqualTo("64");
+    assertThat(client.tdaProps.getProperty("tda.async.maxRequestsPerHost")).isEqualTo("16");
+    assertThat(client.tdaProps.getProperty("tda.cache.maxEntries")).isEqualTo("1000");
+    assertThat(client.tdaProps.getProperty("tda.cache.ttl.movers")).isEqualTo("10");
+
+    props.remove("tda.token.eager");
+    HttpTdaClient.validateProps(props);
+    assertThat(props.getProperty("tda.token.eager")).isEqualTo("true");
+  }
+
+  @Test(expected = IllegalArgumentException.class)
+  public void testNonPositiveChunkSize() {
+    Properties props = new Properties();
+    props.setProperty("tda.token.refresh", "abd");
+    props.setProperty("tda.client_id", "abd");
+    props.setProperty("tda.quotes.chunkSize", "0");
+    HttpTdaClient.validateProps(props);
+  }
+
+  @Test
+  public void testResponseCacheProps() {
+    Properties props = new Properties();
+    props.setProperty("tda.token.refresh", "abd");
+    props.setProperty("tda.client_id", "abd");
+    props.setProperty("tda.token.eager", "false");
+    props.setProperty("tda.cache.ttl.quotes", "2");
+    HttpTdaClient client = new HttpTdaClient(props);
+    LruResponseCache cache = (LruResponseCache) client.getResponseCache();
+    assertThat(cache.getMaxEntries()).isEqualTo(1000);
+    assertThat(cache.getTtlNanos(CacheEndpoint.QUOTES)).isEqualTo(TimeUnit.SECONDS.toNanos(2));
+    assertThat(cache.getTtlNanos(CacheEndpoint.INSTRUMENT)).isEqualTo(TimeUnit.HOURS.toNanos(4));
+
+    ResponseCache custom = LruResponseCache.Builder.lruResponseCache().withMaxEntries(10).build();
+    assertThat(new HttpTdaClient(props, custom).getResponseCache()).isSameAs(custom);
+  }
+
+  @Test
+  public void testOptionChainRequest() {
+    HttpTdaClient client = new HttpTdaClient();
+    OptionChainReq optionChainReq = OptionChainReq.Builder.optionChainReq()
+        .withSymbol("msft")
+        .withContractType(ContractType.CALL)
+        .withStrikeCount(4)
+        .withIncludeQuotes(false)
+        .withRange(Range.OTM)
+        .withFromDate(LocalDate.of(2020, 6, 1))
+        .withToDate(LocalDate.of(2020, 6, 19))
+        .build();
+    HttpUrl url = client.buildOptionChainRequest(optionChainReq).url();
+    LOGGER.debug("{}", url);
+    assertThat(url.encodedPath()).endsWith("/marketdata/chains");
+    assertThat(url.queryParameter("symbol")).isEqualTo("MSFT");
+    assertThat(url.queryParameter("contractType")).isEqualTo("CALL");
+    assertThat(url.queryParameter("strikeCount")).isEqualTo("4");
+    assertThat(url.queryParameter("includeQuotes")).isEqualTo("FALSE");
+    assertThat(url.queryParameter("range")).isEqualTo("OTM");
+    assertThat(url.queryParameter("fromDate")).isEqualTo("2020-06-01");
+    assertThat(url.queryParameter("toDate")).isEqualTo("2020-06-19");
+    assertThat(url.queryParameter("strategy")).isNull();
+
+    url = client.buildOptionChainRequest("msft").url();
+    assertThat(url.queryParameterNames()).containsExactly("symbol");
+  }
+
+  @Test
+  public void testUserPrincipalsRequest() {
+    HttpTdaClient client = new HttpTdaClient();
+    HttpUrl url = client.buildUserPrincipalsRequest().url();
+    assertThat(url.encodedPath()).endsWith("/userprincipals");
+    assertThat(url.queryParameter("fields")).isNull();
+
+    url = client.buildUserPrincipalsRequest(UserPrincipals.Field.STREAMER_SUBSCRIPTION_KEYS,
+        UserPrincipals.Field.STREAMER_CONNECTION_INFO).url();
+    assertThat(url.queryParameter("fields"))
+        .isEqualTo("streamerSubscriptionKeys,streamerConnectionInfo");
+  }
+
+  @Test(expected = IllegalArgumentException.class)
+  public void testInvalidOptionChainRequest() {
+    HttpTdaClient client = new HttpTdaClient();
+    client.buildOptionChainRequest(
+        OptionChainReq.Builder.optionChainReq().withSymbol("msft").withStrikeCount(-1).build());
   }
 }
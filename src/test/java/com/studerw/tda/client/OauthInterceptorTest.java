@@ -0,0 +1,124 @@
+package com.studerw.tda.client;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+import com.studerw.tda.client.OauthInterceptor.Token;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Properties;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import okhttp3.MediaType;
+import okhttp3.OkHttpClient;
+import okhttp3.Protocol;
+import okhttp3.Response;
+import okhttp3.ResponseBody;
+import org.junit.Before;
+import org.junit.Test;
+
+public class OauthInterceptorTest {
+
+  private final AtomicInteger tokenRequests = new AtomicInteger();
+  private Properties props;
+  private HttpTdaClient client;
+  private OkHttpClient authClient;
+  private OauthInterceptor interceptor;
+
+  @Before
+  public void setUp() {
+    props = new Properties();
+    props.setProperty("tda.token.refresh", "abc");
+    props.setProperty("tda.client_id", "abc");
+    props.setProperty("tda.token.eager", "false");
+    client = new HttpTdaClient(props);
+
+    //stand in for the TDA token endpoint, handing out token-1, token-2, ...
+    authClient = new OkHttpClient.Builder().addInterceptor(chain -> {
+      int count = tokenRequests.incrementAndGet();
+      try {
+        Thread.sleep(50);
+      } catch (InterruptedException e) {
+        Thread.currentThread().interrupt();
+      }
+      String json = String.format("{\"access_token\":\"token-%d\",\"expires_in\":1800}", count);
+      return new Response.Builder().request(chain.request()).protocol(Protocol.HTTP_1_1)
+          .code(200).message("OK")
+          .body(ResponseBody.create(MediaType.get("application/json"), json))
+          .build();
+    }).build();
+    interceptor = new OauthInterceptor(client, props, authClient);
+  }
+
+  @Test
+  public void testConcurrentRequestsShareOneToken() throws Exception {
+    ExecutorService executor = Executors.newFixedThreadPool(32);
+    CountDownLatch start = new CountDownLatch(1);
+    List<Future<Token>> futures = new ArrayList<>();
+    for (int i = 0; i < 32; i++) {
+      futures.add(executor.submit(() -> {
+        start.await();
+        return interceptor.currentToken();
+      }));
+    }
+    start.countDown();
+    for (Future<Token> future : futures) {
+      assertThat(future.get(5, TimeUnit.SECONDS).accessToken).isEqualTo("token-1");
+    }
+    executor.shutdown();
+    assertThat(tokenRequests.get()).isEqualTo(1);
+  }
+
+  @Test
+  public void testStaleTokenRefreshedOnce() {
+    Token first = interceptor.currentToken();
+    assertThat(first.accessToken).isEqualTo("token-1");
+    assertThat(interceptor.currentToken()).isSameAs(first);
+
+    Token second = interceptor.refresh(first);
+    assertThat(second.accessToken).isEqualTo("token-2");
+    //another thread that saw the same 401 just picks up the new token
+    assertThat(interceptor.refresh(first)).isSameAs(second);
+    assertThat(tokenRequests.get()).isEqualTo(2);
+  }
+
+  @Test
+  public void testSupersededRenewalCancelled() {
+    interceptor.currentToken();
+    Future<?> first = interceptor.getRenewal();
+    assertThat(first).isNotNull();
+    interceptor.refresh(interceptor.currentToken());
+    assertThat(first.isCancelled()).isTrue();
+    assertThat(interceptor.getRenewal().isCancelled()).isFalse();
+  }
+
+  @Test
+  public void testEager() throws InterruptedException {
+    //nothing is requested when opted out
+    interceptor.start();
+    assertThat(interceptor.getRenewal()).isNull();
+
+    props.setProperty("tda.token.eager", "true");
+    OauthInterceptor eager = new OauthInterceptor(client, props, authClient);
+    assertThat(tokenRequests.get()).isEqualTo(0);
+    eager.start();
+    long deadline = System.currentTimeMillis() + 5000;
+    while (tokenRequests.get() == 0 && System.currentTimeMillis() < deadline) {
+      Thread.sleep(10);
+    }
+    assertThat(tokenRequests.get()).isEqualTo(1);
+  }
+
+  @Test
+  public void testExpiry() {
+    long now = System.nanoTime();
+    Token token = new Token("abc", 1800, now);
+    assertThat(token.isExpired(now)).isFalse();
+    long skewed = TimeUnit.SECONDS.toNanos(1800 - OauthInterceptor.EXPIRY_SKEW_SECS);
+    assertThat(token.isExpired(now + skewed)).isTrue();
+    assertThat(new Token("abc", 0, now).isExpired(now + TimeUnit.DAYS.toNanos(1))).isFalse();
+  }
+}
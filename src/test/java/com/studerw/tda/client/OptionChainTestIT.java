@@ -3,6 +3,9 @@ package com.studerw.tda.client;
 import static org.assertj.core.api.Assertions.assertThat;
 
 import com.studerw.tda.model.option.OptionChain;
+import com.studerw.tda.model.option.OptionChainReq;
+import com.studerw.tda.model.option.OptionChainReq.ContractType;
+import java.time.LocalDate;
 import org.junit.Test;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
@@ -28,5 +31,23 @@ public class OptionChainTestIT extends BaseTestIT {
     LOGGER.debug("Size of calls: {}", optionChain.getCallExpDateMap().size());
   }
 
+  @Test
+  public void testFilteredOptionChain() {
+    OptionChainReq request = OptionChainReq.Builder.optionChainReq()
+        .withSymbol("msft")
+        .withContractType(ContractType.CALL)
+        .withStrikeCount(4)
+        .withToDate(LocalDate.now().plusDays(45))
+        .build();
+    final OptionChain optionChain = httpTdaClient.getOptionChain(request);
+    assertThat(optionChain).isNotNull();
+    assertThat(optionChain.getStatus()).isEqualTo("SUCCESS");
+    assertThat(optionChain.getSymbol()).isEqualTo("MSFT");
+    assertThat(optionChain.getPutExpDateMap()).isEmpty();
+    assertThat(optionChain.getCallExpDateMap()).isNotEmpty();
+    optionChain.getCallExpDateMap().values()
+        .forEach(strikes -> assertThat(strikes.size()).isLessThanOrEqualTo(4));
 
-}
\ No newline at end of file
+    LOGGER.debug("Size of calls: {}", optionChain.getCallExpDateMap().size());
+  }
+}
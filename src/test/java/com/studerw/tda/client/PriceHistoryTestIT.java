@@ -4,6 +4,7 @@ import static org.assertj.core.api.Assertions.assertThat;
 import static org.assertj.core.api.Fail.fail;
 
 import com.studerw.tda.model.history.Candle;
+import com.studerw.tda.model.history.CandleSeries;
 import com.studerw.tda.model.history.FrequencyType;
 import com.studerw.tda.model.history.PriceHistReq;
 import com.studerw.tda.model.history.PriceHistReq.Builder;
@@ -42,6 +43,21 @@ public class PriceHistoryTestIT extends BaseTestIT {
 
   }
 
+  @Test
+  public void testPriceHistorySeries() {
+    CandleSeries series = httpTdaClient.priceHistorySeries("msft");
+    assertThat(series.getSymbol()).isEqualTo("MSFT");
+    assertThat(series.size()).isGreaterThan(1000);
+    LOGGER.debug(series.toString());
+    assertThat(series.getClose(10)).isGreaterThan(1.0);
+    assertThat(series.getVolume(10)).isGreaterThan(0L);
+
+    long start = series.getDatetime(100);
+    CandleSeries lastDay = series.between(start, start + 86_400_000L);
+    assertThat(lastDay.getDatetime(0)).isEqualTo(start);
+    assertThat(lastDay.getEnd()).isLessThan(start + 86_400_000L);
+  }
+
   @Test
   public void testPriceHistoryMutualFund() {
     long now = System.currentTimeMillis();
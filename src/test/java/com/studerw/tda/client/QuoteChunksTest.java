@@ -0,0 +1,108 @@
+package com.studerw.tda.client;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.assertThatThrownBy;
+import static org.junit.Assert.fail;
+
+import com.studerw.tda.model.quote.Quote;
+import com.studerw.tda.model.quote.QuoteBatch;
+import com.studerw.tda.parse.DefaultMapper;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.CompletableFuture;
+import java.util.stream.Collectors;
+import org.junit.Test;
+
+public class QuoteChunksTest {
+
+  @Test
+  public void testSplit() {
+    List<String> symbols = Arrays.asList("A", "B", "C", "A", "D", "E");
+    List<List<String>> chunks = QuoteChunks.split(symbols, 2);
+    assertThat(chunks).hasSize(3);
+    assertThat(chunks.get(0)).containsExactly("A", "B");
+    assertThat(chunks.get(1)).containsExactly("C", "D");
+    assertThat(chunks.get(2)).containsExactly("E");
+  }
+
+  @Test(expected = IllegalArgumentException.class)
+  public void testSplitEmpty() {
+    QuoteChunks.split(new ArrayList<>(), 100);
+  }
+
+  @Test
+  public void testSplitNonPositiveChunkSize() {
+    List<String> symbols = Arrays.asList("A", "B");
+    assertThatThrownBy(() -> QuoteChunks.split(symbols, 0))
+        .isInstanceOf(IllegalArgumentException.class);
+    assertThatThrownBy(() -> QuoteChunks.split(symbols, -5))
+        .isInstanceOf(IllegalArgumentException.class);
+  }
+
+  @Test
+  public void testMergeKeepsOrder() {
+    List<String> symbols = Arrays.asList("msft", "IBM", "AAPL", "XXXX", "SPY");
+    List<List<String>> chunks = QuoteChunks.split(symbols, 2);
+    List<CompletableFuture<Map<String, Quote>>> results = new ArrayList<>();
+    // TDA returns upper case keys, not necessarily in the requested order
+    results.add(CompletableFuture.completedFuture(quotes("IBM", "MSFT")));
+    results.add(CompletableFuture.completedFuture(quotes("AAPL")));
+    results.add(CompletableFuture.completedFuture(quotes("SPY")));
+
+    QuoteBatch batch = QuoteChunks.merge(symbols, chunks, results);
+    assertThat(batch.isComplete()).isTrue();
+    assertThat(symbols(batch.getQuotes())).containsExactly("MSFT", "IBM", "AAPL", "SPY");
+  }
+
+  @Test
+  public void testPartialFailure() {
+    List<String> symbols = Arrays.asList("MSFT", "IBM", "AAPL");
+    List<List<String>> chunks = QuoteChunks.split(symbols, 2);
+    List<CompletableFuture<Map<String, Quote>>> results = new ArrayList<>();
+    CompletableFuture<Map<String, Quote>> failed = new CompletableFuture<>();
+    failed.completeExceptionally(new RuntimeException("Non 200 response"));
+    results.add(failed);
+    results.add(CompletableFuture.completedFuture(quotes("AAPL")));
+
+    QuoteBatch batch = QuoteChunks.merge(symbols, chunks, results);
+    assertThat(batch.isComplete()).isFalse();
+    assertThat(batch.getFailedSymbols()).containsExactly("MSFT", "IBM");
+    assertThat(batch.getFailures().get(0).getCause().getMessage()).isEqualTo("Non 200 response");
+    assertThat(symbols(batch.getQuotes())).containsExactly("AAPL");
+    try {
+      QuoteChunks.quotesOrThrow(batch, chunks.size());
+      fail("should not get here");
+    } catch (RuntimeException e) {
+      assertThat(e.getMessage()).isEqualTo("Non 200 response");
+    }
+  }
+
+  @Test(expected = IllegalStateException.class)
+  public void testAllFailedThrows() {
+    List<String> symbols = Arrays.asList("MSFT", "IBM");
+    List<List<String>> chunks = QuoteChunks.split(symbols, 1);
+    List<CompletableFuture<Map<String, Quote>>> results = new ArrayList<>();
+    for (int i = 0; i < chunks.size(); i++) {
+      CompletableFuture<Map<String, Quote>> failed = new CompletableFuture<>();
+      failed.completeExceptionally(new IllegalStateException("bad token"));
+      results.add(failed);
+    }
+    QuoteChunks.quotesOrThrow(QuoteChunks.merge(symbols, chunks, results), chunks.size());
+  }
+
+  private static Map<String, Quote> quotes(String... symbols) {
+    Map<String, Quote> map = new LinkedHashMap<>();
+    for (String symbol : symbols) {
+      String json = String.format("{\"assetType\":\"EQUITY\",\"symbol\":\"%s\"}", symbol);
+      map.put(symbol, DefaultMapper.fromJson(json, Quote.class));
+    }
+    return map;
+  }
+
+  private static List<String> symbols(List<Quote> quotes) {
+    return quotes.stream().map(Quote::getSymbol).collect(Collectors.toList());
+  }
+}
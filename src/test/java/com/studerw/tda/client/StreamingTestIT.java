@@ -2,7 +2,15 @@ package com.studerw.tda.client;
 
 import static org.assertj.core.api.Assertions.assertThat;
 
+import com.studerw.tda.model.stream.Service;
 import com.studerw.tda.model.user.UserPrincipals;
+import com.studerw.tda.stream.StreamContent;
+import com.studerw.tda.stream.StreamResponse;
+import com.studerw.tda.stream.TdaStreamClient;
+import java.util.Arrays;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.TimeUnit;
 import org.junit.Test;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
@@ -18,4 +26,34 @@ public class StreamingTestIT extends BaseTestIT {
     assertThat(userPrincipals).isNotNull();
     LOGGER.debug("{}", userPrincipals);
   }
-}
\ No newline at end of file
+
+  @Test
+  public void testStreamerInfo() {
+    final UserPrincipals userPrincipals = httpTdaClient.getUserPrincipals(
+        UserPrincipals.Field.STREAMER_SUBSCRIPTION_KEYS,
+        UserPrincipals.Field.STREAMER_CONNECTION_INFO);
+    assertThat(userPrincipals.getStreamerInfo()).isNotNull();
+    assertThat(userPrincipals.getStreamerInfo().getStreamerSocketUrl()).isNotBlank();
+    assertThat(userPrincipals.getStreamerSubscriptionKeys().getKeys()).isNotEmpty();
+  }
+
+  @Test
+  public void testQuotes() throws InterruptedException {
+    BlockingQueue<StreamContent> quotes = new LinkedBlockingQueue<>();
+    try (TdaStreamClient stream = TdaStreamClient.Builder.tdaStreamClient()
+        .withTdaClient(httpTdaClient)
+        .build()) {
+      stream.addListener(Service.QUOTE, quotes::add);
+      stream.connect();
+      StreamResponse response = stream.subscribe(Service.QUOTE, Arrays.asList("MSFT", "SPY"),
+          0, 1, 2, 3).join();
+      LOGGER.debug("{}", response);
+      assertThat(response.isSuccess()).isTrue();
+
+      StreamContent quote = quotes.poll(30, TimeUnit.SECONDS);
+      LOGGER.debug("{}", quote);
+      assertThat(quote).isNotNull();
+      assertThat(quote.getKey()).isIn("MSFT", "SPY");
+    }
+  }
+}
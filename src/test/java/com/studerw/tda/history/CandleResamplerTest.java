@@ -0,0 +1,143 @@
+package com.studerw.tda.history;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+import com.studerw.tda.model.history.CandleSeries;
+import com.studerw.tda.model.history.FrequencyType;
+import java.time.LocalDate;
+import java.time.LocalDateTime;
+import java.time.LocalTime;
+import java.time.ZoneId;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import org.junit.Test;
+
+public class CandleResamplerTest {
+
+  private static final ZoneId NEW_YORK = ZoneId.of("America/New_York");
+  //a Wednesday
+  private static final LocalDate DAY = LocalDate.of(2020, 3, 4);
+
+  @Test
+  public void testFiveMinutes() {
+    CandleSeries minutes = minutes("MSFT", DAY, LocalTime.of(9, 30), 12);
+    CandleSeries bars = CandleResampler.resample(minutes, FrequencyType.minute, 5, false,
+        TradingSession.US_EQUITY);
+    assertThat(bars.getSymbol()).isEqualTo("MSFT");
+    assertThat(bars.size()).isEqualTo(3);
+    assertThat(bars.getDatetime(0)).isEqualTo(millis(DAY, 9, 30));
+    assertThat(bars.getDatetime(1)).isEqualTo(millis(DAY, 9, 35));
+    assertThat(bars.getDatetime(2)).isEqualTo(millis(DAY, 9, 40));
+    //minute i has open i, high i + 2, low i - 1, close i + 1 and volume 10
+    assertThat(bars.getOpen(1)).isEqualTo(5.0);
+    assertThat(bars.getHigh(1)).isEqualTo(11.0);
+    assertThat(bars.getLow(1)).isEqualTo(4.0);
+    assertThat(bars.getClose(1)).isEqualTo(10.0);
+    assertThat(bars.getVolume(1)).isEqualTo(50L);
+    //incomplete last bar
+    assertThat(bars.getVolume(2)).isEqualTo(20L);
+  }
+
+  @Test
+  public void testExtendedHours() {
+    CandleSeries minutes = minutes("SPY", DAY, LocalTime.of(9, 0), 60 * 8);
+    CandleSeries regular = CandleResampler.resample(minutes, FrequencyType.minute, 60, false,
+        TradingSession.US_EQUITY);
+    //9:30 to 16:00, the last bar cut short at the close
+    assertThat(regular.size()).isEqualTo(7);
+    assertThat(regular.getDatetime(0)).isEqualTo(millis(DAY, 9, 30));
+    assertThat(regular.getDatetime(6)).isEqualTo(millis(DAY, 15, 30));
+    assertThat(regular.getVolume(6)).isEqualTo(300L);
+
+    CandleSeries extended = CandleResampler.resample(minutes, FrequencyType.minute, 60, true,
+        TradingSession.US_EQUITY);
+    //9:00 - 9:30, then the same bars as above, then 16:00 - 17:00
+    assertThat(extended.size()).isEqualTo(9);
+    assertThat(extended.getDatetime(0)).isEqualTo(millis(DAY, 8, 30));
+    assertThat(extended.getVolume(0)).isEqualTo(300L);
+    assertThat(extended.getDatetime(1)).isEqualTo(millis(DAY, 9, 30));
+    assertThat(extended.getDatetime(8)).isEqualTo(millis(DAY, 16, 0));
+    assertThat(extended.getVolume(8)).isEqualTo(600L);
+  }
+
+  @Test
+  public void testDailyAndWeekly() {
+    List<CandleSeries> days = new ArrayList<>();
+    CandleSeries.Builder builder = new CandleSeries.Builder().withSymbol("AAPL");
+    //Monday to the following Tuesday, pre market to after hours
+    for (int d = 0; d < 9; d++) {
+      CandleSeries day = minutes("AAPL", DAY.minusDays(2).plusDays(d), LocalTime.of(8, 0), 600);
+      for (int i = 0; i < day.size(); i++) {
+        builder.add(day.getDatetime(i), day.getOpen(i), day.getHigh(i), day.getLow(i),
+            day.getClose(i), day.getVolume(i));
+      }
+    }
+    CandleSeries minutes = builder.build();
+
+    CandleSeries daily = CandleResampler.resample(minutes, FrequencyType.daily, 1, false,
+        TradingSession.US_EQUITY);
+    assertThat(daily.size()).isEqualTo(9);
+    assertThat(daily.getDatetime(0)).isEqualTo(DAY.minusDays(2).atStartOfDay(NEW_YORK)
+        .toInstant().toEpochMilli());
+    assertThat(daily.getVolume(0)).isEqualTo(390 * 10L);
+    //first regular minute is index 90
+    assertThat(daily.getOpen(0)).isEqualTo(90.0);
+
+    CandleSeries weekly = CandleResampler.resample(minutes, FrequencyType.weekly, 1, true,
+        TradingSession.US_EQUITY);
+    assertThat(weekly.size()).isEqualTo(2);
+    assertThat(weekly.getDatetime(1)).isEqualTo(LocalDate.of(2020, 3, 9).atStartOfDay(NEW_YORK)
+        .toInstant().toEpochMilli());
+    assertThat(weekly.getVolume(0)).isEqualTo(7 * 600 * 10L);
+  }
+
+  @Test
+  public void testIncrementalSameAsBatch() {
+    CandleSeries minutes = minutes("MSFT", DAY, LocalTime.of(9, 30), 100);
+    List<Long> starts = new ArrayList<>();
+    CandleResampler resampler = new CandleResampler(FrequencyType.minute, 15, false,
+        TradingSession.US_EQUITY,
+        (datetime, open, high, low, close, volume) -> starts.add(datetime));
+    for (int i = 0; i < minutes.size(); i++) {
+      resampler.candle(minutes.getDatetime(i), minutes.getOpen(i), minutes.getHigh(i),
+          minutes.getLow(i), minutes.getClose(i), minutes.getVolume(i));
+    }
+    //the last bar is only emitted on flush
+    assertThat(starts.size()).isEqualTo(6);
+    resampler.flush();
+    assertThat(starts.size()).isEqualTo(7);
+
+    List<CandleSeries> all = CandleResampler.resample(Arrays.asList(minutes,
+        minutes("SPY", DAY, LocalTime.of(9, 30), 30)), FrequencyType.minute, 15, false,
+        TradingSession.US_EQUITY);
+    assertThat(all.get(0).datetimes().boxed().toArray()).containsExactly(starts.toArray());
+    assertThat(all.get(1).getSymbol()).isEqualTo("SPY");
+    assertThat(all.get(1).size()).isEqualTo(2);
+  }
+
+  @Test(expected = IllegalArgumentException.class)
+  public void testInvalidFrequency() {
+    new CandleResampler(FrequencyType.daily, 2, false, TradingSession.US_EQUITY,
+        (datetime, open, high, low, close, volume) -> {
+        });
+  }
+
+  /**
+   * @return 1 minute candles starting at the time, where minute i has open i, high i + 2, low
+   * i - 1, close i + 1 and volume 10
+   */
+  private static CandleSeries minutes(String symbol, LocalDate day, LocalTime start, int count) {
+    CandleSeries.Builder builder = new CandleSeries.Builder().withSymbol(symbol);
+    long first = LocalDateTime.of(day, start).atZone(NEW_YORK).toInstant().toEpochMilli();
+    for (int i = 0; i < count; i++) {
+      builder.add(first + i * 60_000L, i, i + 2, i - 1, i + 1, 10);
+    }
+    return builder.build();
+  }
+
+  private static long millis(LocalDate day, int hour, int minute) {
+    return LocalDateTime.of(day, LocalTime.of(hour, minute)).atZone(NEW_YORK).toInstant()
+        .toEpochMilli();
+  }
+}
@@ -0,0 +1,230 @@
+package com.studerw.tda.history;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+import com.studerw.tda.model.history.CandleSeries;
+import com.studerw.tda.model.history.FrequencyType;
+import com.studerw.tda.model.history.PeriodType;
+import com.studerw.tda.model.history.PriceHistReq;
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.time.Instant;
+import java.time.LocalDate;
+import java.time.ZoneId;
+import java.util.ArrayList;
+import java.util.List;
+import org.apache.commons.io.FileUtils;
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+
+public class CandleStoreTest {
+
+  private Path dir;
+  private CandleStore store;
+
+  @Before
+  public void setUp() throws IOException {
+    dir = Files.createTempDirectory("candles");
+    store = new CandleStore(dir, 3);
+  }
+
+  @After
+  public void tearDown() throws IOException {
+    store.close();
+    FileUtils.deleteDirectory(dir.toFile());
+  }
+
+  @Test
+  public void testAppendAndRead() {
+    assertThat(store.lastDatetime("msft", FrequencyType.minute, 1, false).isPresent()).isFalse();
+    assertThat(store.append(FrequencyType.minute, 1, false, series("MSFT", 0, 8))).isEqualTo(8);
+    assertThat(store.size("MSFT", FrequencyType.minute, 1, false)).isEqualTo(8L);
+    assertThat(store.lastDatetime("msft", FrequencyType.minute, 1, false).getAsLong())
+        .isEqualTo(7000L);
+
+    CandleSeries all = store.read("MSFT", FrequencyType.minute, 1, false);
+    assertThat(all.size()).isEqualTo(8);
+    for (int i = 0; i < 8; i++) {
+      assertThat(all.getDatetime(i)).isEqualTo(i * 1000L);
+      assertThat(all.getOpen(i)).isEqualTo(i + 0.1);
+      assertThat(all.getHigh(i)).isEqualTo(i + 0.2);
+      assertThat(all.getLow(i)).isEqualTo(i + 0.3);
+      assertThat(all.getClose(i)).isEqualTo(i + 0.4);
+      assertThat(all.getVolume(i)).isEqualTo(i * 10L);
+    }
+
+    //other frequencies are stored separately
+    assertThat(store.size("MSFT", FrequencyType.minute, 5, false)).isEqualTo(0L);
+  }
+
+  @Test
+  public void testOverlappingAppendsAcrossBlocks() {
+    store.append(FrequencyType.daily, 1, false, series("SPY", 0, 4));
+    //overlaps the first series by two candles
+    assertThat(store.append(FrequencyType.daily, 1, false, series("SPY", 2, 7))).isEqualTo(3);
+    assertThat(store.append(FrequencyType.daily, 1, false, series("SPY", 0, 7))).isEqualTo(0);
+
+    CandleSeries all = store.read("SPY", FrequencyType.daily, 1, false);
+    assertThat(all.datetimes().toArray())
+        .containsExactly(0L, 1000L, 2000L, 3000L, 4000L, 5000L, 6000L);
+    assertThat(all.getClose(5)).isEqualTo(5.4);
+  }
+
+  @Test
+  public void testScanRange() {
+    store.append(FrequencyType.minute, 5, false, series("NOK/JPY", 0, 10));
+    List<Long> visited = new ArrayList<>();
+    int count = store.scan("NOK/JPY", FrequencyType.minute, 5, false, 2500, 6000,
+        (datetime, open, high, low, close, volume) -> visited.add(datetime));
+    assertThat(count).isEqualTo(3);
+    assertThat(visited).containsExactly(3000L, 4000L, 5000L);
+    assertThat(store.read("NOK/JPY", FrequencyType.minute, 5, false, 9000, 20_000).size())
+        .isEqualTo(1);
+    assertThat(store.read("NOK/JPY", FrequencyType.minute, 5, false, 20_000, 30_000).isEmpty())
+        .isTrue();
+  }
+
+  @Test
+  public void testReopen() {
+    store.append(FrequencyType.weekly, 1, false, series("VTSAX", 0, 5));
+    store.close();
+
+    store = new CandleStore(dir, 100);
+    assertThat(store.size("VTSAX", FrequencyType.weekly, 1, false)).isEqualTo(5L);
+    //block capacity of the existing file is kept
+    store.append(FrequencyType.weekly, 1, false, series("VTSAX", 0, 9));
+    CandleSeries all = store.read("VTSAX", FrequencyType.weekly, 1, false);
+    assertThat(all.size()).isEqualTo(9);
+    assertThat(all.getVolume(8)).isEqualTo(80L);
+  }
+
+  @Test
+  public void testSyncRequest() {
+    PriceHistReq first = CandleSync.request(store, "msft", FrequencyType.minute, 5, false, 100,
+        10_000);
+    assertThat(first.getSymbol()).isEqualTo("MSFT");
+    assertThat(first.getStartDate()).isEqualTo(100L);
+    assertThat(first.getEndDate()).isEqualTo(10_000L);
+    assertThat(first.getPeriodType()).isEqualTo(PeriodType.day);
+    assertThat(first.getPeriod()).isNull();
+    assertThat(first.getExtendedHours()).isFalse();
+
+    store.append(FrequencyType.minute, 5, false, series("MSFT", 0, 3));
+    PriceHistReq next = CandleSync.request(store, "MSFT", FrequencyType.minute, 5, false, 100,
+        10_000);
+    assertThat(next.getStartDate()).isEqualTo(2001L);
+
+    PriceHistReq daily = CandleSync.request(store, "MSFT", FrequencyType.daily, 1, false, 100,
+        10_000);
+    assertThat(daily.getPeriodType()).isEqualTo(PeriodType.year);
+
+    assertThat(CandleSync.request(store, "MSFT", FrequencyType.minute, 5, false, 100, 2000))
+        .isNull();
+    //extended hours candles are stored apart
+    assertThat(CandleSync.request(store, "MSFT", FrequencyType.minute, 5, true, 100, 10_000)
+        .getStartDate()).isEqualTo(100L);
+  }
+
+  @Test
+  public void testSessionsKeptApart() {
+    store.append(FrequencyType.minute, 1, false, series("MSFT", 0, 3));
+    store.append(FrequencyType.minute, 1, true, series("MSFT", 0, 5));
+    assertThat(store.size("MSFT", FrequencyType.minute, 1, false)).isEqualTo(3L);
+    assertThat(store.size("MSFT", FrequencyType.minute, 1, true)).isEqualTo(5L);
+  }
+
+  @Test
+  public void testClosedBefore() {
+    //2020-06-24T14:37:20Z, a Wednesday
+    long now = 1593009440000L;
+    assertThat(CandleSync.closedBefore(FrequencyType.minute, 5, now))
+        .isEqualTo(1593009300000L - 1);
+    assertThat(CandleSync.closedBefore(FrequencyType.minute, 1, 1593009420000L))
+        .isEqualTo(1593009420000L - 1);
+    //midnight in New York is 04:00 UTC in the summer
+    assertThat(CandleSync.closedBefore(FrequencyType.daily, 1, now))
+        .isEqualTo(1592971200000L - 1);
+    //Monday 2020-06-22
+    assertThat(CandleSync.closedBefore(FrequencyType.weekly, 1, now))
+        .isEqualTo(1592798400000L - 1);
+    //2020-06-01
+    assertThat(CandleSync.closedBefore(FrequencyType.monthly, 1, now))
+        .isEqualTo(1590984000000L - 1);
+  }
+
+  @Test
+  public void testResampledWeeksMatchStored() {
+    ZoneId chicago = ZoneId.of("America/Chicago");
+    //Wednesday 2020-06-24, two weeks after Monday 2020-06-08
+    long now = 1593009440000L;
+    long closed = CandleSync.closedBefore(FrequencyType.weekly, 1, now);
+    LocalDate monday = LocalDate.of(2020, 6, 8);
+
+    //weekly candles as TDA dates them, at midnight Central time, up to the forming one
+    CandleSeries.Builder tda = new CandleSeries.Builder().withSymbol("MSFT");
+    for (int w = 0; w < 3; w++) {
+      tda.add(monday.plusWeeks(w).atStartOfDay(chicago).toInstant().toEpochMilli(), w * 5,
+          w * 5 + 6, w * 5 - 1, w * 5 + 5, 50L);
+    }
+    CandleSeries weeks = tda.build();
+    CandleSeries.Builder closedWeeks = new CandleSeries.Builder().withSymbol("MSFT");
+    for (int i = 0; i < weeks.size() && weeks.getDatetime(i) <= closed; i++) {
+      closedWeeks.add(weeks.getDatetime(i), weeks.getOpen(i), weeks.getHigh(i), weeks.getLow(i),
+          weeks.getClose(i), weeks.getVolume(i));
+    }
+    store.append(FrequencyType.weekly, 1, false, closedWeeks.build());
+    CandleSeries stored = store.read("MSFT", FrequencyType.weekly, 1, false);
+    assertThat(stored.size()).isEqualTo(2);
+
+    //the trading days of the same weeks, dated at midnight New York time
+    ZoneId newYork = TradingSession.US_EQUITY.getZone();
+    CandleSeries.Builder days = new CandleSeries.Builder().withSymbol("MSFT");
+    for (int i = 0; i < 13; i++) {
+      LocalDate day = monday.plusWeeks(i / 5).plusDays(i % 5);
+      days.add(day.atStartOfDay(newYork).toInstant().toEpochMilli(), i, i + 2, i - 1, i + 1, 10L);
+    }
+    CandleSeries resampled = CandleResampler.resample(days.build(), FrequencyType.weekly, 1,
+        false, TradingSession.US_EQUITY);
+    assertThat(resampled.size()).isEqualTo(3);
+    //the forming week starts right where the stored weeks end
+    assertThat(resampled.getDatetime(2)).isEqualTo(closed + 1);
+    for (int i = 0; i < stored.size(); i++) {
+      assertThat(Instant.ofEpochMilli(resampled.getDatetime(i)).atZone(newYork).toLocalDate())
+          .isEqualTo(Instant.ofEpochMilli(stored.getDatetime(i)).atZone(newYork).toLocalDate());
+      assertThat(resampled.getOpen(i)).isEqualTo(stored.getOpen(i));
+      assertThat(resampled.getHigh(i)).isEqualTo(stored.getHigh(i));
+      assertThat(resampled.getLow(i)).isEqualTo(stored.getLow(i));
+      assertThat(resampled.getClose(i)).isEqualTo(stored.getClose(i));
+      assertThat(resampled.getVolume(i)).isEqualTo(stored.getVolume(i));
+    }
+  }
+
+  @Test(expected = IllegalArgumentException.class)
+  public void testSyncInvalidFrequency() {
+    CandleSync.request(store, "MSFT", FrequencyType.minute, 7, false, 100, 10_000);
+  }
+
+  @Test
+  public void testSync() {
+    List<PriceHistReq> requests = new ArrayList<>();
+    CandleSync sync = new CandleSync(request -> {
+      requests.add(request);
+      int from = (int) ((request.getStartDate() + 999) / 1000);
+      return series("MSFT", from, from + 5);
+    }, store);
+    assertThat(sync.sync("MSFT", FrequencyType.minute, 1, false, 0, 10_000)).isEqualTo(5);
+    assertThat(sync.sync("MSFT", FrequencyType.minute, 1, false, 0, 10_000)).isEqualTo(5);
+    assertThat(requests.get(1).getStartDate()).isEqualTo(4001L);
+    assertThat(store.size("MSFT", FrequencyType.minute, 1, false)).isEqualTo(10L);
+  }
+
+  private static CandleSeries series(String symbol, int from, int to) {
+    CandleSeries.Builder builder = new CandleSeries.Builder().withSymbol(symbol);
+    for (int i = from; i < to; i++) {
+      builder.add(i * 1000L, i + 0.1, i + 0.2, i + 0.3, i + 0.4, i * 10L);
+    }
+    return builder.build();
+  }
+}
@@ -0,0 +1,173 @@
+package com.studerw.tda.history;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+import com.studerw.tda.client.PriceHistoryFetcher;
+import com.studerw.tda.client.TdaHttpException;
+import com.studerw.tda.model.history.CandleSeries;
+import com.studerw.tda.model.history.FrequencyType;
+import com.studerw.tda.model.history.PriceHistReq;
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import org.apache.commons.io.FileUtils;
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+
+public class HistoryBackfillerTest {
+
+  private static final long DAY = TimeUnit.DAYS.toMillis(1);
+
+  private Path dir;
+  private final List<PriceHistReq> requests = new CopyOnWriteArrayList<>();
+  //symbol -> number of calls that should still fail
+  private final Map<String, AtomicInteger> failures = new ConcurrentHashMap<>();
+  //symbol -> error thrown by every call
+  private final Map<String, RuntimeException> errors = new ConcurrentHashMap<>();
+
+  @Before
+  public void setUp() throws IOException {
+    dir = Files.createTempDirectory("backfill");
+  }
+
+  @After
+  public void tearDown() throws IOException {
+    FileUtils.deleteDirectory(dir.toFile());
+  }
+
+  @Test
+  public void testWindows() {
+    List<long[]> windows = HistoryBackfiller.windows(0, 25, 10);
+    assertThat(windows.size()).isEqualTo(3);
+    assertThat(windows.get(0)).containsExactly(0L, 9L);
+    assertThat(windows.get(2)).containsExactly(20L, 25L);
+    assertThat(HistoryBackfiller.windows(5, 5, 10).size()).isEqualTo(1);
+  }
+
+  @Test
+  public void testBackfillWithRetries() throws InterruptedException {
+    failures.put("AAPL", new AtomicInteger(2));
+    failures.put("BAD", new AtomicInteger(100));
+    Map<String, List<CandleSeries>> received = new ConcurrentHashMap<>();
+
+    HistoryBackfiller backfiller = HistoryBackfiller.Builder.historyBackfiller(client())
+        .withFrequency(FrequencyType.daily, 1)
+        .withWindow(10, TimeUnit.DAYS)
+        .withRetries(3, 1, TimeUnit.MILLISECONDS)
+        .withThreads(3)
+        .build();
+    HistoryBackfiller.Result result = backfiller.run(Arrays.asList("msft", "AAPL", "BAD", "MSFT"),
+        0, 25 * DAY - 1, (symbol, candles) -> received
+            .computeIfAbsent(symbol, s -> new CopyOnWriteArrayList<>()).add(candles));
+
+    assertThat(result.getCompleted()).containsExactly("MSFT", "AAPL");
+    assertThat(result.getFailed().keySet()).containsExactly("BAD");
+    assertThat(result.isComplete()).isFalse();
+    assertThat(result.getWindows()).isEqualTo(6);
+    assertThat(result.getCandles()).isEqualTo(50L);
+
+    List<CandleSeries> msft = received.get("MSFT");
+    assertThat(msft.size()).isEqualTo(3);
+    assertThat(msft.get(0).getStart()).isEqualTo(0L);
+    assertThat(msft.get(2).getEnd()).isEqualTo(24 * DAY);
+    //1 attempt and 3 retries for BAD, 2 failures for AAPL
+    assertThat(requests.size()).isEqualTo(6 + 2 + 4);
+  }
+
+  @Test
+  public void testResumeFromCheckpoint() throws InterruptedException {
+    Path checkpoint = dir.resolve("job.checkpoint");
+    failures.put("SPY", new AtomicInteger(1000));
+    HistoryBackfiller backfiller = HistoryBackfiller.Builder.historyBackfiller(client())
+        .withFrequency(FrequencyType.daily, 1)
+        .withWindow(10, TimeUnit.DAYS)
+        .withRetries(0, 0, TimeUnit.MILLISECONDS)
+        .withCheckpoint(checkpoint)
+        .build();
+    List<String> symbols = Arrays.asList("QQQ", "SPY");
+    HistoryBackfiller.Result first = backfiller.run(symbols, 0, 30 * DAY - 1, (s, c) -> {
+    });
+    assertThat(first.getFailed().keySet()).containsExactly("SPY");
+
+    //only SPY, which never completed a window, is fetched again
+    failures.put("SPY", new AtomicInteger(0));
+    requests.clear();
+    HistoryBackfiller.Result second = backfiller.run(symbols, 0, 30 * DAY - 1, (s, c) -> {
+    });
+    assertThat(second.isComplete()).isTrue();
+    assertThat(second.getCompleted()).containsExactly("QQQ", "SPY");
+    assertThat(requests.size()).isEqualTo(3);
+    assertThat(requests.get(0).getSymbol()).isEqualTo("SPY");
+    assertThat(requests.get(0).getStartDate()).isEqualTo(0L);
+
+    requests.clear();
+    backfiller.run(symbols, 0, 30 * DAY - 1, (s, c) -> {
+    });
+    assertThat(requests).isEmpty();
+  }
+
+  @Test
+  public void testPermanentErrorsNotRetried() throws InterruptedException {
+    errors.put("GONE", new TdaHttpException(404, "Not found"));
+    errors.put("OOPS", new IllegalStateException("Parse error"));
+    HistoryBackfiller backfiller = HistoryBackfiller.Builder.historyBackfiller(client())
+        .withFrequency(FrequencyType.daily, 1)
+        .withRetries(3, 1, TimeUnit.MILLISECONDS)
+        .build();
+    HistoryBackfiller.Result result = backfiller.run(Arrays.asList("GONE", "OOPS"), 0, DAY,
+        (s, c) -> {
+        });
+    assertThat(result.getFailed().get("GONE")).isSameAs(errors.get("GONE"));
+    assertThat(result.getFailed().get("OOPS")).isSameAs(errors.get("OOPS"));
+    assertThat(requests.size()).isEqualTo(2);
+  }
+
+  @Test
+  public void testIsTransient() {
+    assertThat(HistoryBackfiller.isTransient(new TdaHttpException(429, "Too many"))).isTrue();
+    assertThat(HistoryBackfiller.isTransient(new TdaHttpException(502, "Bad gateway"))).isTrue();
+    assertThat(HistoryBackfiller.isTransient(new TdaHttpException(400, "Bad request"))).isFalse();
+    assertThat(HistoryBackfiller.isTransient(new RuntimeException(new IOException("reset"))))
+        .isTrue();
+    assertThat(HistoryBackfiller.isTransient(new RuntimeException("Empty json body"))).isFalse();
+  }
+
+  @Test(expected = IllegalArgumentException.class)
+  public void testInvalidFrequency() throws InterruptedException {
+    HistoryBackfiller.Builder.historyBackfiller(client())
+        .withFrequency(FrequencyType.minute, 7)
+        .build()
+        .run(Collections.singletonList("MSFT"), 0, DAY, (s, c) -> {
+        });
+  }
+
+  /**
+   * @return client returning one daily candle per day of the requested window
+   */
+  private PriceHistoryFetcher client() {
+    return request -> {
+      requests.add(request);
+      AtomicInteger failing = failures.get(request.getSymbol());
+      if (failing != null && failing.getAndDecrement() > 0) {
+        throw new TdaHttpException(503, "Server error");
+      }
+      if (errors.containsKey(request.getSymbol())) {
+        throw errors.get(request.getSymbol());
+      }
+      CandleSeries.Builder builder = new CandleSeries.Builder().withSymbol(request.getSymbol());
+      for (long t = request.getStartDate(); t <= request.getEndDate(); t += DAY) {
+        builder.add(t, 1, 1, 1, 1, 1);
+      }
+      return builder.build();
+    };
+  }
+}
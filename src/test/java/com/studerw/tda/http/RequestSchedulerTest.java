@@ -0,0 +1,114 @@
+package com.studerw.tda.http;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.TimeUnit;
+import org.junit.Test;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+public class RequestSchedulerTest {
+
+  private static final Logger LOGGER = LoggerFactory.getLogger(RequestSchedulerTest.class);
+
+  @Test
+  public void testBurstThenWait() throws InterruptedException {
+    RequestScheduler scheduler = new RequestScheduler(600, 2);
+    long start = System.nanoTime();
+    scheduler.acquire(RequestLane.DEFAULT, "a");
+    scheduler.acquire(RequestLane.DEFAULT, "a");
+    assertThat(System.nanoTime() - start).isLessThan(TimeUnit.MILLISECONDS.toNanos(50));
+
+    scheduler.acquire(RequestLane.DEFAULT, "a");
+    assertThat(System.nanoTime() - start).isGreaterThanOrEqualTo(TimeUnit.MILLISECONDS.toNanos(90));
+
+    RequestScheduler.LaneMetrics metrics = scheduler.getMetrics(RequestLane.DEFAULT);
+    LOGGER.debug("{}", metrics);
+    assertThat(metrics.getGranted()).isEqualTo(3);
+    assertThat(metrics.getQueueDepth()).isEqualTo(0);
+    assertThat(metrics.getMaxWaitNanos()).isGreaterThan(0L);
+  }
+
+  @Test
+  public void testPriorityLaneFirst() throws InterruptedException {
+    RequestScheduler scheduler = new RequestScheduler(600, 1);
+    scheduler.acquire(RequestLane.DEFAULT, "main");
+
+    List<String> order = Collections.synchronizedList(new ArrayList<>());
+    Thread bulk = start(scheduler, RequestLane.BULK, "backfill", "bulk", order);
+    Thread priority = start(scheduler, RequestLane.PRIORITY, "trader", "priority", order);
+    bulk.join();
+    priority.join();
+    assertThat(order).containsExactly("priority", "bulk");
+  }
+
+  @Test
+  public void testRoundRobinCallers() throws InterruptedException {
+    RequestScheduler scheduler = new RequestScheduler(600, 1);
+    scheduler.acquire(RequestLane.BULK, "x");
+
+    List<String> order = Collections.synchronizedList(new ArrayList<>());
+    List<Thread> threads = new ArrayList<>();
+    threads.add(start(scheduler, RequestLane.BULK, "a", "a1", order));
+    threads.add(start(scheduler, RequestLane.BULK, "a", "a2", order));
+    threads.add(start(scheduler, RequestLane.BULK, "a", "a3", order));
+    threads.add(start(scheduler, RequestLane.BULK, "b", "b1", order));
+    for (Thread t : threads) {
+      t.join();
+    }
+    assertThat(order).containsExactly("a1", "b1", "a2", "a3");
+  }
+
+  @Test
+  public void testAcquireAsync() {
+    RequestScheduler scheduler = new RequestScheduler(600, 1);
+    assertThat(scheduler.acquireAsync(RequestLane.BULK, "x").isDone()).isTrue();
+
+    List<String> order = Collections.synchronizedList(new ArrayList<>());
+    CompletableFuture<Void> bulk = scheduler.acquireAsync(RequestLane.BULK, "backfill")
+        .thenRun(() -> order.add("bulk"));
+    CompletableFuture<Void> cancelled = scheduler.acquireAsync(RequestLane.PRIORITY, "trader");
+    CompletableFuture<Void> priority = scheduler.acquireAsync(RequestLane.PRIORITY, "trader")
+        .thenRun(() -> order.add("priority"));
+    assertThat(cancelled.cancel(false)).isTrue();
+    CompletableFuture.allOf(bulk, priority).join();
+    assertThat(order).containsExactly("priority", "bulk");
+    assertThat(scheduler.getMetrics(RequestLane.PRIORITY).getGranted()).isEqualTo(1);
+    assertThat(scheduler.getMetrics(RequestLane.BULK).getQueueDepth()).isEqualTo(0);
+  }
+
+  @Test
+  public void testDrain() throws InterruptedException {
+    RequestScheduler scheduler = new RequestScheduler(6000, 5);
+    scheduler.drain(200, TimeUnit.MILLISECONDS);
+    long start = System.nanoTime();
+    scheduler.acquire(RequestLane.PRIORITY, "a");
+    assertThat(System.nanoTime() - start).isGreaterThanOrEqualTo(TimeUnit.MILLISECONDS.toNanos(150));
+  }
+
+  /**
+   * Start a thread waiting on the scheduler, and only return once it is queued so the queue order
+   * is deterministic.
+   */
+  private static Thread start(RequestScheduler scheduler, RequestLane lane, String caller,
+      String name, List<String> order) throws InterruptedException {
+    int depth = scheduler.getMetrics(lane).getQueueDepth();
+    Thread thread = new Thread(() -> {
+      try {
+        scheduler.acquire(lane, caller);
+        order.add(name);
+      } catch (InterruptedException e) {
+        throw new IllegalStateException(e);
+      }
+    }, name);
+    thread.start();
+    while (scheduler.getMetrics(lane).getQueueDepth() == depth) {
+      Thread.sleep(1);
+    }
+    return thread;
+  }
+}
@@ -0,0 +1,173 @@
+package com.studerw.tda.http.cache;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.within;
+import static org.assertj.core.api.Fail.fail;
+
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.function.Supplier;
+import org.junit.Test;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+public class LruResponseCacheTest {
+
+  private static final Logger LOGGER = LoggerFactory.getLogger(LruResponseCacheTest.class);
+
+  private final AtomicLong now = new AtomicLong();
+  private final AtomicInteger calls = new AtomicInteger();
+
+  @Test
+  public void testHitUntilExpired() {
+    LruResponseCache cache = builder()
+        .withTtl(CacheEndpoint.MOVERS, 10, TimeUnit.SECONDS)
+        .build();
+    assertThat(cache.get(CacheEndpoint.MOVERS, "$SPX.X", load("a")).join()).isEqualTo("a");
+    now.addAndGet(TimeUnit.SECONDS.toNanos(9));
+    assertThat(cache.get(CacheEndpoint.MOVERS, "$SPX.X", load("b")).join()).isEqualTo("a");
+    now.addAndGet(TimeUnit.SECONDS.toNanos(1));
+    assertThat(cache.get(CacheEndpoint.MOVERS, "$SPX.X", load("c")).join()).isEqualTo("c");
+    assertThat(calls.get()).isEqualTo(2);
+
+    CacheStats stats = cache.getStats(CacheEndpoint.MOVERS);
+    LOGGER.debug("{}", stats);
+    assertThat(stats.getHits()).isEqualTo(1);
+    assertThat(stats.getMisses()).isEqualTo(2);
+    assertThat(stats.getHitRate()).isCloseTo(1 / 3d, within(1e-9));
+    assertThat(cache.getStats(CacheEndpoint.INSTRUMENT).getMisses()).isEqualTo(0);
+  }
+
+  @Test
+  public void testEndpointsAreSeparate() {
+    LruResponseCache cache = builder().build();
+    cache.get(CacheEndpoint.INSTRUMENT, "key", load("instrument")).join();
+    assertThat(cache.get(CacheEndpoint.FUNDAMENTAL, "key", load("fundamental")).join())
+        .isEqualTo("fundamental");
+    assertThat(cache.size()).isEqualTo(2);
+
+    cache.invalidate(CacheEndpoint.INSTRUMENT);
+    assertThat(cache.size()).isEqualTo(1);
+    assertThat(cache.get(CacheEndpoint.INSTRUMENT, "key", load("again")).join())
+        .isEqualTo("again");
+    cache.invalidateAll();
+    assertThat(cache.size()).isEqualTo(0);
+  }
+
+  @Test
+  public void testLeastRecentlyUsedEvicted() {
+    LruResponseCache cache = builder().withMaxEntries(2).build();
+    cache.get(CacheEndpoint.INSTRUMENT, "a", load("a")).join();
+    cache.get(CacheEndpoint.INSTRUMENT, "b", load("b")).join();
+    //a is now more recently used than b
+    cache.get(CacheEndpoint.INSTRUMENT, "a", load("x")).join();
+    cache.get(CacheEndpoint.INSTRUMENT, "c", load("c")).join();
+    assertThat(cache.size()).isEqualTo(2);
+    assertThat(cache.getStats(CacheEndpoint.INSTRUMENT).getEvictions()).isEqualTo(1);
+
+    assertThat(cache.get(CacheEndpoint.INSTRUMENT, "a", load("x")).join()).isEqualTo("a");
+    assertThat(cache.get(CacheEndpoint.INSTRUMENT, "b", load("b2")).join()).isEqualTo("b2");
+  }
+
+  @Test
+  public void testCoalesceInFlight() {
+    LruResponseCache cache = builder().build();
+    CompletableFuture<String> call = new CompletableFuture<>();
+    Supplier<CompletableFuture<String>> loader = () -> {
+      calls.incrementAndGet();
+      return call;
+    };
+    CompletableFuture<String> first = cache.get(CacheEndpoint.PREFERENCES, "123", loader);
+    CompletableFuture<String> second = cache.get(CacheEndpoint.PREFERENCES, "123", loader);
+    assertThat(first.isDone()).isFalse();
+    assertThat(calls.get()).isEqualTo(1);
+
+    //one caller giving up does not cancel the shared call
+    first.cancel(true);
+    call.complete("prefs");
+    assertThat(second.join()).isEqualTo("prefs");
+    assertThat(cache.getStats(CacheEndpoint.PREFERENCES).getCoalesced()).isEqualTo(1);
+  }
+
+  @Test
+  public void testCoalesceThreads() throws InterruptedException {
+    LruResponseCache cache = LruResponseCache.Builder.lruResponseCache().build();
+    Supplier<CompletableFuture<String>> slow = () -> {
+      calls.incrementAndGet();
+      try {
+        Thread.sleep(200);
+      } catch (InterruptedException e) {
+        Thread.currentThread().interrupt();
+      }
+      return CompletableFuture.completedFuture("principals");
+    };
+    AtomicInteger answered = new AtomicInteger();
+    Thread[] threads = new Thread[8];
+    for (int i = 0; i < threads.length; i++) {
+      threads[i] = new Thread(() -> {
+        if ("principals".equals(cache.get(CacheEndpoint.USER_PRINCIPALS, "", slow).join())) {
+          answered.incrementAndGet();
+        }
+      });
+      threads[i].start();
+    }
+    for (Thread thread : threads) {
+      thread.join();
+    }
+    assertThat(answered.get()).isEqualTo(threads.length);
+    assertThat(calls.get()).isEqualTo(1);
+    CacheStats stats = cache.getStats(CacheEndpoint.USER_PRINCIPALS);
+    assertThat(stats.getMisses()).isEqualTo(1);
+    assertThat(stats.getHits() + stats.getCoalesced()).isEqualTo(threads.length - 1);
+  }
+
+  @Test
+  public void testFailureNotCached() {
+    LruResponseCache cache = builder().build();
+    CompletableFuture<String> failed = cache.get(CacheEndpoint.INSTRUMENT, "bad", () -> {
+      calls.incrementAndGet();
+      throw new RuntimeException("Non 200 response");
+    });
+    try {
+      failed.join();
+      fail("should not get here");
+    } catch (CompletionException e) {
+      assertThat(e.getCause()).hasMessageContaining("Non 200 response");
+    }
+    assertThat(cache.size()).isEqualTo(0);
+    assertThat(cache.get(CacheEndpoint.INSTRUMENT, "bad", load("ok")).join()).isEqualTo("ok");
+  }
+
+  @Test
+  public void testDisabled() {
+    //quotes are not cached by default
+    LruResponseCache cache = builder().build();
+    assertThat(cache.getTtlNanos(CacheEndpoint.QUOTES)).isEqualTo(0);
+    cache.get(CacheEndpoint.QUOTES, "MSFT", load("a")).join();
+    assertThat(cache.get(CacheEndpoint.QUOTES, "MSFT", load("b")).join()).isEqualTo("b");
+
+    LruResponseCache none = builder().withMaxEntries(0).build();
+    none.get(CacheEndpoint.INSTRUMENT, "a", load("a")).join();
+    assertThat(none.get(CacheEndpoint.INSTRUMENT, "a", load("b")).join()).isEqualTo("b");
+    assertThat(none.size()).isEqualTo(0);
+  }
+
+  @Test(expected = IllegalArgumentException.class)
+  public void testNegativeTtl() {
+    builder().withTtl(CacheEndpoint.MOVERS, -1, TimeUnit.SECONDS).build();
+  }
+
+  private LruResponseCache.Builder builder() {
+    return LruResponseCache.Builder.lruResponseCache().withClock(now::get);
+  }
+
+  private Supplier<CompletableFuture<String>> load(String value) {
+    return () -> {
+      calls.incrementAndGet();
+      return CompletableFuture.completedFuture(value);
+    };
+  }
+}
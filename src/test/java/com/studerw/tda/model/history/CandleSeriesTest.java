@@ -0,0 +1,105 @@
+package com.studerw.tda.model.history;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+import com.studerw.tda.parse.TdaJsonParser;
+import java.io.ByteArrayInputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.math.BigDecimal;
+import java.nio.charset.StandardCharsets;
+import java.util.List;
+import org.junit.Test;
+
+public class CandleSeriesTest {
+
+  private final TdaJsonParser tdaJsonParser = new TdaJsonParser();
+
+  @Test
+  public void testParseSameAsPriceHistory() throws IOException {
+    PriceHistory priceHistory;
+    try (InputStream in = fixture()) {
+      priceHistory = tdaJsonParser.parsePriceHistory(in);
+    }
+    CandleSeries series;
+    try (InputStream in = fixture()) {
+      series = tdaJsonParser.parseCandleSeries(in);
+    }
+
+    assertThat(series.getSymbol()).isEqualTo("MSFT");
+    List<Candle> candles = priceHistory.getCandles();
+    assertThat(series.size()).isEqualTo(candles.size());
+    for (int i = 0; i < candles.size(); i++) {
+      Candle candle = candles.get(i);
+      assertThat(series.getDatetime(i)).isEqualTo(candle.getDatetime());
+      assertThat(BigDecimal.valueOf(series.getOpen(i))).isEqualByComparingTo(candle.getOpen());
+      assertThat(BigDecimal.valueOf(series.getHigh(i))).isEqualByComparingTo(candle.getHigh());
+      assertThat(BigDecimal.valueOf(series.getLow(i))).isEqualByComparingTo(candle.getLow());
+      assertThat(BigDecimal.valueOf(series.getClose(i))).isEqualByComparingTo(candle.getClose());
+      assertThat(series.getVolume(i)).isEqualTo(candle.getVolume());
+    }
+    assertThat(series.getStart()).isEqualTo(1567162800000L);
+    assertThat(series.getEnd()).isEqualTo(1568419080000L);
+  }
+
+  @Test
+  public void testSliceAndBetween() {
+    CandleSeries series = series(10);
+    CandleSeries slice = series.slice(2, 5);
+    assertThat(slice.size()).isEqualTo(3);
+    assertThat(slice.getDatetime(0)).isEqualTo(2000L);
+    assertThat(slice.getClose(2)).isEqualTo(4.5);
+    assertThat(slice.closes().sum()).isEqualTo(2.5 + 3.5 + 4.5);
+
+    CandleSeries nested = slice.slice(1, 3);
+    assertThat(nested.getDatetime(0)).isEqualTo(3000L);
+    assertThat(nested.volumes().toArray()).containsExactly(30L, 40L);
+
+    assertThat(series.between(2500, 6000).datetimes().toArray())
+        .containsExactly(3000L, 4000L, 5000L);
+    assertThat(series.between(2000, 2001).size()).isEqualTo(1);
+    assertThat(series.between(20_000, 30_000).isEmpty()).isTrue();
+    assertThat(slice.between(0, 100_000).size()).isEqualTo(3);
+    assertThat(series.indexOf(-1)).isEqualTo(0);
+    assertThat(series.indexOf(9001)).isEqualTo(10);
+  }
+
+  @Test(expected = IndexOutOfBoundsException.class)
+  public void testSliceBounds() {
+    series(10).slice(2, 5).getClose(3);
+  }
+
+  @Test(expected = IllegalArgumentException.class)
+  public void testOutOfOrder() {
+    new CandleSeries.Builder().add(2000, 1, 1, 1, 1, 1).add(1000, 1, 1, 1, 1, 1);
+  }
+
+  @Test
+  public void testMissingValues() {
+    String json = "{\"candles\": [{\"datetime\": 1000, \"close\": \"NaN\", \"extra\": {\"a\": 1}},"
+        + "{\"datetime\": 2000, \"open\": 1, \"high\": 2, \"low\": 0.5, \"close\": 1.5,"
+        + " \"volume\": 7}], \"empty\": false, \"symbol\": \"VTSAX\"}";
+    CandleSeries series = tdaJsonParser
+        .parseCandleSeries(new ByteArrayInputStream(json.getBytes(StandardCharsets.UTF_8)));
+    assertThat(series.getSymbol()).isEqualTo("VTSAX");
+    assertThat(series.size()).isEqualTo(2);
+    assertThat(series.getClose(0)).isNaN();
+    assertThat(series.getOpen(0)).isNaN();
+    assertThat(series.getVolume(0)).isEqualTo(0L);
+    assertThat(series.getClose(1)).isEqualTo(1.5);
+    assertThat(series.getVolume(1)).isEqualTo(7L);
+  }
+
+  private static CandleSeries series(int size) {
+    CandleSeries.Builder builder = new CandleSeries.Builder(2);
+    for (int i = 0; i < size; i++) {
+      builder.add(i * 1000L, i, i + 1, i - 1, i + 0.5, i * 10L);
+    }
+    return builder.build();
+  }
+
+  private static InputStream fixture() {
+    return CandleSeriesTest.class.getClassLoader()
+        .getResourceAsStream("com/studerw/tda/parse/price-history-resp.json");
+  }
+}
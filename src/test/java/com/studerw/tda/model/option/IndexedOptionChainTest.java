@@ -0,0 +1,191 @@
+package com.studerw.tda.model.option;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+import com.studerw.tda.model.option.IndexedOptionChain.Column;
+import com.studerw.tda.model.option.Option.PutCall;
+import com.studerw.tda.parse.TdaJsonParser;
+import java.io.IOException;
+import java.io.InputStream;
+import java.math.BigDecimal;
+import java.time.LocalDate;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.Map;
+import org.junit.Test;
+
+public class IndexedOptionChainTest {
+
+  private final TdaJsonParser tdaJsonParser = new TdaJsonParser();
+
+  @Test
+  public void testParseSameAsOptionChain() throws IOException {
+    OptionChain optionChain;
+    try (InputStream in = fixture()) {
+      optionChain = tdaJsonParser.parseOptionChain(in);
+    }
+    IndexedOptionChain parsed;
+    try (InputStream in = fixture()) {
+      parsed = tdaJsonParser.parseIndexedOptionChain(in);
+    }
+    IndexedOptionChain converted = IndexedOptionChain.of(optionChain);
+
+    assertThat(parsed.getSymbol()).isEqualTo("MSFT");
+    assertThat(parsed.getUnderlyingPrice()).isEqualTo(228.59);
+    assertThat(parsed.getInterestRate()).isEqualTo(0.1);
+    assertThat(parsed.expirations()).isEqualTo(20);
+    assertThat(converted.expirations()).isEqualTo(20);
+
+    int nanThetas = 0;
+    for (int e = 0; e < parsed.expirations(); e++) {
+      LocalDate date = parsed.getExpiration(e);
+      String key = date + ":" + parsed.getDaysToExpiration(e);
+      assertThat(converted.getExpiration(e)).isEqualTo(date);
+      assertThat(parsed.strikes(e)).isEqualTo(converted.strikes(e));
+      for (int k = 0; k < parsed.strikes(e); k++) {
+        if (k > 0) {
+          assertThat(parsed.getStrike(e, k)).isGreaterThan(parsed.getStrike(e, k - 1));
+        }
+        for (PutCall putCall : PutCall.values()) {
+          int contract = parsed.contract(e, k, putCall);
+          Map<BigDecimal, List<Option>> strikes = putCall == PutCall.CALL
+              ? optionChain.getCallExpDateMap().get(key) : optionChain.getPutExpDateMap().get(key);
+          Option option = option(strikes, parsed.getStrike(e, k));
+          assertThat(parsed.getPutCall(contract)).isEqualTo(putCall);
+          assertThat(parsed.getOptionSymbol(contract)).isEqualTo(option.getSymbol());
+          assertThat(converted.getOptionSymbol(contract)).isEqualTo(option.getSymbol());
+          for (Column column : Column.values()) {
+            double value = parsed.get(column, contract);
+            //NaN either way, though the Option model reads it as 0
+            assertThat(Double.compare(converted.get(column, contract), value)).isZero();
+            if (Double.isNaN(value) && column == Column.THETA) {
+              assertThat(option.getTheta()).isEqualTo("0");
+              assertThat(option.isNaN("theta")).isTrue();
+              nanThetas++;
+            }
+          }
+        }
+      }
+    }
+    assertThat(nanThetas).isGreaterThan(0);
+  }
+
+  @Test
+  public void testExpirations() throws IOException {
+    IndexedOptionChain chain = parse();
+    assertThat(chain.expirationIndex(LocalDate.of(2020, 9, 11))).isEqualTo(1);
+    assertThat(chain.expirationIndex(LocalDate.of(2020, 9, 12))).isEqualTo(-1);
+    assertThat(chain.getDaysToExpiration(1)).isEqualTo(12);
+    //26 or 33 days
+    assertThat(chain.nearestExpiration(29)).isEqualTo(3);
+    assertThat(chain.nearestExpiration(30)).isEqualTo(4);
+    assertThat(chain.nearestExpiration(0)).isEqualTo(0);
+    assertThat(chain.nearestExpiration(10_000)).isEqualTo(19);
+  }
+
+  @Test
+  public void testNearestStrike() throws IOException {
+    IndexedOptionChain chain = parse();
+    int atm = chain.atTheMoney(0);
+    assertThat(chain.getStrike(0, atm)).isEqualTo(227.5);
+    assertThat(chain.nearestStrike(0, 229.0)).isEqualTo(atm + 1);
+    assertThat(chain.getStrike(0, chain.nearestStrike(0, 0))).isEqualTo(140.0);
+    assertThat(chain.getStrike(0, chain.nearestStrike(0, 1000))).isEqualTo(300.0);
+    assertThat(chain.nearestStrike(0, 230.0)).isEqualTo(atm + 1);
+
+    int call = chain.contract(0, atm, PutCall.CALL);
+    assertThat(chain.getOptionSymbol(call)).isEqualTo("MSFT_090420C227.5");
+    assertThat(chain.strikeOf(call)).isEqualTo(227.5);
+    assertThat(chain.getMid(call)).isEqualTo(5.85);
+  }
+
+  @Test
+  public void testStrikeForDelta() throws IOException {
+    IndexedOptionChain chain = parse();
+    assertThat(chain.getStrike(0, chain.strikeForDelta(0, PutCall.CALL, 0.25))).isEqualTo(240.0);
+    assertThat(chain.getStrike(0, chain.strikeForDelta(0, PutCall.PUT, -0.25))).isEqualTo(220.0);
+    assertThat(chain.getStrike(0, chain.strikeForDelta(0, PutCall.CALL, 2))).isEqualTo(140.0);
+
+    //deep in the money calls of December have no delta, so the expiration is scanned
+    int december = chain.expirationIndex(LocalDate.of(2020, 12, 18));
+    assertThat(chain.getDelta(chain.contract(december, 0, PutCall.CALL))).isNaN();
+    assertThat(chain.getStrike(december, chain.strikeForDelta(december, PutCall.CALL, 0.5)))
+        .isEqualTo(235.0);
+  }
+
+  @Test
+  public void testForEachStrike() throws IOException {
+    IndexedOptionChain chain = parse();
+    List<Double> strikes = new ArrayList<>();
+    chain.forEachStrike(0, (strike, call, put) -> {
+      assertThat(chain.getPutCall(call)).isEqualTo(PutCall.CALL);
+      assertThat(chain.getPutCall(put)).isEqualTo(PutCall.PUT);
+      assertThat(chain.strikeOf(put)).isEqualTo(strike);
+      strikes.add(strike);
+    });
+    assertThat(strikes).hasSize(60);
+    assertThat(strikes.get(0)).isEqualTo(140.0);
+    assertThat(strikes.get(59)).isEqualTo(300.0);
+  }
+
+  @Test
+  public void testBuilder() {
+    double[] row = new double[Column.values().length];
+    Arrays.fill(row, Double.NaN);
+    row[Column.BID.ordinal()] = 1.0;
+    row[Column.ASK.ordinal()] = 1.2;
+    IndexedOptionChain chain = new IndexedOptionChain.Builder()
+        .withSymbol("XYZ")
+        .withUnderlyingPrice(50)
+        .add(PutCall.PUT, "2021-02-19:30", 45, "XYZ_021921P45", row)
+        .add(PutCall.CALL, "2021-01-15:5", 55, "XYZ_011521C55", row)
+        .add(PutCall.CALL, "2021-01-15:5", 50, "XYZ_011521C50", row)
+        .build();
+    assertThat(chain.expirations()).isEqualTo(2);
+    assertThat(chain.getExpiration(0)).isEqualTo(LocalDate.of(2021, 1, 15));
+    assertThat(chain.strikes(0)).isEqualTo(2);
+    assertThat(chain.getStrike(0, 0)).isEqualTo(50.0);
+    assertThat(chain.atTheMoney(0)).isEqualTo(0);
+
+    int put = chain.contract(0, 0, PutCall.PUT);
+    assertThat(chain.hasContract(put)).isFalse();
+    assertThat(chain.getBid(put)).isNaN();
+    int call = chain.contract(0, 0, PutCall.CALL);
+    assertThat(chain.hasContract(call)).isTrue();
+    assertThat(chain.getBid(call)).isEqualTo(1.0);
+    assertThat(chain.getDaysToExpiration(1)).isEqualTo(30);
+    assertThat(chain.strikeForDelta(1, PutCall.PUT, -0.5)).isEqualTo(-1);
+  }
+
+  @Test(expected = IllegalArgumentException.class)
+  public void testInvalidExpiration() {
+    new IndexedOptionChain.Builder()
+        .add(PutCall.CALL, "Jan 15", 50, "XYZ_011521C50", new double[Column.values().length]);
+  }
+
+  @Test(expected = IndexOutOfBoundsException.class)
+  public void testInvalidStrike() throws IOException {
+    IndexedOptionChain chain = parse();
+    chain.contract(0, chain.strikes(0), PutCall.CALL);
+  }
+
+  private static Option option(Map<BigDecimal, List<Option>> strikes, double strike) {
+    return strikes.entrySet().stream()
+        .filter(entry -> entry.getKey().doubleValue() == strike)
+        .map(entry -> entry.getValue().get(0))
+        .findFirst()
+        .orElseThrow(() -> new AssertionError("No option with strike " + strike));
+  }
+
+  private IndexedOptionChain parse() throws IOException {
+    try (InputStream in = fixture()) {
+      return tdaJsonParser.parseIndexedOptionChain(in);
+    }
+  }
+
+  private static InputStream fixture() {
+    return IndexedOptionChainTest.class.getClassLoader()
+        .getResourceAsStream("com/studerw/tda/parse/option-chain-resp.json");
+  }
+}
@@ -0,0 +1,115 @@
+package com.studerw.tda.model.option;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+import com.studerw.tda.model.option.OptionChain.Strategy;
+import com.studerw.tda.model.option.OptionChainReq.Builder;
+import com.studerw.tda.model.option.OptionChainReq.ContractType;
+import com.studerw.tda.model.option.OptionChainReq.Range;
+import java.math.BigDecimal;
+import java.time.LocalDate;
+import java.util.List;
+import org.junit.Test;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+/**
+ * Validates an {@link OptionChainReq} using TDA's documented rules.
+ */
+public class OptionChainReqValidatorTest {
+
+  private static final Logger LOGGER = LoggerFactory.getLogger(OptionChainReqValidatorTest.class);
+
+  @Test
+  public void testDefault() {
+    OptionChainReq request = Builder.optionChainReq().withSymbol("MSFT").build();
+    List<String> violations = OptionChainReqValidator.validate(request);
+    assertThat(violations.size()).isEqualTo(0);
+  }
+
+  @Test
+  public void testEmptySymbol() {
+    OptionChainReq request = Builder.optionChainReq().withStrikeCount(5).build();
+    List<String> violations = OptionChainReqValidator.validate(request);
+    assertThat(violations.size()).isEqualTo(1);
+    LOGGER.debug(violations.get(0));
+  }
+
+  @Test
+  public void testAllFilters() {
+    OptionChainReq request = Builder.optionChainReq()
+        .withSymbol("MSFT")
+        .withContractType(ContractType.PUT)
+        .withStrikeCount(10)
+        .withIncludeQuotes(true)
+        .withStrategy(Strategy.VERTICAL)
+        .withInterval(new BigDecimal("2.5"))
+        .withRange(Range.NTM)
+        .withFromDate(LocalDate.of(2020, 1, 1))
+        .withToDate(LocalDate.of(2020, 3, 1))
+        .build();
+    LOGGER.debug("Request: {}", request);
+    List<String> violations = OptionChainReqValidator.validate(request);
+    assertThat(violations.size()).isEqualTo(0);
+  }
+
+  @Test
+  public void testStrikeCount() {
+    OptionChainReq request = Builder.optionChainReq()
+        .withSymbol("MSFT")
+        .withStrikeCount(0)
+        .build();
+    List<String> violations = OptionChainReqValidator.validate(request);
+    assertThat(violations.size()).isEqualTo(1);
+    LOGGER.debug(violations.get(0));
+  }
+
+  @Test
+  public void testNegativeStrike() {
+    OptionChainReq request = Builder.optionChainReq()
+        .withSymbol("MSFT")
+        .withStrike(new BigDecimal("-1"))
+        .build();
+    List<String> violations = OptionChainReqValidator.validate(request);
+    assertThat(violations.size()).isEqualTo(1);
+    LOGGER.debug(violations.get(0));
+  }
+
+  @Test
+  public void testIntervalWithoutSpread() {
+    OptionChainReq request = Builder.optionChainReq()
+        .withSymbol("MSFT")
+        .withInterval(BigDecimal.ONE)
+        .build();
+    List<String> violations = OptionChainReqValidator.validate(request);
+    assertThat(violations.size()).isEqualTo(1);
+    LOGGER.debug(violations.get(0));
+
+    request = Builder.optionChainReq()
+        .withSymbol("MSFT")
+        .withStrategy(Strategy.SINGLE)
+        .withInterval(BigDecimal.ONE)
+        .build();
+    violations = OptionChainReqValidator.validate(request);
+    assertThat(violations.size()).isEqualTo(1);
+  }
+
+  @Test
+  public void testDates() {
+    OptionChainReq request = Builder.optionChainReq()
+        .withSymbol("MSFT")
+        .withFromDate(LocalDate.of(2020, 3, 1))
+        .withToDate(LocalDate.of(2020, 1, 1))
+        .build();
+    List<String> violations = OptionChainReqValidator.validate(request);
+    assertThat(violations.size()).isEqualTo(1);
+    LOGGER.debug(violations.get(0));
+
+    request = Builder.optionChainReq()
+        .withSymbol("MSFT")
+        .withFromDate(LocalDate.of(2020, 3, 1))
+        .withToDate(LocalDate.of(2020, 3, 1))
+        .build();
+    assertThat(OptionChainReqValidator.validate(request)).isEmpty();
+  }
+}
@@ -0,0 +1,34 @@
+package com.studerw.tda.parse;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+import com.fasterxml.jackson.core.type.TypeReference;
+import com.fasterxml.jackson.databind.ObjectReader;
+import com.studerw.tda.model.account.Order;
+import com.studerw.tda.model.account.SecuritiesAccount;
+import java.io.IOException;
+import java.io.InputStream;
+import java.util.List;
+import org.junit.Test;
+
+public class DefaultMapperTest {
+
+  @Test
+  public void testReadersAreShared() {
+    assertThat(DefaultMapper.reader(Order.class)).isSameAs(DefaultMapper.reader(Order.class));
+    ObjectReader orders = DefaultMapper.reader(new TypeReference<List<Order>>() {});
+    assertThat(DefaultMapper.reader(new TypeReference<List<Order>>() {})).isSameAs(orders);
+    assertThat(DefaultMapper.unwrappingReader(Order.class))
+        .isNotSameAs(DefaultMapper.reader(Order.class));
+  }
+
+  @Test
+  public void testUnwrappingReader() throws IOException {
+    try (InputStream in = DefaultMapperTest.class.getClassLoader()
+        .getResourceAsStream("com/studerw/tda/parse/account-resp.json")) {
+      SecuritiesAccount account = DefaultMapper.unwrappingReader(SecuritiesAccount.class)
+          .readValue(in);
+      assertThat(account.getAccountId()).isEqualTo("1234567890");
+    }
+  }
+}
@@ -0,0 +1,99 @@
+package com.studerw.tda.parse;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+import com.studerw.tda.model.AssetType;
+import com.studerw.tda.model.quote.EquityQuote;
+import com.studerw.tda.model.quote.ForexQuote;
+import com.studerw.tda.model.quote.Quote;
+import java.io.ByteArrayInputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.NoSuchElementException;
+import org.junit.Test;
+
+public class QuoteStreamParserTest {
+
+  private final TdaJsonParser tdaJsonParser = new TdaJsonParser();
+
+  @Test
+  public void testSameAsParseQuotes() throws IOException {
+    List<Quote> expected;
+    try (InputStream in = fixture("quotes-resp.json")) {
+      expected = tdaJsonParser.parseQuotes(in);
+    }
+
+    List<Quote> streamed = new ArrayList<>();
+    try (InputStream in = fixture("quotes-resp.json")) {
+      int count = tdaJsonParser.parseQuotes(in, streamed::add);
+      assertThat(count).isEqualTo(6);
+    }
+
+    assertThat(streamed).hasSize(expected.size());
+    for (int i = 0; i < expected.size(); i++) {
+      Quote quote = streamed.get(i);
+      assertThat(quote.getClass()).isEqualTo(expected.get(i).getClass());
+      assertThat(quote.getAssetType()).isEqualTo(expected.get(i).getAssetType());
+      assertThat(quote.getSymbol()).isEqualTo(expected.get(i).getSymbol());
+      assertThat(DefaultMapper.toJson(quote)).isEqualTo(DefaultMapper.toJson(expected.get(i)));
+    }
+
+    EquityQuote msft = (EquityQuote) streamed.get(1);
+    assertThat(msft.getAssetType()).isEqualTo(AssetType.EQUITY);
+    assertThat(msft.getSymbol()).isEqualTo("MSFT");
+    assertThat(msft.getBidPrice()).isNotNull();
+    ForexQuote forex = (ForexQuote) streamed.get(2);
+    assertThat(forex.getSymbol()).isEqualTo("NOK/JPY");
+  }
+
+  @Test
+  public void testAssetTypeNotFirst() {
+    String json = "{\"MSFT\": {\"symbol\": \"MSFT\", \"bidPrice\": 1.5, \"assetType\": \"EQUITY\"},"
+        + "\"SPY\": {\"assetType\": \"ETF\", \"symbol\": \"SPY\"}}";
+    try (QuoteStreamParser quotes = new QuoteStreamParser(stream(json))) {
+      EquityQuote msft = (EquityQuote) quotes.next();
+      assertThat(msft.getAssetType()).isEqualTo(AssetType.EQUITY);
+      assertThat(msft.getBidPrice()).isEqualByComparingTo("1.5");
+      Quote spy = quotes.next();
+      assertThat(spy.getAssetType()).isEqualTo(AssetType.ETF);
+      assertThat(spy.getSymbol()).isEqualTo("SPY");
+      assertThat(quotes.hasNext()).isFalse();
+    }
+  }
+
+  @Test
+  public void testEmpty() {
+    try (QuoteStreamParser quotes = new QuoteStreamParser(stream("{}"))) {
+      assertThat(quotes.hasNext()).isFalse();
+      assertThat(quotes.hasNext()).isFalse();
+    }
+  }
+
+  @Test(expected = NoSuchElementException.class)
+  public void testNextAfterClose() throws IOException {
+    try (QuoteStreamParser quotes = new QuoteStreamParser(fixture("quotes-resp.json"))) {
+      assertThat(quotes.next().getSymbol()).isEqualTo("VTSAX");
+      quotes.close();
+      quotes.next();
+    }
+  }
+
+  @Test(expected = IllegalStateException.class)
+  public void testUnknownAssetType() {
+    String json = "{\"X\": {\"assetType\": \"INDICATOR\", \"symbol\": \"X\"}}";
+    try (QuoteStreamParser quotes = new QuoteStreamParser(stream(json))) {
+      quotes.next();
+    }
+  }
+
+  private static InputStream fixture(String name) {
+    return QuoteStreamParserTest.class.getResourceAsStream(name);
+  }
+
+  private static InputStream stream(String json) {
+    return new ByteArrayInputStream(json.getBytes(StandardCharsets.UTF_8));
+  }
+}
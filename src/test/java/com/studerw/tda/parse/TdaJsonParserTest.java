@@ -488,6 +488,8 @@ public class TdaJsonParserTest {
       assertThat(option.getTradeTimeInLong()).isEqualTo(1574886746322L);
       assertThat(option.getRho()).isEqualTo("-0.01");
       assertThat(option.getTheta()).isEqualTo("0");
+      assertThat(option.isNaN("theta")).isTrue();
+      assertThat(option.isNaN("rho")).isFalse();
       assertThat(option.getMini()).isFalse();
       assertThat(option.getInTheMoney()).isFalse();
       assertThat(option.getOtherFields()).isNotEmpty();
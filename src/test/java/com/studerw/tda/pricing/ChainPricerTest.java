@@ -0,0 +1,133 @@
+package com.studerw.tda.pricing;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.within;
+
+import com.studerw.tda.model.option.IndexedOptionChain;
+import com.studerw.tda.model.option.Option.PutCall;
+import com.studerw.tda.parse.TdaJsonParser;
+import java.io.IOException;
+import java.io.InputStream;
+import java.util.Arrays;
+import java.util.concurrent.ForkJoinPool;
+import org.junit.Test;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+public class ChainPricerTest {
+
+  private static final Logger LOGGER = LoggerFactory.getLogger(ChainPricerTest.class);
+
+  private final TdaJsonParser tdaJsonParser = new TdaJsonParser();
+  private final ChainPricer pricer = ChainPricer.Builder.chainPricer().build();
+
+  @Test
+  public void testCloseToTda() throws IOException {
+    IndexedOptionChain chain = parse();
+    ChainGreeks greeks = pricer.price(chain);
+    assertThat(greeks.getUnderlyingPrice()).isEqualTo(228.59);
+
+    //near the money contracts of the monthly expiration
+    int expiration = chain.nearestExpiration(19);
+    int atm = chain.atTheMoney(expiration);
+    for (int k = atm - 2; k <= atm + 2; k++) {
+      for (PutCall putCall : PutCall.values()) {
+        int c = chain.contract(expiration, k, putCall);
+        LOGGER.debug("{} iv: {} vs {}, delta: {} vs {}, theta {} vs {}", chain.getOptionSymbol(c),
+            greeks.getVolatility(c), chain.getVolatility(c), greeks.getDelta(c),
+            chain.getDelta(c), greeks.getTheta(c), chain.getTheta(c));
+        //TDA's model and clock differ slightly, so only compare within a margin
+        assertThat(greeks.getVolatility(c)).isCloseTo(chain.getVolatility(c), within(2.0));
+        assertThat(greeks.getDelta(c)).isCloseTo(chain.getDelta(c), within(0.03));
+        assertThat(greeks.getGamma(c)).isCloseTo(chain.getGamma(c), within(0.005));
+        assertThat(greeks.getTheta(c)).isCloseTo(chain.getTheta(c), within(0.03));
+        assertThat(greeks.getVega(c)).isCloseTo(chain.getVega(c), within(0.03));
+        assertThat(greeks.getValue(c)).isCloseTo(chain.getMid(c), within(0.01));
+      }
+    }
+  }
+
+  @Test
+  public void testNanGreeks() throws IOException {
+    IndexedOptionChain chain = parse();
+    ChainGreeks greeks = pricer.price(chain);
+    //TDA sends NaN greeks for these, but they have quotes
+    int december = chain.nearestExpiration(110);
+    int c = chain.contract(december, 0, PutCall.CALL);
+    assertThat(chain.getDelta(c)).isNaN();
+    LOGGER.debug("{} bid: {} ask: {} iv: {} delta: {}", chain.getOptionSymbol(c),
+        chain.getBid(c), chain.getAsk(c), greeks.getVolatility(c), greeks.getDelta(c));
+    assertThat(greeks.getDelta(c)).isBetween(0.9, 1.0);
+  }
+
+  @Test
+  public void testReprice() throws IOException {
+    IndexedOptionChain chain = parse();
+    ChainGreeks greeks = pricer.price(chain);
+    ChainGreeks up = pricer.reprice(greeks, 235.0);
+    assertThat(up.getUnderlyingPrice()).isEqualTo(235.0);
+
+    int expiration = chain.nearestExpiration(33);
+    int atm = chain.atTheMoney(expiration);
+    int call = chain.contract(expiration, atm, PutCall.CALL);
+    int put = chain.contract(expiration, atm, PutCall.PUT);
+    assertThat(up.getVolatility(call)).isEqualTo(greeks.getVolatility(call));
+    assertThat(up.getDelta(call)).isGreaterThan(greeks.getDelta(call));
+    assertThat(up.getValue(call)).isGreaterThan(greeks.getValue(call));
+    assertThat(up.getValue(put)).isLessThan(greeks.getValue(put));
+    //roughly a delta and gamma move
+    double move = 235.0 - 228.59;
+    double expected = greeks.getValue(call) + greeks.getDelta(call) * move
+        + greeks.getGamma(call) * move * move / 2;
+    assertThat(up.getValue(call)).isCloseTo(expected, within(0.1));
+  }
+
+  @Test
+  public void testParallelSameAsSequential() throws IOException {
+    IndexedOptionChain chain = parse();
+    ForkJoinPool single = new ForkJoinPool(1);
+    try {
+      ChainPricer sequential = ChainPricer.Builder.chainPricer().withPool(single).build();
+      ChainGreeks expected = sequential.price(chain);
+      ChainGreeks actual = pricer.price(chain);
+      for (int c = 0; c < chain.contracts(); c++) {
+        assertThat(actual.getVolatility(c)).isEqualTo(expected.getVolatility(c));
+        assertThat(actual.getDelta(c)).isEqualTo(expected.getDelta(c));
+        assertThat(actual.getRho(c)).isEqualTo(expected.getRho(c));
+      }
+    } finally {
+      single.shutdown();
+    }
+  }
+
+  @Test
+  public void testMissingContract() {
+    double[] row = new double[IndexedOptionChain.Column.values().length];
+    Arrays.fill(row, Double.NaN);
+    IndexedOptionChain chain = new IndexedOptionChain.Builder()
+        .withSymbol("XYZ")
+        .withUnderlyingPrice(50)
+        .withInterestRate(1)
+        .add(PutCall.CALL, "2021-01-15:20", 50, "XYZ_011521C50", row)
+        .build();
+    ChainGreeks greeks = pricer.price(chain);
+    //neither a quote nor a volatility
+    int call = chain.contract(0, 0, PutCall.CALL);
+    int put = chain.contract(0, 0, PutCall.PUT);
+    assertThat(greeks.getVolatility(call)).isNaN();
+    assertThat(greeks.getDelta(call)).isNaN();
+    assertThat(greeks.getValue(put)).isNaN();
+  }
+
+  @Test(expected = IllegalArgumentException.class)
+  public void testInvalidUnderlyingPrice() throws IOException {
+    pricer.reprice(pricer.price(parse()), Double.NaN);
+  }
+
+  private IndexedOptionChain parse() throws IOException {
+    try (InputStream in = ChainPricerTest.class.getClassLoader()
+        .getResourceAsStream("com/studerw/tda/parse/option-chain-resp.json")) {
+      return tdaJsonParser.parseIndexedOptionChain(in);
+    }
+  }
+}
@@ -0,0 +1,128 @@
+package com.studerw.tda.pricing;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.within;
+
+import org.junit.Test;
+
+public class PricingModelTest {
+
+  @Test
+  public void testNormal() {
+    assertThat(Normal.cdf(0)).isEqualTo(0.5);
+    assertThat(Normal.cdf(1.96)).isCloseTo(0.9750021, within(1e-7));
+    assertThat(Normal.cdf(-1.96)).isCloseTo(0.0249979, within(1e-7));
+    assertThat(Normal.cdf(0, 0, 0)).isCloseTo(0.25, within(1e-6));
+    //1/4 + asin(rho) / 2pi
+    assertThat(Normal.cdf(0, 0, 0.5)).isCloseTo(1.0 / 3, within(1e-6));
+    assertThat(Normal.cdf(1, -0.5, 0)).isCloseTo(Normal.cdf(1) * Normal.cdf(-0.5), within(1e-6));
+    assertThat(Normal.cdf(10, 0.3, 0.7)).isCloseTo(Normal.cdf(0.3), within(1e-6));
+  }
+
+  @Test
+  public void testBlackScholes() {
+    PricingModel model = PricingModel.BLACK_SCHOLES;
+    assertThat(model.price(false, 100, 100, 1, 0.05, 0, 0.2)).isCloseTo(10.4506, within(1e-4));
+    assertThat(model.price(true, 100, 100, 1, 0.05, 0, 0.2)).isCloseTo(5.5735, within(1e-4));
+    //Haug, generalized Black-Scholes with a dividend yield
+    assertThat(model.price(false, 60, 65, 0.25, 0.08, 0, 0.3)).isCloseTo(2.1334, within(1e-4));
+    assertThat(model.price(true, 100, 95, 0.5, 0.10, 0.05, 0.2)).isCloseTo(2.4648, within(1e-4));
+  }
+
+  @Test
+  public void testAmericanCallWithoutDividends() {
+    //never exercised early, so the same as a European call
+    double american = PricingModel.BJERKSUND_STENSLAND.price(false, 100, 95, 0.5, 0.05, 0, 0.25);
+    double european = PricingModel.BLACK_SCHOLES.price(false, 100, 95, 0.5, 0.05, 0, 0.25);
+    assertThat(american).isCloseTo(european, within(1e-12));
+  }
+
+  @Test
+  public void testAmericanPut() {
+    double[][] cases = {
+        //s, k, t, r, q, v
+        {100, 110, 0.5, 0.05, 0, 0.3},
+        {100, 100, 1, 0.08, 0, 0.2},
+        {90, 100, 0.25, 0.05, 0, 0.4},
+        {100, 80, 2, 0.03, 0.01, 0.35},
+        {42, 40, 0.75, 0.04, 0.08, 0.35}
+    };
+    for (double[] c : cases) {
+      double american = PricingModel.BJERKSUND_STENSLAND.price(true, c[0], c[1], c[2], c[3], c[4],
+          c[5]);
+      double european = PricingModel.BLACK_SCHOLES.price(true, c[0], c[1], c[2], c[3], c[4], c[5]);
+      double tree = binomial(true, c[0], c[1], c[2], c[3], c[4], c[5]);
+      assertThat(american).isGreaterThanOrEqualTo(european);
+      assertThat(american).isGreaterThanOrEqualTo(c[1] - c[0]);
+      //the approximation is a lower bound, within about a percent of a binomial tree
+      assertThat(american).isBetween(tree * 0.985, tree * 1.001);
+
+      double call = PricingModel.BJERKSUND_STENSLAND.price(false, c[0], c[1], c[2], c[3], c[4],
+          c[5]);
+      double callTree = binomial(false, c[0], c[1], c[2], c[3], c[4], c[5]);
+      assertThat(call).isBetween(callTree * 0.985, callTree * 1.001);
+    }
+  }
+
+  @Test
+  public void testGreeks() {
+    //without dividends the American call is priced by Black-Scholes, but with finite differences
+    double[] analytic = new double[PricingModel.GREEKS];
+    double[] numeric = new double[PricingModel.GREEKS];
+    PricingModel.BLACK_SCHOLES.greeks(false, 100, 105, 0.25, 0.02, 0, 0.3, analytic);
+    PricingModel.BJERKSUND_STENSLAND.greeks(false, 100, 105, 0.25, 0.02, 0, 0.3, numeric);
+    assertThat(numeric[PricingModel.VALUE]).isCloseTo(analytic[PricingModel.VALUE], within(1e-9));
+    assertThat(numeric[PricingModel.DELTA]).isCloseTo(analytic[PricingModel.DELTA], within(1e-5));
+    assertThat(numeric[PricingModel.GAMMA]).isCloseTo(analytic[PricingModel.GAMMA], within(1e-4));
+    assertThat(numeric[PricingModel.THETA]).isCloseTo(analytic[PricingModel.THETA], within(5e-4));
+    assertThat(numeric[PricingModel.VEGA]).isCloseTo(analytic[PricingModel.VEGA], within(1e-4));
+    assertThat(numeric[PricingModel.RHO]).isCloseTo(analytic[PricingModel.RHO], within(1e-5));
+
+    PricingModel.BLACK_SCHOLES.greeks(true, 100, 105, 0.25, 0.02, 0, 0.3, analytic);
+    assertThat(analytic[PricingModel.DELTA]).isBetween(-1.0, 0.0);
+    assertThat(analytic[PricingModel.THETA]).isLessThan(0.0);
+    assertThat(analytic[PricingModel.RHO]).isLessThan(0.0);
+  }
+
+  @Test
+  public void testImpliedVolatility() {
+    for (PricingModel model : PricingModel.values()) {
+      for (boolean put : new boolean[]{true, false}) {
+        double price = model.price(put, 100, 90, 0.4, 0.03, 0.01, 0.45);
+        double v = ImpliedVolatility.solve(model, put, price, 100, 90, 0.4, 0.03, 0.01);
+        assertThat(v).isCloseTo(0.45, within(1e-6));
+      }
+    }
+    //below intrinsic value
+    assertThat(ImpliedVolatility.solve(PricingModel.BJERKSUND_STENSLAND, true, 5, 100, 110, 0.5,
+        0.05, 0)).isNaN();
+    assertThat(ImpliedVolatility.solve(PricingModel.BLACK_SCHOLES, false, Double.NaN, 100, 110,
+        0.5, 0.05, 0)).isNaN();
+  }
+
+  /**
+   * Cox-Ross-Rubinstein tree as a reference for American prices
+   */
+  private static double binomial(boolean put, double s, double k, double t, double r, double q,
+      double v) {
+    int steps = 2000;
+    double dt = t / steps;
+    double u = Math.exp(v * Math.sqrt(dt));
+    double d = 1 / u;
+    double p = (Math.exp((r - q) * dt) - d) / (u - d);
+    double discount = Math.exp(-r * dt);
+    double[] values = new double[steps + 1];
+    for (int i = 0; i <= steps; i++) {
+      double price = s * Math.pow(u, steps - i) * Math.pow(d, i);
+      values[i] = Math.max(put ? k - price : price - k, 0);
+    }
+    for (int step = steps - 1; step >= 0; step--) {
+      for (int i = 0; i <= step; i++) {
+        double price = s * Math.pow(u, step - i) * Math.pow(d, i);
+        double hold = discount * (p * values[i] + (1 - p) * values[i + 1]);
+        values[i] = Math.max(hold, put ? k - price : price - k);
+      }
+    }
+    return values[0];
+  }
+}
@@ -0,0 +1,273 @@
+package com.studerw.tda.stream;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.within;
+
+import com.fasterxml.jackson.databind.node.JsonNodeFactory;
+import com.fasterxml.jackson.databind.node.ObjectNode;
+import com.studerw.tda.client.AccountFetcher;
+import com.studerw.tda.model.account.Duration;
+import com.studerw.tda.model.account.Instrument.AssetType;
+import com.studerw.tda.model.account.Order;
+import com.studerw.tda.model.account.OrderLegCollection.Instruction;
+import com.studerw.tda.model.account.OrderType;
+import com.studerw.tda.model.account.SecuritiesAccount;
+import com.studerw.tda.model.account.Status;
+import com.studerw.tda.model.stream.Service;
+import com.studerw.tda.parse.TdaJsonParser;
+import java.io.IOException;
+import java.io.InputStream;
+import java.math.BigDecimal;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+
+public class AccountBookTest {
+
+  private static final String ACCOUNT = "1234567890";
+
+  private final AtomicInteger fetches = new AtomicInteger();
+  private final CountDownLatch fetched = new CountDownLatch(1);
+  private final List<String> activities = new ArrayList<>();
+  private SecuritiesAccount account;
+  private Runnable duringFetch = () -> {
+  };
+  private AccountBook book;
+
+  @Before
+  public void setUp() throws IOException {
+    try (InputStream in = getClass().getClassLoader()
+        .getResourceAsStream("com/studerw/tda/parse/account-resp.json")) {
+      account = new TdaJsonParser().parseAccount(in);
+    }
+    book = AccountBook.Builder.accountBook()
+        .withTdaClient(tdaClient())
+        .withAccountIds(ACCOUNT)
+        .withListener((activity, order) -> activities.add(activity.getMessageType() + " "
+            + (order == null ? null : order.getStatus())))
+        .build();
+  }
+
+  @After
+  public void tearDown() {
+    book.close();
+  }
+
+  private AccountFetcher tdaClient() {
+    return (accountId, positions, orders) -> {
+      assertThat(accountId).isEqualTo(ACCOUNT);
+      assertThat(positions).isTrue();
+      assertThat(orders).isTrue();
+      fetches.incrementAndGet();
+      Runnable runnable = duringFetch;
+      duringFetch = () -> {
+      };
+      runnable.run();
+      fetched.countDown();
+      return account;
+    };
+  }
+
+  private static String xml(String message, long orderId, String symbol, String instruction,
+      int quantity, String more) {
+    return "<?xml version=\"1.0\" encoding=\"UTF-8\"?><" + message
+        + " xmlns=\"urn:xmlns:beb.ameritrade.com\"><OrderGroupID><Firm>310</Firm><AccountKey>"
+        + ACCOUNT + "</AccountKey></OrderGroupID><ActivityTimestamp>"
+        + "2020-06-21T10:15:30.123-05:00</ActivityTimestamp><Order><OrderKey>" + orderId
+        + "</OrderKey><Security><CUSIP>345370860</CUSIP><Symbol>" + symbol + "</Symbol>"
+        + "<SecurityType>Common Stock</SecurityType></Security><OrderPricing><Limit>6.5</Limit>"
+        + "</OrderPricing><OrderType>Limit</OrderType><OrderDuration>Day</OrderDuration>"
+        + "<OrderInstructions>" + instruction + "</OrderInstructions><OriginalQuantity>"
+        + quantity + "</OriginalQuantity></Order>" + more + "</" + message + ">";
+  }
+
+  private static String optionXml(String message, long orderId, String symbol,
+      String instruction, String openClose, int quantity, String more) {
+    return xml(message, orderId, symbol, instruction, quantity, more)
+        .replace("Common Stock", "Call Option")
+        .replace("</OrderInstructions>", "</OrderInstructions><OpenClose>" + openClose
+            + "</OpenClose>");
+  }
+
+  private static String execution(String type, int quantity, double price, int leaves) {
+    return "<ExecutionInformation><Type>" + type + "</Type><Timestamp>"
+        + "2020-06-21T10:15:31.456-05:00</Timestamp><Quantity>" + quantity + "</Quantity>"
+        + "<ExecutionPrice>" + price + "</ExecutionPrice><LeavesQuantity>" + leaves
+        + "</LeavesQuantity><ID>E" + quantity + "</ID></ExecutionInformation>";
+  }
+
+  private void stream(String messageType, String xml) {
+    ObjectNode node = JsonNodeFactory.instance.objectNode()
+        .put("key", "subscription-key")
+        .put("1", ACCOUNT)
+        .put("2", messageType)
+        .put("3", xml);
+    book.onContent(new StreamContent(Service.ACCT_ACTIVITY, 1592752530123L, node));
+  }
+
+  @Test
+  public void testParse() {
+    AccountActivity activity = AccountActivity.parse(ACCOUNT, "OrderPartialFill",
+        xml("OrderPartialFillMessage", 1001, "F", "Buy", 100,
+            execution("Bought", 40, 6.4, 60)));
+    assertThat(activity.getAccountId()).isEqualTo(ACCOUNT);
+    assertThat(activity.getMessageType()).isEqualTo("OrderPartialFill");
+    assertThat(activity.getTimestamp().toInstant().toEpochMilli()).isEqualTo(1592752530123L);
+    assertThat(activity.getOrderId()).isEqualTo(1001);
+    assertThat(activity.getSymbol()).isEqualTo("F");
+    assertThat(activity.getSecurityType()).isEqualTo("Common Stock");
+    assertThat(activity.getOrderType()).isEqualTo("Limit");
+    assertThat(activity.getInstruction()).isEqualTo("Buy");
+    assertThat(activity.getQuantity()).isEqualTo(new BigDecimal("100"));
+    assertThat(activity.getLimitPrice()).isEqualTo(new BigDecimal("6.5"));
+    assertThat(activity.getExecutionType()).isEqualTo("Bought");
+    assertThat(activity.getExecutionId()).isEqualTo("E40");
+    assertThat(activity.getExecutionQuantity()).isEqualTo(new BigDecimal("40"));
+    assertThat(activity.getExecutionPrice()).isEqualTo(new BigDecimal("6.4"));
+    assertThat(activity.getLeavesQuantity()).isEqualTo(new BigDecimal("60"));
+    assertThat(activity.isFill()).isTrue();
+
+    AccountActivity subscribed = AccountActivity.parse(ACCOUNT, "SUBSCRIBED", "");
+    assertThat(subscribed.getOrderId()).isEqualTo(0);
+    assertThat(subscribed.isFill()).isFalse();
+  }
+
+  @Test(expected = IllegalArgumentException.class)
+  public void testParseMalformed() {
+    AccountActivity.parse(ACCOUNT, "OrderFill", "<OrderFillMessage><Order>");
+  }
+
+  @Test
+  public void testOrdersAndFills() {
+    book.start();
+    assertThat(fetches.get()).isEqualTo(1);
+    assertThat(book.getPosition(ACCOUNT, "F").getLongQuantity())
+        .isEqualTo(new BigDecimal("347.58"));
+    assertThat(book.getPositions(ACCOUNT).size()).isEqualTo(2);
+
+    stream("SUBSCRIBED", "");
+    stream("OrderEntryRequest", xml("OrderEntryRequestMessage", 1001, "F", "Buy", 100, ""));
+    Order order = book.getOrder(1001);
+    assertThat(order.getStatus()).isEqualTo(Status.ACCEPTED);
+    assertThat(order.getAccountId()).isEqualTo(Long.valueOf(ACCOUNT));
+    assertThat(order.getOrderType()).isEqualTo(OrderType.LIMIT);
+    assertThat(order.getDuration()).isEqualTo(Duration.DAY);
+    assertThat(order.getRemainingQuantity()).isEqualTo(new BigDecimal("100"));
+    assertThat(order.getOrderLegCollection().get(0).getInstruction()).isEqualTo(Instruction.BUY);
+    assertThat(order.getOrderLegCollection().get(0).getInstrument().getSymbol()).isEqualTo("F");
+
+    stream("OrderRoute", xml("OrderRouteMessage", 1001, "F", "Buy", 100, ""));
+    stream("OrderPartialFill", xml("OrderPartialFillMessage", 1001, "F", "Buy", 100,
+        execution("Bought", 40, 6.4, 60)));
+    order = book.getOrder(1001);
+    assertThat(order.getStatus()).isEqualTo(Status.WORKING);
+    assertThat(order.getFilledQuantity()).isEqualTo(new BigDecimal("40"));
+    assertThat(order.getRemainingQuantity()).isEqualTo(new BigDecimal("60"));
+    assertThat(book.getPosition(ACCOUNT, "F").getLongQuantity())
+        .isEqualTo(new BigDecimal("387.58"));
+
+    stream("OrderFill", xml("OrderFillMessage", 1001, "F", "Buy", 100,
+        execution("Bought", 60, 6.5, 0)));
+    order = book.getOrder(1001);
+    assertThat(order.getStatus()).isEqualTo(Status.FILLED);
+    assertThat(order.getFilledQuantity()).isEqualTo(new BigDecimal("100"));
+    assertThat(order.getCloseTime()).isNotNull();
+    AccountPosition f = book.getPosition(ACCOUNT, "F");
+    assertThat(f.getQuantity()).isEqualTo(new BigDecimal("447.58"));
+    assertThat(f.getAveragePrice().doubleValue())
+        .isCloseTo((10.05625 * 347.58 + 40 * 6.4 + 60 * 6.5) / 447.58, within(1e-9));
+
+    stream("OrderFill", xml("OrderFillMessage", 1002, "MSFT", "Sell Short", 10,
+        execution("Sold", 10, 196.1, 0)));
+    AccountPosition msft = book.getPosition(ACCOUNT, "MSFT");
+    assertThat(msft.getQuantity()).isEqualTo(new BigDecimal("-10"));
+    assertThat(msft.getAveragePrice()).isEqualTo(new BigDecimal("196.1"));
+    stream("OrderFill", xml("OrderFillMessage", 1003, "MSFT", "Buy To Cover", 10,
+        execution("Bought", 10, 195.0, 0)));
+    assertThat(book.getPosition(ACCOUNT, "MSFT")).isNull();
+
+    stream("OrderEntryRequest", xml("OrderEntryRequestMessage", 1004, "F", "Sell", 50, ""));
+    stream("OrderCancelRequest", xml("OrderCancelRequestMessage", 1004, "F", "Sell", 50, ""));
+    assertThat(book.getOrder(1004).getStatus()).isEqualTo(Status.PENDING_CANCEL);
+    stream("UROUT", xml("UROUTMessage", 1004, "F", "Sell", 50,
+        "<CancelledQuantity>50</CancelledQuantity>"));
+    assertThat(book.getOrder(1004).getStatus()).isEqualTo(Status.CANCELED);
+
+    stream("OrderRejection", xml("OrderRejectionMessage", 1005, "F", "Sell", 5000,
+        "<RejectReason>Insufficient shares</RejectReason>"));
+    assertThat(book.getOrder(1005).getStatus()).isEqualTo(Status.REJECTED);
+    assertThat(book.getOrder(1005).getStatusDescription()).isEqualTo("Insufficient shares");
+
+    assertThat(book.getOrders(ACCOUNT).size()).isEqualTo(5);
+    assertThat(activities).containsExactly("OrderEntryRequest ACCEPTED", "OrderRoute WORKING",
+        "OrderPartialFill WORKING", "OrderFill FILLED", "OrderFill FILLED", "OrderFill FILLED",
+        "OrderEntryRequest ACCEPTED", "OrderCancelRequest PENDING_CANCEL", "UROUT CANCELED",
+        "OrderRejection REJECTED");
+  }
+
+  @Test
+  public void testOptionFills() {
+    book.start();
+    String call = "F_071720C7";
+    stream("OrderEntryRequest", optionXml("OrderEntryRequestMessage", 1001, call, "Sell", "Open",
+        2, ""));
+    assertThat(book.getOrder(1001).getOrderLegCollection().get(0).getInstruction())
+        .isEqualTo(Instruction.SELL_TO_OPEN);
+    stream("OrderFill", optionXml("OrderFillMessage", 1001, call, "Sell", "Open", 2,
+        execution("Sold", 2, 0.35, 0)));
+    AccountPosition position = book.getPosition(ACCOUNT, call);
+    assertThat(position.getAssetType()).isEqualTo(AssetType.OPTION);
+    assertThat(position.getShortQuantity()).isEqualTo(new BigDecimal("2"));
+
+    //a buy to close reduces the short quantity instead of adding a long one
+    stream("OrderFill", optionXml("OrderFillMessage", 1002, call, "Buy", "Close", 1,
+        execution("Bought", 1, 0.2, 0)));
+    position = book.getPosition(ACCOUNT, call);
+    assertThat(position.getShortQuantity()).isEqualTo(new BigDecimal("1"));
+    assertThat(position.getLongQuantity()).isEqualTo(BigDecimal.ZERO);
+    assertThat(position.getAveragePrice()).isEqualTo(new BigDecimal("0.35"));
+    stream("OrderFill", optionXml("OrderFillMessage", 1003, call, "Buy", "Close", 1,
+        execution("Bought", 1, 0.25, 0)));
+    assertThat(book.getPosition(ACCOUNT, call)).isNull();
+  }
+
+  @Test
+  public void testReconcile() {
+    book.start();
+    stream("OrderFill", xml("OrderFillMessage", 1001, "F", "Buy", 100,
+        execution("Bought", 100, 6.5, 0)));
+    assertThat(book.getPosition(ACCOUNT, "F").getQuantity()).isEqualTo(new BigDecimal("447.58"));
+
+    //activity while fetching makes the fetched account ambiguous
+    duringFetch = () -> stream("OrderEntryRequest",
+        xml("OrderEntryRequestMessage", 1002, "F", "Sell", 50, ""));
+    assertThat(book.reconcile(ACCOUNT)).isTrue();
+    assertThat(fetches.get()).isEqualTo(3);
+    assertThat(book.getReconciles()).isEqualTo(2);
+
+    //the fetched account never had the fill, which is logged as a drift
+    assertThat(book.getDrifts()).isEqualTo(1);
+    assertThat(book.getPosition(ACCOUNT, "F").getQuantity()).isEqualTo(new BigDecimal("347.58"));
+    assertThat(book.getOrders(ACCOUNT)).isEmpty();
+  }
+
+  @Test
+  public void testReconcileOnGap() throws InterruptedException {
+    book.onGap(new StreamGap(Service.QUOTE, new ArrayList<>(), 1, 2, 1, 3));
+    book.onGap(new StreamGap(Service.ACCT_ACTIVITY, new ArrayList<>(), 1, 2, 1, 3));
+    assertThat(fetched.await(5, TimeUnit.SECONDS)).isTrue();
+    assertThat(fetches.get()).isEqualTo(1);
+  }
+
+  @Test
+  public void testReconcileOnMalformed() throws InterruptedException {
+    stream("OrderFill", "<OrderFillMessage><Order>");
+    assertThat(fetched.await(5, TimeUnit.SECONDS)).isTrue();
+    assertThat(activities).isEmpty();
+  }
+}
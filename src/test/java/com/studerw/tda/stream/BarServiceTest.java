@@ -0,0 +1,207 @@
+package com.studerw.tda.stream;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+import com.fasterxml.jackson.databind.JsonNode;
+import com.fasterxml.jackson.databind.ObjectReader;
+import com.studerw.tda.client.PriceHistoryFetcher;
+import com.studerw.tda.model.history.CandleSeries;
+import com.studerw.tda.model.history.FrequencyType;
+import com.studerw.tda.model.history.PriceHistReq;
+import com.studerw.tda.model.stream.Service;
+import com.studerw.tda.parse.DefaultMapper;
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.function.Supplier;
+import org.junit.Test;
+
+public class BarServiceTest {
+
+  private static final ObjectReader READER = DefaultMapper.reader(JsonNode.class);
+  private static final long T0 = 1592699400000L;
+  private static final long MINUTE = BarService.BAR_MILLIS;
+
+  private final List<PriceHistReq> requests = new ArrayList<>();
+  private final List<String> bars = new ArrayList<>();
+  private long now = T0 + 10 * MINUTE + 30_000;
+
+  private PriceHistoryFetcher tdaClient(Supplier<CandleSeries> history) {
+    return request -> {
+      requests.add(request);
+      return history.get();
+    };
+  }
+
+  private static CandleSeries candles(int fromMinute, int toMinute) {
+    CandleSeries.Builder builder = new CandleSeries.Builder().withSymbol("MSFT");
+    for (int m = fromMinute; m <= toMinute; m++) {
+      builder.add(T0 + m * MINUTE, 100 + m, 101 + m, 99 + m, 100.5 + m, 1000);
+    }
+    return builder.build();
+  }
+
+  private static StreamContent bar(int minute, double close, long volume, long timestamp)
+      throws IOException {
+    return new StreamContent(Service.CHART_EQUITY, timestamp, READER.readValue(
+        "{\"key\":\"MSFT\",\"1\":" + (100 + minute) + ",\"2\":" + (101 + minute) + ",\"3\":"
+            + (99 + minute) + ",\"4\":" + close + ",\"5\":" + volume + ".0,\"6\":" + minute
+            + ",\"7\":" + (T0 + minute * MINUTE) + ",\"8\":18432}"));
+  }
+
+  private BarService.Builder builder() {
+    return BarService.Builder.barService()
+        .withClock(() -> now)
+        .withBackfillExecutor(Runnable::run)
+        .withListener((series, bar, complete) -> bars.add(
+            (series.getDatetime(bar) - T0) / MINUTE + " " + complete));
+  }
+
+  @Test
+  public void testSeedAndSplice() throws IOException {
+    BarService[] service = new BarService[1];
+    service[0] = builder()
+        .withTdaClient(tdaClient(() -> {
+          //streamed while the history is fetched, replaces the fetched bar still forming
+          service[0].onContent(unchecked(() -> bar(10, 111.25, 2500, now)));
+          return candles(0, 10);
+        }))
+        .build();
+    assertThat(service[0].seed("msft")).isEqualTo(11);
+
+    PriceHistReq request = requests.get(0);
+    assertThat(request.getSymbol()).isEqualTo("MSFT");
+    assertThat(request.getFrequencyType()).isEqualTo(FrequencyType.minute);
+    assertThat(request.getFrequency()).isEqualTo(1);
+    assertThat(request.getExtendedHours()).isTrue();
+    assertThat(request.getStartDate()).isEqualTo(now - 960 * MINUTE);
+    assertThat(request.getEndDate()).isEqualTo(now);
+
+    BarSeries series = service[0].newSeries();
+    assertThat(service[0].read("MSFT", series)).isTrue();
+    assertThat(series.size()).isEqualTo(11);
+    assertThat(series.getClose(10)).isEqualTo(111.25);
+    assertThat(series.getVolume(10)).isEqualTo(2500);
+    assertThat(series.isComplete(9)).isTrue();
+    assertThat(series.isComplete(10)).isFalse();
+    assertThat(bars).containsExactly("10 false");
+
+    //the next minute completes the last one
+    now = T0 + 11 * MINUTE + 30_000;
+    service[0].onContent(bar(10, 111.5, 2600, now - 30_000));
+    service[0].onContent(bar(11, 111.75, 300, now));
+    assertThat(bars).containsExactly("10 false", "10 true", "11 false");
+    service[0].read("MSFT", series);
+    assertThat(series.size()).isEqualTo(12);
+    assertThat(series.getClose(10)).isEqualTo(111.5);
+    assertThat(series.toCandleSeries(true).size()).isEqualTo(11);
+  }
+
+  @Test
+  public void testGapBackfill() throws IOException {
+    List<CandleSeries> histories = new ArrayList<>(Arrays.asList(candles(0, 10),
+        candles(11, 14)));
+    BarService service = builder()
+        .withTdaClient(tdaClient(() -> histories.remove(0)))
+        .build();
+    service.seed(Arrays.asList("MSFT"));
+
+    //minutes 12 and 13 are missed while reconnecting
+    now = T0 + 11 * MINUTE + 30_000;
+    service.onContent(bar(11, 111.5, 100, now));
+    now = T0 + 14 * MINUTE + 30_000;
+    service.onContent(bar(14, 114.5, 100, now));
+    bars.clear();
+    service.onGap(new StreamGap(Service.CHART_EQUITY, Arrays.asList("MSFT"),
+        T0 + 11 * MINUTE + 30_000, now, 11, 14));
+    service.onGap(new StreamGap(Service.QUOTE, Arrays.asList("MSFT"), 1, now, 1, 3));
+
+    assertThat(requests.size()).isEqualTo(2);
+    assertThat(requests.get(1).getStartDate()).isEqualTo(T0 + 10 * MINUTE + 30_000);
+    //the forming bar 14 is left to the stream
+    assertThat(bars).containsExactly("11 true", "12 true", "13 true");
+    BarSeries series = service.newSeries();
+    service.read("MSFT", series);
+    assertThat(series.size()).isEqualTo(15);
+    for (int i = 0; i < series.size(); i++) {
+      assertThat(series.getDatetime(i)).isEqualTo(T0 + i * MINUTE);
+    }
+    assertThat(series.getClose(14)).isEqualTo(114.5);
+    assertThat(series.isComplete(14)).isFalse();
+  }
+
+  @Test
+  public void testLookback() {
+    BarService service = builder()
+        .withLookback(5)
+        .withExtendedHours(false)
+        .withTdaClient(tdaClient(() -> candles(0, 10)))
+        .build();
+    service.seed("MSFT");
+    assertThat(requests.get(0).getExtendedHours()).isFalse();
+    BarSeries series = service.newSeries();
+    service.read("MSFT", series);
+    assertThat(series.size()).isEqualTo(5);
+    assertThat(series.getDatetime(0)).isEqualTo(T0 + 6 * MINUTE);
+    assertThat(service.read("SPY", series)).isFalse();
+    assertThat(series.isEmpty()).isTrue();
+  }
+
+  @Test
+  public void testRing() {
+    BarSeries series = new BarSeries(3);
+    for (long t = 1; t <= 4; t++) {
+      assertThat(series.put(t * 10, t, t, t, t, t)).isEqualTo((int) Math.min(t - 1, 2));
+    }
+    assertThat(series.getDatetime(0)).isEqualTo(20);
+    assertThat(series.put(30, 9, 9, 9, 9, 9)).isEqualTo(1);
+    assertThat(series.getClose(1)).isEqualTo(9);
+    assertThat(series.size()).isEqualTo(3);
+    //older than every bar of a full series
+    assertThat(series.put(10, 1, 1, 1, 1, 1)).isEqualTo(-1);
+    //a missing bar drops the oldest to fit
+    assertThat(series.put(35, 5, 5, 5, 5, 5)).isEqualTo(1);
+    assertThat(series.getDatetime(0)).isEqualTo(30);
+    assertThat(series.getDatetime(2)).isEqualTo(40);
+
+    BarSeries gaps = new BarSeries(4);
+    gaps.put(10, 1, 1, 1, 1, 1);
+    gaps.put(20, 2, 2, 2, 2, 2);
+    gaps.put(40, 4, 4, 4, 4, 4);
+    assertThat(gaps.put(30, 3, 3, 3, 3, 3)).isEqualTo(2);
+    gaps.put(50, 5, 5, 5, 5, 5);
+    BarSeries copy = new BarSeries(4);
+    gaps.copyTo(copy);
+    assertThat(copy.toCandleSeries(false).closes().toArray())
+        .containsExactly(2d, 3d, 4d, 5d);
+    assertThat(copy.indexOf(35)).isEqualTo(2);
+  }
+
+  @Test(expected = IllegalArgumentException.class)
+  public void testReadTooSmall() throws IOException {
+    BarService service = builder().withLookback(10).build();
+    for (int minute = 0; minute < 3; minute++) {
+      service.onContent(bar(minute, 100.5, 100, T0 + minute * MINUTE + 30_000));
+    }
+    service.read("MSFT", new BarSeries(2));
+  }
+
+  @Test(expected = IllegalStateException.class)
+  public void testSeedWithoutClient() {
+    builder().build().seed("MSFT");
+  }
+
+  private static <T> T unchecked(IoSupplier<T> supplier) {
+    try {
+      return supplier.get();
+    } catch (IOException e) {
+      throw new RuntimeException(e);
+    }
+  }
+
+  private interface IoSupplier<T> {
+
+    T get() throws IOException;
+  }
+}
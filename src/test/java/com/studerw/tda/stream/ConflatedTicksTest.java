@@ -0,0 +1,147 @@
+package com.studerw.tda.stream;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+import com.studerw.tda.model.stream.Service;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+import org.junit.Test;
+
+public class ConflatedTicksTest {
+
+  private final LevelOneTick tick = new LevelOneTick();
+
+  private void update(LevelOneHandler to, Service service, String symbol, int id, int field,
+      double value) {
+    tick.reset(service, StreamFields.kinds(service), 1592699716123L);
+    tick.setSymbol(symbol, id);
+    tick.setDouble(field, value);
+    to.onTick(tick);
+  }
+
+  private static LevelOneHandler collect(List<String> to) {
+    return t -> to.add(t.getSymbol() + "=" + t.getDouble(1) + "/" + t.getDouble(2));
+  }
+
+  @Test
+  public void testPollDirtySymbols() {
+    ConflatedTicks ticks = new ConflatedTicks(4);
+    ConflatedSubscriber subscriber = ticks.subscriber();
+    List<String> received = new ArrayList<>();
+    assertThat(subscriber.poll(collect(received))).isEqualTo(0);
+
+    update(ticks, Service.QUOTE, "MSFT", 0, 1, 195.1);
+    update(ticks, Service.QUOTE, "MSFT", 0, 2, 195.2);
+    update(ticks, Service.QUOTE, "AAPL", 2, 1, 349.5);
+    update(ticks, Service.QUOTE, "MSFT", 0, 1, 195.15);
+    assertThat(subscriber.getDirty()).isEqualTo(2);
+    assertThat(subscriber.poll(collect(received))).isEqualTo(2);
+    assertThat(received).containsExactly("MSFT=195.15/195.2", "AAPL=349.5/NaN");
+    assertThat(subscriber.getDirty()).isEqualTo(0);
+
+    received.clear();
+    update(ticks, Service.QUOTE, "AAPL", 2, 2, 349.6);
+    assertThat(subscriber.poll(collect(received))).isEqualTo(1);
+    assertThat(received).containsExactly("AAPL=349.5/349.6");
+    assertThat(subscriber.poll(collect(received))).isEqualTo(0);
+    assertThat(subscriber.getDelivered()).isEqualTo(3);
+    assertThat(ticks.getUpdates()).isEqualTo(5);
+  }
+
+  @Test
+  public void testIndependentSubscribers() {
+    ConflatedTicks ticks = new ConflatedTicks();
+    ConflatedSubscriber one = ticks.subscriber();
+    update(ticks, Service.QUOTE, "MSFT", 0, 1, 195.1);
+    ConflatedSubscriber two = ticks.subscriber();
+    update(ticks, Service.QUOTE, "AAPL", 1, 1, 349.5);
+
+    List<String> first = new ArrayList<>();
+    List<String> second = new ArrayList<>();
+    assertThat(one.poll(collect(first))).isEqualTo(2);
+    assertThat(two.poll(collect(second))).isEqualTo(1);
+    assertThat(second).containsExactly("AAPL=349.5/NaN");
+
+    two.close();
+    assertThat(ticks.getSubscribers()).isEqualTo(1);
+    update(ticks, Service.QUOTE, "AAPL", 1, 1, 349.6);
+    assertThat(two.getDirty()).isEqualTo(0);
+    assertThat(one.getDirty()).isEqualTo(1);
+  }
+
+  @Test
+  public void testGrow() {
+    ConflatedTicks ticks = new ConflatedTicks(1);
+    ConflatedSubscriber subscriber = ticks.subscriber();
+    for (int i = 0; i < 1000; i++) {
+      update(ticks, Service.QUOTE, "SYM" + i, i, 1, i);
+    }
+    assertThat(ticks.getCapacity()).isGreaterThanOrEqualTo(1000);
+    List<String> received = new ArrayList<>();
+    assertThat(subscriber.poll(collect(received))).isEqualTo(1000);
+    assertThat(received.get(999)).isEqualTo("SYM999=999.0/NaN");
+  }
+
+  @Test
+  public void testRead() {
+    ConflatedTicks ticks = new ConflatedTicks();
+    LevelOneTick latest = new LevelOneTick();
+    assertThat(ticks.read(0, latest)).isFalse();
+    assertThat(ticks.read(5000, latest)).isFalse();
+    update(ticks, Service.LEVELONE_FUTURES, "/ES", 0, 1, 3100.25);
+    update(ticks, Service.LEVELONE_FUTURES, "/ES", 0, 2, 3100.5);
+    assertThat(ticks.read(0, latest)).isTrue();
+    assertThat(latest.getSymbol()).isEqualTo("/ES");
+    assertThat(latest.getDouble(1)).isEqualTo(3100.25);
+    assertThat(latest.getDouble(2)).isEqualTo(3100.5);
+
+    //a tick of another service replaces the state
+    update(ticks, Service.QUOTE, "/ES", 0, 2, 1);
+    assertThat(ticks.read(0, latest)).isTrue();
+    assertThat(latest.getService()).isEqualTo(Service.QUOTE);
+    assertThat(latest.has(1)).isFalse();
+  }
+
+  @Test
+  public void testConcurrentPoll() throws InterruptedException {
+    ConflatedTicks ticks = new ConflatedTicks(16);
+    ConflatedSubscriber subscriber = ticks.subscriber();
+    int symbols = 64;
+    int updates = 200_000;
+    double[] latest = new double[symbols];
+    AtomicBoolean consistent = new AtomicBoolean(true);
+    AtomicBoolean done = new AtomicBoolean();
+    Thread consumer = new Thread(() -> {
+      LevelOneHandler handler = t -> {
+        //bid and ask are always updated together, and only grow
+        double bid = t.getDouble(1);
+        if (t.getDouble(2) != bid + 1 || bid < latest[t.getSymbolId()]) {
+          consistent.set(false);
+        }
+        latest[t.getSymbolId()] = bid;
+      };
+      while (!done.get()) {
+        subscriber.poll(handler);
+      }
+      subscriber.poll(handler);
+    });
+    consumer.start();
+    for (int i = 0; i < updates; i++) {
+      int id = i % symbols;
+      tick.reset(Service.QUOTE, StreamFields.kinds(Service.QUOTE), i);
+      tick.setSymbol("SYM" + id, id);
+      tick.setDouble(1, i);
+      tick.setDouble(2, i + 1);
+      ticks.onTick(tick);
+    }
+    done.set(true);
+    consumer.join(TimeUnit.SECONDS.toMillis(10));
+    assertThat(consistent.get()).isTrue();
+    for (int id = 0; id < symbols; id++) {
+      assertThat(latest[id]).isEqualTo(updates - symbols + id);
+    }
+    assertThat(subscriber.getDelivered()).isLessThanOrEqualTo(updates);
+  }
+}
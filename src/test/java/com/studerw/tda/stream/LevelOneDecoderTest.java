@@ -0,0 +1,218 @@
+package com.studerw.tda.stream;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Fail.fail;
+
+import com.studerw.tda.model.stream.Service;
+import java.lang.management.ManagementFactory;
+import java.lang.management.ThreadMXBean;
+import java.nio.ByteBuffer;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.List;
+import org.junit.Test;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+public class LevelOneDecoderTest {
+
+  private static final Logger LOGGER = LoggerFactory.getLogger(LevelOneDecoderTest.class);
+
+  private static final String QUOTES = "{\"data\":[{\"service\":\"QUOTE\", "
+      + "\"timestamp\":1592699716123,"
+      + "\"command\":\"SUBS\",\"content\":[{\"key\":\"MSFT\",\"delayed\":false,\"assetMainType\":"
+      + "\"EQUITY\",\"cusip\":\"594918104\",\"1\":196.32,\"2\":196.35,\"3\":196.33,\"4\":3,"
+      + "\"5\":12,\"6\":\"P\",\"8\":27412345,\"17\":true,\"25\":\"Microsoft Corporation - "
+      + "Common Stock\",\"30\":200.0,\"49\":-1.5E-2,\"50\":1592699715999},"
+      + "{\"key\":\"AAPL\",\"1\":349.71,\"29\":null}]}]}";
+
+  private final LevelOneDecoder decoder = new LevelOneDecoder();
+  private final List<LevelOneTick> ticks = new ArrayList<>();
+
+  @Test
+  public void testQuotes() {
+    assertThat(decoder.decode(QUOTES, this::copy)).isEqualTo(2);
+    assertThat(decoder.isFullyDecoded()).isTrue();
+
+    LevelOneTick msft = ticks.get(0);
+    LOGGER.debug("{}", msft);
+    assertThat(msft.getService()).isEqualTo(Service.QUOTE);
+    assertThat(msft.getTimestamp()).isEqualTo(1592699716123L);
+    assertThat(msft.getSymbol()).isEqualTo("MSFT");
+    assertThat(msft.getSymbolId()).isEqualTo(0);
+    assertThat(msft.isDelayed()).isFalse();
+    assertThat(msft.getDouble(1)).isEqualTo(196.32);
+    assertThat(msft.getDouble(2)).isEqualTo(196.35);
+    assertThat(msft.getLong(4, -1)).isEqualTo(3);
+    assertThat(msft.getDouble(5)).isEqualTo(12d);
+    assertThat(msft.getChar(6)).isEqualTo('P');
+    assertThat(msft.getLong(8, -1)).isEqualTo(27412345L);
+    assertThat(msft.getBoolean(17)).isTrue();
+    assertThat(msft.getBoolean(18)).isFalse();
+    assertThat(msft.getText(25)).isEqualTo("Microsoft Corporation - Common Stock");
+    assertThat(msft.getDouble(30)).isEqualTo(200d);
+    assertThat(msft.getDouble(49)).isEqualTo(-0.015);
+    assertThat(msft.getLong(50, -1)).isEqualTo(1592699715999L);
+    assertThat(msft.has(7)).isFalse();
+    assertThat(msft.getDouble(7)).isNaN();
+    assertThat(Long.bitCount(msft.getFields())).isEqualTo(12);
+
+    LevelOneTick aapl = ticks.get(1);
+    assertThat(aapl.getSymbol()).isEqualTo("AAPL");
+    assertThat(aapl.getSymbolId()).isEqualTo(1);
+    assertThat(aapl.getDouble(1)).isEqualTo(349.71);
+    assertThat(aapl.has(29)).isFalse();
+    assertThat(aapl.getFields()).isEqualTo(1L << 1);
+  }
+
+  @Test
+  public void testSymbolsInterned() {
+    decoder.decode(QUOTES, this::copy);
+    decoder.decode(QUOTES.getBytes(StandardCharsets.UTF_8), 0, QUOTES.length(), this::copy);
+    assertThat(ticks.get(2).getSymbol()).isSameAs(ticks.get(0).getSymbol());
+    assertThat(ticks.get(3).getSymbolId()).isEqualTo(1);
+    assertThat(decoder.getSymbols().size()).isEqualTo(2);
+    assertThat(decoder.getSymbols().id("AAPL")).isEqualTo(1);
+  }
+
+  @Test
+  public void testOptionsAndFutures() {
+    String frame = "{\"data\":[{\"service\":\"OPTION\",\"timestamp\":1,\"command\":\"SUBS\","
+        + "\"content\":[{\"key\":\"MSFT_061920C200\",\"2\":3.1,\"9\":1520,\"24\":200,\"25\":\"C\","
+        + "\"32\":0.4812,\"41\":3.125}]},{\"service\":\"LEVELONE_FUTURES\",\"timestamp\":2,"
+        + "\"command\":\"SUBS\",\"content\":[{\"key\":\"\\/ES\",\"1\":3101.25,\"30\":true,"
+        + "\"16\":\"E-mini S\\u0026P 500 \\u00e9\"}]}]}";
+    assertThat(decoder.decode(frame, this::copy)).isEqualTo(2);
+
+    LevelOneTick option = ticks.get(0);
+    assertThat(option.getService()).isEqualTo(Service.OPTION);
+    assertThat(option.getLong(9, 0)).isEqualTo(1520);
+    assertThat(option.getDouble(24)).isEqualTo(200d);
+    assertThat(option.getChar(25)).isEqualTo('C');
+    assertThat(option.getDouble(32)).isEqualTo(0.4812);
+
+    LevelOneTick future = ticks.get(1);
+    assertThat(future.getService()).isEqualTo(Service.LEVELONE_FUTURES);
+    assertThat(future.getTimestamp()).isEqualTo(2);
+    assertThat(future.getSymbol()).isEqualTo("/ES");
+    assertThat(future.getBoolean(30)).isTrue();
+    assertThat(future.getText(16)).isEqualTo("E-mini S&P 500 \u00e9");
+    StringBuilder text = new StringBuilder();
+    assertThat(future.appendText(16, text)).isTrue();
+    assertThat(text.toString()).isEqualTo("E-mini S&P 500 \u00e9");
+  }
+
+  @Test
+  public void testOtherContentSkipped() {
+    String frame = "{\"notify\":[{\"heartbeat\":\"1592699716999\"}],\"data\":[{\"service\":"
+        + "\"CHART_EQUITY\",\"timestamp\":1,\"command\":\"SUBS\",\"content\":[{\"key\":\"MSFT\","
+        + "\"1\":196.1,\"nested\":{\"a\":[1,\"]}\"]}}]},{\"content\":[{\"key\":\"SPY\","
+        + "\"3\":310.5}],\"timestamp\":5,\"service\":\"QUOTE\"}]}";
+    assertThat(decoder.decode(frame, this::copy)).isEqualTo(1);
+    assertThat(decoder.isFullyDecoded()).isFalse();
+
+    //content before the service is decoded once the service is known
+    LevelOneTick spy = ticks.get(0);
+    assertThat(spy.getSymbol()).isEqualTo("SPY");
+    assertThat(spy.getTimestamp()).isEqualTo(5);
+    assertThat(spy.getDouble(3)).isEqualTo(310.5);
+
+    assertThat(decoder.decode("{\"response\":[]}", this::copy)).isEqualTo(0);
+    assertThat(decoder.isFullyDecoded()).isFalse();
+  }
+
+  @Test
+  public void testNumbers() {
+    String frame = "{\"data\":[{\"service\":\"QUOTE\",\"timestamp\":1,\"content\":[{\"key\":\"X\","
+        + "\"1\":0.1,\"2\":-0,\"3\":1e3,\"12\":123456789012345678901234,"
+        + "\"13\":1.7976931348623157E308,"
+        + "\"15\":0.000000000000000000000000123,\"8\":9007199254740993,\"9\":12.7}]}]}";
+    decoder.decode(frame, this::copy);
+    LevelOneTick tick = ticks.get(0);
+    assertThat(tick.getDouble(1)).isEqualTo(0.1);
+    assertThat(tick.getDouble(2)).isEqualTo(-0d);
+    assertThat(tick.getDouble(3)).isEqualTo(1000d);
+    assertThat(tick.getDouble(12)).isEqualTo(1.2345678901234568E23);
+    assertThat(tick.getDouble(13)).isEqualTo(Double.MAX_VALUE);
+    assertThat(tick.getDouble(15)).isEqualTo(1.23E-25);
+    //longs are exact beyond 2^53
+    assertThat(tick.getLong(8, 0)).isEqualTo(9007199254740993L);
+    assertThat(tick.getLong(9, 0)).isEqualTo(12);
+  }
+
+  @Test
+  public void testByteBuffer() {
+    byte[] bytes = ("  " + QUOTES).getBytes(StandardCharsets.UTF_8);
+    ByteBuffer direct = ByteBuffer.allocateDirect(bytes.length);
+    direct.put(bytes).flip();
+    direct.position(2);
+    assertThat(decoder.decode(direct, this::copy)).isEqualTo(2);
+    assertThat(direct.position()).isEqualTo(2);
+    assertThat(decoder.decode(ByteBuffer.wrap(bytes), this::copy)).isEqualTo(2);
+    assertThat(ticks.get(3).getDouble(1)).isEqualTo(349.71);
+  }
+
+  @Test
+  public void testMerge() {
+    LevelOneTick state = new LevelOneTick();
+    decoder.decode(QUOTES, tick -> {
+      if (tick.getSymbol().equals("MSFT")) {
+        state.merge(tick);
+      }
+    });
+    decoder.decode("{\"data\":[{\"service\":\"QUOTE\",\"timestamp\":2,\"content\":[{\"key\":"
+        + "\"MSFT\",\"1\":196.4,\"25\":\"MSFT\"}]}]}", state::merge);
+    assertThat(state.getTimestamp()).isEqualTo(2);
+    assertThat(state.getDouble(1)).isEqualTo(196.4);
+    assertThat(state.getDouble(2)).isEqualTo(196.35);
+    assertThat(state.getText(25)).isEqualTo("MSFT");
+    assertThat(state.getChar(6)).isEqualTo('P');
+
+    state.clear();
+    assertThat(state.getFields()).isEqualTo(0);
+  }
+
+  @Test
+  public void testMalformed() {
+    String[] frames = {"", "{\"data\":[{\"service\":\"QUOTE\"", "{\"data\":[{\"service\":\"QUOTE\","
+        + "\"timestamp\":1,\"content\":[{\"key\":\"X\",\"1\":-}]}]}", "{} x"};
+    for (String frame : frames) {
+      try {
+        decoder.decode(frame, this::copy);
+        fail("should not get here: " + frame);
+      } catch (IllegalArgumentException e) {
+        assertThat(e).hasMessageContaining("Malformed streamer frame");
+      }
+    }
+  }
+
+  @Test
+  public void testNoAllocation() {
+    ThreadMXBean bean = ManagementFactory.getThreadMXBean();
+    if (!(bean instanceof com.sun.management.ThreadMXBean)) {
+      return;
+    }
+    com.sun.management.ThreadMXBean threads = (com.sun.management.ThreadMXBean) bean;
+    long[] sum = new long[1];
+    LevelOneHandler handler = tick -> sum[0] += tick.getLong(8, 0);
+    for (int i = 0; i < 20_000; i++) {
+      decoder.decode(QUOTES, handler);
+    }
+    long id = Thread.currentThread().getId();
+    long before = threads.getThreadAllocatedBytes(id);
+    for (int i = 0; i < 20_000; i++) {
+      decoder.decode(QUOTES, handler);
+    }
+    long allocated = threads.getThreadAllocatedBytes(id) - before;
+    LOGGER.debug("Allocated {} bytes decoding 20000 frames", allocated);
+    //far less than a single object per frame
+    assertThat(allocated).isLessThan(20_000);
+    assertThat(sum[0]).isEqualTo(40_000L * 27412345);
+  }
+
+  private void copy(LevelOneTick tick) {
+    LevelOneTick copy = new LevelOneTick();
+    copy.merge(tick);
+    ticks.add(copy);
+  }
+}
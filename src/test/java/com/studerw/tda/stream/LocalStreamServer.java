@@ -0,0 +1,286 @@
+package com.studerw.tda.stream;
+
+import com.fasterxml.jackson.databind.JsonNode;
+import com.fasterxml.jackson.databind.ObjectReader;
+import com.studerw.tda.parse.DefaultMapper;
+import java.io.BufferedInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.Closeable;
+import java.io.EOFException;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.net.InetAddress;
+import java.net.ServerSocket;
+import java.net.Socket;
+import java.nio.charset.StandardCharsets;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.util.Base64;
+import java.util.List;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+/**
+ * Local stand-in for the TDA streamer: a bare RFC 6455 WebSocket server on the loopback interface
+ * which answers every request with a success response (or {@link #setLoginCode(int)} for a
+ * LOGIN), records the requests, and pushes whatever data the test sends with {@link
+ * #push(String)}.
+ */
+class LocalStreamServer implements Closeable {
+
+  private static final Logger LOGGER = LoggerFactory.getLogger(LocalStreamServer.class);
+  private static final String GUID = "258EAFA5-E914-47DA-95CA-C5AB0DC85B11";
+  private static final ObjectReader READER = DefaultMapper.reader(JsonNode.class);
+
+  private final ServerSocket serverSocket;
+  private final List<Connection> connections = new CopyOnWriteArrayList<>();
+  private final BlockingQueue<JsonNode> requests = new LinkedBlockingQueue<>();
+  private final AtomicInteger accepted = new AtomicInteger();
+  private volatile int loginCode;
+
+  LocalStreamServer() throws IOException {
+    this.serverSocket = new ServerSocket(0, 50, InetAddress.getLoopbackAddress());
+    Thread acceptor = new Thread(this::accept, "local-stream-server");
+    acceptor.setDaemon(true);
+    acceptor.start();
+  }
+
+  String getUrl() {
+    return "ws://127.0.0.1:" + serverSocket.getLocalPort() + "/ws";
+  }
+
+  /**
+   * @param loginCode response code of LOGIN requests, 0 for success
+   */
+  void setLoginCode(int loginCode) {
+    this.loginCode = loginCode;
+  }
+
+  /**
+   * @return number of connections accepted so far
+   */
+  int getAccepted() {
+    return accepted.get();
+  }
+
+  /**
+   * @return the next request received with the given command, skipping others
+   */
+  JsonNode takeRequest(String command) throws InterruptedException {
+    long deadline = System.nanoTime() + TimeUnit.SECONDS.toNanos(5);
+    while (System.nanoTime() < deadline) {
+      JsonNode request = requests.poll(100, TimeUnit.MILLISECONDS);
+      if (request != null && command.equals(request.path("command").asText())) {
+        return request;
+      }
+    }
+    throw new AssertionError("No " + command + " request received");
+  }
+
+  /**
+   * Send a text frame to every open connection.
+   */
+  void push(String json) {
+    for (Connection connection : connections) {
+      connection.send(json);
+    }
+  }
+
+  /**
+   * Close every connection without a close frame, like a dropped network connection.
+   */
+  void drop() {
+    for (Connection connection : connections) {
+      connection.closeQuietly();
+    }
+  }
+
+  @Override
+  public void close() throws IOException {
+    drop();
+    serverSocket.close();
+  }
+
+  private void accept() {
+    while (!serverSocket.isClosed()) {
+      try {
+        Socket socket = serverSocket.accept();
+        accepted.incrementAndGet();
+        Connection connection = new Connection(socket);
+        connections.add(connection);
+        Thread reader = new Thread(connection::run, "local-stream-connection");
+        reader.setDaemon(true);
+        reader.start();
+      } catch (IOException e) {
+        LOGGER.debug("Stopped accepting: {}", e.getMessage());
+      }
+    }
+  }
+
+  private void onRequests(Connection connection, String text) throws IOException {
+    JsonNode root = READER.readValue(text);
+    for (JsonNode request : root.path("requests")) {
+      requests.add(request);
+      String command = request.path("command").asText();
+      int code = "LOGIN".equals(command) ? loginCode : 0;
+      connection.send(String.format("{\"response\":[{\"service\":\"%s\",\"requestid\":\"%s\","
+              + "\"command\":\"%s\",\"timestamp\":%d,\"content\":{\"code\":%d,\"msg\":\"%s\"}}]}",
+          request.path("service").asText(), request.path("requestid").asText(), command,
+          System.currentTimeMillis(), code, code == 0 ? command + " OK" : "Login denied"));
+      if ("LOGOUT".equals(command)) {
+        connection.closeQuietly();
+      }
+    }
+  }
+
+  private class Connection {
+
+    private final Socket socket;
+    private OutputStream out;
+
+    private Connection(Socket socket) {
+      this.socket = socket;
+    }
+
+    private void run() {
+      try {
+        InputStream in = new BufferedInputStream(socket.getInputStream());
+        handshake(in);
+        while (true) {
+          int b0 = in.read();
+          int b1 = in.read();
+          if (b0 < 0 || b1 < 0) {
+            throw new EOFException();
+          }
+          int opcode = b0 & 0x0f;
+          long length = b1 & 0x7f;
+          if (length == 126) {
+            length = (in.read() << 8) | in.read();
+          } else if (length == 127) {
+            length = 0;
+            for (int i = 0; i < 8; i++) {
+              length = (length << 8) | in.read();
+            }
+          }
+          byte[] mask = new byte[4];
+          if ((b1 & 0x80) != 0) {
+            readFully(in, mask);
+          }
+          byte[] payload = new byte[(int) length];
+          readFully(in, payload);
+          for (int i = 0; i < payload.length; i++) {
+            payload[i] ^= mask[i & 3];
+          }
+          if (opcode == 0x1) {
+            onRequests(this, new String(payload, StandardCharsets.UTF_8));
+          } else if (opcode == 0x8) {
+            frame(0x8, payload);
+            closeQuietly();
+            return;
+          } else if (opcode == 0x9) {
+            frame(0xA, payload);
+          }
+        }
+      } catch (IOException e) {
+        LOGGER.debug("Connection ended: {}", e.getMessage());
+      } finally {
+        connections.remove(this);
+        closeQuietly();
+      }
+    }
+
+    private void handshake(InputStream in) throws IOException {
+      String key = null;
+      String line;
+      while (!(line = readLine(in)).isEmpty()) {
+        if (line.toLowerCase().startsWith("sec-websocket-key:")) {
+          key = line.substring(line.indexOf(':') + 1).trim();
+        }
+      }
+      String accept;
+      try {
+        accept = Base64.getEncoder().encodeToString(MessageDigest.getInstance("SHA-1")
+            .digest((key + GUID).getBytes(StandardCharsets.US_ASCII)));
+      } catch (NoSuchAlgorithmException e) {
+        throw new IOException(e);
+      }
+      synchronized (this) {
+        out = socket.getOutputStream();
+        out.write(("HTTP/1.1 101 Switching Protocols\r\nUpgrade: websocket\r\n"
+            + "Connection: Upgrade\r\nSec-WebSocket-Accept: " + accept + "\r\n\r\n")
+            .getBytes(StandardCharsets.US_ASCII));
+        out.flush();
+      }
+    }
+
+    private void send(String text) {
+      try {
+        frame(0x1, text.getBytes(StandardCharsets.UTF_8));
+      } catch (IOException e) {
+        LOGGER.debug("Could not send: {}", e.getMessage());
+      }
+    }
+
+    private synchronized void frame(int opcode, byte[] payload) throws IOException {
+      if (out == null) {
+        throw new IOException("Not connected");
+      }
+      ByteArrayOutputStream frame = new ByteArrayOutputStream(payload.length + 10);
+      frame.write(0x80 | opcode);
+      if (payload.length < 126) {
+        frame.write(payload.length);
+      } else if (payload.length < 65536) {
+        frame.write(126);
+        frame.write(payload.length >> 8);
+        frame.write(payload.length);
+      } else {
+        frame.write(127);
+        for (int i = 7; i >= 0; i--) {
+          frame.write((int) ((long) payload.length >> (8 * i)));
+        }
+      }
+      frame.write(payload, 0, payload.length);
+      out.write(frame.toByteArray());
+      out.flush();
+    }
+
+    private void closeQuietly() {
+      try {
+        socket.close();
+      } catch (IOException ignored) {
+        //already closed
+      }
+    }
+  }
+
+  private static void readFully(InputStream in, byte[] bytes) throws IOException {
+    int read = 0;
+    while (read < bytes.length) {
+      int n = in.read(bytes, read, bytes.length - read);
+      if (n < 0) {
+        throw new EOFException();
+      }
+      read += n;
+    }
+  }
+
+  private static String readLine(InputStream in) throws IOException {
+    StringBuilder line = new StringBuilder();
+    int c;
+    while ((c = in.read()) != '\n') {
+      if (c < 0) {
+        throw new EOFException();
+      }
+      if (c != '\r') {
+        line.append((char) c);
+      }
+    }
+    return line.toString();
+  }
+}
@@ -0,0 +1,150 @@
+package com.studerw.tda.stream;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.within;
+
+import com.fasterxml.jackson.databind.JsonNode;
+import com.fasterxml.jackson.databind.ObjectReader;
+import com.studerw.tda.model.stream.Service;
+import com.studerw.tda.parse.DefaultMapper;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.atomic.AtomicBoolean;
+import org.junit.Test;
+
+public class OrderBooksTest {
+
+  private static final ObjectReader READER = DefaultMapper.reader(JsonNode.class);
+
+  //a NASDAQ_BOOK content item as TDA sends it
+  private static final String MSFT = "{\"key\":\"MSFT\",\"1\":1592699716123,"
+      + "\"2\":[{\"0\":195.1,\"1\":300,\"2\":2,\"3\":[{\"0\":\"NSDQ\",\"1\":200,\"2\":1},"
+      + "{\"0\":\"ARCX\",\"1\":100,\"2\":1}]},{\"0\":195.09,\"1\":500,\"2\":1,\"3\":[]}],"
+      + "\"3\":[{\"0\":195.12,\"1\":100,\"2\":1,\"3\":[]},{\"0\":195.13,\"1\":900,\"2\":3,"
+      + "\"3\":[]}]}";
+
+  private static StreamContent content(Service service, String json) throws Exception {
+    return new StreamContent(service, 1592699716000L, READER.readValue(json));
+  }
+
+  @Test
+  public void testOnContent() throws Exception {
+    List<String> notified = new ArrayList<>();
+    OrderBooks books = OrderBooks.Builder.orderBooks()
+        .withListener((book, changed) -> notified.add(book.getSymbol() + ":" + changed))
+        .build();
+    books.onContent(content(Service.NASDAQ_BOOK, MSFT));
+    books.onContent(content(Service.NASDAQ_BOOK, MSFT));
+    assertThat(notified).containsExactly("MSFT:4", "MSFT:0");
+
+    OrderBook book = new OrderBook();
+    assertThat(books.read(Service.NASDAQ_BOOK, "MSFT", book)).isTrue();
+    assertThat(book.getService()).isEqualTo(Service.NASDAQ_BOOK);
+    assertThat(book.getTime()).isEqualTo(1592699716123L);
+    assertThat(book.getUpdates()).isEqualTo(2);
+    assertThat(book.getBids().getBest()).isEqualTo(195.1);
+    assertThat(book.getBids().getSize(0)).isEqualTo(300);
+    assertThat(book.getBids().getOrders(0)).isEqualTo(2);
+    assertThat(book.getAsks().getBest()).isEqualTo(195.12);
+    assertThat(book.getAsks().getLevels()).isEqualTo(2);
+    assertThat(book.getSpread()).isCloseTo(0.02, within(1e-9));
+    assertThat(book.getMid()).isCloseTo(195.11, within(1e-9));
+    //300 bid against 100 offered leans towards the ask
+    assertThat(book.getMicroprice()).isCloseTo(195.115, within(1e-9));
+    assertThat(book.getImbalance(1)).isCloseTo(0.5, within(1e-9));
+    assertThat(book.getImbalance(2)).isCloseTo(-200 / 1800d, within(1e-9));
+
+    assertThat(books.read(Service.LISTED_BOOK, "MSFT", book)).isFalse();
+    assertThat(books.read(Service.NASDAQ_BOOK, "AAPL", book)).isFalse();
+    assertThat(book.getBids().getLevels()).isEqualTo(0);
+  }
+
+  @Test
+  public void testOneSide() throws Exception {
+    OrderBooks books = OrderBooks.Builder.orderBooks().build();
+    books.onContent(content(Service.NASDAQ_BOOK, MSFT));
+    books.onContent(content(Service.NASDAQ_BOOK,
+        "{\"key\":\"MSFT\",\"1\":1592699716200,\"3\":[{\"0\":195.11,\"1\":200,\"2\":1}]}"));
+    OrderBook book = new OrderBook();
+    books.read(Service.NASDAQ_BOOK, "MSFT", book);
+    assertThat(book.getBids().getLevels()).isEqualTo(2);
+    assertThat(book.getAsks().getLevels()).isEqualTo(1);
+    assertThat(book.getAsks().getBest()).isEqualTo(195.11);
+  }
+
+  @Test
+  public void testLevelWithoutPrice() throws Exception {
+    OrderBooks books = OrderBooks.Builder.orderBooks().build();
+    books.onContent(content(Service.NASDAQ_BOOK,
+        "{\"key\":\"MSFT\",\"1\":1592699716200,\"2\":[{\"0\":195.1,\"1\":300,\"2\":2},"
+            + "{\"1\":500,\"2\":1},{\"0\":195.05,\"1\":100,\"2\":1}]}"));
+    OrderBook book = new OrderBook();
+    books.read(Service.NASDAQ_BOOK, "MSFT", book);
+    assertThat(book.getBids().getLevels()).isEqualTo(2);
+    assertThat(book.getBids().getPrice(1)).isEqualTo(195.05);
+  }
+
+  @Test
+  public void testUpdate() {
+    OrderBooks books = OrderBooks.Builder.orderBooks().build();
+    assertThat(books.update(Service.FOREX_BOOK, "EUR/USD", 1, true, 1.1201, 1_000_000, 1))
+        .isTrue();
+    assertThat(books.update(Service.FOREX_BOOK, "EUR/USD", 2, false, 1.1203, 2_000_000, 1))
+        .isTrue();
+    assertThat(books.update(Service.FOREX_BOOK, "EUR/USD", 3, false, 1.1203, 2_000_000, 1))
+        .isFalse();
+    int changed = books.apply(Service.OPTIONS_BOOK, "MSFT_061920C185", 4, true,
+        new double[]{10.5, 10.4}, new long[]{10, 20}, new int[]{1, 2}, 2);
+    assertThat(changed).isEqualTo(2);
+
+    OrderBook book = new OrderBook();
+    books.read(Service.FOREX_BOOK, "EUR/USD", book);
+    assertThat(book.getMicroprice()).isCloseTo((1.1201 * 2 + 1.1203) / 3, within(1e-9));
+    assertThat(book.getTime()).isEqualTo(3);
+    books.read(Service.OPTIONS_BOOK, "MSFT_061920C185", book);
+    assertThat(book.getBids().getCumulativeSize(10.4)).isEqualTo(30);
+    assertThat(book.getMicroprice()).isNaN();
+    assertThat(book.getImbalance(5)).isEqualTo(1.0);
+  }
+
+  @Test(expected = IllegalArgumentException.class)
+  public void testNotABook() {
+    OrderBooks.Builder.orderBooks().build()
+        .update(Service.QUOTE, "MSFT", 1, true, 195.1, 100, 1);
+  }
+
+  @Test
+  public void testConsistentReads() throws InterruptedException {
+    OrderBooks books = OrderBooks.Builder.orderBooks().build();
+    double[] prices = new double[10];
+    long[] sizes = new long[10];
+    int[] counts = new int[10];
+    books.apply(Service.LISTED_BOOK, "IBM", 0, true, prices, sizes, counts, 0);
+    AtomicBoolean consistent = new AtomicBoolean(true);
+    AtomicBoolean done = new AtomicBoolean();
+    Thread reader = new Thread(() -> {
+      OrderBook book = new OrderBook();
+      while (!done.get()) {
+        books.read(Service.LISTED_BOOK, "IBM", book);
+        //every snapshot has as many levels as the size of its best level
+        PriceLadder bids = book.getBids();
+        if (bids.getLevels() > 0 && bids.getSize(0) != bids.getLevels()) {
+          consistent.set(false);
+        }
+      }
+    });
+    reader.start();
+    for (int i = 0; i < 100_000; i++) {
+      int count = 1 + i % 10;
+      for (int level = 0; level < count; level++) {
+        prices[level] = 120 - level * 0.01 - (i % 3) * 0.001;
+        sizes[level] = count;
+        counts[level] = 1;
+      }
+      books.apply(Service.LISTED_BOOK, "IBM", i, true, prices, sizes, counts, count);
+    }
+    done.set(true);
+    reader.join();
+    assertThat(consistent.get()).isTrue();
+  }
+}
@@ -0,0 +1,160 @@
+package com.studerw.tda.stream;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.assertThatThrownBy;
+
+import java.util.Comparator;
+import java.util.Map.Entry;
+import java.util.Random;
+import java.util.TreeMap;
+import org.junit.Test;
+
+public class PriceLadderTest {
+
+  @Test
+  public void testSet() {
+    PriceLadder bids = new PriceLadder(true, 2);
+    assertThat(bids.getBest()).isNaN();
+    assertThat(bids.set(10.00, 100, 1)).isTrue();
+    assertThat(bids.set(10.02, 200, 2)).isTrue();
+    assertThat(bids.set(9.98, 300, 3)).isTrue();
+    assertThat(bids.set(10.01, 400, 4)).isTrue();
+    assertThat(bids.getLevels()).isEqualTo(4);
+    assertThat(bids.getBest()).isEqualTo(10.02);
+    assertThat(bids.getPrice(1)).isEqualTo(10.01);
+    assertThat(bids.getSize(3)).isEqualTo(300);
+    assertThat(bids.getOrders(3)).isEqualTo(3);
+    assertThat(bids.level(10.00)).isEqualTo(2);
+    assertThat(bids.level(10.03)).isEqualTo(-1);
+
+    assertThat(bids.set(10.01, 400, 4)).isFalse();
+    assertThat(bids.set(10.01, 450, 5)).isTrue();
+    assertThat(bids.getSizeAt(10.01)).isEqualTo(450);
+    assertThat(bids.set(10.02, 0, 0)).isTrue();
+    assertThat(bids.set(10.05, 0, 0)).isFalse();
+    assertThat(bids.getBest()).isEqualTo(10.01);
+    assertThat(bids.getLevels()).isEqualTo(3);
+  }
+
+  @Test
+  public void testAsks() {
+    PriceLadder asks = new PriceLadder(false);
+    asks.set(10.03, 100, 1);
+    asks.set(10.05, 200, 1);
+    asks.set(10.04, 300, 1);
+    assertThat(asks.getBest()).isEqualTo(10.03);
+    assertThat(asks.getPrice(2)).isEqualTo(10.05);
+    //what a buy limit at 10.04 could fill
+    assertThat(asks.getCumulativeSize(10.04)).isEqualTo(400);
+    assertThat(asks.getCumulativeSize(10.045)).isEqualTo(400);
+    assertThat(asks.getCumulativeSize(10.02)).isEqualTo(0);
+    assertThat(asks.getCumulativeSize(11)).isEqualTo(600);
+    assertThat(asks.getDepthSize(2)).isEqualTo(400);
+    assertThat(asks.getDepthSize(10)).isEqualTo(600);
+
+    double[] prices = new double[2];
+    long[] sizes = new long[2];
+    assertThat(asks.top(5, prices, sizes)).isEqualTo(2);
+    assertThat(prices).containsExactly(10.03, 10.04);
+    assertThat(sizes).containsExactly(100, 300);
+  }
+
+  @Test
+  public void testReplace() {
+    PriceLadder bids = new PriceLadder(true);
+    double[] prices = {10.02, 10.01, 10.00, 9.99};
+    long[] sizes = {100, 200, 300, 400};
+    int[] counts = {1, 2, 3, 4};
+    assertThat(bids.replace(prices, sizes, counts, 4)).isEqualTo(4);
+    assertThat(bids.replace(prices, sizes, counts, 4)).isEqualTo(0);
+
+    //only the best level changed
+    sizes[0] = 150;
+    assertThat(bids.replace(prices, sizes, counts, 4)).isEqualTo(1);
+    assertThat(bids.getSize(0)).isEqualTo(150);
+
+    //the worst level dropped off
+    assertThat(bids.replace(prices, sizes, counts, 3)).isEqualTo(1);
+    assertThat(bids.getLevels()).isEqualTo(3);
+
+    //a new best level
+    double[] better = {10.03, 10.02, 10.01, 10.00};
+    long[] betterSizes = {50, 150, 200, 300};
+    int[] betterCounts = {1, 1, 2, 3};
+    assertThat(bids.replace(better, betterSizes, betterCounts, 4)).isEqualTo(1);
+    assertThat(bids.getBest()).isEqualTo(10.03);
+    assertThat(bids.getLevels()).isEqualTo(4);
+    assertThat(bids.getPrice(3)).isEqualTo(10.00);
+
+    assertThat(bids.replace(better, betterSizes, betterCounts, 0)).isEqualTo(4);
+    assertThat(bids.getLevels()).isEqualTo(0);
+  }
+
+  @Test(expected = IllegalArgumentException.class)
+  public void testReplaceUnsorted() {
+    new PriceLadder(false).replace(new double[]{10.02, 10.01}, new long[]{1, 1}, new int[]{1, 1},
+        2);
+  }
+
+  @Test
+  public void testNonFinitePrice() {
+    PriceLadder bids = new PriceLadder(true);
+    assertThatThrownBy(() -> bids.set(Double.NaN, 100, 1))
+        .isInstanceOf(IllegalArgumentException.class);
+    assertThatThrownBy(() -> bids.replace(new double[]{10.02, Double.NaN}, new long[]{1, 1},
+        new int[]{1, 1}, 2)).isInstanceOf(IllegalArgumentException.class);
+    assertThat(bids.getLevels()).isEqualTo(0);
+  }
+
+  @Test
+  public void testRandomAgainstTreeMap() {
+    Random random = new Random(7);
+    for (boolean bid : new boolean[]{true, false}) {
+      PriceLadder ladder = new PriceLadder(bid, 4);
+      PriceLadder snapshots = new PriceLadder(bid, 4);
+      TreeMap<Double, Long> expected = new TreeMap<>(
+          bid ? Comparator.<Double>reverseOrder() : Comparator.<Double>naturalOrder());
+      for (int i = 0; i < 20_000; i++) {
+        double price = 100 + random.nextInt(40) / 100d;
+        long size = random.nextInt(4) == 0 ? 0 : 1 + random.nextInt(1000);
+        ladder.set(price, size, 1);
+        if (size == 0) {
+          expected.remove(price);
+        } else {
+          expected.put(price, size);
+        }
+        double[] prices = new double[expected.size()];
+        long[] sizes = new long[expected.size()];
+        int[] counts = new int[expected.size()];
+        int level = 0;
+        for (Entry<Double, Long> entry : expected.entrySet()) {
+          prices[level] = entry.getKey();
+          sizes[level] = entry.getValue();
+          counts[level++] = 1;
+        }
+        snapshots.replace(prices, sizes, counts, level);
+
+        assertThat(ladder.getLevels()).isEqualTo(expected.size());
+        assertThat(snapshots.getLevels()).isEqualTo(expected.size());
+        for (int l = 0; l < level; l++) {
+          assertThat(ladder.getPrice(l)).isEqualTo(prices[l]);
+          assertThat(ladder.getSize(l)).isEqualTo(sizes[l]);
+          assertThat(snapshots.getPrice(l)).isEqualTo(prices[l]);
+          assertThat(snapshots.getSize(l)).isEqualTo(sizes[l]);
+        }
+      }
+    }
+  }
+
+  @Test
+  public void testCopyTo() {
+    PriceLadder asks = new PriceLadder(false, 1);
+    asks.set(10.03, 100, 1);
+    asks.set(10.04, 200, 2);
+    PriceLadder copy = new PriceLadder(false, 1);
+    asks.copyTo(copy);
+    assertThat(copy.getLevels()).isEqualTo(2);
+    assertThat(copy.getPrice(1)).isEqualTo(10.04);
+    assertThat(copy.getOrders(1)).isEqualTo(2);
+  }
+}
@@ -0,0 +1,198 @@
+package com.studerw.tda.stream;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+import com.studerw.tda.client.QuoteFetcher;
+import com.studerw.tda.model.quote.Quote;
+import com.studerw.tda.model.stream.Service;
+import com.studerw.tda.parse.TdaJsonParser;
+import com.studerw.tda.stream.QuoteBook.Field;
+import java.io.InputStream;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.atomic.AtomicBoolean;
+import org.junit.Before;
+import org.junit.Test;
+
+public class QuoteBookTest {
+
+  private final TdaJsonParser tdaJsonParser = new TdaJsonParser();
+  private final LevelOneTick tick = new LevelOneTick();
+  private final List<List<String>> requests = new ArrayList<>();
+  private Map<String, Quote> quotes;
+  private SymbolTable symbols;
+
+  @Before
+  public void setUp() throws Exception {
+    try (InputStream in = getClass().getClassLoader()
+        .getResourceAsStream("com/studerw/tda/parse/quotes-resp.json")) {
+      quotes = tdaJsonParser.parseQuotesMap(in);
+    }
+    symbols = new SymbolTable();
+  }
+
+  private void stream(QuoteBook book, Service service, String symbol, long timestamp,
+      double... fieldsAndValues) {
+    tick.reset(service, StreamFields.kinds(service), timestamp);
+    tick.setSymbol(symbol, symbols.intern(symbol));
+    for (int i = 0; i < fieldsAndValues.length; i += 2) {
+      int field = (int) fieldsAndValues[i];
+      if (StreamFields.kind(service, field) == StreamFields.Kind.DOUBLE) {
+        tick.setDouble(field, fieldsAndValues[i + 1]);
+      } else {
+        tick.setLong(field, (long) fieldsAndValues[i + 1]);
+      }
+    }
+    book.onTick(tick);
+  }
+
+  @Test
+  public void testStreamedDeltas() {
+    QuoteBook book = QuoteBook.Builder.quoteBook().withSymbolTable(symbols).build();
+    assertThat(book.get("MSFT", Field.BID)).isNaN();
+
+    stream(book, Service.QUOTE, "MSFT", 1000, 1, 195.1, 2, 195.2, 4, 300, 8, 1_000_000);
+    stream(book, Service.QUOTE, "MSFT", 2000, 1, 195.15, 51, 1592699716123d);
+    assertThat(book.get("MSFT", Field.BID)).isEqualTo(195.15);
+    assertThat(book.get("MSFT", Field.ASK)).isEqualTo(195.2);
+    assertThat(book.get("MSFT", Field.BID_SIZE)).isEqualTo(300);
+    assertThat(book.get("MSFT", Field.VOLUME)).isEqualTo(1_000_000);
+    assertThat(book.get("MSFT", Field.TRADE_TIME)).isEqualTo(1592699716123d);
+    assertThat(book.get("MSFT", Field.LAST)).isNaN();
+    assertThat(book.getUpdated(book.id("MSFT"))).isEqualTo(2000);
+
+    stream(book, Service.OPTION, "MSFT_061920C185", 3000, 2, 10.5, 3, 10.7, 41, 10.6);
+    int option = book.id("MSFT_061920C185");
+    assertThat(book.get(option, Field.BID)).isEqualTo(10.5);
+    assertThat(book.get(option, Field.MARK)).isEqualTo(10.6);
+
+    stream(book, Service.LEVELONE_FOREX, "EUR/USD", 4000, 1, 1.1201, 2, 1.1203, 29, 1.1202);
+    assertThat(book.get("EUR/USD", Field.MARK)).isEqualTo(1.1202);
+  }
+
+  @Test
+  public void testRead() {
+    QuoteBook book = QuoteBook.Builder.quoteBook().withSymbolTable(symbols).build();
+    double[] row = new double[Field.values().length];
+    assertThat(book.read(0, row)).isEqualTo(-1);
+    assertThat(row[Field.BID.ordinal()]).isNaN();
+
+    stream(book, Service.LEVELONE_FUTURES, "/ES", 5000, 1, 3100.25, 2, 3100.5, 10, 1592699716000d);
+    assertThat(book.read(book.id("/ES"), row)).isEqualTo(5000);
+    assertThat(row[Field.BID.ordinal()]).isEqualTo(3100.25);
+    assertThat(row[Field.ASK.ordinal()]).isEqualTo(3100.5);
+    assertThat(row[Field.QUOTE_TIME.ordinal()]).isEqualTo(1592699716000d);
+    assertThat(row[Field.CLOSE.ordinal()]).isNaN();
+  }
+
+  @Test
+  public void testApply() {
+    QuoteBook book = QuoteBook.Builder.quoteBook().build();
+    for (Quote quote : quotes.values()) {
+      assertThat(book.apply(quote)).isTrue();
+    }
+    assertThat(book.get("MSFT", Field.BID)).isEqualTo(137.71);
+    assertThat(book.get("MSFT", Field.ASK)).isEqualTo(137.75);
+    assertThat(book.get("MSFT", Field.MARK)).isEqualTo(137.79);
+    assertThat(book.get("MSFT", Field.BID_SIZE)).isEqualTo(800);
+    assertThat(book.get("MSFT", Field.VOLUME)).isEqualTo(23946123);
+    assertThat(book.getUpdated(book.id("MSFT"))).isEqualTo(1567209587283L);
+    assertThat(book.get("MSFT_061821P65", Field.BID)).isEqualTo(0.73);
+    assertThat(book.get("NOK/JPY", Field.BID)).isEqualTo(11.644);
+    assertThat(book.get("NOK/JPY", Field.QUOTE_TIME)).isEqualTo(1567198799770d);
+    assertThat(book.get("$SPX.X", Field.LAST)).isEqualTo(2926.46);
+    assertThat(book.get("$SPX.X", Field.BID)).isNaN();
+    assertThat(book.get("VTSAX", Field.CLOSE)).isEqualTo(72.55);
+  }
+
+  @Test
+  public void testStreamWinsOverSeed() {
+    QuoteBook book = QuoteBook.Builder.quoteBook().withSymbolTable(symbols).build();
+    stream(book, Service.QUOTE, "MSFT", 1592699716123L, 1, 195.1);
+    book.apply(quotes.get("MSFT"));
+    assertThat(book.get("MSFT", Field.BID)).isEqualTo(195.1);
+    assertThat(book.get("MSFT", Field.ASK)).isEqualTo(137.75);
+    assertThat(book.getUpdated(book.id("MSFT"))).isEqualTo(1592699716123L);
+
+    stream(book, Service.QUOTE, "MSFT", 1592699716124L, 2, 195.2);
+    assertThat(book.get("MSFT", Field.ASK)).isEqualTo(195.2);
+  }
+
+  @Test
+  public void testSeed() {
+    QuoteBook book = QuoteBook.Builder.quoteBook()
+        .withSymbolTable(symbols)
+        .withTdaClient(client())
+        .build();
+    stream(book, Service.QUOTE, "SPY", 1000, 1, 310.1);
+    assertThat(book.seed(Arrays.asList("MSFT", "SPY", "$SPX.X"))).isEqualTo(2);
+    assertThat(requests).containsExactly(Arrays.asList("MSFT", "$SPX.X"));
+    assertThat(book.get("MSFT", Field.LAST)).isEqualTo(137.71);
+    assertThat(book.get("SPY", Field.LAST)).isNaN();
+
+    assertThat(book.seed(Arrays.asList("MSFT", "SPY"))).isEqualTo(0);
+    assertThat(requests).hasSize(1);
+
+    double[] row = new double[Field.values().length];
+    assertThat(book.read("MSFT_061821P65", row)).isEqualTo(1567195199968L);
+    assertThat(row[Field.ASK.ordinal()]).isEqualTo(1.5);
+    assertThat(requests).hasSize(2);
+    assertThat(book.read("MSFT_061821P65", row)).isEqualTo(1567195199968L);
+    assertThat(requests).hasSize(2);
+  }
+
+  @Test(expected = IllegalStateException.class)
+  public void testSeedWithoutClient() {
+    QuoteBook.Builder.quoteBook().build().seed(Collections.singletonList("MSFT"));
+  }
+
+  @Test
+  public void testConsistentReads() throws InterruptedException {
+    QuoteBook book = QuoteBook.Builder.quoteBook().withSymbolTable(symbols).build();
+    stream(book, Service.QUOTE, "MSFT", 0, 1, 0, 2, 1);
+    int id = book.id("MSFT");
+    AtomicBoolean consistent = new AtomicBoolean(true);
+    AtomicBoolean done = new AtomicBoolean();
+    Thread reader = new Thread(() -> {
+      double[] row = new double[Field.values().length];
+      while (!done.get()) {
+        book.read(id, row);
+        if (row[Field.ASK.ordinal()] != row[Field.BID.ordinal()] + 1) {
+          consistent.set(false);
+        }
+      }
+    });
+    reader.start();
+    for (int i = 1; i < 200_000; i++) {
+      tick.reset(Service.QUOTE, StreamFields.kinds(Service.QUOTE), i);
+      tick.setSymbol("MSFT", id);
+      tick.setDouble(1, i);
+      tick.setDouble(2, i + 1);
+      book.onTick(tick);
+    }
+    done.set(true);
+    reader.join();
+    assertThat(consistent.get()).isTrue();
+    assertThat(book.get(id, Field.BID)).isEqualTo(199_999);
+  }
+
+  /**
+   * @return client returning the quotes of the fixture
+   */
+  private QuoteFetcher client() {
+    return (symbols, consumer) -> {
+      requests.add(new ArrayList<>(symbols));
+      int count = 0;
+      for (String symbol : symbols) {
+        if (quotes.containsKey(symbol)) {
+          consumer.accept(quotes.get(symbol));
+          count++;
+        }
+      }
+      return count;
+    };
+  }
+}
@@ -0,0 +1,67 @@
+package com.studerw.tda.stream;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+import java.nio.charset.StandardCharsets;
+import java.util.concurrent.atomic.AtomicInteger;
+import org.junit.Test;
+
+public class SymbolTableTest {
+
+  @Test
+  public void testIntern() {
+    SymbolTable symbols = new SymbolTable(4);
+    byte[] frame = "xxMSFTxx".getBytes(StandardCharsets.US_ASCII);
+    assertThat(symbols.intern(frame, 2, 4)).isEqualTo(0);
+    assertThat(symbols.intern("AAPL")).isEqualTo(1);
+    assertThat(symbols.intern("MSFT")).isEqualTo(0);
+    assertThat(symbols.id("AAPL")).isEqualTo(1);
+    assertThat(symbols.id("SPY")).isEqualTo(-1);
+    assertThat(symbols.symbol(0)).isEqualTo("MSFT");
+    assertThat(symbols.size()).isEqualTo(2);
+  }
+
+  @Test
+  public void testGrow() {
+    SymbolTable symbols = new SymbolTable(1);
+    for (int i = 0; i < 5000; i++) {
+      assertThat(symbols.intern("SYM" + i)).isEqualTo(i);
+    }
+    for (int i = 0; i < 5000; i++) {
+      assertThat(symbols.id("SYM" + i)).isEqualTo(i);
+      assertThat(symbols.symbol(i)).isEqualTo("SYM" + i);
+    }
+  }
+
+  @Test(expected = IndexOutOfBoundsException.class)
+  public void testUnknownId() {
+    new SymbolTable().symbol(0);
+  }
+
+  @Test
+  public void testConcurrentIntern() throws InterruptedException {
+    SymbolTable symbols = new SymbolTable(16);
+    AtomicInteger mismatches = new AtomicInteger();
+    Thread[] threads = new Thread[4];
+    for (int t = 0; t < threads.length; t++) {
+      threads[t] = new Thread(() -> {
+        for (int i = 0; i < 2000; i++) {
+          int id = symbols.intern("SYM" + i);
+          try {
+            if (!symbols.symbol(id).equals("SYM" + i)) {
+              mismatches.incrementAndGet();
+            }
+          } catch (IndexOutOfBoundsException e) {
+            mismatches.incrementAndGet();
+          }
+        }
+      });
+      threads[t].start();
+    }
+    for (Thread thread : threads) {
+      thread.join();
+    }
+    assertThat(mismatches.get()).isEqualTo(0);
+    assertThat(symbols.size()).isEqualTo(2000);
+  }
+}
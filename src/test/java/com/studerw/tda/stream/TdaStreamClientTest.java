@@ -0,0 +1,371 @@
+package com.studerw.tda.stream;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Fail.fail;
+
+import com.fasterxml.jackson.databind.JsonNode;
+import com.studerw.tda.model.stream.Service;
+import com.studerw.tda.model.user.UserPrincipals;
+import com.studerw.tda.parse.TdaJsonParser;
+import java.io.IOException;
+import java.io.InputStream;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+public class TdaStreamClientTest {
+
+  private static final Logger LOGGER = LoggerFactory.getLogger(TdaStreamClientTest.class);
+
+  private LocalStreamServer server;
+  private UserPrincipals principals;
+  private TdaStreamClient client;
+
+  @Before
+  public void setUp() throws IOException {
+    server = new LocalStreamServer();
+    try (InputStream in = TdaStreamClientTest.class.getClassLoader().getResourceAsStream(
+        "com/studerw/tda/stream/userPrincipals-streamer-resp.json")) {
+      principals = new TdaJsonParser().parseUserPrincipals(in);
+    }
+    client = TdaStreamClient.Builder.tdaStreamClient()
+        .withUserPrincipals(() -> principals)
+        .withSocketUrl(server.getUrl())
+        .withTimeout(5, TimeUnit.SECONDS)
+        .build();
+  }
+
+  @After
+  public void tearDown() throws IOException {
+    client.close();
+    server.close();
+  }
+
+  @Test
+  public void testLogin() throws InterruptedException {
+    client.connect();
+    assertThat(client.getState()).isEqualTo(TdaStreamClient.State.CONNECTED);
+
+    JsonNode login = server.takeRequest("LOGIN");
+    LOGGER.debug("{}", login);
+    assertThat(login.path("service").asText()).isEqualTo("ADMIN");
+    assertThat(login.path("account").asText()).isEqualTo("123456789");
+    assertThat(login.path("source").asText()).isEqualTo("foobarapp");
+    JsonNode parameters = login.path("parameters");
+    assertThat(parameters.path("token").asText()).isEqualTo("3d2f5e0a9b7c4e1d8a6b5c4d3e2f1a0b");
+    assertThat(parameters.path("version").asText()).isEqualTo("1.0");
+    assertThat(parameters.path("credential").asText())
+        .startsWith("userid=123456789&token=3d2f5e0a9b7c4e1d8a6b5c4d3e2f1a0b&company=AMER")
+        .contains("&cddomain=A123123461714799&usergroup=ACCT&accesslevel=ACCT&authorized=Y")
+        .contains("&timestamp=1592699716000&appid=foobarapp&acl=AKBPDTDWESF7");
+  }
+
+  @Test
+  public void testLoginRejected() {
+    server.setLoginCode(3);
+    try {
+      client.connect();
+      fail("should not get here");
+    } catch (RuntimeException e) {
+      assertThat(e).hasMessageContaining("Login denied");
+    }
+    assertThat(client.getState()).isEqualTo(TdaStreamClient.State.DISCONNECTED);
+  }
+
+  @Test
+  public void testNotConnected() {
+    try {
+      client.subscribe(Service.QUOTE, Collections.singletonList("MSFT"));
+      fail("should not get here");
+    } catch (IllegalStateException e) {
+      assertThat(e).hasMessageContaining("DISCONNECTED");
+    }
+  }
+
+  @Test
+  public void testSubscribe() throws InterruptedException {
+    client.connect();
+    StreamResponse response = client.subscribe(Service.QUOTE, Arrays.asList("msft", "AAPL"), 0, 1,
+        2, 3).join();
+    assertThat(response.isSuccess()).isTrue();
+    assertThat(response.getService()).isEqualTo(Service.QUOTE);
+
+    JsonNode subs = server.takeRequest("SUBS");
+    assertThat(subs.path("service").asText()).isEqualTo("QUOTE");
+    assertThat(subs.path("parameters").path("keys").asText()).isEqualTo("MSFT,AAPL");
+    assertThat(subs.path("parameters").path("fields").asText()).isEqualTo("0,1,2,3");
+
+    client.add(Service.CHART_EQUITY, Collections.singletonList("SPY")).join();
+    JsonNode add = server.takeRequest("ADD");
+    assertThat(add.path("parameters").path("fields").asText()).isEqualTo("0,1,2,3,4,5,6,7,8");
+
+    client.unsubscribe(Service.QUOTE, Collections.singletonList("AAPL")).join();
+    JsonNode unsubs = server.takeRequest("UNSUBS");
+    assertThat(unsubs.path("parameters").path("keys").asText()).isEqualTo("AAPL");
+    assertThat(unsubs.path("parameters").has("fields")).isFalse();
+  }
+
+  @Test
+  public void testAccountActivity() throws InterruptedException {
+    client.connect();
+    client.subscribeAccountActivity().join();
+    JsonNode subs = server.takeRequest("SUBS");
+    assertThat(subs.path("service").asText()).isEqualTo("ACCT_ACTIVITY");
+    assertThat(subs.path("parameters").path("keys").asText())
+        .isEqualTo("C1A2B3D4E5F60718293A4B5C6D7E8F90");
+  }
+
+  @Test
+  public void testData() throws InterruptedException {
+    BlockingQueue<StreamContent> quotes = new LinkedBlockingQueue<>();
+    client.addListener(Service.QUOTE, quotes::add);
+    client.addListener(Service.QUOTE, content -> {
+      throw new RuntimeException("a failing listener does not stop the others");
+    });
+    client.connect();
+    server.push("{\"data\":[{\"service\":\"QUOTE\",\"timestamp\":1592699716123,"
+        + "\"command\":\"SUBS\",\"content\":[{\"key\":\"MSFT\",\"delayed\":false,\"1\":196.32,"
+        + "\"2\":196.35,\"4\":3,\"8\":27412345},{\"key\":\"AAPL\",\"1\":349.71}]}]}");
+
+    StreamContent msft = quotes.poll(5, TimeUnit.SECONDS);
+    assertThat(msft).isNotNull();
+    LOGGER.debug("{}", msft);
+    assertThat(msft.getService()).isEqualTo(Service.QUOTE);
+    assertThat(msft.getTimestamp()).isEqualTo(1592699716123L);
+    assertThat(msft.getKey()).isEqualTo("MSFT");
+    assertThat(msft.getDouble(1, Double.NaN)).isEqualTo(196.32);
+    assertThat(msft.getDouble(3, Double.NaN)).isNaN();
+    assertThat(msft.getInt(4, 0)).isEqualTo(3);
+    assertThat(msft.getLong(8, 0)).isEqualTo(27412345L);
+    assertThat(msft.getString("delayed")).isEqualTo("false");
+
+    StreamContent aapl = quotes.poll(5, TimeUnit.SECONDS);
+    assertThat(aapl).isNotNull();
+    assertThat(aapl.getKey()).isEqualTo("AAPL");
+    assertThat(aapl.has(2)).isFalse();
+  }
+
+  @Test
+  public void testLevelOneHandler() throws InterruptedException {
+    BlockingQueue<String> ticks = new LinkedBlockingQueue<>();
+    BlockingQueue<StreamContent> charts = new LinkedBlockingQueue<>();
+    BlockingQueue<StreamContent> quotes = new LinkedBlockingQueue<>();
+    client.close();
+    client = TdaStreamClient.Builder.tdaStreamClient()
+        .withUserPrincipals(() -> principals)
+        .withSocketUrl(server.getUrl())
+        .withLevelOneHandler(tick -> ticks.add(tick.getSymbol() + " " + tick.getDouble(1)))
+        .build();
+    client.addListener(Service.QUOTE, quotes::add);
+    client.addListener(Service.CHART_EQUITY, charts::add);
+    client.connect();
+    server.push("{\"data\":[{\"service\":\"QUOTE\",\"timestamp\":1,\"content\":[{\"key\":"
+        + "\"MSFT\",\"1\":196.32}]},{\"service\":\"CHART_EQUITY\",\"timestamp\":1,"
+        + "\"content\":[{\"key\":\"MSFT\",\"1\":196.1}]}]}");
+
+    assertThat(ticks.poll(5, TimeUnit.SECONDS)).isEqualTo("MSFT 196.32");
+    StreamContent chart = charts.poll(5, TimeUnit.SECONDS);
+    assertThat(chart).isNotNull();
+    assertThat(chart.getDouble(1, Double.NaN)).isEqualTo(196.1);
+    //level one data only goes to the handler
+    assertThat(quotes).isEmpty();
+  }
+
+  @Test
+  public void testHeartbeat() throws InterruptedException {
+    client.connect();
+    assertThat(client.getLastHeartbeat()).isEqualTo(0);
+    server.push("{\"notify\":[{\"heartbeat\":\"1592699716999\"}]}");
+    long deadline = System.currentTimeMillis() + 5000;
+    while (client.getLastHeartbeat() == 0 && System.currentTimeMillis() < deadline) {
+      Thread.sleep(10);
+    }
+    assertThat(client.getLastHeartbeat()).isEqualTo(1592699716999L);
+  }
+
+  @Test
+  public void testClose() throws InterruptedException {
+    client.connect();
+    client.close();
+    assertThat(client.getState()).isEqualTo(TdaStreamClient.State.CLOSED);
+    assertThat(server.takeRequest("LOGOUT").path("service").asText()).isEqualTo("ADMIN");
+    try {
+      client.connect();
+      fail("should not get here");
+    } catch (IllegalStateException e) {
+      assertThat(e).hasMessageContaining("CLOSED");
+    }
+  }
+
+  @Test
+  public void testDropped() throws InterruptedException {
+    client.connect();
+    server.drop();
+    long deadline = System.currentTimeMillis() + 5000;
+    while (client.getState() == TdaStreamClient.State.CONNECTED
+        && System.currentTimeMillis() < deadline) {
+      Thread.sleep(10);
+    }
+    assertThat(client.getState()).isEqualTo(TdaStreamClient.State.DISCONNECTED);
+    //a disconnected client can connect again
+    client.connect();
+    assertThat(client.getState()).isEqualTo(TdaStreamClient.State.CONNECTED);
+    assertThat(server.getAccepted()).isEqualTo(2);
+  }
+
+  @Test
+  public void testReconnect() throws InterruptedException {
+    AtomicInteger fetched = new AtomicInteger();
+    BlockingQueue<StreamGap> gaps = new LinkedBlockingQueue<>();
+    client.close();
+    client = TdaStreamClient.Builder.tdaStreamClient()
+        .withUserPrincipals(() -> {
+          fetched.incrementAndGet();
+          return principals;
+        })
+        .withSocketUrl(server.getUrl())
+        .withTimeout(5, TimeUnit.SECONDS)
+        .withReconnect(10, 100, TimeUnit.MILLISECONDS)
+        .withReplayBatchSize(2)
+        .withGapListener(gaps::add)
+        .build();
+    client.connect();
+    client.subscribe(Service.QUOTE, Arrays.asList("MSFT", "AAPL"), 0, 1, 2).join();
+    client.add(Service.QUOTE, Arrays.asList("IBM", "SPY"), 3).join();
+    client.unsubscribe(Service.QUOTE, Collections.singletonList("AAPL")).join();
+    client.subscribeAccountActivity().join();
+    assertThat(client.getSubscription(Service.QUOTE)).containsExactly("MSFT", "IBM", "SPY");
+    server.takeRequest("LOGIN");
+    server.takeRequest("UNSUBS");
+
+    server.drop();
+    assertThat(server.takeRequest("LOGIN")).isNotNull();
+    //the keys are replayed in batches of two, with the fields of the subscribe and the add
+    Map<String, JsonNode> subs = new HashMap<>();
+    for (int i = 0; i < 2; i++) {
+      JsonNode request = server.takeRequest("SUBS");
+      subs.put(request.path("service").asText(), request);
+    }
+    assertThat(subs.get("QUOTE").path("parameters").path("keys").asText()).isEqualTo("MSFT,IBM");
+    assertThat(subs.get("QUOTE").path("parameters").path("fields").asText()).isEqualTo("0,1,2,3");
+    assertThat(subs.get("ACCT_ACTIVITY").path("parameters").path("keys").asText())
+        .isEqualTo("C1A2B3D4E5F60718293A4B5C6D7E8F90");
+    JsonNode add = server.takeRequest("ADD");
+    assertThat(add.path("parameters").path("keys").asText()).isEqualTo("SPY");
+
+    Map<Service, StreamGap> missed = new HashMap<>();
+    for (int i = 0; i < 2; i++) {
+      StreamGap gap = gaps.poll(5, TimeUnit.SECONDS);
+      assertThat(gap).isNotNull();
+      LOGGER.debug("{}", gap);
+      missed.put(gap.getService(), gap);
+    }
+    StreamGap quotes = missed.get(Service.QUOTE);
+    assertThat(quotes.getKeys()).containsExactly("MSFT", "IBM", "SPY");
+    assertThat(quotes.isReconnect()).isTrue();
+    assertThat(quotes.getTo()).isGreaterThanOrEqualTo(quotes.getFrom());
+    assertThat(missed.containsKey(Service.ACCT_ACTIVITY)).isTrue();
+    assertThat(client.getState()).isEqualTo(TdaStreamClient.State.CONNECTED);
+    assertThat(client.getReconnects()).isEqualTo(1);
+    //the streamer info was fetched again for the new login
+    assertThat(fetched.get()).isEqualTo(2);
+  }
+
+  @Test
+  public void testReconnectRetries() throws InterruptedException {
+    client.close();
+    client = TdaStreamClient.Builder.tdaStreamClient()
+        .withUserPrincipals(() -> principals)
+        .withSocketUrl(server.getUrl())
+        .withTimeout(5, TimeUnit.SECONDS)
+        .withReconnect(10, 20, TimeUnit.MILLISECONDS)
+        .build();
+    client.connect();
+    server.takeRequest("LOGIN");
+    server.setLoginCode(3);
+    server.drop();
+    server.takeRequest("LOGIN");
+    server.takeRequest("LOGIN");
+    server.setLoginCode(0);
+    long deadline = System.currentTimeMillis() + 5000;
+    while (client.getState() != TdaStreamClient.State.CONNECTED
+        && System.currentTimeMillis() < deadline) {
+      Thread.sleep(10);
+    }
+    assertThat(client.getState()).isEqualTo(TdaStreamClient.State.CONNECTED);
+    assertThat(server.getAccepted()).isGreaterThanOrEqualTo(3);
+  }
+
+  @Test
+  public void testIdleTimeout() throws InterruptedException {
+    client.close();
+    client = TdaStreamClient.Builder.tdaStreamClient()
+        .withUserPrincipals(() -> principals)
+        .withSocketUrl(server.getUrl())
+        .withTimeout(5, TimeUnit.SECONDS)
+        .withReconnect(10, 20, TimeUnit.MILLISECONDS)
+        .withIdleTimeout(200, TimeUnit.MILLISECONDS)
+        .build();
+    client.connect();
+    server.takeRequest("LOGIN");
+    //the server sends no heartbeats, so the idle socket is dropped and the client logs in again
+    server.takeRequest("LOGIN");
+    long deadline = System.currentTimeMillis() + 5000;
+    while (client.getReconnects() == 0 && System.currentTimeMillis() < deadline) {
+      Thread.sleep(10);
+    }
+    assertThat(client.getReconnects()).isGreaterThanOrEqualTo(1);
+    assertThat(server.getAccepted()).isGreaterThanOrEqualTo(2);
+  }
+
+  @Test
+  public void testBackoff() {
+    TdaStreamClient reconnecting = TdaStreamClient.Builder.tdaStreamClient()
+        .withUserPrincipals(() -> principals)
+        .withReconnect(100, 1000, TimeUnit.MILLISECONDS)
+        .build();
+    for (int i = 0; i < 100; i++) {
+      assertThat(reconnecting.backoff(0)).isBetween(50L, 100L);
+      assertThat(reconnecting.backoff(2)).isBetween(200L, 400L);
+      assertThat(reconnecting.backoff(40)).isBetween(500L, 1000L);
+    }
+    reconnecting.close();
+  }
+
+  @Test
+  public void testSequenceGap() throws InterruptedException {
+    BlockingQueue<StreamGap> gaps = new LinkedBlockingQueue<>();
+    client.close();
+    client = TdaStreamClient.Builder.tdaStreamClient()
+        .withUserPrincipals(() -> principals)
+        .withSocketUrl(server.getUrl())
+        .withGapListener(gaps::add)
+        .build();
+    client.connect();
+    server.push("{\"data\":[{\"service\":\"CHART_EQUITY\",\"timestamp\":1000,\"content\":["
+        + "{\"seq\":7,\"key\":\"MSFT\",\"1\":196.1},{\"seq\":1,\"key\":\"SPY\"}]}]}");
+    server.push("{\"data\":[{\"service\":\"CHART_EQUITY\",\"timestamp\":2000,\"content\":["
+        + "{\"seq\":2,\"key\":\"SPY\"},{\"seq\":10,\"key\":\"MSFT\",\"1\":196.2}]}]}");
+
+    StreamGap gap = gaps.poll(5, TimeUnit.SECONDS);
+    assertThat(gap).isNotNull();
+    assertThat(gap.getService()).isEqualTo(Service.CHART_EQUITY);
+    assertThat(gap.getKeys()).containsExactly("MSFT");
+    assertThat(gap.getLastSequence()).isEqualTo(7);
+    assertThat(gap.getSequence()).isEqualTo(10);
+    assertThat(gap.getFrom()).isEqualTo(1000);
+    assertThat(gap.getTo()).isEqualTo(2000);
+    assertThat(gap.isReconnect()).isFalse();
+    assertThat(gaps.poll(100, TimeUnit.MILLISECONDS)).isNull();
+  }
+}
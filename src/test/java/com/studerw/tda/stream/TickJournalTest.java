@@ -0,0 +1,177 @@
+package com.studerw.tda.stream;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+import com.fasterxml.jackson.databind.JsonNode;
+import com.fasterxml.jackson.databind.ObjectReader;
+import com.studerw.tda.model.stream.Service;
+import com.studerw.tda.parse.DefaultMapper;
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.List;
+import org.apache.commons.io.FileUtils;
+import org.apache.commons.lang3.StringUtils;
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+
+public class TickJournalTest {
+
+  private static final ObjectReader READER = DefaultMapper.reader(JsonNode.class);
+
+  private static final String QUOTES = "{\"data\":[{\"service\":\"QUOTE\","
+      + "\"timestamp\":1592699716123,\"command\":\"SUBS\",\"content\":[{\"key\":\"MSFT\","
+      + "\"delayed\":true,\"1\":196.32,\"2\":196.35,\"4\":3,\"6\":\"P\",\"8\":27412345,"
+      + "\"17\":true,\"25\":\"Microsoft Corporation - Common Stock\"},"
+      + "{\"key\":\"AAPL\",\"1\":349.71}]}]}";
+
+  private Path dir;
+  private final LevelOneDecoder decoder = new LevelOneDecoder();
+
+  @Before
+  public void setUp() throws IOException {
+    dir = Files.createTempDirectory("journal");
+  }
+
+  @After
+  public void tearDown() throws IOException {
+    FileUtils.deleteDirectory(dir.toFile());
+  }
+
+  private TickJournal journal() {
+    return TickJournal.Builder.tickJournal()
+        .withDirectory(dir)
+        .withSegmentSize(TickJournal.MIN_SEGMENT_SIZE)
+        .build();
+  }
+
+  private static StreamContent content(Service service, long timestamp, String json)
+      throws IOException {
+    return new StreamContent(service, timestamp, READER.readValue(json));
+  }
+
+  @Test
+  public void testRecordAndReplay() throws IOException {
+    try (TickJournal journal = journal()) {
+      decoder.decode(QUOTES, journal);
+      journal.onContent(content(Service.CHART_EQUITY, 1592699760000L,
+          "{\"seq\":12,\"key\":\"MSFT\",\"1\":196.1,\"2\":196.4,\"3\":196.0,\"4\":196.2,"
+              + "\"5\":152000.0,\"6\":1592699700000,\"7\":18432}"));
+      journal.onContent(content(Service.TIMESALE_EQUITY, 1592699716200L,
+          "{\"seq\":7,\"key\":\"SPY\",\"1\":1592699716190,\"2\":311.05,\"3\":100.0,"
+              + "\"4\":55}"));
+      assertThat(journal.getRecords()).isEqualTo(4);
+    }
+
+    List<String> ticks = new ArrayList<>();
+    List<StreamContent> contents = new ArrayList<>();
+    TickJournalReplay replay = TickJournalReplay.Builder.tickJournalReplay()
+        .withDirectory(dir)
+        .withMaxSpeed()
+        .withLevelOneHandler(tick -> ticks.add(tick.getSymbol() + " " + tick.getTimestamp() + " "
+            + tick.isDelayed() + " " + tick.getDouble(1) + " " + tick.getLong(4, 0) + " "
+            + tick.getChar(6) + " " + tick.getBoolean(17) + " " + tick.getText(25)))
+        .withListener(Service.CHART_EQUITY, contents::add)
+        .withListener(Service.TIMESALE_EQUITY, contents::add)
+        .build();
+    assertThat(replay.replay()).isEqualTo(4);
+
+    assertThat(ticks).containsExactly(
+        "MSFT 1592699716123 true 196.32 3 P true Microsoft Corporation - Common Stock",
+        "AAPL 1592699716123 false 349.71 0 \u0000 false null");
+    assertThat(contents.size()).isEqualTo(2);
+    StreamContent chart = contents.get(0);
+    assertThat(chart.getService()).isEqualTo(Service.CHART_EQUITY);
+    assertThat(chart.getKey()).isEqualTo("MSFT");
+    assertThat(chart.getSequence()).isEqualTo(12);
+    assertThat(chart.getTimestamp()).isEqualTo(1592699760000L);
+    assertThat(chart.getDouble(4, Double.NaN)).isEqualTo(196.2);
+    assertThat(chart.getLong(6, 0)).isEqualTo(1592699700000L);
+    StreamContent sale = contents.get(1);
+    assertThat(sale.getKey()).isEqualTo("SPY");
+    assertThat(sale.getDouble(2, Double.NaN)).isEqualTo(311.05);
+    assertThat(sale.getInt(4, 0)).isEqualTo(55);
+  }
+
+  @Test
+  public void testLongText() {
+    String text = StringUtils.repeat('a', TickJournal.MAX_TEXT - 1) + "\u00e9t\u00e9";
+    try (TickJournal journal = journal()) {
+      decoder.decode("{\"data\":[{\"service\":\"QUOTE\",\"timestamp\":1,"
+          + "\"content\":[{\"key\":\"MSFT\",\"25\":\"" + text + "\"}]}]}", journal);
+    }
+    List<String> texts = new ArrayList<>();
+    TickJournalReplay.Builder.tickJournalReplay()
+        .withDirectory(dir)
+        .withMaxSpeed()
+        .withLevelOneHandler(tick -> texts.add(tick.getText(25)))
+        .build()
+        .replay();
+    //the two bytes of the first accented letter would go past the limit
+    assertThat(texts).containsExactly(text.substring(0, TickJournal.MAX_TEXT - 1));
+  }
+
+  @Test
+  public void testSegments() {
+    int records = 20_000;
+    try (TickJournal journal = journal()) {
+      for (int i = 0; i < records; i++) {
+        decoder.decode("{\"data\":[{\"service\":\"QUOTE\",\"timestamp\":" + i
+            + ",\"content\":[{\"key\":\"SYM" + (i % 50) + "\",\"1\":" + i + ".5}]}]}", journal);
+      }
+      assertThat(journal.getSegment()).isGreaterThan(1);
+    }
+    //a reopened journal continues after the last segment
+    int segments = TickJournal.segments(dir).size();
+    try (TickJournal journal = journal()) {
+      decoder.decode(QUOTES, journal);
+      assertThat(journal.getSegment()).isEqualTo(segments + 1);
+    }
+
+    long[] last = {-1};
+    boolean[] ordered = {true};
+    SymbolTable symbols = new SymbolTable();
+    TickJournalReplay replay = TickJournalReplay.Builder.tickJournalReplay()
+        .withDirectory(dir)
+        .withMaxSpeed()
+        .withSymbolTable(symbols)
+        .withLevelOneHandler(tick -> {
+          if (tick.getSymbol().startsWith("SYM")) {
+            long i = tick.getTimestamp();
+            ordered[0] &= i == last[0] + 1 && tick.getDouble(1) == i + 0.5
+                && tick.getSymbol().equals("SYM" + (i % 50));
+            last[0] = i;
+          }
+        })
+        .build();
+    assertThat(replay.replay()).isEqualTo(records + 2);
+    assertThat(ordered[0]).isTrue();
+    assertThat(last[0]).isEqualTo(records - 1);
+    assertThat(symbols.size()).isEqualTo(52);
+  }
+
+  @Test
+  public void testSpeed() throws InterruptedException {
+    try (TickJournal journal = journal()) {
+      decoder.decode(QUOTES, journal);
+      Thread.sleep(200);
+      decoder.decode(QUOTES, journal);
+    }
+    List<Long> received = new ArrayList<>();
+    TickJournalReplay replay = TickJournalReplay.Builder.tickJournalReplay()
+        .withDirectory(dir)
+        .withSpeed(2)
+        .withLevelOneHandler(tick -> received.add(System.nanoTime()))
+        .build();
+    assertThat(replay.replay()).isEqualTo(4);
+    //200ms apart when recorded, at least 100ms at twice the speed
+    assertThat(received.get(2) - received.get(0)).isGreaterThanOrEqualTo(95_000_000L);
+  }
+
+  @Test(expected = IllegalArgumentException.class)
+  public void testSegmentTooSmall() {
+    TickJournal.Builder.tickJournal().withDirectory(dir).withSegmentSize(1024).build();
+  }
+}
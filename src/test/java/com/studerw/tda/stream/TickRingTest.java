@@ -0,0 +1,232 @@
+package com.studerw.tda.stream;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+import com.studerw.tda.model.stream.Service;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+import org.junit.Test;
+
+public class TickRingTest {
+
+  private final LevelOneTick tick = new LevelOneTick();
+
+  private void publish(TickRing ring, Service service, String symbol, int id, double bid) {
+    tick.reset(service, StreamFields.kinds(service), 1592699716123L);
+    tick.setSymbol(symbol, id);
+    tick.setDouble(1, bid);
+    ring.publish(tick);
+  }
+
+  private static LevelOneHandler collect(List<String> to) {
+    return t -> to.add(t.getSymbol() + "=" + t.getDouble(1));
+  }
+
+  @Test
+  public void testPollInOrder() {
+    TickRing ring = TickRing.Builder.tickRing().withCapacity(8).build();
+    List<String> received = new ArrayList<>();
+    TickSubscriber subscriber = ring.subscriber(collect(received)).build();
+    assertThat(subscriber.poll()).isEqualTo(0);
+
+    publish(ring, Service.QUOTE, "MSFT", 0, 1.5);
+    publish(ring, Service.QUOTE, "AAPL", 1, 2.5);
+    publish(ring, Service.QUOTE, "MSFT", 0, 1.75);
+    assertThat(subscriber.getBacklog()).isEqualTo(3);
+    assertThat(subscriber.poll()).isEqualTo(3);
+    assertThat(received).containsExactly("MSFT=1.5", "AAPL=2.5", "MSFT=1.75");
+    assertThat(subscriber.getBacklog()).isEqualTo(0);
+    assertThat(subscriber.getSequence()).isEqualTo(2);
+    assertThat(subscriber.getDropped()).isEqualTo(0);
+    assertThat(ring.getPublished(Service.QUOTE)).isEqualTo(3);
+    assertThat(ring.getPublished(Service.OPTION)).isEqualTo(0);
+  }
+
+  @Test
+  public void testIndependentSubscribers() {
+    TickRing ring = TickRing.Builder.tickRing().withCapacity(8).build();
+    List<String> first = new ArrayList<>();
+    List<String> second = new ArrayList<>();
+    TickSubscriber one = ring.subscriber(collect(first)).build();
+    publish(ring, Service.QUOTE, "MSFT", 0, 1.5);
+    TickSubscriber two = ring.subscriber(collect(second)).build();
+    publish(ring, Service.QUOTE, "AAPL", 1, 2.5);
+
+    assertThat(one.poll()).isEqualTo(2);
+    assertThat(two.poll()).isEqualTo(1);
+    assertThat(first).containsExactly("MSFT=1.5", "AAPL=2.5");
+    assertThat(second).containsExactly("AAPL=2.5");
+    assertThat(ring.getSubscribers()).containsExactly(one, two);
+    one.close();
+    assertThat(ring.getSubscribers()).containsExactly(two);
+  }
+
+  @Test
+  public void testMaxBatch() {
+    TickRing ring = TickRing.Builder.tickRing().withCapacity(16).build();
+    List<String> received = new ArrayList<>();
+    List<Integer> batches = new ArrayList<>();
+    TickSubscriber subscriber = ring.subscriber(collect(received))
+        .withMaxBatch(4)
+        .withBatchEnd(batches::add)
+        .build();
+    for (int i = 0; i < 10; i++) {
+      publish(ring, Service.QUOTE, "SYM" + i, i, i);
+    }
+    assertThat(subscriber.poll()).isEqualTo(4);
+    assertThat(subscriber.poll()).isEqualTo(4);
+    assertThat(subscriber.poll()).isEqualTo(2);
+    assertThat(subscriber.poll()).isEqualTo(0);
+    assertThat(batches).containsExactly(4, 4, 2);
+    assertThat(received).hasSize(10);
+    assertThat(received.get(9)).isEqualTo("SYM9=9.0");
+  }
+
+  @Test
+  public void testDropWhenLapped() {
+    TickRing ring = TickRing.Builder.tickRing().withCapacity(8).build();
+    List<String> received = new ArrayList<>();
+    TickSubscriber subscriber = ring.subscriber(collect(received)).build();
+    for (int i = 0; i < 20; i++) {
+      publish(ring, Service.QUOTE, "SYM" + i, i, i);
+    }
+    assertThat(subscriber.poll()).isEqualTo(8);
+    assertThat(subscriber.getDropped()).isEqualTo(12);
+    assertThat(received.get(0)).isEqualTo("SYM12=12.0");
+    assertThat(received.get(7)).isEqualTo("SYM19=19.0");
+  }
+
+  @Test
+  public void testConflate() {
+    TickRing ring = TickRing.Builder.tickRing().withCapacity(16).build();
+    List<LevelOneTick> received = new ArrayList<>();
+    TickSubscriber subscriber = ring.subscriber(t -> {
+      LevelOneTick copy = new LevelOneTick();
+      copy.merge(t);
+      received.add(copy);
+    }).withPolicy(SlowConsumerPolicy.CONFLATE).withConflateThreshold(2).build();
+
+    publish(ring, Service.QUOTE, "MSFT", 0, 1.5);
+    tick.reset(Service.QUOTE, StreamFields.kinds(Service.QUOTE), 1592699716124L);
+    tick.setSymbol("MSFT", 0);
+    tick.setDouble(2, 1.6);
+    ring.publish(tick);
+    publish(ring, Service.QUOTE, "AAPL", 1, 2.5);
+    publish(ring, Service.QUOTE, "MSFT", 0, 1.55);
+
+    assertThat(subscriber.poll()).isEqualTo(2);
+    assertThat(received).hasSize(2);
+    LevelOneTick msft = received.get(0);
+    assertThat(msft.getSymbol()).isEqualTo("MSFT");
+    assertThat(msft.getDouble(1)).isEqualTo(1.55);
+    assertThat(msft.getDouble(2)).isEqualTo(1.6);
+    assertThat(received.get(1).getSymbol()).isEqualTo("AAPL");
+    assertThat(subscriber.getConflated()).isEqualTo(2);
+    assertThat(subscriber.getDropped()).isEqualTo(0);
+
+    //below the threshold every tick is delivered
+    publish(ring, Service.QUOTE, "MSFT", 0, 1.6);
+    publish(ring, Service.QUOTE, "MSFT", 0, 1.65);
+    assertThat(subscriber.poll()).isEqualTo(2);
+  }
+
+  @Test
+  public void testConflateAcrossServices() {
+    TickRing ring = TickRing.Builder.tickRing().withCapacity(16).build();
+    List<String> received = new ArrayList<>();
+    TickSubscriber subscriber = ring
+        .subscriber(t -> received.add(t.getService() + ":" + t.getSymbol()))
+        .withPolicy(SlowConsumerPolicy.CONFLATE).withConflateThreshold(0).build();
+    publish(ring, Service.QUOTE, "ES", 0, 1);
+    publish(ring, Service.LEVELONE_FUTURES, "ES", 0, 2);
+    publish(ring, Service.LEVELONE_FUTURES, "ES", 0, 3);
+    assertThat(subscriber.poll()).isEqualTo(1);
+    assertThat(received).containsExactly("QUOTE:ES", "LEVELONE_FUTURES:ES");
+    assertThat(subscriber.getConflated()).isEqualTo(1);
+  }
+
+  @Test
+  public void testHandlerFailure() {
+    TickRing ring = TickRing.Builder.tickRing().withCapacity(8).build();
+    List<String> received = new ArrayList<>();
+    TickSubscriber subscriber = ring.subscriber(t -> {
+      if (t.getSymbolId() == 0) {
+        throw new IllegalStateException("boom");
+      }
+      received.add(t.getSymbol());
+    }).build();
+    publish(ring, Service.QUOTE, "MSFT", 0, 1.5);
+    publish(ring, Service.QUOTE, "AAPL", 1, 2.5);
+    assertThat(subscriber.poll()).isEqualTo(2);
+    assertThat(received).containsExactly("AAPL");
+  }
+
+  @Test
+  public void testLag() {
+    TickRing ring = TickRing.Builder.tickRing().withCapacity(8).build();
+    TickSubscriber subscriber = ring.subscriber(t -> { }).build();
+    publish(ring, Service.QUOTE, "MSFT", 0, 1.5);
+    publish(ring, Service.LEVELONE_FUTURES, "/ES", 1, 3100.25);
+    publish(ring, Service.QUOTE, "AAPL", 2, 2.5);
+    subscriber.poll();
+    QueueLag quotes = subscriber.getLag(Service.QUOTE);
+    assertThat(quotes.getService()).isEqualTo(Service.QUOTE);
+    assertThat(quotes.getDelivered()).isEqualTo(2);
+    assertThat(quotes.getMaxNanos()).isGreaterThan(0);
+    assertThat(quotes.getMeanNanos()).isGreaterThan(0);
+    assertThat(subscriber.getLag(Service.LEVELONE_FUTURES).getDelivered()).isEqualTo(1);
+    assertThat(subscriber.getLag(Service.LEVELONE_FOREX).getDelivered()).isEqualTo(0);
+  }
+
+  @Test
+  public void testThreaded() throws InterruptedException {
+    for (WaitStrategy waitStrategy : WaitStrategy.values()) {
+      TickRing ring = TickRing.Builder.tickRing().withCapacity(1024).build();
+      long[] last = {-1};
+      boolean[] ordered = {true};
+      long[] count = {0};
+      TickSubscriber subscriber = ring.subscriber(t -> {
+        long value = (long) t.getDouble(1);
+        ordered[0] &= value > last[0];
+        last[0] = value;
+        count[0]++;
+      }).withWaitStrategy(waitStrategy).withName("test-" + waitStrategy).build();
+      subscriber.start();
+      int ticks = 100_000;
+      for (int i = 0; i < ticks; i++) {
+        publish(ring, Service.QUOTE, "SYM" + (i & 7), i & 7, i);
+        if ((i & 255) == 0) {
+          //give a parked subscriber a chance to keep up
+          Thread.yield();
+        }
+      }
+      long deadline = System.nanoTime() + TimeUnit.SECONDS.toNanos(10);
+      while (delivered(subscriber) + subscriber.getDropped() < ticks
+          && System.nanoTime() < deadline) {
+        Thread.sleep(1);
+      }
+      ring.close();
+      assertThat(subscriber.getBacklog()).isEqualTo(0);
+      assertThat(ordered[0]).isTrue();
+      assertThat(last[0]).isEqualTo(ticks - 1);
+      assertThat(delivered(subscriber)).isEqualTo(ticks - subscriber.getDropped());
+      assertThat(ring.getSubscribers()).isEmpty();
+    }
+  }
+
+  private static long delivered(TickSubscriber subscriber) {
+    return subscriber.getLag(Service.QUOTE).getDelivered();
+  }
+
+  @Test(expected = IllegalArgumentException.class)
+  public void testCapacityPowerOfTwo() {
+    TickRing.Builder.tickRing().withCapacity(1000).build();
+  }
+
+  @Test(expected = IllegalArgumentException.class)
+  public void testMaxBatchTooLarge() {
+    TickRing ring = TickRing.Builder.tickRing().withCapacity(8).build();
+    ring.subscriber(t -> { }).withMaxBatch(16).build();
+  }
+}